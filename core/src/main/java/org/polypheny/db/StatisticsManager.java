@@ -78,6 +78,26 @@ public static StatisticsManager getInstance() {
 
     public abstract Integer rowCountPerTable( long tableId );
 
+    /**
+     * @return the estimated number of distinct values of the column or null if there are no statistics for it
+     */
+    public abstract Double getDistinctCount( long tableId, long columnId );
+
+    /**
+     * @return the estimated fraction of the rows whose value in the column equals the given value or null if unknown
+     */
+    public abstract Double getEqualitySelectivity( long tableId, long columnId, Object value );
+
+    /**
+     * @return the estimated fraction of the rows whose value in the column is smaller than or equal to the given value or null if unknown
+     */
+    public abstract Double getRangeSelectivity( long tableId, long columnId, Object value );
+
+    /**
+     * @return the estimated fraction of the rows whose value in the column is null or null if unknown
+     */
+    public abstract Double getNullFraction( long tableId, long columnId );
+
     public abstract void updateCommitRollback( boolean committed );
 
     public abstract Object getDashboardInformation();
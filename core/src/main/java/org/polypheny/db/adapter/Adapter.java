@@ -34,6 +34,7 @@
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
@@ -353,6 +354,39 @@ public Schema getCurrentGraphNamespace() {
     public abstract void rollback( PolyXid xid );
 
 
+    /**
+     * Returns the transactions which have been prepared on this adapter before the last shutdown but have neither been
+     * committed nor rolled back. They are resolved by the transaction recovery during startup. Adapters which do not
+     * keep prepared transactions across a restart return an empty list.
+     */
+    public List<PolyXid> getPreparedTransactions() {
+        return Collections.emptyList();
+    }
+
+
+    /**
+     * Whether branch statements of a transaction (see {@link org.polypheny.db.transaction.Transaction#createBranchStatement()})
+     * may be executed on this adapter concurrently. The adapter has to execute every branch on its own connection or
+     * session, and the branches have to see the tables created by the transaction. They do not see uncommitted data
+     * written by other branches. Used by the data migrator to decide whether the partitions of a table can be copied
+     * in parallel.
+     */
+    public boolean supportsConcurrentStatements() {
+        return false;
+    }
+
+
+    /**
+     * Whether this adapter serves the reads of a transaction from a snapshot of the underlying store, which is taken by
+     * the store at the first statement of the transaction and does not contain changes of other transactions which have
+     * not committed before. Transactions running with snapshot isolation do not lock entities whose placements are all
+     * located on such adapters.
+     */
+    public boolean supportsSnapshotReads() {
+        return false;
+    }
+
+
     public List<AbstractAdapterSetting> getAvailableSettings( Class<?> clazz ) {
         return AbstractAdapterSetting.fromAnnotations( clazz.getAnnotations(), properties )
                 .values()
@@ -86,6 +86,30 @@ public List<NamespaceType> getSupportedSchemaType() {
     public abstract List<FunctionalIndexInfo> getFunctionalIndexes( CatalogTable catalogTable );
 
 
+    /**
+     * Whether this store is able to ingest rows of the given columns directly via {@link #bulkLoad(Context, CatalogTable, long, List, List)},
+     * bypassing the query processor. Used by the data migrator when a new placement is filled.
+     */
+    public boolean supportsBulkLoad( List<CatalogColumn> columns ) {
+        return false;
+    }
+
+
+    /**
+     * Inserts a batch of rows into the physical table of the given partition, using the fastest load path of the underlying
+     * system. Only called if {@link #supportsBulkLoad(List)} returns true for the placed columns.
+     *
+     * @param context Context of the migrating statement, used for transaction handling
+     * @param catalogTable Table the rows belong to
+     * @param partitionId Partition into which the rows are loaded
+     * @param columnPlacements Placements of the columns in the same order as the values of the rows
+     * @param rows Values in the internal representation of the columns
+     */
+    public void bulkLoad( Context context, CatalogTable catalogTable, long partitionId, List<CatalogColumnPlacement> columnPlacements, List<List<Object>> rows ) {
+        throw new UnsupportedOperationException( "Bulk load is not supported by the store " + getUniqueName() );
+    }
+
+
     /**
      * Default method for creating a new graph on the {@link DataStore}.
      * It comes with a substitution methods called by default and should be overwritten if the inheriting {@link DataStore}
@@ -0,0 +1,470 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.adapter;
+
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import lombok.Getter;
+import org.polypheny.db.schema.Statistic;
+import org.polypheny.db.schema.Statistics;
+import org.polypheny.db.util.ImmutableBitSet;
+
+
+/**
+ * Statistics about a file of a data source: the number of rows, per-column statistics and optionally a sparse index
+ * with the byte offset of every {@link #INDEX_INTERVAL}-th row. For every indexed block of rows, the minimum and maximum
+ * of every column are kept as well, which allows skipping blocks when filtering.
+ * <p>
+ * The statistics are bound to the length and modification time of the file they were collected from.
+ */
+@Getter
+public class SourceStatistics {
+
+    public static final int INDEX_INTERVAL = 8192;
+
+    private static final int FORMAT_VERSION = 2;
+    // Number of hashes kept for estimating the number of distinct values
+    private static final int SKETCH_SIZE = 1024;
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    private final long sourceLength;
+    private final long sourceModified;
+    private final long rowCount;
+    private final ColumnStatistics[] columns;
+    /**
+     * Byte offset of the first row of every block; empty if the source has no index.
+     */
+    private final long[] offsets;
+    /**
+     * Statistics of the columns per block.
+     */
+    private final ColumnStatistics[][] blocks;
+
+
+    private SourceStatistics( long sourceLength, long sourceModified, long rowCount, ColumnStatistics[] columns, long[] offsets, ColumnStatistics[][] blocks ) {
+        this.sourceLength = sourceLength;
+        this.sourceModified = sourceModified;
+        this.rowCount = rowCount;
+        this.columns = columns;
+        this.offsets = offsets;
+        this.blocks = blocks;
+    }
+
+
+    public boolean isIndexed() {
+        return offsets.length > 0;
+    }
+
+
+    /**
+     * Returns the byte offset at which the given block ends.
+     */
+    public long getBlockEnd( int block ) {
+        return block + 1 < offsets.length ? offsets[block + 1] : sourceLength;
+    }
+
+
+    /**
+     * Creates a statistic for the planner.
+     *
+     * @param columns The column of these statistics for every column of the table
+     */
+    public Statistic toStatistic( int[] columns ) {
+        List<ImmutableBitSet> keys = new ArrayList<>();
+        for ( int i = 0; i < columns.length; i++ ) {
+            ColumnStatistics column = this.columns[columns[i]];
+            // Only exact counts are safe to derive uniqueness from
+            if ( column.exactDistinct && column.nullCount == 0 && column.distinctCount == rowCount ) {
+                keys.add( ImmutableBitSet.of( i ) );
+            }
+        }
+        return Statistics.of( (double) rowCount, ImmutableList.copyOf( keys ) );
+    }
+
+
+    void write( DataOutputStream out ) throws IOException {
+        out.writeInt( FORMAT_VERSION );
+        out.writeLong( sourceLength );
+        out.writeLong( sourceModified );
+        out.writeLong( rowCount );
+        out.writeInt( columns.length );
+        for ( ColumnStatistics column : columns ) {
+            column.write( out );
+        }
+        out.writeInt( offsets.length );
+        for ( int i = 0; i < offsets.length; i++ ) {
+            out.writeLong( offsets[i] );
+            for ( ColumnStatistics column : blocks[i] ) {
+                column.write( out );
+            }
+        }
+    }
+
+
+    /**
+     * Reads statistics, returns {@code null} if they were written in a different format.
+     */
+    static SourceStatistics read( DataInputStream in ) throws IOException {
+        if ( in.readInt() != FORMAT_VERSION ) {
+            return null;
+        }
+        long sourceLength = in.readLong();
+        long sourceModified = in.readLong();
+        long rowCount = in.readLong();
+        ColumnStatistics[] columns = new ColumnStatistics[in.readInt()];
+        for ( int i = 0; i < columns.length; i++ ) {
+            columns[i] = ColumnStatistics.read( in );
+        }
+        long[] offsets = new long[in.readInt()];
+        ColumnStatistics[][] blocks = new ColumnStatistics[offsets.length][columns.length];
+        for ( int i = 0; i < offsets.length; i++ ) {
+            offsets[i] = in.readLong();
+            for ( int j = 0; j < columns.length; j++ ) {
+                blocks[i][j] = ColumnStatistics.read( in );
+            }
+        }
+        return new SourceStatistics( sourceLength, sourceModified, rowCount, columns, offsets, blocks );
+    }
+
+
+    /**
+     * Statistics of a column. Minimum and maximum are only kept for numbers, strings and booleans; numbers are
+     * normalized to {@link Long} or {@link Double}.
+     */
+    @Getter
+    public static class ColumnStatistics {
+
+        private static final byte NULL = 0;
+        private static final byte LONG = 1;
+        private static final byte DOUBLE = 2;
+        private static final byte STRING = 3;
+        private static final byte BOOLEAN = 4;
+
+        private final long nullCount;
+        private final long distinctCount;
+        private final boolean exactDistinct;
+        // Whether all non-null values appear in ascending order
+        private final boolean sorted;
+        private final Comparable<?> min;
+        private final Comparable<?> max;
+
+
+        private ColumnStatistics( long nullCount, long distinctCount, boolean exactDistinct, boolean sorted, Comparable<?> min, Comparable<?> max ) {
+            this.nullCount = nullCount;
+            this.distinctCount = distinctCount;
+            this.exactDistinct = exactDistinct;
+            this.sorted = sorted;
+            this.min = min;
+            this.max = max;
+        }
+
+
+        /**
+         * Whether a value in the range of this column could be equal to or in the given relation to the given
+         * number. Returns true if nothing is known about the range.
+         *
+         * @param comparison -1 if a smaller value is searched, 0 for an equal and 1 for a larger one
+         * @param inclusive whether an equal value also satisfies the comparison
+         */
+        public boolean mayContain( int comparison, boolean inclusive, Number value ) {
+            if ( !(min instanceof Number) || !(max instanceof Number) ) {
+                return true;
+            }
+            if ( comparison < 0 ) {
+                int c = compare( (Number) min, value );
+                return inclusive ? c <= 0 : c < 0;
+            } else if ( comparison > 0 ) {
+                int c = compare( (Number) max, value );
+                return inclusive ? c >= 0 : c > 0;
+            }
+            return compare( (Number) min, value ) <= 0 && compare( (Number) max, value ) >= 0;
+        }
+
+
+        private static int compare( Number a, Number b ) {
+            if ( a instanceof Long && b instanceof Long ) {
+                return Long.compare( (Long) a, (Long) b );
+            }
+            double x = a.doubleValue();
+            double y = b.doubleValue();
+            return x < y ? -1 : (x > y ? 1 : 0);
+        }
+
+
+        /**
+         * Whether the given string could be a value of this column. Returns true if nothing is known about the range.
+         */
+        public boolean mayContain( String value ) {
+            if ( !(min instanceof String) || !(max instanceof String) ) {
+                return true;
+            }
+            return ((String) min).compareTo( value ) <= 0 && ((String) max).compareTo( value ) >= 0;
+        }
+
+
+        private void write( DataOutputStream out ) throws IOException {
+            out.writeLong( nullCount );
+            out.writeLong( distinctCount );
+            out.writeBoolean( exactDistinct );
+            out.writeBoolean( sorted );
+            writeValue( out, min );
+            writeValue( out, max );
+        }
+
+
+        private static ColumnStatistics read( DataInputStream in ) throws IOException {
+            return new ColumnStatistics( in.readLong(), in.readLong(), in.readBoolean(), in.readBoolean(), readValue( in ), readValue( in ) );
+        }
+
+
+        private static void writeValue( DataOutputStream out, Comparable<?> value ) throws IOException {
+            if ( value instanceof Long ) {
+                out.writeByte( LONG );
+                out.writeLong( (Long) value );
+            } else if ( value instanceof Double ) {
+                out.writeByte( DOUBLE );
+                out.writeDouble( (Double) value );
+            } else if ( value instanceof String ) {
+                out.writeByte( STRING );
+                out.writeUTF( (String) value );
+            } else if ( value instanceof Boolean ) {
+                out.writeByte( BOOLEAN );
+                out.writeBoolean( (Boolean) value );
+            } else {
+                out.writeByte( NULL );
+            }
+        }
+
+
+        private static Comparable<?> readValue( DataInputStream in ) throws IOException {
+            byte type = in.readByte();
+            switch ( type ) {
+                case LONG:
+                    return in.readLong();
+                case DOUBLE:
+                    return in.readDouble();
+                case STRING:
+                    return in.readUTF();
+                case BOOLEAN:
+                    return in.readBoolean();
+                default:
+                    return null;
+            }
+        }
+
+    }
+
+
+    /**
+     * Collects statistics row by row.
+     */
+    public static class Builder {
+
+        private final int columnCount;
+        private final boolean indexed;
+        private final ColumnCollector[] columns;
+        private final List<Long> offsets = new ArrayList<>();
+        private final List<ColumnStatistics[]> blocks = new ArrayList<>();
+        private ColumnCollector[] block;
+        private long rowCount = 0;
+
+
+        /**
+         * @param indexed Whether rows are added with their byte offsets
+         */
+        public Builder( int columnCount, boolean indexed ) {
+            this.columnCount = columnCount;
+            this.indexed = indexed;
+            this.columns = newCollectors( true );
+        }
+
+
+        private ColumnCollector[] newCollectors( boolean sketch ) {
+            ColumnCollector[] collectors = new ColumnCollector[columnCount];
+            for ( int i = 0; i < columnCount; i++ ) {
+                collectors[i] = new ColumnCollector( sketch );
+            }
+            return collectors;
+        }
+
+
+        /**
+         * Adds a row. The offset is ignored if the statistics are not indexed.
+         */
+        public void add( Object[] row, long offset ) {
+            if ( indexed && rowCount % INDEX_INTERVAL == 0 ) {
+                finishBlock();
+                offsets.add( offset );
+                block = newCollectors( false );
+            }
+            for ( int i = 0; i < columnCount; i++ ) {
+                Object value = i < row.length ? row[i] : null;
+                columns[i].add( value );
+                if ( block != null ) {
+                    block[i].add( value );
+                }
+            }
+            rowCount++;
+        }
+
+
+        private void finishBlock() {
+            if ( block != null ) {
+                ColumnStatistics[] statistics = new ColumnStatistics[columnCount];
+                for ( int i = 0; i < columnCount; i++ ) {
+                    statistics[i] = block[i].build();
+                }
+                blocks.add( statistics );
+            }
+        }
+
+
+        public SourceStatistics build( long sourceLength, long sourceModified ) {
+            finishBlock();
+            block = null;
+            ColumnStatistics[] statistics = new ColumnStatistics[columnCount];
+            for ( int i = 0; i < columnCount; i++ ) {
+                statistics[i] = columns[i].build();
+            }
+            return new SourceStatistics(
+                    sourceLength,
+                    sourceModified,
+                    rowCount,
+                    statistics,
+                    offsets.stream().mapToLong( o -> o ).toArray(),
+                    blocks.toArray( new ColumnStatistics[0][] ) );
+        }
+
+    }
+
+
+    /**
+     * Collects the statistics of a single column. The number of distinct values is estimated with a k-minimum-values
+     * sketch; it is exact as long as there are fewer distinct values than the size of the sketch.
+     */
+    private static class ColumnCollector {
+
+        private final TreeSet<Long> hashes;
+        private long nullCount = 0;
+        private boolean sorted = true;
+        // Set if values of different types are encountered, in this case no range is kept
+        private boolean mixed = false;
+        private Comparable<Object> min;
+        private Comparable<Object> max;
+        private Comparable<Object> last;
+
+
+        ColumnCollector( boolean sketch ) {
+            this.hashes = sketch ? new TreeSet<>() : null;
+        }
+
+
+        @SuppressWarnings("unchecked")
+        void add( Object value ) {
+            if ( value == null ) {
+                nullCount++;
+                return;
+            }
+            Comparable<Object> normalized = (Comparable<Object>) normalize( value );
+            if ( hashes != null ) {
+                addHash( normalized == null ? value.toString() : normalized );
+            }
+            if ( normalized == null || mixed ) {
+                mixed = true;
+                return;
+            }
+            if ( min != null && min.getClass() != normalized.getClass() ) {
+                mixed = true;
+                return;
+            }
+            if ( min == null || normalized.compareTo( min ) < 0 ) {
+                min = normalized;
+            }
+            if ( max == null || normalized.compareTo( max ) > 0 ) {
+                max = normalized;
+            }
+            if ( last != null && normalized.compareTo( last ) < 0 ) {
+                sorted = false;
+            }
+            last = normalized;
+        }
+
+
+        private void addHash( Object value ) {
+            final long hash;
+            if ( value instanceof Long ) {
+                hash = HASH_FUNCTION.hashLong( (Long) value ).asLong();
+            } else if ( value instanceof Double ) {
+                hash = HASH_FUNCTION.hashLong( Double.doubleToLongBits( (Double) value ) ).asLong();
+            } else {
+                hash = HASH_FUNCTION.hashUnencodedChars( value.toString() ).asLong();
+            }
+            // Only non-negative hashes, so that the natural order of the set is the order of the hashes
+            long positive = hash >>> 1;
+            if ( hashes.size() < SKETCH_SIZE ) {
+                hashes.add( positive );
+            } else if ( positive < hashes.last() && !hashes.contains( positive ) ) {
+                hashes.pollLast();
+                hashes.add( positive );
+            }
+        }
+
+
+        private static Comparable<?> normalize( Object value ) {
+            if ( value instanceof Double || value instanceof Float ) {
+                return ((Number) value).doubleValue();
+            } else if ( value instanceof Number ) {
+                return ((Number) value).longValue();
+            } else if ( value instanceof String || value instanceof Boolean ) {
+                return (Comparable<?>) value;
+            } else if ( value instanceof Character ) {
+                return value.toString();
+            }
+            return null;
+        }
+
+
+        ColumnStatistics build() {
+            long distinctCount;
+            boolean exact;
+            if ( hashes == null ) {
+                distinctCount = -1;
+                exact = false;
+            } else if ( hashes.size() < SKETCH_SIZE ) {
+                distinctCount = hashes.size();
+                exact = true;
+            } else {
+                // The k-th smallest hash, mapped to (0, 1]
+                double kth = hashes.last() / (double) Long.MAX_VALUE;
+                distinctCount = Math.round( (SKETCH_SIZE - 1) / Math.max( kth, Double.MIN_VALUE ) );
+                exact = false;
+            }
+            return new ColumnStatistics( nullCount, distinctCount, exact, sorted && !mixed, mixed ? null : min, mixed ? null : max );
+        }
+
+    }
+
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.adapter;
+
+
+import com.google.common.hash.Hashing;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import lombok.extern.slf4j.Slf4j;
+import org.polypheny.db.util.PolyphenyHomeDirManager;
+
+
+/**
+ * Keeps the {@link SourceStatistics} of the files of data sources. The statistics are persisted in sidecar files in the
+ * Polypheny home directory, since the directories of linked sources might not be writable. Statistics are collected
+ * in the background on first access and whenever the length or the modification time of a file changes; until they
+ * are available, {@code null} is returned.
+ */
+@Slf4j
+public class SourceStatisticsManager {
+
+    private static final SourceStatisticsManager INSTANCE = new SourceStatisticsManager();
+
+    private final Map<String, SourceStatistics> statistics = new ConcurrentHashMap<>();
+    // Keys of the statistics which are currently collected
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    // Modification time of the files for which collecting failed, to not retry until they change
+    private final Map<String, Long> failed = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor( runnable -> {
+        Thread thread = new Thread( runnable, "source-statistics" );
+        thread.setDaemon( true );
+        return thread;
+    } );
+    private File folder;
+
+
+    public static SourceStatisticsManager getInstance() {
+        return INSTANCE;
+    }
+
+
+    private SourceStatisticsManager() {
+    }
+
+
+    /**
+     * Returns the statistics of a file if they are up-to-date. Otherwise, the statistics are (re)collected in the
+     * background and {@code null} is returned.
+     *
+     * @param file The file the statistics are about
+     * @param variant Distinguishes different statistics about the same file, e.g., for different sheets
+     * @param collector Reads the rows of the file into a builder
+     */
+    public SourceStatistics getStatistics( File file, String variant, Collector collector ) {
+        final String key = file.getAbsolutePath() + "|" + variant;
+        final long length = file.length();
+        final long modified = file.lastModified();
+        SourceStatistics current = statistics.get( key );
+        if ( isValid( current, length, modified ) ) {
+            return current;
+        }
+        if ( current == null ) {
+            current = readSidecar( key );
+            if ( isValid( current, length, modified ) ) {
+                statistics.put( key, current );
+                return current;
+            }
+        }
+        Long failedModified = failed.get( key );
+        if ( (failedModified == null || failedModified != modified) && pending.add( key ) ) {
+            executor.submit( () -> collect( key, file, collector ) );
+        }
+        return null;
+    }
+
+
+    private static boolean isValid( SourceStatistics statistics, long length, long modified ) {
+        return statistics != null && statistics.getSourceLength() == length && statistics.getSourceModified() == modified;
+    }
+
+
+    private void collect( String key, File file, Collector collector ) {
+        final long length = file.length();
+        final long modified = file.lastModified();
+        try {
+            SourceStatistics.Builder builder = collector.collect();
+            if ( file.length() != length || file.lastModified() != modified ) {
+                // The file changed while collecting, collect again on next access
+                return;
+            }
+            SourceStatistics result = builder.build( length, modified );
+            statistics.put( key, result );
+            failed.remove( key );
+            writeSidecar( key, result );
+        } catch ( Exception e ) {
+            log.warn( "Unable to collect statistics for {}", file.getPath(), e );
+            failed.put( key, modified );
+        } finally {
+            pending.remove( key );
+        }
+    }
+
+
+    private File getSidecar( String key ) {
+        if ( folder == null ) {
+            folder = PolyphenyHomeDirManager.getInstance().registerNewFolder( "data/source-statistics" );
+        }
+        String hash = Hashing.murmur3_128().hashString( key, StandardCharsets.UTF_8 ).toString();
+        return new File( folder, hash + ".stats" );
+    }
+
+
+    private SourceStatistics readSidecar( String key ) {
+        File sidecar = getSidecar( key );
+        if ( !sidecar.exists() ) {
+            return null;
+        }
+        try ( DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( sidecar ) ) ) ) {
+            return SourceStatistics.read( in );
+        } catch ( IOException e ) {
+            log.warn( "Unable to read statistics file {}", sidecar.getPath(), e );
+            return null;
+        }
+    }
+
+
+    private void writeSidecar( String key, SourceStatistics statistics ) throws IOException {
+        File sidecar = getSidecar( key );
+        File temp = new File( sidecar.getParentFile(), sidecar.getName() + ".tmp" );
+        try ( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( temp ) ) ) ) {
+            statistics.write( out );
+        }
+        Files.move( temp.toPath(), sidecar.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+    }
+
+
+    /**
+     * Reads a file and adds its rows to a new builder.
+     */
+    public interface Collector {
+
+        SourceStatistics.Builder collect() throws Exception;
+
+    }
+
+}
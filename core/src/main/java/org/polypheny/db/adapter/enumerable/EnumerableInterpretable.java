@@ -135,6 +135,12 @@ static ArrayBindable getArrayBindable( ClassDeclaration expr, String s, int fiel
 
 
     static Bindable getBindable( ClassDeclaration expr, String s, int fieldCount ) throws CompileException, IOException {
+        final Class<?>[] interfaces = fieldCount == 1
+                ? new Class[]{ Bindable.class, Typed.class }
+                : new Class[]{ ArrayBindable.class };
+        if ( GeneratedCodeCache.INSTANCE.isActive() ) {
+            return GeneratedCodeCache.INSTANCE.getBindable( expr.name, s, interfaces );
+        }
         ICompilerFactory compilerFactory;
         try {
             compilerFactory = CompilerFactoryFactory.getDefaultCompilerFactory();
@@ -144,10 +150,7 @@ static Bindable getBindable( ClassDeclaration expr, String s, int fieldCount ) t
         IClassBodyEvaluator cbe = compilerFactory.newClassBodyEvaluator();
         cbe.setClassName( expr.name );
         cbe.setExtendedClass( Utilities.class );
-        cbe.setImplementedInterfaces(
-                fieldCount == 1
-                        ? new Class[]{ Bindable.class, Typed.class }
-                        : new Class[]{ ArrayBindable.class } );
+        cbe.setImplementedInterfaces( interfaces );
 
         cbe.setParentClassLoader( PolyPluginManager.getMainClassLoader() );
         if ( RuntimeConfig.DEBUG.getBoolean() ) {
@@ -0,0 +1,501 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.adapter.enumerable;
+
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.codehaus.commons.compiler.CompileException;
+import org.codehaus.janino.JavaSourceClassLoader;
+import org.codehaus.janino.util.ClassFile;
+import org.codehaus.janino.util.resource.MapResourceFinder;
+import org.polypheny.db.catalog.Catalog;
+import org.polypheny.db.catalog.entity.CatalogColumn;
+import org.polypheny.db.catalog.entity.CatalogColumnPlacement;
+import org.polypheny.db.catalog.entity.CatalogTable;
+import org.polypheny.db.config.RuntimeConfig;
+import org.polypheny.db.plugins.PolyPluginManager;
+import org.polypheny.db.runtime.Bindable;
+import org.polypheny.db.runtime.Utilities;
+import org.polypheny.db.util.PolyphenyHomeDirManager;
+import org.polypheny.db.util.background.BackgroundTask.TaskPriority;
+import org.polypheny.db.util.background.BackgroundTask.TaskSchedulingType;
+import org.polypheny.db.util.background.BackgroundTaskManager;
+
+
+/**
+ * Persists the bytecode of the classes generated for enumerable plans, so that a query shape does not have to be
+ * recompiled by Janino after a restart.
+ *
+ * Entries are keyed by a hash of the generated code. Since the generated code refers to the physical names of the
+ * accessed tables, a changed catalog results in a different key. Nevertheless, the whole cache is discarded at startup
+ * if the catalog has changed since the cache has been written, to keep it from filling up with unreachable entries.
+ * The recorded state of the catalog is updated by a background task; if Polypheny-DB stops before, the cache is
+ * discarded at the next startup.
+ *
+ * The bytecode of the most used entries is read into memory at startup. If the cache is full, the least used entries
+ * are evicted.
+ */
+@Slf4j
+public class GeneratedCodeCache {
+
+    public static final GeneratedCodeCache INSTANCE = new GeneratedCodeCache();
+
+    private static final String FOLDER = "codecache";
+    private static final String VERSION_FILE = "catalog.version";
+    private static final String USAGE_FILE = "usage";
+    private static final String SUFFIX = ".bin";
+    private static final int FORMAT_VERSION = 1;
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    // Evicting a tenth of the entries at once keeps the usage statistics from being sorted on every miss
+    private static final int EVICTION_DIVISOR = 10;
+
+    private final Supplier<String> catalogVersion;
+    private volatile File folder;
+
+    // Keys of the entries on disk
+    private final Set<String> entries = ConcurrentHashMap.newKeySet();
+    // Bytecode of the entries loaded at startup, removed on first use
+    private final Map<String, Map<String, byte[]>> preloaded = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> usage = new ConcurrentHashMap<>();
+    private final AtomicBoolean catalogVersionOutdated = new AtomicBoolean();
+
+    @Getter
+    private final AtomicLong hits = new AtomicLong();
+    @Getter
+    private final AtomicLong misses = new AtomicLong();
+    @Getter
+    private final AtomicLong preloadHits = new AtomicLong();
+    @Getter
+    private final AtomicLong failures = new AtomicLong();
+
+
+    private GeneratedCodeCache() {
+        this( GeneratedCodeCache::getCatalogVersion );
+    }
+
+
+    /**
+     * @param catalogVersion Supplies a hash over the current state of the catalog
+     */
+    GeneratedCodeCache( Supplier<String> catalogVersion ) {
+        this.catalogVersion = catalogVersion;
+    }
+
+
+    /**
+     * Opens the cache if it is enabled. Requires the catalog to be initialized.
+     */
+    public synchronized void initialize() {
+        if ( !RuntimeConfig.GENERATED_CODE_CACHE.getBoolean() || folder != null ) {
+            return;
+        }
+        if ( !open( PolyphenyHomeDirManager.getInstance().registerNewFolder( FOLDER ) ) ) {
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook( new Thread( this::writeUsage ) );
+        BackgroundTaskManager.INSTANCE.registerTask(
+                this::updateCatalogVersion,
+                "Update the catalog version of the generated code cache",
+                TaskPriority.LOW,
+                TaskSchedulingType.EVERY_TEN_SECONDS );
+    }
+
+
+    /**
+     * Opens the cache in the given folder. The content of the folder is discarded if it has been written for another
+     * state of the catalog.
+     *
+     * @return false if the cache could not be opened
+     */
+    synchronized boolean open( File folder ) {
+        try {
+            String catalogVersion = this.catalogVersion.get();
+            File versionFile = new File( folder, VERSION_FILE );
+            if ( !versionFile.exists() || !Files.readString( versionFile.toPath() ).equals( catalogVersion ) ) {
+                log.info( "The catalog has changed, discarding the generated code cache." );
+                File[] files = folder.listFiles();
+                if ( files != null ) {
+                    for ( File file : files ) {
+                        Files.delete( file.toPath() );
+                    }
+                }
+                Files.writeString( versionFile.toPath(), catalogVersion );
+            } else {
+                File[] files = folder.listFiles( ( dir, name ) -> name.endsWith( SUFFIX ) );
+                if ( files != null ) {
+                    for ( File file : files ) {
+                        entries.add( file.getName().substring( 0, file.getName().length() - SUFFIX.length() ) );
+                    }
+                }
+                readUsage( new File( folder, USAGE_FILE ) );
+                preload( folder, RuntimeConfig.GENERATED_CODE_CACHE_PRELOAD.getInteger() );
+            }
+        } catch ( IOException e ) {
+            log.warn( "Unable to open the generated code cache, it stays disabled.", e );
+            entries.clear();
+            preloaded.clear();
+            usage.clear();
+            return false;
+        }
+        this.folder = folder;
+        return true;
+    }
+
+
+    public boolean isActive() {
+        return folder != null && RuntimeConfig.GENERATED_CODE_CACHE.getBoolean();
+    }
+
+
+    /**
+     * Returns an instance of the class with the given body. The bytecode is taken from the cache or compiled and
+     * added to the cache.
+     */
+    public Bindable<?> getBindable( String className, String code, Class<?>[] interfaces ) throws CompileException, IOException {
+        File folder = this.folder;
+        String key = key( className, code, interfaces );
+        usage.computeIfAbsent( key, k -> new AtomicLong() ).incrementAndGet();
+
+        Map<String, byte[]> bytecodes = preloaded.remove( key );
+        if ( bytecodes != null ) {
+            preloadHits.incrementAndGet();
+        } else {
+            bytecodes = read( folder, key );
+        }
+        if ( bytecodes != null ) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            bytecodes = compile( className, code, interfaces );
+            write( folder, key, bytecodes );
+        }
+
+        try {
+            ClassLoader classLoader = new BytecodeClassLoader( PolyPluginManager.getMainClassLoader(), bytecodes );
+            return (Bindable<?>) classLoader.loadClass( className ).getDeclaredConstructor().newInstance();
+        } catch ( ReflectiveOperationException e ) {
+            throw new CompileException( "Unable to instantiate generated class " + className, null, e );
+        }
+    }
+
+
+    /**
+     * Marks the recorded state of the catalog as outdated. Entries compiled before stay valid since their keys do not
+     * match code generated for the changed catalog.
+     */
+    public void catalogChanged() {
+        if ( folder != null ) {
+            catalogVersionOutdated.set( true );
+        }
+    }
+
+
+    /**
+     * Records the current state of the catalog if it has changed since it has been recorded. Hashing the catalog is
+     * expensive, hence this is not done on every change of the catalog.
+     */
+    void updateCatalogVersion() {
+        File folder = this.folder;
+        if ( folder == null || !catalogVersionOutdated.getAndSet( false ) ) {
+            return;
+        }
+        try {
+            Files.writeString( new File( folder, VERSION_FILE ).toPath(), catalogVersion.get() );
+        } catch ( IOException e ) {
+            catalogVersionOutdated.set( true );
+            log.warn( "Unable to update the catalog version of the generated code cache.", e );
+        }
+    }
+
+
+    public int getPreloadedCount() {
+        return preloaded.size();
+    }
+
+
+    public long getEntryCount() {
+        return entries.size();
+    }
+
+
+    private static Map<String, byte[]> compile( String className, String code, Class<?>[] interfaces ) throws CompileException {
+        // Same class as created by the class body evaluator, but as compilation unit to get hold of the bytecode
+        String source = "public final class " + className
+                + " extends " + Utilities.class.getCanonicalName()
+                + " implements " + Arrays.stream( interfaces ).map( Class::getCanonicalName ).collect( Collectors.joining( ", " ) )
+                + " {\n" + code + "\n}\n";
+        Map<String, byte[]> sources = new HashMap<>();
+        sources.put( ClassFile.getSourceResourceName( className ), source.getBytes( StandardCharsets.UTF_8 ) );
+        BytecodeGenerator generator = new BytecodeGenerator( PolyPluginManager.getMainClassLoader(), new MapResourceFinder( sources ) );
+        if ( RuntimeConfig.DEBUG.getBoolean() ) {
+            // Add line numbers to the generated janino class
+            generator.setDebuggingInfo( true, true, true );
+        }
+        try {
+            return generator.generateBytecodes( className );
+        } catch ( ClassNotFoundException e ) {
+            if ( e.getCause() instanceof CompileException ) {
+                throw (CompileException) e.getCause();
+            }
+            throw new CompileException( "Unable to compile generated class " + className, null, e );
+        }
+    }
+
+
+    private void write( File folder, String key, Map<String, byte[]> bytecodes ) {
+        int capacity = RuntimeConfig.GENERATED_CODE_CACHE_SIZE.getInteger();
+        if ( folder == null || capacity <= 0 ) {
+            return;
+        }
+        if ( entries.size() >= capacity ) {
+            evict( folder, capacity );
+        }
+        try {
+            File temp = File.createTempFile( key, ".tmp", folder );
+            try ( DataOutputStream out = new DataOutputStream( Files.newOutputStream( temp.toPath() ) ) ) {
+                out.writeInt( FORMAT_VERSION );
+                out.writeInt( bytecodes.size() );
+                for ( Entry<String, byte[]> entry : bytecodes.entrySet() ) {
+                    out.writeUTF( entry.getKey() );
+                    out.writeInt( entry.getValue().length );
+                    out.write( entry.getValue() );
+                }
+            }
+            Files.move( temp.toPath(), new File( folder, key + SUFFIX ).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+            entries.add( key );
+        } catch ( IOException e ) {
+            failures.incrementAndGet();
+            log.warn( "Unable to write to the generated code cache.", e );
+        }
+    }
+
+
+    /**
+     * Removes the least used entries, such that there is space for new entries.
+     */
+    private synchronized void evict( File folder, int capacity ) {
+        if ( entries.size() < capacity ) {
+            // Another thread has already evicted entries
+            return;
+        }
+        int count = entries.size() - capacity + Math.max( 1, capacity / EVICTION_DIVISOR );
+        entries.stream()
+                .sorted( Comparator.comparingLong( this::getUsage ) )
+                .limit( count )
+                .collect( Collectors.toList() )
+                .forEach( key -> remove( folder, key ) );
+    }
+
+
+    private long getUsage( String key ) {
+        AtomicLong count = usage.get( key );
+        return count == null ? 0 : count.get();
+    }
+
+
+    private void remove( File folder, String key ) {
+        entries.remove( key );
+        preloaded.remove( key );
+        usage.remove( key );
+        try {
+            Files.deleteIfExists( new File( folder, key + SUFFIX ).toPath() );
+        } catch ( IOException e ) {
+            failures.incrementAndGet();
+            log.warn( "Unable to remove an entry of the generated code cache.", e );
+        }
+    }
+
+
+    /**
+     * Reads an entry from disk. Entries which cannot be read are removed.
+     */
+    private Map<String, byte[]> read( File folder, String key ) {
+        if ( folder == null || !entries.contains( key ) ) {
+            return null;
+        }
+        try ( DataInputStream in = new DataInputStream( Files.newInputStream( new File( folder, key + SUFFIX ).toPath() ) ) ) {
+            if ( in.readInt() != FORMAT_VERSION ) {
+                throw new IOException( "Unknown format of the entry " + key );
+            }
+            int count = in.readInt();
+            Map<String, byte[]> bytecodes = new HashMap<>();
+            for ( int i = 0; i < count; i++ ) {
+                String name = in.readUTF();
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully( bytes );
+                bytecodes.put( name, bytes );
+            }
+            return bytecodes;
+        } catch ( IOException e ) {
+            failures.incrementAndGet();
+            log.warn( "Unable to read from the generated code cache, recompiling.", e );
+            remove( folder, key );
+            return null;
+        }
+    }
+
+
+    private void preload( File folder, int count ) {
+        usage.entrySet().stream()
+                .sorted( Comparator.comparingLong( ( Entry<String, AtomicLong> e ) -> e.getValue().get() ).reversed() )
+                .limit( count )
+                .forEach( e -> {
+                    Map<String, byte[]> bytecodes = read( folder, e.getKey() );
+                    if ( bytecodes != null ) {
+                        preloaded.put( e.getKey(), bytecodes );
+                    }
+                } );
+        log.debug( "Preloaded {} entries of the generated code cache.", preloaded.size() );
+    }
+
+
+    private void readUsage( File file ) throws IOException {
+        if ( !file.exists() ) {
+            return;
+        }
+        try ( BufferedReader reader = Files.newBufferedReader( file.toPath() ) ) {
+            reader.lines()
+                    .map( line -> line.split( " " ) )
+                    .filter( parts -> parts.length == 2 )
+                    .forEach( parts -> usage.put( parts[0], new AtomicLong( Long.parseLong( parts[1] ) ) ) );
+        } catch ( UncheckedIOException | NumberFormatException e ) {
+            log.warn( "Ignoring corrupt usage statistics of the generated code cache." );
+        }
+    }
+
+
+    private void writeUsage() {
+        File folder = this.folder;
+        if ( folder == null ) {
+            return;
+        }
+        String content = usage.entrySet().stream()
+                .filter( e -> entries.contains( e.getKey() ) )
+                .map( e -> e.getKey() + " " + e.getValue().get() )
+                .collect( Collectors.joining( "\n" ) );
+        try {
+            Files.writeString( new File( folder, USAGE_FILE ).toPath(), content );
+        } catch ( IOException e ) {
+            log.warn( "Unable to write the usage statistics of the generated code cache.", e );
+        }
+    }
+
+
+    private static String key( String className, String code, Class<?>[] interfaces ) {
+        Hasher hasher = HASH_FUNCTION.newHasher()
+                .putString( className, StandardCharsets.UTF_8 );
+        for ( Class<?> clazz : interfaces ) {
+            hasher.putString( clazz.getName(), StandardCharsets.UTF_8 );
+        }
+        return hasher.putString( code, StandardCharsets.UTF_8 ).hash().toString();
+    }
+
+
+    /**
+     * Hash over the tables, columns and placements of the catalog.
+     */
+    private static String getCatalogVersion() {
+        Catalog catalog = Catalog.getInstance();
+        Hasher hasher = HASH_FUNCTION.newHasher();
+        for ( CatalogTable table : catalog.getTables( null, null, null ) ) {
+            hasher.putLong( table.id ).putString( table.name, StandardCharsets.UTF_8 );
+            for ( CatalogColumn column : catalog.getColumns( table.id ) ) {
+                hasher.putLong( column.id )
+                        .putString( column.name, StandardCharsets.UTF_8 )
+                        .putString( column.type.name(), StandardCharsets.UTF_8 )
+                        .putInt( column.position );
+                for ( CatalogColumnPlacement placement : catalog.getColumnPlacement( column.id ) ) {
+                    hasher.putInt( placement.adapterId )
+                            .putString( String.valueOf( placement.physicalSchemaName ), StandardCharsets.UTF_8 )
+                            .putString( String.valueOf( placement.physicalColumnName ), StandardCharsets.UTF_8 );
+                }
+            }
+        }
+        return hasher.hash().toString();
+    }
+
+
+    /**
+     * Exposes the bytecode generation of Janino without loading the classes.
+     */
+    private static class BytecodeGenerator extends JavaSourceClassLoader {
+
+        BytecodeGenerator( ClassLoader parentClassLoader, MapResourceFinder sourceFinder ) {
+            super( parentClassLoader, sourceFinder, null );
+        }
+
+
+        @Override
+        public Map<String, byte[]> generateBytecodes( String name ) throws ClassNotFoundException {
+            return super.generateBytecodes( name );
+        }
+
+    }
+
+
+    /**
+     * Class loader defining the classes of one cache entry.
+     */
+    private static class BytecodeClassLoader extends ClassLoader {
+
+        private final Map<String, byte[]> bytecodes;
+
+
+        BytecodeClassLoader( ClassLoader parent, Map<String, byte[]> bytecodes ) {
+            super( parent );
+            this.bytecodes = bytecodes;
+        }
+
+
+        @Override
+        protected Class<?> findClass( String name ) throws ClassNotFoundException {
+            byte[] bytes = bytecodes.get( name );
+            if ( bytes == null ) {
+                throw new ClassNotFoundException( name );
+            }
+            return defineClass( name, bytes, 0, bytes.length );
+        }
+
+    }
+
+}
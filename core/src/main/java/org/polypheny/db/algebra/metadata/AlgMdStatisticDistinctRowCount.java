@@ -0,0 +1,86 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.algebra.metadata;
+
+
+import org.polypheny.db.StatisticsManager;
+import org.polypheny.db.algebra.AlgNode;
+import org.polypheny.db.algebra.core.Scan;
+import org.polypheny.db.rex.RexNode;
+import org.polypheny.db.util.BuiltInMethod;
+import org.polypheny.db.util.ImmutableBitSet;
+import org.polypheny.db.util.NumberUtil;
+
+
+/**
+ * Derives the number of distinct values of the columns of a scan from the column statistics collected by the
+ * {@link StatisticsManager}. The distinct values of multiple columns are assumed to be independent.
+ */
+public class AlgMdStatisticDistinctRowCount implements MetadataHandler<BuiltInMetadata.DistinctRowCount> {
+
+    public static final AlgMetadataProvider SOURCE = ReflectiveAlgMetadataProvider.reflectiveSource( BuiltInMethod.DISTINCT_ROW_COUNT.method, new AlgMdStatisticDistinctRowCount() );
+
+
+    protected AlgMdStatisticDistinctRowCount() {
+    }
+
+
+    @Override
+    public MetadataDef<BuiltInMetadata.DistinctRowCount> getDef() {
+        return BuiltInMetadata.DistinctRowCount.DEF;
+    }
+
+
+    public Double getDistinctRowCount( Scan alg, AlgMetadataQuery mq, ImmutableBitSet groupKey, RexNode predicate ) {
+        Double rowCount = mq.getRowCount( alg );
+        Double selectivity = mq.getSelectivity( alg, predicate );
+        if ( AlgMdUtil.areColumnsDefinitelyUnique( mq, alg, groupKey ) ) {
+            return NumberUtil.multiply( rowCount, selectivity );
+        }
+        Long tableId = AlgMdStatisticSelectivity.getTableId( alg );
+        if ( tableId == null || rowCount == null ) {
+            return null;
+        }
+
+        double distinct = 1.0;
+        for ( int index : groupKey ) {
+            Long columnId = AlgMdStatisticSelectivity.getColumnId( alg, tableId, index );
+            Double columnDistinct = columnId == null ? null : StatisticsManager.INSTANCE.getDistinctCount( tableId, columnId );
+            if ( columnDistinct == null ) {
+                return null;
+            }
+            distinct *= columnDistinct;
+        }
+        distinct = Math.min( distinct, rowCount );
+        if ( selectivity == null || selectivity >= 1.0 ) {
+            return distinct;
+        }
+        return AlgMdUtil.numDistinctVals( distinct, rowCount * selectivity );
+    }
+
+
+    // Catch-all rule when none of the others apply.
+    public Double getDistinctRowCount( AlgNode alg, AlgMetadataQuery mq, ImmutableBitSet groupKey, RexNode predicate ) {
+        boolean uniq = AlgMdUtil.areColumnsDefinitelyUnique( mq, alg, groupKey );
+        if ( uniq ) {
+            return NumberUtil.multiply( mq.getRowCount( alg ), mq.getSelectivity( alg, predicate ) );
+        }
+        return null;
+    }
+
+}
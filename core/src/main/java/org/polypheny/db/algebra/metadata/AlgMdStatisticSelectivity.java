@@ -0,0 +1,231 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.algebra.metadata;
+
+
+import java.math.BigDecimal;
+import java.util.List;
+import org.polypheny.db.StatisticsManager;
+import org.polypheny.db.algebra.AlgNode;
+import org.polypheny.db.algebra.constant.Kind;
+import org.polypheny.db.algebra.core.Join;
+import org.polypheny.db.algebra.core.Scan;
+import org.polypheny.db.catalog.Catalog;
+import org.polypheny.db.catalog.entity.CatalogTable;
+import org.polypheny.db.config.RuntimeConfig;
+import org.polypheny.db.plan.AlgOptUtil;
+import org.polypheny.db.rex.RexCall;
+import org.polypheny.db.rex.RexInputRef;
+import org.polypheny.db.rex.RexLiteral;
+import org.polypheny.db.rex.RexNode;
+import org.polypheny.db.type.PolyTypeFamily;
+import org.polypheny.db.util.BuiltInMethod;
+import org.polypheny.db.util.ImmutableBitSet;
+
+
+/**
+ * Derives the selectivity of predicates on scans and of equi-joins from the column statistics collected by the
+ * {@link StatisticsManager}. Predicates for which no statistics are available are estimated using
+ * {@link AlgMdUtil#guessSelectivity(RexNode)}, like in {@link AlgMdSelectivity}.
+ */
+public class AlgMdStatisticSelectivity implements MetadataHandler<BuiltInMetadata.Selectivity> {
+
+    public static final AlgMetadataProvider SOURCE = ReflectiveAlgMetadataProvider.reflectiveSource( BuiltInMethod.SELECTIVITY.method, new AlgMdStatisticSelectivity() );
+
+
+    protected AlgMdStatisticSelectivity() {
+    }
+
+
+    @Override
+    public MetadataDef<BuiltInMetadata.Selectivity> getDef() {
+        return BuiltInMetadata.Selectivity.DEF;
+    }
+
+
+    public Double getSelectivity( Scan alg, AlgMetadataQuery mq, RexNode predicate ) {
+        Long tableId = getTableId( alg );
+        if ( predicate == null || tableId == null ) {
+            return AlgMdUtil.guessSelectivity( predicate );
+        }
+        double selectivity = 1.0;
+        for ( RexNode conjunction : AlgOptUtil.conjunctions( predicate ) ) {
+            Double estimate = estimate( alg, tableId, conjunction );
+            selectivity *= estimate != null ? estimate : AlgMdUtil.guessSelectivity( conjunction );
+        }
+        return selectivity;
+    }
+
+
+    /**
+     * The selectivity of an equality condition between a column of the left and a column of the right input is
+     * 1 / max(ndv(left), ndv(right)), assuming that the values of the side with fewer distinct values are contained
+     * in the other side.
+     */
+    public Double getSelectivity( Join alg, AlgMetadataQuery mq, RexNode predicate ) {
+        if ( predicate == null || !isEnabled() ) {
+            return AlgMdUtil.guessSelectivity( predicate );
+        }
+        int leftCount = alg.getLeft().getRowType().getFieldCount();
+        double selectivity = 1.0;
+        for ( RexNode conjunction : AlgOptUtil.conjunctions( predicate ) ) {
+            Double estimate = null;
+            if ( conjunction.isA( Kind.EQUALS ) ) {
+                List<RexNode> operands = ((RexCall) conjunction).getOperands();
+                if ( operands.get( 0 ) instanceof RexInputRef && operands.get( 1 ) instanceof RexInputRef ) {
+                    int first = ((RexInputRef) operands.get( 0 )).getIndex();
+                    int second = ((RexInputRef) operands.get( 1 )).getIndex();
+                    if ( first >= leftCount ^ second >= leftCount ) {
+                        int left = Math.min( first, second );
+                        int right = Math.max( first, second ) - leftCount;
+                        Double leftDistinct = mq.getDistinctRowCount( alg.getLeft(), ImmutableBitSet.of( left ), null );
+                        Double rightDistinct = mq.getDistinctRowCount( alg.getRight(), ImmutableBitSet.of( right ), null );
+                        if ( leftDistinct != null && rightDistinct != null ) {
+                            estimate = 1.0 / Math.max( 1.0, Math.max( leftDistinct, rightDistinct ) );
+                        }
+                    }
+                }
+            }
+            selectivity *= estimate != null ? estimate : AlgMdUtil.guessSelectivity( conjunction );
+        }
+        return selectivity;
+    }
+
+
+    // Catch-all rule when none of the others apply.
+    public Double getSelectivity( AlgNode alg, AlgMetadataQuery mq, RexNode predicate ) {
+        return AlgMdUtil.guessSelectivity( predicate );
+    }
+
+
+    /**
+     * Estimates the selectivity of a comparison between a column and a literal.
+     *
+     * @return the estimated selectivity or null if there are no statistics for this predicate
+     */
+    private Double estimate( Scan alg, long tableId, RexNode predicate ) {
+        if ( !(predicate instanceof RexCall) ) {
+            return null;
+        }
+        RexCall call = (RexCall) predicate;
+        StatisticsManager statistics = StatisticsManager.INSTANCE;
+        if ( (call.isA( Kind.IS_NULL ) || call.isA( Kind.IS_NOT_NULL )) && call.getOperands().get( 0 ) instanceof RexInputRef ) {
+            Long columnId = getColumnId( alg, tableId, ((RexInputRef) call.getOperands().get( 0 )).getIndex() );
+            Double nullFraction = columnId == null ? null : statistics.getNullFraction( tableId, columnId );
+            if ( nullFraction == null ) {
+                return null;
+            }
+            return call.isA( Kind.IS_NULL ) ? nullFraction : 1 - nullFraction;
+        }
+        if ( !call.isA( Kind.COMPARISON ) || call.getOperands().size() != 2 ) {
+            return null;
+        }
+
+        Kind kind = call.getKind();
+        RexNode first = call.getOperands().get( 0 );
+        RexNode second = call.getOperands().get( 1 );
+        if ( first instanceof RexLiteral && second instanceof RexInputRef ) {
+            // Normalize to <column> <op> <literal>
+            RexNode tmp = first;
+            first = second;
+            second = tmp;
+            kind = kind.reverse();
+        }
+        if ( !(first instanceof RexInputRef) || !(second instanceof RexLiteral) ) {
+            return null;
+        }
+        Long columnId = getColumnId( alg, tableId, ((RexInputRef) first).getIndex() );
+        Object value = getValue( (RexLiteral) second );
+        if ( columnId == null || value == null ) {
+            return null;
+        }
+
+        Double equal = statistics.getEqualitySelectivity( tableId, columnId, value );
+        Double lessOrEqual = kind == Kind.EQUALS || kind == Kind.NOT_EQUALS ? null : statistics.getRangeSelectivity( tableId, columnId, value );
+        Double nullFraction = statistics.getNullFraction( tableId, columnId );
+        Double result;
+        switch ( kind ) {
+            case EQUALS:
+                result = equal;
+                break;
+            case NOT_EQUALS:
+                result = equal == null || nullFraction == null ? null : 1 - nullFraction - equal;
+                break;
+            case LESS_THAN_OR_EQUAL:
+                result = lessOrEqual;
+                break;
+            case LESS_THAN:
+                result = lessOrEqual == null || equal == null ? null : lessOrEqual - equal;
+                break;
+            case GREATER_THAN:
+                result = lessOrEqual == null || nullFraction == null ? null : 1 - nullFraction - lessOrEqual;
+                break;
+            case GREATER_THAN_OR_EQUAL:
+                result = lessOrEqual == null || nullFraction == null || equal == null ? null : 1 - nullFraction - lessOrEqual + equal;
+                break;
+            default:
+                result = null;
+        }
+        return result == null ? null : Math.min( 1.0, Math.max( 0.0, result ) );
+    }
+
+
+    static boolean isEnabled() {
+        return StatisticsManager.INSTANCE != null && RuntimeConfig.STATISTICS_FOR_PLANNING.getBoolean();
+    }
+
+
+    /**
+     * @return the id of the table scanned by the given scan or null if it does not scan a table with statistics
+     */
+    static Long getTableId( Scan alg ) {
+        if ( !isEnabled() || alg.getTable() == null || alg.getTable().getTable() == null ) {
+            return null;
+        }
+        return alg.getTable().getTable().getTableId();
+    }
+
+
+    /**
+     * @return the id of the column at the given position of the output of the scan or null if it cannot be resolved
+     */
+    static Long getColumnId( Scan alg, long tableId, int index ) {
+        Catalog catalog = Catalog.getInstance();
+        if ( index >= alg.getRowType().getFieldCount() || !catalog.checkIfExistsEntity( tableId ) ) {
+            return null;
+        }
+        CatalogTable table = catalog.getTable( tableId );
+        int position = table.getColumnNames().indexOf( alg.getRowType().getFieldNames().get( index ) );
+        return position < 0 ? null : table.fieldIds.get( position );
+    }
+
+
+    private static Object getValue( RexLiteral literal ) {
+        if ( literal.isNull() ) {
+            return null;
+        }
+        PolyTypeFamily family = literal.getType().getPolyType().getFamily();
+        if ( family == PolyTypeFamily.NUMERIC ) {
+            return literal.getValueAs( BigDecimal.class );
+        } else if ( family == PolyTypeFamily.CHARACTER ) {
+            return literal.getValueAs( String.class );
+        }
+        return null;
+    }
+
+}
@@ -74,7 +74,9 @@ protected DefaultAlgMetadataProvider() {
                         AlgMdExplainVisibility.SOURCE,
                         AlgMdPredicates.SOURCE,
                         AlgMdAllPredicates.SOURCE,
-                        AlgMdCollation.SOURCE ) );
+                        AlgMdCollation.SOURCE,
+                        AlgMdStatisticSelectivity.SOURCE,
+                        AlgMdStatisticDistinctRowCount.SOURCE ) );
     }
 
 }
@@ -1726,6 +1726,16 @@ protected final boolean isValidIdentifier( final String str ) {
      */
     public abstract void updatePartitionPlacementPhysicalNames( int adapterId, long partitionId, String physicalSchemaName, String physicalTableName );
 
+    /**
+     * Change the role of a partition placement. Used to promote a placement which has been filled in the background
+     * to an up-to-date placement that may serve reads.
+     *
+     * @param adapterId The id of the adapter
+     * @param partitionId The id of the partition
+     * @param role The new role of the partition placement
+     */
+    public abstract void updatePartitionPlacementRole( int adapterId, long partitionId, DataPlacementRole role );
+
     /**
      * Deletes a placement for a partition.
      *
@@ -1807,6 +1817,19 @@ protected final boolean isValidIdentifier( final String str ) {
      */
     public abstract boolean checkIfExistsPartitionPlacement( int adapterId, long partitionId );
 
+    /**
+     * Checks whether a partition placement exists but is not yet up-to-date, e.g. because it is still being filled by
+     * an online data migration. Such placements receive writes but must not be used to answer queries.
+     *
+     * @param adapterId Adapter on which to check
+     * @param partitionId Partition which to check
+     * @return true if the placement exists and its role is not {@link DataPlacementRole#UPTODATE}
+     */
+    public boolean isPartitionPlacementOutdated( int adapterId, long partitionId ) {
+        return checkIfExistsPartitionPlacement( adapterId, partitionId )
+                && getPartitionPlacement( adapterId, partitionId ).role != DataPlacementRole.UPTODATE;
+    }
+
     /**
      * Deletes all the dependencies of a view. This is used when deleting a view.
      *
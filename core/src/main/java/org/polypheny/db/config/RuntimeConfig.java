@@ -25,7 +25,10 @@
 import lombok.extern.slf4j.Slf4j;
 import org.polypheny.db.config.Config.ConfigListener;
 import org.polypheny.db.ddl.DdlManager.DefaultIndexPlacementStrategy;
+import org.polypheny.db.monitoring.core.MonitoringQueue.OverflowPolicy;
 import org.polypheny.db.processing.ConstraintStrategy;
+import org.polypheny.db.transaction.DeadlockVictimSelection;
+import org.polypheny.db.transaction.Transaction.IsolationLevel;
 import org.polypheny.db.util.background.BackgroundTask;
 import org.polypheny.db.util.background.BackgroundTask.TaskSchedulingType;
 
@@ -141,6 +144,20 @@ public enum RuntimeConfig {
             ConfigType.BOOLEAN,
             "planningGroup" ),
 
+    PARALLEL_PLAN_PREPARATION(
+            "runtime/parallelPlanPreparation",
+            "Plan and implement the proposed routing plans of a query concurrently, each with its own planner. If plans are selected solely based on their approximated costs, dominated plans are not implemented.",
+            false,
+            ConfigType.BOOLEAN,
+            "planningGroup" ),
+
+    PLAN_PREPARATION_PARALLELISM(
+            "runtime/planPreparationParallelism",
+            "Maximum number of proposed routing plans which are planned and implemented concurrently.",
+            4,
+            ConfigType.INTEGER,
+            "planningGroup" ),
+
     VALIDATE_MM_CONTENT_TYPE(
             "validation/validateMultimediaContentType",
             "Validate multimedia data by checking its content-type.",
@@ -156,6 +173,62 @@ public enum RuntimeConfig {
             ConfigType.BOOLEAN ),
     // "processingExecutionGroup" ),
 
+    TWO_PC_PARALLELISM(
+            "runtime/twoPcParallelism",
+            "Maximum number of adapters which are prepared or committed concurrently.",
+            8,
+            ConfigType.INTEGER,
+            "processingExecutionGroup" ),
+
+    TWO_PC_PHASE_TIMEOUT(
+            "runtime/twoPcPhaseTimeout",
+            "Time in seconds all involved adapters have to complete a phase of the two-phase commit. Requests already sent to an adapter are awaited for at most another timeout, adapters which still have not answered are handed to the recovery. 0 disables the timeout.",
+            60,
+            ConfigType.INTEGER,
+            "processingExecutionGroup" ),
+
+    LOCK_ESCALATION_THRESHOLD(
+            "runtime/lockEscalationThreshold",
+            "Number of partitions of a table a transaction may lock individually before the partition locks are escalated to a lock on the whole table. 0 disables lock escalation.",
+            100,
+            ConfigType.INTEGER,
+            "lockingGroup" ),
+
+    TRANSACTION_ISOLATION(
+            "runtime/transactionIsolation",
+            "Isolation level of new transactions. With SNAPSHOT, reads are served from store snapshots and do not lock entities placed on stores supporting snapshot reads; conflicting writers are aborted at commit.",
+            IsolationLevel.SERIALIZABLE,
+            ConfigType.ENUM,
+            "lockingGroup" ),
+
+    DEADLOCK_DETECTION_INTERVAL(
+            "runtime/deadlockDetectionInterval",
+            "Interval in which the wait-for graph is checked for deadlocks. Only edges added since the last check are examined.",
+            TaskSchedulingType.EVERY_SECOND_FIXED,
+            ConfigType.ENUM,
+            "lockingGroup" ),
+
+    DEADLOCK_VICTIM_SELECTION(
+            "runtime/deadlockVictimSelection",
+            "Which transaction of a deadlock is aborted.",
+            DeadlockVictimSelection.YOUNGEST,
+            ConfigType.ENUM,
+            "lockingGroup" ),
+
+    CATALOG_GROUP_COMMIT(
+            "runtime/catalogGroupCommit",
+            "Combine the catalog commits of concurrent transactions into a single commit of the catalog file.",
+            false,
+            ConfigType.BOOLEAN,
+            "catalogGroup" ),
+
+    CATALOG_GROUP_COMMIT_WINDOW(
+            "runtime/catalogGroupCommitWindow",
+            "Time in milliseconds a group commit of the catalog waits for further transactions to join. With 0, only transactions arriving while the previous commit is in progress are combined.",
+            2,
+            ConfigType.INTEGER,
+            "catalogGroup" ),
+
     DYNAMIC_QUERYING(
             "statistics/useDynamicQuerying",
             "Use statistics for query assistance.",
@@ -184,6 +257,20 @@ public enum RuntimeConfig {
             ConfigType.BOOLEAN,
             "statisticSettingsGroup" ),
 
+    STATISTICS_FOR_PLANNING(
+            "statistics/statisticsForPlanning",
+            "Use the collected column statistics to estimate the selectivity of predicates and the number of distinct values during query planning.",
+            true,
+            ConfigType.BOOLEAN,
+            "statisticSettingsGroup" ),
+
+    STATISTIC_DRIFT_THRESHOLD(
+            "statistics/statisticDriftThreshold",
+            "Change of the row count of a table in percent after which cached plans involving this table are invalidated.",
+            50,
+            ConfigType.INTEGER,
+            "statisticSettingsGroup" ),
+
     STATISTIC_BUFFER(
             "statistics/statisticColumnBuffer",
             "Number of buffered statistics e.g. for unique values.",
@@ -224,6 +311,13 @@ public enum RuntimeConfig {
             ConfigType.INTEGER,
             "uiSettingsDataViewGroup" ),
 
+    UI_CURSOR_IDLE_TIMEOUT(
+            "ui/cursorIdleTimeout",
+            "Time in seconds after which the pagination state of a table that is no longer browsed in the data view is discarded.",
+            600,
+            ConfigType.INTEGER,
+            "uiSettingsDataViewGroup" ),
+
     UI_NODE_AMOUNT(
             "ui/nodeAmount",
             "Number of nodes in the graph data view.",
@@ -278,11 +372,18 @@ public enum RuntimeConfig {
 
     QUERY_PLAN_CACHING_SIZE(
             "runtime/queryPlanCachingSize",
-            "Size of the query plan cache. If the limit is reached, the least recently used entry is removed.",
+            "Maximum number of entries in the query plan cache. If the limit is reached, the least recently used entry is removed.",
             1000,
             ConfigType.INTEGER,
             "queryPlanCachingGroup" ),
 
+    QUERY_PLAN_CACHING_MEMORY(
+            "runtime/queryPlanCachingMemory",
+            "Estimated amount of memory in MB the query plan cache may use. If the limit is reached, the least recently used entries are removed.",
+            64,
+            ConfigType.INTEGER,
+            "queryPlanCachingGroup" ),
+
     IMPLEMENTATION_CACHING(
             "runtime/implementationCaching",
             "Cache implemented query plans.",
@@ -299,11 +400,39 @@ public enum RuntimeConfig {
 
     IMPLEMENTATION_CACHING_SIZE(
             "runtime/implementationCachingSize",
-            "Size of the implementation cache. If the limit is reached, the least recently used entry is removed.",
+            "Maximum number of entries in the implementation cache. If the limit is reached, the least recently used entry is removed.",
             1000,
             ConfigType.INTEGER,
             "implementationCachingGroup" ),
 
+    IMPLEMENTATION_CACHING_MEMORY(
+            "runtime/implementationCachingMemory",
+            "Estimated amount of memory in MB the implementation cache may use. If the limit is reached, the least recently used entries are removed.",
+            256,
+            ConfigType.INTEGER,
+            "implementationCachingGroup" ),
+
+    GENERATED_CODE_CACHE(
+            "runtime/generatedCodeCache",
+            "Persist the bytecode of generated code on disk to avoid compiling it again after a restart. Requires a restart.",
+            false,
+            ConfigType.BOOLEAN,
+            "implementationCachingGroup" ),
+
+    GENERATED_CODE_CACHE_SIZE(
+            "runtime/generatedCodeCacheSize",
+            "Maximum number of entries in the persisted generated code cache. If the limit is reached, the least used entries are removed.",
+            10000,
+            ConfigType.INTEGER,
+            "implementationCachingGroup" ),
+
+    GENERATED_CODE_CACHE_PRELOAD(
+            "runtime/generatedCodeCachePreload",
+            "Number of most used entries of the generated code cache which are loaded into memory at startup.",
+            200,
+            ConfigType.INTEGER,
+            "implementationCachingGroup" ),
+
     ROUTING_PLAN_CACHING(
             "runtime/routingPlanCaching",
             "Caching of routing plans.",
@@ -313,11 +442,18 @@ public enum RuntimeConfig {
 
     ROUTING_PLAN_CACHING_SIZE(
             "runtime/routingPlanCachingSize",
-            "Size of the routing plan cache. If the limit is reached, the least recently used entry is removed.",
+            "Maximum number of entries in the routing plan cache. If the limit is reached, the least recently used entry is removed.",
             1000,
             ConfigType.INTEGER,
             "routingCache" ),
 
+    ROUTING_PLAN_CACHING_MEMORY(
+            "runtime/routingPlanCachingMemory",
+            "Estimated amount of memory in MB the routing plan cache may use. If the limit is reached, the least recently used entries are removed.",
+            16,
+            ConfigType.INTEGER,
+            "routingCache" ),
+
     PARAMETERIZE_DML(
             "runtime/parameterizeDML",
             "Whether DML queries should be parameterized.",
@@ -350,6 +486,30 @@ public enum RuntimeConfig {
             1000,
             ConfigType.INTEGER ),
 
+    DATA_MIGRATOR_PARALLELISM(
+            "runtime/dataMigratorParallelism",
+            "Maximum number of partitions which are copied in parallel when data is migrated to a new placement. Every partition is copied on its own connections. Only applies if all involved adapters support concurrent branch statements and the source adapters have not yet been accessed by the transaction.",
+            4,
+            ConfigType.INTEGER ),
+
+    ONLINE_DATA_MIGRATION(
+            "runtime/onlineDataMigration",
+            "Fill new data placements in the background. The table stays available while the data is copied in chunks; the placement serves queries once it is complete.",
+            false,
+            ConfigType.BOOLEAN ),
+
+    ONLINE_DATA_MIGRATION_CHUNK_SIZE(
+            "runtime/onlineDataMigrationChunkSize",
+            "Number of rows which are copied per transaction by the online data migration.",
+            1000,
+            ConfigType.INTEGER ),
+
+    ONLINE_DATA_MIGRATION_RATE_LIMIT(
+            "runtime/onlineDataMigrationRateLimit",
+            "Maximum number of rows per second which are copied by the online data migration. Zero disables the limit.",
+            0,
+            ConfigType.INTEGER ),
+
     UNIQUE_CONSTRAINT_ENFORCEMENT(
             "runtime/uniqueConstraintEnforcement",
             "Enable enforcement of uniqueness constraints.",
@@ -415,6 +575,13 @@ public enum RuntimeConfig {
             ConfigType.INTEGER,
             "processingExecutionGroup" ),
 
+    JDBC_FIRST_FRAME_ROWS(
+            "runtime/jdbcFirstFrameRows",
+            "Maximum number of rows the JDBC interface sends together with the response to an execute request. Smaller results do not need a separate fetch. 0 disables sending rows with the response.",
+            100,
+            ConfigType.INTEGER,
+            "processingExecutionGroup" ),
+
     MONITORING_QUEUE_ACTIVE(
             "runtime/monitoringQueueActive",
             "Enables automatic monitoring of executed events in workload monitoring. If disabled no events are captured, hence the queue remains empty. This also effects routing!",
@@ -424,25 +591,53 @@ public enum RuntimeConfig {
 
     MONITORING_CORE_POOL_SIZE(
             "runtime/corePoolSize",
-            "The number of threads to keep in the pool for processing workload monitoring events, even if they are idle.",
+            "The number of threads processing workload monitoring events.",
             2,
             ConfigType.INTEGER,
             "monitoringSettingsQueueGroup" ),
 
-    MONITORING_MAXIMUM_POOL_SIZE(
-            "runtime/maximumPoolSize",
-            "The maximum number of threads to allow in the pool used for processing workload monitoring events.",
-            8,
+    MONITORING_QUEUE_CAPACITY(
+            "runtime/monitoringQueueCapacity",
+            "Maximum number of workload monitoring events waiting to be processed. Rounded up to the next power of two.",
+            65536,
             ConfigType.INTEGER,
             "monitoringSettingsQueueGroup" ),
 
-    MONITORING_POOL_KEEP_ALIVE_TIME(
-            "runtime/keepAliveTime",
-            "When the number of monitoring processing threads is greater than the core, this is the maximum time that excess idle threads will wait for new tasks before terminating.",
+    MONITORING_BATCH_SIZE(
+            "runtime/monitoringBatchSize",
+            "Maximum number of workload monitoring events processed and written to the repository at once.",
+            256,
+            ConfigType.INTEGER,
+            "monitoringSettingsQueueGroup" ),
+
+    MONITORING_OVERFLOW_POLICY(
+            "runtime/monitoringOverflowPolicy",
+            "How workload monitoring events are handled if the processing falls behind. DROP discards new events if the queue is full, SAMPLE only keeps every n-th event once the queue is half full and BLOCK lets the statement wait until there is space.",
+            OverflowPolicy.SAMPLE,
+            ConfigType.ENUM,
+            "monitoringSettingsQueueGroup" ),
+
+    MONITORING_SAMPLE_RATE(
+            "runtime/monitoringSampleRate",
+            "With the SAMPLE overflow policy, only every n-th event is kept once the queue is half full.",
             10,
             ConfigType.INTEGER,
             "monitoringSettingsQueueGroup" ),
 
+    MONITORING_RETENTION(
+            "runtime/monitoringRetention",
+            "Number of hours the workload monitoring data points are kept. Older data points are deleted hour by hour.",
+            72,
+            ConfigType.INTEGER,
+            "monitoringSettingsQueueGroup" ),
+
+    MONITORING_ROLLUP_RETENTION(
+            "runtime/monitoringRollupRetention",
+            "Number of days the per minute and per hour aggregates of the workload monitoring data points are kept.",
+            30,
+            ConfigType.INTEGER,
+            "monitoringSettingsQueueGroup" ),
+
     TEMPERATURE_FREQUENCY_PROCESSING_INTERVAL(
             "runtime/partitionFrequencyProcessingInterval",
             "Time interval in seconds, how often the access frequency of all TEMPERATURE-partitioned tables is analyzed and redistributed",
@@ -450,6 +645,13 @@ public enum RuntimeConfig {
             ConfigType.ENUM,
             "temperaturePartitionProcessingSettingsGroup" ),
 
+    TEMPERATURE_HYSTERESIS(
+            "runtime/partitionTemperatureHysteresis",
+            "Percentage by which the temperature of a COLD partition has to exceed the coolest HOT partition before it is moved to HOT. Avoids partitions flapping between HOT and COLD.",
+            20,
+            ConfigType.INTEGER,
+            "temperaturePartitionProcessingSettingsGroup" ),
+
     CATALOG_DEBUG_MESSAGES(
             "runtime/catalogDebugMessages",
             "Enable output of catalog debug messages on the monitoring page.",
@@ -515,6 +717,10 @@ public enum RuntimeConfig {
         validationGroup.withTitle( "Query Validation" );
         final WebUiGroup executionGroup = new WebUiGroup( "processingExecutionGroup", processingPage.getId() );
         executionGroup.withTitle( "Query Execution" );
+        final WebUiGroup lockingGroup = new WebUiGroup( "lockingGroup", processingPage.getId() );
+        lockingGroup.withTitle( "Locking" );
+        final WebUiGroup catalogGroup = new WebUiGroup( "catalogGroup", processingPage.getId() );
+        catalogGroup.withTitle( "Catalog" );
         configManager.registerWebUiPage( processingPage );
         configManager.registerWebUiGroup( parsingGroup );
         configManager.registerWebUiGroup( planningGroup );
@@ -524,6 +730,8 @@ public enum RuntimeConfig {
         configManager.registerWebUiGroup( polystoreIndexGroup );
         configManager.registerWebUiGroup( validationGroup );
         configManager.registerWebUiGroup( executionGroup );
+        configManager.registerWebUiGroup( lockingGroup );
+        configManager.registerWebUiGroup( catalogGroup );
 
         // Routing
         final WebUiPage routingPage = new WebUiPage(
@@ -47,4 +47,38 @@ public interface MonitoringQueue {
 
     long getNumberOfProcessedEvents();
 
+    /**
+     * @return Number of events which have not been processed because the queue was full
+     */
+    long getNumberOfDroppedEvents();
+
+    /**
+     * @return Time in milliseconds between the recording and the processing of the most recently processed event
+     */
+    long getEventLag();
+
+    /**
+     * Stops processing the queue. Events which are already queued are still processed.
+     */
+    void shutdown();
+
+
+    /**
+     * How events are handled if the queue is full.
+     */
+    enum OverflowPolicy {
+        /**
+         * New events are discarded.
+         */
+        DROP,
+        /**
+         * Once the queue is half full, only every n-th event is queued. New events are discarded if it is full.
+         */
+        SAMPLE,
+        /**
+         * The thread queuing the event waits until there is space in the queue.
+         */
+        BLOCK
+    }
+
 }
@@ -22,6 +22,8 @@
 import org.polypheny.db.monitoring.events.MonitoringDataPoint;
 import org.polypheny.db.monitoring.events.MonitoringEvent;
 import org.polypheny.db.monitoring.events.QueryPostCost;
+import org.polypheny.db.monitoring.repository.MonitoringRollup;
+import org.polypheny.db.monitoring.repository.MonitoringRollup.Resolution;
 
 
 /**
@@ -72,6 +74,16 @@ public interface MonitoringService {
      */
     <T extends MonitoringDataPoint> List<T> getDataPointsAfter( Class<T> dataPointClass, Timestamp timestamp );
 
+    /**
+     * Get the rollups of the execution times per query class within the given time range.
+     *
+     * @param resolution Size of the time buckets
+     * @param from Start of the time range (inclusive)
+     * @param to End of the time range (exclusive)
+     * @return Returns the rollups ordered by the start of their bucket
+     */
+    List<MonitoringRollup> getRollups( Resolution resolution, Timestamp from, Timestamp to );
+
 
     /**
      * Return current number of pending monitoring evens in the queue.
@@ -40,7 +40,8 @@ enum DataPointType {
         DQL,
         DDL,
         QueryDataPointImpl,
-        QueryPostCostImpl
+        QueryPostCostImpl,
+        COMMIT
     }
 
 }
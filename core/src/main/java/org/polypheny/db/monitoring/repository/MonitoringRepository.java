@@ -16,6 +16,7 @@
 
 package org.polypheny.db.monitoring.repository;
 
+import java.util.List;
 import org.polypheny.db.monitoring.events.MonitoringDataPoint;
 
 
@@ -28,4 +29,14 @@ public interface MonitoringRepository {
      */
     void dataPoint( MonitoringDataPoint dataPoint );
 
+    /**
+     * Processes a batch of monitoring data. Implementations should override this method if they can process several
+     * data points more efficiently than one by one.
+     *
+     * @param dataPoints to be processed
+     */
+    default void dataPoints( List<MonitoringDataPoint> dataPoints ) {
+        dataPoints.forEach( this::dataPoint );
+    }
+
 }
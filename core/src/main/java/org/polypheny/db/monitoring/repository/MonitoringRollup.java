@@ -0,0 +1,59 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.monitoring.repository;
+
+import java.io.Serializable;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+
+/**
+ * Aggregated execution times of one query class within a time bucket. Rollups are kept longer than the raw data points
+ * they are computed from.
+ */
+@Getter
+@AllArgsConstructor
+public class MonitoringRollup implements Serializable {
+
+    private static final long serialVersionUID = 2787018843406520235L;
+
+    private final Resolution resolution;
+    private final long bucketStart; // Start of the bucket in milliseconds since the epoch
+    private final String dataPointType;
+    private final String queryClass;
+    private final long count;
+    private final long p50;
+    private final long p95;
+    private final long p99;
+    private final long max;
+
+
+    public enum Resolution {
+        MINUTE( 60_000L ),
+        HOUR( 3_600_000L );
+
+        @Getter
+        private final long millis;
+
+
+        Resolution( long millis ) {
+            this.millis = millis;
+        }
+    }
+
+}
@@ -21,6 +21,7 @@
 import lombok.NonNull;
 import org.polypheny.db.monitoring.events.MonitoringDataPoint;
 import org.polypheny.db.monitoring.events.QueryPostCost;
+import org.polypheny.db.monitoring.repository.MonitoringRollup.Resolution;
 
 
 /**
@@ -67,6 +68,16 @@ public interface PersistentMonitoringRepository extends MonitoringRepository {
      */
     <T extends MonitoringDataPoint> List<T> getDataPointsAfter( Class<T> dataPointClass, Timestamp timestamp );
 
+    /**
+     * Get the rollups of the execution times per query class within the given time range.
+     *
+     * @param resolution Size of the time buckets
+     * @param from Start of the time range (inclusive)
+     * @param to End of the time range (exclusive)
+     * @return Returns the rollups ordered by the start of their bucket
+     */
+    List<MonitoringRollup> getRollups( Resolution resolution, Timestamp from, Timestamp to );
+
     /**
      * Removes all data points for given monitoring persistent type.
      *
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.partition;
+
+import java.util.List;
+
+
+/**
+ * The partition function of a table compiled into an immutable routing structure. Instances are built once per
+ * partitioning of a table and can be shared between threads.
+ */
+public interface CompiledPartitionFunction {
+
+    /**
+     * The partitions of the table this function has been compiled for. If these change, the function is outdated.
+     */
+    List<Long> getPartitionIds();
+
+    /**
+     * Returns the id of the partition a row with the specified value in the partition column belongs to.
+     *
+     * @param value Typed value of the partition column; null is treated as the unified null value
+     * @return The id of the target partition
+     */
+    long getTargetPartitionId( Object value );
+
+    /**
+     * Assigns a batch of rows to their partitions.
+     *
+     * @param values Values of the partition column, one per row
+     * @return The ids of the target partitions in the order of the values
+     */
+    default long[] routeBatch( List<?> values ) {
+        long[] partitionIds = new long[values.size()];
+        int i = 0;
+        for ( Object value : values ) {
+            partitionIds[i++] = getTargetPartitionId( value );
+        }
+        return partitionIds;
+    }
+
+}
@@ -16,6 +16,7 @@
 
 package org.polypheny.db.partition;
 
+import java.util.Collection;
 import org.polypheny.db.catalog.entity.CatalogTable;
 
 
@@ -39,4 +40,13 @@ public static FrequencyMap setAndGetInstance( FrequencyMap frequencyMap ) {
 
     public abstract void determinePartitionFrequency( CatalogTable table, long invocationTimestamp );
 
+    /**
+     * Registers an access to the given partitions of a table. Called for every routed statement and therefore has to be cheap.
+     *
+     * @param tableId Id of the accessed table
+     * @param partitionIds Partitions touched by the statement
+     * @param isWrite Whether the access was a data manipulation
+     */
+    public abstract void recordAccess( long tableId, Collection<Long> partitionIds, boolean isWrite );
+
 }
@@ -31,6 +31,12 @@ public interface PartitionManager {
      */
     long getTargetPartitionId( CatalogTable catalogTable, String columnValue );
 
+    /**
+     * Returns the partition function of the table, compiled for its current partitions. Should be used instead of
+     * {@link #getTargetPartitionId(CatalogTable, String)} when many rows are routed.
+     */
+    CompiledPartitionFunction getPartitionFunction( CatalogTable catalogTable );
+
     boolean probePartitionGroupDistributionChange( CatalogTable catalogTable, int storeId, long columnId, int threshold );
 
     Map<Long, List<CatalogColumnPlacement>> getRelevantPlacements( CatalogTable catalogTable, List<Long> partitionIds, List<Integer> excludedAdapters );
@@ -76,6 +76,27 @@ void copyPartitionData(
             List<Long> sourcePartitionIds,
             List<Long> targetPartitionIds );
 
+    /**
+     * Copies a bounded chunk of rows of a partition to a placement. The rows are read in primary key order, starting
+     * after the specified key. Rows of the chunk which already exist on the target are replaced. Used to fill placements
+     * online, with every chunk in its own short transaction.
+     *
+     * @param transaction Transactional scope of this chunk
+     * @param store Target Store where data should be migrated to
+     * @param columns Columns placed on the target
+     * @param partitionId Partition which is copied
+     * @param lastPrimaryKey Primary key of the last row of the previous chunk or null to start with the first row
+     * @param chunkSize Maximum number of rows to copy
+     * @return The primary keys of the copied rows in key order; empty if there are no more rows
+     */
+    List<List<Object>> copyDataChunk(
+            Transaction transaction,
+            CatalogAdapter store,
+            List<CatalogColumn> columns,
+            long partitionId,
+            List<Object> lastPrimaryKey,
+            int chunkSize );
+
     AlgRoot buildInsertStatement( Statement statement, List<CatalogColumnPlacement> to, long partitionId );
 
     //is used within copyData
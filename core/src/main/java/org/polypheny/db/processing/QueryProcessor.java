@@ -17,6 +17,7 @@
 package org.polypheny.db.processing;
 
 
+import java.util.Collection;
 import org.polypheny.db.PolyImplementation;
 import org.polypheny.db.algebra.AlgRoot;
 import org.polypheny.db.algebra.type.AlgDataType;
@@ -61,6 +62,14 @@ public interface QueryProcessor {
      */
     void resetCaches();
 
+    /**
+     * Invalidates the entries of the Implementation, QueryPlan and RoutingPlan caches which depend on one of the given
+     * entities and resets the Router caches.
+     *
+     * @param entityIds Ids of the entities modified by a DDL statement
+     */
+    void invalidateCaches( Collection<Long> entityIds );
+
     /**
      * To acquire a global shared lock for a statement.
      * This method is used before the statistics are updated to make sure nothing changes during the updating process.
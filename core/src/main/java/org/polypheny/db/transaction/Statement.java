@@ -27,6 +27,14 @@ public interface Statement {
 
     Transaction getTransaction();
 
+    /**
+     * Returns the identifier under which this statement accesses the adapters. This is the identifier of the transaction,
+     * except for statements created with {@link Transaction#createBranchStatement()}.
+     */
+    default PolyXid getXid() {
+        return getTransaction().getXid();
+    }
+
     QueryProcessor getQueryProcessor();
 
     DataContext getDataContext();
@@ -40,6 +40,13 @@ public interface Transaction {
 
     Statement createStatement();
 
+    /**
+     * Creates a statement with its own branch of the transaction identifier. Adapters which bind a transaction to a
+     * connection open a separate connection for it, so that it can be executed concurrently to the other statements of
+     * the transaction. The branch is prepared, committed and rolled back together with the transaction.
+     */
+    Statement createBranchStatement();
+
     void commit() throws TransactionException;
 
     void rollback() throws TransactionException;
@@ -88,10 +95,21 @@ public interface Transaction {
 
     boolean acceptsOutdated();
 
+    /**
+     * Whether the reads of this transaction are served from store snapshots rather than being isolated by locks. This
+     * is the case for transactions running with {@link IsolationLevel#SNAPSHOT} and for transactions which accept
+     * outdated data.
+     */
+    default boolean readsFromSnapshot() {
+        return acceptsOutdated() || getIsolationLevel() == IsolationLevel.SNAPSHOT;
+    }
+
     AccessMode getAccessMode();
 
     void updateAccessMode( AccessMode accessCandidate );
 
+    IsolationLevel getIsolationLevel();
+
     /**
      * Flavor, how multimedia results should be returned from a store.
      */
@@ -126,4 +144,26 @@ enum AccessMode {
         READWRITE_ACCESS
     }
 
+
+    /**
+     * Transaction isolation level.
+     */
+    enum IsolationLevel {
+
+        /**
+         * Strict two-phase locking, readers and writers lock all accessed entities.
+         */
+        SERIALIZABLE,
+
+        /**
+         * Snapshot isolation: Reads are served from a snapshot of every store, taken by the store at the first statement
+         * of the transaction on that store, and do not lock entities whose placements are all located on stores
+         * providing such snapshots (see {@link org.polypheny.db.adapter.Adapter#supportsSnapshotReads()}). Entities
+         * with a placement on another store are read-locked as with {@link #SERIALIZABLE}. Writers lock the modified
+         * entities and are validated at commit: If another transaction has committed a modification of the same
+         * entities since the first statement of this transaction, this transaction is rolled back (first committer wins).
+         */
+        SNAPSHOT
+    }
+
 }
@@ -1114,6 +1114,12 @@ public void updatePartitionPlacementPhysicalNames( int adapterId, long partition
     }
 
 
+    @Override
+    public void updatePartitionPlacementRole( int adapterId, long partitionId, DataPlacementRole role ) {
+        throw new NotImplementedException();
+    }
+
+
     /**
      * Deletes a placement for a partition.
      *
@@ -35,7 +35,13 @@
 
 
 import com.google.common.annotations.VisibleForTesting;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.junit.ComparisonFailure;
@@ -227,4 +233,35 @@ static int majorVersionFromString( String version ) {
         return Integer.parseInt( matcher.group() );
     }
 
+
+    /**
+     * Runs the given runnable in the given number of threads at once and waits until all of them are done.
+     * All threads are released at the same time to maximize contention.
+     *
+     * @param threads number of threads
+     * @param runnable the runnable executed by every thread
+     * @throws java.util.concurrent.CompletionException if the runnable failed in any of the threads
+     */
+    public static void runConcurrently( int threads, Runnable runnable ) {
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try {
+            CountDownLatch start = new CountDownLatch( 1 );
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for ( int i = 0; i < threads; i++ ) {
+                futures.add( CompletableFuture.runAsync( () -> {
+                    try {
+                        start.await();
+                    } catch ( InterruptedException e ) {
+                        throw new RuntimeException( e );
+                    }
+                    runnable.run();
+                }, executor ) );
+            }
+            start.countDown();
+            CompletableFuture.allOf( futures.toArray( new CompletableFuture[0] ) ).join();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
 }
@@ -39,6 +39,7 @@
 import org.polypheny.db.StatusService.ErrorConfig;
 import org.polypheny.db.StatusService.StatusType;
 import org.polypheny.db.adapter.AdapterManager;
+import org.polypheny.db.adapter.enumerable.GeneratedCodeCache;
 import org.polypheny.db.adapter.index.IndexManager;
 import org.polypheny.db.catalog.Adapter;
 import org.polypheny.db.catalog.Catalog;
@@ -75,6 +76,8 @@
 import org.polypheny.db.processing.AuthenticatorImpl;
 import org.polypheny.db.processing.ConstraintEnforceAttacher.ConstraintTracker;
 import org.polypheny.db.processing.JsonRelProcessorImpl;
+import org.polypheny.db.processing.OnlineDataMigrator;
+import org.polypheny.db.transaction.CommitCoordinator;
 import org.polypheny.db.transaction.PUID;
 import org.polypheny.db.transaction.Transaction;
 import org.polypheny.db.transaction.TransactionException;
@@ -434,8 +437,13 @@ public void join( final long millis ) throws InterruptedException {
                 }
             }
 
+            // Read the transactions which have been in their commit phase when Polypheny-DB was stopped
+            CommitCoordinator.INSTANCE.recover();
+
             trx = transactionManager.startTransaction( Catalog.defaultUserId, Catalog.defaultDatabaseId, false, "Catalog Startup" );
             AdapterManager.getInstance().restoreAdapters();
+            // Commit or roll back the transactions which are still prepared on the adapters
+            CommitCoordinator.INSTANCE.resolve( AdapterManager.getInstance().getAdapters().values() );
             loadDefaults();
             QueryInterfaceManager.getInstance().restoreInterfaces( catalog );
             trx.commit();
@@ -464,6 +472,9 @@ public void join( final long millis ) throws InterruptedException {
         // Initialize statistic settings
         StatisticsManager.getInstance().initializeStatisticSettings();
 
+        // Validate the persisted generated code against the catalog
+        GeneratedCodeCache.INSTANCE.initialize();
+
         // Start Polypheny-UI
         final HttpServer httpServer = new HttpServer( transactionManager, authenticator );
         Thread polyphenyUiThread = new Thread( httpServer );
@@ -491,6 +502,9 @@ public void join( final long millis ) throws InterruptedException {
             throw new RuntimeException( "Something went wrong while initializing index manager.", e );
         }
 
+        // Restart the online data migrations which have been interrupted by a shutdown
+        OnlineDataMigrator.INSTANCE.restoreMigrations();
+
         // Call DockerManager once to remove old containers
         DockerManager.getInstance();
 
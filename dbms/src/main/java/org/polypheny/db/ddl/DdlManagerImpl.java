@@ -121,6 +121,7 @@
 import org.polypheny.db.languages.QueryLanguage;
 import org.polypheny.db.monitoring.events.DdlEvent;
 import org.polypheny.db.monitoring.events.StatementEvent;
+import org.polypheny.db.partition.AbstractPartitionManager;
 import org.polypheny.db.partition.PartitionManager;
 import org.polypheny.db.partition.PartitionManagerFactory;
 import org.polypheny.db.partition.properties.PartitionProperty;
@@ -128,6 +129,7 @@
 import org.polypheny.db.partition.properties.TemperaturePartitionProperty.PartitionCostIndication;
 import org.polypheny.db.partition.raw.RawTemperaturePartitionInformation;
 import org.polypheny.db.processing.DataMigrator;
+import org.polypheny.db.processing.OnlineDataMigrator;
 import org.polypheny.db.routing.RoutingManager;
 import org.polypheny.db.runtime.PolyphenyDbContextException;
 import org.polypheny.db.runtime.PolyphenyDbException;
@@ -158,6 +160,17 @@ private void checkIfDdlPossible( EntityType entityType ) throws DdlOnSourceExcep
     }
 
 
+    /**
+     * Tables whose placements are still filled by an online migration must not be changed structurally, since the
+     * migration relies on the remaining placements being complete and on the columns and keys of the table.
+     */
+    private void checkNoOnlineMigration( CatalogTable catalogTable ) {
+        if ( OnlineDataMigrator.INSTANCE.isMigrating( catalogTable.id ) ) {
+            throw new RuntimeException( "The placements of table '" + catalogTable.name + "' are currently being migrated. Try again once the migration has finished." );
+        }
+    }
+
+
     private void checkViewDependencies( CatalogTable catalogTable ) {
         if ( catalogTable.connectedViews.size() > 0 ) {
             List<String> views = new ArrayList<>();
@@ -508,7 +521,7 @@ public void addColumnToSourceTable( CatalogTable catalogTable, String columnPhys
         catalog.updateColumnPlacementPhysicalPosition( adapterId, columnId, exportedColumn.physicalPosition );
 
         // Reset plan cache implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        statement.getQueryProcessor().invalidateCaches( ImmutableList.of( catalogTable.id ) );
     }
 
 
@@ -532,6 +545,7 @@ private int updateAdjacentPositions( CatalogTable catalogTable, CatalogColumn be
 
     @Override
     public void addColumn( String columnName, CatalogTable catalogTable, String beforeColumnName, String afterColumnName, ColumnTypeInformation type, boolean nullable, String defaultValue, Statement statement ) throws NotNullAndDefaultValueException, ColumnAlreadyExistsException, ColumnNotExistsException {
+        checkNoOnlineMigration( catalogTable );
         columnName = adjustNameIfNeeded( columnName, catalogTable.namespaceId );
         // Check if the column either allows null values or has a default value defined.
         if ( defaultValue == null && !nullable ) {
@@ -582,7 +596,7 @@ public void addColumn( String columnName, CatalogTable catalogTable, String befo
         }
 
         // Reset plan cache implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        statement.getQueryProcessor().invalidateCaches( ImmutableList.of( catalogTable.id ) );
     }
 
 
@@ -783,7 +797,10 @@ public void addPolyphenyIndex( CatalogTable catalogTable, String indexMethodName
 
     @Override
     public void addDataPlacement( CatalogTable catalogTable, List<Long> columnIds, List<Integer> partitionGroupIds, List<String> partitionGroupNames, DataStore dataStore, Statement statement ) throws PlacementAlreadyExistsException {
+        checkNoOnlineMigration( catalogTable );
         List<CatalogColumn> addedColumns = new LinkedList<>();
+        // Online migrated placements only serve queries once all rows have been copied
+        boolean isOnlineMigration = RuntimeConfig.ONLINE_DATA_MIGRATION.getBoolean();
 
         List<Long> tempPartitionGroupList = new ArrayList<>();
 
@@ -907,7 +924,7 @@ else if ( partitionGroupIds.isEmpty() && partitionGroupNames.isEmpty() ) {
                     PlacementType.AUTOMATIC,
                     null,
                     null,
-                    DataPlacementRole.UPTODATE );
+                    isOnlineMigration ? DataPlacementRole.REFRESHABLE : DataPlacementRole.UPTODATE );
         }
 
         // Make sure that the stores have created the schema
@@ -915,17 +932,23 @@ else if ( partitionGroupIds.isEmpty() && partitionGroupNames.isEmpty() ) {
 
         // Create table on store
         dataStore.createTable( statement.getPrepareContext(), catalogTable, catalogTable.partitionProperty.partitionIds );
-        // Copy data to the newly added placements
-        DataMigrator dataMigrator = statement.getTransaction().getDataMigrator();
-        dataMigrator.copyData( statement.getTransaction(), catalog.getAdapter( dataStore.getAdapterId() ), addedColumns, partitionIds );
+        if ( isOnlineMigration ) {
+            // The placement already receives all writes, the existing rows are copied in the background
+            OnlineDataMigrator.INSTANCE.schedule( catalogTable, catalog.getAdapter( dataStore.getAdapterId() ), partitionIds );
+        } else {
+            // Copy data to the newly added placements
+            DataMigrator dataMigrator = statement.getTransaction().getDataMigrator();
+            dataMigrator.copyData( statement.getTransaction(), catalog.getAdapter( dataStore.getAdapterId() ), addedColumns, partitionIds );
+        }
 
         // Reset query plan cache, implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        statement.getQueryProcessor().invalidateCaches( ImmutableList.of( catalogTable.id ) );
     }
 
 
     @Override
     public void addPrimaryKey( CatalogTable catalogTable, List<String> columnNames, Statement statement ) throws DdlOnSourceException {
+        checkNoOnlineMigration( catalogTable );
         // Make sure that this is a table of type TABLE (and not SOURCE)
         checkIfDdlPossible( catalogTable.entityType );
 
@@ -990,6 +1013,7 @@ public void addUniqueConstraint( CatalogTable catalogTable, List<String> columnN
 
     @Override
     public void dropColumn( CatalogTable catalogTable, String columnName, Statement statement ) throws ColumnNotExistsException {
+        checkNoOnlineMigration( catalogTable );
         if ( catalogTable.fieldIds.size() < 2 ) {
             throw new RuntimeException( "Cannot drop sole column of table " + catalogTable.name );
         }
@@ -1040,7 +1064,7 @@ public void dropColumn( CatalogTable catalogTable, String columnName, Statement
         prepareMonitoring( statement, Kind.DROP_COLUMN, catalogTable, column );
 
         // Reset plan cache implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        statement.getQueryProcessor().invalidateCaches( ImmutableList.of( catalogTable.id ) );
     }
 
 
@@ -1111,6 +1135,7 @@ public void dropIndex( CatalogTable catalogTable, String indexName, Statement st
 
     @Override
     public void dropDataPlacement( CatalogTable catalogTable, DataStore storeInstance, Statement statement ) throws PlacementNotExistsException, LastPlacementException {
+        checkNoOnlineMigration( catalogTable );
         // Check whether this placement exists
         if ( !catalogTable.dataPlacements.contains( storeInstance.getAdapterId() ) ) {
             throw new PlacementNotExistsException();
@@ -1147,7 +1172,7 @@ public void dropDataPlacement( CatalogTable catalogTable, DataStore storeInstanc
         catalog.removeDataPlacement( storeInstance.getAdapterId(), catalogTable.id );
 
         // Reset query plan cache, implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        statement.getQueryProcessor().invalidateCaches( ImmutableList.of( catalogTable.id ) );
     }
 
 
@@ -1165,6 +1190,7 @@ public void dropPrimaryKey( CatalogTable catalogTable ) throws DdlOnSourceExcept
 
     @Override
     public void setColumnType( CatalogTable catalogTable, String columnName, ColumnTypeInformation type, Statement statement ) throws DdlOnSourceException, ColumnNotExistsException, GenericCatalogException {
+        checkNoOnlineMigration( catalogTable );
         // Make sure that this is a table of type TABLE (and not SOURCE)
         checkIfDdlPossible( catalogTable.entityType );
 
@@ -1190,12 +1216,13 @@ public void setColumnType( CatalogTable catalogTable, String columnName, ColumnT
         }
 
         // Reset plan cache implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        statement.getQueryProcessor().invalidateCaches( ImmutableList.of( catalogTable.id ) );
     }
 
 
     @Override
     public void setColumnNullable( CatalogTable catalogTable, String columnName, boolean nullable, Statement statement ) throws ColumnNotExistsException, DdlOnSourceException, GenericCatalogException {
+        checkNoOnlineMigration( catalogTable );
         CatalogColumn catalogColumn = getCatalogColumn( catalogTable.id, columnName );
 
         // Make sure that this is a table of type TABLE (and not SOURCE)
@@ -1207,7 +1234,7 @@ public void setColumnNullable( CatalogTable catalogTable, String columnName, boo
         catalog.setNullable( catalogColumn.id, nullable );
 
         // Reset plan cache implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        statement.getQueryProcessor().invalidateCaches( ImmutableList.of( catalogTable.id ) );
     }
 
 
@@ -1258,12 +1285,13 @@ public void setColumnPosition( CatalogTable catalogTable, String columnName, Str
         // Do nothing
 
         // Reset plan cache implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        statement.getQueryProcessor().invalidateCaches( ImmutableList.of( catalogTable.id ) );
     }
 
 
     @Override
     public void setColumnCollation( CatalogTable catalogTable, String columnName, Collation collation, Statement statement ) throws ColumnNotExistsException, DdlOnSourceException {
+        checkNoOnlineMigration( catalogTable );
         CatalogColumn catalogColumn = getCatalogColumn( catalogTable.id, columnName );
 
         // Check if model permits operation
@@ -1275,7 +1303,7 @@ public void setColumnCollation( CatalogTable catalogTable, String columnName, Co
         catalog.setCollation( catalogColumn.id, collation );
 
         // Reset plan cache implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        statement.getQueryProcessor().invalidateCaches( ImmutableList.of( catalogTable.id ) );
     }
 
 
@@ -1289,7 +1317,7 @@ public void setDefaultValue( CatalogTable catalogTable, String columnName, Strin
         addDefaultValue( defaultValue, catalogColumn.id );
 
         // Reset plan cache implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        statement.getQueryProcessor().invalidateCaches( ImmutableList.of( catalogTable.id ) );
     }
 
 
@@ -1303,13 +1331,14 @@ public void dropDefaultValue( CatalogTable catalogTable, String columnName, Stat
         catalog.deleteDefaultValue( catalogColumn.id );
 
         // Reset plan cache implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        statement.getQueryProcessor().invalidateCaches( ImmutableList.of( catalogTable.id ) );
     }
 
 
     @Override
     public void modifyDataPlacement( CatalogTable catalogTable, List<Long> columnIds, List<Integer> partitionGroupIds, List<String> partitionGroupNames, DataStore storeInstance, Statement statement )
             throws PlacementNotExistsException, IndexPreventsRemovalException, LastPlacementException {
+        checkNoOnlineMigration( catalogTable );
 
         // Check whether this placement already exists
         if ( !catalogTable.dataPlacements.contains( storeInstance.getAdapterId() ) ) {
@@ -1482,12 +1511,13 @@ else if ( !partitionGroupNames.isEmpty() && partitionGroupIds.isEmpty() ) {
         }
 
         // Reset query plan cache, implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        statement.getQueryProcessor().invalidateCaches( ImmutableList.of( catalogTable.id ) );
     }
 
 
     @Override
     public void modifyPartitionPlacement( CatalogTable catalogTable, List<Long> partitionGroupIds, DataStore storeInstance, Statement statement ) throws LastPlacementException {
+        checkNoOnlineMigration( catalogTable );
         int storeId = storeInstance.getAdapterId();
         List<Long> newPartitions = new ArrayList<>();
         List<Long> removedPartitions = new ArrayList<>();
@@ -1553,7 +1583,7 @@ public void modifyPartitionPlacement( CatalogTable catalogTable, List<Long> part
         }
 
         // Reset query plan cache, implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        statement.getQueryProcessor().invalidateCaches( ImmutableList.of( catalogTable.id ) );
     }
 
 
@@ -1602,7 +1632,7 @@ public void addColumnPlacement( CatalogTable catalogTable, String columnName, Da
         }
 
         // Reset query plan cache, implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        statement.getQueryProcessor().invalidateCaches( ImmutableList.of( catalogTable.id ) );
     }
 
 
@@ -1611,6 +1641,7 @@ public void dropColumnPlacement( CatalogTable catalogTable, String columnName, D
         if ( storeInstance == null ) {
             throw new UnknownAdapterException( "" );
         }
+        checkNoOnlineMigration( catalogTable );
         // Check whether this placement already exists
         if ( !catalogTable.dataPlacements.contains( storeInstance.getAdapterId() ) ) {
             throw new PlacementNotExistsException();
@@ -1644,7 +1675,7 @@ public void dropColumnPlacement( CatalogTable catalogTable, String columnName, D
         catalog.deleteColumnPlacement( storeInstance.getAdapterId(), catalogColumn.id, false );
 
         // Reset query plan cache, implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        statement.getQueryProcessor().invalidateCaches( ImmutableList.of( catalogTable.id ) );
     }
 
 
@@ -1673,7 +1704,7 @@ public void renameTable( CatalogTable catalogTable, String newTableName, Stateme
         StatisticsManager.getInstance().updateTableName( catalogTable, newTableName );
 
         // Reset plan cache implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        statement.getQueryProcessor().invalidateCaches( ImmutableList.of( catalogTable.id ) );
     }
 
 
@@ -1693,7 +1724,7 @@ public void renameColumn( CatalogTable catalogTable, String columnName, String n
         StatisticsManager.getInstance().updateColumnName( catalogColumn, newColumnName );
 
         // Reset plan cache implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        statement.getQueryProcessor().invalidateCaches( ImmutableList.of( catalogTable.id ) );
     }
 
 
@@ -2450,6 +2481,7 @@ private void checkDocumentModel( long schemaId, List<FieldInformation> columns,
 
     @Override
     public void addPartitioning( PartitionInformation partitionInfo, List<DataStore> stores, Statement statement ) throws GenericCatalogException, UnknownPartitionTypeException, UnknownColumnException, PartitionGroupNamesNotUniqueException, UnknownDatabaseException, UnknownTableException, TransactionException, UnknownSchemaException, UnknownUserException, UnknownKeyException {
+        checkNoOnlineMigration( partitionInfo.table );
         CatalogColumn catalogColumn = catalog.getColumn( partitionInfo.table.id, partitionInfo.columnName );
 
         PartitionType actualPartitionType = PartitionType.getByName( partitionInfo.typeName );
@@ -2734,6 +2766,7 @@ public void addPartitioning( PartitionInformation partitionInfo, List<DataStore>
 
     @Override
     public void removePartitioning( CatalogTable partitionedTable, Statement statement ) throws UnknownDatabaseException, GenericCatalogException, UnknownTableException, TransactionException, UnknownSchemaException, UnknownUserException, UnknownKeyException {
+        checkNoOnlineMigration( partitionedTable );
         long tableId = partitionedTable.id;
 
         if ( log.isDebugEnabled() ) {
@@ -2750,6 +2783,7 @@ public void removePartitioning( CatalogTable partitionedTable, Statement stateme
 
         // Update catalog table
         catalog.mergeTable( tableId );
+        AbstractPartitionManager.removePartitionFunction( tableId );
 
         // Now get the merged table
         CatalogTable mergedTable = catalog.getTable( tableId );
@@ -2854,7 +2888,7 @@ public void removePartitioning( CatalogTable partitionedTable, Statement stateme
         }
 
         // Reset query plan cache, implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        statement.getQueryProcessor().invalidateCaches( ImmutableList.of( partitionedTable.id ) );
     }
 
 
@@ -2996,6 +3030,7 @@ public void dropMaterializedView( CatalogTable materializedView, Statement state
 
     @Override
     public void dropTable( CatalogTable catalogTable, Statement statement ) throws DdlOnSourceException {
+        checkNoOnlineMigration( catalogTable );
         // Make sure that this is a table of type TABLE (and not SOURCE)
         //checkIfDdlPossible( catalogEntity.tableType );
 
@@ -3095,6 +3130,7 @@ public void dropTable( CatalogTable catalogTable, Statement statement ) throws D
 
         // Delete the table
         catalog.deleteTable( catalogTable.id );
+        AbstractPartitionManager.removePartitionFunction( catalogTable.id );
 
         // Monitor dropTables for statistics
         prepareMonitoring( statement, Kind.DROP_TABLE, catalogTable );
@@ -3103,12 +3139,13 @@ public void dropTable( CatalogTable catalogTable, Statement statement ) throws D
         statement.getTransaction().getCatalogTables().remove( catalogTable );
 
         // Reset plan cache implementation cache & routing cache
-        statement.getQueryProcessor().resetCaches();
+        statement.getQueryProcessor().invalidateCaches( ImmutableList.of( catalogTable.id ) );
     }
 
 
     @Override
     public void truncate( CatalogTable catalogTable, Statement statement ) {
+        checkNoOnlineMigration( catalogTable );
         // Make sure that the table can be modified
         if ( !catalogTable.modifiable ) {
             throw new RuntimeException( "Unable to modify a read-only table!" );
@@ -20,6 +20,7 @@
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import lombok.extern.slf4j.Slf4j;
 import org.polypheny.db.catalog.Catalog;
 import org.polypheny.db.catalog.entity.CatalogAdapter;
@@ -35,10 +36,41 @@ public abstract class AbstractPartitionManager implements PartitionManager {
     // Returns the Index of the partition where to place the object
     protected final Catalog catalog = Catalog.getInstance();
 
+    // Partition managers are created on demand, hence the compiled functions are shared: tableId -> function
+    static final Map<Long, CompiledPartitionFunction> PARTITION_FUNCTIONS = new ConcurrentHashMap<>();
+
 
     // Returns the Index of the partition where to place the object
     @Override
-    public abstract long getTargetPartitionId( CatalogTable catalogTable, String columnValue );
+    public long getTargetPartitionId( CatalogTable catalogTable, String columnValue ) {
+        return getPartitionFunction( catalogTable ).getTargetPartitionId( columnValue );
+    }
+
+
+    @Override
+    public CompiledPartitionFunction getPartitionFunction( CatalogTable catalogTable ) {
+        CompiledPartitionFunction function = PARTITION_FUNCTIONS.get( catalogTable.id );
+        if ( function == null || !function.getPartitionIds().equals( catalogTable.partitionProperty.partitionIds ) ) {
+            // The partitions of the table have changed since the function has been compiled
+            function = compile( catalogTable );
+            PARTITION_FUNCTIONS.put( catalogTable.id, function );
+        }
+        return function;
+    }
+
+
+    /**
+     * Removes the compiled partition function of a table, e.g. if the table has been dropped.
+     */
+    public static void removePartitionFunction( long tableId ) {
+        PARTITION_FUNCTIONS.remove( tableId );
+    }
+
+
+    /**
+     * Compiles the partition function for the current partitions of the table.
+     */
+    protected abstract CompiledPartitionFunction compile( CatalogTable catalogTable );
 
 
     @Override
@@ -71,7 +103,8 @@ public Map<Long, List<CatalogColumnPlacement>> getRelevantPlacements( CatalogTab
 
                 for ( long columnId : catalogTable.fieldIds ) {
                     List<CatalogColumnPlacement> ccps = catalog.getColumnPlacementsByPartitionGroup( catalogTable.id, catalogPartition.partitionGroupId, columnId );
-                    ccps.removeIf( ccp -> excludedAdapters.contains( ccp.adapterId ) );
+                    // Placements which are still being filled by an online migration must not answer queries
+                    ccps.removeIf( ccp -> excludedAdapters.contains( ccp.adapterId ) || catalog.isPartitionPlacementOutdated( ccp.adapterId, partitionId ) );
                     if ( !ccps.isEmpty() ) {
                         // Get first column placement which contains partition
                         relevantCcps.add( ccps.get( 0 ) );
@@ -134,6 +167,9 @@ public Map<Integer, Map<Long, List<CatalogColumnPlacement>>> getAllPlacements( C
                 List<CatalogAdapter> adapters = catalog.getAdaptersByPartitionGroup( catalogTable.id, partitionId );
 
                 for ( CatalogAdapter adapter : adapters ) {
+                    if ( catalog.isPartitionPlacementOutdated( adapter.id, partitionId ) ) {
+                        continue;
+                    }
                     if ( !adapterPlacements.containsKey( adapter.id ) ) {
                         adapterPlacements.put( adapter.id, new HashMap<>() );
                     }
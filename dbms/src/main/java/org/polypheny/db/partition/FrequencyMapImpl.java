@@ -16,16 +16,21 @@
 
 package org.polypheny.db.partition;
 
-import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.polypheny.db.adapter.Adapter;
 import org.polypheny.db.adapter.AdapterManager;
@@ -36,31 +41,33 @@
 import org.polypheny.db.catalog.Catalog.PlacementType;
 import org.polypheny.db.catalog.entity.CatalogAdapter;
 import org.polypheny.db.catalog.entity.CatalogColumn;
-import org.polypheny.db.catalog.entity.CatalogPartition;
 import org.polypheny.db.catalog.entity.CatalogTable;
 import org.polypheny.db.catalog.exceptions.GenericCatalogException;
 import org.polypheny.db.catalog.exceptions.UnknownDatabaseException;
 import org.polypheny.db.catalog.exceptions.UnknownSchemaException;
 import org.polypheny.db.catalog.exceptions.UnknownUserException;
 import org.polypheny.db.config.RuntimeConfig;
-import org.polypheny.db.monitoring.core.MonitoringServiceProvider;
-import org.polypheny.db.monitoring.events.metrics.DmlDataPoint;
-import org.polypheny.db.monitoring.events.metrics.QueryDataPointImpl;
+import org.polypheny.db.information.InformationGroup;
+import org.polypheny.db.information.InformationManager;
+import org.polypheny.db.information.InformationPage;
+import org.polypheny.db.information.InformationTable;
 import org.polypheny.db.partition.properties.TemperaturePartitionProperty;
+import org.polypheny.db.partition.properties.TemperaturePartitionProperty.PartitionCostIndication;
 import org.polypheny.db.processing.DataMigrator;
 import org.polypheny.db.transaction.Statement;
 import org.polypheny.db.transaction.Transaction;
 import org.polypheny.db.transaction.TransactionException;
 import org.polypheny.db.transaction.TransactionManager;
 import org.polypheny.db.transaction.TransactionManagerImpl;
+import org.polypheny.db.util.Pair;
 import org.polypheny.db.util.background.BackgroundTask.TaskPriority;
 import org.polypheny.db.util.background.BackgroundTask.TaskSchedulingType;
 import org.polypheny.db.util.background.BackgroundTaskManager;
 
 
 /**
- * Periodically retrieves information from the MonitoringService to get current statistics about
- * the frequency map to determine which chunk of data should reside in HOT {@literal &}  which in COLD partition
+ * Keeps a decaying access temperature per partition, which is updated on every routed statement, and periodically uses it
+ * to determine which chunk of data should reside in HOT {@literal &}  which in COLD partition
  *
  * Only one instance of the MAP exists.
  * Which gets created once the first TEMPERATURE partitioned table gets created. (Including creation of BackgroundTask)
@@ -77,11 +84,50 @@ public class FrequencyMapImpl extends FrequencyMap {
 
     // Make use of central configuration
     private String backgroundTaskId;
-    private Map<Long, Long> accessCounter = new HashMap<>();
+
+    // Temperature per partitionId, tables for which accesses are recorded
+    private final Map<Long, PartitionTemperature> partitionTemperatures = new ConcurrentHashMap<>();
+    private final Map<Long, CatalogTable> trackedTables = new ConcurrentHashMap<>();
 
 
     public FrequencyMapImpl( Catalog catalog ) {
         this.catalog = catalog;
+        registerInformationPage();
+    }
+
+
+    private void registerInformationPage() {
+        InformationManager im = InformationManager.getInstance();
+
+        InformationPage page = new InformationPage( "Partition Temperature" );
+        im.addPage( page );
+
+        InformationGroup heatMapGroup = new InformationGroup( page, "Heat Map" );
+        im.addGroup( heatMapGroup );
+
+        InformationTable heatMapTable = new InformationTable(
+                heatMapGroup,
+                Arrays.asList( "Table", "Partition", "Group", "Read Temperature", "Write Temperature" ) );
+        im.registerInformation( heatMapTable );
+
+        heatMapGroup.setRefreshFunction( () -> {
+            heatMapTable.reset();
+            for ( CatalogTable table : trackedTables.values() ) {
+                long hotPartitionGroupId = ((TemperaturePartitionProperty) table.partitionProperty).getHotPartitionGroupId();
+                for ( long partitionId : table.partitionProperty.partitionIds ) {
+                    PartitionTemperature temperature = partitionTemperatures.get( partitionId );
+                    if ( temperature == null ) {
+                        continue;
+                    }
+                    heatMapTable.addRow(
+                            table.name,
+                            partitionId,
+                            catalog.getPartition( partitionId ).partitionGroupId == hotPartitionGroupId ? "HOT" : "COLD",
+                            String.format( Locale.ENGLISH, "%.2f", temperature.getReadTemperature() ),
+                            String.format( Locale.ENGLISH, "%.2f", temperature.getWriteTemperature() ) );
+                }
+            }
+        } );
     }
 
 
@@ -124,26 +170,19 @@ private void processAllPeriodicTables() {
 
         long invocationTimestamp = System.currentTimeMillis();
         List<CatalogTable> periodicTables = catalog.getTablesForPeriodicProcessing();
+        Set<Long> partitionIds = new HashSet<>();
         // Retrieve all Tables which rely on periodic processing
         for ( CatalogTable table : periodicTables ) {
             if ( table.partitionProperty.partitionType == PartitionType.TEMPERATURE ) {
+                partitionIds.addAll( table.partitionProperty.partitionIds );
                 determinePartitionFrequency( table, invocationTimestamp );
             }
         }
-        log.debug( "Finished processing access frequency of tables" );
-    }
 
-
-    private void incrementPartitionAccess( long identifiedPartitionId, List<Long> partitionIds ) {
-        // Outer if is needed to ignore frequencies from old non-existing partitionIds
-        // Which are not yet linked to the table but are still in monitoring
-        if ( partitionIds.contains( identifiedPartitionId ) ) {
-            if ( accessCounter.containsKey( identifiedPartitionId ) ) {
-                accessCounter.replace( identifiedPartitionId, accessCounter.get( identifiedPartitionId ) + 1 );
-            } else {
-                accessCounter.put( identifiedPartitionId, (long) 1 );
-            }
-        }
+        // Forget about dropped tables and partitions
+        trackedTables.keySet().removeIf( id -> periodicTables.stream().noneMatch( t -> t.id == id ) );
+        partitionTemperatures.keySet().retainAll( partitionIds );
+        log.debug( "Finished processing access frequency of tables" );
     }
 
 
@@ -151,18 +190,24 @@ private void incrementPartitionAccess( long identifiedPartitionId, List<Long> pa
      * Determines the partition distribution for temperature partitioned tables by deciding which partitions should be moved from HOT to COLD
      * and from COLD to HOT. To setup the table corresponding to the current access frequencies patterns.
      *
+     * A COLD partition is only moved to HOT if there is a free slot in HOT or if it is at least {@link RuntimeConfig#TEMPERATURE_HYSTERESIS}
+     * percent warmer than the coolest partition remaining in HOT. Together with the tolerance band of hotAccessPercentageOut this prevents
+     * partitions with similar temperatures from being moved back and forth on every run.
+     *
      * @param table Temperature partitioned Table
+     * @param temperatures Current temperature per partition of the table
      */
-    private void determinePartitionDistribution( CatalogTable table ) {
+    private void determinePartitionDistribution( CatalogTable table, Map<Long, Double> temperatures ) {
         if ( log.isDebugEnabled() ) {
             log.debug( "Determine access frequency of partitions of table: {}", table.name );
         }
+        TemperaturePartitionProperty property = (TemperaturePartitionProperty) table.partitionProperty;
 
         // Get percentage of tables which can remain in HOT
-        long numberOfPartitionsInHot = (table.partitionProperty.partitionIds.size() * ((TemperaturePartitionProperty) table.partitionProperty).getHotAccessPercentageIn()) / 100;
+        long numberOfPartitionsInHot = (table.partitionProperty.partitionIds.size() * property.getHotAccessPercentageIn()) / 100;
 
         // These are the tables than can remain in HOT
-        long allowedTablesInHot = (table.partitionProperty.partitionIds.size() * ((TemperaturePartitionProperty) table.partitionProperty).getHotAccessPercentageOut()) / 100;
+        long allowedTablesInHot = (table.partitionProperty.partitionIds.size() * property.getHotAccessPercentageOut()) / 100;
 
         if ( numberOfPartitionsInHot == 0 ) {
             numberOfPartitionsInHot = 1;
@@ -171,74 +216,85 @@ private void determinePartitionDistribution( CatalogTable table ) {
             allowedTablesInHot = 1;
         }
 
-        List<Long> partitionsFromColdToHot = new ArrayList<>();
-        List<Long> partitionsFromHotToCold = new ArrayList<>();
-
-        List<Long> partitionsAllowedInHot = new ArrayList<>();
-
-        HashMap<Long, Long> descSortedMap = accessCounter
+        List<Long> descSortedPartitions = temperatures
                 .entrySet()
                 .stream()
-                .sorted( (Map.Entry.<Long, Long>comparingByValue().reversed()) )
-                .collect( Collectors.toMap( Map.Entry::getKey, Map.Entry::getValue, ( e1, e2 ) -> e1, LinkedHashMap::new ) );
-
-        //Start gathering the partitions beginning with the most frequently accessed
-        int hotCounter = 0;
-        int toleranceCounter = 0;
-        boolean skip = false;
-        boolean firstRound = true;
-        for ( Entry<Long, Long> currentEntry : descSortedMap.entrySet() ) {
-            if ( currentEntry.getValue() == 0 ) {
-                if ( firstRound ) {
-                    skip = true;
-                }
-                break;
-            }
-            firstRound = false;
-            // Gather until you reach getHotAccessPercentageIn() #tables
-            if ( hotCounter < numberOfPartitionsInHot ) {
-                //Tables that should be placed in HOT if not already there
-                partitionsFromColdToHot.add( currentEntry.getKey() );
-                hotCounter++;
+                .filter( e -> e.getValue() > 0 )
+                .sorted( Map.Entry.<Long, Double>comparingByValue().reversed() )
+                .map( Entry::getKey )
+                .collect( Collectors.toList() );
+
+        // Nothing has been accessed yet, keep the current distribution
+        if ( descSortedPartitions.isEmpty() ) {
+            return;
+        }
 
-            }
+        List<Long> currentHotPartitions = Catalog.INSTANCE.getPartitions( property.getHotPartitionGroupId() )
+                .stream()
+                .map( p -> p.id )
+                .collect( Collectors.toList() );
+
+        Pair<List<Long>, List<Long>> movedPartitions = selectMovedPartitions(
+                descSortedPartitions,
+                temperatures,
+                currentHotPartitions,
+                numberOfPartitionsInHot,
+                allowedTablesInHot,
+                RuntimeConfig.TEMPERATURE_HYSTERESIS.getInteger() );
+
+        if ( !movedPartitions.left.isEmpty() || !movedPartitions.right.isEmpty() ) {
+            redistributePartitions( table, movedPartitions.left, movedPartitions.right );
+        }
+    }
 
-            if ( toleranceCounter >= allowedTablesInHot ) {
-                break;
+
+    /**
+     * Decides which partitions have to change between the HOT and the COLD partition group.
+     *
+     * @param descSortedPartitions Accessed partitions of the table, warmest first
+     * @param temperatures Current temperature per partition of the table
+     * @param currentHotPartitions Partitions currently placed in HOT
+     * @param numberOfPartitionsInHot Number of the warmest partitions which should be placed in HOT
+     * @param allowedTablesInHot Number of the warmest partitions which can remain in HOT
+     * @param hysteresisPercent Percentage by which a COLD partition has to be warmer than the coolest HOT partition to replace it
+     * @return Partitions to move from COLD to HOT (left) and from HOT to COLD (right)
+     */
+    static Pair<List<Long>, List<Long>> selectMovedPartitions(
+            List<Long> descSortedPartitions,
+            Map<Long, Double> temperatures,
+            List<Long> currentHotPartitions,
+            long numberOfPartitionsInHot,
+            long allowedTablesInHot,
+            int hysteresisPercent ) {
+        // Partitions in the top X % (to be placed in HOT) and partitions which can remain in HOT if they happen to be in that threshold
+        List<Long> partitionsToBeHot = descSortedPartitions.subList( 0, (int) Math.min( numberOfPartitionsInHot, descSortedPartitions.size() ) );
+        List<Long> partitionsAllowedInHot = descSortedPartitions.subList( 0, (int) Math.min( allowedTablesInHot, descSortedPartitions.size() ) );
+
+        // Partitions currently in HOT which have fallen out of the tolerance band are placed in COLD
+        List<Long> partitionsFromHotToCold = new ArrayList<>();
+        double coolestHotTemperature = Double.MAX_VALUE;
+        for ( long partitionId : currentHotPartitions ) {
+            if ( partitionsAllowedInHot.contains( partitionId ) ) {
+                coolestHotTemperature = Math.min( coolestHotTemperature, temperatures.getOrDefault( partitionId, 0.0 ) );
             } else {
-                // Tables that can remain in HOT if they happen to be in that threshold
-                partitionsAllowedInHot.add( currentEntry.getKey() );
-                toleranceCounter++;
+                partitionsFromHotToCold.add( partitionId );
             }
         }
+        long remainingInHot = currentHotPartitions.size() - partitionsFromHotToCold.size();
 
-        if ( !skip ) {
-            // Which partitions are in top X % (to be placed in HOT)
-
-            // Which of those are currently in cold --> action needed
-
-            List<CatalogPartition> currentHotPartitions = Catalog.INSTANCE.getPartitions( ((TemperaturePartitionProperty) table.partitionProperty).getHotPartitionGroupId() );
-            for ( CatalogPartition catalogPartition : currentHotPartitions ) {
-
-                // Remove partitions from List if they are already in HOT (not necessary to send to DataMigrator)
-                if ( partitionsFromColdToHot.contains( catalogPartition.id ) ) {
-                    partitionsFromColdToHot.remove( catalogPartition.id );
-
-                } else { // If they are currently in hot but should not be placed in HOT anymore. This means that they should possibly be thrown out and placed in cold
-
-                    if ( partitionsAllowedInHot.contains( catalogPartition.id ) ) {
-                        continue;
-                    } else { // place from HOT to cold
-                        partitionsFromHotToCold.add( catalogPartition.id );
-                    }
-                }
-
+        // Which of the top partitions are currently in COLD --> action needed if they are clearly warmer than what is already in HOT
+        double hysteresis = 1 + hysteresisPercent / 100.0;
+        List<Long> partitionsFromColdToHot = new ArrayList<>();
+        for ( long partitionId : partitionsToBeHot ) {
+            if ( currentHotPartitions.contains( partitionId ) ) {
+                continue;
             }
-
-            if ( (!partitionsFromColdToHot.isEmpty() || !partitionsFromHotToCold.isEmpty()) ) {
-                redistributePartitions( table, partitionsFromColdToHot, partitionsFromHotToCold );
+            if ( remainingInHot < numberOfPartitionsInHot || temperatures.get( partitionId ) >= coolestHotTemperature * hysteresis ) {
+                partitionsFromColdToHot.add( partitionId );
+                remainingInHot++;
             }
         }
+        return Pair.of( partitionsFromColdToHot, partitionsFromHotToCold );
     }
 
 
@@ -418,49 +474,104 @@ private List<Long> filterList( int adapterId, long tableId, List<Long> partition
 
 
     /**
-     * Determines the partition frequency for each partition of a temperature partitioned table based on the chosen Cost Indication (ALL, WRITE,READ)
-     * in a desired time interval.
+     * Determines the temperature of each partition of a temperature partitioned table based on the chosen Cost Indication (ALL, WRITE, READ).
+     * The accesses recorded since the last invocation are folded into an exponentially decaying temperature, whose half-life corresponds
+     * to the frequency interval of the table. This only touches the partitions of the table and does not need to re-read any monitoring data.
      *
      * @param table Temperature partitioned table
-     * @param invocationTimestamp Timestamp do determine the interval for which monitoring metrics should be collected.
+     * @param invocationTimestamp Timestamp of this invocation, used to decay the temperatures since the last one
      */
     @Override
     public void determinePartitionFrequency( CatalogTable table, long invocationTimestamp ) {
-        Timestamp queryStart = new Timestamp( invocationTimestamp - ((TemperaturePartitionProperty) table.partitionProperty).getFrequencyInterval() * 1000 );
+        determinePartitionDistribution( table, updateTemperatures( table, invocationTimestamp ) );
+    }
+
 
-        accessCounter = new HashMap<>();
-        List<Long> tempPartitionIds = new ArrayList<>( table.partitionProperty.partitionIds );
+    /**
+     * Starts recording the accesses of the table and folds the accesses recorded since the last invocation into the temperatures of its partitions.
+     *
+     * @param table Temperature partitioned table
+     * @param invocationTimestamp Timestamp of this invocation, used to decay the temperatures since the last one
+     * @return Current temperature per partition of the table, according to its Cost Indication
+     */
+    Map<Long, Double> updateTemperatures( CatalogTable table, long invocationTimestamp ) {
+        trackedTables.put( table.id, table );
+        TemperaturePartitionProperty property = (TemperaturePartitionProperty) table.partitionProperty;
+        long halfLife = Math.max( 1, property.getFrequencyInterval() ) * 1000;
+
+        Map<Long, Double> temperatures = new HashMap<>();
+        for ( long partitionId : table.partitionProperty.partitionIds ) {
+            PartitionTemperature temperature = partitionTemperatures.computeIfAbsent( partitionId, p -> new PartitionTemperature( invocationTimestamp ) );
+            temperature.decay( invocationTimestamp, halfLife );
+            temperatures.put( partitionId, temperature.getTemperature( property.getPartitionCostIndication() ) );
+        }
+        return temperatures;
+    }
 
-        tempPartitionIds.forEach( p -> accessCounter.put( p, (long) 0 ) );
 
-        switch ( ((TemperaturePartitionProperty) table.partitionProperty).getPartitionCostIndication() ) {
-            case ALL:
-                for ( QueryDataPointImpl queryDataPoint : MonitoringServiceProvider.getInstance().getDataPointsAfter( QueryDataPointImpl.class, queryStart ) ) {
-                    queryDataPoint.getAccessedPartitions().forEach( p -> incrementPartitionAccess( p, tempPartitionIds ) );
-                }
-                for ( DmlDataPoint dmlDataPoint : MonitoringServiceProvider.getInstance().getDataPointsAfter( DmlDataPoint.class, queryStart ) ) {
-                    dmlDataPoint.getAccessedPartitions().forEach( p -> incrementPartitionAccess( p, tempPartitionIds ) );
-                }
+    @Override
+    public void recordAccess( long tableId, Collection<Long> partitionIds, boolean isWrite ) {
+        if ( !trackedTables.containsKey( tableId ) ) {
+            return;
+        }
+        for ( Long partitionId : partitionIds ) {
+            PartitionTemperature temperature = partitionTemperatures.get( partitionId );
+            if ( temperature != null ) {
+                temperature.record( isWrite );
+            }
+        }
+    }
 
-                break;
 
-            case READ:
-                List<QueryDataPointImpl> readAccesses = MonitoringServiceProvider.getInstance().getDataPointsAfter( QueryDataPointImpl.class, queryStart );
-                for ( QueryDataPointImpl queryDataPoint : readAccesses ) {
-                    queryDataPoint.getAccessedPartitions().forEach( p -> incrementPartitionAccess( p, tempPartitionIds ) );
-                }
-                break;
+    /**
+     * Access counters and decayed temperature of a single partition. Accesses are counted in striped {@link LongAdder}s
+     * on the hot path and only folded into the temperature by the periodic background task.
+     */
+    private static class PartitionTemperature {
 
-            case WRITE:
-                List<DmlDataPoint> writeAccesses = MonitoringServiceProvider.getInstance().getDataPointsAfter( DmlDataPoint.class, queryStart );
-                for ( DmlDataPoint dmlDataPoint : writeAccesses ) {
-                    dmlDataPoint.getAccessedPartitions().forEach( p -> incrementPartitionAccess( p, tempPartitionIds ) );
-                }
+        private final LongAdder reads = new LongAdder();
+        private final LongAdder writes = new LongAdder();
+
+        @Getter
+        private volatile double readTemperature = 0;
+        @Getter
+        private volatile double writeTemperature = 0;
+        private long lastDecay;
+
+
+        PartitionTemperature( long timestamp ) {
+            this.lastDecay = timestamp;
+        }
+
+
+        void record( boolean isWrite ) {
+            if ( isWrite ) {
+                writes.increment();
+            } else {
+                reads.increment();
+            }
+        }
+
+
+        synchronized void decay( long timestamp, long halfLife ) {
+            double factor = Math.pow( 0.5, Math.max( 0, timestamp - lastDecay ) / (double) halfLife );
+            readTemperature = readTemperature * factor + reads.sumThenReset();
+            writeTemperature = writeTemperature * factor + writes.sumThenReset();
+            lastDecay = timestamp;
+        }
+
+
+        double getTemperature( PartitionCostIndication costIndication ) {
+            switch ( costIndication ) {
+                case READ:
+                    return readTemperature;
+                case WRITE:
+                    return writeTemperature;
+                default:
+                    return readTemperature + writeTemperature;
+            }
         }
 
-        // To gain observability
-        // Update infoPage here
-        determinePartitionDistribution( table );
     }
 
 }
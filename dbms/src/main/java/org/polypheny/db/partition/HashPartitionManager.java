@@ -19,6 +19,7 @@
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.polypheny.db.catalog.entity.CatalogColumn;
 import org.polypheny.db.catalog.entity.CatalogTable;
@@ -35,19 +36,8 @@ public class HashPartitionManager extends AbstractPartitionManager {
 
 
     @Override
-    public long getTargetPartitionId( CatalogTable catalogTable, String columnValue ) {
-        long hashValue = columnValue.hashCode() * -1;
-
-        // Don't want any neg. value for now
-        if ( hashValue <= 0 ) {
-            hashValue *= -1;
-        }
-
-        // Get designated HASH partition based on number of internal partitions
-        int partitionIndex = (int) (hashValue % catalogTable.partitionProperty.partitionIds.size());
-
-        // Finally decide on which partition to put it
-        return catalogTable.partitionProperty.partitionIds.get( partitionIndex );
+    protected CompiledPartitionFunction compile( CatalogTable catalogTable ) {
+        return new HashPartitionFunction( catalogTable.partitionProperty.partitionIds );
     }
 
 
@@ -105,4 +95,70 @@ public boolean supportsColumnOfType( PolyType type ) {
         return true;
     }
 
+
+    /**
+     * Assigns values to partitions based on the hash code of their string representation. Since the placement of
+     * existing rows depends on it, the hash is kept compatible; for integral values it is computed directly from the
+     * digits without building the string.
+     */
+    private static final class HashPartitionFunction implements CompiledPartitionFunction {
+
+        @Getter
+        private final List<Long> partitionIds;
+        private final long[] partitionIdArray;
+
+
+        private HashPartitionFunction( List<Long> partitionIds ) {
+            this.partitionIds = partitionIds;
+            this.partitionIdArray = partitionIds.stream().mapToLong( Long::longValue ).toArray();
+        }
+
+
+        @Override
+        public long getTargetPartitionId( Object value ) {
+            long hashValue = hash( value ) * -1;
+
+            // Don't want any neg. value for now
+            if ( hashValue <= 0 ) {
+                hashValue *= -1;
+            }
+
+            // Get designated HASH partition based on number of internal partitions
+            return partitionIdArray[(int) (hashValue % partitionIdArray.length)];
+        }
+
+
+        /**
+         * Equivalent to {@code String.valueOf( value ).hashCode()}.
+         */
+        private static int hash( Object value ) {
+            if ( value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte ) {
+                return decimalHash( ((Number) value).longValue() );
+            }
+            return String.valueOf( value ).hashCode();
+        }
+
+
+        private static int decimalHash( long value ) {
+            if ( value == Long.MIN_VALUE ) {
+                return Long.toString( value ).hashCode();
+            }
+            int hash = 0;
+            if ( value < 0 ) {
+                hash = '-';
+                value = -value;
+            }
+            // Highest power of ten not greater than the value
+            long divisor = 1;
+            while ( value / divisor >= 10 ) {
+                divisor *= 10;
+            }
+            for ( ; divisor > 0; divisor /= 10 ) {
+                hash = 31 * hash + (char) ('0' + (value / divisor) % 10);
+            }
+            return hash;
+        }
+
+    }
+
 }
@@ -19,7 +19,11 @@
 import com.google.common.collect.ImmutableList;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.polypheny.db.catalog.Catalog;
 import org.polypheny.db.catalog.entity.CatalogColumn;
@@ -40,38 +44,21 @@ public class ListPartitionManager extends AbstractPartitionManager {
 
 
     @Override
-    public long getTargetPartitionId( CatalogTable catalogTable, String columnValue ) {
+    protected CompiledPartitionFunction compile( CatalogTable catalogTable ) {
+        Map<String, Long> partitionsByValue = new HashMap<>();
         long unboundPartitionId = -1;
-        long selectedPartitionId = -1;
-
-        // Process all accumulated CatalogPartitions
         for ( CatalogPartition catalogPartition : Catalog.getInstance().getPartitionsByTable( catalogTable.id ) ) {
-            if ( unboundPartitionId == -1 && catalogPartition.isUnbound ) {
+            // Partitions after the unbound partition are never considered
+            if ( catalogPartition.isUnbound ) {
                 unboundPartitionId = catalogPartition.id;
                 break;
             }
-
-            for ( int i = 0; i < catalogPartition.partitionQualifiers.size(); i++ ) {
-                // Could be int
-                if ( catalogPartition.partitionQualifiers.get( i ).equals( columnValue ) ) {
-                    if ( log.isDebugEnabled() ) {
-                        log.debug( "Found column value: {} on partitionID {} with qualifiers: {}",
-                                columnValue,
-                                catalogPartition.id,
-                                catalogPartition.partitionQualifiers );
-                    }
-                    selectedPartitionId = catalogPartition.id;
-                    break;
-                }
+            // If a value is listed for several partitions, the first one wins
+            for ( String qualifier : catalogPartition.partitionQualifiers ) {
+                partitionsByValue.putIfAbsent( qualifier, catalogPartition.id );
             }
         }
-
-        // If no concrete partition could be identified, report back the unbound/default partition
-        if ( selectedPartitionId == -1 ) {
-            selectedPartitionId = unboundPartitionId;
-        }
-
-        return selectedPartitionId;
+        return new ListPartitionFunction( catalogTable.partitionProperty.partitionIds, partitionsByValue, unboundPartitionId );
     }
 
 
@@ -182,4 +169,53 @@ public boolean supportsColumnOfType( PolyType type ) {
         return SUPPORTED_TYPES.contains( type );
     }
 
+
+    /**
+     * Routes values by a lookup of their string representation. Qualifiers in canonical integer notation are
+     * additionally indexed by their numeric value, so that integral values can be routed without building the string.
+     */
+    private static final class ListPartitionFunction implements CompiledPartitionFunction {
+
+        @Getter
+        private final List<Long> partitionIds;
+        private final long unboundPartitionId;
+
+        private final Map<String, Long> partitionsByValue;
+        private final Map<Long, Long> partitionsByNumber = new HashMap<>();
+
+
+        private ListPartitionFunction( List<Long> partitionIds, Map<String, Long> partitionsByValue, long unboundPartitionId ) {
+            this.partitionIds = partitionIds;
+            this.partitionsByValue = partitionsByValue;
+            this.unboundPartitionId = unboundPartitionId;
+
+            for ( Entry<String, Long> entry : partitionsByValue.entrySet() ) {
+                try {
+                    long number = Long.parseLong( entry.getKey() );
+                    // Only values whose string representation matches the qualifier, e.g. not '007'
+                    if ( Long.toString( number ).equals( entry.getKey() ) ) {
+                        partitionsByNumber.put( number, entry.getValue() );
+                    }
+                } catch ( NumberFormatException e ) {
+                    // Not a number, only matched by its string representation
+                }
+            }
+        }
+
+
+        @Override
+        public long getTargetPartitionId( Object value ) {
+            Long partitionId;
+            if ( value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte ) {
+                partitionId = partitionsByNumber.get( ((Number) value).longValue() );
+            } else {
+                partitionId = partitionsByValue.get( String.valueOf( value ) );
+            }
+
+            // If no concrete partition could be identified, report back the unbound/default partition
+            return partitionId == null ? unboundPartitionId : partitionId;
+        }
+
+    }
+
 }
@@ -19,9 +19,11 @@
 import com.google.common.collect.ImmutableList;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.polypheny.db.catalog.Catalog;
 import org.polypheny.db.catalog.entity.CatalogColumn;
@@ -42,36 +44,18 @@ public class RangePartitionManager extends AbstractPartitionManager {
 
 
     @Override
-    public long getTargetPartitionId( CatalogTable catalogTable, String columnValue ) {
+    protected CompiledPartitionFunction compile( CatalogTable catalogTable ) {
+        List<CatalogPartition> boundPartitions = new ArrayList<>();
         long unboundPartitionId = -1;
-        long selectedPartitionId = -1;
-
-        // Process all accumulated CatalogPartitions
         for ( CatalogPartition catalogPartition : Catalog.getInstance().getPartitionsByTable( catalogTable.id ) ) {
-            if ( unboundPartitionId == -1 && catalogPartition.isUnbound ) {
+            // Partitions after the unbound partition are never considered
+            if ( catalogPartition.isUnbound ) {
                 unboundPartitionId = catalogPartition.id;
                 break;
             }
-
-            if ( isValueInRange( columnValue, catalogPartition ) ) {
-                if ( log.isDebugEnabled() ) {
-                    log.debug( "Found column value: {} on partitionID {} in range: [{} - {}]",
-                            columnValue,
-                            catalogPartition.id,
-                            catalogPartition.partitionQualifiers.get( 0 ),
-                            catalogPartition.partitionQualifiers.get( 1 ) );
-                }
-                selectedPartitionId = catalogPartition.id;
-                break;
-            }
+            boundPartitions.add( catalogPartition );
         }
-
-        // If no concrete partition could be identified, report back the unbound/default partition
-        if ( selectedPartitionId == -1 ) {
-            selectedPartitionId = unboundPartitionId;
-        }
-
-        return selectedPartitionId;
+        return new RangePartitionFunction( catalogTable.partitionProperty.partitionIds, boundPartitions, unboundPartitionId );
     }
 
 
@@ -253,13 +237,58 @@ public boolean supportsColumnOfType( PolyType type ) {
     }
 
 
-    private boolean isValueInRange( String columnValue, CatalogPartition catalogPartition ) {
-        int lowerBound = Integer.parseInt( catalogPartition.partitionQualifiers.get( 0 ) );
-        int upperBound = Integer.parseInt( catalogPartition.partitionQualifiers.get( 1 ) );
+    /**
+     * Routes values by a binary search over the lower bounds of the ranges. The ranges are guaranteed to be disjoint
+     * by {@link #validatePartitionGroupSetup(List, long, List, CatalogColumn)}.
+     */
+    private static final class RangePartitionFunction implements CompiledPartitionFunction {
+
+        @Getter
+        private final List<Long> partitionIds;
+        private final long unboundPartitionId;
+
+        // Sorted by lower bound
+        private final double[] lowerBounds;
+        private final double[] upperBounds;
+        private final long[] rangePartitionIds;
+
 
-        double numericValue = Double.parseDouble( columnValue );
+        private RangePartitionFunction( List<Long> partitionIds, List<CatalogPartition> boundPartitions, long unboundPartitionId ) {
+            this.partitionIds = partitionIds;
+            this.unboundPartitionId = unboundPartitionId;
+
+            List<CatalogPartition> sorted = new ArrayList<>( boundPartitions );
+            sorted.sort( Comparator.comparingInt( p -> Integer.parseInt( p.partitionQualifiers.get( 0 ) ) ) );
+            lowerBounds = new double[sorted.size()];
+            upperBounds = new double[sorted.size()];
+            rangePartitionIds = new long[sorted.size()];
+            for ( int i = 0; i < sorted.size(); i++ ) {
+                lowerBounds[i] = Integer.parseInt( sorted.get( i ).partitionQualifiers.get( 0 ) );
+                upperBounds[i] = Integer.parseInt( sorted.get( i ).partitionQualifiers.get( 1 ) );
+                rangePartitionIds[i] = sorted.get( i ).id;
+            }
+        }
+
+
+        @Override
+        public long getTargetPartitionId( Object value ) {
+            double numericValue = value instanceof Number
+                    ? ((Number) value).doubleValue()
+                    : Double.parseDouble( String.valueOf( value ) );
+
+            // Last range with a lower bound not greater than the value
+            int index = Arrays.binarySearch( lowerBounds, numericValue );
+            if ( index < 0 ) {
+                index = -index - 2;
+            }
+            if ( index >= 0 && numericValue <= upperBounds[index] ) {
+                return rangePartitionIds[index];
+            }
+
+            // If no concrete partition could be identified, report back the unbound/default partition
+            return unboundPartitionId;
+        }
 
-        return numericValue >= lowerBound && numericValue <= upperBound;
     }
 
 }
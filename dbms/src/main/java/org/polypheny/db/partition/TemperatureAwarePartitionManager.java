@@ -38,14 +38,14 @@ public class TemperatureAwarePartitionManager extends AbstractPartitionManager {
 
 
     @Override
-    public long getTargetPartitionId( CatalogTable catalogTable, String columnValue ) {
+    protected CompiledPartitionFunction compile( CatalogTable catalogTable ) {
         // Get partition manager
         PartitionManagerFactory partitionManagerFactory = PartitionManagerFactory.getInstance();
         PartitionManager partitionManager = partitionManagerFactory.getPartitionManager(
                 ((TemperaturePartitionProperty) catalogTable.partitionProperty).getInternalPartitionFunction()
         );
 
-        return partitionManager.getTargetPartitionId( catalogTable, columnValue );
+        return partitionManager.getPartitionFunction( catalogTable );
     }
 
 
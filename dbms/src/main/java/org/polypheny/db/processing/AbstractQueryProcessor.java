@@ -26,12 +26,16 @@
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.DoubleAccumulator;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
@@ -48,8 +52,10 @@
 import org.polypheny.db.adapter.enumerable.EnumerableCalc;
 import org.polypheny.db.adapter.enumerable.EnumerableConvention;
 import org.polypheny.db.adapter.enumerable.EnumerableInterpretable;
+import org.polypheny.db.adapter.enumerable.GeneratedCodeCache;
 import org.polypheny.db.adapter.index.Index;
 import org.polypheny.db.adapter.index.IndexManager;
+import org.polypheny.db.algebra.AbstractAlgNode;
 import org.polypheny.db.algebra.AlgCollation;
 import org.polypheny.db.algebra.AlgCollations;
 import org.polypheny.db.algebra.AlgNode;
@@ -60,6 +66,10 @@
 import org.polypheny.db.algebra.constant.ExplainFormat;
 import org.polypheny.db.algebra.constant.ExplainLevel;
 import org.polypheny.db.algebra.constant.Kind;
+import org.polypheny.db.algebra.core.Correlate;
+import org.polypheny.db.algebra.core.Filter;
+import org.polypheny.db.algebra.core.Join;
+import org.polypheny.db.algebra.core.Project;
 import org.polypheny.db.algebra.core.Sort;
 import org.polypheny.db.algebra.core.Values;
 import org.polypheny.db.algebra.core.common.BatchIterator;
@@ -90,13 +100,17 @@
 import org.polypheny.db.information.InformationManager;
 import org.polypheny.db.information.InformationPage;
 import org.polypheny.db.information.InformationQueryPlan;
+import org.polypheny.db.information.InformationTable;
 import org.polypheny.db.interpreter.BindableConvention;
 import org.polypheny.db.interpreter.Interpreters;
 import org.polypheny.db.monitoring.events.DmlEvent;
 import org.polypheny.db.monitoring.events.QueryEvent;
 import org.polypheny.db.monitoring.events.StatementEvent;
+import org.polypheny.db.partition.FrequencyMap;
 import org.polypheny.db.partition.PartitionManagerFactory;
+import org.polypheny.db.plan.AlgOptCluster;
 import org.polypheny.db.plan.AlgOptCost;
+import org.polypheny.db.plan.AlgOptPlanner;
 import org.polypheny.db.plan.AlgOptUtil;
 import org.polypheny.db.plan.AlgTraitSet;
 import org.polypheny.db.plan.Convention;
@@ -105,6 +119,7 @@
 import org.polypheny.db.prepare.Prepare.PreparedResult;
 import org.polypheny.db.prepare.Prepare.PreparedResultImpl;
 import org.polypheny.db.processing.caching.ImplementationCache;
+import org.polypheny.db.processing.caching.PlanFingerprint;
 import org.polypheny.db.processing.caching.QueryPlanCache;
 import org.polypheny.db.processing.caching.RoutingPlanCache;
 import org.polypheny.db.processing.shuttles.LogicalQueryInformationImpl;
@@ -116,12 +131,14 @@
 import org.polypheny.db.rex.RexLiteral;
 import org.polypheny.db.rex.RexNode;
 import org.polypheny.db.rex.RexProgram;
+import org.polypheny.db.rex.RexUtil.SubQueryFinder;
 import org.polypheny.db.routing.DmlRouter;
 import org.polypheny.db.routing.ExecutionTimeMonitor;
 import org.polypheny.db.routing.ExecutionTimeMonitor.ExecutionTimeObserver;
 import org.polypheny.db.routing.LogicalQueryInformation;
 import org.polypheny.db.routing.ProposedRoutingPlan;
 import org.polypheny.db.routing.Router;
+import org.polypheny.db.routing.RouterPlanSelectionStrategy;
 import org.polypheny.db.routing.RoutingManager;
 import org.polypheny.db.routing.RoutingPlan;
 import org.polypheny.db.routing.UiRoutingPageUtil;
@@ -161,7 +178,7 @@ public abstract class AbstractQueryProcessor implements QueryProcessor, Executio
     protected static final boolean ENABLE_MODEL_TRAIT = true;
     protected static final boolean CONSTANT_REDUCTION = false;
     protected static final boolean ENABLE_STREAM = true;
-    private final Statement statement;
+    protected final Statement statement;
 
     // This map is required to allow plans with multiple physical placements of the same logical table.
     // scanId -> tableId
@@ -173,6 +190,13 @@ protected AbstractQueryProcessor( Statement statement ) {
     }
 
 
+    /**
+     * Creates a new planner which is configured like the planner of this query processor. Used to plan several proposed
+     * routing plans concurrently, since a planner must not be shared between threads.
+     */
+    protected abstract AlgOptPlanner createPlanner();
+
+
     @Override
     public void executionTime( String reference, long nanoTime ) {
         StatementEvent event = statement.getMonitoringEvent();
@@ -188,6 +212,16 @@ public void resetCaches() {
         QueryPlanCache.INSTANCE.reset();
         RoutingPlanCache.INSTANCE.reset();
         RoutingManager.getInstance().getRouters().forEach( Router::resetCaches );
+        GeneratedCodeCache.INSTANCE.catalogChanged();
+    }
+
+
+    @Override
+    public void invalidateCaches( Collection<Long> entityIds ) {
+        QueryPlanCache.INSTANCE.invalidate( entityIds );
+        RoutingPlanCache.INSTANCE.invalidate( entityIds );
+        RoutingManager.getInstance().getRouters().forEach( Router::resetCaches );
+        GeneratedCodeCache.INSTANCE.catalogChanged();
     }
 
 
@@ -255,6 +289,8 @@ private ProposedImplementations prepareQueryList( AlgRoot logicalRoot, AlgDataTy
         List<ProposedRoutingPlan> proposedRoutingPlans = null;
         List<AlgNode> optimalNodeList = new ArrayList<>();
         List<AlgRoot> parameterizedRootList = new ArrayList<>();
+        List<PlanFingerprint> fingerprintList = new ArrayList<>();
+        long routingNanos = 0;
         List<PolyImplementation> results = new ArrayList<>();
         List<String> generatedCodes = new ArrayList<>();
 
@@ -376,7 +412,9 @@ private ProposedImplementations prepareQueryList( AlgRoot logicalRoot, AlgDataTy
             }
 
             if ( proposedRoutingPlans == null ) {
+                long routingStart = System.nanoTime();
                 proposedRoutingPlans = route( indexLookupRoot, statement, logicalQueryInformation );
+                routingNanos = System.nanoTime() - routingStart;
             }
 
             if ( isAnalyze ) {
@@ -420,6 +458,9 @@ private ProposedImplementations prepareQueryList( AlgRoot logicalRoot, AlgDataTy
             }
 
             parameterizedRootList.add( parameterizedRoot );
+            fingerprintList.add( isImplementationCachingActive( statement, routedRoot ) || isQueryPlanCachingActive( statement, routedRoot )
+                    ? PlanFingerprint.of( parameterizedRoot.alg )
+                    : null );
         }
 
         if ( isAnalyze ) {
@@ -436,8 +477,8 @@ private ProposedImplementations prepareQueryList( AlgRoot logicalRoot, AlgDataTy
             AlgRoot routedRoot = proposedRoutingPlans.get( i ).getRoutedRoot();
             if ( this.isImplementationCachingActive( statement, routedRoot ) ) {
                 AlgRoot parameterizedRoot = parameterizedRootList.get( i );
-                PreparedResult preparedResult = ImplementationCache.INSTANCE.getIfPresent( parameterizedRoot.alg );
-                AlgNode optimalNode = QueryPlanCache.INSTANCE.getIfPresent( parameterizedRootList.get( i ).alg );
+                PreparedResult preparedResult = ImplementationCache.INSTANCE.getIfPresent( fingerprintList.get( i ) );
+                AlgNode optimalNode = QueryPlanCache.INSTANCE.getIfPresent( fingerprintList.get( i ) );
                 if ( preparedResult != null ) {
                     PolyImplementation result = createPolyImplementation(
                             preparedResult,
@@ -473,7 +514,8 @@ private ProposedImplementations prepareQueryList( AlgRoot logicalRoot, AlgDataTy
                     optimalNodeList.stream().filter( Objects::nonNull ).collect( Collectors.toList() ),
                     results.stream().filter( Objects::nonNull ).collect( Collectors.toList() ),
                     generatedCodes.stream().filter( Objects::nonNull ).collect( Collectors.toList() ),
-                    logicalQueryInformation );
+                    logicalQueryInformation,
+                    routingNanos );
         }
 
         optimalNodeList = new ArrayList<>( Collections.nCopies( optimalNodeList.size(), null ) );
@@ -486,7 +528,7 @@ private ProposedImplementations prepareQueryList( AlgRoot logicalRoot, AlgDataTy
         for ( int i = 0; i < proposedRoutingPlans.size(); i++ ) {
             if ( this.isQueryPlanCachingActive( statement, proposedRoutingPlans.get( i ).getRoutedRoot() ) ) {
                 // Should always be the case
-                AlgNode cachedElem = QueryPlanCache.INSTANCE.getIfPresent( parameterizedRootList.get( i ).alg );
+                AlgNode cachedElem = QueryPlanCache.INSTANCE.getIfPresent( fingerprintList.get( i ) );
                 if ( cachedElem != null ) {
                     optimalNodeList.set( i, cachedElem );
                 }
@@ -500,6 +542,41 @@ private ProposedImplementations prepareQueryList( AlgRoot logicalRoot, AlgDataTy
             statement.getProcessingDuration().start( "Planning & Optimization" );
         }
 
+        // Plans prepared concurrently are skipped by the sequential planning and implementation below
+        List<PlanPreparation> preparations = Stream.generate( PlanPreparation::new ).limit( proposedRoutingPlans.size() ).collect( Collectors.toList() );
+        if ( RuntimeConfig.PARALLEL_PLAN_PREPARATION.getBoolean()
+                && prepareConcurrently( preparations, parameterizedRootList, optimalNodeList, results, resultConvention, parameterRowType ) ) {
+            for ( int i = 0; i < preparations.size(); i++ ) {
+                PlanPreparation preparation = preparations.get( i );
+                if ( preparation.optimalNode == null ) {
+                    continue;
+                }
+                optimalNodeList.set( i, preparation.optimalNode );
+                if ( this.isQueryPlanCachingActive( statement, proposedRoutingPlans.get( i ).getRoutedRoot() ) ) {
+                    QueryPlanCache.INSTANCE.put( fingerprintList.get( i ), preparation.optimalNode, preparation.planningNanos );
+                }
+            }
+        }
+
+        // Dominated plans would never be selected and have not been implemented
+        final List<ProposedRoutingPlan> preparedPlans = proposedRoutingPlans;
+        final List<PlanPreparation> allPreparations = preparations;
+        if ( preparations.stream().anyMatch( preparation -> preparation.dominated ) ) {
+            proposedRoutingPlans = new ArrayList<>( proposedRoutingPlans );
+            preparations = new ArrayList<>( preparations );
+            for ( int i = preparations.size() - 1; i >= 0; i-- ) {
+                if ( preparations.get( i ).dominated ) {
+                    proposedRoutingPlans.remove( i );
+                    parameterizedRootList.remove( i );
+                    fingerprintList.remove( i );
+                    optimalNodeList.remove( i );
+                    results.remove( i );
+                    generatedCodes.remove( i );
+                    preparations.remove( i );
+                }
+            }
+        }
+
         // OptimalNode same size as routed, parametrized and result
         for ( int i = 0; i < optimalNodeList.size(); i++ ) {
             if ( optimalNodeList.get( i ) != null ) {
@@ -507,10 +584,12 @@ private ProposedImplementations prepareQueryList( AlgRoot logicalRoot, AlgDataTy
             }
             AlgRoot parameterizedRoot = parameterizedRootList.get( i );
             AlgRoot routedRoot = proposedRoutingPlans.get( i ).getRoutedRoot();
-            optimalNodeList.set( i, optimize( parameterizedRoot, resultConvention ) );
+            long planningStart = System.nanoTime();
+            optimalNodeList.set( i, optimize( parameterizedRoot, resultConvention, getPlanner() ) );
+            preparations.get( i ).planningNanos = System.nanoTime() - planningStart;
 
             if ( this.isQueryPlanCachingActive( statement, routedRoot ) ) {
-                QueryPlanCache.INSTANCE.put( parameterizedRoot.alg, optimalNodeList.get( i ) );
+                QueryPlanCache.INSTANCE.put( fingerprintList.get( i ), optimalNodeList.get( i ), preparations.get( i ).planningNanos );
             }
         }
 
@@ -529,17 +608,20 @@ private ProposedImplementations prepareQueryList( AlgRoot logicalRoot, AlgDataTy
             AlgNode optimalNode = optimalNodeList.get( i );
             AlgRoot parameterizedRoot = parameterizedRootList.get( i );
             AlgRoot routedRoot = proposedRoutingPlans.get( i ).getRoutedRoot();
-
-            final AlgDataType rowType = parameterizedRoot.alg.getRowType();
-            final List<Pair<Integer, String>> fields = Pair.zip( ImmutableIntList.identity( rowType.getFieldCount() ), rowType.getFieldNames() );
-            AlgRoot optimalRoot = new AlgRoot( optimalNode, rowType, parameterizedRoot.kind, fields, algCollation( parameterizedRoot.alg ) );
-
-            PreparedResult preparedResult = implement( optimalRoot, parameterRowType );
+            AlgRoot optimalRoot = createOptimalRoot( parameterizedRoot, optimalNode );
+
+            PlanPreparation preparation = preparations.get( i );
+            PreparedResult preparedResult = preparation.preparedResult;
+            if ( preparedResult == null ) {
+                long implementationStart = System.nanoTime();
+                preparedResult = implement( optimalRoot, parameterRowType );
+                preparation.implementationNanos = System.nanoTime() - implementationStart;
+            }
 
             // Cache implementation
             if ( this.isImplementationCachingActive( statement, routedRoot ) ) {
                 if ( optimalRoot.alg.isImplementationCacheable() ) {
-                    ImplementationCache.INSTANCE.put( parameterizedRoot.alg, preparedResult );
+                    ImplementationCache.INSTANCE.put( fingerprintList.get( i ), preparedResult, preparation.implementationNanos );
                 } else {
                     ImplementationCache.INSTANCE.countUncacheable();
                 }
@@ -559,6 +641,7 @@ private ProposedImplementations prepareQueryList( AlgRoot logicalRoot, AlgDataTy
         }
         if ( isAnalyze ) {
             statement.getProcessingDuration().stop( "Implementation" );
+            addPlanPreparationToQueryAnalyzer( preparedPlans, allPreparations );
         }
 
         stopWatch.stop();
@@ -572,7 +655,25 @@ private ProposedImplementations prepareQueryList( AlgRoot logicalRoot, AlgDataTy
                 optimalNodeList.stream().filter( Objects::nonNull ).collect( Collectors.toList() ),
                 results.stream().filter( Objects::nonNull ).collect( Collectors.toList() ),
                 generatedCodes.stream().filter( Objects::nonNull ).collect( Collectors.toList() ),
-                logicalQueryInformation );
+                logicalQueryInformation,
+                routingNanos );
+    }
+
+
+    /**
+     * Timings and intermediate results of planning and implementing a single proposed routing plan.
+     */
+    private static class PlanPreparation {
+
+        private AlgNode optimalNode;
+        private PreparedResult preparedResult;
+        private final Map<String, Object> internalParameters = new LinkedHashMap<>();
+        private long planningNanos = -1;
+        private long implementationNanos = -1;
+        private double costs = Double.NaN;
+        private boolean concurrent;
+        private boolean dominated;
+
     }
 
 
@@ -585,6 +686,7 @@ private static class ProposedImplementations {
         private final List<PolyImplementation> results;
         private final List<String> generatedCodes;
         private final LogicalQueryInformation logicalQueryInformation;
+        private final long routingNanos;
 
     }
 
@@ -1153,7 +1255,7 @@ public int size() {
     }
 
 
-    private AlgNode optimize( AlgRoot logicalRoot, Convention resultConvention ) {
+    private AlgNode optimize( AlgRoot logicalRoot, Convention resultConvention, AlgOptPlanner planner ) {
         AlgNode logicalPlan = logicalRoot.alg;
 
         final AlgTraitSet desiredTraits = logicalPlan.getTraitSet()
@@ -1162,11 +1264,243 @@ private AlgNode optimize( AlgRoot logicalRoot, Convention resultConvention ) {
                 .simplify();
 
         final Program program = Programs.standard();
-        return program.run( getPlanner(), logicalPlan, desiredTraits );
+        return program.run( planner, logicalPlan, desiredTraits );
+    }
+
+
+    private AlgRoot createOptimalRoot( AlgRoot parameterizedRoot, AlgNode optimalNode ) {
+        final AlgDataType rowType = parameterizedRoot.alg.getRowType();
+        final List<Pair<Integer, String>> fields = Pair.zip( ImmutableIntList.identity( rowType.getFieldCount() ), rowType.getFieldNames() );
+        return new AlgRoot( optimalNode, rowType, parameterizedRoot.kind, fields, algCollation( parameterizedRoot.alg ) );
+    }
+
+
+    /**
+     * Plans and implements the proposed routing plans which are neither cached nor implemented yet concurrently on the
+     * {@link PlannerPool}. Since planners are not thread-safe, every plan is moved to a cluster with a planner of its own.
+     *
+     * If plans are selected solely based on their approximated costs, a plan whose costs exceed the costs of another plan
+     * would never be selected. Such plans are not implemented and are marked as dominated.
+     *
+     * @return false if the plans have to be prepared sequentially
+     */
+    private boolean prepareConcurrently(
+            List<PlanPreparation> preparations,
+            List<AlgRoot> parameterizedRootList,
+            List<AlgNode> optimalNodeList,
+            List<PolyImplementation> results,
+            Convention resultConvention,
+            AlgDataType parameterRowType ) {
+        final List<Integer> pending = IntStream.range( 0, preparations.size() )
+                .filter( i -> optimalNodeList.get( i ) == null && results.get( i ) == null )
+                .boxed()
+                .collect( Collectors.toList() );
+        if ( pending.size() < 2 || !isRebindable( pending.stream().map( i -> parameterizedRootList.get( i ).alg ).collect( Collectors.toList() ) ) ) {
+            return false;
+        }
+
+        final boolean pruneDominated = RoutingManager.PLAN_SELECTION_STRATEGY.getEnum() == RouterPlanSelectionStrategy.BEST
+                && Math.abs( RoutingManager.PRE_COST_POST_COST_RATIO.getDouble() ) < AlgOptUtil.EPSILON;
+        final DoubleAccumulator bestCosts = new DoubleAccumulator( Math::min, Double.POSITIVE_INFINITY );
+        if ( pruneDominated ) {
+            // Cached plans are prepared anyway and bound the costs of the plans still to be planned
+            optimalNodeList.stream()
+                    .filter( Objects::nonNull )
+                    .forEach( alg -> bestCosts.accumulate( alg.computeSelfCost( getPlanner(), alg.getCluster().getMetadataQuery() ).getCosts() ) );
+        }
+
+        // The workers do not access the statement or the transaction. Everything they need is created per plan here.
+        final Conformance conformance = statement.getPrepareContext().config().conformance();
+        final List<Future<?>> futures = new ArrayList<>( pending.size() );
+        for ( int i : pending ) {
+            final AlgRoot parameterizedRoot = parameterizedRootList.get( i );
+            final PlanPreparation preparation = preparations.get( i );
+            final AlgOptPlanner planner = createPlanner();
+            final CatalogReader catalogReader = statement.getTransaction().getCatalogReader();
+            rebind( parameterizedRoot.alg, createCluster( planner, parameterizedRoot.alg.getCluster() ), AlgTraitSet.createEmpty(), Collections.newSetFromMap( new IdentityHashMap<>() ) );
+            preparation.concurrent = true;
+
+            futures.add( PlannerPool.INSTANCE.submit( () -> {
+                long planningStart = System.nanoTime();
+                AlgNode optimalNode = optimize( parameterizedRoot, resultConvention, planner );
+                preparation.planningNanos = System.nanoTime() - planningStart;
+                preparation.optimalNode = optimalNode;
+
+                if ( pruneDominated ) {
+                    preparation.costs = optimalNode.computeSelfCost( planner, optimalNode.getCluster().getMetadataQuery() ).getCosts();
+                    bestCosts.accumulate( preparation.costs );
+                    if ( isDominated( preparation.costs, bestCosts.get() ) ) {
+                        preparation.dominated = true;
+                        return null;
+                    }
+                }
+
+                long implementationStart = System.nanoTime();
+                preparation.preparedResult = implement( createOptimalRoot( parameterizedRoot, optimalNode ), parameterRowType, catalogReader, conformance, preparation.internalParameters );
+                preparation.implementationNanos = System.nanoTime() - implementationStart;
+                return null;
+            } ) );
+        }
+
+        try {
+            for ( Future<?> future : futures ) {
+                future.get();
+            }
+        } catch ( InterruptedException e ) {
+            futures.forEach( future -> future.cancel( true ) );
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( "Interrupted while preparing the proposed routing plans", e );
+        } catch ( ExecutionException e ) {
+            futures.forEach( future -> future.cancel( true ) );
+            if ( e.getCause() instanceof RuntimeException ) {
+                throw (RuntimeException) e.getCause();
+            } else if ( e.getCause() instanceof Error ) {
+                throw (Error) e.getCause();
+            }
+            throw new RuntimeException( e.getCause() );
+        }
+
+        // Plans finished before the best plan was known have been implemented but are dominated nonetheless
+        final double best = bestCosts.get();
+        for ( int i : pending ) {
+            PlanPreparation preparation = preparations.get( i );
+            if ( isDominated( preparation.costs, best ) ) {
+                preparation.dominated = true;
+            } else if ( preparation.preparedResult != null ) {
+                statement.getDataContext().addAll( preparation.internalParameters );
+            }
+        }
+        return true;
+    }
+
+
+    static boolean isDominated( double costs, double bestCosts ) {
+        return Double.isFinite( costs ) && Double.isFinite( bestCosts ) && costs > bestCosts;
+    }
+
+
+    /**
+     * Checks whether the given plans can be moved to clusters of their own. This is not the case if plans share nodes
+     * or contain correlations or sub-queries, which are bound to the cluster they have been created in.
+     */
+    static boolean isRebindable( List<AlgNode> plans ) {
+        final Set<AlgNode> seen = Collections.newSetFromMap( new IdentityHashMap<>() );
+        for ( AlgNode plan : plans ) {
+            final Set<AlgNode> nodes = Collections.newSetFromMap( new IdentityHashMap<>() );
+            if ( !collectNodes( plan, nodes ) ) {
+                return false;
+            }
+            for ( AlgNode node : nodes ) {
+                if ( !seen.add( node ) ) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+
+    private static boolean collectNodes( AlgNode node, Set<AlgNode> nodes ) {
+        if ( !nodes.add( node ) ) {
+            return true;
+        }
+        if ( !(node instanceof AbstractAlgNode)
+                || node instanceof Correlate
+                || !node.getVariablesSet().isEmpty()
+                || (node instanceof Filter && SubQueryFinder.containsSubQuery( (Filter) node ))
+                || (node instanceof Project && SubQueryFinder.containsSubQuery( (Project) node ))
+                || (node instanceof Join && SubQueryFinder.containsSubQuery( (Join) node )) ) {
+            return false;
+        }
+        for ( AlgNode input : node.getInputs() ) {
+            if ( !collectNodes( input, nodes ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    private static AlgOptCluster createCluster( AlgOptPlanner planner, AlgOptCluster cluster ) {
+        ModelTrait model = cluster.traitSet().getTrait( ModelTraitDef.INSTANCE );
+        if ( model == ModelTrait.DOCUMENT ) {
+            return AlgOptCluster.createDocument( planner, cluster.getRexBuilder() );
+        } else if ( model == ModelTrait.GRAPH ) {
+            return AlgOptCluster.createGraph( planner, cluster.getRexBuilder() );
+        }
+        return AlgOptCluster.create( planner, cluster.getRexBuilder() );
+    }
+
+
+    /**
+     * Moves a plan to another cluster. The trait sets are re-created as well, since trait sets share a cache with the
+     * trait sets they have been derived from.
+     */
+    private static void rebind( AlgNode node, AlgOptCluster cluster, AlgTraitSet emptyTraitSet, Set<AlgNode> visited ) {
+        if ( !visited.add( node ) ) {
+            return;
+        }
+        ((AbstractAlgNode) node).setCluster( cluster );
+        ((AbstractAlgNode) node).setTraitSet( emptyTraitSet.merge( node.getTraitSet() ) );
+        for ( AlgNode input : node.getInputs() ) {
+            rebind( input, cluster, emptyTraitSet, visited );
+        }
+    }
+
+
+    private void addPlanPreparationToQueryAnalyzer( List<ProposedRoutingPlan> proposedRoutingPlans, List<PlanPreparation> preparations ) {
+        InformationManager queryAnalyzer = statement.getTransaction().getQueryAnalyzer();
+        InformationPage page = new InformationPage( "Plan Preparation" );
+        page.fullWidth();
+        InformationGroup group = new InformationGroup( page, "Proposed Plans" );
+        queryAnalyzer.addPage( page );
+        queryAnalyzer.addGroup( group );
+
+        InformationTable table = new InformationTable(
+                group,
+                ImmutableList.of( "Physical", "Router", "Planning (ms)", "Implementation (ms)", "Approximated Costs", "Status" ) );
+        for ( int i = 0; i < proposedRoutingPlans.size(); i++ ) {
+            ProposedRoutingPlan routingPlan = proposedRoutingPlans.get( i );
+            PlanPreparation preparation = preparations.get( i );
+            String status;
+            if ( preparation.dominated ) {
+                status = "Dominated";
+            } else if ( preparation.planningNanos < 0 && preparation.implementationNanos < 0 ) {
+                status = "Cached";
+            } else {
+                status = preparation.concurrent ? "Prepared concurrently" : "Prepared";
+            }
+            table.addRow(
+                    routingPlan.getPhysicalPlacementsOfPartitions() != null ? routingPlan.getPhysicalPlacementsOfPartitions().toString() : "-",
+                    routingPlan.getRouter() != null ? routingPlan.getRouter().getSimpleName() : "",
+                    preparation.planningNanos < 0 ? "-" : Math.round( preparation.planningNanos / 10_000.0 ) / 100.0,
+                    preparation.implementationNanos < 0 ? "-" : Math.round( preparation.implementationNanos / 10_000.0 ) / 100.0,
+                    Double.isNaN( preparation.costs ) ? "-" : preparation.costs,
+                    status );
+        }
+        queryAnalyzer.registerInformation( table );
     }
 
 
     private PreparedResult implement( AlgRoot root, AlgDataType parameterRowType ) {
+        final Map<String, Object> internalParameters = new LinkedHashMap<>();
+        PreparedResult preparedResult = implement(
+                root,
+                parameterRowType,
+                statement.getTransaction().getCatalogReader(),
+                statement.getPrepareContext().config().conformance(),
+                internalParameters );
+        statement.getDataContext().addAll( internalParameters );
+        return preparedResult;
+    }
+
+
+    /**
+     * Implements the plan without accessing the statement, so that the plans of a statement can be implemented
+     * concurrently. The parameters required by the generated code are added to the given map, they have to be added to
+     * the data context of the statement before the implementation is executed.
+     */
+    private PreparedResult implement( AlgRoot root, AlgDataType parameterRowType, CatalogReader catalogReader, Conformance conformance, Map<String, Object> internalParameters ) {
         if ( log.isTraceEnabled() ) {
             log.trace( "Physical query plan: [{}]", AlgOptUtil.dumpPlan( "-- Physical Plan", root.alg, ExplainFormat.TEXT, ExplainLevel.DIGEST_ATTRIBUTES ) );
         }
@@ -1198,10 +1532,7 @@ private PreparedResult implement( AlgRoot root, AlgDataType parameterRowType ) {
             }
 
             try {
-                CatalogReader.THREAD_LOCAL.set( statement.getTransaction().getCatalogReader() );
-                final Conformance conformance = statement.getPrepareContext().config().conformance();
-
-                final Map<String, Object> internalParameters = new LinkedHashMap<>();
+                CatalogReader.THREAD_LOCAL.set( catalogReader );
                 internalParameters.put( "_conformance", conformance );
 
                 Pair<Bindable<Object[]>, String> implementationPair = EnumerableInterpretable.toBindable(
@@ -1211,7 +1542,6 @@ private PreparedResult implement( AlgRoot root, AlgDataType parameterRowType ) {
                         statement );
                 bindable = implementationPair.left;
                 generatedCode = implementationPair.right;
-                statement.getDataContext().addAll( internalParameters );
             } finally {
                 CatalogReader.THREAD_LOCAL.remove();
             }
@@ -1452,6 +1782,7 @@ private void monitorResult( ProposedRoutingPlan selectedPlan ) {
     /**
      * Aggregates results present in queryInformation as well information directly attached to the Statement Event
      * Adds all information to teh accessedPartitions directly in the StatementEvent.
+     * The accesses are also handed to the {@link FrequencyMap} to update the partition temperatures.
      *
      * Also remaps scanId to tableId to correctly update the accessed partition List
      *
@@ -1478,10 +1809,27 @@ private void finalizeAccessedPartitions( StatementEvent eventData ) {
             eventData.setAccessedPartitions( Collections.emptyMap() );
         }
 
+        // Keep the partition temperatures of TEMPERATURE partitioned tables up to date
+        if ( FrequencyMap.INSTANCE != null ) {
+            boolean isWrite = eventData instanceof DmlEvent;
+            eventData.getAccessedPartitions().forEach( ( tableId, partitionIds ) -> FrequencyMap.INSTANCE.recordAccess( tableId, partitionIds, isWrite ) );
+        }
+
+    }
+
+
+    /**
+     * Remaps the scanIds of the accessed partitions to the ids of the scanned tables.
+     */
+    private Set<Long> getAccessedTableIds( LogicalQueryInformation queryInformation ) {
+        return queryInformation.getAccessedPartitions().keySet().stream()
+                .filter( scanPerTable::containsKey )
+                .map( scanPerTable::get )
+                .collect( Collectors.toSet() );
     }
 
 
-    private void cacheRouterPlans( List<ProposedRoutingPlan> proposedRoutingPlans, List<AlgOptCost> approximatedCosts, String queryId, Set<Long> partitionIds ) {
+    private void cacheRouterPlans( List<ProposedRoutingPlan> proposedRoutingPlans, List<AlgOptCost> approximatedCosts, String queryId, Set<Long> partitionIds, Set<Long> entityIds, long routingNanos ) {
         List<CachedProposedRoutingPlan> cachedPlans = new ArrayList<>();
         for ( int i = 0; i < proposedRoutingPlans.size(); i++ ) {
             if ( proposedRoutingPlans.get( i ).isCacheable() && !RoutingPlanCache.INSTANCE.isKeyPresent( queryId, partitionIds ) ) {
@@ -1490,7 +1838,7 @@ private void cacheRouterPlans( List<ProposedRoutingPlan> proposedRoutingPlans, L
         }
 
         if ( !cachedPlans.isEmpty() ) {
-            RoutingPlanCache.INSTANCE.put( queryId, partitionIds, cachedPlans );
+            RoutingPlanCache.INSTANCE.put( queryId, partitionIds, cachedPlans, entityIds, routingNanos );
         }
     }
 
@@ -1513,7 +1861,9 @@ private Pair<PolyImplementation, ProposedRoutingPlan> selectPlan( ProposedImplem
                     proposedRoutingPlans,
                     approximatedCosts,
                     queryInformation.getQueryClass(),
-                    queryInformation.getAccessedPartitions().values().stream().flatMap( List::stream ).collect( Collectors.toSet() ) );
+                    queryInformation.getAccessedPartitions().values().stream().flatMap( List::stream ).collect( Collectors.toSet() ),
+                    getAccessedTableIds( queryInformation ),
+                    proposedImplementations.getRoutingNanos() );
         }
 
         if ( results.size() == 1 ) {
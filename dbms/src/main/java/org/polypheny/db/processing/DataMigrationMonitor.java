@@ -0,0 +1,180 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.processing;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Getter;
+import org.polypheny.db.information.InformationGroup;
+import org.polypheny.db.information.InformationKeyValue;
+import org.polypheny.db.information.InformationManager;
+import org.polypheny.db.information.InformationPage;
+import org.polypheny.db.information.InformationTable;
+
+
+/**
+ * Keeps track of the running and recently finished data migrations and reports progress,
+ * throughput and the estimated remaining time per partition on the "Data Migration" information page.
+ */
+public class DataMigrationMonitor {
+
+    public static final DataMigrationMonitor INSTANCE = new DataMigrationMonitor();
+
+    private static final int MAX_FINISHED_TASKS = 50;
+
+    private final AtomicLong idBuilder = new AtomicLong();
+    private final Map<Long, MigrationTask> tasks = new ConcurrentSkipListMap<>();
+
+    private final AtomicLong migratedRows = new AtomicLong();
+    private final AtomicLong finishedTasks = new AtomicLong();
+    private final AtomicLong failedTasks = new AtomicLong();
+
+
+    private DataMigrationMonitor() {
+        InformationManager im = InformationManager.getInstance();
+
+        InformationPage page = new InformationPage( "Data Migration" );
+        im.addPage( page );
+
+        InformationGroup summaryGroup = new InformationGroup( page, "Summary" ).setOrder( 1 );
+        im.addGroup( summaryGroup );
+        InformationKeyValue summaryKv = new InformationKeyValue( summaryGroup );
+        im.registerInformation( summaryKv );
+        summaryGroup.setRefreshFunction( () -> {
+            summaryKv.putPair( "Running Migrations", tasks.values().stream().filter( t -> !t.isDone() ).count() + "" );
+            summaryKv.putPair( "Finished Migrations", finishedTasks.get() + "" );
+            summaryKv.putPair( "Failed Migrations", failedTasks.get() + "" );
+            summaryKv.putPair( "Migrated Rows", migratedRows.get() + "" );
+        } );
+
+        InformationGroup progressGroup = new InformationGroup( page, "Progress" ).setOrder( 2 );
+        im.addGroup( progressGroup );
+        InformationTable progressTable = new InformationTable(
+                progressGroup,
+                Arrays.asList( "Table", "Partition", "Target", "Method", "Rows", "Progress", "Rows/s", "ETA", "State" ) );
+        im.registerInformation( progressTable );
+        progressGroup.setRefreshFunction( () -> {
+            progressTable.reset();
+            long now = System.currentTimeMillis();
+            for ( MigrationTask task : tasks.values() ) {
+                long rows = task.rows.sum();
+                double seconds = Math.max( 1, (task.isDone() ? task.end : now) - task.start ) / 1000.0;
+                double throughput = rows / seconds;
+                String progress = "-";
+                String eta = "-";
+                if ( task.expectedRows != null && task.expectedRows > 0 ) {
+                    progress = String.format( Locale.ENGLISH, "%.1f %%", Math.min( 100.0, 100.0 * rows / task.expectedRows ) );
+                    if ( !task.isDone() && throughput > 0 ) {
+                        eta = String.format( Locale.ENGLISH, "%.0f s", Math.max( 0, task.expectedRows - rows ) / throughput );
+                    }
+                }
+                progressTable.addRow(
+                        task.table,
+                        task.partitionId,
+                        task.target,
+                        task.method,
+                        rows,
+                        progress,
+                        String.format( Locale.ENGLISH, "%.0f", throughput ),
+                        eta,
+                        task.state );
+            }
+        } );
+    }
+
+
+    /**
+     * Registers a new migration of a single partition.
+     *
+     * @param table Name of the migrated table
+     * @param partitionId Migrated partition
+     * @param target Unique name of the target store
+     * @param method Method used to write to the target, e.g. INSERT or BULK
+     * @param expectedRows Estimated number of rows to migrate or null if unknown
+     * @return Handle to report the progress of the migration
+     */
+    public MigrationTask start( String table, long partitionId, String target, String method, Integer expectedRows ) {
+        MigrationTask task = new MigrationTask( table, partitionId, target, method, expectedRows );
+        tasks.put( idBuilder.getAndIncrement(), task );
+        return task;
+    }
+
+
+    private void finished( MigrationTask task, boolean success ) {
+        (success ? finishedTasks : failedTasks).incrementAndGet();
+        // Only keep the most recent finished tasks
+        long done = tasks.values().stream().filter( MigrationTask::isDone ).count();
+        Iterator<MigrationTask> iterator = tasks.values().iterator();
+        while ( done > MAX_FINISHED_TASKS && iterator.hasNext() ) {
+            if ( iterator.next().isDone() ) {
+                iterator.remove();
+                done--;
+            }
+        }
+    }
+
+
+    public class MigrationTask {
+
+        private final String table;
+        private final long partitionId;
+        private final String target;
+        private final String method;
+        private final Integer expectedRows;
+
+        private final LongAdder rows = new LongAdder();
+        private final long start = System.currentTimeMillis();
+        private volatile long end;
+        @Getter
+        private volatile String state = "RUNNING";
+
+
+        private MigrationTask( String table, long partitionId, String target, String method, Integer expectedRows ) {
+            this.table = table;
+            this.partitionId = partitionId;
+            this.target = target;
+            this.method = method;
+            this.expectedRows = expectedRows;
+        }
+
+
+        public void addRows( int count ) {
+            rows.add( count );
+            migratedRows.addAndGet( count );
+        }
+
+
+        public boolean isDone() {
+            return end != 0;
+        }
+
+
+        public void finish( boolean success ) {
+            state = success ? "FINISHED" : "FAILED";
+            end = System.currentTimeMillis();
+            finished( this, success );
+        }
+
+    }
+
+}
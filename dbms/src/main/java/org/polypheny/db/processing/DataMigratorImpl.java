@@ -17,22 +17,40 @@
 package org.polypheny.db.processing;
 
 import com.google.common.collect.ImmutableList;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.calcite.avatica.Meta.CursorFactory;
+import org.apache.calcite.avatica.Meta.Style;
 import org.apache.calcite.avatica.MetaImpl;
 import org.apache.calcite.linq4j.Enumerable;
 import org.jetbrains.annotations.NotNull;
 import org.polypheny.db.PolyImplementation;
+import org.polypheny.db.StatisticsManager;
+import org.polypheny.db.adapter.Adapter;
+import org.polypheny.db.adapter.AdapterManager;
+import org.polypheny.db.adapter.DataStore;
 import org.polypheny.db.algebra.AlgNode;
 import org.polypheny.db.algebra.AlgRoot;
 import org.polypheny.db.algebra.AlgStructuredTypeFlattener;
@@ -43,6 +61,8 @@
 import org.polypheny.db.algebra.logical.lpg.LogicalLpgScan;
 import org.polypheny.db.algebra.logical.lpg.LogicalLpgValues;
 import org.polypheny.db.algebra.logical.relational.LogicalValues;
+import org.polypheny.db.algebra.operators.OperatorName;
+import org.polypheny.db.algebra.type.AlgDataType;
 import org.polypheny.db.algebra.type.AlgDataTypeFactory;
 import org.polypheny.db.algebra.type.AlgDataTypeField;
 import org.polypheny.db.algebra.type.AlgDataTypeFieldImpl;
@@ -56,10 +76,13 @@
 import org.polypheny.db.catalog.entity.CatalogPrimaryKey;
 import org.polypheny.db.catalog.entity.CatalogTable;
 import org.polypheny.db.config.RuntimeConfig;
+import org.polypheny.db.partition.CompiledPartitionFunction;
 import org.polypheny.db.partition.PartitionManager;
 import org.polypheny.db.partition.PartitionManagerFactory;
+import org.polypheny.db.languages.OperatorRegistry;
 import org.polypheny.db.plan.AlgOptCluster;
 import org.polypheny.db.plan.AlgOptTable;
+import org.polypheny.db.processing.DataMigrationMonitor.MigrationTask;
 import org.polypheny.db.rex.RexBuilder;
 import org.polypheny.db.rex.RexDynamicParam;
 import org.polypheny.db.rex.RexNode;
@@ -196,15 +219,39 @@ public void copyData( Transaction transaction, CatalogAdapter store, List<Catalo
                     selectSourcePlacements( table, selectColumnList, targetColumnPlacements.get( 0 ).adapterId ) );
         }
 
+        boolean isNewPlacement = Catalog.getInstance().getColumnPlacementsOnAdapterPerTable( store.id, table.id ).size() == columns.size();
+        Adapter adapter = AdapterManager.getInstance().getAdapter( store.id );
+        // Stores with a dedicated load path can directly be filled with the rows of new placements
+        DataStore bulkLoadStore = isNewPlacement && adapter instanceof DataStore && ((DataStore) adapter).supportsBulkLoad( columns ) ? (DataStore) adapter : null;
+
+        Integer rowCount = StatisticsManager.getInstance().rowCountPerTable( table.id );
+        Integer expectedRows = rowCount == null ? null : rowCount / table.partitionProperty.partitionIds.size();
+
+        // Statements are created and prepared upfront in this thread, the workers only execute them. This way, the
+        // transaction is never used concurrently for preparing queries and acquiring locks. Workers running concurrently
+        // use branch statements, so that every one of them has its own connections to the adapters.
+        boolean concurrent = partitionIds.size() > 1
+                && RuntimeConfig.DATA_MIGRATOR_PARALLELISM.getInteger() > 1
+                && supportsConcurrentStatements( transaction, store, placementDistribution );
+        AtomicBoolean cancelled = new AtomicBoolean();
+        List<Callable<Void>> workers = new ArrayList<>();
         for ( long partitionId : partitionIds ) {
-            Statement sourceStatement = transaction.createStatement();
-            Statement targetStatement = transaction.createStatement();
+            Statement sourceStatement = concurrent ? transaction.createBranchStatement() : transaction.createStatement();
+            Statement targetStatement = concurrent ? transaction.createBranchStatement() : transaction.createStatement();
 
             Map<Long, List<CatalogColumnPlacement>> subDistribution = new HashMap<>( placementDistribution );
             subDistribution.keySet().retainAll( List.of( partitionId ) );
             AlgRoot sourceAlg = getSourceIterator( sourceStatement, subDistribution );
+            PolyImplementation source = prepareSource( sourceAlg, sourceStatement, false, false );
+
+            if ( bulkLoadStore != null ) {
+                MigrationTask task = DataMigrationMonitor.INSTANCE.start( table.name, partitionId, store.uniqueName, "BULK", expectedRows );
+                workers.add( monitored( task, () -> executeBulkLoad( targetColumnPlacements, source, sourceStatement, targetStatement, bulkLoadStore, table, partitionId, task, cancelled ) ) );
+                continue;
+            }
+
             AlgRoot targetAlg;
-            if ( Catalog.getInstance().getColumnPlacementsOnAdapterPerTable( store.id, table.id ).size() == columns.size() ) {
+            if ( isNewPlacement ) {
                 // There have been no placements for this table on this store before. Build insert statement
                 targetAlg = buildInsertStatement( targetStatement, targetColumnPlacements, partitionId );
             } else {
@@ -212,31 +259,334 @@ public void copyData( Transaction transaction, CatalogAdapter store, List<Catalo
                 targetAlg = buildUpdateStatement( targetStatement, targetColumnPlacements, partitionId );
             }
 
+            PolyImplementation target = targetStatement.getQueryProcessor().prepareQuery( targetAlg, sourceAlg.validatedRowType, true, false, false );
+
             // Execute Query
-            executeQuery( selectColumnList, sourceAlg, sourceStatement, targetStatement, targetAlg, false, false );
+            MigrationTask task = DataMigrationMonitor.INSTANCE.start( table.name, partitionId, store.uniqueName, isNewPlacement ? "INSERT" : "UPDATE", expectedRows );
+            workers.add( monitored( task, () -> copyRows( selectColumnList, source, sourceAlg, sourceStatement, targetStatement, target, targetAlg, false, task, cancelled ) ) );
+        }
+
+        executeInParallel( workers, cancelled, concurrent );
+    }
+
+
+    /**
+     * All partitions are copied within the same transaction. They can therefore only be copied in parallel if all involved
+     * adapters allow concurrent branch statements. Branches do not see uncommitted data of the transaction, so the
+     * source adapters must not have been accessed by the transaction before.
+     */
+    private static boolean supportsConcurrentStatements( Transaction transaction, CatalogAdapter store, Map<Long, List<CatalogColumnPlacement>> placementDistribution ) {
+        Set<Integer> adapterIds = new HashSet<>();
+        placementDistribution.values().forEach( placements -> placements.forEach( p -> adapterIds.add( p.adapterId ) ) );
+        if ( transaction.getInvolvedAdapters().stream().anyMatch( adapter -> adapterIds.contains( adapter.getAdapterId() ) ) ) {
+            return false;
+        }
+        adapterIds.add( store.id );
+        return adapterIds.stream()
+                .map( id -> AdapterManager.getInstance().getAdapter( id ) )
+                .allMatch( adapter -> adapter != null && adapter.supportsConcurrentStatements() );
+    }
+
+
+    /**
+     * Wraps a migration into a worker which reports its outcome to the {@link DataMigrationMonitor}.
+     */
+    private static Callable<Void> monitored( MigrationTask task, Runnable migration ) {
+        return () -> {
+            boolean success = false;
+            try {
+                migration.run();
+                success = true;
+            } finally {
+                task.finish( success );
+            }
+            return null;
+        };
+    }
+
+
+    /**
+     * Executes the workers with at most {@link RuntimeConfig#DATA_MIGRATOR_PARALLELISM} of them running at the same time,
+     * or one after another if the involved adapters do not support concurrent statements. If one of them fails, the
+     * others are cancelled and the failure is rethrown. Cancelled workers stop before their next batch, they are never
+     * interrupted in the middle of an I/O operation.
+     */
+    static void executeInParallel( List<Callable<Void>> workers, AtomicBoolean cancelled, boolean concurrent ) {
+        int parallelism = concurrent ? Math.min( workers.size(), RuntimeConfig.DATA_MIGRATOR_PARALLELISM.getInteger() ) : 1;
+        if ( parallelism <= 1 ) {
+            for ( Callable<Void> worker : workers ) {
+                try {
+                    worker.call();
+                } catch ( RuntimeException e ) {
+                    throw e;
+                } catch ( Exception e ) {
+                    throw new RuntimeException( e );
+                }
+            }
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool( parallelism );
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for ( Callable<Void> worker : workers ) {
+                futures.add( executor.submit( worker ) );
+            }
+            for ( Future<Void> future : futures ) {
+                future.get();
+            }
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( e );
+        } catch ( ExecutionException e ) {
+            if ( e.getCause() instanceof RuntimeException ) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException( e.getCause() );
+        } finally {
+            cancelled.set( true );
+            executor.shutdown();
+            awaitTermination( executor );
+        }
+    }
+
+
+    private static void awaitTermination( ExecutorService executor ) {
+        boolean terminated = false;
+        boolean interrupted = false;
+        while ( !terminated ) {
+            try {
+                terminated = executor.awaitTermination( 1, TimeUnit.MINUTES );
+            } catch ( InterruptedException e ) {
+                interrupted = true;
+            }
+        }
+        if ( interrupted ) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    private static void checkCancelled( AtomicBoolean cancelled ) {
+        if ( cancelled.get() ) {
+            throw new RuntimeException( "The data migration has been cancelled" );
+        }
+    }
+
+
+    /**
+     * Reads the chunk with a keyset condition on the primary key and replaces the rows on the target by a delete
+     * followed by an insert, so that rows written to the target by concurrent transactions are not duplicated.
+     */
+    @Override
+    public List<List<Object>> copyDataChunk( Transaction transaction, CatalogAdapter store, List<CatalogColumn> columns, long partitionId, List<Object> lastPrimaryKey, int chunkSize ) {
+        Catalog catalog = Catalog.getInstance();
+        CatalogTable table = catalog.getTable( columns.get( 0 ).tableId );
+        List<CatalogColumn> primaryKeyColumns = catalog.getPrimaryKey( table.primaryKey ).columnIds.stream()
+                .map( catalog::getColumn )
+                .collect( Collectors.toList() );
+
+        List<CatalogColumnPlacement> targetColumnPlacements = new ArrayList<>();
+        List<CatalogColumnPlacement> targetPrimaryKeyPlacements = new ArrayList<>();
+        for ( CatalogColumn catalogColumn : columns ) {
+            targetColumnPlacements.add( catalog.getColumnPlacement( store.id, catalogColumn.id ) );
+        }
+        for ( CatalogColumn catalogColumn : primaryKeyColumns ) {
+            targetPrimaryKeyPlacements.add( catalog.getColumnPlacement( store.id, catalogColumn.id ) );
+        }
+
+        List<CatalogColumn> selectColumnList = new ArrayList<>( columns );
+        for ( CatalogColumn catalogColumn : primaryKeyColumns ) {
+            if ( !selectColumnList.contains( catalogColumn ) ) {
+                selectColumnList.add( catalogColumn );
+            }
+        }
+
+        Map<Long, List<CatalogColumnPlacement>> placementDistribution = new HashMap<>();
+        if ( table.partitionProperty.isPartitioned ) {
+            PartitionManager partitionManager = PartitionManagerFactory.getInstance().getPartitionManager( table.partitionProperty.partitionType );
+            placementDistribution = partitionManager.getRelevantPlacements( table, List.of( partitionId ), Collections.singletonList( store.id ) );
+        } else {
+            placementDistribution.put( partitionId, selectSourcePlacements( table, selectColumnList, store.id ) );
+        }
+
+        // Read the next chunk in primary key order
+        Statement sourceStatement = transaction.createStatement();
+        AlgRoot scan = getSourceIterator( sourceStatement, placementDistribution );
+        AlgBuilder builder = AlgBuilder.create( sourceStatement, scan.alg.getCluster() );
+        builder.push( scan.alg );
+        List<AlgDataTypeField> scanFields = scan.alg.getRowType().getFieldList();
+
+        List<RexNode> keyFields = new ArrayList<>();
+        List<RexNode> keyParameters = new ArrayList<>();
+        for ( CatalogColumn catalogColumn : primaryKeyColumns ) {
+            int index = getFieldIndex( scanFields, catalogColumn.name );
+            keyFields.add( builder.field( index ) );
+            keyParameters.add( new RexDynamicParam( scanFields.get( index ).getType(), (int) catalogColumn.id ) );
+        }
+
+        if ( lastPrimaryKey != null ) {
+            // Keyset condition: (k1 > v1) OR (k1 = v1 AND k2 > v2) OR ...
+            List<RexNode> disjunction = new ArrayList<>();
+            for ( int i = 0; i < keyFields.size(); i++ ) {
+                List<RexNode> conjunction = new ArrayList<>();
+                for ( int j = 0; j < i; j++ ) {
+                    conjunction.add( builder.equals( keyFields.get( j ), keyParameters.get( j ) ) );
+                }
+                conjunction.add( builder.call( OperatorRegistry.get( OperatorName.GREATER_THAN ), keyFields.get( i ), keyParameters.get( i ) ) );
+                disjunction.add( builder.and( conjunction ) );
+            }
+            builder.filter( builder.or( disjunction ) );
+            for ( int i = 0; i < primaryKeyColumns.size(); i++ ) {
+                sourceStatement.getDataContext().addParameterValues( primaryKeyColumns.get( i ).id, keyParameters.get( i ).getType(), Collections.singletonList( lastPrimaryKey.get( i ) ) );
+            }
+        }
+        builder.sortLimit( 0, chunkSize, keyFields );
+        AlgRoot sourceAlg = AlgRoot.of( builder.build(), Kind.SELECT );
+
+        PolyImplementation result = sourceStatement.getQueryProcessor().prepareQuery(
+                sourceAlg,
+                sourceAlg.alg.getCluster().getTypeFactory().builder().build(),
+                true,
+                false,
+                false );
+        Iterator<Object> sourceIterator = result.enumerable( sourceStatement.getDataContext() ).iterator();
+        List<List<Object>> rows = MetaImpl.collect( result.getCursorFactory(), sourceIterator, new ArrayList<>() );
+        sourceStatement.getDataContext().resetParameterValues();
+
+        List<AlgDataTypeField> resultFields = result.getRowType().getFieldList();
+        List<List<Object>> primaryKeys = new ArrayList<>( rows.size() );
+        int[] keyIndexes = new int[primaryKeyColumns.size()];
+        for ( int i = 0; i < keyIndexes.length; i++ ) {
+            keyIndexes[i] = getFieldIndex( resultFields, primaryKeyColumns.get( i ).name );
+        }
+        for ( List<Object> row : rows ) {
+            Object[] key = new Object[keyIndexes.length];
+            for ( int i = 0; i < keyIndexes.length; i++ ) {
+                key[i] = row.get( keyIndexes[i] );
+            }
+            primaryKeys.add( Arrays.asList( key ) );
+        }
+        if ( rows.isEmpty() ) {
+            return primaryKeys;
+        }
+
+        // Remove rows which have already been written to the target by concurrent transactions, then insert the chunk
+        Statement deleteStatement = transaction.createStatement();
+        AlgRoot deleteAlg = buildPrimaryKeyDeleteStatement( deleteStatement, targetPrimaryKeyPlacements, partitionId );
+        executeWithRows( deleteStatement, deleteAlg, sourceAlg.validatedRowType, primaryKeyColumns, resultFields, rows );
+
+        Statement insertStatement = transaction.createStatement();
+        AlgRoot insertAlg = buildInsertStatement( insertStatement, targetColumnPlacements, partitionId );
+        executeWithRows( insertStatement, insertAlg, sourceAlg.validatedRowType, columns, resultFields, rows );
+
+        return primaryKeys;
+    }
+
+
+    private static int getFieldIndex( List<AlgDataTypeField> fields, String columnName ) {
+        for ( int i = 0; i < fields.size(); i++ ) {
+            if ( fields.get( i ).getName().equalsIgnoreCase( columnName ) ) {
+                return i;
+            }
+        }
+        throw new RuntimeException( "Column " + columnName + " is not part of the migrated data" );
+    }
+
+
+    /**
+     * Executes a statement whose dynamic parameters are the ids of the specified columns once for every row.
+     */
+    private void executeWithRows( Statement statement, AlgRoot targetAlg, AlgDataType parameterRowType, List<CatalogColumn> parameterColumns, List<AlgDataTypeField> fields, List<List<Object>> rows ) {
+        for ( CatalogColumn catalogColumn : parameterColumns ) {
+            int index = getFieldIndex( fields, catalogColumn.name );
+            List<Object> values = new ArrayList<>( rows.size() );
+            for ( List<Object> row : rows ) {
+                values.add( row.get( index ) );
+            }
+            statement.getDataContext().addParameterValues( catalogColumn.id, fields.get( index ).getType(), values );
+        }
+        PolyImplementation implementation = statement.getQueryProcessor().prepareQuery( targetAlg, parameterRowType, true, false, false );
+        Iterator<?> iterator = implementation.enumerable( statement.getDataContext() ).iterator();
+        //noinspection WhileLoopReplaceableByForEach
+        while ( iterator.hasNext() ) {
+            iterator.next();
+        }
+        statement.getDataContext().resetParameterValues();
+    }
+
+
+    /**
+     * Reads the partition and hands the rows batch wise to the bulk load of the target store,
+     * without going through the query processor for the insert.
+     */
+    private void executeBulkLoad( List<CatalogColumnPlacement> targetColumnPlacements, PolyImplementation result, Statement sourceStatement, Statement targetStatement, DataStore store, CatalogTable table, long partitionId, MigrationTask task, AtomicBoolean cancelled ) {
+        checkCancelled( cancelled );
+        Iterator<Object> sourceIterator = result.enumerable( sourceStatement.getDataContext() ).iterator();
+
+        // Position of the value of each target placement in the result rows
+        int[] columnIndexes = new int[targetColumnPlacements.size()];
+        List<AlgDataTypeField> resultFields = result.getRowType().getFieldList();
+        for ( int c = 0; c < columnIndexes.length; c++ ) {
+            String columnName = Catalog.getInstance().getColumn( targetColumnPlacements.get( c ).columnId ).name;
+            columnIndexes[c] = -1;
+            for ( int i = 0; i < resultFields.size(); i++ ) {
+                if ( resultFields.get( i ).getName().equalsIgnoreCase( columnName ) ) {
+                    columnIndexes[c] = i;
+                }
+            }
+            if ( columnIndexes[c] < 0 ) {
+                throw new RuntimeException( "Column " + columnName + " is not part of the migrated data" );
+            }
+        }
+
+        ColumnBatch batch = new ColumnBatch( result.getCursorFactory(), columnIndexes, RuntimeConfig.DATA_MIGRATOR_BATCH_SIZE.getInteger(), false );
+        while ( sourceIterator.hasNext() ) {
+            checkCancelled( cancelled );
+            int rowCount = batch.fill( sourceIterator );
+            store.bulkLoad( targetStatement.getPrepareContext(), table, partitionId, targetColumnPlacements, batch.getRows() );
+            task.addRows( rowCount );
         }
     }
 
 
     @Override
     public void executeQuery( List<CatalogColumn> selectColumnList, AlgRoot sourceAlg, Statement sourceStatement, Statement targetStatement, AlgRoot targetAlg, boolean isMaterializedView, boolean doesSubstituteOrderBy ) {
+        PolyImplementation result;
         try {
-            PolyImplementation result;
-            if ( isMaterializedView ) {
-                result = sourceStatement.getQueryProcessor().prepareQuery(
-                        sourceAlg,
-                        sourceAlg.alg.getCluster().getTypeFactory().builder().build(),
-                        false,
-                        false,
-                        doesSubstituteOrderBy );
-            } else {
-                result = sourceStatement.getQueryProcessor().prepareQuery(
-                        sourceAlg,
-                        sourceAlg.alg.getCluster().getTypeFactory().builder().build(),
-                        true,
-                        false,
-                        false );
-            }
+            result = prepareSource( sourceAlg, sourceStatement, isMaterializedView, doesSubstituteOrderBy );
+        } catch ( Throwable t ) {
+            throw new RuntimeException( t );
+        }
+        copyRows( selectColumnList, result, sourceAlg, sourceStatement, targetStatement, null, targetAlg, isMaterializedView, null, new AtomicBoolean() );
+    }
+
+
+    private static PolyImplementation prepareSource( AlgRoot sourceAlg, Statement sourceStatement, boolean isMaterializedView, boolean doesSubstituteOrderBy ) {
+        if ( isMaterializedView ) {
+            return sourceStatement.getQueryProcessor().prepareQuery(
+                    sourceAlg,
+                    sourceAlg.alg.getCluster().getTypeFactory().builder().build(),
+                    false,
+                    false,
+                    doesSubstituteOrderBy );
+        }
+        return sourceStatement.getQueryProcessor().prepareQuery(
+                sourceAlg,
+                sourceAlg.alg.getCluster().getTypeFactory().builder().build(),
+                true,
+                false,
+                false );
+    }
+
+
+    /**
+     * Copies the rows of the prepared source batch wise to the target. If no prepared target is given, it is prepared
+     * with the first batch.
+     */
+    private void copyRows( List<CatalogColumn> selectColumnList, PolyImplementation result, AlgRoot sourceAlg, Statement sourceStatement, Statement targetStatement, PolyImplementation targetImplementation, AlgRoot targetAlg, boolean isMaterializedView, MigrationTask task, AtomicBoolean cancelled ) {
+        try {
+            checkCancelled( cancelled );
             final Enumerable<Object> enumerable = result.enumerable( sourceStatement.getDataContext() );
             //noinspection unchecked
             Iterator<Object> sourceIterator = enumerable.iterator();
@@ -260,53 +610,46 @@ public void executeQuery( List<CatalogColumn> selectColumnList, AlgRoot sourceAl
                 }
             }
 
-            int batchSize = RuntimeConfig.DATA_MIGRATOR_BATCH_SIZE.getInteger();
-            int i = 0;
-            while ( sourceIterator.hasNext() ) {
-                List<List<Object>> rows = MetaImpl.collect( result.getCursorFactory(), LimitIterator.of( sourceIterator, batchSize ), new ArrayList<>() );
-                Map<Long, List<Object>> values = new HashMap<>();
+            List<AlgDataTypeField> fields;
+            if ( isMaterializedView ) {
+                fields = targetAlg.alg.getTable().getRowType().getFieldList();
+            } else {
+                fields = sourceAlg.validatedRowType.getFieldList();
+            }
 
-                for ( List<Object> list : rows ) {
-                    for ( Map.Entry<Long, Integer> entry : resultColMapping.entrySet() ) {
-                        if ( !values.containsKey( entry.getKey() ) ) {
-                            values.put( entry.getKey(), new LinkedList<>() );
-                        }
-                        if ( isMaterializedView ) {
-                            if ( entry.getValue() > list.size() - 1 ) {
-                                values.get( entry.getKey() ).add( i );
-                                i++;
-                            } else {
-                                values.get( entry.getKey() ).add( list.get( entry.getValue() ) );
-                            }
-                        } else {
-                            values.get( entry.getKey() ).add( list.get( entry.getValue() ) );
-                        }
-                    }
-                }
-                List<AlgDataTypeField> fields;
-                if ( isMaterializedView ) {
-                    fields = targetAlg.alg.getTable().getRowType().getFieldList();
-                } else {
-                    fields = sourceAlg.validatedRowType.getFieldList();
-                }
-                int pos = 0;
-                for ( Map.Entry<Long, List<Object>> v : values.entrySet() ) {
-                    targetStatement.getDataContext().addParameterValues(
-                            v.getKey(),
-                            fields.get( resultColMapping.get( v.getKey() ) ).getType(),
-                            v.getValue() );
-                    pos++;
+            // Flatten the mapping, so the values can be gathered column wise without any lookups
+            long[] parameterIds = new long[resultColMapping.size()];
+            int[] columnIndexes = new int[resultColMapping.size()];
+            AlgDataType[] parameterTypes = new AlgDataType[resultColMapping.size()];
+            int pos = 0;
+            for ( Map.Entry<Long, Integer> entry : resultColMapping.entrySet() ) {
+                parameterIds[pos] = entry.getKey();
+                columnIndexes[pos] = entry.getValue();
+                parameterTypes[pos] = fields.get( entry.getValue() ).getType();
+                pos++;
+            }
+
+            ColumnBatch batch = new ColumnBatch( result.getCursorFactory(), columnIndexes, RuntimeConfig.DATA_MIGRATOR_BATCH_SIZE.getInteger(), isMaterializedView );
+            while ( sourceIterator.hasNext() ) {
+                checkCancelled( cancelled );
+                int rowCount = batch.fill( sourceIterator );
+                for ( int c = 0; c < parameterIds.length; c++ ) {
+                    targetStatement.getDataContext().addParameterValues( parameterIds[c], parameterTypes[c], batch.getColumn( c ) );
                 }
 
-                Iterator<?> iterator = targetStatement.getQueryProcessor()
-                        .prepareQuery( targetAlg, sourceAlg.validatedRowType, true, false, false )
-                        .enumerable( targetStatement.getDataContext() )
-                        .iterator();
+                if ( targetImplementation == null ) {
+                    // The target is only prepared once and re-executed with the parameters of every batch
+                    targetImplementation = targetStatement.getQueryProcessor().prepareQuery( targetAlg, sourceAlg.validatedRowType, true, false, false );
+                }
+                Iterator<?> iterator = targetImplementation.enumerable( targetStatement.getDataContext() ).iterator();
                 //noinspection WhileLoopReplaceableByForEach
                 while ( iterator.hasNext() ) {
                     iterator.next();
                 }
                 targetStatement.getDataContext().resetParameterValues();
+                if ( task != null ) {
+                    task.addRows( rowCount );
+                }
             }
         } catch ( Throwable t ) {
             throw new RuntimeException( t );
@@ -314,6 +657,131 @@ public void executeQuery( List<CatalogColumn> selectColumnList, AlgRoot sourceAl
     }
 
 
+    /**
+     * A batch of source rows, whose values are moved into one array per column. The arrays are allocated once and
+     * reused for every batch, the rows are never materialized as lists. The columns and rows handed out are views on
+     * these arrays and only valid until the next batch is filled.
+     */
+    static class ColumnBatch {
+
+        private final Style style;
+        private final int[] columnIndexes;
+        private final Object[][] columns;
+        private final int capacity;
+        private final boolean fillMissing;
+        private int size;
+        private int counter;
+
+
+        /**
+         * @param columnIndexes the position in the source rows of each column
+         * @param fillMissing whether positions beyond the width of a row are filled with a running number, as needed for
+         * the generated primary key of materialized views
+         */
+        ColumnBatch( CursorFactory cursorFactory, int[] columnIndexes, int capacity, boolean fillMissing ) {
+            this.style = cursorFactory.style;
+            this.columnIndexes = columnIndexes;
+            this.capacity = Math.max( capacity, 1 );
+            this.columns = new Object[columnIndexes.length][this.capacity];
+            this.fillMissing = fillMissing;
+        }
+
+
+        /**
+         * Moves the next rows of the source into the batch, replacing its previous content.
+         *
+         * @return the number of rows in the batch
+         */
+        int fill( Iterator<Object> source ) {
+            size = 0;
+            while ( size < capacity && source.hasNext() ) {
+                Object row = source.next();
+                for ( int c = 0; c < columnIndexes.length; c++ ) {
+                    columns[c][size] = getValue( row, columnIndexes[c] );
+                }
+                size++;
+            }
+            // Do not keep the values of the last batch alive
+            for ( Object[] column : columns ) {
+                Arrays.fill( column, size, column.length, null );
+            }
+            return size;
+        }
+
+
+        private Object getValue( Object row, int index ) {
+            int width;
+            switch ( style ) {
+                case OBJECT:
+                    if ( index == 0 ) {
+                        return row;
+                    }
+                    width = 1;
+                    break;
+                case ARRAY:
+                    Object[] array = (Object[]) row;
+                    if ( index < array.length ) {
+                        return array[index];
+                    }
+                    width = array.length;
+                    break;
+                case LIST:
+                    List<?> list = (List<?>) row;
+                    if ( index < list.size() ) {
+                        return list.get( index );
+                    }
+                    width = list.size();
+                    break;
+                default:
+                    throw new RuntimeException( "Unknown cursor factory style " + style );
+            }
+            if ( !fillMissing ) {
+                throw new IndexOutOfBoundsException( "Position " + index + " is not part of a row with " + width + " values" );
+            }
+            return counter++;
+        }
+
+
+        int size() {
+            return size;
+        }
+
+
+        List<Object> getColumn( int column ) {
+            return Arrays.asList( columns[column] ).subList( 0, size );
+        }
+
+
+        List<List<Object>> getRows() {
+            return new AbstractList<>() {
+                @Override
+                public List<Object> get( int row ) {
+                    Objects.checkIndex( row, size );
+                    return new AbstractList<>() {
+                        @Override
+                        public Object get( int column ) {
+                            return columns[column][row];
+                        }
+
+
+                        @Override
+                        public int size() {
+                            return columns.length;
+                        }
+                    };
+                }
+
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+
+    }
+
+
     @Override
     public AlgRoot buildDeleteStatement( Statement statement, List<CatalogColumnPlacement> to, long partitionId ) {
         List<String> qualifiedTableName = ImmutableList.of(
@@ -401,6 +869,50 @@ public AlgRoot buildInsertStatement( Statement statement, List<CatalogColumnPlac
     }
 
 
+    /**
+     * Builds a delete statement for the rows of a physical table which match the primary key given as dynamic parameters.
+     */
+    private AlgRoot buildPrimaryKeyDeleteStatement( Statement statement, List<CatalogColumnPlacement> primaryKeyPlacements, long partitionId ) {
+        List<String> qualifiedTableName = ImmutableList.of(
+                PolySchemaBuilder.buildAdapterSchemaName(
+                        primaryKeyPlacements.get( 0 ).adapterUniqueName,
+                        primaryKeyPlacements.get( 0 ).getLogicalSchemaName(),
+                        primaryKeyPlacements.get( 0 ).physicalSchemaName ),
+                primaryKeyPlacements.get( 0 ).getLogicalTableName() + "_" + partitionId );
+        AlgOptTable physical = statement.getTransaction().getCatalogReader().getTableForMember( qualifiedTableName );
+        ModifiableTable modifiableTable = physical.unwrap( ModifiableTable.class );
+
+        AlgOptCluster cluster = AlgOptCluster.create(
+                statement.getQueryProcessor().getPlanner(),
+                new RexBuilder( statement.getTransaction().getTypeFactory() ) );
+        AlgDataTypeFactory typeFactory = new PolyTypeFactoryImpl( AlgDataTypeSystem.DEFAULT );
+
+        AlgBuilder builder = AlgBuilder.create( statement, cluster );
+        builder.scan( qualifiedTableName );
+
+        List<RexNode> conditions = new ArrayList<>();
+        for ( CatalogColumnPlacement ccp : primaryKeyPlacements ) {
+            CatalogColumn catalogColumn = Catalog.getInstance().getColumn( ccp.columnId );
+            conditions.add( builder.equals(
+                    builder.field( ccp.getLogicalColumnName() ),
+                    new RexDynamicParam( catalogColumn.getAlgDataType( typeFactory ), (int) catalogColumn.id ) ) );
+        }
+        builder.filter( builder.and( conditions ) );
+
+        AlgNode node = modifiableTable.toModificationAlg(
+                cluster,
+                physical,
+                statement.getTransaction().getCatalogReader(),
+                builder.build(),
+                Operation.DELETE,
+                null,
+                null,
+                false
+        );
+        return AlgRoot.of( node, Kind.DELETE );
+    }
+
+
     private AlgRoot buildUpdateStatement( Statement statement, List<CatalogColumnPlacement> to, long partitionId ) {
         List<String> qualifiedTableName = ImmutableList.of(
                 PolySchemaBuilder.buildAdapterSchemaName(
@@ -484,10 +996,11 @@ public AlgRoot getSourceIterator( Statement statement, Map<Long, List<CatalogCol
     public static List<CatalogColumnPlacement> selectSourcePlacements( CatalogTable table, List<CatalogColumn> columns, int excludingAdapterId ) {
         // Find the adapter with the most column placements
         Catalog catalog = Catalog.getInstance();
+        long partitionId = table.partitionProperty.partitionIds.get( 0 );
         int adapterIdWithMostPlacements = -1;
         int numOfPlacements = 0;
         for ( Entry<Integer, ImmutableList<Long>> entry : catalog.getColumnPlacementsByAdapter( table.id ).entrySet() ) {
-            if ( entry.getKey() != excludingAdapterId && entry.getValue().size() > numOfPlacements ) {
+            if ( entry.getKey() != excludingAdapterId && entry.getValue().size() > numOfPlacements && !catalog.isPartitionPlacementOutdated( entry.getKey(), partitionId ) ) {
                 adapterIdWithMostPlacements = entry.getKey();
                 numOfPlacements = entry.getValue().size();
             }
@@ -506,7 +1019,7 @@ public static List<CatalogColumnPlacement> selectSourcePlacements( CatalogTable
                     placementList.add( catalog.getColumnPlacement( adapterIdWithMostPlacements, cid ) );
                 } else {
                     for ( CatalogColumnPlacement placement : catalog.getColumnPlacement( cid ) ) {
-                        if ( placement.adapterId != excludingAdapterId ) {
+                        if ( placement.adapterId != excludingAdapterId && !catalog.isPartitionPlacementOutdated( placement.adapterId, partitionId ) ) {
                             placementList.add( placement );
                             break;
                         }
@@ -582,6 +1095,7 @@ public void copySelectiveData( Transaction transaction, CatalogAdapter store, Ca
                 }
             }
 
+            PolyImplementation targetImplementation = null;
             int batchSize = RuntimeConfig.DATA_MIGRATOR_BATCH_SIZE.getInteger();
             while ( sourceIterator.hasNext() ) {
                 List<List<Object>> rows = MetaImpl.collect(
@@ -591,17 +1105,17 @@ public void copySelectiveData( Transaction transaction, CatalogAdapter store, Ca
                 Map<Long, List<Object>> values = new HashMap<>();
                 for ( List<Object> list : rows ) {
                     for ( Map.Entry<Long, Integer> entry : resultColMapping.entrySet() ) {
-                        if ( !values.containsKey( entry.getKey() ) ) {
-                            values.put( entry.getKey(), new LinkedList<>() );
-                        }
-                        values.get( entry.getKey() ).add( list.get( entry.getValue() ) );
+                        values.computeIfAbsent( entry.getKey(), k -> new ArrayList<>( rows.size() ) ).add( list.get( entry.getValue() ) );
                     }
                 }
                 for ( Map.Entry<Long, List<Object>> v : values.entrySet() ) {
                     targetStatement.getDataContext().addParameterValues( v.getKey(), null, v.getValue() );
                 }
-                Iterator<?> iterator = targetStatement.getQueryProcessor()
-                        .prepareQuery( targetAlg, sourceAlg.validatedRowType, true, false, true )
+                if ( targetImplementation == null ) {
+                    // The target is only prepared once and re-executed with the parameters of every batch
+                    targetImplementation = targetStatement.getQueryProcessor().prepareQuery( targetAlg, sourceAlg.validatedRowType, true, false, true );
+                }
+                Iterator<?> iterator = targetImplementation
                         .enumerable( targetStatement.getDataContext() )
                         .iterator();
 
@@ -706,44 +1220,39 @@ public void copyPartitionData( Transaction transaction, CatalogAdapter store, Ca
             }
 
             int partitionColumnIndex = -1;
-            String parsedValue = null;
             String nullifiedPartitionValue = partitionManager.getUnifiedNullValue();
-            if ( targetTable.partitionProperty.isPartitioned ) {
-                if ( resultColMapping.containsKey( targetTable.partitionProperty.partitionColumnId ) ) {
-                    partitionColumnIndex = resultColMapping.get( targetTable.partitionProperty.partitionColumnId );
-                } else {
-                    parsedValue = nullifiedPartitionValue;
-                }
+            if ( targetTable.partitionProperty.isPartitioned && resultColMapping.containsKey( targetTable.partitionProperty.partitionColumnId ) ) {
+                partitionColumnIndex = resultColMapping.get( targetTable.partitionProperty.partitionColumnId );
             }
+            CompiledPartitionFunction partitionFunction = partitionManager.getPartitionFunction( targetTable );
 
+            Map<Long, PolyImplementation> targetImplementations = new HashMap<>();
             int batchSize = RuntimeConfig.DATA_MIGRATOR_BATCH_SIZE.getInteger();
             while ( sourceIterator.hasNext() ) {
                 List<List<Object>> rows = MetaImpl.collect( result.getCursorFactory(), LimitIterator.of( sourceIterator, batchSize ), new ArrayList<>() );
 
                 Map<Long, Map<Long, List<Object>>> partitionValues = new HashMap<>();
 
+                // Assign the whole batch to the partitions at once
+                List<Object> rowPartitionValues = new ArrayList<>( rows.size() );
                 for ( List<Object> row : rows ) {
-                    long currentPartitionId = -1;
-                    if ( partitionColumnIndex >= 0 ) {
-                        parsedValue = nullifiedPartitionValue;
-                        if ( row.get( partitionColumnIndex ) != null ) {
-                            parsedValue = row.get( partitionColumnIndex ).toString();
-                        }
-                    }
+                    Object value = partitionColumnIndex >= 0 ? row.get( partitionColumnIndex ) : null;
+                    rowPartitionValues.add( value == null ? nullifiedPartitionValue : value );
+                }
+                long[] rowPartitionIds = partitionFunction.routeBatch( rowPartitionValues );
 
-                    currentPartitionId = partitionManager.getTargetPartitionId( targetTable, parsedValue );
+                int rowIndex = 0;
+                for ( List<Object> row : rows ) {
+                    long currentPartitionId = rowPartitionIds[rowIndex++];
 
                     for ( Map.Entry<Long, Integer> entry : resultColMapping.entrySet() ) {
                         if ( entry.getKey() == partitionColumn.id && !columns.contains( partitionColumn ) ) {
                             continue;
                         }
-                        if ( !partitionValues.containsKey( currentPartitionId ) ) {
-                            partitionValues.put( currentPartitionId, new HashMap<>() );
-                        }
-                        if ( !partitionValues.get( currentPartitionId ).containsKey( entry.getKey() ) ) {
-                            partitionValues.get( currentPartitionId ).put( entry.getKey(), new LinkedList<>() );
-                        }
-                        partitionValues.get( currentPartitionId ).get( entry.getKey() ).add( row.get( entry.getValue() ) );
+                        partitionValues
+                                .computeIfAbsent( currentPartitionId, k -> new HashMap<>() )
+                                .computeIfAbsent( entry.getKey(), k -> new ArrayList<>() )
+                                .add( row.get( entry.getValue() ) );
                     }
                 }
 
@@ -758,8 +1267,11 @@ public void copyPartitionData( Transaction transaction, CatalogAdapter store, Ca
                         currentTargetStatement.getDataContext().addParameterValues( columnDataOnPartition.getKey(), null, columnDataOnPartition.getValue() );
                     }
 
-                    Iterator iterator = currentTargetStatement.getQueryProcessor()
-                            .prepareQuery( targetAlgs.get( partitionId ), sourceAlg.validatedRowType, true, false, false )
+                    // Every target partition is only prepared once and re-executed with the parameters of every batch
+                    PolyImplementation targetImplementation = targetImplementations.computeIfAbsent(
+                            partitionId,
+                            k -> currentTargetStatement.getQueryProcessor().prepareQuery( targetAlgs.get( partitionId ), sourceAlg.validatedRowType, true, false, false ) );
+                    Iterator<?> iterator = targetImplementation
                             .enumerable( currentTargetStatement.getDataContext() )
                             .iterator();
                     //noinspection WhileLoopReplaceableByForEach
@@ -35,6 +35,12 @@ public class HepQueryProcessor extends AbstractQueryProcessor {
 
     protected HepQueryProcessor( Statement statement ) {
         super( statement );
+        planner = createPlanner();
+    }
+
+
+    @Override
+    protected HepPlanner createPlanner() {
         HepProgramBuilder hepProgramBuilder =
                 new HepProgramBuilder()
                         .addRuleInstance( CalcSplitRule.INSTANCE )
@@ -44,7 +50,7 @@ protected HepQueryProcessor( Statement statement ) {
                         .addRuleInstance( ProjectScanRule.INSTANCE )
                         .addRuleInstance( ProjectScanRule.INTERPRETER );
 
-        planner = new HepPlanner( hepProgramBuilder.build() );
+        return new HepPlanner( hepProgramBuilder.build() );
     }
 
 
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.processing;
+
+import com.google.common.util.concurrent.RateLimiter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+import org.polypheny.db.StatisticsManager;
+import org.polypheny.db.adapter.AdapterManager;
+import org.polypheny.db.catalog.Catalog;
+import org.polypheny.db.catalog.Catalog.DataPlacementRole;
+import org.polypheny.db.catalog.entity.CatalogAdapter;
+import org.polypheny.db.catalog.entity.CatalogColumn;
+import org.polypheny.db.catalog.entity.CatalogPartitionPlacement;
+import org.polypheny.db.catalog.entity.CatalogTable;
+import org.polypheny.db.config.RuntimeConfig;
+import org.polypheny.db.ddl.DdlManager;
+import org.polypheny.db.ddl.exception.LastPlacementException;
+import org.polypheny.db.ddl.exception.PlacementNotExistsException;
+import org.polypheny.db.processing.DataMigrationMonitor.MigrationTask;
+import org.polypheny.db.transaction.EntityAccessMap.EntityIdentifier;
+import org.polypheny.db.transaction.Lock.LockMode;
+import org.polypheny.db.transaction.LockManager;
+import org.polypheny.db.transaction.Transaction;
+import org.polypheny.db.transaction.TransactionImpl;
+import org.polypheny.db.transaction.TransactionManager;
+import org.polypheny.db.transaction.TransactionManagerImpl;
+import org.polypheny.db.util.Pair;
+
+
+/**
+ * Fills new data placements in the background while the table stays available.
+ *
+ * The partition placements are created with the role {@link DataPlacementRole#REFRESHABLE}. Such placements already
+ * receive all writes, but are not considered when routing queries. The existing rows are copied in primary key order,
+ * in chunks of {@link RuntimeConfig#ONLINE_DATA_MIGRATION_CHUNK_SIZE} rows. Every chunk runs in its own transaction
+ * which holds a shared lock on the table: queries continue, writers wait for the duration of a single chunk.
+ * Once all partitions are copied, the placements are promoted to {@link DataPlacementRole#UPTODATE} under an exclusive lock.
+ *
+ * If a migration fails, the placement is removed again. Migrations interrupted by a shutdown are restarted by
+ * {@link #restoreMigrations()}; since every chunk replaces the rows it copies, starting over from the first row is safe.
+ */
+@Slf4j
+public class OnlineDataMigrator {
+
+    public static final OnlineDataMigrator INSTANCE = new OnlineDataMigrator();
+
+    private final TransactionManager transactionManager = TransactionManagerImpl.getInstance();
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor( r -> {
+        Thread thread = new Thread( r, "OnlineDataMigrator" );
+        thread.setDaemon( true );
+        return thread;
+    } );
+
+    // tableId -> number of scheduled or running migrations
+    private final Map<Long, Integer> migrations = new ConcurrentHashMap<>();
+
+
+    private OnlineDataMigrator() {
+        // Intentionally left empty
+    }
+
+
+    /**
+     * Schedules the migration of the data to the specified partition placements. The migration starts once the
+     * transaction which created the placements has released its locks.
+     *
+     * @param table Table to which the placements belong
+     * @param store Store on which the placements reside
+     * @param partitionIds Partitions placed on the store which need to be filled
+     */
+    public void schedule( CatalogTable table, CatalogAdapter store, List<Long> partitionIds ) {
+        migrations.merge( table.id, 1, Integer::sum );
+        List<Long> partitions = new ArrayList<>( partitionIds );
+        executor.submit( () -> {
+            boolean success = false;
+            try {
+                migrate( table, store, partitions );
+                success = true;
+            } catch ( Throwable t ) {
+                log.error( "Online migration of table {} to store {} failed. The placement is removed.", table.name, store.uniqueName, t );
+            } finally {
+                migrations.computeIfPresent( table.id, ( k, v ) -> v == 1 ? null : v - 1 );
+            }
+            if ( !success ) {
+                // The placement can only be dropped once the table is no longer marked as migrating
+                removePlacement( table, store );
+            }
+        } );
+    }
+
+
+    /**
+     * Schedules the migrations which have been interrupted by a shutdown, i.e. all partition placements which are
+     * still {@link DataPlacementRole#REFRESHABLE}.
+     */
+    public void restoreMigrations() {
+        Catalog catalog = Catalog.getInstance();
+        for ( CatalogTable table : catalog.getTables( null, null, null ) ) {
+            Map<Integer, List<Long>> outdated = new HashMap<>();
+            for ( CatalogPartitionPlacement placement : catalog.getAllPartitionPlacementsByTable( table.id ) ) {
+                if ( placement.role == DataPlacementRole.REFRESHABLE ) {
+                    outdated.computeIfAbsent( placement.adapterId, k -> new ArrayList<>() ).add( placement.partitionId );
+                }
+            }
+            outdated.forEach( ( adapterId, partitionIds ) -> {
+                CatalogAdapter store = catalog.getAdapter( adapterId );
+                log.info( "Restarting the interrupted online migration of table {} to store {}.", table.name, store.uniqueName );
+                schedule( table, store, partitionIds );
+            } );
+        }
+    }
+
+
+    /**
+     * @return true if there is a scheduled or running online migration for the specified table
+     */
+    public boolean isMigrating( long tableId ) {
+        return migrations.containsKey( tableId );
+    }
+
+
+    private void migrate( CatalogTable table, CatalogAdapter store, List<Long> partitionIds ) throws Exception {
+        Catalog catalog = Catalog.getInstance();
+        int rateLimit = RuntimeConfig.ONLINE_DATA_MIGRATION_RATE_LIMIT.getInteger();
+        RateLimiter rateLimiter = rateLimit > 0 ? RateLimiter.create( rateLimit ) : null;
+
+        Integer rowCount = StatisticsManager.getInstance().rowCountPerTable( table.id );
+        Integer expectedRows = rowCount == null ? null : rowCount / table.partitionProperty.partitionIds.size();
+
+        for ( long partitionId : partitionIds ) {
+            MigrationTask task = DataMigrationMonitor.INSTANCE.start( table.name, partitionId, store.uniqueName, "ONLINE", expectedRows );
+            boolean success = false;
+            try {
+                List<Object> lastPrimaryKey = null;
+                while ( true ) {
+                    int chunkSize = RuntimeConfig.ONLINE_DATA_MIGRATION_CHUNK_SIZE.getInteger();
+                    if ( rateLimiter != null ) {
+                        rateLimiter.acquire( chunkSize );
+                    }
+                    final List<Object> startKey = lastPrimaryKey;
+                    // Writers need an exclusive lock, a shared lock is therefore sufficient to read and replace the chunk consistently
+                    List<List<Object>> primaryKeys = inTransaction( table, LockMode.SHARED, transaction -> {
+                        checkPlacement( table, store.id, partitionId );
+                        // The columns are resolved for every chunk, since they might have been changed in the meantime
+                        List<CatalogColumn> columns = new ArrayList<>();
+                        catalog.getColumnPlacementsOnAdapterPerTable( store.id, table.id ).forEach( p -> columns.add( catalog.getColumn( p.columnId ) ) );
+                        return transaction.getDataMigrator().copyDataChunk( transaction, store, columns, partitionId, startKey, chunkSize );
+                    } );
+                    task.addRows( primaryKeys.size() );
+                    if ( primaryKeys.size() < chunkSize ) {
+                        break;
+                    }
+                    lastPrimaryKey = primaryKeys.get( primaryKeys.size() - 1 );
+                }
+                success = true;
+            } finally {
+                task.finish( success );
+            }
+        }
+
+        // Cutover, no query may be planned while the placements change their role
+        inTransaction( table, LockMode.EXCLUSIVE, transaction -> {
+            for ( long partitionId : partitionIds ) {
+                checkPlacement( table, store.id, partitionId );
+                catalog.updatePartitionPlacementRole( store.id, partitionId, DataPlacementRole.UPTODATE );
+            }
+            transaction.createStatement().getQueryProcessor().invalidateCaches( List.of( table.id ) );
+            return null;
+        } );
+        log.info( "Online migration of table {} to store {} finished.", table.name, store.uniqueName );
+    }
+
+
+    /**
+     * Drops the placement of a failed migration. Placements which are complete or have already been dropped are left untouched.
+     */
+    private void removePlacement( CatalogTable table, CatalogAdapter store ) {
+        try {
+            inTransaction( table, LockMode.EXCLUSIVE, transaction -> {
+                Catalog catalog = Catalog.getInstance();
+                if ( !catalog.checkIfExistsEntity( table.id )
+                        || catalog.getPartitionPlacementsByTableOnAdapter( store.id, table.id ).stream().noneMatch( p -> p.role == DataPlacementRole.REFRESHABLE ) ) {
+                    return null;
+                }
+                try {
+                    DdlManager.getInstance().dropDataPlacement( catalog.getTable( table.id ), AdapterManager.getInstance().getStore( store.id ), transaction.createStatement() );
+                } catch ( PlacementNotExistsException | LastPlacementException e ) {
+                    throw new RuntimeException( e );
+                }
+                return null;
+            } );
+        } catch ( Exception e ) {
+            log.error( "Could not remove the placement of table {} on store {}. The migration is restarted on the next startup.", table.name, store.uniqueName, e );
+        }
+    }
+
+
+    /**
+     * The table or the placement might have been dropped since the migration has been scheduled.
+     */
+    private static void checkPlacement( CatalogTable table, int adapterId, long partitionId ) {
+        if ( !Catalog.getInstance().checkIfExistsEntity( table.id ) || !Catalog.getInstance().checkIfExistsPartitionPlacement( adapterId, partitionId ) ) {
+            throw new RuntimeException( "The placement of partition " + partitionId + " on adapter " + adapterId + " does not exist anymore" );
+        }
+    }
+
+
+    /**
+     * Executes the work in a new transaction holding a lock of the specified mode on the table.
+     */
+    private <T> T inTransaction( CatalogTable table, LockMode lockMode, Function<Transaction, T> work ) throws Exception {
+        Transaction transaction = transactionManager.startTransaction( Catalog.defaultUserId, table.databaseId, false, "OnlineDataMigrator" );
+        try {
+            Collection<Entry<EntityIdentifier, LockMode>> locks = List.of(
+                    Pair.of( LockManager.GLOBAL_LOCK, LockMode.SHARED ),
+                    Pair.of( LockManager.getTableIdentifier( table.id ), lockMode ) );
+            LockManager.INSTANCE.lock( locks, (TransactionImpl) transaction );
+
+            T result = work.apply( transaction );
+            transaction.commit();
+            return result;
+        } catch ( Exception e ) {
+            transaction.rollback();
+            throw e;
+        }
+    }
+
+}
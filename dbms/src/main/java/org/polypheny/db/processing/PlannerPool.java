@@ -0,0 +1,90 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.processing;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.polypheny.db.config.Config;
+import org.polypheny.db.config.Config.ConfigListener;
+import org.polypheny.db.config.RuntimeConfig;
+
+
+/**
+ * Bounded pool of threads on which the proposed routing plans of a query are planned and implemented concurrently.
+ * The number of threads is controlled by {@link RuntimeConfig#PLAN_PREPARATION_PARALLELISM}.
+ */
+final class PlannerPool {
+
+    static final PlannerPool INSTANCE = new PlannerPool();
+
+    private final ThreadPoolExecutor executor;
+
+
+    private PlannerPool() {
+        AtomicInteger threadCount = new AtomicInteger();
+        int parallelism = Math.max( 1, RuntimeConfig.PLAN_PREPARATION_PARALLELISM.getInteger() );
+        executor = new ThreadPoolExecutor( parallelism, parallelism, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread( r, "Planner-" + threadCount.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        } );
+        executor.allowCoreThreadTimeOut( true );
+        RuntimeConfig.PLAN_PREPARATION_PARALLELISM.addObserver( new ConfigListener() {
+            @Override
+            public void onConfigChange( Config c ) {
+                resize( c.getInt() );
+            }
+
+
+            @Override
+            public void restart( Config c ) {
+                resize( c.getInt() );
+            }
+        } );
+    }
+
+
+    <T> Future<T> submit( Callable<T> task ) {
+        return executor.submit( task );
+    }
+
+
+    /**
+     * @return the number of tasks which have been submitted to the pool so far
+     */
+    long getTaskCount() {
+        return executor.getTaskCount();
+    }
+
+
+    private synchronized void resize( int parallelism ) {
+        parallelism = Math.max( 1, parallelism );
+        if ( parallelism > executor.getMaximumPoolSize() ) {
+            executor.setMaximumPoolSize( parallelism );
+            executor.setCorePoolSize( parallelism );
+        } else {
+            executor.setCorePoolSize( parallelism );
+            executor.setMaximumPoolSize( parallelism );
+        }
+    }
+
+}
@@ -144,7 +144,13 @@ public class VolcanoQueryProcessor extends AbstractQueryProcessor {
 
     public VolcanoQueryProcessor( Statement statement ) {
         super( statement );
-        planner = new VolcanoPlanner( VolcanoCost.FACTORY, Contexts.of( statement.getPrepareContext().config() ) );
+        planner = createPlanner();
+    }
+
+
+    @Override
+    protected VolcanoPlanner createPlanner() {
+        VolcanoPlanner planner = new VolcanoPlanner( VolcanoCost.FACTORY, Contexts.of( statement.getPrepareContext().config() ) );
         planner.addAlgTraitDef( ConventionTraitDef.INSTANCE );
         if ( ENABLE_COLLATION_TRAIT ) {
             planner.addAlgTraitDef( AlgCollationTraitDef.INSTANCE );
@@ -194,6 +200,7 @@ public VolcanoQueryProcessor( Statement statement ) {
 
         final DataContext dataContext = statement.getPrepareContext().getDataContext();
         planner.setExecutor( new RexExecutorImpl( dataContext ) );
+        return planner;
     }
 
 }
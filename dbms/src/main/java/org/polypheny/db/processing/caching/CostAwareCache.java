@@ -0,0 +1,546 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.processing.caching;
+
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.Getter;
+import org.polypheny.db.information.InformationAction;
+import org.polypheny.db.information.InformationGraph;
+import org.polypheny.db.information.InformationGraph.GraphData;
+import org.polypheny.db.information.InformationGraph.GraphType;
+import org.polypheny.db.information.InformationGroup;
+import org.polypheny.db.information.InformationKeyValue;
+import org.polypheny.db.information.InformationManager;
+import org.polypheny.db.information.InformationPage;
+import org.polypheny.db.information.InformationTable;
+
+
+/**
+ * A cache bounded by the estimated retained size of its entries which is shared by the plan caches.
+ *
+ * Eviction is left to Guava (least recently used within the weight limit). On top of that, a frequency sketch acts
+ * as admission filter in the spirit of TinyLFU: as long as there is room, every entry is admitted. Once the cache is
+ * full, a new entry only replaces resident entries if it has been requested before or if it was more expensive to
+ * compute than the average resident entry. This prevents a stream of one-off queries from flushing the hot plans.
+ *
+ * Entries can be pinned, which moves them out of the reach of the eviction. The pinned entries may retain at most half
+ * of the maximum weight in addition to the cache, so that pinning cannot grow it without bounds. Every entry records the entities it
+ * depends on, which allows to only invalidate the affected entries after a DDL statement.
+ *
+ * @param <K> Type of the keys, their hash code is used for the frequency sketch
+ * @param <V> Type of the cached values
+ */
+public class CostAwareCache<K, V> {
+
+    // Minimal number of requests for an entry to be admitted if the cache is full
+    private static final int ADMISSION_FREQUENCY = 2;
+    // Share of the maximum weight the pinned entries may retain
+    private static final int PINNED_WEIGHT_DIVISOR = 2;
+
+    private final Cache<K, CacheEntry<V>> cache;
+    private final Map<K, CacheEntry<V>> pinned = new ConcurrentHashMap<>();
+    private final Map<Long, Set<K>> dependents = new ConcurrentHashMap<>();
+    // Entries without known dependencies are invalidated by every DDL statement
+    private final Set<K> unresolved = ConcurrentHashMap.newKeySet();
+    private final FrequencySketch sketch;
+    private final Function<K, String> labeler;
+
+    @Getter
+    private final long maximumWeight;
+    private final long minimumWeight;
+
+    private final AtomicLong weight = new AtomicLong();
+    private final AtomicLong pinnedWeight = new AtomicLong();
+    private final AtomicLong residentCost = new AtomicLong();
+    private final AtomicLongArray removals = new AtomicLongArray( RemovalCause.values().length );
+    private final AtomicLong rejected = new AtomicLong();
+    private final LongAdder savedNanos = new LongAdder();
+
+
+    /**
+     * @param maximumWeight Estimated number of bytes the cache may retain
+     * @param maximumSize Maximal number of entries
+     * @param labeler Produces the label of a key which is shown on the information page and used to pin entries
+     */
+    public CostAwareCache( long maximumWeight, int maximumSize, Function<K, String> labeler ) {
+        this.maximumWeight = Math.max( 1, maximumWeight );
+        // Charging every entry at least this weight additionally limits the number of entries
+        this.minimumWeight = Math.max( 1, this.maximumWeight / Math.max( 1, maximumSize ) );
+        this.labeler = labeler;
+        this.sketch = new FrequencySketch( maximumSize );
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight( this.maximumWeight )
+                .weigher( ( K key, CacheEntry<V> entry ) -> (int) Math.min( Integer.MAX_VALUE, entry.charged ) )
+                .removalListener( this::onRemoval )
+                .build();
+    }
+
+
+    public V getIfPresent( K key ) {
+        sketch.increment( key.hashCode() );
+        CacheEntry<V> entry = pinned.get( key );
+        if ( entry == null ) {
+            entry = cache.getIfPresent( key );
+        }
+        if ( entry == null ) {
+            return null;
+        }
+        entry.hits.increment();
+        savedNanos.add( entry.costNanos );
+        return entry.value;
+    }
+
+
+    public boolean isKeyPresent( K key ) {
+        return pinned.containsKey( key ) || cache.getIfPresent( key ) != null;
+    }
+
+
+    /**
+     * Adds an entry to the cache if it passes the admission filter.
+     *
+     * @param bytes Estimated retained size of the value in bytes
+     * @param costNanos Time it took to compute the value, this is the time saved by every hit
+     * @param entityIds Ids of the entities the value depends on, an empty collection if they are unknown
+     */
+    public void put( K key, V value, long bytes, long costNanos, Collection<Long> entityIds ) {
+        long charged = Math.max( bytes, minimumWeight );
+        if ( !pinned.isEmpty() && pinned.containsKey( key ) ) {
+            return;
+        }
+        if ( weight.get() + charged > maximumWeight && !admit( key, costNanos ) ) {
+            rejected.incrementAndGet();
+            return;
+        }
+        CacheEntry<V> entry = new CacheEntry<>( value, bytes, charged, costNanos, entityIds );
+        if ( entityIds.isEmpty() ) {
+            unresolved.add( key );
+        } else {
+            for ( Long entityId : entityIds ) {
+                dependents.computeIfAbsent( entityId, k -> ConcurrentHashMap.newKeySet() ).add( key );
+            }
+        }
+        weight.addAndGet( charged );
+        residentCost.addAndGet( costNanos );
+        CacheEntry<V> replaced = cache.asMap().put( key, entry );
+        if ( replaced != null ) {
+            // Dependencies of the replaced entry which the new one shares are still registered for the key
+            unregister( key, replaced, entry );
+        }
+    }
+
+
+    private boolean admit( K key, long costNanos ) {
+        if ( sketch.frequency( key.hashCode() ) >= ADMISSION_FREQUENCY ) {
+            return true;
+        }
+        long size = cache.size();
+        return size == 0 || costNanos > residentCost.get() / size;
+    }
+
+
+    private void onRemoval( RemovalNotification<K, CacheEntry<V>> notification ) {
+        CacheEntry<V> entry = notification.getValue();
+        if ( entry == null ) {
+            return;
+        }
+        weight.addAndGet( -entry.charged );
+        residentCost.addAndGet( -entry.costNanos );
+        K key = notification.getKey();
+        if ( pinned.containsKey( key ) ) {
+            // The entry has been moved to the pinned entries
+            return;
+        }
+        removals.incrementAndGet( notification.getCause().ordinal() );
+        if ( notification.getCause() != RemovalCause.REPLACED ) {
+            // Replaced entries are unregistered by put, which knows the dependencies of the new entry
+            unregister( key, entry, null );
+        }
+    }
+
+
+    /**
+     * Removes the key from the dependencies of the entry. If the entry has been replaced, the dependencies of the
+     * replacement stay registered.
+     */
+    private void unregister( K key, CacheEntry<V> entry, CacheEntry<V> replacement ) {
+        if ( entry.entityIds.isEmpty() && (replacement == null || !replacement.entityIds.isEmpty()) ) {
+            unresolved.remove( key );
+        }
+        for ( Long entityId : entry.entityIds ) {
+            if ( replacement != null && replacement.entityIds.contains( entityId ) ) {
+                continue;
+            }
+            dependents.computeIfPresent( entityId, ( id, keys ) -> {
+                keys.remove( key );
+                return keys.isEmpty() ? null : keys;
+            } );
+        }
+    }
+
+
+    /**
+     * Invalidates all entries depending on one of the given entities as well as all entries with unknown dependencies.
+     *
+     * @return the number of invalidated entries
+     */
+    public int invalidate( Collection<Long> entityIds ) {
+        Set<K> keys = ConcurrentHashMap.newKeySet();
+        keys.addAll( unresolved );
+        for ( Long entityId : entityIds ) {
+            Set<K> affected = dependents.get( entityId );
+            if ( affected != null ) {
+                keys.addAll( affected );
+            }
+        }
+        for ( K key : keys ) {
+            CacheEntry<V> entry = pinned.remove( key );
+            if ( entry != null ) {
+                pinnedWeight.addAndGet( -entry.bytes );
+                unregister( key, entry, null );
+            }
+            cache.invalidate( key );
+        }
+        return keys.size();
+    }
+
+
+    public void invalidateAll() {
+        pinned.clear();
+        pinnedWeight.set( 0 );
+        cache.invalidateAll();
+        dependents.clear();
+        unresolved.clear();
+        sketch.clear();
+        for ( int i = 0; i < removals.length(); i++ ) {
+            removals.set( i, 0 );
+        }
+        rejected.set( 0 );
+        savedNanos.reset();
+    }
+
+
+    /**
+     * Pins the entry with the given label. Pinned entries are never evicted but still invalidated by DDL statements.
+     *
+     * @return true if an entry with this label has been found
+     * @throws IllegalStateException if the pinned entries would retain more than half of the maximum weight
+     */
+    public boolean pin( String label ) {
+        for ( Map.Entry<K, CacheEntry<V>> e : cache.asMap().entrySet() ) {
+            if ( labeler.apply( e.getKey() ).equals( label ) ) {
+                long bytes = e.getValue().bytes;
+                if ( pinnedWeight.addAndGet( bytes ) > getMaximumPinnedWeight() ) {
+                    pinnedWeight.addAndGet( -bytes );
+                    throw new IllegalStateException( "The pinned entries may not retain more than " + formatBytes( getMaximumPinnedWeight() ) + "!" );
+                }
+                if ( pinned.putIfAbsent( e.getKey(), e.getValue() ) == null ) {
+                    cache.invalidate( e.getKey() );
+                } else {
+                    pinnedWeight.addAndGet( -bytes );
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * @return estimated number of bytes the pinned entries may retain in addition to the cache
+     */
+    public long getMaximumPinnedWeight() {
+        return maximumWeight / PINNED_WEIGHT_DIVISOR;
+    }
+
+
+    /**
+     * Moves a pinned entry back into the cache.
+     *
+     * @return true if a pinned entry with this label has been found
+     */
+    public boolean unpin( String label ) {
+        for ( K key : pinned.keySet() ) {
+            if ( labeler.apply( key ).equals( label ) ) {
+                CacheEntry<V> entry = pinned.remove( key );
+                if ( entry != null ) {
+                    pinnedWeight.addAndGet( -entry.bytes );
+                    unregister( key, entry, null );
+                    put( key, entry.value, entry.bytes, entry.costNanos, entry.entityIds );
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    public long size() {
+        return cache.size() + pinned.size();
+    }
+
+
+    /**
+     * @return true if an entry depending on the given entity is cached
+     */
+    public boolean hasDependents( long entityId ) {
+        Set<K> keys = dependents.get( entityId );
+        return keys != null && !keys.isEmpty();
+    }
+
+
+    /**
+     * @return estimated number of bytes retained by the cache including the pinned entries
+     */
+    public long getWeightedSize() {
+        return weight.get() + pinnedWeight.get();
+    }
+
+
+    public long getPinnedSize() {
+        return pinned.size();
+    }
+
+
+    public long getRemovals( RemovalCause cause ) {
+        return removals.get( cause.ordinal() );
+    }
+
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+
+    public long getSavedNanos() {
+        return savedNanos.sum();
+    }
+
+
+    /**
+     * Adds the groups showing the memory usage, the evictions and the cached entries to the given page.
+     *
+     * @param order Order of the first added group
+     */
+    public void registerInformation( InformationPage page, int order ) {
+        InformationManager im = InformationManager.getInstance();
+
+        // Memory
+        InformationGroup memoryGroup = new InformationGroup( page, "Memory" ).setOrder( order );
+        im.addGroup( memoryGroup );
+
+        InformationKeyValue memoryKv = new InformationKeyValue( memoryGroup );
+        im.registerInformation( memoryKv );
+        memoryGroup.setRefreshFunction( () -> {
+            memoryKv.putPair( "Used", formatBytes( getWeightedSize() ) );
+            memoryKv.putPair( "Pinned", formatBytes( pinnedWeight.get() ) );
+            memoryKv.putPair( "Maximum", formatBytes( maximumWeight ) );
+            memoryKv.putPair( "Pinned Entries", pinned.size() + "" );
+            memoryKv.putPair( "Time Saved", TimeUnit.NANOSECONDS.toMillis( getSavedNanos() ) + " ms" );
+        } );
+
+        // Evictions
+        InformationGroup evictionGroup = new InformationGroup( page, "Evictions" ).setOrder( order + 1 );
+        im.addGroup( evictionGroup );
+
+        String[] labels = new String[]{ "Size", "Invalidated", "Replaced", "Rejected" };
+        InformationGraph evictionGraph = new InformationGraph( evictionGroup, GraphType.BAR, labels );
+        im.registerInformation( evictionGraph );
+        evictionGroup.setRefreshFunction( () -> evictionGraph.updateGraph(
+                labels,
+                new GraphData<>( "evictions", new Long[]{
+                        getRemovals( RemovalCause.SIZE ),
+                        getRemovals( RemovalCause.EXPLICIT ),
+                        getRemovals( RemovalCause.REPLACED ),
+                        getRejected() } ) ) );
+
+        // Entries
+        InformationGroup entriesGroup = new InformationGroup( page, "Entries" ).setOrder( order + 2 );
+        im.addGroup( entriesGroup );
+
+        InformationTable entriesTable = new InformationTable(
+                entriesGroup,
+                Arrays.asList( "Key", "Entities", "Size", "Cost", "Hits", "Pinned" ) );
+        entriesTable.setOrder( 1 );
+        im.registerInformation( entriesTable );
+        entriesGroup.setRefreshFunction( () -> {
+            entriesTable.reset();
+            List<Map.Entry<K, CacheEntry<V>>> entries = new ArrayList<>( pinned.entrySet() );
+            entries.addAll( cache.asMap().entrySet() );
+            entries.stream()
+                    .sorted( Comparator.comparingLong( ( Map.Entry<K, CacheEntry<V>> e ) -> e.getValue().hits.sum() ).reversed() )
+                    .limit( 50 )
+                    .forEach( e -> entriesTable.addRow(
+                            labeler.apply( e.getKey() ),
+                            e.getValue().entityIds.stream().map( Object::toString ).collect( Collectors.joining( ", " ) ),
+                            formatBytes( e.getValue().bytes ),
+                            String.format( "%.2f ms", e.getValue().costNanos / 1e6 ),
+                            e.getValue().hits.sum(),
+                            pinned.containsKey( e.getKey() ) ) );
+        } );
+
+        InformationAction pinAction = new InformationAction( entriesGroup, "Pin", parameters -> {
+            String key = parameters.get( "key" );
+            try {
+                if ( key == null || !pin( key.trim() ) ) {
+                    return "There is no cached entry with this key!";
+                }
+            } catch ( IllegalStateException e ) {
+                return e.getMessage();
+            }
+            entriesGroup.refresh();
+            memoryGroup.refresh();
+            return "Successfully pinned the entry.";
+        } ).withParameters( "key" );
+        pinAction.setOrder( 2 );
+        im.registerInformation( pinAction );
+
+        InformationAction unpinAction = new InformationAction( entriesGroup, "Unpin", parameters -> {
+            String key = parameters.get( "key" );
+            if ( key == null || !unpin( key.trim() ) ) {
+                return "There is no pinned entry with this key!";
+            }
+            entriesGroup.refresh();
+            memoryGroup.refresh();
+            return "Successfully unpinned the entry.";
+        } ).withParameters( "key" );
+        unpinAction.setOrder( 3 );
+        im.registerInformation( unpinAction );
+    }
+
+
+    private static String formatBytes( long bytes ) {
+        if ( bytes < 1024 ) {
+            return bytes + " B";
+        } else if ( bytes < 1024 * 1024 ) {
+            return (bytes / 1024) + " KB";
+        }
+        return (bytes / (1024 * 1024)) + " MB";
+    }
+
+
+    private static class CacheEntry<V> {
+
+        private final V value;
+        private final long bytes;
+        private final long charged;
+        private final long costNanos;
+        private final Collection<Long> entityIds;
+        private final LongAdder hits = new LongAdder();
+
+
+        private CacheEntry( V value, long bytes, long charged, long costNanos, Collection<Long> entityIds ) {
+            this.value = value;
+            this.bytes = bytes;
+            this.charged = charged;
+            this.costNanos = costNanos;
+            this.entityIds = entityIds;
+        }
+
+    }
+
+
+    /**
+     * Count-min sketch with four rows of saturating 4-bit counters, which estimates how often a key has been requested
+     * recently. All counters are halved after a sample period so that the estimates follow changes of the workload.
+     * Concurrent updates may get lost, which is acceptable for an estimate.
+     */
+    private static class FrequencySketch {
+
+        private static final long[] SEEDS = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+        private static final int MAX_COUNT = 15;
+
+        private final byte[][] table;
+        private final int mask;
+        private final int samplePeriod;
+        private final AtomicLong additions = new AtomicLong();
+
+
+        FrequencySketch( int expectedSize ) {
+            int width = Integer.highestOneBit( Math.max( 16, Math.min( 1 << 20, expectedSize ) ) - 1 ) << 1;
+            this.table = new byte[SEEDS.length][width];
+            this.mask = width - 1;
+            this.samplePeriod = 10 * width;
+        }
+
+
+        void increment( int hash ) {
+            for ( int i = 0; i < SEEDS.length; i++ ) {
+                int index = indexOf( hash, i );
+                if ( table[i][index] < MAX_COUNT ) {
+                    table[i][index]++;
+                }
+            }
+            if ( additions.incrementAndGet() % samplePeriod == 0 ) {
+                age();
+            }
+        }
+
+
+        int frequency( int hash ) {
+            int frequency = MAX_COUNT;
+            for ( int i = 0; i < SEEDS.length; i++ ) {
+                frequency = Math.min( frequency, table[i][indexOf( hash, i )] );
+            }
+            return frequency;
+        }
+
+
+        private void age() {
+            for ( byte[] row : table ) {
+                for ( int i = 0; i < row.length; i++ ) {
+                    row[i] = (byte) (row[i] >>> 1);
+                }
+            }
+        }
+
+
+        void clear() {
+            for ( byte[] row : table ) {
+                Arrays.fill( row, (byte) 0 );
+            }
+        }
+
+
+        private int indexOf( int hash, int row ) {
+            long h = (hash + SEEDS[row]) * SEEDS[row];
+            h += h >>> 32;
+            return (int) h & mask;
+        }
+
+    }
+
+}
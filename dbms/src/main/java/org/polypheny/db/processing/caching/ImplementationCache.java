@@ -16,13 +16,12 @@
 
 package org.polypheny.db.processing.caching;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.concurrent.atomic.AtomicLong;
-import org.polypheny.db.algebra.AlgNode;
+import org.polypheny.db.adapter.enumerable.GeneratedCodeCache;
 import org.polypheny.db.config.RuntimeConfig;
 import org.polypheny.db.information.InformationAction;
 import org.polypheny.db.information.InformationGraph;
@@ -40,7 +39,10 @@ public class ImplementationCache {
 
     public static final ImplementationCache INSTANCE = new ImplementationCache();
 
-    private final Cache<String, PreparedResult> implementationCache;
+    // Assumed size if there is no generated code, e.g. for bindable plans
+    private static final long DEFAULT_BYTES = 16 * 1024;
+
+    private final CostAwareCache<PlanFingerprint, PreparedResult> implementationCache;
 
     private final AtomicLong hitsCounter = new AtomicLong(); // Number of requests for which the cache contained the value
     private final AtomicLong missesCounter = new AtomicLong(); // Number of requests for which the cache hasn't contained the value
@@ -49,15 +51,17 @@ public class ImplementationCache {
 
     public ImplementationCache() {
         RuntimeConfig.IMPLEMENTATION_CACHING_SIZE.setRequiresRestart( true );
-        implementationCache = CacheBuilder.newBuilder()
-                .maximumSize( RuntimeConfig.IMPLEMENTATION_CACHING_SIZE.getInteger() )
-                .build();
+        RuntimeConfig.IMPLEMENTATION_CACHING_MEMORY.setRequiresRestart( true );
+        implementationCache = new CostAwareCache<>(
+                RuntimeConfig.IMPLEMENTATION_CACHING_MEMORY.getInteger() * 1024L * 1024,
+                RuntimeConfig.IMPLEMENTATION_CACHING_SIZE.getInteger(),
+                PlanFingerprint::toString );
         registerMonitoringPage();
     }
 
 
-    public PreparedResult getIfPresent( AlgNode parameterizedNode ) {
-        PreparedResult preparedResult = implementationCache.getIfPresent( parameterizedNode.algCompareString() );
+    public PreparedResult getIfPresent( PlanFingerprint fingerprint ) {
+        PreparedResult preparedResult = implementationCache.getIfPresent( fingerprint );
         if ( preparedResult == null ) {
             missesCounter.incrementAndGet();
         } else {
@@ -67,8 +71,24 @@ public PreparedResult getIfPresent( AlgNode parameterizedNode ) {
     }
 
 
-    public void put( AlgNode parameterizedNode, PreparedResult preparedResult ) {
-        implementationCache.put( parameterizedNode.algCompareString(), preparedResult );
+    /**
+     * @param implementationNanos Time it took to generate and compile the code
+     */
+    public void put( PlanFingerprint fingerprint, PreparedResult preparedResult, long implementationNanos ) {
+        implementationCache.put( fingerprint, preparedResult, estimateSize( preparedResult ), implementationNanos, fingerprint.getEntityIds() );
+    }
+
+
+    /**
+     * Estimates the retained size of an implementation. The generated source is retained as string (two bytes per
+     * character) and the loaded classes take roughly as much space as the source.
+     */
+    private static long estimateSize( PreparedResult preparedResult ) {
+        String code = preparedResult.getCode();
+        if ( code == null ) {
+            return DEFAULT_BYTES;
+        }
+        return 3L * code.length();
     }
 
 
@@ -85,6 +105,14 @@ public void reset() {
     }
 
 
+    /**
+     * Invalidates the implementations reading one of the given entities.
+     */
+    public void invalidate( Collection<Long> entityIds ) {
+        implementationCache.invalidate( entityIds );
+    }
+
+
     private void registerMonitoringPage() {
         InformationManager im = InformationManager.getInstance();
 
@@ -103,6 +131,28 @@ private void registerMonitoringPage() {
             generalKv.putPair( "Maximum Cache Size", RuntimeConfig.IMPLEMENTATION_CACHING_SIZE.getInteger() + "" );
         } );
 
+        implementationCache.registerInformation( page, 4 );
+
+        // Persisted generated code
+        InformationGroup codeCacheGroup = new InformationGroup( page, "Generated Code Cache" ).setOrder( 7 );
+        im.addGroup( codeCacheGroup );
+
+        InformationKeyValue codeCacheKv = new InformationKeyValue( codeCacheGroup );
+        im.registerInformation( codeCacheKv );
+        codeCacheGroup.setRefreshFunction( () -> {
+            GeneratedCodeCache codeCache = GeneratedCodeCache.INSTANCE;
+            long hits = codeCache.getHits().get();
+            long total = hits + codeCache.getMisses().get();
+            codeCacheKv.putPair( "Status", codeCache.isActive() ? "Active" : "Disabled" );
+            codeCacheKv.putPair( "Entries", codeCache.getEntryCount() + "" );
+            codeCacheKv.putPair( "Hits", hits + "" );
+            codeCacheKv.putPair( "Hits (Preloaded)", codeCache.getPreloadHits().get() + "" );
+            codeCacheKv.putPair( "Misses", codeCache.getMisses().get() + "" );
+            codeCacheKv.putPair( "Hit Ratio", total == 0 ? "-" : Math.round( 100.0 * hits / total ) + " %" );
+            codeCacheKv.putPair( "Preloaded, not yet used", codeCache.getPreloadedCount() + "" );
+            codeCacheKv.putPair( "I/O Failures", codeCache.getFailures().get() + "" );
+        } );
+
         // Hit ratio
         InformationGroup hitRatioGroup = new InformationGroup( page, "Hit Ratio" ).setOrder( 2 );
         im.addGroup( hitRatioGroup );
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.processing.caching;
+
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import lombok.Getter;
+import org.polypheny.db.algebra.AlgNode;
+import org.polypheny.db.plan.AlgOptTable;
+
+
+/**
+ * Compact key for the plan caches. Instead of the full compare string of a plan, which can be many kilobytes long,
+ * only a 128-bit hash of it is kept. The fingerprint additionally carries the ids of the tables read by the plan. They
+ * are not part of the identity of the fingerprint but are used to invalidate the cached entries after a DDL statement.
+ */
+public final class PlanFingerprint {
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    private final long high;
+    private final long low;
+
+    @Getter
+    private final ImmutableSet<Long> entityIds;
+
+    @Getter
+    private final int nodeCount;
+
+
+    private PlanFingerprint( HashCode hashCode, ImmutableSet<Long> entityIds, int nodeCount ) {
+        byte[] bytes = hashCode.asBytes();
+        long high = 0;
+        long low = 0;
+        for ( int i = 0; i < 8; i++ ) {
+            high = (high << 8) | (bytes[i] & 0xff);
+            low = (low << 8) | (bytes[i + 8] & 0xff);
+        }
+        this.high = high;
+        this.low = low;
+        this.entityIds = entityIds;
+        this.nodeCount = nodeCount;
+    }
+
+
+    /**
+     * Computes the fingerprint of a parameterized plan. The compare string of the plan is built once; callers should
+     * therefore compute the fingerprint once per plan and use it for all caches.
+     */
+    public static PlanFingerprint of( AlgNode node ) {
+        ImmutableSet.Builder<Long> entityIds = ImmutableSet.builder();
+        int nodeCount = 0;
+        Deque<AlgNode> stack = new ArrayDeque<>();
+        stack.push( node );
+        while ( !stack.isEmpty() ) {
+            AlgNode current = stack.pop();
+            nodeCount++;
+            AlgOptTable table = current.getTable();
+            if ( table != null && table.getTable() != null && table.getTable().getTableId() != null ) {
+                entityIds.add( table.getTable().getTableId() );
+            }
+            current.getInputs().forEach( stack::push );
+        }
+        return new PlanFingerprint( hash( node.algCompareString() ), entityIds.build(), nodeCount );
+    }
+
+
+    /**
+     * Computes the fingerprint of a query class as used by the routing plan cache.
+     */
+    public static PlanFingerprint of( String queryClass, ImmutableSet<Long> entityIds ) {
+        return new PlanFingerprint( hash( queryClass ), entityIds, 0 );
+    }
+
+
+    private static HashCode hash( String compareString ) {
+        return HASH_FUNCTION.hashString( compareString, StandardCharsets.UTF_8 );
+    }
+
+
+    @Override
+    public boolean equals( Object o ) {
+        if ( this == o ) {
+            return true;
+        }
+        if ( !(o instanceof PlanFingerprint) ) {
+            return false;
+        }
+        PlanFingerprint that = (PlanFingerprint) o;
+        return high == that.high && low == that.low;
+    }
+
+
+    @Override
+    public int hashCode() {
+        return (int) (low ^ (low >>> 32));
+    }
+
+
+    @Override
+    public String toString() {
+        return String.format( "%016x%016x", high, low );
+    }
+
+}
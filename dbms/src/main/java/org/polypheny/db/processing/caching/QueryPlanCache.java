@@ -16,11 +16,10 @@
 
 package org.polypheny.db.processing.caching;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.concurrent.atomic.AtomicLong;
 import org.polypheny.db.algebra.AlgNode;
 import org.polypheny.db.config.RuntimeConfig;
@@ -39,7 +38,10 @@ public class QueryPlanCache {
 
     public static final QueryPlanCache INSTANCE = new QueryPlanCache();
 
-    private final Cache<String, AlgNode> planCache;
+    // Rough estimate of the retained size of a node of an optimized plan including its traits, row type and expressions
+    private static final long BYTES_PER_NODE = 1024;
+
+    private final CostAwareCache<PlanFingerprint, AlgNode> planCache;
 
     private final AtomicLong hitsCounter = new AtomicLong(); // Number of requests for which the cache contained the value
     private final AtomicLong missesCounter = new AtomicLong(); // Number of requests for which the cache hasn't contained the value
@@ -47,16 +49,17 @@ public class QueryPlanCache {
 
     public QueryPlanCache() {
         RuntimeConfig.QUERY_PLAN_CACHING_SIZE.setRequiresRestart( true );
-        planCache = CacheBuilder.newBuilder()
-                .maximumSize( RuntimeConfig.QUERY_PLAN_CACHING_SIZE.getInteger() )
-                //  .expireAfterWrite(10, TimeUnit.MINUTES)
-                .build();
+        RuntimeConfig.QUERY_PLAN_CACHING_MEMORY.setRequiresRestart( true );
+        planCache = new CostAwareCache<>(
+                RuntimeConfig.QUERY_PLAN_CACHING_MEMORY.getInteger() * 1024L * 1024,
+                RuntimeConfig.QUERY_PLAN_CACHING_SIZE.getInteger(),
+                PlanFingerprint::toString );
         registerMonitoringPage();
     }
 
 
-    public AlgNode getIfPresent( AlgNode parameterizedNode ) {
-        AlgNode node = planCache.getIfPresent( parameterizedNode.algCompareString() );
+    public AlgNode getIfPresent( PlanFingerprint fingerprint ) {
+        AlgNode node = planCache.getIfPresent( fingerprint );
         if ( node == null ) {
             missesCounter.incrementAndGet();
         } else {
@@ -66,8 +69,11 @@ public AlgNode getIfPresent( AlgNode parameterizedNode ) {
     }
 
 
-    public void put( AlgNode parameterizedNode, AlgNode optimalNode ) {
-        planCache.put( parameterizedNode.algCompareString(), optimalNode );
+    /**
+     * @param planningNanos Time it took to optimize the plan
+     */
+    public void put( PlanFingerprint fingerprint, AlgNode optimalNode, long planningNanos ) {
+        planCache.put( fingerprint, optimalNode, fingerprint.getNodeCount() * BYTES_PER_NODE, planningNanos, fingerprint.getEntityIds() );
     }
 
 
@@ -79,6 +85,15 @@ public void reset() {
     }
 
 
+    /**
+     * Invalidates the plans reading one of the given entities.
+     */
+    public void invalidate( Collection<Long> entityIds ) {
+        ImplementationCache.INSTANCE.invalidate( entityIds );
+        planCache.invalidate( entityIds );
+    }
+
+
     private void registerMonitoringPage() {
         InformationManager im = InformationManager.getInstance();
 
@@ -97,6 +112,8 @@ private void registerMonitoringPage() {
             generalKv.putPair( "Maximum Cache Size", RuntimeConfig.QUERY_PLAN_CACHING_SIZE.getInteger() + "" );
         } );
 
+        planCache.registerInformation( page, 4 );
+
         // Hit ratio
         InformationGroup hitRatioGroup = new InformationGroup( page, "Hit Ratio" ).setOrder( 2 );
         im.addGroup( hitRatioGroup );
@@ -16,11 +16,11 @@
 
 package org.polypheny.db.processing.caching;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
@@ -49,7 +49,12 @@
 public class RoutingPlanCache {
 
     public static final RoutingPlanCache INSTANCE = new RoutingPlanCache();
-    private final Cache<Pair<String, Set<Long>>, List<CachedProposedRoutingPlan>> planCache;
+
+    // Rough estimate of the retained size of a cached routing plan and of a placement of a partition within it
+    private static final long BYTES_PER_PLAN = 512;
+    private static final long BYTES_PER_PLACEMENT = 64;
+
+    private final CostAwareCache<Pair<PlanFingerprint, Set<Long>>, List<CachedProposedRoutingPlan>> planCache;
 
     private final AtomicLong hitsCounter = new AtomicLong(); // Number of requests for which the cache contained the value
     private final AtomicLong missesCounter = new AtomicLong(); // Number of requests when the cache didn't contain the value
@@ -57,20 +62,22 @@ public class RoutingPlanCache {
 
     public RoutingPlanCache() {
         RuntimeConfig.ROUTING_PLAN_CACHING_SIZE.setRequiresRestart( true );
-        planCache = CacheBuilder.newBuilder()
-                .maximumSize( RuntimeConfig.ROUTING_PLAN_CACHING_SIZE.getInteger() )
-                .build();
+        RuntimeConfig.ROUTING_PLAN_CACHING_MEMORY.setRequiresRestart( true );
+        planCache = new CostAwareCache<>(
+                RuntimeConfig.ROUTING_PLAN_CACHING_MEMORY.getInteger() * 1024L * 1024,
+                RuntimeConfig.ROUTING_PLAN_CACHING_SIZE.getInteger(),
+                key -> key.left + " " + key.right );
         registerMonitoringPage();
     }
 
 
     public boolean isKeyPresent( String queryId, Set<Long> partitionIds ) {
-        return planCache.getIfPresent( new Pair( queryId, partitionIds ) ) != null;
+        return planCache.isKeyPresent( key( queryId, partitionIds, ImmutableSet.of() ) );
     }
 
 
     public List<CachedProposedRoutingPlan> getIfPresent( String queryId, Set<Long> partitionIds ) {
-        List<CachedProposedRoutingPlan> routingPlans = planCache.getIfPresent( new Pair( queryId, partitionIds ) );
+        List<CachedProposedRoutingPlan> routingPlans = planCache.getIfPresent( key( queryId, partitionIds, ImmutableSet.of() ) );
         if ( routingPlans == null ) {
             missesCounter.incrementAndGet();
         } else {
@@ -81,7 +88,11 @@ public List<CachedProposedRoutingPlan> getIfPresent( String queryId, Set<Long> p
     }
 
 
-    public void put( String queryId, Set<Long> partitionIds, List<CachedProposedRoutingPlan> routingPlans ) {
+    /**
+     * @param entityIds Ids of the tables accessed by the query
+     * @param routingNanos Time it took to route the query
+     */
+    public void put( String queryId, Set<Long> partitionIds, List<CachedProposedRoutingPlan> routingPlans, Collection<Long> entityIds, long routingNanos ) {
         // this seems to be a bug, which occurs when Unions are used. As the cached execution later on needs
         // all physicalPlacementsOfPartitions or else it will fail later on.
         // We check here and don't cache if the plan is not complete
@@ -93,12 +104,29 @@ public void put( String queryId, Set<Long> partitionIds, List<CachedProposedRout
             }
             return true;
         } ) ) {
-            planCache.put( new Pair<>( queryId, partitionIds ), routingPlans );
+            long bytes = routingPlans.stream()
+                    .mapToLong( p -> BYTES_PER_PLAN + p.physicalPlacementsOfPartitions.values().stream().mapToLong( List::size ).sum() * BYTES_PER_PLACEMENT )
+                    .sum();
+            ImmutableSet<Long> entities = ImmutableSet.copyOf( entityIds );
+            planCache.put( key( queryId, partitionIds, entities ), routingPlans, bytes, routingNanos, entities );
         }
 
     }
 
 
+    /**
+     * @return true if a routing plan of a query accessing the given entity is cached
+     */
+    public boolean isCached( long entityId ) {
+        return planCache.hasDependents( entityId );
+    }
+
+
+    private static Pair<PlanFingerprint, Set<Long>> key( String queryId, Set<Long> partitionIds, ImmutableSet<Long> entityIds ) {
+        return new Pair<>( PlanFingerprint.of( queryId, entityIds ), partitionIds );
+    }
+
+
     public void reset() {
         planCache.invalidateAll();
         hitsCounter.set( 0 );
@@ -106,6 +134,14 @@ public void reset() {
     }
 
 
+    /**
+     * Invalidates the routing plans of queries accessing one of the given entities.
+     */
+    public void invalidate( Collection<Long> entityIds ) {
+        planCache.invalidate( entityIds );
+    }
+
+
     private void registerMonitoringPage() {
         InformationManager im = InformationManager.getInstance();
 
@@ -124,6 +160,8 @@ private void registerMonitoringPage() {
             generalKv.putPair( "Maximum Cache Size", RuntimeConfig.ROUTING_PLAN_CACHING_SIZE.getInteger() + "" );
         } );
 
+        planCache.registerInformation( page, 5 );
+
         // Hit ratio
         InformationGroup hitRatioGroup = new InformationGroup( page, "Hit Ratio" ).setOrder( 2 );
         im.addGroup( hitRatioGroup );
@@ -114,9 +114,13 @@ public abstract class BaseRouter implements Router {
      */
     protected static Map<Long, List<CatalogColumnPlacement>> selectPlacement( CatalogTable table ) {
         // Find the adapter with the most column placements
+        long partitionId = table.partitionProperty.partitionIds.get( 0 );
         int adapterIdWithMostPlacements = -1;
         int numOfPlacements = 0;
         for ( Entry<Integer, ImmutableList<Long>> entry : catalog.getColumnPlacementsByAdapter( table.id ).entrySet() ) {
+            if ( catalog.isPartitionPlacementOutdated( entry.getKey(), partitionId ) ) {
+                continue;
+            }
             if ( entry.getValue().size() > numOfPlacements ) {
                 adapterIdWithMostPlacements = entry.getKey();
                 numOfPlacements = entry.getValue().size();
@@ -129,12 +133,15 @@ protected static Map<Long, List<CatalogColumnPlacement>> selectPlacement( Catalo
             if ( catalog.getDataPlacement( adapterIdWithMostPlacements, table.id ).columnPlacementsOnAdapter.contains( cid ) ) {
                 placementList.add( Catalog.getInstance().getColumnPlacement( adapterIdWithMostPlacements, cid ) );
             } else {
-                placementList.add( Catalog.getInstance().getColumnPlacement( cid ).get( 0 ) );
+                placementList.add( Catalog.getInstance().getColumnPlacement( cid ).stream()
+                        .filter( p -> !catalog.isPartitionPlacementOutdated( p.adapterId, partitionId ) )
+                        .findFirst()
+                        .orElseThrow( () -> new RuntimeException( "No up-to-date placement for column " + cid ) ) );
             }
         }
 
         return new HashMap<>() {{
-            put( table.partitionProperty.partitionIds.get( 0 ), placementList );
+            put( partitionId, placementList );
         }};
     }
 
@@ -91,6 +91,7 @@
 import org.polypheny.db.catalog.entity.CatalogPartitionPlacement;
 import org.polypheny.db.catalog.entity.CatalogTable;
 import org.polypheny.db.catalog.exceptions.UnknownColumnException;
+import org.polypheny.db.partition.CompiledPartitionFunction;
 import org.polypheny.db.partition.PartitionManager;
 import org.polypheny.db.partition.PartitionManagerFactory;
 import org.polypheny.db.plan.AlgOptCluster;
@@ -368,6 +369,7 @@ else if ( identifiedPartitionForSetValue != -1 ) {
 
                         // Will executed all required tuples that belong on the same partition jointly
                         Map<Long, List<ImmutableList<RexLiteral>>> tuplesOnPartition = new HashMap<>();
+                        CompiledPartitionFunction partitionFunction = partitionManager.getPartitionFunction( catalogTable );
                         for ( ImmutableList<RexLiteral> currentTuple : ((LogicalValues) modify.getInput()).tuples ) {
 
                             worstCaseRouting = false;
@@ -376,7 +378,7 @@ else if ( identifiedPartitionForSetValue != -1 ) {
                             } else {
                                 partitionValue = currentTuple.get( partitionColumnIndex ).toString().replace( "'", "" );
                             }
-                            identPart = (int) partitionManager.getTargetPartitionId( catalogTable, partitionValue );
+                            identPart = (int) partitionFunction.getTargetPartitionId( partitionValue );
                             accessedPartitionList.add( identPart );
 
                             if ( !tuplesOnPartition.containsKey( identPart ) ) {
@@ -465,12 +467,22 @@ else if ( identifiedPartitionForSetValue != -1 ) {
 
                                     Map<Long, List<Map<Long, Object>>> tempValues = new HashMap<>();
                                     statement.getDataContext().resetContext();
+
+                                    // Route all rows at once, using the typed values of the partition column
+                                    List<Object> partitionValues = new ArrayList<>( allValues.size() );
+                                    for ( Map<Long, Object> currentRow : allValues ) {
+                                        partitionValues.add( currentRow.get( partitionValueIndex ) );
+                                    }
+                                    long[] targetPartitionIds = partitionManager.getPartitionFunction( catalogTable ).routeBatch( partitionValues );
+                                    Set<Long> partitionsOnPlacement = new HashSet<>( catalog.getPartitionsOnDataPlacement( pkPlacement.adapterId, catalogTable.id ) );
+
+                                    int rowIndex = 0;
                                     for ( Map<Long, Object> currentRow : allValues ) {
                                         // first we sort the values to insert according to the partitionManager and their partitionId
 
-                                        tempPartitionId = partitionManager.getTargetPartitionId( catalogTable, currentRow.get( partitionValueIndex ).toString() );
+                                        tempPartitionId = targetPartitionIds[rowIndex++];
 
-                                        if ( !catalog.getPartitionsOnDataPlacement( pkPlacement.adapterId, catalogTable.id ).contains( tempPartitionId ) ) {
+                                        if ( !partitionsOnPlacement.contains( tempPartitionId ) ) {
                                             continue;
                                         }
 
@@ -26,6 +26,7 @@
 import java.util.Set;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
+import org.polypheny.db.adapter.AdapterManager;
 import org.polypheny.db.algebra.AlgNode;
 import org.polypheny.db.catalog.entity.CatalogColumnPlacement;
 import org.polypheny.db.catalog.entity.CatalogTable;
@@ -103,7 +104,7 @@ protected List<RoutedAlgBuilder> handleNonePartitioning(
             log.debug( "{} is NOT partitioned - Routing will be easy", catalogTable.name );
         }
 
-        final Set<List<CatalogColumnPlacement>> placements = selectPlacement( catalogTable, queryInformation );
+        final Set<List<CatalogColumnPlacement>> placements = selectPlacement( catalogTable, statement, queryInformation );
 
         List<RoutedAlgBuilder> newBuilders = new ArrayList<>();
         for ( List<CatalogColumnPlacement> placementCombination : placements ) {
@@ -138,7 +139,7 @@ protected Collection<Map<Long, List<CatalogColumnPlacement>>> selectPlacementHor
     }
 
 
-    protected Set<List<CatalogColumnPlacement>> selectPlacement( CatalogTable catalogTable, LogicalQueryInformation queryInformation ) {
+    protected Set<List<CatalogColumnPlacement>> selectPlacement( CatalogTable catalogTable, Statement statement, LogicalQueryInformation queryInformation ) {
         // Get used columns from analyze
         List<Long> usedColumns = queryInformation.getAllColumnsPerTable( catalogTable.id );
 
@@ -146,9 +147,20 @@ protected Set<List<CatalogColumnPlacement>> selectPlacement( CatalogTable catalo
         List<Integer> adapters = catalog.getColumnPlacementsByAdapter( catalogTable.id ).entrySet()
                 .stream()
                 .filter( elem -> elem.getValue().containsAll( usedColumns ) )
+                .filter( elem -> !catalog.isPartitionPlacementOutdated( elem.getKey(), catalogTable.partitionProperty.partitionIds.get( 0 ) ) )
                 .map( Entry::getKey )
                 .collect( Collectors.toList() );
 
+        // Reads from snapshots are routed to the placements on adapters providing snapshots, if there are any
+        if ( statement.getTransaction().readsFromSnapshot() ) {
+            List<Integer> snapshotAdapters = adapters.stream()
+                    .filter( adapterId -> AdapterManager.getInstance().getAdapter( adapterId ).supportsSnapshotReads() )
+                    .collect( Collectors.toList() );
+            if ( !snapshotAdapters.isEmpty() ) {
+                adapters = snapshotAdapters;
+            }
+        }
+
         final Set<List<CatalogColumnPlacement>> result = new HashSet<>();
         for ( int adapterId : adapters ) {
             List<CatalogColumnPlacement> placements = usedColumns.stream()
@@ -62,7 +62,7 @@ protected List<RoutedAlgBuilder> handleNonePartitioning( AlgNode node, CatalogTa
             log.debug( "{} is NOT partitioned - Routing will be easy", catalogTable.name );
         }
 
-        final Set<List<CatalogColumnPlacement>> placements = selectPlacement( catalogTable, queryInformation );
+        final Set<List<CatalogColumnPlacement>> placements = selectPlacement( catalogTable, statement, queryInformation );
         List<RoutedAlgBuilder> newBuilders = new ArrayList<>();
         if ( placements.isEmpty() ) {
             this.cancelQuery = true;
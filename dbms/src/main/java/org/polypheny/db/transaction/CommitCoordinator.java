@@ -0,0 +1,558 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.transaction;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.polypheny.db.adapter.Adapter;
+import org.polypheny.db.config.Config;
+import org.polypheny.db.config.Config.ConfigListener;
+import org.polypheny.db.config.RuntimeConfig;
+import org.polypheny.db.information.InformationGraph;
+import org.polypheny.db.information.InformationGraph.GraphData;
+import org.polypheny.db.information.InformationGraph.GraphType;
+import org.polypheny.db.information.InformationGroup;
+import org.polypheny.db.information.InformationKeyValue;
+import org.polypheny.db.information.InformationManager;
+import org.polypheny.db.information.InformationPage;
+import org.polypheny.db.information.InformationTable;
+import org.polypheny.db.monitoring.core.MonitoringServiceProvider;
+import org.polypheny.db.monitoring.events.CommitEvent;
+
+
+/**
+ * Sends the prepare and the commit requests of a transaction concurrently to all involved adapters.
+ *
+ * The latency of a phase is therefore determined by the slowest adapter instead of the sum of all adapters. The decision
+ * to commit is recorded in the {@link CommitLog} before the commit phase is started. Without two-phase commit, the
+ * adapters are committed sequentially.
+ */
+@Slf4j
+public class CommitCoordinator {
+
+    public static final CommitCoordinator INSTANCE = new CommitCoordinator();
+
+    private static final String PREPARE = "prepare";
+    private static final String COMMIT = "commit";
+
+    // Upper bounds of the latency histogram buckets in milliseconds, the last bucket is unbounded
+    private static final long[] BUCKETS = { 1, 2, 4, 8, 16, 32, 64, 128, 256, 512, 1024 };
+
+    private final ThreadPoolExecutor executor;
+    private CommitLog commitLog;
+
+    private final Map<String, LatencyHistogram> prepareLatencies = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> commitLatencies = new ConcurrentHashMap<>();
+    private final AtomicLong failedPrepares = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+
+
+    private CommitCoordinator() {
+        this( null );
+    }
+
+
+    CommitCoordinator( CommitLog commitLog ) {
+        this.commitLog = commitLog;
+        AtomicInteger threadCount = new AtomicInteger();
+        int parallelism = Math.max( 1, RuntimeConfig.TWO_PC_PARALLELISM.getInteger() );
+        executor = new ThreadPoolExecutor( parallelism, parallelism, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread( r, "CommitCoordinator-" + threadCount.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        } );
+        executor.allowCoreThreadTimeOut( true );
+        RuntimeConfig.TWO_PC_PARALLELISM.addObserver( new ConfigListener() {
+            @Override
+            public void onConfigChange( Config c ) {
+                resize( c.getInt() );
+            }
+
+
+            @Override
+            public void restart( Config c ) {
+                resize( c.getInt() );
+            }
+        } );
+        registerInformationPage();
+    }
+
+
+    /**
+     * Reads the commit log of the last run. Has to be called during startup, before any transaction is committed.
+     */
+    public void recover() {
+        getCommitLog().recover();
+    }
+
+
+    /**
+     * Resolves the transactions which have been prepared on the adapters but neither committed nor rolled back before
+     * the last shutdown. Transactions with a commit record are committed, all other transactions are rolled back
+     * (presumed abort). The commit record of a transaction in doubt is removed once the transaction has been resolved on
+     * all of its adapters, otherwise it is resolved again at the next startup. Has to be called during startup, after
+     * the adapters have been restored and before any transaction is committed.
+     */
+    public void resolve( Collection<Adapter> adapters ) {
+        CommitLog commitLog = getCommitLog();
+        Set<String> unresolved = new HashSet<>();
+        for ( Adapter adapter : adapters ) {
+            for ( PolyXid xid : adapter.getPreparedTransactions() ) {
+                boolean commit = commitLog.isCommitted( xid.toString() );
+                try {
+                    if ( commit ) {
+                        adapter.commit( xid );
+                    } else {
+                        adapter.rollback( xid );
+                    }
+                    log.info( "{} the prepared transaction {} on adapter {}.", commit ? "Committed" : "Rolled back", xid, adapter.getUniqueName() );
+                } catch ( RuntimeException e ) {
+                    log.error( "Unable to resolve the prepared transaction {} on adapter {}.", xid, adapter.getUniqueName(), e );
+                    unresolved.add( xid.toString() );
+                }
+            }
+        }
+
+        Set<String> available = adapters.stream().map( Adapter::getUniqueName ).collect( Collectors.toSet() );
+        for ( Entry<String, String> entry : commitLog.getInDoubt().entrySet() ) {
+            boolean missing = Arrays.stream( entry.getValue().split( " " ) ).anyMatch( name -> !name.isEmpty() && !available.contains( name ) );
+            if ( missing || unresolved.contains( entry.getKey() ) ) {
+                log.warn( "Transaction {} is still in doubt and will be resolved again at the next startup.", entry.getKey() );
+                continue;
+            }
+            try {
+                commitLog.logEnd( entry.getKey() );
+            } catch ( IOException e ) {
+                log.warn( "Unable to write the end record of transaction {} to the commit log.", entry.getKey(), e );
+            }
+        }
+    }
+
+
+    /**
+     * Prepares all adapters concurrently. As soon as the first adapter fails to prepare or the phase timeout expires,
+     * the requests which have not been sent yet are cancelled. Requests already sent to an adapter are awaited for at
+     * most another phase timeout before returning. Adapters which are still preparing after that are rolled back again
+     * once they have answered, as the rollback of the transaction might have reached them while they were preparing.
+     *
+     * @return true if all adapters have been prepared successfully
+     */
+    boolean prepare( PolyXid xid, List<Adapter> adapters ) {
+        Map<String, Long> latencies = new ConcurrentHashMap<>();
+        List<Request> requests = new ArrayList<>( adapters.size() );
+        for ( Adapter adapter : adapters ) {
+            Request request = submit( adapter, adapters.size() == 1, latencies, prepareLatencies, () -> adapter.prepare( xid ) );
+            request.result.whenComplete( ( ok, e ) -> {
+                if ( e != null ) {
+                    log.error( "Unable to prepare adapter {} for commit.", adapter.getUniqueName(), e );
+                }
+            } );
+            requests.add( request );
+        }
+
+        boolean prepared = awaitAll( xid, PREPARE, requests, true );
+        if ( !prepared ) {
+            failedPrepares.incrementAndGet();
+            for ( Request request : requests ) {
+                if ( !request.result.isDone() ) {
+                    request.result.whenComplete( ( ok, e ) -> rollbackLate( xid, request.adapter ) );
+                }
+            }
+        }
+        publish( xid, PREPARE, prepared, latencies );
+        return prepared;
+    }
+
+
+    /**
+     * Commits all adapters. With two-phase commit, the decision is forced to the commit log first and the adapters are
+     * committed concurrently. Adapters which have not answered within two phase timeouts are handed to the recovery:
+     * The end record is written once all of them have committed, otherwise the transaction is resolved at the next
+     * startup. Without two-phase commit, the adapters are committed one after another.
+     *
+     * @throws TransactionException if not all adapters have committed successfully
+     */
+    void commit( PolyXid xid, List<Adapter> adapters, boolean twoPhase ) throws TransactionException {
+        Map<String, Long> latencies = new ConcurrentHashMap<>();
+        if ( !twoPhase ) {
+            try {
+                for ( Adapter adapter : adapters ) {
+                    measure( adapter, latencies, commitLatencies, () -> {
+                        adapter.commit( xid );
+                        return true;
+                    } ).run();
+                }
+            } catch ( RuntimeException e ) {
+                publish( xid, COMMIT, false, latencies );
+                throw e;
+            } catch ( Exception e ) {
+                publish( xid, COMMIT, false, latencies );
+                throw new RuntimeException( e );
+            }
+            publish( xid, COMMIT, true, latencies );
+            return;
+        }
+
+        boolean logged = false;
+        if ( adapters.size() > 1 ) {
+            try {
+                getCommitLog().logCommit( xid, adapters );
+                logged = true;
+            } catch ( IOException e ) {
+                log.error( "Unable to write the commit decision of transaction {} to the commit log.", xid, e );
+                throw new TransactionException( "Unable to write the commit decision to the commit log." );
+            }
+        }
+
+        List<Request> requests = new ArrayList<>( adapters.size() );
+        for ( Adapter adapter : adapters ) {
+            Request request = submit( adapter, adapters.size() == 1, latencies, commitLatencies, () -> {
+                adapter.commit( xid );
+                return true;
+            } );
+            request.result.whenComplete( ( ok, e ) -> {
+                if ( e != null ) {
+                    log.error( "Unable to commit transaction {} on adapter {}.", xid, adapter.getUniqueName(), e );
+                }
+            } );
+            requests.add( request );
+        }
+
+        // The commit has been decided, the remaining adapters are therefore committed even if one of them fails
+        boolean committed = awaitAll( xid, COMMIT, requests, false );
+        publish( xid, COMMIT, committed, latencies );
+        if ( !committed ) {
+            if ( logged && requests.stream().noneMatch( r -> r.result.isDone() && !r.isSuccessful() ) ) {
+                // Only late adapters, the transaction is finished as soon as they have committed
+                CompletableFuture.allOf( requests.stream().map( r -> r.result ).toArray( CompletableFuture[]::new ) )
+                        .thenRun( () -> logEnd( xid ) );
+            }
+            // Otherwise, the decision stays in the commit log and is completed by the recovery
+            throw new TransactionException( "Not all involved adapters have committed successfully." );
+        }
+        if ( logged ) {
+            logEnd( xid );
+        }
+    }
+
+
+    private void logEnd( PolyXid xid ) {
+        try {
+            getCommitLog().logEnd( xid );
+        } catch ( IOException e ) {
+            log.warn( "Unable to write the end record of transaction {} to the commit log.", xid, e );
+        }
+    }
+
+
+    private void rollbackLate( PolyXid xid, Adapter adapter ) {
+        try {
+            adapter.rollback( xid );
+        } catch ( RuntimeException e ) {
+            log.error( "Unable to roll back transaction {} on adapter {} after it has answered late.", xid, adapter.getUniqueName(), e );
+        }
+    }
+
+
+    private Request submit( Adapter adapter, boolean inline, Map<String, Long> latencies, Map<String, LatencyHistogram> histograms, Phase<Boolean> phase ) {
+        Phase<Boolean> measured = measure( adapter, latencies, histograms, phase );
+        Request request = new Request( adapter );
+        Runnable task = () -> {
+            if ( !request.started.compareAndSet( false, true ) ) {
+                // Cancelled before it has been sent to the adapter
+                return;
+            }
+            try {
+                request.result.complete( measured.run() );
+            } catch ( Exception e ) {
+                request.result.completeExceptionally( e );
+            }
+        };
+        if ( inline ) {
+            // Avoid the hand-over to the executor if there is nothing to run concurrently
+            task.run();
+        } else {
+            executor.execute( task );
+        }
+        return request;
+    }
+
+
+    private <T> Phase<T> measure( Adapter adapter, Map<String, Long> latencies, Map<String, LatencyHistogram> histograms, Phase<T> phase ) {
+        return () -> {
+            long start = System.nanoTime();
+            try {
+                return phase.run();
+            } finally {
+                long latency = System.nanoTime() - start;
+                latencies.put( adapter.getUniqueName(), latency );
+                histograms.computeIfAbsent( adapter.getUniqueName(), k -> new LatencyHistogram() ).record( latency );
+            }
+        };
+    }
+
+
+    /**
+     * Waits for the requests of a phase. The decision is taken as soon as all requests have completed, one request
+     * has failed or the phase timeout has expired. Before returning, the requests which have not been sent yet are
+     * cancelled (if requested) and the requests sent to an adapter are awaited for at most another phase timeout.
+     * Requests which are still running after that are left to the caller.
+     *
+     * @return true if all requests have completed successfully
+     */
+    private boolean awaitAll( PolyXid xid, String phase, List<Request> requests, boolean cancelOnFailure ) {
+        CompletableFuture<Boolean> decision = new CompletableFuture<>();
+        for ( Request request : requests ) {
+            request.result.whenComplete( ( ok, e ) -> {
+                if ( e != null || !ok ) {
+                    decision.complete( false );
+                }
+            } );
+        }
+        CompletableFuture.allOf( requests.stream().map( r -> r.result ).toArray( CompletableFuture[]::new ) )
+                .whenComplete( ( v, e ) -> decision.complete( e == null ) );
+
+        boolean successful = false;
+        try {
+            successful = await( decision );
+        } catch ( TimeoutException e ) {
+            timeouts.incrementAndGet();
+            log.error( "Not all involved adapters have completed the {} phase of transaction {} within {} seconds.", phase, xid, RuntimeConfig.TWO_PC_PHASE_TIMEOUT.getInteger() );
+        } finally {
+            if ( !successful ) {
+                if ( cancelOnFailure ) {
+                    requests.forEach( Request::cancel );
+                }
+                // Avoid deciding while an adapter is still processing a request of this phase, but only for a limited time
+                try {
+                    await( CompletableFuture.allOf( requests.stream().map( r -> r.result.handle( ( ok, e ) -> null ) ).toArray( CompletableFuture[]::new ) ) );
+                } catch ( TimeoutException e ) {
+                    log.error( "Adapters are still processing the {} phase of transaction {}, they are handed to the recovery.", phase, xid );
+                }
+            }
+        }
+        return successful || requests.stream().allMatch( Request::isSuccessful );
+    }
+
+
+    /**
+     * Waits for the future for at most the configured phase timeout.
+     */
+    private static <T> T await( CompletableFuture<T> future ) throws TimeoutException {
+        int timeout = RuntimeConfig.TWO_PC_PHASE_TIMEOUT.getInteger();
+        try {
+            return timeout > 0 ? future.get( timeout, TimeUnit.SECONDS ) : future.get();
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( e );
+        } catch ( ExecutionException e ) {
+            if ( e.getCause() instanceof RuntimeException ) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException( e.getCause() );
+        }
+    }
+
+
+    private void publish( PolyXid xid, String phase, boolean successful, Map<String, Long> latencies ) {
+        if ( latencies.isEmpty() || !MonitoringServiceProvider.isInitialized() ) {
+            // Commits during startup happen before the monitoring service is available
+            return;
+        }
+        CommitEvent event = new CommitEvent();
+        event.setTransactionId( xid.toString() );
+        event.setPhase( phase );
+        event.setSuccessful( successful );
+        event.getLatencies().putAll( latencies );
+        MonitoringServiceProvider.getInstance().monitorEvent( event );
+    }
+
+
+    private synchronized CommitLog getCommitLog() {
+        if ( commitLog == null ) {
+            commitLog = new CommitLog();
+        }
+        return commitLog;
+    }
+
+
+    private synchronized void resize( int parallelism ) {
+        parallelism = Math.max( 1, parallelism );
+        if ( parallelism > executor.getMaximumPoolSize() ) {
+            executor.setMaximumPoolSize( parallelism );
+            executor.setCorePoolSize( parallelism );
+        } else {
+            executor.setCorePoolSize( parallelism );
+            executor.setMaximumPoolSize( parallelism );
+        }
+    }
+
+
+    private void registerInformationPage() {
+        InformationManager im = InformationManager.getInstance();
+
+        InformationPage page = new InformationPage( "Two-Phase Commit" );
+        im.addPage( page );
+
+        // General
+        InformationGroup generalGroup = new InformationGroup( page, "General" ).setOrder( 1 );
+        im.addGroup( generalGroup );
+
+        InformationKeyValue generalKv = new InformationKeyValue( generalGroup );
+        im.registerInformation( generalKv );
+        generalGroup.setRefreshFunction( () -> {
+            generalKv.putPair( "Status", RuntimeConfig.TWO_PC_MODE.getBoolean() ? "Active" : "Disabled" );
+            generalKv.putPair( "Parallelism", executor.getMaximumPoolSize() + "" );
+            generalKv.putPair( "Active Requests", executor.getActiveCount() + "" );
+            generalKv.putPair( "Failed Prepares", failedPrepares.get() + "" );
+            generalKv.putPair( "Timeouts", timeouts.get() + "" );
+            generalKv.putPair( "Transactions in Commit Phase", commitLog == null ? "0" : commitLog.getNumberOfPendingTransactions() + "" );
+        } );
+
+        String[] labels = new String[BUCKETS.length + 1];
+        for ( int i = 0; i < BUCKETS.length; i++ ) {
+            labels[i] = "< " + BUCKETS[i] + " ms";
+        }
+        labels[BUCKETS.length] = ">= " + BUCKETS[BUCKETS.length - 1] + " ms";
+
+        // Latency histograms
+        InformationGroup prepareGroup = new InformationGroup( page, "Prepare Latency" ).setOrder( 2 );
+        im.addGroup( prepareGroup );
+        InformationGraph prepareGraph = new InformationGraph( prepareGroup, GraphType.BAR, labels );
+        im.registerInformation( prepareGraph );
+        prepareGroup.setRefreshFunction( () -> prepareGraph.updateGraph( labels, toGraphData( prepareLatencies ) ) );
+
+        InformationGroup commitGroup = new InformationGroup( page, "Commit Latency" ).setOrder( 3 );
+        im.addGroup( commitGroup );
+        InformationGraph commitGraph = new InformationGraph( commitGroup, GraphType.BAR, labels );
+        im.registerInformation( commitGraph );
+        commitGroup.setRefreshFunction( () -> commitGraph.updateGraph( labels, toGraphData( commitLatencies ) ) );
+
+        // Transactions in doubt after the last restart
+        InformationGroup recoveryGroup = new InformationGroup( page, "In-Doubt Transactions" ).setOrder( 4 );
+        im.addGroup( recoveryGroup );
+        InformationTable recoveryTable = new InformationTable( recoveryGroup, Arrays.asList( "Transaction", "Adapters" ) );
+        im.registerInformation( recoveryTable );
+        recoveryGroup.setRefreshFunction( () -> {
+            recoveryTable.reset();
+            if ( commitLog != null ) {
+                commitLog.getInDoubt().forEach( ( xid, adapters ) -> recoveryTable.addRow( xid, adapters ) );
+            }
+        } );
+    }
+
+
+    private static GraphData<?>[] toGraphData( Map<String, LatencyHistogram> histograms ) {
+        return histograms.entrySet()
+                .stream()
+                .map( e -> new GraphData<>( e.getKey(), e.getValue().getCounts() ) )
+                .toArray( GraphData[]::new );
+    }
+
+
+    @FunctionalInterface
+    private interface Phase<T> {
+
+        T run() throws Exception;
+
+    }
+
+
+    /**
+     * A request sent to one adapter. A request which has not been started yet can be cancelled, it then completes with
+     * false without being sent to the adapter.
+     */
+    private static class Request {
+
+        private final Adapter adapter;
+        private final AtomicBoolean started = new AtomicBoolean();
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+
+        Request( Adapter adapter ) {
+            this.adapter = adapter;
+        }
+
+
+        void cancel() {
+            if ( started.compareAndSet( false, true ) ) {
+                result.complete( false );
+            }
+        }
+
+
+        boolean isSuccessful() {
+            return result.isDone() && !result.isCompletedExceptionally() && result.join();
+        }
+
+    }
+
+
+    private static class LatencyHistogram {
+
+        private final LongAdder[] counts = new LongAdder[BUCKETS.length + 1];
+
+
+        LatencyHistogram() {
+            for ( int i = 0; i < counts.length; i++ ) {
+                counts[i] = new LongAdder();
+            }
+        }
+
+
+        void record( long nanos ) {
+            long millis = TimeUnit.NANOSECONDS.toMillis( nanos );
+            int i = 0;
+            while ( i < BUCKETS.length && millis >= BUCKETS[i] ) {
+                i++;
+            }
+            counts[i].increment();
+        }
+
+
+        Long[] getCounts() {
+            Long[] result = new Long[counts.length];
+            for ( int i = 0; i < counts.length; i++ ) {
+                result[i] = counts[i].sum();
+            }
+            return result;
+        }
+
+    }
+
+}
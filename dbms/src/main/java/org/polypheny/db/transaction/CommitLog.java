@@ -0,0 +1,187 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.transaction;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import lombok.extern.slf4j.Slf4j;
+import org.polypheny.db.adapter.Adapter;
+import org.polypheny.db.util.PolyphenyHomeDirManager;
+
+
+/**
+ * Log of commit decisions following the presumed-abort protocol.
+ *
+ * Only the decision to commit a transaction is forced to disk, before the commit phase is started. Once all involved
+ * adapters have committed, an end record is appended. Transactions without a commit record are presumed to be aborted,
+ * aborts therefore never have to be logged. After a crash, every transaction with a commit record but without an end
+ * record is in doubt: it has been committed on some but possibly not on all of its adapters. The commit records of
+ * transactions in doubt are kept until the transaction has been resolved on all of its adapters.
+ */
+@Slf4j
+public class CommitLog {
+
+    private static final String FILE_NAME = "commit.log";
+    private static final String COMMIT = "C";
+    private static final String END = "E";
+
+    private final File file;
+    private FileChannel channel;
+
+    // Transactions with a commit but without an end record
+    private final Set<String> pending = new HashSet<>();
+    private final Map<String, String> inDoubt = new LinkedHashMap<>();
+
+
+    CommitLog() {
+        this( PolyphenyHomeDirManager.getInstance().registerNewFile( FILE_NAME ) );
+    }
+
+
+    CommitLog( File file ) {
+        this.file = file;
+    }
+
+
+    /**
+     * Reads the log left behind by the last run and reports all transactions which are in doubt. Their commit records
+     * are kept until they are resolved, all other records are removed. Has to be called before the first transaction
+     * commits.
+     */
+    synchronized void recover() {
+        inDoubt.clear();
+        if ( file.exists() ) {
+            try ( BufferedReader reader = Files.newBufferedReader( file.toPath(), StandardCharsets.UTF_8 ) ) {
+                String line;
+                while ( (line = reader.readLine()) != null ) {
+                    String[] split = line.split( " ", 3 );
+                    if ( split.length >= 2 && split[0].equals( COMMIT ) ) {
+                        inDoubt.put( split[1], split.length == 3 ? split[2] : "" );
+                    } else if ( split.length >= 2 && split[0].equals( END ) ) {
+                        inDoubt.remove( split[1] );
+                    }
+                }
+            } catch ( IOException e ) {
+                throw new RuntimeException( "Unable to read the commit log.", e );
+            }
+        }
+        inDoubt.forEach( ( xid, adapters ) -> log.warn( "Transaction {} is in doubt: It might not have been committed on all of the adapters {}.", xid, adapters ) );
+        try {
+            // Compact the log to the records of the transactions in doubt
+            getChannel().truncate( 0 );
+            for ( Entry<String, String> entry : inDoubt.entrySet() ) {
+                write( COMMIT + " " + entry.getKey() + " " + entry.getValue() + "\n" );
+            }
+            getChannel().force( false );
+        } catch ( IOException e ) {
+            throw new RuntimeException( "Unable to reset the commit log.", e );
+        }
+        pending.addAll( inDoubt.keySet() );
+    }
+
+
+    /**
+     * Forces the decision to commit the transaction to disk.
+     */
+    synchronized void logCommit( PolyXid xid, List<Adapter> adapters ) throws IOException {
+        StringBuilder sb = new StringBuilder( COMMIT ).append( ' ' ).append( xid );
+        for ( Adapter adapter : adapters ) {
+            sb.append( ' ' ).append( adapter.getUniqueName() );
+        }
+        write( sb.append( '\n' ).toString() );
+        getChannel().force( false );
+        pending.add( xid.toString() );
+    }
+
+
+    /**
+     * Records that the transaction has been committed on all adapters. The end record does not need to be forced.
+     */
+    synchronized void logEnd( PolyXid xid ) throws IOException {
+        logEnd( xid.toString() );
+    }
+
+
+    /**
+     * Records that a transaction in doubt has been resolved on all of its adapters.
+     */
+    synchronized void logEnd( String xid ) throws IOException {
+        inDoubt.remove( xid );
+        if ( !pending.remove( xid ) ) {
+            return;
+        }
+        if ( pending.isEmpty() ) {
+            // No transaction is in its commit phase, all records are obsolete
+            getChannel().truncate( 0 );
+        } else {
+            write( END + " " + xid + "\n" );
+        }
+    }
+
+
+    /**
+     * @return true if the log contains a commit record of the transaction, which has not been ended yet
+     */
+    synchronized boolean isCommitted( String xid ) {
+        return pending.contains( xid );
+    }
+
+
+    /**
+     * @return the transactions which have been in doubt at the last recovery and have not been resolved yet, mapped to the unique names of their adapters
+     */
+    synchronized Map<String, String> getInDoubt() {
+        return Collections.unmodifiableMap( new LinkedHashMap<>( inDoubt ) );
+    }
+
+
+    synchronized int getNumberOfPendingTransactions() {
+        return pending.size();
+    }
+
+
+    private void write( String record ) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap( record.getBytes( StandardCharsets.UTF_8 ) );
+        FileChannel fileChannel = getChannel();
+        while ( buffer.hasRemaining() ) {
+            fileChannel.write( buffer, fileChannel.size() );
+        }
+    }
+
+
+    private FileChannel getChannel() throws IOException {
+        if ( channel == null ) {
+            channel = FileChannel.open( file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE );
+        }
+        return channel;
+    }
+
+}
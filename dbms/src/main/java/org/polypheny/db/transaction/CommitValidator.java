@@ -0,0 +1,92 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.transaction;
+
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.Getter;
+import lombok.NonNull;
+import org.polypheny.db.transaction.EntityAccessMap.EntityIdentifier;
+import org.polypheny.db.transaction.Transaction.IsolationLevel;
+
+
+/**
+ * Keeps the commit timestamps required to validate transactions running with {@link IsolationLevel#SNAPSHOT}.
+ *
+ * Every transaction records the current commit timestamp when it executes its first statement. When a transaction
+ * which modified entities commits, a new commit timestamp is drawn and recorded for every modified entity. A transaction
+ * running with {@link IsolationLevel#SNAPSHOT} may only commit if none of the entities it modified has been
+ * committed by another transaction after its first statement (first-committer-wins).
+ *
+ * The timestamps are only used for this validation. The snapshots read by such transactions are taken by the stores.
+ */
+public class CommitValidator {
+
+    public static final CommitValidator INSTANCE = new CommitValidator();
+
+    private final AtomicLong commitTimestamp = new AtomicLong();
+    private final ConcurrentHashMap<EntityIdentifier, Long> lastCommits = new ConcurrentHashMap<>();
+
+    @Getter
+    private final AtomicLong conflicts = new AtomicLong();
+
+
+    private CommitValidator() {
+    }
+
+
+    public long getCurrentTimestamp() {
+        return commitTimestamp.get();
+    }
+
+
+    /**
+     * Checks whether the transaction may commit. The write locks held by the transaction guarantee that no other
+     * transaction can commit a modification of the same entities until this transaction is finished.
+     *
+     * @return false if another transaction has committed a modification of an entity written by this transaction since the first statement of this transaction
+     */
+    public boolean validate( @NonNull TransactionImpl transaction ) {
+        if ( transaction.getIsolationLevel() != IsolationLevel.SNAPSHOT ) {
+            return true;
+        }
+        for ( EntityIdentifier entityIdentifier : transaction.getWrittenEntities() ) {
+            Long lastCommit = lastCommits.get( entityIdentifier );
+            if ( lastCommit != null && lastCommit > transaction.getStartTimestamp() ) {
+                conflicts.incrementAndGet();
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Records the commit of the transaction. Has to be called before the transaction releases its locks.
+     */
+    public void publish( @NonNull TransactionImpl transaction ) {
+        if ( transaction.getWrittenEntities().isEmpty() ) {
+            return;
+        }
+        long timestamp = commitTimestamp.incrementAndGet();
+        for ( EntityIdentifier entityIdentifier : transaction.getWrittenEntities() ) {
+            lastCommits.merge( entityIdentifier, timestamp, Math::max );
+        }
+    }
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2019-2022 The Polypheny Project
+ * Copyright 2019-2023 The Polypheny Project
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,23 +16,45 @@
 
 package org.polypheny.db.transaction;
 
-import java.util.HashSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 import org.polypheny.db.transaction.Transaction.AccessMode;
 
 
+/**
+ * A multi-granularity lock supporting the intention modes <code>IS</code> and <code>IX</code> as well as
+ * <code>S</code> and <code>X</code>.
+ *
+ * The number of holders per mode is packed into a single {@link AtomicLong}. A request which is compatible with the
+ * current holders and with all queued requests is granted by a single CAS without acquiring the monitor. Only
+ * conflicting requests fall back to the monitor and wait on the condition.
+ */
 // Based on code taken from https://github.com/dstibrany/LockManager
 public class Lock {
 
-    private final Set<TransactionImpl> owners = new HashSet<>();
-    private final ReentrantLock lock = new ReentrantLock( true );
+    private static final int BITS_PER_MODE = 16;
+    private static final long MODE_MASK = (1L << BITS_PER_MODE) - 1;
+
+    private final ConcurrentHashMap<TransactionImpl, LockMode> owners = new ConcurrentHashMap<>();
+
+    // Number of holders per lock mode
+    private final AtomicLong state = new AtomicLong();
+    // Number of waiting requests per lock mode
+    private final AtomicLong queued = new AtomicLong();
+
+    // Transactions currently waiting for this lock, guarded by the monitor
+    private final Map<TransactionImpl, LockMode> waiting = new HashMap<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
     private final Condition waiters = lock.newCondition();
     private final WaitForGraph waitForGraph;
-    private int xLockCount = 0;
-    private int sLockCount = 0;
 
 
     Lock( WaitForGraph waitForGraph ) {
@@ -41,126 +63,270 @@ public class Lock {
 
 
     void acquire( TransactionImpl txn, LockMode lockMode ) throws InterruptedException {
-        if ( lockMode == LockMode.SHARED ) {
-            acquireSLock( txn );
-            txn.updateAccessMode( AccessMode.READ_ACCESS );
-        } else if ( lockMode == LockMode.EXCLUSIVE ) {
-            acquireXLock( txn );
-            txn.updateAccessMode( AccessMode.WRITE_ACCESS );
-        } else {
-            throw new RuntimeException( "Lock mode does not exist" );
+        if ( !tryFastAcquire( lockMode ) ) {
+            acquireSlow( txn, null, lockMode );
         }
+        owners.put( txn, lockMode );
+        updateAccessMode( txn, lockMode );
     }
 
 
     void release( TransactionImpl txn ) {
-        lock.lock();
-        try {
-            if ( sLockCount > 0 ) {
-                sLockCount--;
-            }
-            if ( xLockCount == 1 ) {
-                xLockCount = 0;
+        LockMode lockMode = owners.remove( txn );
+        if ( lockMode != null ) {
+            state.addAndGet( -lockMode.unit );
+        }
+        waitForGraph.remove( txn );
+
+        // Waiters register themselves in the queue before checking the state, they therefore either see the released
+        // state or are signalled here.
+        if ( queued.get() != 0 ) {
+            lock.lock();
+            try {
+                waiters.signalAll();
+            } finally {
+                lock.unlock();
             }
-
-            owners.remove( txn );
-            waitForGraph.remove( txn );
-
-            waiters.signalAll();
-        } finally {
-            lock.unlock();
         }
     }
 
 
-    void upgrade( TransactionImpl txn ) throws InterruptedException {
-        lock.lock();
-        try {
-            if ( owners.contains( txn ) && isXLocked() ) {
-                return;
-            }
-            while ( isXLocked() || sLockCount > 1 ) {
-                Set<TransactionImpl> ownersWithSelfRemoved = owners.stream().filter( ( ownerTxn ) -> !ownerTxn.equals( txn ) ).collect( Collectors.toSet() );
-                waitForGraph.add( txn, ownersWithSelfRemoved );
-                waitForGraph.detectDeadlock( txn );
-                waiters.await();
-            }
-            sLockCount = 0;
-            xLockCount = 1;
-        } finally {
-            lock.unlock();
+    /**
+     * Converts the lock held by the transaction into a mode covering both the currently held and the requested mode.
+     */
+    void upgrade( TransactionImpl txn, LockMode lockMode ) throws InterruptedException {
+        LockMode held = owners.get( txn );
+        if ( held == null ) {
+            acquire( txn, lockMode );
+            return;
+        }
+        LockMode target = held.combine( lockMode );
+        if ( target == held ) {
+            return;
         }
+        acquireSlow( txn, held, target );
+        owners.put( txn, target );
+        updateAccessMode( txn, target );
     }
 
 
     LockMode getMode() {
-        LockMode lockMode = null;
-        lock.lock();
-
-        try {
-            if ( isXLocked() ) {
-                lockMode = LockMode.EXCLUSIVE;
-            } else if ( isSLocked() ) {
-                lockMode = LockMode.SHARED;
-            }
-        } finally {
-            lock.unlock();
+        long current = state.get();
+        if ( count( current, LockMode.EXCLUSIVE ) > 0 ) {
+            return LockMode.EXCLUSIVE;
+        } else if ( count( current, LockMode.SHARED ) > 0 ) {
+            return LockMode.SHARED;
+        } else if ( count( current, LockMode.INTENTION_EXCLUSIVE ) > 0 ) {
+            return LockMode.INTENTION_EXCLUSIVE;
+        } else if ( count( current, LockMode.INTENTION_SHARED ) > 0 ) {
+            return LockMode.INTENTION_SHARED;
         }
+        return null;
+    }
 
-        return lockMode;
+
+    /**
+     * @return the mode in which the given transaction holds this lock or null if it does not hold it
+     */
+    LockMode getMode( TransactionImpl txn ) {
+        return owners.get( txn );
     }
 
 
     Set<TransactionImpl> getOwners() {
-        return owners;
+        return owners.keySet();
     }
 
 
-    private void acquireSLock( TransactionImpl txn ) throws InterruptedException {
+    private boolean tryFastAcquire( LockMode lockMode ) {
+        // Do not overtake queued requests which conflict with this one
+        while ( (queued.get() & lockMode.conflictMask) == 0 ) {
+            long current = state.get();
+            if ( (current & lockMode.conflictMask) != 0 ) {
+                return false;
+            }
+            if ( state.compareAndSet( current, current + lockMode.unit ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    private void acquireSlow( TransactionImpl txn, LockMode held, LockMode target ) throws InterruptedException {
+        final long heldUnit = held == null ? 0 : held.unit;
+        boolean acquired = false;
         lock.lock();
         try {
-            while ( isXLocked() || lock.hasWaiters( waiters ) ) {
-                waitForGraph.add( txn, owners );
-                waitForGraph.detectDeadlock( txn );
-                waiters.await();
+            // New requests queue up behind conflicting waiters, conversions of already held locks do not
+            boolean deferToQueue = held == null && (queued.get() & target.conflictMask) != 0;
+            queued.addAndGet( target.unit );
+            waiting.put( txn, target );
+            txn.setWaitingFor( this );
+            try {
+                while ( true ) {
+                    if ( txn.isDeadlockVictim() ) {
+                        throw new InterruptedException( "Transaction " + txn.getId() + " has been aborted to resolve a deadlock." );
+                    }
+                    long current = state.get();
+                    if ( !deferToQueue && ((current - heldUnit) & target.conflictMask) == 0 ) {
+                        if ( state.compareAndSet( current, current - heldUnit + target.unit ) ) {
+                            acquired = true;
+                            break;
+                        }
+                        continue;
+                    }
+                    // Deadlocks are detected asynchronously, see WaitForGraph#detectDeadlocks
+                    waitForGraph.add( txn, deferToQueue ? getConflictingWaiters( txn, target ) : getConflictingOwners( txn, target ) );
+                    waiters.await();
+                    deferToQueue = false;
+                }
+            } finally {
+                queued.addAndGet( -target.unit );
+                waiting.remove( txn );
+                txn.setWaitingFor( null );
+                waitForGraph.removeWaiter( txn );
+                if ( !acquired ) {
+                    // Requests queued behind this one might be able to proceed now
+                    waiters.signalAll();
+                }
             }
-            sLockCount++;
-            owners.add( txn );
         } finally {
             lock.unlock();
         }
     }
 
 
-    private void acquireXLock( TransactionImpl txn ) throws InterruptedException {
+    /**
+     * Aborts the request of the given transaction if it is currently waiting for this lock.
+     *
+     * @return true if the transaction was waiting and has been aborted
+     */
+    boolean abortWaiter( TransactionImpl txn ) {
         lock.lock();
         try {
-            while ( isXLocked() || isSLocked() ) {
-                waitForGraph.add( txn, owners );
-                waitForGraph.detectDeadlock( txn );
-                waiters.await();
+            if ( !waiting.containsKey( txn ) ) {
+                return false;
             }
-            xLockCount = 1;
-            owners.add( txn );
+            txn.markAsDeadlockVictim();
+            waiters.signalAll();
+            return true;
         } finally {
             lock.unlock();
         }
     }
 
 
-    private boolean isXLocked() {
-        return xLockCount == 1;
+    private Set<TransactionImpl> getConflictingWaiters( TransactionImpl txn, LockMode lockMode ) {
+        return waiting.entrySet()
+                .stream()
+                .filter( e -> !e.getKey().equals( txn ) && !e.getValue().isCompatible( lockMode ) )
+                .map( Entry::getKey )
+                .collect( Collectors.toSet() );
+    }
+
+
+    private Set<TransactionImpl> getConflictingOwners( TransactionImpl txn, LockMode lockMode ) {
+        return owners.entrySet()
+                .stream()
+                .filter( e -> !e.getKey().equals( txn ) && !e.getValue().isCompatible( lockMode ) )
+                .map( Entry::getKey )
+                .collect( Collectors.toSet() );
+    }
+
+
+    private static void updateAccessMode( TransactionImpl txn, LockMode lockMode ) {
+        if ( lockMode == LockMode.SHARED ) {
+            txn.updateAccessMode( AccessMode.READ_ACCESS );
+        } else if ( lockMode == LockMode.EXCLUSIVE ) {
+            txn.updateAccessMode( AccessMode.WRITE_ACCESS );
+        }
     }
 
 
-    private boolean isSLocked() {
-        return sLockCount > 0;
+    private static long count( long state, LockMode lockMode ) {
+        return (state >>> (lockMode.ordinal() * BITS_PER_MODE)) & MODE_MASK;
     }
 
 
+    /**
+     * Lock modes for multi-granularity locking. Intention modes are taken on a table before locking individual
+     * partitions of that table.
+     */
     public enum LockMode {
+        INTENTION_SHARED,
+        INTENTION_EXCLUSIVE,
         SHARED,
-        EXCLUSIVE
+        EXCLUSIVE;
+
+        // Compatibility matrix, indexed by ordinal
+        private static final boolean[][] COMPATIBLE = {
+                //  IS     IX     S      X
+                { true, true, true, false }, // IS
+                { true, true, false, false }, // IX
+                { true, false, true, false }, // S
+                { false, false, false, false } }; // X
+
+        private final long unit;
+        private long conflictMask;
+
+
+        static {
+            for ( LockMode mode : values() ) {
+                for ( LockMode other : values() ) {
+                    if ( !mode.isCompatible( other ) ) {
+                        mode.conflictMask |= MODE_MASK << (other.ordinal() * BITS_PER_MODE);
+                    }
+                }
+            }
+        }
+
+
+        LockMode() {
+            this.unit = 1L << (ordinal() * BITS_PER_MODE);
+        }
+
+
+        public boolean isCompatible( LockMode other ) {
+            return COMPATIBLE[ordinal()][other.ordinal()];
+        }
+
+
+        /**
+         * @return true if holding this mode implies holding the given mode
+         */
+        public boolean covers( LockMode other ) {
+            return combine( other ) == this;
+        }
+
+
+        /**
+         * @return the weakest mode which covers both this and the given mode
+         */
+        public LockMode combine( LockMode other ) {
+            if ( this == other ) {
+                return this;
+            }
+            if ( this == EXCLUSIVE || other == EXCLUSIVE ) {
+                return EXCLUSIVE;
+            }
+            if ( this == INTENTION_SHARED ) {
+                return other;
+            }
+            if ( other == INTENTION_SHARED ) {
+                return this;
+            }
+            // S and IX, there is no SIX mode
+            return EXCLUSIVE;
+        }
+
+
+        /**
+         * @return the intention mode which has to be held on the parent entity before acquiring this mode
+         */
+        public LockMode getIntention() {
+            return this == SHARED || this == INTENTION_SHARED ? INTENTION_SHARED : INTENTION_EXCLUSIVE;
+        }
     }
 
 }
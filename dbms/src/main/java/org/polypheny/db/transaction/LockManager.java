@@ -1,5 +1,5 @@
 /*
- * Copyright 2019-2022 The Polypheny Project
+ * Copyright 2019-2023 The Polypheny Project
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,17 +17,36 @@
 package org.polypheny.db.transaction;
 
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongPredicate;
+import java.util.stream.Collectors;
 import lombok.Getter;
 import lombok.NonNull;
+import org.polypheny.db.adapter.Adapter;
+import org.polypheny.db.adapter.AdapterManager;
+import org.polypheny.db.catalog.Catalog;
+import org.polypheny.db.catalog.entity.CatalogDataPlacement;
+import org.polypheny.db.config.Config;
+import org.polypheny.db.config.Config.ConfigListener;
+import org.polypheny.db.config.RuntimeConfig;
+import org.polypheny.db.information.InformationGroup;
+import org.polypheny.db.information.InformationKeyValue;
+import org.polypheny.db.information.InformationManager;
+import org.polypheny.db.information.InformationPage;
 import org.polypheny.db.transaction.EntityAccessMap.EntityIdentifier;
 import org.polypheny.db.transaction.EntityAccessMap.EntityIdentifier.NamespaceLevel;
 import org.polypheny.db.transaction.Lock.LockMode;
 import org.polypheny.db.util.DeadlockException;
+import org.polypheny.db.util.background.BackgroundTask.TaskPriority;
+import org.polypheny.db.util.background.BackgroundTask.TaskSchedulingType;
+import org.polypheny.db.util.background.BackgroundTaskManager;
 
 
 // Based on code taken from https://github.com/dstibrany/LockManager
@@ -36,21 +55,104 @@ public class LockManager {
     public static final LockManager INSTANCE = new LockManager();
     public static final EntityIdentifier GLOBAL_LOCK = new EntityIdentifier( -1L, -1L, NamespaceLevel.ENTITY_LEVEL ); // For locking whole schema
 
+    // Partition id used for the table level entry in the lock hierarchy
+    static final long TABLE_PARTITION_ID = -1L;
+
     private final ConcurrentHashMap<EntityIdentifier, Lock> lockTable;
     @Getter
     private final WaitForGraph waitForGraph;
 
+    private String deadlockDetectionTaskId;
+
+    // Decides whether the reads of a table may be served from a snapshot, replaced in tests
+    LongPredicate snapshotReadable = LockManager::hasOnlySnapshotPlacements;
+
 
     private LockManager() {
-        lockTable = new ConcurrentHashMap<>();
+        // The lock table is only modified for entities which have never been locked before. All other lookups are
+        // served without locking, contention is therefore limited to the individual locks.
+        lockTable = new ConcurrentHashMap<>( 256, 0.75f, Runtime.getRuntime().availableProcessors() );
         waitForGraph = new WaitForGraph();
+
+        startDeadlockDetection();
+        RuntimeConfig.DEADLOCK_DETECTION_INTERVAL.addObserver( new ConfigListener() {
+            @Override
+            public void onConfigChange( Config c ) {
+                startDeadlockDetection();
+            }
+
+
+            @Override
+            public void restart( Config c ) {
+                startDeadlockDetection();
+            }
+        } );
+        registerInformationPage();
+    }
+
+
+    private synchronized void startDeadlockDetection() {
+        if ( deadlockDetectionTaskId != null ) {
+            BackgroundTaskManager.INSTANCE.removeBackgroundTask( deadlockDetectionTaskId );
+        }
+        deadlockDetectionTaskId = BackgroundTaskManager.INSTANCE.registerTask(
+                waitForGraph::detectDeadlocks,
+                "Detect and resolve deadlocks between transactions",
+                TaskPriority.HIGH,
+                (TaskSchedulingType) RuntimeConfig.DEADLOCK_DETECTION_INTERVAL.getEnum() );
+    }
+
+
+    private void registerInformationPage() {
+        InformationManager im = InformationManager.getInstance();
+
+        InformationPage page = new InformationPage( "Locks" );
+        im.addPage( page );
+
+        InformationGroup deadlockGroup = new InformationGroup( page, "Deadlock Detection" ).setOrder( 1 );
+        im.addGroup( deadlockGroup );
+
+        InformationKeyValue deadlockKv = new InformationKeyValue( deadlockGroup );
+        im.registerInformation( deadlockKv );
+        deadlockGroup.setRefreshFunction( () -> {
+            deadlockKv.putPair( "Detection Interval", RuntimeConfig.DEADLOCK_DETECTION_INTERVAL.getEnum().name() );
+            deadlockKv.putPair( "Victim Selection", RuntimeConfig.DEADLOCK_VICTIM_SELECTION.getEnum().name() );
+            deadlockKv.putPair( "Waiting Transactions", waitForGraph.getNumberOfWaitingTransactions() + "" );
+            deadlockKv.putPair( "Detection Runs", waitForGraph.getDetectionRuns().get() + "" );
+            deadlockKv.putPair( "Last Run Duration", String.format( Locale.ENGLISH, "%.3f ms", waitForGraph.getLastRunDuration() / 1_000_000.0 ) );
+            deadlockKv.putPair( "Aborted Victims", waitForGraph.getVictims().get() + "" );
+            deadlockKv.putPair( "Average Detection Latency", String.format( Locale.ENGLISH, "%.2f ms", waitForGraph.getAverageDetectionLatency() / 1_000_000 ) );
+            deadlockKv.putPair( "Max Detection Latency", String.format( Locale.ENGLISH, "%.2f ms", waitForGraph.getMaxDetectionLatency().get() / 1_000_000.0 ) );
+        } );
+
+        InformationGroup lockGroup = new InformationGroup( page, "Lock Table" ).setOrder( 2 );
+        im.addGroup( lockGroup );
+
+        InformationKeyValue lockKv = new InformationKeyValue( lockGroup );
+        im.registerInformation( lockKv );
+        lockGroup.setRefreshFunction( () -> {
+            lockKv.putPair( "Locked Entities", lockTable.values().stream().filter( l -> l.getMode() != null ).count() + "" );
+            lockKv.putPair( "Lock Table Size", lockTable.size() + "" );
+            lockKv.putPair( "Escalation Threshold", RuntimeConfig.LOCK_ESCALATION_THRESHOLD.getInteger() + "" );
+        } );
+
+        InformationGroup validationGroup = new InformationGroup( page, "Snapshot Isolation" ).setOrder( 3 );
+        im.addGroup( validationGroup );
+
+        InformationKeyValue validationKv = new InformationKeyValue( validationGroup );
+        im.registerInformation( validationKv );
+        validationGroup.setRefreshFunction( () -> {
+            validationKv.putPair( "Default Isolation Level", RuntimeConfig.TRANSACTION_ISOLATION.getEnum().name() );
+            validationKv.putPair( "Commit Timestamp", CommitValidator.INSTANCE.getCurrentTimestamp() + "" );
+            validationKv.putPair( "Write Conflicts", CommitValidator.INSTANCE.getConflicts().get() + "" );
+        } );
     }
 
 
     public void lock( @NonNull Collection<Entry<EntityIdentifier, LockMode>> idAccessMap, @NonNull TransactionImpl transaction ) throws DeadlockException {
         // Decide on which locking  approach to focus
-        if ( transaction.acceptsOutdated() ) {
-            handleSecondaryLocks( idAccessMap, transaction );
+        if ( transaction.readsFromSnapshot() ) {
+            handleSnapshotLocks( idAccessMap, transaction );
         } else {
             handlePrimaryLocks( idAccessMap, transaction );
         }
@@ -58,85 +160,134 @@ public void lock( @NonNull Collection<Entry<EntityIdentifier, LockMode>> idAcces
 
 
     /**
-     * Used in traditional transactional workload to lck all entities that will eagerly receive any update
+     * Used in traditional transactional workload to lck all entities that will eagerly receive any update.
+     *
+     * Partitions are locked hierarchically: Before locking a partition, the corresponding intention lock is acquired on
+     * the table. If a transaction locks more partitions of a table than configured, the partition locks are escalated
+     * to a single lock on the table.
      */
     private void handlePrimaryLocks( @NonNull Collection<Entry<EntityIdentifier, LockMode>> idAccessMap, @NonNull TransactionImpl transaction ) throws DeadlockException {
-        Iterator<Entry<EntityIdentifier, LockMode>> iter = idAccessMap.iterator();
-        Entry<EntityIdentifier, LockMode> pair;
-        while ( iter.hasNext() ) {
-            pair = iter.next();
-            lockTable.putIfAbsent( pair.getKey(), new Lock( waitForGraph ) );
-
-            Lock lock = lockTable.get( pair.getKey() );
-
-            try {
-                if ( hasLock( transaction, pair.getKey() ) && (pair.getValue() == lock.getMode()) ) {
-                    continue;
-                } else if ( pair.getValue() == Lock.LockMode.SHARED && hasLock( transaction, pair.getKey() ) && lock.getMode() == Lock.LockMode.EXCLUSIVE ) {
-                    continue;
-                } else if ( pair.getValue() == Lock.LockMode.EXCLUSIVE && hasLock( transaction, pair.getKey() ) && lock.getMode() == Lock.LockMode.SHARED ) {
-                    lock.upgrade( transaction );
-                } else {
-                    lock.acquire( transaction, pair.getValue() );
-                }
-            } catch ( InterruptedException e ) {
-                removeTransaction( transaction );
-                throw new DeadlockException( e );
+        Map<Long, Map<EntityIdentifier, LockMode>> partitionsPerTable = new LinkedHashMap<>();
+        for ( Entry<EntityIdentifier, LockMode> pair : idAccessMap ) {
+            EntityIdentifier entityIdentifier = pair.getKey();
+            if ( pair.getValue() == LockMode.EXCLUSIVE && !entityIdentifier.equals( GLOBAL_LOCK ) ) {
+                transaction.getWrittenEntities().add( entityIdentifier );
+            }
+            if ( isPartition( entityIdentifier ) ) {
+                partitionsPerTable
+                        .computeIfAbsent( entityIdentifier.getTableId(), k -> new LinkedHashMap<>() )
+                        .merge( entityIdentifier, pair.getValue(), LockMode::combine );
+            } else {
+                acquire( transaction, entityIdentifier, pair.getValue() );
+            }
+        }
+
+        int escalationThreshold = RuntimeConfig.LOCK_ESCALATION_THRESHOLD.getInteger();
+        for ( Entry<Long, Map<EntityIdentifier, LockMode>> entry : partitionsPerTable.entrySet() ) {
+            EntityIdentifier table = getTableIdentifier( entry.getKey() );
+            LockMode tableMode = entry.getValue().values().stream().reduce( LockMode.SHARED, LockMode::combine );
+
+            LockMode heldTableMode = getHeldMode( transaction, table );
+            if ( heldTableMode != null && heldTableMode.covers( tableMode ) ) {
+                // Table is already locked as a whole
+                continue;
+            }
+
+            if ( escalationThreshold > 0 && entry.getValue().size() + transaction.getPartitionLockCount( entry.getKey() ) > escalationThreshold ) {
+                acquire( transaction, table, tableMode );
+                continue;
             }
 
-            transaction.addLock( lock );
+            acquire( transaction, table, tableMode.getIntention() );
+            for ( Entry<EntityIdentifier, LockMode> partition : entry.getValue().entrySet() ) {
+                acquire( transaction, partition.getKey(), partition.getValue() );
+            }
+        }
+    }
+
+
+    private void acquire( @NonNull TransactionImpl transaction, @NonNull EntityIdentifier entityIdentifier, @NonNull LockMode lockMode ) throws DeadlockException {
+        Lock lock = lockTable.computeIfAbsent( entityIdentifier, k -> new Lock( waitForGraph ) );
+
+        try {
+            LockMode heldMode = lock.getMode( transaction );
+            if ( heldMode == null ) {
+                lock.acquire( transaction, lockMode );
+            } else if ( heldMode.covers( lockMode ) ) {
+                return;
+            } else {
+                lock.upgrade( transaction, lockMode );
+            }
+        } catch ( InterruptedException e ) {
+            removeTransaction( transaction );
+            throw new DeadlockException( e );
         }
+
+        transaction.addLock( entityIdentifier, lock );
     }
 
 
     /**
-     * Used in freshness related workload to lock all entities that will lazily receive updates (considered secondaries)
+     * Used for transactions reading from store snapshots, i.e. transactions running with snapshot isolation and
+     * transactions accepting outdated data: Reads of entities whose placements are all located on adapters serving
+     * reads from a snapshot do not acquire any locks. All other entities and all writes are locked like in the primary
+     * approach. Writes are additionally validated when the transaction commits.
      */
-    private void handleSecondaryLocks( @NonNull Collection<Entry<EntityIdentifier, LockMode>> idAccessMap, @NonNull TransactionImpl transaction ) throws DeadlockException {
-        // Try locking secondaries first.
-        // If this cannot be fulfilled by data distribution fallback and try to acquire a regular primary lock
-        // TODO @HENNLO Check if this decision should even be made here or somewhere else
+    private void handleSnapshotLocks( @NonNull Collection<Entry<EntityIdentifier, LockMode>> idAccessMap, @NonNull TransactionImpl transaction ) throws DeadlockException {
+        handlePrimaryLocks( withoutSnapshotReads( idAccessMap ), transaction );
+    }
+
 
-        // This is mainly relevant for Queries on secondaries/outdated nodes.
-        // In theory, we already know for each query which partitions are going to be accessed.
-        // The FreshnessManager could therefore already be invoked prior to Routing to decide if the Freshness can be
-        // guaranteed or if we need to fall back to primary locking mechanisms.
+    /**
+     * Removes the shared locks on entities which are read from a snapshot. The global schema lock is retained to protect
+     * against concurrent DDLs.
+     */
+    private Collection<Entry<EntityIdentifier, LockMode>> withoutSnapshotReads( Collection<Entry<EntityIdentifier, LockMode>> idAccessMap ) {
+        return idAccessMap.stream()
+                .filter( e -> e.getKey().equals( GLOBAL_LOCK )
+                        || e.getValue() == LockMode.EXCLUSIVE
+                        || e.getValue() == LockMode.INTENTION_EXCLUSIVE
+                        || e.getKey().getNamespaceLevel() != NamespaceLevel.ENTITY_LEVEL
+                        || !snapshotReadable.test( e.getKey().getTableId() ) )
+                .collect( Collectors.toList() );
+    }
+
+
+    /**
+     * Checks whether all placements of the table are located on adapters serving reads from a snapshot. A table without
+     * placements, e.g. a view, is locked.
+     */
+    private static boolean hasOnlySnapshotPlacements( long tableId ) {
+        List<CatalogDataPlacement> placements = Catalog.getInstance().getDataPlacements( tableId );
+        return !placements.isEmpty() && placements.stream().allMatch( p -> {
+            Adapter adapter = AdapterManager.getInstance().getAdapter( p.adapterId );
+            return adapter != null && adapter.supportsSnapshotReads();
+        } );
     }
 
 
     public void unlock( @NonNull Collection<EntityIdentifier> ids, @NonNull TransactionImpl transaction ) {
-        Iterator<EntityIdentifier> iter = ids.iterator();
-        EntityIdentifier entityIdentifier;
-        while ( iter.hasNext() ) {
-            entityIdentifier = iter.next();
+        for ( EntityIdentifier entityIdentifier : ids ) {
             Lock lock = lockTable.get( entityIdentifier );
             if ( lock != null ) {
                 lock.release( transaction );
             }
-            transaction.removeLock( lock );
+            transaction.removeLock( entityIdentifier );
         }
     }
 
 
     public void removeTransaction( @NonNull TransactionImpl transaction ) {
-        Set<Lock> txnLockList = transaction.getLocks();
+        List<Lock> txnLockList = new ArrayList<>( transaction.getLocks().values() );
         for ( Lock lock : txnLockList ) {
             lock.release( transaction );
         }
+        transaction.clearLocks();
     }
 
 
     public boolean hasLock( @NonNull TransactionImpl transaction, @NonNull EntityAccessMap.EntityIdentifier entityIdentifier ) {
-        Set<Lock> lockList = transaction.getLocks();
-        if ( lockList == null ) {
-            return false;
-        }
-        for ( Lock txnLock : lockList ) {
-            if ( txnLock == lockTable.get( entityIdentifier ) ) {
-                return true;
-            }
-        }
-        return false;
+        return transaction.getLocks().containsKey( entityIdentifier );
     }
 
 
@@ -144,4 +295,22 @@ Lock.LockMode getLockMode( @NonNull EntityAccessMap.EntityIdentifier entityIdent
         return lockTable.get( entityIdentifier ).getMode();
     }
 
+
+    private LockMode getHeldMode( TransactionImpl transaction, EntityIdentifier entityIdentifier ) {
+        Lock lock = transaction.getLocks().get( entityIdentifier );
+        return lock == null ? null : lock.getMode( transaction );
+    }
+
+
+    public static EntityIdentifier getTableIdentifier( long tableId ) {
+        return new EntityIdentifier( tableId, TABLE_PARTITION_ID, NamespaceLevel.ENTITY_LEVEL );
+    }
+
+
+    static boolean isPartition( EntityIdentifier entityIdentifier ) {
+        return entityIdentifier.getNamespaceLevel() == NamespaceLevel.ENTITY_LEVEL
+                && entityIdentifier.getTableId() >= 0
+                && entityIdentifier.getPartitionId() != TABLE_PARTITION_ID;
+    }
+
 }
@@ -45,6 +45,8 @@ public class StatementImpl implements Statement {
     private final long id;
     @Getter
     private final TransactionImpl transaction;
+    @Getter
+    private final PolyXid xid;
     private final List<FileInputHandle> fileInputHandles = new ArrayList<>();
 
     private QueryProcessor queryProcessor;
@@ -59,8 +61,14 @@ public class StatementImpl implements Statement {
 
 
     StatementImpl( TransactionImpl transaction ) {
+        this( transaction, transaction.getXid() );
+    }
+
+
+    StatementImpl( TransactionImpl transaction, PolyXid xid ) {
         this.id = STATEMENT_COUNTER.getAndIncrement();
         this.transaction = transaction;
+        this.xid = xid;
     }
 
 
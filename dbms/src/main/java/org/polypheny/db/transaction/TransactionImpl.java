@@ -18,11 +18,12 @@
 
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
@@ -59,6 +60,8 @@
 import org.polypheny.db.processing.QueryProcessor;
 import org.polypheny.db.schema.PolySchemaBuilder;
 import org.polypheny.db.schema.PolyphenyDbSchema;
+import org.polypheny.db.transaction.EntityAccessMap.EntityIdentifier;
+import org.polypheny.db.transaction.PUID.Type;
 import org.polypheny.db.view.MaterializedViewManager;
 
 
@@ -105,13 +108,25 @@ public class TransactionImpl implements Transaction, Comparable<Object> {
     @Getter
     private final List<Adapter> involvedAdapters = new CopyOnWriteArrayList<>();
 
-    private final Set<Lock> lockList = new HashSet<>();
+    private final Map<EntityIdentifier, Lock> lockList = new ConcurrentHashMap<>();
+    private final Map<Long, Integer> partitionLockCounts = new ConcurrentHashMap<>();
+    private volatile Lock waitingFor;
+    private volatile boolean deadlockVictim = false;
     private boolean useCache = true;
 
     private boolean acceptsOutdated = false;
 
     private AccessMode accessMode = AccessMode.NO_ACCESS;
 
+    @Getter
+    private final IsolationLevel isolationLevel;
+
+    // Commit timestamp at the first statement of this transaction, used to validate its writes
+    private final AtomicLong startTimestamp = new AtomicLong( -1 );
+
+    // Entities locked for writing, used to validate transactions running with snapshot isolation
+    private final Set<EntityIdentifier> writtenEntities = ConcurrentHashMap.newKeySet();
+
     @Getter
     private final JavaTypeFactory typeFactory = new JavaTypeFactoryImpl();
 
@@ -134,6 +149,7 @@ public class TransactionImpl implements Transaction, Comparable<Object> {
         this.analyze = analyze;
         this.origin = origin;
         this.flavor = flavor;
+        this.isolationLevel = (IsolationLevel) RuntimeConfig.TRANSACTION_ISOLATION.getEnum();
     }
 
 
@@ -150,7 +166,7 @@ public InformationManager getQueryAnalyzer() {
 
 
     @Override
-    public void registerInvolvedAdapter( Adapter adapter ) {
+    public synchronized void registerInvolvedAdapter( Adapter adapter ) {
         if ( !involvedAdapters.contains( adapter ) ) {
             involvedAdapters.add( adapter );
         }
@@ -163,57 +179,66 @@ public void commit() throws TransactionException {
             log.trace( "This transaction has already been finished!" );
             return;
         }
-        // Prepare to commit changes on all involved adapters and the catalog
-        boolean okToCommit = true;
-        if ( RuntimeConfig.TWO_PC_MODE.getBoolean() ) {
-            for ( Adapter adapter : involvedAdapters ) {
-                okToCommit &= adapter.prepare( xid );
-            }
+        // With snapshot isolation, the first committer wins
+        if ( !CommitValidator.INSTANCE.validate( this ) ) {
+            rollback();
+            throw new TransactionException( "Entities modified by this transaction have been modified concurrently by another transaction. The transaction was rolled back!" );
         }
 
-        if ( !catalogTables.isEmpty() ) {
-            Statement statement = createStatement();
-            QueryProcessor processor = statement.getQueryProcessor();
-            List<EnforcementInformation> infos = ConstraintEnforceAttacher
-                    .getConstraintAlg( catalogTables, statement, EnforcementTime.ON_COMMIT );
-            List<PolyImplementation> results = infos
-                    .stream()
-                    .map( s -> processor.prepareQuery( AlgRoot.of( s.getControl(), Kind.SELECT ), s.getControl().getCluster().getTypeFactory().builder().build(), false, true, false ) ).collect( Collectors.toList() );
-            List<List<List<Object>>> rows = results.stream().map( r -> r.getRows( statement, -1 ) ).filter( r -> r.size() != 0 ).collect( Collectors.toList() );
-            if ( rows.size() != 0 ) {
-                Integer index = (Integer) rows.get( 0 ).get( 0 ).get( 1 );
-                rollback();
-                throw new TransactionException( infos.get( 0 ).getErrorMessages().get( index ) + "\nThere are violated constraints, the transaction was rolled back!" );
+        try {
+            // Prepare to commit changes on all involved adapters and the catalog
+            boolean okToCommit = true;
+            if ( RuntimeConfig.TWO_PC_MODE.getBoolean() ) {
+                okToCommit = CommitCoordinator.INSTANCE.prepare( xid, involvedAdapters );
             }
-        }
 
-        if ( okToCommit ) {
-            // Commit changes
-            for ( Adapter adapter : involvedAdapters ) {
-                adapter.commit( xid );
+            if ( !catalogTables.isEmpty() ) {
+                Statement statement = createStatement();
+                QueryProcessor processor = statement.getQueryProcessor();
+                List<EnforcementInformation> infos = ConstraintEnforceAttacher
+                        .getConstraintAlg( catalogTables, statement, EnforcementTime.ON_COMMIT );
+                List<PolyImplementation> results = infos
+                        .stream()
+                        .map( s -> processor.prepareQuery( AlgRoot.of( s.getControl(), Kind.SELECT ), s.getControl().getCluster().getTypeFactory().builder().build(), false, true, false ) ).collect( Collectors.toList() );
+                List<List<List<Object>>> rows = results.stream().map( r -> r.getRows( statement, -1 ) ).filter( r -> r.size() != 0 ).collect( Collectors.toList() );
+                if ( rows.size() != 0 ) {
+                    Integer index = (Integer) rows.get( 0 ).get( 0 ).get( 1 );
+                    rollback();
+                    throw new TransactionException( infos.get( 0 ).getErrorMessages().get( index ) + "\nThere are violated constraints, the transaction was rolled back!" );
+                }
             }
 
-            this.statements.forEach( statement -> {
-                if ( statement.getMonitoringEvent() != null ) {
-                    StatementEvent eventData = statement.getMonitoringEvent();
-                    eventData.setCommitted( true );
-                    MonitoringServiceProvider.getInstance().monitorEvent( eventData );
-                }
-            } );
+            if ( okToCommit ) {
+                // Commit changes
+                CommitCoordinator.INSTANCE.commit( xid, involvedAdapters, RuntimeConfig.TWO_PC_MODE.getBoolean() );
+
+                this.statements.forEach( statement -> {
+                    if ( statement.getMonitoringEvent() != null ) {
+                        StatementEvent eventData = statement.getMonitoringEvent();
+                        eventData.setCommitted( true );
+                        MonitoringServiceProvider.getInstance().monitorEvent( eventData );
+                    }
+                } );
+
+                IndexManager.getInstance().commit( this.xid );
+            } else {
+                log.error( "Unable to prepare all involved entities for commit. Rollback changes!" );
+                rollback();
+                throw new TransactionException( "Unable to prepare all involved entities for commit. Changes have been rolled back." );
+            }
+            // Free resources hold by statements
+            statements.forEach( Statement::close );
 
-            IndexManager.getInstance().commit( this.xid );
-        } else {
-            log.error( "Unable to prepare all involved entities for commit. Rollback changes!" );
-            rollback();
-            throw new TransactionException( "Unable to prepare all involved entities for commit. Changes have been rolled back." );
+            // Record the commit for the validation of concurrent transactions before releasing the write locks
+            CommitValidator.INSTANCE.publish( this );
+        } finally {
+            // Release locks, even if the commit has failed
+            LockManager.INSTANCE.removeTransaction( this );
+            // Remove transaction, unless this has already been done by a rollback
+            if ( isActive() ) {
+                transactionManager.removeTransaction( xid );
+            }
         }
-        // Free resources hold by statements
-        statements.forEach( Statement::close );
-
-        // Release locks
-        LockManager.INSTANCE.removeTransaction( this );
-        // Remove transaction
-        transactionManager.removeTransaction( xid );
 
         // Handover information about commit to Materialized Manager
         MaterializedViewManager.getInstance().updateCommittedXid( xid );
@@ -281,13 +306,26 @@ public Processor getProcessor( QueryLanguage language ) {
 
 
     @Override
-    public StatementImpl createStatement() {
+    public synchronized StatementImpl createStatement() {
+        startTimestamp.compareAndSet( -1, CommitValidator.INSTANCE.getCurrentTimestamp() );
         StatementImpl statement = new StatementImpl( this );
         statements.add( statement );
         return statement;
     }
 
 
+    @Override
+    public synchronized StatementImpl createBranchStatement() {
+        startTimestamp.compareAndSet( -1, CommitValidator.INSTANCE.getCurrentTimestamp() );
+        // The branch keeps the global transaction id, so it belongs to this transaction
+        PolyXid branchXid = xid.clone();
+        branchXid.setCustomId( PUID.randomPUID( Type.STATEMENT ) );
+        StatementImpl statement = new StatementImpl( this, branchXid );
+        statements.add( statement );
+        return statement;
+    }
+
+
     @Override
     public void addChangedTable( String qualifiedTableName ) {
         if ( !this.changedTables.contains( qualifiedTableName ) ) {
@@ -398,23 +436,76 @@ public void updateAccessMode( AccessMode accessModeCandidate ) {
     //
 
 
-    Set<Lock> getLocks() {
+    Map<EntityIdentifier, Lock> getLocks() {
         return lockList;
     }
 
 
-    void addLock( Lock lock ) {
-        lockList.add( lock );
+    void addLock( EntityIdentifier entityIdentifier, Lock lock ) {
+        if ( lockList.put( entityIdentifier, lock ) == null && LockManager.isPartition( entityIdentifier ) ) {
+            partitionLockCounts.merge( entityIdentifier.getTableId(), 1, Integer::sum );
+        }
+    }
+
+
+    void removeLock( EntityIdentifier entityIdentifier ) {
+        if ( lockList.remove( entityIdentifier ) != null && LockManager.isPartition( entityIdentifier ) ) {
+            partitionLockCounts.computeIfPresent( entityIdentifier.getTableId(), ( k, v ) -> v > 1 ? v - 1 : null );
+        }
+    }
+
+
+    /**
+     * @return the commit timestamp at the first statement of this transaction
+     */
+    long getStartTimestamp() {
+        startTimestamp.compareAndSet( -1, CommitValidator.INSTANCE.getCurrentTimestamp() );
+        return startTimestamp.get();
+    }
+
+
+    Set<EntityIdentifier> getWrittenEntities() {
+        return writtenEntities;
+    }
+
+
+    void clearLocks() {
+        lockList.clear();
+        partitionLockCounts.clear();
+    }
+
+
+    /**
+     * @return the number of partitions of the given table which are currently locked by this transaction
+     */
+    int getPartitionLockCount( long tableId ) {
+        return partitionLockCounts.getOrDefault( tableId, 0 );
+    }
+
+
+    /**
+     * Aborts the lock request this transaction is currently waiting for.
+     *
+     * @return true if the transaction was waiting for a lock and has been aborted
+     */
+    boolean abort() {
+        Lock lock = waitingFor;
+        return lock != null && lock.abortWaiter( this );
+    }
+
+
+    void setWaitingFor( Lock lock ) {
+        this.waitingFor = lock;
     }
 
 
-    void removeLock( Lock lock ) {
-        lockList.remove( lock );
+    void markAsDeadlockVictim() {
+        this.deadlockVictim = true;
     }
 
 
-    void abort() {
-        Thread.currentThread().interrupt();
+    boolean isDeadlockVictim() {
+        return deadlockVictim;
     }
 
 
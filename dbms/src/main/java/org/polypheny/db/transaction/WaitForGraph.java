@@ -1,5 +1,5 @@
 /*
- * Copyright 2019-2020 The Polypheny Project
+ * Copyright 2019-2023 The Polypheny Project
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,45 +16,76 @@
 
 package org.polypheny.db.transaction;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ConcurrentSkipListSet;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.polypheny.db.config.RuntimeConfig;
 
+
+/**
+ * Graph of transactions waiting for locks held by other transactions.
+ *
+ * Waiting transactions only register their edges. Deadlocks are detected periodically by {@link #detectDeadlocks()},
+ * which only examines the edges added since its last invocation: A new cycle always contains the edge which closed it,
+ * it is therefore sufficient to search a path from the target of each new edge back to its source.
+ */
 // Based on code taken from https://github.com/dstibrany/LockManager
+@Slf4j
 public class WaitForGraph {
 
     private final ConcurrentMap<TransactionImpl, Set<TransactionImpl>> adjacencyList = new ConcurrentHashMap<>();
-    private final ReentrantReadWriteLock rwl = new ReentrantReadWriteLock();
-    private final Lock sharedLock = rwl.readLock();
-    private final Lock exclusiveLock = rwl.readLock();
+    private final Queue<Edge> newEdges = new ConcurrentLinkedQueue<>();
+
+    @Getter
+    private final AtomicLong detectionRuns = new AtomicLong();
+    @Getter
+    private final AtomicLong victims = new AtomicLong();
+    private final AtomicLong totalDetectionLatency = new AtomicLong();
+    @Getter
+    private final AtomicLong maxDetectionLatency = new AtomicLong();
+    @Getter
+    private volatile long lastRunDuration = 0;
 
 
     void add( TransactionImpl predecessor, Set<TransactionImpl> successors ) {
-        sharedLock.lock();
-        try {
-            Set<TransactionImpl> txnList = adjacencyList.getOrDefault( predecessor, new ConcurrentSkipListSet<>() );
-            txnList.addAll( successors );
-            adjacencyList.put( predecessor, txnList );
-        } finally {
-            sharedLock.unlock();
+        if ( successors.isEmpty() ) {
+            return;
         }
+        Set<TransactionImpl> txnList = adjacencyList.computeIfAbsent( predecessor, k -> ConcurrentHashMap.newKeySet() );
+        long now = System.nanoTime();
+        for ( TransactionImpl successor : successors ) {
+            if ( txnList.add( successor ) ) {
+                newEdges.add( new Edge( predecessor, successor, now ) );
+            }
+        }
+    }
+
+
+    /**
+     * Removes all outgoing edges of the transaction. Called as soon as a transaction stops waiting.
+     */
+    void removeWaiter( TransactionImpl txn ) {
+        adjacencyList.remove( txn );
     }
 
 
     void remove( TransactionImpl txn ) {
-        sharedLock.lock();
-        try {
-            adjacencyList.remove( txn );
-            removeSuccessor( txn );
-        } finally {
-            sharedLock.unlock();
-        }
+        adjacencyList.remove( txn );
+        removeSuccessor( txn );
     }
 
 
@@ -67,86 +98,125 @@ boolean hasEdge( TransactionImpl txn1, TransactionImpl txn2 ) {
     }
 
 
-    List<List<TransactionImpl>> findCycles() {
-        exclusiveLock.lock();
-        try {
-            DepthFirstSearch dfs = new DepthFirstSearch();
-            dfs.start();
-            return dfs.getCycles();
-        } finally {
-            exclusiveLock.unlock();
+    /**
+     * Checks all edges added since the last invocation for cycles and aborts one transaction per detected cycle.
+     *
+     * @return the aborted transactions
+     */
+    Set<TransactionImpl> detectDeadlocks() {
+        long start = System.nanoTime();
+        Set<TransactionImpl> aborted = new HashSet<>();
+        Edge edge;
+        while ( (edge = newEdges.poll()) != null ) {
+            if ( aborted.contains( edge.waiter ) || !hasEdge( edge.waiter, edge.holder ) ) {
+                // Edge has been removed in the meantime
+                continue;
+            }
+            List<TransactionImpl> cycle = findPath( edge.holder, edge.waiter, aborted );
+            if ( cycle == null ) {
+                continue;
+            }
+            TransactionImpl victim = selectVictim( cycle );
+            if ( victim.abort() ) {
+                aborted.add( victim );
+                victims.incrementAndGet();
+                long latency = System.nanoTime() - edge.created;
+                totalDetectionLatency.addAndGet( latency );
+                maxDetectionLatency.accumulateAndGet( latency, Math::max );
+                if ( log.isDebugEnabled() ) {
+                    log.debug( "Detected deadlock between transactions {}, aborting transaction {}", cycle.stream().map( TransactionImpl::getId ).toArray(), victim.getId() );
+                }
+            }
         }
+        detectionRuns.incrementAndGet();
+        lastRunDuration = System.nanoTime() - start;
+        return aborted;
     }
 
 
-    void detectDeadlock( TransactionImpl currentTxn ) {
-        List<List<TransactionImpl>> cycles = findCycles();
-
-        for ( List<TransactionImpl> cycleGroup : cycles ) {
-            if ( cycleGroup.contains( currentTxn ) ) {
-                currentTxn.abort();
-            }
-        }
+    /**
+     * @return the average time in nanoseconds between the creation of the edge closing a cycle and the abort of the victim
+     */
+    double getAverageDetectionLatency() {
+        long count = victims.get();
+        return count == 0 ? 0 : (double) totalDetectionLatency.get() / count;
     }
 
 
-    private void removeSuccessor( TransactionImpl txnToRemove ) {
-        for ( TransactionImpl predecessor : adjacencyList.keySet() ) {
-            Set<TransactionImpl> successors = adjacencyList.get( predecessor );
-            if ( successors != null ) {
-                successors.remove( txnToRemove );
-            }
-        }
+    int getNumberOfWaitingTransactions() {
+        return adjacencyList.size();
     }
 
 
-    class DepthFirstSearch {
-
-        private Set<TransactionImpl> visited = new HashSet<>();
-        private List<List<TransactionImpl>> cycles = new ArrayList<>();
+    private TransactionImpl selectVictim( List<TransactionImpl> cycle ) {
+        Comparator<TransactionImpl> youngest = Comparator.comparingLong( TransactionImpl::getId );
+        switch ( (DeadlockVictimSelection) RuntimeConfig.DEADLOCK_VICTIM_SELECTION.getEnum() ) {
+            case FEWEST_LOCKS:
+                Comparator<TransactionImpl> fewestLocks = Comparator.comparingInt( t -> t.getLocks().size() );
+                return Collections.min( cycle, fewestLocks.thenComparing( youngest.reversed() ) );
+            case YOUNGEST:
+            default:
+                return Collections.max( cycle, youngest );
+        }
+    }
 
 
-        void start() {
-            for ( TransactionImpl txn : adjacencyList.keySet() ) {
-                if ( !visited.contains( txn ) ) {
-                    visit( txn, new ArrayList<>() );
+    /**
+     * Searches a path between the two transactions.
+     *
+     * @return the transactions on the path, including source and target, or null if the target is not reachable
+     */
+    private List<TransactionImpl> findPath( TransactionImpl source, TransactionImpl target, Set<TransactionImpl> excluded ) {
+        Map<TransactionImpl, TransactionImpl> predecessors = new HashMap<>();
+        Deque<TransactionImpl> stack = new ArrayDeque<>();
+        predecessors.put( source, source );
+        stack.push( source );
+        while ( !stack.isEmpty() ) {
+            TransactionImpl node = stack.pop();
+            if ( node.equals( target ) ) {
+                List<TransactionImpl> path = new ArrayList<>();
+                for ( TransactionImpl current = target; !current.equals( source ); current = predecessors.get( current ) ) {
+                    path.add( current );
+                }
+                path.add( source );
+                Collections.reverse( path );
+                return path;
+            }
+            Set<TransactionImpl> successors = adjacencyList.get( node );
+            if ( successors == null ) {
+                continue;
+            }
+            for ( TransactionImpl successor : successors ) {
+                if ( !excluded.contains( successor ) && !predecessors.containsKey( successor ) ) {
+                    predecessors.put( successor, node );
+                    stack.push( successor );
                 }
             }
         }
+        return null;
+    }
 
 
-        List<List<TransactionImpl>> getCycles() {
-            return cycles;
+    private void removeSuccessor( TransactionImpl txnToRemove ) {
+        for ( Set<TransactionImpl> successors : adjacencyList.values() ) {
+            successors.remove( txnToRemove );
         }
+    }
 
 
-        Set<TransactionImpl> getVisited() {
-            return visited;
-        }
-
+    private static class Edge {
 
-        private void visit( TransactionImpl node, List<TransactionImpl> path ) {
-            visited.add( node );
-            path.add( node );
-
-            Set<TransactionImpl> set = adjacencyList.get( node );
-            if ( set != null ) {
-                for ( TransactionImpl neighbour : set ) {
-                    if ( !visited.contains( neighbour ) ) {
-                        visit( neighbour, new ArrayList<>( path ) );
-                    } else {
-                        if ( path.contains( neighbour ) ) {
-                            cycles.add( getCycleFromPath( path, neighbour ) );
-                        }
-                    }
-                }
-            }
-        }
+        private final TransactionImpl waiter;
+        private final TransactionImpl holder;
+        private final long created;
 
 
-        private List<TransactionImpl> getCycleFromPath( List<TransactionImpl> path, TransactionImpl target ) {
-            return path.subList( path.indexOf( target ), path.size() );
+        Edge( TransactionImpl waiter, TransactionImpl holder, long created ) {
+            this.waiter = waiter;
+            this.holder = holder;
+            this.created = created;
         }
+
     }
 
 }
@@ -0,0 +1,269 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.adapter;
+
+
+import com.google.common.collect.ImmutableList;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.polypheny.db.TestHelper;
+import org.polypheny.db.TestHelper.JdbcConnection;
+
+
+/**
+ * Runs the tests of the file store against the columnar layout. The small block size makes sure that
+ * the changes are merged into segments while the tests are running.
+ */
+@SuppressWarnings({ "SqlDialectInspection", "SqlNoDataSourceInspection" })
+public class ColumnarFileAdapterTest {
+
+    @BeforeClass
+    public static void start() throws SQLException {
+        // Ensures that Polypheny-DB is running
+        // noinspection ResultOfMethodCallIgnored
+        TestHelper.getInstance();
+
+        try ( JdbcConnection jdbcConnection = new JdbcConnection( false ) ) {
+            Connection connection = jdbcConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                statement.executeUpdate( "ALTER ADAPTERS ADD \"col\" USING 'File' AS 'Store' WITH '{mode:embedded,layout:columnar,blockSize:4}'" );
+            }
+        }
+    }
+
+
+    @AfterClass
+    public static void end() throws SQLException {
+        try ( JdbcConnection jdbcConnection = new JdbcConnection( false ) ) {
+            Connection connection = jdbcConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                statement.executeUpdate( "ALTER ADAPTERS DROP col" );
+                connection.commit();
+            }
+        }
+    }
+
+
+    @Test
+    public void testColumnarStore() throws SQLException {
+        try ( JdbcConnection jdbcConnection = new JdbcConnection( false ) ) {
+            Connection connection = jdbcConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                try {
+                    statement.executeUpdate( "CREATE TABLE columnarTest (a INTEGER NOT NULL, b INTEGER, c VARCHAR(20), PRIMARY KEY (a)) ON STORE \"col\"" );
+
+                    int insertCount = statement.executeUpdate( "INSERT INTO columnarTest (a,b,c) VALUES (1,2,'x'),(3,4,'y'),(5,null,'x')" );
+                    Assert.assertEquals( 3, insertCount );
+                    insertCount = statement.executeUpdate( "INSERT INTO columnarTest (a) VALUES (6)" );
+                    Assert.assertEquals( 1, insertCount );
+
+                    PreparedStatement preparedStatement = connection.prepareStatement( "INSERT INTO columnarTest (a,b,c) VALUES (?,?,?)" );
+                    for ( int i = 10; i < 13; i++ ) {
+                        preparedStatement.setInt( 1, i );
+                        preparedStatement.setInt( 2, i * 2 );
+                        preparedStatement.setString( 3, "z" );
+                        preparedStatement.addBatch();
+                        preparedStatement.clearParameters();
+                    }
+                    preparedStatement.executeBatch();
+                    preparedStatement.close();
+                    connection.commit();
+
+                    ResultSet rs = statement.executeQuery( "SELECT a, b FROM columnarTest WHERE a = 3" );
+                    TestHelper.checkResultSet( rs, ImmutableList.of( new Object[]{ 3, 4 } ) );
+                    rs.close();
+                    preparedStatement = connection.prepareStatement( "SELECT a, b FROM columnarTest WHERE a = ?" );
+                    preparedStatement.setInt( 1, 1 );
+                    rs = preparedStatement.executeQuery();
+                    TestHelper.checkResultSet( rs, ImmutableList.of( new Object[]{ 1, 2 } ) );
+                    rs.close();
+                    preparedStatement.close();
+                    rs = statement.executeQuery( "SELECT a FROM columnarTest WHERE c = 'x' ORDER BY a" );
+                    TestHelper.checkResultSet( rs, ImmutableList.of( new Object[]{ 1 }, new Object[]{ 5 } ) );
+                    rs.close();
+
+                    // update
+                    statement.executeUpdate( "UPDATE columnarTest SET b = 5 WHERE b = 4" );
+                    preparedStatement = connection.prepareStatement( "UPDATE columnarTest SET b = 6 WHERE b = ?" );
+                    preparedStatement.setInt( 1, 5 );
+                    preparedStatement.executeUpdate();
+                    preparedStatement.close();
+                    connection.commit();
+                    rs = statement.executeQuery( "SELECT a, b FROM columnarTest WHERE b = 6" );
+                    TestHelper.checkResultSet( rs, ImmutableList.of( new Object[]{ 3, 6 } ) );
+                    rs.close();
+
+                    // is null
+                    rs = statement.executeQuery( "SELECT a, b FROM columnarTest WHERE b IS NULL ORDER BY a" );
+                    TestHelper.checkResultSet( rs, ImmutableList.of( new Object[]{ 5, null }, new Object[]{ 6, null } ) );
+                    rs.close();
+                    rs = statement.executeQuery( "SELECT a, b FROM columnarTest WHERE b = NULL" );
+                    TestHelper.checkResultSet( rs, ImmutableList.of() );
+                    rs.close();
+                    rs = statement.executeQuery( "SELECT a, b FROM columnarTest WHERE a >= 10 ORDER BY a" );
+                    TestHelper.checkResultSet( rs, ImmutableList.of( new Object[]{ 10, 20 }, new Object[]{ 11, 22 }, new Object[]{ 12, 24 } ) );
+                    rs.close();
+
+                    // delete
+                    Assert.assertEquals( 2, statement.executeUpdate( "DELETE FROM columnarTest WHERE a < 4" ) );
+                    connection.commit();
+                    rs = statement.executeQuery( "SELECT a FROM columnarTest ORDER BY a" );
+                    TestHelper.checkResultSet( rs, ImmutableList.of( new Object[]{ 5 }, new Object[]{ 6 }, new Object[]{ 10 }, new Object[]{ 11 }, new Object[]{ 12 } ) );
+                    rs.close();
+
+                    // add a column to the existing segments
+                    statement.executeUpdate( "ALTER TABLE columnarTest ADD COLUMN d INTEGER NOT NULL DEFAULT 7" );
+                    rs = statement.executeQuery( "SELECT a, d FROM columnarTest WHERE a > 10 ORDER BY a" );
+                    TestHelper.checkResultSet( rs, ImmutableList.of( new Object[]{ 11, 7 }, new Object[]{ 12, 7 } ) );
+                    rs.close();
+
+                    connection.commit();
+                } finally {
+                    statement.executeUpdate( "DROP TABLE public.columnarTest" );
+                    connection.commit();
+                }
+            }
+        }
+    }
+
+
+    @Test
+    public void testManyRows() throws SQLException {
+        try ( JdbcConnection jdbcConnection = new JdbcConnection( false ) ) {
+            Connection connection = jdbcConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                try {
+                    statement.executeUpdate( "CREATE TABLE columnarRows (a INTEGER NOT NULL, b VARCHAR(20), PRIMARY KEY (a)) ON STORE \"col\"" );
+
+                    // Every commit exceeds the block size and schedules a compaction
+                    List<Object[]> expected = new ArrayList<>();
+                    PreparedStatement preparedStatement = connection.prepareStatement( "INSERT INTO columnarRows (a,b) VALUES (?,?)" );
+                    for ( int i = 0; i < 100; i++ ) {
+                        preparedStatement.setInt( 1, i );
+                        preparedStatement.setString( 2, "value" + (i % 3) );
+                        preparedStatement.addBatch();
+                        preparedStatement.clearParameters();
+                        if ( i % 10 == 9 ) {
+                            preparedStatement.executeBatch();
+                            connection.commit();
+                        }
+                        if ( i % 5 != 0 ) {
+                            expected.add( new Object[]{ i, "value" + (i % 3) } );
+                        }
+                    }
+                    preparedStatement.close();
+
+                    Assert.assertEquals( 20, statement.executeUpdate( "DELETE FROM columnarRows WHERE MOD(a, 5) = 0" ) );
+                    connection.commit();
+
+                    ResultSet rs = statement.executeQuery( "SELECT a, b FROM columnarRows ORDER BY a" );
+                    TestHelper.checkResultSet( rs, expected );
+                    rs.close();
+                    rs = statement.executeQuery( "SELECT COUNT(*) FROM columnarRows WHERE a BETWEEN 40 AND 59" );
+                    TestHelper.checkResultSet( rs, ImmutableList.of( new Object[]{ 16L } ) );
+                    rs.close();
+                    rs = statement.executeQuery( "SELECT COUNT(*) FROM columnarRows WHERE b = 'value1'" );
+                    TestHelper.checkResultSet( rs, ImmutableList.of( new Object[]{ expected.stream().filter( r -> "value1".equals( r[1] ) ).count() } ) );
+                    rs.close();
+
+                    connection.commit();
+                } finally {
+                    statement.executeUpdate( "DROP TABLE public.columnarRows" );
+                    connection.commit();
+                }
+            }
+        }
+    }
+
+
+    @Test
+    public void testDateTime() throws SQLException {
+        try ( JdbcConnection jdbcConnection = new JdbcConnection( false ) ) {
+            Connection connection = jdbcConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                try {
+                    statement.executeUpdate( "CREATE TABLE columnarDateTime (a INTEGER NOT NULL, b DATE, c TIME, d TIMESTAMP, PRIMARY KEY (a)) ON STORE \"col\"" );
+
+                    Date date = Date.valueOf( "2020-02-29" );
+                    Time time = Time.valueOf( "13:14:15" );
+                    Timestamp timestamp = Timestamp.valueOf( "2020-02-29 13:14:15" );
+                    PreparedStatement preparedStatement = connection.prepareStatement( "INSERT INTO columnarDateTime (a,b,c,d) VALUES (?,?,?,?)" );
+                    for ( int i = 1; i < 6; i++ ) {
+                        preparedStatement.setInt( 1, i );
+                        preparedStatement.setDate( 2, date );
+                        preparedStatement.setTime( 3, time );
+                        preparedStatement.setTimestamp( 4, timestamp );
+                        preparedStatement.addBatch();
+                        preparedStatement.clearParameters();
+                    }
+                    preparedStatement.executeBatch();
+                    preparedStatement.close();
+                    connection.commit();
+
+                    ResultSet rs = statement.executeQuery( "SELECT b, c, d FROM columnarDateTime WHERE a = 4" );
+                    TestHelper.checkResultSet( rs, ImmutableList.of( new Object[]{ date, time, timestamp } ) );
+                    rs.close();
+
+                    connection.commit();
+                } finally {
+                    statement.executeUpdate( "DROP TABLE public.columnarDateTime" );
+                    connection.commit();
+                }
+            }
+        }
+    }
+
+
+    @Test
+    public void testRollback() throws SQLException {
+        try ( JdbcConnection jdbcConnection = new JdbcConnection( false ) ) {
+            Connection connection = jdbcConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                try {
+                    statement.executeUpdate( "CREATE TABLE columnarRollback (a INTEGER NOT NULL, b INTEGER NOT NULL, PRIMARY KEY(a)) ON STORE \"col\"" );
+                    statement.executeUpdate( "INSERT INTO columnarRollback (a,b) VALUES (1,2),(2,3),(3,4),(4,5),(5,6)" );
+                    connection.commit();
+
+                    statement.executeUpdate( "INSERT INTO columnarRollback (a,b) VALUES (6,7)" );
+                    statement.executeUpdate( "DELETE FROM columnarRollback WHERE a = 1" );
+                    connection.rollback();
+
+                    ResultSet rs = statement.executeQuery( "SELECT a, b FROM columnarRollback ORDER BY a" );
+                    TestHelper.checkResultSet( rs, ImmutableList.of( new Object[]{ 1, 2 }, new Object[]{ 2, 3 }, new Object[]{ 3, 4 }, new Object[]{ 4, 5 }, new Object[]{ 5, 6 } ) );
+                    rs.close();
+                    connection.commit();
+                } finally {
+                    statement.executeUpdate( "DROP TABLE columnarRollback" );
+                    connection.commit();
+                }
+            }
+        }
+    }
+
+}
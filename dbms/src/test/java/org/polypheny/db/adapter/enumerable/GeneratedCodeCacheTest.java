@@ -0,0 +1,187 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.adapter.enumerable;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicReference;
+import org.codehaus.commons.compiler.CompileException;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.polypheny.db.TestHelper;
+import org.polypheny.db.config.RuntimeConfig;
+import org.polypheny.db.runtime.ArrayBindable;
+
+
+public class GeneratedCodeCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    @BeforeClass
+    public static void start() {
+        // Ensures that Polypheny-DB is running, the generated code is compiled against its class loader
+        //noinspection ResultOfMethodCallIgnored
+        TestHelper.getInstance();
+    }
+
+
+    @Test
+    public void roundTrip() throws Exception {
+        GeneratedCodeCache cache = open( "a" );
+        assertEquals( 1, evaluate( cache, 1 ) );
+        assertEquals( 1, cache.getMisses().get() );
+        assertEquals( 1, cache.getEntryCount() );
+
+        assertEquals( 1, evaluate( cache, 1 ) );
+        assertEquals( 1, cache.getHits().get() );
+
+        // Entries survive a restart
+        GeneratedCodeCache reopened = open( "a" );
+        assertEquals( 1, reopened.getEntryCount() );
+        assertEquals( 1, evaluate( reopened, 1 ) );
+        assertEquals( 1, reopened.getHits().get() );
+        assertEquals( 0, reopened.getMisses().get() );
+    }
+
+
+    @Test
+    public void changedCatalogDiscardsEntries() throws Exception {
+        GeneratedCodeCache cache = open( "a" );
+        evaluate( cache, 1 );
+        evaluate( cache, 2 );
+        assertEquals( 2, cache.getEntryCount() );
+
+        GeneratedCodeCache reopened = open( "b" );
+        assertEquals( 0, reopened.getEntryCount() );
+        assertEquals( 0, countEntryFiles() );
+        assertEquals( 1, evaluate( reopened, 1 ) );
+        assertEquals( 1, reopened.getMisses().get() );
+    }
+
+
+    @Test
+    public void catalogVersionIsUpdatedLazily() throws Exception {
+        AtomicReference<String> catalogVersion = new AtomicReference<>( "a" );
+        GeneratedCodeCache cache = new GeneratedCodeCache( catalogVersion::get );
+        assertTrue( cache.open( folder.getRoot() ) );
+        evaluate( cache, 1 );
+
+        catalogVersion.set( "b" );
+        cache.catalogChanged();
+        assertEquals( "a", readCatalogVersion() );
+
+        cache.updateCatalogVersion();
+        assertEquals( "b", readCatalogVersion() );
+
+        // Entries compiled before the change stay valid
+        GeneratedCodeCache reopened = open( "b" );
+        assertEquals( 1, reopened.getEntryCount() );
+        assertEquals( 1, evaluate( reopened, 1 ) );
+        assertEquals( 1, reopened.getHits().get() );
+    }
+
+
+    @Test
+    public void corruptEntryIsRecompiled() throws Exception {
+        GeneratedCodeCache cache = open( "a" );
+        evaluate( cache, 1 );
+
+        // Truncate the entry after the format version
+        File[] files = folder.getRoot().listFiles( ( dir, name ) -> name.endsWith( ".bin" ) );
+        assertEquals( 1, files.length );
+        Files.write( files[0].toPath(), new byte[]{ 0, 0, 0, 1, 0, 0 } );
+
+        GeneratedCodeCache reopened = open( "a" );
+        assertEquals( 1, evaluate( reopened, 1 ) );
+        assertEquals( 1, reopened.getFailures().get() );
+        assertEquals( 1, reopened.getMisses().get() );
+        assertEquals( 1, reopened.getEntryCount() );
+
+        // The entry has been written again
+        GeneratedCodeCache repaired = open( "a" );
+        assertEquals( 1, evaluate( repaired, 1 ) );
+        assertEquals( 1, repaired.getHits().get() );
+        assertEquals( 0, repaired.getFailures().get() );
+    }
+
+
+    @Test
+    public void leastUsedEntriesAreEvicted() throws Exception {
+        int size = RuntimeConfig.GENERATED_CODE_CACHE_SIZE.getInteger();
+        RuntimeConfig.GENERATED_CODE_CACHE_SIZE.setInteger( 10 );
+        try {
+            GeneratedCodeCache cache = open( "a" );
+            for ( int i = 0; i < 5; i++ ) {
+                evaluate( cache, 0 );
+            }
+            for ( int i = 1; i < 25; i++ ) {
+                evaluate( cache, i );
+                assertTrue( cache.getEntryCount() <= 10 );
+            }
+            assertEquals( cache.getEntryCount(), countEntryFiles() );
+
+            // The most used entry has not been evicted
+            long hits = cache.getHits().get();
+            assertEquals( 0, evaluate( cache, 0 ) );
+            assertEquals( hits + 1, cache.getHits().get() );
+        } finally {
+            RuntimeConfig.GENERATED_CODE_CACHE_SIZE.setInteger( size );
+        }
+    }
+
+
+    private GeneratedCodeCache open( String catalogVersion ) {
+        GeneratedCodeCache cache = new GeneratedCodeCache( () -> catalogVersion );
+        assertTrue( cache.open( folder.getRoot() ) );
+        return cache;
+    }
+
+
+    private static int evaluate( GeneratedCodeCache cache, int value ) throws CompileException, IOException {
+        String code = "public org.apache.calcite.linq4j.Enumerable bind( final org.polypheny.db.adapter.DataContext root ) {\n"
+                + "  return org.apache.calcite.linq4j.Linq4j.asEnumerable( new Object[][]{ new Object[]{ Integer.valueOf( " + value + " ) } } );\n"
+                + "}\n"
+                + "public Class getElementType() {\n"
+                + "  return Object[].class;\n"
+                + "}\n";
+        ArrayBindable bindable = (ArrayBindable) cache.getBindable( "Baz", code, new Class[]{ ArrayBindable.class } );
+        Object[] row = bindable.bind( null ).first();
+        assertArrayEquals( new Object[]{ value }, row );
+        return (Integer) row[0];
+    }
+
+
+    private int countEntryFiles() {
+        File[] files = folder.getRoot().listFiles( ( dir, name ) -> name.endsWith( ".bin" ) );
+        return files == null ? 0 : files.length;
+    }
+
+
+    private String readCatalogVersion() throws IOException {
+        return Files.readString( new File( folder.getRoot(), "catalog.version" ).toPath() );
+    }
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.jdbc;
+
+
+import com.google.common.collect.ImmutableList;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.polypheny.db.AdapterTestSuite;
+import org.polypheny.db.TestHelper;
+import org.polypheny.db.TestHelper.JdbcConnection;
+import org.polypheny.db.config.RuntimeConfig;
+import org.polypheny.db.util.Benchmark;
+
+
+/**
+ * Tests sending the first frame of a result together with the response to an execute request.
+ */
+@SuppressWarnings({ "SqlNoDataSourceInspection", "SqlDialectInspection" })
+@Slf4j
+@Category(AdapterTestSuite.class)
+public class JdbcFirstFrameTest {
+
+    private static final int ROWS = 250;
+
+
+    @BeforeClass
+    public static void start() throws SQLException {
+        // Ensures that Polypheny-DB is running
+        //noinspection ResultOfMethodCallIgnored
+        TestHelper.getInstance();
+        try ( JdbcConnection polyphenyDbConnection = new JdbcConnection( true ) ) {
+            Connection connection = polyphenyDbConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                statement.executeUpdate( "CREATE TABLE firstframe( id INTEGER NOT NULL, name VARCHAR(20), PRIMARY KEY (id) )" );
+                try ( PreparedStatement preparedStatement = connection.prepareStatement( "INSERT INTO firstframe VALUES (?, ?)" ) ) {
+                    for ( int i = 0; i < ROWS; i++ ) {
+                        preparedStatement.setInt( 1, i );
+                        preparedStatement.setString( 2, "name" + i );
+                        preparedStatement.addBatch();
+                    }
+                    preparedStatement.executeBatch();
+                }
+            }
+        }
+    }
+
+
+    @AfterClass
+    public static void stop() throws SQLException {
+        try ( JdbcConnection polyphenyDbConnection = new JdbcConnection( true ) ) {
+            Connection connection = polyphenyDbConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                statement.executeUpdate( "DROP TABLE firstframe" );
+            }
+        }
+    }
+
+
+    @After
+    public void resetConfig() {
+        RuntimeConfig.JDBC_FIRST_FRAME_ROWS.setInteger( 100 );
+    }
+
+
+    @Test
+    public void testSingleColumn() throws SQLException {
+        // Single column results use a cursor factory which Avatica does not keep for responses with a first frame
+        try ( JdbcConnection polyphenyDbConnection = new JdbcConnection( true ) ) {
+            Connection connection = polyphenyDbConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                TestHelper.checkResultSet(
+                        statement.executeQuery( "SELECT id FROM firstframe WHERE id < 3 ORDER BY id" ),
+                        ImmutableList.of( new Object[]{ 0 }, new Object[]{ 1 }, new Object[]{ 2 } ) );
+            }
+        }
+    }
+
+
+    @Test
+    public void testResultLargerThanFirstFrame() throws SQLException {
+        for ( int firstFrameRows : new int[]{ 0, 1, 100, ROWS, 1000 } ) {
+            RuntimeConfig.JDBC_FIRST_FRAME_ROWS.setInteger( firstFrameRows );
+            try ( JdbcConnection polyphenyDbConnection = new JdbcConnection( true ) ) {
+                Connection connection = polyphenyDbConnection.getConnection();
+                try ( Statement statement = connection.createStatement() ) {
+                    TestHelper.checkResultSet( statement.executeQuery( "SELECT id, name FROM firstframe ORDER BY id" ), expectedRows() );
+                }
+            }
+        }
+    }
+
+
+    @Test
+    public void testPreparedStatement() throws SQLException {
+        try ( JdbcConnection polyphenyDbConnection = new JdbcConnection( true ) ) {
+            Connection connection = polyphenyDbConnection.getConnection();
+            try ( PreparedStatement statement = connection.prepareStatement( "SELECT name FROM firstframe WHERE id = ?" ) ) {
+                for ( int i = 0; i < 3; i++ ) {
+                    statement.setInt( 1, i );
+                    TestHelper.checkResultSet( statement.executeQuery(), ImmutableList.of( new Object[]{ "name" + i } ) );
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Compares the latency of small queries over JDBC with and without sending the first frame with the response.
+     */
+    @Test
+    public void testRoundTripLatencyBenchmark() throws SQLException {
+        // Run a much quicker form of the test during regular testing.
+        final int iterations = Benchmark.enabled() ? 1_000 : 10;
+        try ( JdbcConnection polyphenyDbConnection = new JdbcConnection( true ) ) {
+            Connection connection = polyphenyDbConnection.getConnection();
+            try ( PreparedStatement statement = connection.prepareStatement( "SELECT id, name FROM firstframe WHERE id < ?" ) ) {
+                statement.setInt( 1, 10 );
+                for ( int firstFrameRows : new int[]{ 0, 100 } ) {
+                    RuntimeConfig.JDBC_FIRST_FRAME_ROWS.setInteger( firstFrameRows );
+                    String description = "JDBC query round trip (first frame " + (firstFrameRows > 0 ? "enabled" : "disabled") + ")";
+                    new Benchmark( description, statistician -> {
+                        long nanos = System.nanoTime();
+                        try {
+                            for ( int i = 0; i < iterations; i++ ) {
+                                try ( ResultSet resultSet = statement.executeQuery() ) {
+                                    int count = 0;
+                                    while ( resultSet.next() ) {
+                                        count++;
+                                    }
+                                    if ( count != 10 ) {
+                                        throw new AssertionError( "Expected 10 rows but got " + count );
+                                    }
+                                }
+                            }
+                        } catch ( SQLException e ) {
+                            throw new RuntimeException( e );
+                        }
+                        statistician.record( nanos );
+                        log.info( "{}: {} microseconds per query", description, (System.nanoTime() - nanos) / 1000 / iterations );
+                        return null;
+                    }, 5 ).run();
+                }
+            }
+        }
+    }
+
+
+    private static List<Object[]> expectedRows() {
+        List<Object[]> rows = new ArrayList<>();
+        for ( int i = 0; i < ROWS; i++ ) {
+            rows.add( new Object[]{ i, "name" + i } );
+        }
+        return rows;
+    }
+
+}
@@ -20,12 +20,15 @@
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 import org.polypheny.db.AdapterTestSuite;
 import org.polypheny.db.TestHelper;
 import org.polypheny.db.TestHelper.JdbcConnection;
+import org.polypheny.db.config.RuntimeConfig;
 import org.polypheny.db.excluded.CassandraExcluded;
 
 @SuppressWarnings({ "SqlDialectInspection", "SqlNoDataSourceInspection" })
@@ -265,4 +268,56 @@ public void threeStoresTest() throws SQLException {
         }
     }
 
+
+    @Test
+    public void parallelPartitionsTest() throws SQLException {
+        int parallelism = RuntimeConfig.DATA_MIGRATOR_PARALLELISM.getInteger();
+        int batchSize = RuntimeConfig.DATA_MIGRATOR_BATCH_SIZE.getInteger();
+        try ( JdbcConnection polyphenyDbConnection = new JdbcConnection( true ) ) {
+            Connection connection = polyphenyDbConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                statement.executeUpdate( "CREATE TABLE datamigratortest( "
+                        + "tprimary INTEGER NOT NULL, "
+                        + "tinteger INTEGER NULL, "
+                        + "tvarchar VARCHAR(20) NULL, "
+                        + "PRIMARY KEY (tprimary) )"
+                        + "PARTITION BY HASH (tprimary) "
+                        + "PARTITIONS 4" );
+
+                try {
+                    List<Object[]> expected = new ArrayList<>();
+                    for ( int i = 1; i <= 50; i++ ) {
+                        statement.executeUpdate( "INSERT INTO datamigratortest VALUES (" + i + "," + i * 10 + ",'foo" + i + "')" );
+                        expected.add( new Object[]{ i, i * 10, "foo" + i } );
+                    }
+
+                    // The partitions are copied concurrently on their own connections and in several batches
+                    RuntimeConfig.DATA_MIGRATOR_PARALLELISM.setInteger( 4 );
+                    RuntimeConfig.DATA_MIGRATOR_BATCH_SIZE.setInteger( 3 );
+
+                    // Add data store
+                    statement.executeUpdate( "ALTER ADAPTERS ADD \"store1\" USING 'Hsqldb' AS 'Store'"
+                            + " WITH '{maxConnections:\"25\",trxControlMode:locks,trxIsolationLevel:read_committed,type:Memory,tableType:Memory,mode:embedded}'" );
+
+                    // Add placement
+                    statement.executeUpdate( "ALTER TABLE \"datamigratortest\" ADD PLACEMENT ON STORE \"store1\"" );
+
+                    // Remove placement on initial store
+                    statement.executeUpdate( "ALTER TABLE \"datamigratortest\" DROP PLACEMENT ON STORE \"hsqldb\"" );
+
+                    // Checks
+                    TestHelper.checkResultSet(
+                            statement.executeQuery( "SELECT * FROM datamigratortest ORDER BY tprimary" ),
+                            expected );
+                } finally {
+                    RuntimeConfig.DATA_MIGRATOR_PARALLELISM.setInteger( parallelism );
+                    RuntimeConfig.DATA_MIGRATOR_BATCH_SIZE.setInteger( batchSize );
+                    // Drop table and store
+                    statement.executeUpdate( "DROP TABLE datamigratortest" );
+                    statement.executeUpdate( "ALTER ADAPTERS DROP \"store1\"" );
+                }
+            }
+        }
+    }
+
 }
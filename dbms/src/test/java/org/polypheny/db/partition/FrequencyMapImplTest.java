@@ -0,0 +1,216 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.partition;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import java.util.Map;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.polypheny.db.TestHelper;
+import org.polypheny.db.catalog.Catalog;
+import org.polypheny.db.catalog.Catalog.EntityType;
+import org.polypheny.db.catalog.Catalog.PartitionType;
+import org.polypheny.db.catalog.entity.CatalogTable;
+import org.polypheny.db.partition.properties.TemperaturePartitionProperty;
+import org.polypheny.db.partition.properties.TemperaturePartitionProperty.PartitionCostIndication;
+import org.polypheny.db.util.Pair;
+
+
+public class FrequencyMapImplTest {
+
+    private static final long START = 1_000_000;
+
+    // Frequency interval of the test tables in seconds, which is the half-life of the temperatures
+    private static final long INTERVAL = 10;
+
+
+    @BeforeClass
+    public static void start() {
+        //noinspection ResultOfMethodCallIgnored
+        TestHelper.getInstance();
+    }
+
+
+    @Test
+    public void accessesAccumulate() {
+        FrequencyMapImpl frequencyMap = new FrequencyMapImpl( Catalog.getInstance() );
+        CatalogTable table = createTable( 1, PartitionCostIndication.ALL, 10L, 11L );
+
+        // Accesses of tables which are not tracked yet are ignored
+        frequencyMap.recordAccess( table.id, List.of( 10L ), false );
+
+        Map<Long, Double> temperatures = frequencyMap.updateTemperatures( table, START );
+        assertEquals( 0.0, temperatures.get( 10L ), 0.0 );
+        assertEquals( 0.0, temperatures.get( 11L ), 0.0 );
+
+        for ( int i = 0; i < 3; i++ ) {
+            frequencyMap.recordAccess( table.id, List.of( 10L, 11L ), false );
+        }
+        frequencyMap.recordAccess( table.id, List.of( 10L ), true );
+        // Unknown tables and partitions are ignored
+        frequencyMap.recordAccess( 2, List.of( 10L ), true );
+        frequencyMap.recordAccess( table.id, List.of( 12L ), true );
+
+        temperatures = frequencyMap.updateTemperatures( table, START );
+        assertEquals( 4.0, temperatures.get( 10L ), 0.0 );
+        assertEquals( 3.0, temperatures.get( 11L ), 0.0 );
+
+        // Accesses are only counted once
+        temperatures = frequencyMap.updateTemperatures( table, START );
+        assertEquals( 4.0, temperatures.get( 10L ), 0.0 );
+        assertEquals( 3.0, temperatures.get( 11L ), 0.0 );
+    }
+
+
+    @Test
+    public void costIndication() {
+        FrequencyMapImpl frequencyMap = new FrequencyMapImpl( Catalog.getInstance() );
+        CatalogTable reads = createTable( 1, PartitionCostIndication.READ, 20L );
+        CatalogTable writes = createTable( 2, PartitionCostIndication.WRITE, 21L );
+        frequencyMap.updateTemperatures( reads, START );
+        frequencyMap.updateTemperatures( writes, START );
+
+        frequencyMap.recordAccess( reads.id, List.of( 20L ), false );
+        frequencyMap.recordAccess( reads.id, List.of( 20L ), true );
+        frequencyMap.recordAccess( writes.id, List.of( 21L ), false );
+        frequencyMap.recordAccess( writes.id, List.of( 21L ), true );
+        frequencyMap.recordAccess( writes.id, List.of( 21L ), true );
+
+        assertEquals( 1.0, frequencyMap.updateTemperatures( reads, START ).get( 20L ), 0.0 );
+        assertEquals( 2.0, frequencyMap.updateTemperatures( writes, START ).get( 21L ), 0.0 );
+    }
+
+
+    @Test
+    public void temperaturesDecay() {
+        FrequencyMapImpl frequencyMap = new FrequencyMapImpl( Catalog.getInstance() );
+        CatalogTable table = createTable( 1, PartitionCostIndication.ALL, 30L );
+        frequencyMap.updateTemperatures( table, START );
+
+        for ( int i = 0; i < 8; i++ ) {
+            frequencyMap.recordAccess( table.id, List.of( 30L ), false );
+        }
+        assertEquals( 8.0, frequencyMap.updateTemperatures( table, START ).get( 30L ), 0.0 );
+
+        // One half-life later, the temperature has halved
+        assertEquals( 4.0, frequencyMap.updateTemperatures( table, START + INTERVAL * 1000 ).get( 30L ), 1e-9 );
+
+        // Two more half-lives later, new accesses are added to the decayed temperature
+        frequencyMap.recordAccess( table.id, List.of( 30L ), false );
+        assertEquals( 2.0, frequencyMap.updateTemperatures( table, START + 3 * INTERVAL * 1000 ).get( 30L ), 1e-9 );
+
+        // Time running backwards does not heat up the partition
+        assertEquals( 2.0, frequencyMap.updateTemperatures( table, START ).get( 30L ), 1e-9 );
+    }
+
+
+    @Test
+    public void similarTemperaturesDoNotSwap() {
+        // Partition 1 is HOT, partition 2 is slightly warmer but below the hysteresis of 20 percent
+        Pair<List<Long>, List<Long>> moved = FrequencyMapImpl.selectMovedPartitions(
+                List.of( 2L, 1L, 3L ),
+                Map.of( 1L, 10.0, 2L, 11.0, 3L, 1.0 ),
+                List.of( 1L ),
+                1,
+                2,
+                20 );
+        assertTrue( moved.left.isEmpty() );
+        assertTrue( moved.right.isEmpty() );
+
+        // Without hysteresis, partition 2 is moved
+        moved = FrequencyMapImpl.selectMovedPartitions(
+                List.of( 2L, 1L, 3L ),
+                Map.of( 1L, 10.0, 2L, 11.0, 3L, 1.0 ),
+                List.of( 1L ),
+                1,
+                2,
+                0 );
+        assertEquals( List.of( 2L ), moved.left );
+        assertTrue( moved.right.isEmpty() );
+    }
+
+
+    @Test
+    public void clearlyWarmerPartitionIsMovedToHot() {
+        Pair<List<Long>, List<Long>> moved = FrequencyMapImpl.selectMovedPartitions(
+                List.of( 2L, 1L, 3L ),
+                Map.of( 1L, 10.0, 2L, 13.0, 3L, 1.0 ),
+                List.of( 1L ),
+                1,
+                2,
+                20 );
+        assertEquals( List.of( 2L ), moved.left );
+        // Partition 1 is still within the tolerance band and remains in HOT
+        assertTrue( moved.right.isEmpty() );
+    }
+
+
+    @Test
+    public void partitionOutsideOfToleranceBandIsMovedToCold() {
+        // Partition 1 is only the third warmest, but at most two partitions may remain in HOT
+        Pair<List<Long>, List<Long>> moved = FrequencyMapImpl.selectMovedPartitions(
+                List.of( 2L, 3L, 1L ),
+                Map.of( 1L, 10.0, 2L, 11.0, 3L, 10.5 ),
+                List.of( 1L ),
+                1,
+                2,
+                20 );
+        assertEquals( List.of( 1L ), moved.right );
+        // The free slot in HOT is taken regardless of the hysteresis
+        assertEquals( List.of( 2L ), moved.left );
+    }
+
+
+    @Test
+    public void freeSlotIsFilled() {
+        Pair<List<Long>, List<Long>> moved = FrequencyMapImpl.selectMovedPartitions(
+                List.of( 2L, 1L ),
+                Map.of( 1L, 1.0, 2L, 2.0 ),
+                List.of(),
+                1,
+                1,
+                20 );
+        assertEquals( List.of( 2L ), moved.left );
+        assertTrue( moved.right.isEmpty() );
+    }
+
+
+    private static CatalogTable createTable( long id, PartitionCostIndication costIndication, Long... partitionIds ) {
+        TemperaturePartitionProperty property = TemperaturePartitionProperty.builder()
+                .partitionType( PartitionType.TEMPERATURE )
+                .isPartitioned( true )
+                .partitionGroupIds( ImmutableList.of( 1L, 2L ) )
+                .partitionIds( ImmutableList.copyOf( partitionIds ) )
+                .numPartitionGroups( 2 )
+                .numPartitions( partitionIds.length )
+                .reliesOnPeriodicChecks( true )
+                .partitionCostIndication( costIndication )
+                .internalPartitionFunction( PartitionType.HASH )
+                .hotAccessPercentageIn( 50 )
+                .hotAccessPercentageOut( 50 )
+                .frequencyInterval( INTERVAL )
+                .hotPartitionGroupId( 1L )
+                .coldPartitionGroupId( 2L )
+                .build();
+        return new CatalogTable( id, "table" + id, ImmutableList.of(), 0, 0, 0, EntityType.ENTITY, null, ImmutableList.of(), true, property );
+    }
+
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.partition;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.polypheny.db.AdapterTestSuite;
+import org.polypheny.db.TestHelper;
+import org.polypheny.db.TestHelper.JdbcConnection;
+import org.polypheny.db.catalog.Catalog;
+import org.polypheny.db.catalog.Catalog.Pattern;
+import org.polypheny.db.catalog.entity.CatalogPartition;
+import org.polypheny.db.catalog.entity.CatalogTable;
+import org.polypheny.db.excluded.CassandraExcluded;
+
+
+/**
+ * Checks that the compiled partition functions route values to the same partitions as the string based routing they
+ * have replaced. The previous routing is replicated in this class.
+ */
+@SuppressWarnings({ "SqlNoDataSourceInspection", "SqlDialectInspection" })
+@Category({ AdapterTestSuite.class, CassandraExcluded.class })
+public class PartitionFunctionTest {
+
+    @BeforeClass
+    public static void start() {
+        // Ensures that Polypheny-DB is running
+        //noinspection ResultOfMethodCallIgnored
+        TestHelper.getInstance();
+    }
+
+
+    @Test
+    public void hashPartitioning() throws SQLException {
+        List<Object> integers = new ArrayList<>();
+        IntStream.rangeClosed( -1000, 1000 ).forEach( integers::add );
+        integers.addAll( List.of( Integer.MIN_VALUE, Integer.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE, 1234567890123L, (short) -17, (byte) 42 ) );
+        List<Object> strings = new ArrayList<>( List.of( "", "a", "abc", "Polypheny", "-12", "007", "\u00e4\u00f6\u00fc" ) );
+        IntStream.range( 0, 500 ).forEach( i -> strings.add( "value" + i ) );
+
+        checkEquivalence( "PARTITION BY HASH (tinteger) PARTITIONS 5", integers, PartitionFunctionTest::hashPartition );
+        checkEquivalence( "PARTITION BY HASH (tvarchar) PARTITIONS 3", strings, PartitionFunctionTest::hashPartition );
+    }
+
+
+    @Test
+    public void rangePartitioning() throws SQLException {
+        List<Object> values = new ArrayList<>();
+        IntStream.rangeClosed( -10, 50 ).forEach( values::add );
+        values.addAll( List.of( Integer.MIN_VALUE, Integer.MAX_VALUE, 7L, (short) 25, "8", "5.5", "10.0" ) );
+
+        // The ranges are not specified in order
+        checkEquivalence(
+                "PARTITION BY RANGE (tinteger) ( PARTITION parta VALUES(20,30), PARTITION partb VALUES(1,5), PARTITION partc VALUES(10,6) )",
+                values,
+                PartitionFunctionTest::rangePartition );
+    }
+
+
+    @Test
+    public void listPartitioning() throws SQLException {
+        List<Object> integers = new ArrayList<>();
+        IntStream.rangeClosed( -20, 20 ).forEach( integers::add );
+        integers.addAll( List.of( 7L, (short) 3, (byte) -4, "3", "007" ) );
+
+        checkEquivalence(
+                "PARTITION BY LIST (tinteger) ( PARTITION parta VALUES('1', '3', '-4'), PARTITION partb VALUES('007', '12'), PARTITION partc VALUES('3', '15') )",
+                integers,
+                PartitionFunctionTest::listPartition );
+        checkEquivalence(
+                "PARTITION BY LIST (tvarchar) ( PARTITION parta VALUES('abc'), PARTITION partb VALUES('def', 'qrs', 'abc') )",
+                List.of( "abc", "def", "qrs", "xyz", "", "ABC", "abc " ),
+                PartitionFunctionTest::listPartition );
+    }
+
+
+    @Test
+    public void dropTableRemovesPartitionFunction() throws SQLException {
+        try ( JdbcConnection polyphenyDbConnection = new JdbcConnection( true ) ) {
+            Connection connection = polyphenyDbConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                createTable( statement, "PARTITION BY HASH (tinteger) PARTITIONS 3" );
+                CatalogTable table = getTable();
+                try {
+                    getPartitionManager( table ).getPartitionFunction( table );
+                    assertTrue( AbstractPartitionManager.PARTITION_FUNCTIONS.containsKey( table.id ) );
+                } finally {
+                    statement.executeUpdate( "DROP TABLE partitionfunctiontest" );
+                }
+                assertFalse( AbstractPartitionManager.PARTITION_FUNCTIONS.containsKey( table.id ) );
+            }
+        }
+    }
+
+
+    private void checkEquivalence( String partitioning, List<Object> values, BiFunction<CatalogTable, String, Long> reference ) throws SQLException {
+        try ( JdbcConnection polyphenyDbConnection = new JdbcConnection( true ) ) {
+            Connection connection = polyphenyDbConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                createTable( statement, partitioning );
+                try {
+                    CatalogTable table = getTable();
+                    PartitionManager partitionManager = getPartitionManager( table );
+                    CompiledPartitionFunction function = partitionManager.getPartitionFunction( table );
+
+                    long[] expected = new long[values.size()];
+                    for ( int i = 0; i < values.size(); i++ ) {
+                        Object value = values.get( i );
+                        expected[i] = reference.apply( table, String.valueOf( value ) );
+                        assertEquals( "Typed value " + value, expected[i], function.getTargetPartitionId( value ) );
+                        assertEquals( "String value " + value, expected[i], partitionManager.getTargetPartitionId( table, String.valueOf( value ) ) );
+                    }
+                    assertArrayEquals( expected, function.routeBatch( values ) );
+                    assertArrayEquals( expected, function.routeBatch( values.stream().map( String::valueOf ).collect( Collectors.toList() ) ) );
+                } finally {
+                    statement.executeUpdate( "DROP TABLE partitionfunctiontest" );
+                }
+            }
+        }
+    }
+
+
+    private static void createTable( Statement statement, String partitioning ) throws SQLException {
+        statement.executeUpdate( "CREATE TABLE partitionfunctiontest( "
+                + "tprimary INTEGER NOT NULL, "
+                + "tinteger INTEGER NULL, "
+                + "tvarchar VARCHAR(20) NULL, "
+                + "PRIMARY KEY (tprimary) ) "
+                + partitioning );
+    }
+
+
+    private static CatalogTable getTable() {
+        return Catalog.getInstance().getTables( null, null, new Pattern( "partitionfunctiontest" ) ).get( 0 );
+    }
+
+
+    private static PartitionManager getPartitionManager( CatalogTable table ) {
+        return PartitionManagerFactory.getInstance().getPartitionManager( table.partitionProperty.partitionType );
+    }
+
+
+    private static long hashPartition( CatalogTable catalogTable, String columnValue ) {
+        long hashValue = columnValue.hashCode() * -1;
+
+        // Don't want any neg. value for now
+        if ( hashValue <= 0 ) {
+            hashValue *= -1;
+        }
+
+        // Get designated HASH partition based on number of internal partitions
+        int partitionIndex = (int) (hashValue % catalogTable.partitionProperty.partitionIds.size());
+
+        // Finally decide on which partition to put it
+        return catalogTable.partitionProperty.partitionIds.get( partitionIndex );
+    }
+
+
+    private static long rangePartition( CatalogTable catalogTable, String columnValue ) {
+        long unboundPartitionId = -1;
+        long selectedPartitionId = -1;
+
+        for ( CatalogPartition catalogPartition : Catalog.getInstance().getPartitionsByTable( catalogTable.id ) ) {
+            if ( unboundPartitionId == -1 && catalogPartition.isUnbound ) {
+                unboundPartitionId = catalogPartition.id;
+                break;
+            }
+
+            int lowerBound = Integer.parseInt( catalogPartition.partitionQualifiers.get( 0 ) );
+            int upperBound = Integer.parseInt( catalogPartition.partitionQualifiers.get( 1 ) );
+            double numericValue = Double.parseDouble( columnValue );
+            if ( numericValue >= lowerBound && numericValue <= upperBound ) {
+                selectedPartitionId = catalogPartition.id;
+                break;
+            }
+        }
+
+        // If no concrete partition could be identified, report back the unbound/default partition
+        if ( selectedPartitionId == -1 ) {
+            selectedPartitionId = unboundPartitionId;
+        }
+        return selectedPartitionId;
+    }
+
+
+    private static long listPartition( CatalogTable catalogTable, String columnValue ) {
+        long unboundPartitionId = -1;
+        long selectedPartitionId = -1;
+
+        for ( CatalogPartition catalogPartition : Catalog.getInstance().getPartitionsByTable( catalogTable.id ) ) {
+            if ( unboundPartitionId == -1 && catalogPartition.isUnbound ) {
+                unboundPartitionId = catalogPartition.id;
+                break;
+            }
+
+            for ( int i = 0; i < catalogPartition.partitionQualifiers.size(); i++ ) {
+                if ( catalogPartition.partitionQualifiers.get( i ).equals( columnValue ) ) {
+                    selectedPartitionId = catalogPartition.id;
+                    break;
+                }
+            }
+        }
+
+        // If no concrete partition could be identified, report back the unbound/default partition
+        if ( selectedPartitionId == -1 ) {
+            selectedPartitionId = unboundPartitionId;
+        }
+        return selectedPartitionId;
+    }
+
+}
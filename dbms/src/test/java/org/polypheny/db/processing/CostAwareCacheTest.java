@@ -0,0 +1,163 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.processing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.cache.RemovalCause;
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import org.polypheny.db.processing.caching.CostAwareCache;
+
+
+public class CostAwareCacheTest {
+
+    // Small enough for Guava to use a single segment, which makes the eviction order deterministic
+    private static final long MAXIMUM_WEIGHT = 10;
+
+
+    private static CostAwareCache<Long, String> createCache() {
+        return new CostAwareCache<>( MAXIMUM_WEIGHT, 10, String::valueOf );
+    }
+
+
+    @Test
+    public void testTargetedInvalidation() {
+        CostAwareCache<Long, String> cache = createCache();
+        cache.put( 1L, "a", 1, 10, ImmutableList.of( 100L ) );
+        cache.put( 2L, "b", 1, 10, ImmutableList.of( 101L ) );
+        cache.put( 3L, "c", 1, 10, ImmutableList.of( 100L, 101L ) );
+        cache.put( 4L, "d", 1, 10, ImmutableList.of() );
+
+        // Entries with unknown dependencies are always invalidated
+        assertEquals( 3, cache.invalidate( ImmutableList.of( 100L ) ) );
+        assertNull( cache.getIfPresent( 1L ) );
+        assertEquals( "b", cache.getIfPresent( 2L ) );
+        assertNull( cache.getIfPresent( 3L ) );
+        assertNull( cache.getIfPresent( 4L ) );
+        assertEquals( 3, cache.getRemovals( RemovalCause.EXPLICIT ) );
+    }
+
+
+    @Test
+    public void testAdmission() {
+        CostAwareCache<Long, String> cache = createCache();
+        for ( long i = 0; i < MAXIMUM_WEIGHT; i++ ) {
+            cache.put( i, "v" + i, 1, 10, ImmutableList.of( i ) );
+        }
+        assertEquals( MAXIMUM_WEIGHT, cache.getWeightedSize() );
+
+        // A cheap entry which has never been requested must not replace resident entries
+        cache.put( 100L, "cheap", 1, 1, ImmutableList.of( 100L ) );
+        assertFalse( cache.isKeyPresent( 100L ) );
+        assertEquals( 1, cache.getRejected() );
+
+        // Entries requested before are admitted
+        cache.getIfPresent( 101L );
+        cache.getIfPresent( 101L );
+        cache.put( 101L, "frequent", 1, 1, ImmutableList.of( 101L ) );
+        assertTrue( cache.isKeyPresent( 101L ) );
+        assertEquals( 1, cache.getRemovals( RemovalCause.SIZE ) );
+
+        // As well as entries which are more expensive than the average resident entry
+        cache.put( 102L, "expensive", 1, 1000, ImmutableList.of( 102L ) );
+        assertTrue( cache.isKeyPresent( 102L ) );
+        assertEquals( MAXIMUM_WEIGHT, cache.getWeightedSize() );
+    }
+
+
+    @Test
+    public void testPinnedEntriesAreNotEvicted() {
+        CostAwareCache<Long, String> cache = createCache();
+        cache.put( 0L, "pinned", 1, 10, ImmutableList.of( 100L ) );
+        assertTrue( cache.pin( "0" ) );
+
+        for ( long i = 1; i <= 3 * MAXIMUM_WEIGHT; i++ ) {
+            cache.getIfPresent( i );
+            cache.getIfPresent( i );
+            cache.put( i, "v" + i, 1, 10, ImmutableList.of( 200L ) );
+        }
+        assertEquals( "pinned", cache.getIfPresent( 0L ) );
+        assertEquals( 1, cache.getPinnedSize() );
+
+        // Pinned entries are still invalidated by DDL statements
+        cache.invalidate( ImmutableList.of( 100L ) );
+        assertNull( cache.getIfPresent( 0L ) );
+        assertEquals( 0, cache.getPinnedSize() );
+        assertNotNull( cache.getIfPresent( 3 * MAXIMUM_WEIGHT ) );
+    }
+
+
+    @Test
+    public void testReplacedEntriesAreUnregistered() {
+        CostAwareCache<Long, String> cache = createCache();
+        cache.put( 1L, "a", 1, 10, ImmutableList.of( 100L ) );
+        cache.put( 1L, "b", 1, 10, ImmutableList.of( 101L ) );
+        assertFalse( cache.hasDependents( 100L ) );
+        assertEquals( 0, cache.invalidate( ImmutableList.of( 100L ) ) );
+        assertEquals( "b", cache.getIfPresent( 1L ) );
+
+        // Dependencies shared with the replacement stay registered
+        cache.put( 2L, "c", 1, 10, ImmutableList.of( 102L, 103L ) );
+        cache.put( 2L, "d", 1, 10, ImmutableList.of( 103L ) );
+        assertFalse( cache.hasDependents( 102L ) );
+        assertTrue( cache.hasDependents( 103L ) );
+
+        // A replaced entry with unknown dependencies is no longer invalidated by every DDL statement
+        cache.put( 3L, "e", 1, 10, ImmutableList.of() );
+        cache.put( 3L, "f", 1, 10, ImmutableList.of( 104L ) );
+        assertEquals( 0, cache.invalidate( ImmutableList.of( 999L ) ) );
+        assertEquals( "f", cache.getIfPresent( 3L ) );
+        assertEquals( 3, cache.getRemovals( RemovalCause.REPLACED ) );
+    }
+
+
+    @Test
+    public void testPinnedWeightIsBounded() {
+        CostAwareCache<Long, String> cache = createCache();
+        cache.put( 1L, "a", 3, 10, ImmutableList.of( 100L ) );
+        cache.put( 2L, "b", 3, 10, ImmutableList.of( 100L ) );
+        assertTrue( cache.pin( "1" ) );
+        try {
+            cache.pin( "2" );
+            fail( "Expected the pinned weight to be bounded" );
+        } catch ( IllegalStateException e ) {
+            // expected
+        }
+        assertEquals( 1, cache.getPinnedSize() );
+        assertEquals( 6, cache.getWeightedSize() );
+        assertEquals( "b", cache.getIfPresent( 2L ) );
+    }
+
+
+    @Test
+    public void testSavedTime() {
+        CostAwareCache<Long, String> cache = createCache();
+        cache.put( 1L, "a", 1, 1000, ImmutableList.of( 100L ) );
+        cache.getIfPresent( 1L );
+        cache.getIfPresent( 1L );
+        cache.getIfPresent( 2L );
+        assertEquals( 2000, cache.getSavedNanos() );
+    }
+
+}
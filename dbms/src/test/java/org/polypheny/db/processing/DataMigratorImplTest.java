@@ -0,0 +1,187 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.processing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.calcite.avatica.Meta.CursorFactory;
+import org.junit.Test;
+import org.polypheny.db.config.RuntimeConfig;
+import org.polypheny.db.processing.DataMigratorImpl.ColumnBatch;
+
+
+public class DataMigratorImplTest {
+
+
+    private static Iterator<Object> rows( Object... rows ) {
+        return Arrays.asList( rows ).iterator();
+    }
+
+
+    @Test
+    public void testColumnBatchFromArrays() {
+        Iterator<Object> source = rows(
+                new Object[]{ 1, "a", 10L },
+                new Object[]{ 2, "b", 20L },
+                new Object[]{ 3, "c", 30L } );
+        ColumnBatch batch = new ColumnBatch( CursorFactory.ARRAY, new int[]{ 2, 0 }, 2, false );
+
+        assertEquals( 2, batch.fill( source ) );
+        assertEquals( Arrays.asList( 10L, 20L ), batch.getColumn( 0 ) );
+        assertEquals( Arrays.asList( 1, 2 ), batch.getColumn( 1 ) );
+        assertEquals( Arrays.asList( Arrays.asList( 10L, 1 ), Arrays.asList( 20L, 2 ) ), batch.getRows() );
+
+        // The last batch is smaller than the capacity and does not contain values of the previous one
+        assertEquals( 1, batch.fill( source ) );
+        assertEquals( List.of( 30L ), batch.getColumn( 0 ) );
+        assertEquals( List.of( List.of( 30L, 3 ) ), batch.getRows() );
+
+        assertEquals( 0, batch.fill( source ) );
+        assertTrue( batch.getColumn( 1 ).isEmpty() );
+    }
+
+
+    @Test
+    public void testColumnBatchFromScalarsAndLists() {
+        ColumnBatch scalars = new ColumnBatch( CursorFactory.OBJECT, new int[]{ 0 }, 10, false );
+        assertEquals( 3, scalars.fill( rows( 1, 2, 3 ) ) );
+        assertEquals( Arrays.asList( 1, 2, 3 ), scalars.getColumn( 0 ) );
+
+        ColumnBatch lists = new ColumnBatch( CursorFactory.LIST, new int[]{ 1 }, 10, false );
+        assertEquals( 2, lists.fill( rows( Arrays.asList( 1, null ), Arrays.asList( 2, "x" ) ) ) );
+        assertEquals( Arrays.asList( null, "x" ), lists.getColumn( 0 ) );
+    }
+
+
+    @Test
+    public void testColumnBatchFillsMissingPositions() {
+        // Materialized views get a generated key which is not part of the source rows
+        ColumnBatch batch = new ColumnBatch( CursorFactory.ARRAY, new int[]{ 0, 1 }, 2, true );
+        assertEquals( 2, batch.fill( rows( new Object[]{ "a" }, new Object[]{ "b" } ) ) );
+        assertEquals( Arrays.asList( 0, 1 ), batch.getColumn( 1 ) );
+        assertEquals( 1, batch.fill( rows( new Object[]{ "c" } ) ) );
+        assertEquals( List.of( 2 ), batch.getColumn( 1 ) );
+
+        ColumnBatch strict = new ColumnBatch( CursorFactory.ARRAY, new int[]{ 1 }, 2, false );
+        try {
+            strict.fill( rows( new Object[]{ "a" } ) );
+            fail( "Expected a missing position to be rejected" );
+        } catch ( IndexOutOfBoundsException e ) {
+            // expected
+        }
+    }
+
+
+    @Test
+    public void testPartitionsAreCopiedConcurrently() {
+        int parallelism = RuntimeConfig.DATA_MIGRATOR_PARALLELISM.getInteger();
+        try {
+            RuntimeConfig.DATA_MIGRATOR_PARALLELISM.setInteger( 2 );
+            CountDownLatch started = new CountDownLatch( 2 );
+            AtomicInteger running = new AtomicInteger();
+            AtomicInteger maxRunning = new AtomicInteger();
+            List<Callable<Void>> workers = new ArrayList<>();
+            for ( int i = 0; i < 6; i++ ) {
+                workers.add( () -> {
+                    maxRunning.accumulateAndGet( running.incrementAndGet(), Math::max );
+                    started.countDown();
+                    // Only returns in time if two workers are running at the same time
+                    assertTrue( started.await( 10, TimeUnit.SECONDS ) );
+                    Thread.sleep( 10 );
+                    running.decrementAndGet();
+                    return null;
+                } );
+            }
+            DataMigratorImpl.executeInParallel( workers, new AtomicBoolean(), true );
+            assertEquals( 2, maxRunning.get() );
+        } finally {
+            RuntimeConfig.DATA_MIGRATOR_PARALLELISM.setInteger( parallelism );
+        }
+    }
+
+
+    @Test
+    public void testPartitionsAreCopiedSequentiallyWithoutConcurrentStatements() {
+        int parallelism = RuntimeConfig.DATA_MIGRATOR_PARALLELISM.getInteger();
+        try {
+            RuntimeConfig.DATA_MIGRATOR_PARALLELISM.setInteger( 4 );
+            Thread caller = Thread.currentThread();
+            List<Integer> order = new ArrayList<>();
+            List<Callable<Void>> workers = new ArrayList<>();
+            for ( int i = 0; i < 3; i++ ) {
+                int partition = i;
+                workers.add( () -> {
+                    assertEquals( caller, Thread.currentThread() );
+                    order.add( partition );
+                    return null;
+                } );
+            }
+            DataMigratorImpl.executeInParallel( workers, new AtomicBoolean(), false );
+            assertEquals( Arrays.asList( 0, 1, 2 ), order );
+        } finally {
+            RuntimeConfig.DATA_MIGRATOR_PARALLELISM.setInteger( parallelism );
+        }
+    }
+
+
+    @Test
+    public void testFailingPartitionCancelsTheOthers() {
+        int parallelism = RuntimeConfig.DATA_MIGRATOR_PARALLELISM.getInteger();
+        try {
+            RuntimeConfig.DATA_MIGRATOR_PARALLELISM.setInteger( 2 );
+            AtomicBoolean cancelled = new AtomicBoolean();
+            AtomicBoolean stopped = new AtomicBoolean();
+            List<Callable<Void>> workers = new ArrayList<>();
+            workers.add( () -> {
+                throw new IllegalStateException( "Partition failed" );
+            } );
+            workers.add( () -> {
+                // Stands for a copy which checks the flag before every batch
+                long deadline = System.currentTimeMillis() + 10_000;
+                while ( !cancelled.get() && System.currentTimeMillis() < deadline ) {
+                    Thread.sleep( 5 );
+                }
+                stopped.set( cancelled.get() );
+                return null;
+            } );
+            try {
+                DataMigratorImpl.executeInParallel( workers, cancelled, true );
+                fail( "Expected the failure of the partition to be rethrown" );
+            } catch ( IllegalStateException e ) {
+                assertEquals( "Partition failed", e.getMessage() );
+            }
+            assertTrue( cancelled.get() );
+            // The other worker has been awaited and stopped because of the cancellation
+            assertTrue( stopped.get() );
+        } finally {
+            RuntimeConfig.DATA_MIGRATOR_PARALLELISM.setInteger( parallelism );
+        }
+    }
+
+}
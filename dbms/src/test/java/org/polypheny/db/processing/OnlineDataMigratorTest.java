@@ -0,0 +1,320 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.processing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.ImmutableList;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.polypheny.db.AdapterTestSuite;
+import org.polypheny.db.TestHelper;
+import org.polypheny.db.TestHelper.JdbcConnection;
+import org.polypheny.db.catalog.Catalog;
+import org.polypheny.db.catalog.Catalog.DataPlacementRole;
+import org.polypheny.db.catalog.Catalog.Pattern;
+import org.polypheny.db.catalog.entity.CatalogAdapter;
+import org.polypheny.db.catalog.entity.CatalogPartitionPlacement;
+import org.polypheny.db.catalog.entity.CatalogTable;
+import org.polypheny.db.config.RuntimeConfig;
+import org.polypheny.db.excluded.CassandraExcluded;
+import org.polypheny.db.transaction.Transaction;
+
+
+@SuppressWarnings({ "SqlDialectInspection", "SqlNoDataSourceInspection" })
+@Category({ AdapterTestSuite.class, CassandraExcluded.class })
+public class OnlineDataMigratorTest {
+
+    private static final int ROWS = 100;
+
+    private boolean onlineDataMigration;
+    private int chunkSize;
+    private int rateLimit;
+
+
+    @BeforeClass
+    public static void start() {
+        // Ensures that Polypheny-DB is running
+        //noinspection ResultOfMethodCallIgnored
+        TestHelper.getInstance();
+    }
+
+
+    @Before
+    public void configure() {
+        onlineDataMigration = RuntimeConfig.ONLINE_DATA_MIGRATION.getBoolean();
+        chunkSize = RuntimeConfig.ONLINE_DATA_MIGRATION_CHUNK_SIZE.getInteger();
+        rateLimit = RuntimeConfig.ONLINE_DATA_MIGRATION_RATE_LIMIT.getInteger();
+        RuntimeConfig.ONLINE_DATA_MIGRATION.setBoolean( true );
+        RuntimeConfig.ONLINE_DATA_MIGRATION_CHUNK_SIZE.setInteger( 10 );
+    }
+
+
+    @After
+    public void restore() {
+        RuntimeConfig.ONLINE_DATA_MIGRATION.setBoolean( onlineDataMigration );
+        RuntimeConfig.ONLINE_DATA_MIGRATION_CHUNK_SIZE.setInteger( chunkSize );
+        RuntimeConfig.ONLINE_DATA_MIGRATION_RATE_LIMIT.setInteger( rateLimit );
+    }
+
+
+    @Test
+    public void chunkedBackfillUnderConcurrentDml() throws Exception {
+        // Slow down the migration, such that the statements below run while it is in progress
+        RuntimeConfig.ONLINE_DATA_MIGRATION_RATE_LIMIT.setInteger( 20 );
+
+        try ( JdbcConnection polyphenyDbConnection = new JdbcConnection( true ) ) {
+            Connection connection = polyphenyDbConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                createTable( statement );
+                try {
+                    statement.executeUpdate( "ALTER TABLE \"onlinemigratortest\" ADD PLACEMENT ON STORE \"store1\"" );
+                    CatalogTable table = getTable();
+                    assertTrue( OnlineDataMigrator.INSTANCE.isMigrating( table.id ) );
+                    assertRoles( table, DataPlacementRole.REFRESHABLE );
+
+                    // Writes reach the placement while it is filled, reads are served by the complete placement
+                    List<Object[]> expected = new ArrayList<>();
+                    for ( int i = 0; i < ROWS; i++ ) {
+                        if ( i >= 50 && i < 55 ) {
+                            continue;
+                        }
+                        expected.add( new Object[]{ i, i == 5 || i == 95 ? -1 : i * 2, "row" + i } );
+                    }
+                    for ( int i = 1000; i < 1010; i++ ) {
+                        expected.add( new Object[]{ i, i * 2, "row" + i } );
+                    }
+                    statement.executeUpdate( "INSERT INTO onlinemigratortest VALUES (1000, 2000, 'row1000'), (1001, 2002, 'row1001'), (1002, 2004, 'row1002'), (1003, 2006, 'row1003'), (1004, 2008, 'row1004')" );
+                    statement.executeUpdate( "UPDATE onlinemigratortest SET tinteger = -1 WHERE tprimary = 5 OR tprimary = 95" );
+                    statement.executeUpdate( "DELETE FROM onlinemigratortest WHERE tprimary >= 50 AND tprimary < 55" );
+                    statement.executeUpdate( "INSERT INTO onlinemigratortest VALUES (1005, 2010, 'row1005'), (1006, 2012, 'row1006'), (1007, 2014, 'row1007'), (1008, 2016, 'row1008'), (1009, 2018, 'row1009')" );
+                    TestHelper.checkResultSet( statement.executeQuery( "SELECT * FROM onlinemigratortest ORDER BY tprimary" ), expected );
+
+                    // The placement cannot be changed while it is filled
+                    if ( OnlineDataMigrator.INSTANCE.isMigrating( table.id ) ) {
+                        try {
+                            statement.executeUpdate( "ALTER TABLE \"onlinemigratortest\" DROP PLACEMENT ON STORE \"store1\"" );
+                            fail( "Placement dropped during an online migration" );
+                        } catch ( SQLException e ) {
+                            // Expected
+                        }
+                    }
+
+                    // Cutover
+                    awaitMigration( table );
+                    assertRoles( table, DataPlacementRole.UPTODATE );
+
+                    // The new placement holds all rows
+                    statement.executeUpdate( "ALTER TABLE \"onlinemigratortest\" DROP PLACEMENT ON STORE \"hsqldb\"" );
+                    TestHelper.checkResultSet( statement.executeQuery( "SELECT * FROM onlinemigratortest ORDER BY tprimary" ), expected );
+                } finally {
+                    dropTable( statement );
+                }
+            }
+        }
+    }
+
+
+    @Test
+    public void failedMigrationRemovesPlacement() throws Exception {
+        try ( JdbcConnection polyphenyDbConnection = new JdbcConnection( true ) ) {
+            Connection connection = polyphenyDbConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                createTable( statement );
+                try {
+                    statement.executeUpdate( "ALTER TABLE \"onlinemigratortest\" ADD PLACEMENT ON STORE \"store1\"" );
+                    CatalogTable table = getTable();
+                    awaitMigration( table );
+
+                    // Pretend that the placement is still filled by a migration which fails
+                    CatalogAdapter store = Catalog.getInstance().getAdapter( "store1" );
+                    setRole( table, store, DataPlacementRole.REFRESHABLE );
+                    OnlineDataMigrator.INSTANCE.schedule( table, store, List.of( -1L ) );
+                    awaitMigration( table );
+
+                    assertFalse( Catalog.getInstance().getTable( table.id ).dataPlacements.contains( store.id ) );
+                    TestHelper.checkResultSet( statement.executeQuery( "SELECT COUNT(*) FROM onlinemigratortest" ), ImmutableList.of( new Object[]{ (long) ROWS } ) );
+                } finally {
+                    dropTable( statement );
+                }
+            }
+        }
+    }
+
+
+    @Test
+    public void restoreInterruptedMigrations() throws Exception {
+        try ( JdbcConnection polyphenyDbConnection = new JdbcConnection( true ) ) {
+            Connection connection = polyphenyDbConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                createTable( statement );
+                try {
+                    statement.executeUpdate( "ALTER TABLE \"onlinemigratortest\" ADD PLACEMENT ON STORE \"store1\"" );
+                    CatalogTable table = getTable();
+                    awaitMigration( table );
+
+                    // Placements which are still refreshable at startup belong to an interrupted migration
+                    CatalogAdapter store = Catalog.getInstance().getAdapter( "store1" );
+                    setRole( table, store, DataPlacementRole.REFRESHABLE );
+                    RuntimeConfig.ONLINE_DATA_MIGRATION_RATE_LIMIT.setInteger( 20 );
+                    OnlineDataMigrator.INSTANCE.restoreMigrations();
+                    assertTrue( OnlineDataMigrator.INSTANCE.isMigrating( table.id ) );
+
+                    awaitMigration( table );
+                    assertRoles( table, DataPlacementRole.UPTODATE );
+
+                    statement.executeUpdate( "ALTER TABLE \"onlinemigratortest\" DROP PLACEMENT ON STORE \"hsqldb\"" );
+                    TestHelper.checkResultSet( statement.executeQuery( "SELECT COUNT(*) FROM onlinemigratortest" ), ImmutableList.of( new Object[]{ (long) ROWS } ) );
+                } finally {
+                    dropTable( statement );
+                }
+            }
+        }
+    }
+
+
+    @Test
+    public void copyDataChunk() throws Exception {
+        RuntimeConfig.ONLINE_DATA_MIGRATION.setBoolean( false );
+
+        try ( JdbcConnection polyphenyDbConnection = new JdbcConnection( true ) ) {
+            Connection connection = polyphenyDbConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                statement.executeUpdate( "CREATE TABLE onlinemigratortest( "
+                        + "ta INTEGER NOT NULL, "
+                        + "tb INTEGER NOT NULL, "
+                        + "tvarchar VARCHAR(20) NULL, "
+                        + "PRIMARY KEY (ta, tb) )" );
+                statement.executeUpdate( "ALTER ADAPTERS ADD \"store1\" USING 'Hsqldb' AS 'Store'"
+                        + " WITH '{maxConnections:\"25\",trxControlMode:locks,trxIsolationLevel:read_committed,type:Memory,tableType:Memory,mode:embedded}'" );
+                try {
+                    List<List<Object>> expected = new ArrayList<>();
+                    for ( int a = 0; a < 5; a++ ) {
+                        for ( int b = 0; b < 5; b++ ) {
+                            // Leave gaps in the key space
+                            if ( (a + b) % 7 == 3 ) {
+                                continue;
+                            }
+                            // Not inserted in key order
+                            statement.executeUpdate( "INSERT INTO onlinemigratortest VALUES (" + (4 - a) + ", " + (4 - b) + ", 'foo')" );
+                            expected.add( List.of( 4 - a, 4 - b ) );
+                        }
+                    }
+                    expected.sort( ( k1, k2 ) -> k1.get( 0 ).equals( k2.get( 0 ) )
+                            ? Integer.compare( (Integer) k1.get( 1 ), (Integer) k2.get( 1 ) )
+                            : Integer.compare( (Integer) k1.get( 0 ), (Integer) k2.get( 0 ) ) );
+                    statement.executeUpdate( "ALTER TABLE \"onlinemigratortest\" ADD PLACEMENT ON STORE \"store1\"" );
+
+                    // Copying the chunks again replaces the rows on the placement
+                    CatalogTable table = getTable();
+                    CatalogAdapter store = Catalog.getInstance().getAdapter( "store1" );
+                    Transaction transaction = TestHelper.getInstance().getTransaction();
+                    List<List<Object>> copied = new ArrayList<>();
+                    List<Object> lastPrimaryKey = null;
+                    while ( true ) {
+                        List<List<Object>> primaryKeys = transaction.getDataMigrator().copyDataChunk(
+                                transaction,
+                                store,
+                                Catalog.getInstance().getColumns( table.id ),
+                                table.partitionProperty.partitionIds.get( 0 ),
+                                lastPrimaryKey,
+                                4 );
+                        assertTrue( primaryKeys.size() <= 4 );
+                        copied.addAll( primaryKeys );
+                        if ( primaryKeys.size() < 4 ) {
+                            break;
+                        }
+                        lastPrimaryKey = primaryKeys.get( primaryKeys.size() - 1 );
+                    }
+                    transaction.commit();
+                    assertEquals( expected, copied );
+
+                    statement.executeUpdate( "ALTER TABLE \"onlinemigratortest\" DROP PLACEMENT ON STORE \"hsqldb\"" );
+                    TestHelper.checkResultSet( statement.executeQuery( "SELECT COUNT(*) FROM onlinemigratortest" ), ImmutableList.of( new Object[]{ (long) expected.size() } ) );
+                } finally {
+                    dropTable( statement );
+                }
+            }
+        }
+    }
+
+
+    private static void createTable( Statement statement ) throws SQLException {
+        statement.executeUpdate( "CREATE TABLE onlinemigratortest( "
+                + "tprimary INTEGER NOT NULL, "
+                + "tinteger INTEGER NULL, "
+                + "tvarchar VARCHAR(20) NULL, "
+                + "PRIMARY KEY (tprimary) )" );
+        statement.executeUpdate( "ALTER ADAPTERS ADD \"store1\" USING 'Hsqldb' AS 'Store'"
+                + " WITH '{maxConnections:\"25\",trxControlMode:locks,trxIsolationLevel:read_committed,type:Memory,tableType:Memory,mode:embedded}'" );
+        StringBuilder values = new StringBuilder();
+        for ( int i = 0; i < ROWS; i++ ) {
+            values.append( i == 0 ? "" : ", " ).append( "(" ).append( i ).append( ", " ).append( i * 2 ).append( ", 'row" ).append( i ).append( "')" );
+        }
+        statement.executeUpdate( "INSERT INTO onlinemigratortest VALUES " + values );
+    }
+
+
+    private static void dropTable( Statement statement ) throws Exception {
+        awaitMigration( getTable() );
+        statement.executeUpdate( "DROP TABLE onlinemigratortest" );
+        statement.executeUpdate( "ALTER ADAPTERS DROP \"store1\"" );
+    }
+
+
+    private static CatalogTable getTable() {
+        return Catalog.getInstance().getTables( null, null, new Pattern( "onlinemigratortest" ) ).get( 0 );
+    }
+
+
+    private static void awaitMigration( CatalogTable table ) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 60_000;
+        while ( OnlineDataMigrator.INSTANCE.isMigrating( table.id ) ) {
+            assertTrue( "The online migration has not finished in time", System.currentTimeMillis() < deadline );
+            Thread.sleep( 50 );
+        }
+    }
+
+
+    private static void assertRoles( CatalogTable table, DataPlacementRole role ) throws Exception {
+        CatalogAdapter store = Catalog.getInstance().getAdapter( "store1" );
+        List<CatalogPartitionPlacement> placements = Catalog.getInstance().getPartitionPlacementsByTableOnAdapter( store.id, table.id );
+        assertFalse( placements.isEmpty() );
+        for ( CatalogPartitionPlacement placement : placements ) {
+            assertEquals( role, placement.role );
+        }
+    }
+
+
+    private static void setRole( CatalogTable table, CatalogAdapter store, DataPlacementRole role ) {
+        for ( CatalogPartitionPlacement placement : Catalog.getInstance().getPartitionPlacementsByTableOnAdapter( store.id, table.id ) ) {
+            Catalog.getInstance().updatePartitionPlacementRole( store.id, placement.partitionId, role );
+        }
+    }
+
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.processing;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.polypheny.db.AdapterTestSuite;
+import org.polypheny.db.TestHelper;
+import org.polypheny.db.TestHelper.JdbcConnection;
+import org.polypheny.db.algebra.AlgNode;
+import org.polypheny.db.algebra.constant.SemiJoinType;
+import org.polypheny.db.algebra.core.CorrelationId;
+import org.polypheny.db.algebra.logical.relational.LogicalCorrelate;
+import org.polypheny.db.algebra.logical.relational.LogicalFilter;
+import org.polypheny.db.algebra.logical.relational.LogicalUnion;
+import org.polypheny.db.algebra.logical.relational.LogicalValues;
+import org.polypheny.db.algebra.type.AlgDataTypeSystem;
+import org.polypheny.db.config.RuntimeConfig;
+import org.polypheny.db.excluded.CassandraExcluded;
+import org.polypheny.db.plan.AlgOptCluster;
+import org.polypheny.db.plan.volcano.VolcanoPlanner;
+import org.polypheny.db.rex.RexBuilder;
+import org.polypheny.db.rex.RexSubQuery;
+import org.polypheny.db.routing.RouterPlanSelectionStrategy;
+import org.polypheny.db.routing.RoutingManager;
+import org.polypheny.db.type.PolyTypeFactoryImpl;
+import org.polypheny.db.util.ImmutableBitSet;
+
+
+@SuppressWarnings({ "SqlDialectInspection", "SqlNoDataSourceInspection" })
+@Category({ AdapterTestSuite.class, CassandraExcluded.class })
+public class PlanPreparationTest {
+
+    @BeforeClass
+    public static void start() {
+        // Ensures that Polypheny-DB is running
+        //noinspection ResultOfMethodCallIgnored
+        TestHelper.getInstance();
+    }
+
+
+    @Test
+    public void dominatedPlans() {
+        assertTrue( AbstractQueryProcessor.isDominated( 2.0, 1.0 ) );
+        assertFalse( AbstractQueryProcessor.isDominated( 1.0, 1.0 ) );
+        assertFalse( AbstractQueryProcessor.isDominated( 1.0, 2.0 ) );
+
+        // Plans without costs and plans compared to no costs at all are never dominated
+        assertFalse( AbstractQueryProcessor.isDominated( Double.NaN, 1.0 ) );
+        assertFalse( AbstractQueryProcessor.isDominated( 2.0, Double.POSITIVE_INFINITY ) );
+        assertFalse( AbstractQueryProcessor.isDominated( Double.POSITIVE_INFINITY, 1.0 ) );
+    }
+
+
+    @Test
+    public void rebindablePlans() {
+        AlgOptCluster cluster = createCluster();
+        AlgNode values = LogicalValues.createOneRow( cluster );
+
+        assertTrue( AbstractQueryProcessor.isRebindable( List.of( values, LogicalValues.createOneRow( cluster ) ) ) );
+        assertTrue( AbstractQueryProcessor.isRebindable( List.of( LogicalUnion.create( List.of( values, values ), true ) ) ) );
+
+        // Plans sharing nodes cannot be moved to clusters of their own
+        assertFalse( AbstractQueryProcessor.isRebindable( List.of( values, LogicalUnion.create( List.of( values, LogicalValues.createOneRow( cluster ) ), true ) ) ) );
+
+        // Neither can plans containing correlations or sub-queries
+        AlgNode correlate = LogicalCorrelate.create(
+                LogicalValues.createOneRow( cluster ),
+                LogicalValues.createOneRow( cluster ),
+                new CorrelationId( 0 ),
+                ImmutableBitSet.of( 0 ),
+                SemiJoinType.INNER );
+        assertFalse( AbstractQueryProcessor.isRebindable( List.of( correlate, LogicalValues.createOneRow( cluster ) ) ) );
+
+        AlgNode filter = LogicalFilter.create(
+                LogicalValues.createOneRow( cluster ),
+                RexSubQuery.exists( LogicalValues.createOneRow( cluster ) ) );
+        assertFalse( AbstractQueryProcessor.isRebindable( List.of( filter, LogicalValues.createOneRow( cluster ) ) ) );
+    }
+
+
+    @Test
+    public void concurrentPreparation() throws SQLException {
+        concurrentPreparation( RouterPlanSelectionStrategy.BEST, 0 );
+    }
+
+
+    @Test
+    public void concurrentPreparationWithoutPruning() throws SQLException {
+        concurrentPreparation( RouterPlanSelectionStrategy.PROBABILITY, 0.5 );
+    }
+
+
+    private void concurrentPreparation( RouterPlanSelectionStrategy strategy, double preCostPostCostRatio ) throws SQLException {
+        boolean parallelPlanPreparation = RuntimeConfig.PARALLEL_PLAN_PREPARATION.getBoolean();
+        boolean queryPlanCaching = RuntimeConfig.QUERY_PLAN_CACHING.getBoolean();
+        boolean implementationCaching = RuntimeConfig.IMPLEMENTATION_CACHING.getBoolean();
+        boolean routingPlanCaching = RuntimeConfig.ROUTING_PLAN_CACHING.getBoolean();
+        Enum<?> planSelectionStrategy = RoutingManager.PLAN_SELECTION_STRATEGY.getEnum();
+        double ratio = RoutingManager.PRE_COST_POST_COST_RATIO.getDouble();
+
+        try ( JdbcConnection polyphenyDbConnection = new JdbcConnection( true ) ) {
+            Connection connection = polyphenyDbConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                statement.executeUpdate( "CREATE TABLE planpreparationtest( "
+                        + "tprimary INTEGER NOT NULL, "
+                        + "tinteger INTEGER NULL, "
+                        + "tvarchar VARCHAR(20) NULL, "
+                        + "PRIMARY KEY (tprimary) )" );
+
+                try {
+                    statement.executeUpdate( "INSERT INTO planpreparationtest VALUES (1, 10, 'foo'), (2, 20, 'bar'), (3, 30, 'foobar')" );
+
+                    // A second placement lets the routers propose several plans for every query
+                    statement.executeUpdate( "ALTER ADAPTERS ADD \"store1\" USING 'Hsqldb' AS 'Store'"
+                            + " WITH '{maxConnections:\"25\",trxControlMode:locks,trxIsolationLevel:read_committed,type:Memory,tableType:Memory,mode:embedded}'" );
+                    statement.executeUpdate( "ALTER TABLE \"planpreparationtest\" ADD PLACEMENT ON STORE \"store1\"" );
+
+                    // Every query has to be planned and implemented
+                    RuntimeConfig.PARALLEL_PLAN_PREPARATION.setBoolean( true );
+                    RuntimeConfig.QUERY_PLAN_CACHING.setBoolean( false );
+                    RuntimeConfig.IMPLEMENTATION_CACHING.setBoolean( false );
+                    RuntimeConfig.ROUTING_PLAN_CACHING.setBoolean( false );
+                    RoutingManager.PLAN_SELECTION_STRATEGY.setEnum( strategy );
+                    RoutingManager.PRE_COST_POST_COST_RATIO.setDouble( preCostPostCostRatio );
+
+                    long taskCount = PlannerPool.INSTANCE.getTaskCount();
+                    for ( int i = 0; i < 5; i++ ) {
+                        TestHelper.checkResultSet(
+                                statement.executeQuery( "SELECT tprimary, tvarchar FROM planpreparationtest WHERE tinteger > 10 ORDER BY tprimary" ),
+                                ImmutableList.of(
+                                        new Object[]{ 2, "bar" },
+                                        new Object[]{ 3, "foobar" } ) );
+                        TestHelper.checkResultSet(
+                                statement.executeQuery( "SELECT COUNT(*) FROM planpreparationtest WHERE tvarchar LIKE 'foo%'" ),
+                                ImmutableList.of( new Object[]{ 2L } ) );
+                    }
+                    assertTrue( PlannerPool.INSTANCE.getTaskCount() > taskCount );
+
+                    // Plans with sub-queries are prepared sequentially and return the same results
+                    TestHelper.checkResultSet(
+                            statement.executeQuery( "SELECT tprimary FROM planpreparationtest WHERE tinteger = (SELECT MAX(tinteger) FROM planpreparationtest)" ),
+                            ImmutableList.of( new Object[]{ 3 } ) );
+                } finally {
+                    RuntimeConfig.PARALLEL_PLAN_PREPARATION.setBoolean( parallelPlanPreparation );
+                    RuntimeConfig.QUERY_PLAN_CACHING.setBoolean( queryPlanCaching );
+                    RuntimeConfig.IMPLEMENTATION_CACHING.setBoolean( implementationCaching );
+                    RuntimeConfig.ROUTING_PLAN_CACHING.setBoolean( routingPlanCaching );
+                    RoutingManager.PLAN_SELECTION_STRATEGY.setEnum( planSelectionStrategy );
+                    RoutingManager.PRE_COST_POST_COST_RATIO.setDouble( ratio );
+
+                    // Drop table and store
+                    statement.executeUpdate( "DROP TABLE planpreparationtest" );
+                    statement.executeUpdate( "ALTER ADAPTERS DROP \"store1\"" );
+                }
+            }
+        }
+    }
+
+
+    private static AlgOptCluster createCluster() {
+        return AlgOptCluster.create( new VolcanoPlanner(), new RexBuilder( new PolyTypeFactoryImpl( AlgDataTypeSystem.DEFAULT ) ) );
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.processing;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.polypheny.db.AdapterTestSuite;
+import org.polypheny.db.TestHelper;
+import org.polypheny.db.TestHelper.JdbcConnection;
+import org.polypheny.db.catalog.Catalog;
+import org.polypheny.db.catalog.Catalog.Pattern;
+import org.polypheny.db.catalog.entity.CatalogTable;
+import org.polypheny.db.excluded.CassandraExcluded;
+import org.polypheny.db.processing.caching.RoutingPlanCache;
+
+
+@SuppressWarnings({ "SqlDialectInspection", "SqlNoDataSourceInspection" })
+@Category({ AdapterTestSuite.class, CassandraExcluded.class })
+public class RoutingPlanCacheTest {
+
+    @BeforeClass
+    public static void start() {
+        // Ensures that Polypheny-DB is running
+        //noinspection ResultOfMethodCallIgnored
+        TestHelper.getInstance();
+    }
+
+
+    @Test
+    public void placementChangeInvalidatesRoutingPlans() throws SQLException {
+        try ( JdbcConnection polyphenyDbConnection = new JdbcConnection( true ) ) {
+            Connection connection = polyphenyDbConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                statement.executeUpdate( "CREATE TABLE routingplancachetest( "
+                        + "tprimary INTEGER NOT NULL, "
+                        + "tvarchar VARCHAR(20) NULL, "
+                        + "PRIMARY KEY (tprimary) )" );
+
+                try {
+                    statement.executeUpdate( "INSERT INTO routingplancachetest VALUES (1,'foo')" );
+                    connection.commit();
+
+                    CatalogTable table = Catalog.getInstance().getTables( null, null, new Pattern( "routingplancachetest" ) ).get( 0 );
+
+                    TestHelper.checkResultSet(
+                            statement.executeQuery( "SELECT * FROM routingplancachetest" ),
+                            ImmutableList.of( new Object[]{ 1, "foo" } ) );
+                    assertTrue( RoutingPlanCache.INSTANCE.isCached( table.id ) );
+
+                    // Add data store
+                    statement.executeUpdate( "ALTER ADAPTERS ADD \"store1\" USING 'Hsqldb' AS 'Store'"
+                            + " WITH '{maxConnections:\"25\",trxControlMode:locks,trxIsolationLevel:read_committed,type:Memory,tableType:Memory,mode:embedded}'" );
+                    connection.commit();
+
+                    // Adding a placement evicts the cached routing plans of the table
+                    statement.executeUpdate( "ALTER TABLE \"routingplancachetest\" ADD PLACEMENT ON STORE \"store1\"" );
+                    connection.commit();
+                    assertFalse( RoutingPlanCache.INSTANCE.isCached( table.id ) );
+
+                    TestHelper.checkResultSet(
+                            statement.executeQuery( "SELECT * FROM routingplancachetest" ),
+                            ImmutableList.of( new Object[]{ 1, "foo" } ) );
+                    assertTrue( RoutingPlanCache.INSTANCE.isCached( table.id ) );
+
+                    // So does dropping one
+                    statement.executeUpdate( "ALTER TABLE \"routingplancachetest\" DROP PLACEMENT ON STORE \"hsqldb\"" );
+                    connection.commit();
+                    assertFalse( RoutingPlanCache.INSTANCE.isCached( table.id ) );
+                } finally {
+                    // Drop table and store
+                    statement.executeUpdate( "DROP TABLE routingplancachetest" );
+                    statement.executeUpdate( "ALTER ADAPTERS DROP \"store1\"" );
+                }
+            }
+        }
+    }
+
+}
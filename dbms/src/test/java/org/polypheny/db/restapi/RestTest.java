@@ -243,6 +243,37 @@ public void testOperations() {
     }
 
 
+    @Test
+    @Category({ CassandraExcluded.class })
+    public void testStreamedNdjson() {
+        JsonObject first = getTestRow( 10 );
+        first.add( "restschema.resttest.tinteger", new JsonPrimitive( 1 ) );
+        JsonObject second = getTestRow( 20 );
+        second.add( "restschema.resttest.tinteger", new JsonPrimitive( 2 ) );
+        HttpRequest<?> request = buildRestInsert( "restschema.resttest", ImmutableList.of( first, second ) );
+        Assert.assertEquals(
+                "{\"result\":[{\"ROWCOUNT\":2}],\"size\":2}",
+                executeRest( request ).getBody() );
+
+        try {
+            request = Unirest.get( "{protocol}://{host}:{port}/restapi/v1/res/restschema.resttest" )
+                    .header( "Accept", "application/x-ndjson" )
+                    .queryString( "_project", "restschema.resttest.tsmallint" )
+                    .queryString( "_sort", "restschema.resttest.tsmallint@ASC" );
+            HttpResponse<String> response = executeRest( request );
+            Assert.assertTrue( response.getHeaders().getFirst( "Content-Type" ).startsWith( "application/x-ndjson" ) );
+            String[] lines = response.getBody().split( "\n" );
+            Assert.assertEquals( 2, lines.length );
+            Assert.assertEquals( JsonParser.parseString( "{\"restschema.resttest.tsmallint\":55}" ), JsonParser.parseString( lines[0] ) );
+            Assert.assertEquals( JsonParser.parseString( "{\"restschema.resttest.tsmallint\":65}" ), JsonParser.parseString( lines[1] ) );
+        } finally {
+            Map<String, String> where = new LinkedHashMap<>();
+            where.put( "restschema.resttest.tvarchar", "=" + "hallo" );
+            executeRest( buildRestDelete( "restschema.resttest", where ) );
+        }
+    }
+
+
     private JsonObject getTestRow() {
         return getTestRow( 0 );
     }
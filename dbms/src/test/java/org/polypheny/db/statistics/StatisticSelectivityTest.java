@@ -0,0 +1,202 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.statistics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.StringJoiner;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.polypheny.db.StatisticsManager;
+import org.polypheny.db.TestHelper;
+import org.polypheny.db.TestHelper.JdbcConnection;
+import org.polypheny.db.algebra.AlgNode;
+import org.polypheny.db.algebra.core.Join;
+import org.polypheny.db.algebra.core.JoinAlgType;
+import org.polypheny.db.algebra.metadata.AlgMetadataQuery;
+import org.polypheny.db.algebra.operators.OperatorName;
+import org.polypheny.db.catalog.Catalog;
+import org.polypheny.db.catalog.entity.CatalogTable;
+import org.polypheny.db.languages.OperatorRegistry;
+import org.polypheny.db.rex.RexNode;
+import org.polypheny.db.tools.AlgBuilder;
+import org.polypheny.db.transaction.Transaction;
+import org.polypheny.db.transaction.TransactionException;
+import org.polypheny.db.util.ImmutableBitSet;
+
+
+/**
+ * Tests the estimation of selectivities and distinct counts during planning from the column statistics.
+ */
+@SuppressWarnings({ "SqlDialectInspection", "SqlNoDataSourceInspection" })
+@Slf4j
+public class StatisticSelectivityTest {
+
+    private static final int ROWS = 400;
+    private static final double DELTA = 0.05;
+
+    private static long tableId;
+    private static long groupColumnId;
+    private static long nameColumnId;
+
+
+    @BeforeClass
+    public static void start() throws Exception {
+        // Ensures that Polypheny-DB is running
+        //noinspection ResultOfMethodCallIgnored
+        TestHelper.getInstance();
+        try ( JdbcConnection jdbcConnection = new JdbcConnection( false ) ) {
+            Connection connection = jdbcConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                statement.executeUpdate( "CREATE SCHEMA selectivityschema" );
+                statement.executeUpdate( "CREATE TABLE selectivityschema.sel( id INTEGER NOT NULL, grp INTEGER NOT NULL, name VARCHAR(20), PRIMARY KEY (id) )" );
+                // Four groups of equal size, every tenth name is null
+                StringJoiner values = new StringJoiner( ", " );
+                for ( int i = 0; i < ROWS; i++ ) {
+                    values.add( "(" + i + ", " + (i % 4) + ", " + (i % 10 == 0 ? "NULL" : "'name" + (i % 2) + "'") + ")" );
+                }
+                statement.executeUpdate( "INSERT INTO selectivityschema.sel VALUES " + values );
+                connection.commit();
+            }
+        }
+        Catalog catalog = Catalog.getInstance();
+        CatalogTable table = catalog.getTable( "APP", "selectivityschema", "sel" );
+        tableId = table.id;
+        groupColumnId = catalog.getColumn( tableId, "grp" ).id;
+        nameColumnId = catalog.getColumn( tableId, "name" ).id;
+        awaitStatistics( 120 );
+    }
+
+
+    @AfterClass
+    public static void end() {
+        try ( JdbcConnection jdbcConnection = new JdbcConnection( false ) ) {
+            Connection connection = jdbcConnection.getConnection();
+            try ( Statement statement = connection.createStatement() ) {
+                statement.executeUpdate( "DROP TABLE IF EXISTS selectivityschema.sel" );
+                statement.executeUpdate( "DROP SCHEMA selectivityschema" );
+                connection.commit();
+            }
+        } catch ( SQLException e ) {
+            log.error( "Exception while dropping test data", e );
+        }
+    }
+
+
+    /**
+     * The statistics are updated asynchronously by the monitoring.
+     */
+    private static void awaitStatistics( int maxSeconds ) throws InterruptedException {
+        StatisticsManager statistics = StatisticsManager.getInstance();
+        for ( int i = 0; i < maxSeconds; i++ ) {
+            Integer rowCount = statistics.rowCountPerTable( tableId );
+            if ( rowCount != null && rowCount == ROWS
+                    && statistics.getDistinctCount( tableId, groupColumnId ) != null
+                    && statistics.getNullFraction( tableId, nameColumnId ) != null ) {
+                return;
+            }
+            Thread.sleep( 1000 );
+        }
+        fail( "The column statistics have not been collected in time." );
+    }
+
+
+    @Test
+    public void testStatisticsEstimates() {
+        StatisticsManager statistics = StatisticsManager.getInstance();
+        assertEquals( 4, statistics.getDistinctCount( tableId, groupColumnId ), 0.5 );
+        assertEquals( 0.25, statistics.getEqualitySelectivity( tableId, groupColumnId, BigDecimal.ONE ), DELTA );
+        assertEquals( 0.5, statistics.getRangeSelectivity( tableId, groupColumnId, BigDecimal.ONE ), 0.1 );
+        assertEquals( 0.5, statistics.getEqualitySelectivity( tableId, nameColumnId, "name1" ), DELTA );
+        assertEquals( 0.1, statistics.getNullFraction( tableId, nameColumnId ), DELTA );
+    }
+
+
+    @Test
+    public void testScanSelectivity() throws TransactionException {
+        Transaction transaction = TestHelper.getInstance().getTransaction();
+        try {
+            AlgBuilder builder = AlgBuilder.create( transaction.createStatement() ).scan( "selectivityschema", "sel" );
+            RexNode equals = builder.equals( builder.field( "grp" ), builder.literal( 1 ) );
+            RexNode lessThan = builder.call( OperatorRegistry.get( OperatorName.LESS_THAN ), builder.field( "grp" ), builder.literal( 1 ) );
+            RexNode isNull = builder.isNull( builder.field( "name" ) );
+            RexNode isNotNull = builder.call( OperatorRegistry.get( OperatorName.IS_NOT_NULL ), builder.field( "name" ) );
+            AlgNode scan = builder.build();
+            AlgMetadataQuery mq = scan.getCluster().getMetadataQuery();
+
+            // Without statistics these would be guessed as 0.15, 0.5, 0.25 and 0.9
+            assertEquals( 0.25, mq.getSelectivity( scan, equals ), DELTA );
+            assertEquals( 0.25, mq.getSelectivity( scan, lessThan ), 0.1 );
+            assertEquals( 0.1, mq.getSelectivity( scan, isNull ), DELTA );
+            assertEquals( 0.9, mq.getSelectivity( scan, isNotNull ), DELTA );
+            assertEquals( 0.025, mq.getSelectivity( scan, builder.getRexBuilder().makeCall( OperatorRegistry.get( OperatorName.AND ), equals, isNull ) ), DELTA );
+
+            assertEquals( 4, mq.getDistinctRowCount( scan, ImmutableBitSet.of( 1 ), null ), 0.5 );
+        } finally {
+            transaction.rollback();
+        }
+    }
+
+
+    @Test
+    public void testJoinSelectivity() throws TransactionException {
+        Transaction transaction = TestHelper.getInstance().getTransaction();
+        try {
+            AlgBuilder builder = AlgBuilder.create( transaction.createStatement() );
+            builder.scan( "selectivityschema", "sel" ).scan( "selectivityschema", "sel" );
+            builder.join( JoinAlgType.INNER, builder.equals( builder.field( 2, 0, "grp" ), builder.field( 2, 1, "grp" ) ) );
+            AlgNode join = builder.build();
+            assertEquals( 0.25, join.getCluster().getMetadataQuery().getSelectivity( join, ((Join) join).getCondition() ), DELTA );
+        } finally {
+            transaction.rollback();
+        }
+    }
+
+
+    @Test
+    public void testSketchNotCoveringTable() throws TransactionException {
+        StatisticsManager statistics = StatisticsManager.getInstance();
+        Transaction transaction = TestHelper.getInstance().getTransaction();
+        // Pretend that the table contained many rows before the tracking started
+        statistics.updateRowCountPerTable( tableId, 1_000_000, "SET-ROW-COUNT" );
+        try {
+            assertNull( statistics.getEqualitySelectivity( tableId, groupColumnId, BigDecimal.ONE ) );
+            assertNull( statistics.getRangeSelectivity( tableId, groupColumnId, BigDecimal.ONE ) );
+            assertNull( statistics.getNullFraction( tableId, nameColumnId ) );
+
+            AlgBuilder builder = AlgBuilder.create( transaction.createStatement() ).scan( "selectivityschema", "sel" );
+            RexNode equals = builder.equals( builder.field( "grp" ), builder.literal( 1 ) );
+            AlgNode scan = builder.build();
+            // Falls back to the guess
+            assertEquals( 0.15, scan.getCluster().getMetadataQuery().getSelectivity( scan, equals ), 0.0 );
+        } finally {
+            statistics.updateRowCountPerTable( tableId, ROWS, "SET-ROW-COUNT" );
+            transaction.rollback();
+        }
+        assertNotNull( statistics.getEqualitySelectivity( tableId, groupColumnId, BigDecimal.ONE ) );
+    }
+
+}
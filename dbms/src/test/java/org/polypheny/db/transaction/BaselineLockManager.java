@@ -0,0 +1,333 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.transaction;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import lombok.NonNull;
+import org.polypheny.db.transaction.EntityAccessMap.EntityIdentifier;
+import org.polypheny.db.transaction.Lock.LockMode;
+import org.polypheny.db.transaction.Transaction.AccessMode;
+import org.polypheny.db.util.DeadlockException;
+
+
+/**
+ * Copy of the lock manager as it was before the CAS fast path, the intention locks and the incremental deadlock
+ * detection were added: one fair lock with a condition per entity and a wait-for graph which is searched on every wait.
+ * Only used as the baseline of the lock throughput benchmarks. The locks of a transaction are kept in a
+ * {@link BaselineTransaction} instead of the {@link TransactionImpl}, the code is otherwise unchanged.
+ */
+class BaselineLockManager {
+
+    private final ConcurrentHashMap<EntityIdentifier, BaselineLock> lockTable = new ConcurrentHashMap<>();
+    private final BaselineWaitForGraph waitForGraph = new BaselineWaitForGraph();
+
+
+    void lock( @NonNull Collection<Entry<EntityIdentifier, LockMode>> idAccessMap, @NonNull BaselineTransaction transaction ) throws DeadlockException {
+        Iterator<Entry<EntityIdentifier, LockMode>> iter = idAccessMap.iterator();
+        Entry<EntityIdentifier, LockMode> pair;
+        while ( iter.hasNext() ) {
+            pair = iter.next();
+            lockTable.putIfAbsent( pair.getKey(), new BaselineLock( waitForGraph ) );
+
+            BaselineLock lock = lockTable.get( pair.getKey() );
+
+            try {
+                if ( hasLock( transaction, pair.getKey() ) && (pair.getValue() == lock.getMode()) ) {
+                    continue;
+                } else if ( pair.getValue() == LockMode.SHARED && hasLock( transaction, pair.getKey() ) && lock.getMode() == LockMode.EXCLUSIVE ) {
+                    continue;
+                } else if ( pair.getValue() == LockMode.EXCLUSIVE && hasLock( transaction, pair.getKey() ) && lock.getMode() == LockMode.SHARED ) {
+                    lock.upgrade( transaction );
+                } else {
+                    lock.acquire( transaction, pair.getValue() );
+                }
+            } catch ( InterruptedException e ) {
+                removeTransaction( transaction );
+                throw new DeadlockException( e );
+            }
+
+            transaction.locks.add( lock );
+        }
+    }
+
+
+    void removeTransaction( @NonNull BaselineTransaction transaction ) {
+        for ( BaselineLock lock : transaction.locks ) {
+            lock.release( transaction );
+        }
+    }
+
+
+    boolean hasLock( @NonNull BaselineTransaction transaction, @NonNull EntityIdentifier entityIdentifier ) {
+        for ( BaselineLock txnLock : transaction.locks ) {
+            if ( txnLock == lockTable.get( entityIdentifier ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * The lock state the baseline kept in the transaction.
+     */
+    static class BaselineTransaction implements Comparable<BaselineTransaction> {
+
+        private final TransactionImpl transaction;
+        private final Set<BaselineLock> locks = new HashSet<>();
+
+
+        BaselineTransaction( TransactionImpl transaction ) {
+            this.transaction = transaction;
+        }
+
+
+        void abort() {
+            Thread.currentThread().interrupt();
+        }
+
+
+        @Override
+        public int compareTo( @NonNull BaselineTransaction that ) {
+            return transaction.compareTo( that.transaction );
+        }
+
+    }
+
+
+    private static class BaselineLock {
+
+        private final Set<BaselineTransaction> owners = new HashSet<>();
+        private final ReentrantLock lock = new ReentrantLock( true );
+        private final Condition waiters = lock.newCondition();
+        private final BaselineWaitForGraph waitForGraph;
+        private int xLockCount = 0;
+        private int sLockCount = 0;
+
+
+        BaselineLock( BaselineWaitForGraph waitForGraph ) {
+            this.waitForGraph = waitForGraph;
+        }
+
+
+        void acquire( BaselineTransaction txn, LockMode lockMode ) throws InterruptedException {
+            if ( lockMode == LockMode.SHARED ) {
+                acquireSLock( txn );
+                txn.transaction.updateAccessMode( AccessMode.READ_ACCESS );
+            } else if ( lockMode == LockMode.EXCLUSIVE ) {
+                acquireXLock( txn );
+                txn.transaction.updateAccessMode( AccessMode.WRITE_ACCESS );
+            } else {
+                throw new RuntimeException( "Lock mode does not exist" );
+            }
+        }
+
+
+        void release( BaselineTransaction txn ) {
+            lock.lock();
+            try {
+                if ( sLockCount > 0 ) {
+                    sLockCount--;
+                }
+                if ( xLockCount == 1 ) {
+                    xLockCount = 0;
+                }
+
+                owners.remove( txn );
+                waitForGraph.remove( txn );
+
+                waiters.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+
+        void upgrade( BaselineTransaction txn ) throws InterruptedException {
+            lock.lock();
+            try {
+                if ( owners.contains( txn ) && isXLocked() ) {
+                    return;
+                }
+                while ( isXLocked() || sLockCount > 1 ) {
+                    Set<BaselineTransaction> ownersWithSelfRemoved = owners.stream().filter( ( ownerTxn ) -> !ownerTxn.equals( txn ) ).collect( Collectors.toSet() );
+                    waitForGraph.add( txn, ownersWithSelfRemoved );
+                    waitForGraph.detectDeadlock( txn );
+                    waiters.await();
+                }
+                sLockCount = 0;
+                xLockCount = 1;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+
+        LockMode getMode() {
+            LockMode lockMode = null;
+            lock.lock();
+
+            try {
+                if ( isXLocked() ) {
+                    lockMode = LockMode.EXCLUSIVE;
+                } else if ( isSLocked() ) {
+                    lockMode = LockMode.SHARED;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            return lockMode;
+        }
+
+
+        private void acquireSLock( BaselineTransaction txn ) throws InterruptedException {
+            lock.lock();
+            try {
+                while ( isXLocked() || lock.hasWaiters( waiters ) ) {
+                    waitForGraph.add( txn, owners );
+                    waitForGraph.detectDeadlock( txn );
+                    waiters.await();
+                }
+                sLockCount++;
+                owners.add( txn );
+            } finally {
+                lock.unlock();
+            }
+        }
+
+
+        private void acquireXLock( BaselineTransaction txn ) throws InterruptedException {
+            lock.lock();
+            try {
+                while ( isXLocked() || isSLocked() ) {
+                    waitForGraph.add( txn, owners );
+                    waitForGraph.detectDeadlock( txn );
+                    waiters.await();
+                }
+                xLockCount = 1;
+                owners.add( txn );
+            } finally {
+                lock.unlock();
+            }
+        }
+
+
+        private boolean isXLocked() {
+            return xLockCount == 1;
+        }
+
+
+        private boolean isSLocked() {
+            return sLockCount > 0;
+        }
+
+    }
+
+
+    private static class BaselineWaitForGraph {
+
+        private final ConcurrentMap<BaselineTransaction, Set<BaselineTransaction>> adjacencyList = new ConcurrentHashMap<>();
+        private final ReentrantReadWriteLock rwl = new ReentrantReadWriteLock();
+        private final java.util.concurrent.locks.Lock sharedLock = rwl.readLock();
+        private final java.util.concurrent.locks.Lock exclusiveLock = rwl.readLock();
+
+
+        void add( BaselineTransaction predecessor, Set<BaselineTransaction> successors ) {
+            sharedLock.lock();
+            try {
+                Set<BaselineTransaction> txnList = adjacencyList.getOrDefault( predecessor, new ConcurrentSkipListSet<>() );
+                txnList.addAll( successors );
+                adjacencyList.put( predecessor, txnList );
+            } finally {
+                sharedLock.unlock();
+            }
+        }
+
+
+        void remove( BaselineTransaction txn ) {
+            sharedLock.lock();
+            try {
+                adjacencyList.remove( txn );
+                for ( BaselineTransaction predecessor : adjacencyList.keySet() ) {
+                    Set<BaselineTransaction> successors = adjacencyList.get( predecessor );
+                    if ( successors != null ) {
+                        successors.remove( txn );
+                    }
+                }
+            } finally {
+                sharedLock.unlock();
+            }
+        }
+
+
+        void detectDeadlock( BaselineTransaction currentTxn ) {
+            List<List<BaselineTransaction>> cycles;
+            exclusiveLock.lock();
+            try {
+                cycles = new ArrayList<>();
+                Set<BaselineTransaction> visited = new HashSet<>();
+                for ( BaselineTransaction txn : adjacencyList.keySet() ) {
+                    if ( !visited.contains( txn ) ) {
+                        visit( txn, new ArrayList<>(), visited, cycles );
+                    }
+                }
+            } finally {
+                exclusiveLock.unlock();
+            }
+
+            for ( List<BaselineTransaction> cycleGroup : cycles ) {
+                if ( cycleGroup.contains( currentTxn ) ) {
+                    currentTxn.abort();
+                }
+            }
+        }
+
+
+        private void visit( BaselineTransaction node, List<BaselineTransaction> path, Set<BaselineTransaction> visited, List<List<BaselineTransaction>> cycles ) {
+            visited.add( node );
+            path.add( node );
+
+            Set<BaselineTransaction> set = adjacencyList.get( node );
+            if ( set != null ) {
+                for ( BaselineTransaction neighbour : set ) {
+                    if ( !visited.contains( neighbour ) ) {
+                        visit( neighbour, new ArrayList<>( path ), visited, cycles );
+                    } else if ( path.contains( neighbour ) ) {
+                        cycles.add( path.subList( path.indexOf( neighbour ), path.size() ) );
+                    }
+                }
+            }
+        }
+
+    }
+
+}
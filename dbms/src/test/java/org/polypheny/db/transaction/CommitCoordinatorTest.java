@@ -0,0 +1,298 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.transaction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.polypheny.db.adapter.Adapter;
+import org.polypheny.db.adapter.Adapter.AdapterProperties;
+import org.polypheny.db.adapter.DeployMode;
+import org.polypheny.db.catalog.entity.CatalogColumnPlacement;
+import org.polypheny.db.catalog.entity.CatalogPartitionPlacement;
+import org.polypheny.db.catalog.entity.CatalogTable;
+import org.polypheny.db.config.RuntimeConfig;
+import org.polypheny.db.prepare.Context;
+import org.polypheny.db.schema.Schema;
+import org.polypheny.db.schema.SchemaPlus;
+import org.polypheny.db.schema.Table;
+import org.polypheny.db.transaction.PUID.Type;
+
+
+public class CommitCoordinatorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    @Test
+    public void testPrepareIsParallel() throws Exception {
+        CommitCoordinator coordinator = new CommitCoordinator( new CommitLog( folder.newFile() ) );
+        // Every adapter only answers once all adapters are preparing
+        CountDownLatch preparing = new CountDownLatch( 3 );
+        List<Adapter> adapters = new ArrayList<>();
+        for ( int i = 0; i < 3; i++ ) {
+            adapters.add( new TestAdapter( i, xid -> {
+                preparing.countDown();
+                return await( preparing );
+            } ) );
+        }
+
+        assertTrue( coordinator.prepare( createXid(), adapters ) );
+        assertEquals( 0, preparing.getCount() );
+    }
+
+
+    @Test
+    public void testPrepareAbortsOnFirstFailure() throws Exception {
+        int parallelism = RuntimeConfig.TWO_PC_PARALLELISM.getInteger();
+        int timeout = RuntimeConfig.TWO_PC_PHASE_TIMEOUT.getInteger();
+        CountDownLatch release = new CountDownLatch( 1 );
+        try {
+            RuntimeConfig.TWO_PC_PARALLELISM.setInteger( 1 );
+            RuntimeConfig.TWO_PC_PHASE_TIMEOUT.setInteger( 1 );
+            CommitCoordinator coordinator = new CommitCoordinator( new CommitLog( folder.newFile() ) );
+            TestAdapter failing = new TestAdapter( 1, xid -> false );
+            TestAdapter blocking = new TestAdapter( 2, xid -> await( release ) );
+            TestAdapter unsent = new TestAdapter( 3, xid -> true );
+
+            assertFalse( coordinator.prepare( createXid(), List.of( failing, blocking, unsent ) ) );
+            // The request to the last adapter has been cancelled before it was sent
+            release.countDown();
+            assertTrue( unsent.prepared.isEmpty() );
+        } finally {
+            release.countDown();
+            RuntimeConfig.TWO_PC_PARALLELISM.setInteger( parallelism );
+            RuntimeConfig.TWO_PC_PHASE_TIMEOUT.setInteger( timeout );
+        }
+    }
+
+
+    @Test
+    public void testPrepareTimeoutIsBounded() throws Exception {
+        int timeout = RuntimeConfig.TWO_PC_PHASE_TIMEOUT.getInteger();
+        CountDownLatch release = new CountDownLatch( 1 );
+        try {
+            RuntimeConfig.TWO_PC_PHASE_TIMEOUT.setInteger( 1 );
+            CommitCoordinator coordinator = new CommitCoordinator( new CommitLog( folder.newFile() ) );
+            TestAdapter hanging = new TestAdapter( 1, xid -> await( release ) );
+            TestAdapter fast = new TestAdapter( 2, xid -> true );
+            PolyXid xid = createXid();
+
+            long start = System.nanoTime();
+            assertFalse( coordinator.prepare( xid, List.of( hanging, fast ) ) );
+            // The phase timeout and the bounded wait for the running requests
+            assertTrue( System.nanoTime() - start < TimeUnit.SECONDS.toNanos( 4 ) );
+            assertTrue( hanging.rolledBack.isEmpty() );
+
+            // The hanging adapter is rolled back as soon as it answers
+            release.countDown();
+            assertTrue( hanging.finished.await( 5, TimeUnit.SECONDS ) );
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos( 5 );
+            while ( !hanging.rolledBack.contains( xid ) && System.nanoTime() < deadline ) {
+                Thread.sleep( 10 );
+            }
+            assertTrue( hanging.rolledBack.contains( xid ) );
+        } finally {
+            release.countDown();
+            RuntimeConfig.TWO_PC_PHASE_TIMEOUT.setInteger( timeout );
+        }
+    }
+
+
+    @Test
+    public void testCommitRecordIsRemovedAfterCommit() throws Exception {
+        File file = folder.newFile();
+        CommitCoordinator coordinator = new CommitCoordinator( new CommitLog( file ) );
+        TestAdapter a = new TestAdapter( 1, xid -> true );
+        TestAdapter b = new TestAdapter( 2, xid -> true );
+        PolyXid xid = createXid();
+
+        coordinator.commit( xid, List.of( a, b ), true );
+
+        assertTrue( a.committed.contains( xid ) );
+        assertTrue( b.committed.contains( xid ) );
+        CommitLog restarted = new CommitLog( file );
+        restarted.recover();
+        assertTrue( restarted.getInDoubt().isEmpty() );
+    }
+
+
+    @Test
+    public void testRecovery() throws Exception {
+        File file = folder.newFile();
+        CommitCoordinator coordinator = new CommitCoordinator( new CommitLog( file ) );
+        TestAdapter a = new TestAdapter( 1, xid -> true );
+        TestAdapter failing = new TestAdapter( 2, xid -> true );
+        failing.failCommit = true;
+        PolyXid committed = createXid();
+        try {
+            coordinator.commit( committed, List.of( a, failing ), true );
+            fail( "The commit on the failing adapter has not been reported" );
+        } catch ( TransactionException e ) {
+            // Expected
+        }
+
+        // First restart: The adapter of the transaction in doubt is not available, the record is kept
+        CommitLog commitLog = new CommitLog( file );
+        coordinator = new CommitCoordinator( commitLog );
+        coordinator.recover();
+        assertEquals( Set.of( committed.toString() ), commitLog.getInDoubt().keySet() );
+        coordinator.resolve( List.of( new TestAdapter( 1, xid -> true ) ) );
+        assertEquals( Set.of( committed.toString() ), commitLog.getInDoubt().keySet() );
+
+        // Second restart: The prepared transactions are committed or rolled back (presumed abort)
+        commitLog = new CommitLog( file );
+        coordinator = new CommitCoordinator( commitLog );
+        coordinator.recover();
+        assertEquals( Set.of( committed.toString() ), commitLog.getInDoubt().keySet() );
+        PolyXid aborted = createXid();
+        TestAdapter restarted = new TestAdapter( 2, xid -> true );
+        restarted.preparedBeforeRestart.add( new PolyXid( committed.getGlobalTransactionId(), committed.getBranchQualifier() ) );
+        restarted.preparedBeforeRestart.add( aborted );
+        coordinator.resolve( List.of( new TestAdapter( 1, xid -> true ), restarted ) );
+
+        assertTrue( restarted.committed.contains( committed ) );
+        assertTrue( restarted.rolledBack.contains( aborted ) );
+        assertFalse( restarted.committed.contains( aborted ) );
+        assertTrue( commitLog.getInDoubt().isEmpty() );
+
+        // Third restart: Nothing is in doubt anymore
+        commitLog = new CommitLog( file );
+        commitLog.recover();
+        assertTrue( commitLog.getInDoubt().isEmpty() );
+    }
+
+
+    private static boolean await( CountDownLatch latch ) {
+        try {
+            return latch.await( 10, TimeUnit.SECONDS );
+        } catch ( InterruptedException e ) {
+            throw new RuntimeException( e );
+        }
+    }
+
+
+    private static PolyXid createXid() {
+        return PolyXid.generateLocalTransactionIdentifier( PUID.randomPUID( Type.NODE ), PUID.randomPUID( Type.TRANSACTION ) );
+    }
+
+
+    @AdapterProperties(
+            name = "Test",
+            description = "Adapter recording the requests of the commit coordinator.",
+            usedModes = DeployMode.EMBEDDED)
+    private static class TestAdapter extends Adapter {
+
+        private final Function<PolyXid, Boolean> prepare;
+        private final List<PolyXid> preparedBeforeRestart = new ArrayList<>();
+        private final Set<PolyXid> prepared = ConcurrentHashMap.newKeySet();
+        private final Set<PolyXid> committed = ConcurrentHashMap.newKeySet();
+        private final Set<PolyXid> rolledBack = ConcurrentHashMap.newKeySet();
+        private final CountDownLatch finished = new CountDownLatch( 1 );
+        private boolean failCommit = false;
+
+
+        TestAdapter( int adapterId, Function<PolyXid, Boolean> prepare ) {
+            super( adapterId, "test" + adapterId, Map.of( "mode", "embedded" ) );
+            this.prepare = prepare;
+        }
+
+
+        @Override
+        public boolean prepare( PolyXid xid ) {
+            prepared.add( xid );
+            try {
+                return prepare.apply( xid );
+            } finally {
+                finished.countDown();
+            }
+        }
+
+
+        @Override
+        public void commit( PolyXid xid ) {
+            if ( failCommit ) {
+                throw new RuntimeException( "Commit failed" );
+            }
+            committed.add( xid );
+        }
+
+
+        @Override
+        public void rollback( PolyXid xid ) {
+            rolledBack.add( xid );
+        }
+
+
+        @Override
+        public List<PolyXid> getPreparedTransactions() {
+            return Collections.unmodifiableList( preparedBeforeRestart );
+        }
+
+
+        @Override
+        public void createNewSchema( SchemaPlus rootSchema, String name ) {
+            throw new UnsupportedOperationException();
+        }
+
+
+        @Override
+        public Table createTableSchema( CatalogTable combinedTable, List<CatalogColumnPlacement> columnPlacementsOnStore, CatalogPartitionPlacement partitionPlacement ) {
+            throw new UnsupportedOperationException();
+        }
+
+
+        @Override
+        public Schema getCurrentSchema() {
+            throw new UnsupportedOperationException();
+        }
+
+
+        @Override
+        public void truncate( Context context, CatalogTable table ) {
+            throw new UnsupportedOperationException();
+        }
+
+
+        @Override
+        public void shutdown() {
+        }
+
+
+        @Override
+        protected void reloadSettings( List<String> updatedSettings ) {
+        }
+
+    }
+
+}
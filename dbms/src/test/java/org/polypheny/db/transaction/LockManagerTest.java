@@ -0,0 +1,326 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.transaction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.polypheny.db.util.TestUtil.runConcurrently;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongPredicate;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Test;
+import org.polypheny.db.config.RuntimeConfig;
+import org.polypheny.db.transaction.BaselineLockManager.BaselineTransaction;
+import org.polypheny.db.transaction.EntityAccessMap.EntityIdentifier;
+import org.polypheny.db.transaction.EntityAccessMap.EntityIdentifier.NamespaceLevel;
+import org.polypheny.db.transaction.Lock.LockMode;
+import org.polypheny.db.transaction.PUID.Type;
+import org.polypheny.db.transaction.Transaction.IsolationLevel;
+import org.polypheny.db.transaction.Transaction.MultimediaFlavor;
+import org.polypheny.db.util.Benchmark;
+import org.polypheny.db.util.DeadlockException;
+import org.polypheny.db.util.Pair;
+
+
+@Slf4j
+public class LockManagerTest {
+
+    private static final AtomicLong TABLE_ID = new AtomicLong( 1_000_000 );
+
+
+    @Test
+    public void testSharedLocksAreCompatible() throws Exception {
+        long tableId = TABLE_ID.getAndIncrement();
+        TransactionImpl t1 = createTransaction();
+        TransactionImpl t2 = createTransaction();
+        try {
+            lock( t1, partition( tableId, 1 ), LockMode.SHARED );
+            runWithTimeout( () -> lock( t2, partition( tableId, 1 ), LockMode.SHARED ) );
+
+            assertTrue( LockManager.INSTANCE.hasLock( t1, partition( tableId, 1 ) ) );
+            assertTrue( LockManager.INSTANCE.hasLock( t2, partition( tableId, 1 ) ) );
+            assertEquals( LockMode.INTENTION_SHARED, LockManager.INSTANCE.getLockMode( LockManager.getTableIdentifier( tableId ) ) );
+        } finally {
+            LockManager.INSTANCE.removeTransaction( t1 );
+            LockManager.INSTANCE.removeTransaction( t2 );
+        }
+    }
+
+
+    @Test
+    public void testWritersOnDifferentPartitions() throws Exception {
+        long tableId = TABLE_ID.getAndIncrement();
+        TransactionImpl t1 = createTransaction();
+        TransactionImpl t2 = createTransaction();
+        try {
+            lock( t1, partition( tableId, 1 ), LockMode.EXCLUSIVE );
+            runWithTimeout( () -> lock( t2, partition( tableId, 2 ), LockMode.EXCLUSIVE ) );
+
+            assertEquals( LockMode.INTENTION_EXCLUSIVE, LockManager.INSTANCE.getLockMode( LockManager.getTableIdentifier( tableId ) ) );
+        } finally {
+            LockManager.INSTANCE.removeTransaction( t1 );
+            LockManager.INSTANCE.removeTransaction( t2 );
+        }
+    }
+
+
+    @Test
+    public void testExclusiveBlocksShared() throws Exception {
+        long tableId = TABLE_ID.getAndIncrement();
+        TransactionImpl t1 = createTransaction();
+        TransactionImpl t2 = createTransaction();
+        try {
+            lock( t1, partition( tableId, 1 ), LockMode.EXCLUSIVE );
+            CompletableFuture<Void> reader = CompletableFuture.runAsync( () -> lock( t2, partition( tableId, 1 ), LockMode.SHARED ) );
+            try {
+                reader.get( 200, TimeUnit.MILLISECONDS );
+                throw new AssertionError( "Shared lock has been granted while an exclusive lock was held" );
+            } catch ( TimeoutException e ) {
+                // expected
+            }
+
+            LockManager.INSTANCE.removeTransaction( t1 );
+            reader.get( 5, TimeUnit.SECONDS );
+            assertEquals( LockMode.SHARED, LockManager.INSTANCE.getLockMode( partition( tableId, 1 ) ) );
+        } finally {
+            LockManager.INSTANCE.removeTransaction( t1 );
+            LockManager.INSTANCE.removeTransaction( t2 );
+        }
+    }
+
+
+    @Test
+    public void testUpgrade() throws Exception {
+        long tableId = TABLE_ID.getAndIncrement();
+        TransactionImpl t1 = createTransaction();
+        try {
+            lock( t1, partition( tableId, 1 ), LockMode.SHARED );
+            lock( t1, partition( tableId, 1 ), LockMode.EXCLUSIVE );
+
+            assertEquals( LockMode.EXCLUSIVE, LockManager.INSTANCE.getLockMode( partition( tableId, 1 ) ) );
+            assertEquals( LockMode.INTENTION_EXCLUSIVE, LockManager.INSTANCE.getLockMode( LockManager.getTableIdentifier( tableId ) ) );
+        } finally {
+            LockManager.INSTANCE.removeTransaction( t1 );
+        }
+        assertNull( LockManager.INSTANCE.getLockMode( partition( tableId, 1 ) ) );
+    }
+
+
+    @Test
+    public void testEscalation() throws Exception {
+        int escalationThreshold = RuntimeConfig.LOCK_ESCALATION_THRESHOLD.getInteger();
+        long tableId = TABLE_ID.getAndIncrement();
+        TransactionImpl t1 = createTransaction();
+        try {
+            RuntimeConfig.LOCK_ESCALATION_THRESHOLD.setInteger( 2 );
+            List<Entry<EntityIdentifier, LockMode>> partitions = new ArrayList<>();
+            for ( int i = 0; i < 3; i++ ) {
+                partitions.add( Pair.of( partition( tableId, i ), LockMode.SHARED ) );
+            }
+            LockManager.INSTANCE.lock( partitions, t1 );
+
+            assertEquals( LockMode.SHARED, LockManager.INSTANCE.getLockMode( LockManager.getTableIdentifier( tableId ) ) );
+            assertFalse( LockManager.INSTANCE.hasLock( t1, partition( tableId, 0 ) ) );
+        } finally {
+            RuntimeConfig.LOCK_ESCALATION_THRESHOLD.setInteger( escalationThreshold );
+            LockManager.INSTANCE.removeTransaction( t1 );
+        }
+    }
+
+
+    @Test
+    public void testDeadlockDetection() throws Exception {
+        long tableId = TABLE_ID.getAndIncrement();
+        TransactionImpl t1 = createTransaction();
+        TransactionImpl t2 = createTransaction();
+        try {
+            lock( t1, partition( tableId, 1 ), LockMode.EXCLUSIVE );
+            lock( t2, partition( tableId, 2 ), LockMode.EXCLUSIVE );
+
+            CompletableFuture<Void> older = CompletableFuture.runAsync( () -> lock( t1, partition( tableId, 2 ), LockMode.EXCLUSIVE ) );
+            CompletableFuture<Void> younger = CompletableFuture.runAsync( () -> lock( t2, partition( tableId, 1 ), LockMode.EXCLUSIVE ) );
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while ( !younger.isDone() && System.currentTimeMillis() < deadline ) {
+                LockManager.INSTANCE.getWaitForGraph().detectDeadlocks();
+                Thread.sleep( 10 );
+            }
+
+            // The younger transaction is the victim
+            try {
+                younger.get( 1, TimeUnit.SECONDS );
+                throw new AssertionError( "Deadlock has not been resolved" );
+            } catch ( ExecutionException e ) {
+                assertTrue( e.getCause().getCause() instanceof DeadlockException );
+            }
+            older.get( 5, TimeUnit.SECONDS );
+            assertEquals( LockMode.EXCLUSIVE, LockManager.INSTANCE.getLockMode( partition( tableId, 2 ) ) );
+        } finally {
+            LockManager.INSTANCE.removeTransaction( t1 );
+            LockManager.INSTANCE.removeTransaction( t2 );
+        }
+    }
+
+
+    @Test
+    public void testSnapshotIsolation() throws Exception {
+        IsolationLevel isolationLevel = (IsolationLevel) RuntimeConfig.TRANSACTION_ISOLATION.getEnum();
+        long tableId = TABLE_ID.getAndIncrement();
+        long lockedTableId = TABLE_ID.getAndIncrement();
+        LongPredicate snapshotReadable = LockManager.INSTANCE.snapshotReadable;
+        LockManager.INSTANCE.snapshotReadable = id -> id == tableId;
+        RuntimeConfig.TRANSACTION_ISOLATION.setEnum( IsolationLevel.SNAPSHOT );
+        TransactionImpl t1 = createTransaction();
+        TransactionImpl t2 = createTransaction();
+        TransactionImpl t3 = createTransaction();
+        RuntimeConfig.TRANSACTION_ISOLATION.setEnum( isolationLevel );
+        TransactionImpl writer = createTransaction();
+        try {
+            t1.createStatement();
+
+            // Readers of tables placed on stores providing snapshots do not block writers
+            lock( t1, partition( tableId, 1 ), LockMode.SHARED );
+            assertFalse( LockManager.INSTANCE.hasLock( t1, partition( tableId, 1 ) ) );
+            runWithTimeout( () -> lock( writer, partition( tableId, 1 ), LockMode.EXCLUSIVE ) );
+
+            // Other tables are read-locked
+            lock( t1, partition( lockedTableId, 1 ), LockMode.SHARED );
+            assertTrue( LockManager.INSTANCE.hasLock( t1, partition( lockedTableId, 1 ) ) );
+
+            CommitValidator.INSTANCE.publish( writer );
+            LockManager.INSTANCE.removeTransaction( writer );
+
+            // The writer committed after the first statement of t1
+            lock( t1, partition( tableId, 1 ), LockMode.EXCLUSIVE );
+            assertFalse( CommitValidator.INSTANCE.validate( t1 ) );
+            LockManager.INSTANCE.removeTransaction( t1 );
+
+            // The timestamp is taken at the first statement, not when the transaction is created
+            t2.createStatement();
+            lock( t2, partition( tableId, 1 ), LockMode.EXCLUSIVE );
+            assertTrue( CommitValidator.INSTANCE.validate( t2 ) );
+            LockManager.INSTANCE.removeTransaction( t2 );
+
+            // Writes to other partitions are not affected
+            t3.createStatement();
+            lock( t3, partition( tableId, 2 ), LockMode.EXCLUSIVE );
+            assertTrue( CommitValidator.INSTANCE.validate( t3 ) );
+        } finally {
+            LockManager.INSTANCE.snapshotReadable = snapshotReadable;
+            LockManager.INSTANCE.removeTransaction( t1 );
+            LockManager.INSTANCE.removeTransaction( t2 );
+            LockManager.INSTANCE.removeTransaction( t3 );
+            LockManager.INSTANCE.removeTransaction( writer );
+        }
+    }
+
+
+    /**
+     * Compares the throughput of concurrent shared locking on the same hot table with the lock manager before the CAS
+     * fast path and the intention locks were added.
+     */
+    @Test
+    public void testSharedLockThroughputBenchmark() {
+        // Run a much quicker form of the test during regular testing.
+        final int iterations = Benchmark.enabled() ? 100_000 : 100;
+        final int threads = Math.max( 2, Runtime.getRuntime().availableProcessors() );
+        final long tableId = TABLE_ID.getAndIncrement();
+
+        String description = "LockManager shared locks (" + threads + " threads)";
+        new Benchmark( description, statistician -> {
+            long nanos = System.nanoTime();
+            runConcurrently( threads, () -> {
+                for ( int i = 0; i < iterations; i++ ) {
+                    TransactionImpl transaction = createTransaction();
+                    lock( transaction, LockManager.GLOBAL_LOCK, LockMode.SHARED );
+                    lock( transaction, partition( tableId, 1 ), LockMode.SHARED );
+                    LockManager.INSTANCE.removeTransaction( transaction );
+                }
+            } );
+            statistician.record( nanos );
+            logThroughput( description, threads * iterations, nanos );
+            return null;
+        }, 5 ).run();
+
+        BaselineLockManager baseline = new BaselineLockManager();
+        String baselineDescription = "Baseline lock manager shared locks (" + threads + " threads)";
+        new Benchmark( baselineDescription, statistician -> {
+            long nanos = System.nanoTime();
+            runConcurrently( threads, () -> {
+                for ( int i = 0; i < iterations; i++ ) {
+                    BaselineTransaction transaction = new BaselineTransaction( createTransaction() );
+                    try {
+                        baseline.lock( List.of( Pair.of( LockManager.GLOBAL_LOCK, LockMode.SHARED ) ), transaction );
+                        baseline.lock( List.of( Pair.of( partition( tableId, 1 ), LockMode.SHARED ) ), transaction );
+                    } catch ( DeadlockException e ) {
+                        throw new RuntimeException( e );
+                    }
+                    baseline.removeTransaction( transaction );
+                }
+            } );
+            statistician.record( nanos );
+            logThroughput( baselineDescription, threads * iterations, nanos );
+            return null;
+        }, 5 ).run();
+    }
+
+
+    private static void logThroughput( String description, long operations, long startNanos ) {
+        log.info( "{}: {} transactions per second", description, (long) (operations / ((System.nanoTime() - startNanos) / 1e9)) );
+    }
+
+
+
+    private static void runWithTimeout( Runnable runnable ) throws Exception {
+        CompletableFuture.runAsync( runnable ).get( 5, TimeUnit.SECONDS );
+    }
+
+
+    private static void lock( TransactionImpl transaction, EntityIdentifier entityIdentifier, LockMode lockMode ) {
+        try {
+            LockManager.INSTANCE.lock( List.of( Pair.of( entityIdentifier, lockMode ) ), transaction );
+        } catch ( Exception e ) {
+            throw new RuntimeException( e );
+        }
+    }
+
+
+    private static EntityIdentifier partition( long tableId, long partitionId ) {
+        return new EntityIdentifier( tableId, partitionId, NamespaceLevel.ENTITY_LEVEL );
+    }
+
+
+    private static TransactionImpl createTransaction() {
+        PolyXid xid = Utils.generateGlobalTransactionIdentifier(
+                PUID.randomPUID( Type.NODE ),
+                PUID.randomPUID( Type.USER ),
+                PUID.randomPUID( Type.CONNECTION ),
+                PUID.randomPUID( Type.TRANSACTION ) );
+        return new TransactionImpl( xid, null, null, null, null, false, "LockManagerTest", MultimediaFlavor.DEFAULT );
+    }
+
+}
@@ -19,17 +19,18 @@
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
-import lombok.Getter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.polypheny.db.config.RuntimeConfig;
+import org.polypheny.db.information.InformationGroup;
+import org.polypheny.db.information.InformationKeyValue;
+import org.polypheny.db.information.InformationManager;
+import org.polypheny.db.information.InformationPage;
 import org.polypheny.db.monitoring.events.MonitoringDataPoint;
 import org.polypheny.db.monitoring.events.MonitoringEvent;
 import org.polypheny.db.monitoring.repository.MonitoringRepository;
@@ -37,24 +38,40 @@
 
 
 /**
- * MonitoringQueue implementation which stores the monitoring jobs in a concurrent queue and processes them with a
- * background worker task.
+ * MonitoringQueue implementation which stores the monitoring jobs in a bounded lock-free ring buffer. Background
+ * consumer threads drain the buffer in batches and write the resulting data points in bulk to the repositories.
+ * Consumers without work park until a producer queues the next event.
+ *
+ * If the consumers fall behind and the buffer fills up, new events are handled according to
+ * {@link RuntimeConfig#MONITORING_OVERFLOW_POLICY}.
  */
 @Slf4j
 public class MonitoringQueueImpl implements MonitoringQueue {
 
+    // Time to wait for every consumer to process the remaining events on shutdown
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis( 5 );
+
     private final PersistentMonitoringRepository persistentRepository;
     private final MonitoringRepository statisticRepository;
-    private MonitoringThreadPoolExecutor threadPoolWorkers;
 
-    private final BlockingQueue<Runnable> eventQueue;
+    private final MonitoringRingBuffer<MonitoringEvent> eventQueue;
+    private final List<Thread> consumers = new ArrayList<>();
+    // Consumers waiting for events and producers waiting for space, woken up by the other side
+    private final Queue<Thread> idleConsumers = new ConcurrentLinkedQueue<>();
+    private final Queue<Thread> blockedProducers = new ConcurrentLinkedQueue<>();
 
-    private final int CORE_POOL_SIZE;
-    private final int MAXIMUM_POOL_SIZE;
-    private final int KEEP_ALIVE_TIME;
+    private final boolean backgroundProcessingActive;
+    private volatile boolean running;
 
-    private boolean backgroundProcessingActive;
-    private int threadCount;
+    private final AtomicLong processedEvents = new AtomicLong();
+    private final AtomicLong droppedEvents = new AtomicLong();
+    private final AtomicLong failedEvents = new AtomicLong();
+    private final AtomicLong sampledEvents = new AtomicLong();
+    private final AtomicLong sampleCounter = new AtomicLong();
+    private final AtomicLong processedBatches = new AtomicLong();
+    private final AtomicLong lastLag = new AtomicLong();
+    private final AtomicLong maxLag = new AtomicLong();
+    private final AtomicLong totalLag = new AtomicLong();
 
 
     /**
@@ -68,43 +85,22 @@ public MonitoringQueueImpl(
             @NonNull MonitoringRepository statisticRepository ) {
         this.persistentRepository = persistentRepository;
         this.statisticRepository = statisticRepository;
-        this.eventQueue = new LinkedBlockingQueue<>();
+        this.eventQueue = new MonitoringRingBuffer<>( RuntimeConfig.MONITORING_QUEUE_CAPACITY.getInteger() );
         this.backgroundProcessingActive = backgroundProcessingActive;
 
-        this.CORE_POOL_SIZE = RuntimeConfig.MONITORING_CORE_POOL_SIZE.getInteger();
-        this.MAXIMUM_POOL_SIZE = RuntimeConfig.MONITORING_MAXIMUM_POOL_SIZE.getInteger();
-        this.KEEP_ALIVE_TIME = RuntimeConfig.MONITORING_POOL_KEEP_ALIVE_TIME.getInteger();
-
         if ( this.backgroundProcessingActive ) {
             RuntimeConfig.MONITORING_CORE_POOL_SIZE.setRequiresRestart( true );
-            RuntimeConfig.MONITORING_MAXIMUM_POOL_SIZE.setRequiresRestart( true );
-            RuntimeConfig.MONITORING_POOL_KEEP_ALIVE_TIME.setRequiresRestart( true );
-
-            threadPoolWorkers = new MonitoringThreadPoolExecutor(
-                    CORE_POOL_SIZE,
-                    MAXIMUM_POOL_SIZE,
-                    KEEP_ALIVE_TIME,
-                    TimeUnit.SECONDS,
-                    eventQueue );
-        }
-
-        // Instantiated thread count
-        this.threadCount = threadPoolWorkers.getPoolSize();
-
-        // Create a scheduled, separate thread which gets new thread count every 500 milliseconds
-        Timer timer = new Timer();
-        timer.scheduleAtFixedRate( new TimerTask() {
-            @Override
-            public synchronized void run() {
-                int newThreadCount = threadPoolWorkers.getPoolSize();
-                if ( newThreadCount != threadCount ) {
-                    threadCount = newThreadCount;
-                    if ( log.isDebugEnabled() ) {
-                        log.debug( "Thread count is now: {}", threadCount );
-                    }
-                }
+            RuntimeConfig.MONITORING_QUEUE_CAPACITY.setRequiresRestart( true );
+
+            running = true;
+            for ( int i = 0; i < RuntimeConfig.MONITORING_CORE_POOL_SIZE.getInteger(); i++ ) {
+                Thread consumer = new Thread( this::consume, "MonitoringConsumer-" + i );
+                consumer.setDaemon( true );
+                consumer.start();
+                consumers.add( consumer );
             }
-        }, 500, 500 );
+            registerInformationPage();
+        }
     }
 
 
@@ -119,9 +115,55 @@ public MonitoringQueueImpl(
 
 
     @Override
-    public synchronized void queueEvent( @NonNull MonitoringEvent event ) {
-        if ( backgroundProcessingActive ) {
-            threadPoolWorkers.execute( new MonitoringWorker( event ) );
+    public void queueEvent( @NonNull MonitoringEvent event ) {
+        OverflowPolicy policy = (OverflowPolicy) RuntimeConfig.MONITORING_OVERFLOW_POLICY.getEnum();
+        if ( policy == OverflowPolicy.SAMPLE
+                && eventQueue.size() >= eventQueue.capacity() / 2
+                && sampleCounter.incrementAndGet() % Math.max( 1, RuntimeConfig.MONITORING_SAMPLE_RATE.getInteger() ) != 0 ) {
+            // Once the buffer is half full, only every n-th event is kept
+            sampledEvents.incrementAndGet();
+            return;
+        }
+        if ( eventQueue.offer( event ) ) {
+            wakeUp( idleConsumers, false );
+            return;
+        }
+        if ( policy == OverflowPolicy.BLOCK ) {
+            Thread current = Thread.currentThread();
+            while ( running && !current.isInterrupted() ) {
+                blockedProducers.add( current );
+                // Retried after registering, since space freed up in between would not wake up this producer
+                boolean queued = eventQueue.offer( event );
+                if ( !queued ) {
+                    LockSupport.park( this );
+                }
+                blockedProducers.remove( current );
+                if ( queued ) {
+                    wakeUp( idleConsumers, false );
+                    return;
+                }
+            }
+        }
+        droppedEvents.incrementAndGet();
+    }
+
+
+    /**
+     * Stops the consumers after they have processed the events which are already queued. Producers waiting for space
+     * drop their events.
+     */
+    @Override
+    public void shutdown() {
+        running = false;
+        consumers.forEach( LockSupport::unpark );
+        wakeUp( blockedProducers, true );
+        for ( Thread consumer : consumers ) {
+            try {
+                consumer.join( SHUTDOWN_TIMEOUT_MILLIS );
+            } catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                return;
+            }
         }
     }
 
@@ -132,24 +174,15 @@ public synchronized void queueEvent( @NonNull MonitoringEvent event ) {
      * @return Current number of elements in Queue
      */
     @Override
-    public synchronized long getNumberOfElementsInQueue() {
-        return threadPoolWorkers.getQueue().size();
+    public long getNumberOfElementsInQueue() {
+        return eventQueue.size();
     }
 
 
     @Override
-    public synchronized List<HashMap<String, String>> getInformationOnElementsInQueue() {
+    public List<HashMap<String, String>> getInformationOnElementsInQueue() {
         List<HashMap<String, String>> infoList = new ArrayList<>();
-        List<MonitoringEvent> queueElements = new ArrayList<>();
-
-        threadPoolWorkers.getQueue().stream().limit( 100 ).collect( Collectors.toList() )
-                .forEach(
-                        task -> queueElements.add(
-                                ((MonitoringWorker) task).getEvent()
-                        )
-                );
-
-        for ( MonitoringEvent event : queueElements ) {
+        for ( MonitoringEvent event : eventQueue.peek( 100 ) ) {
             HashMap<String, String> infoRow = new HashMap<>();
             infoRow.put( "type", event.getClass().toString() );
             infoRow.put( "id", event.getId().toString() );
@@ -163,97 +196,151 @@ public synchronized List<HashMap<String, String>> getInformationOnElementsInQueu
 
     @Override
     public long getNumberOfProcessedEvents() {
-        return threadPoolWorkers.getCompletedTaskCount();
+        return processedEvents.get();
     }
 
 
-    /**
-     * Overrides beforeExecute and afterExecute of ThreadPoolExecutor to check the number of threads
-     * and logs new thread count if there is a change.
-     */
-    static class MonitoringThreadPoolExecutor extends ThreadPoolExecutor {
+    @Override
+    public long getNumberOfDroppedEvents() {
+        return droppedEvents.get() + sampledEvents.get();
+    }
 
 
-        private int threadCount;
+    @Override
+    public long getEventLag() {
+        return lastLag.get();
+    }
 
 
-        public MonitoringThreadPoolExecutor(
-                int corePoolSize,
-                int maximumPoolSize,
-                long keepAliveTime,
-                TimeUnit unit,
-                BlockingQueue<Runnable> workQueue ) {
-            super( corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue );
-            this.threadCount = this.getPoolSize();
+    private void consume() {
+        List<MonitoringEvent> batch = new ArrayList<>();
+        while ( running ) {
+            batch.clear();
+            if ( eventQueue.drainTo( batch, RuntimeConfig.MONITORING_BATCH_SIZE.getInteger() ) == 0 ) {
+                awaitEvents();
+                continue;
+            }
+            wakeUp( blockedProducers, true );
+            processBatch( batch );
         }
+        // Process the events queued before the shutdown
+        do {
+            batch.clear();
+            eventQueue.drainTo( batch, RuntimeConfig.MONITORING_BATCH_SIZE.getInteger() );
+            processBatch( batch );
+        } while ( !batch.isEmpty() );
+    }
 
 
-        @Override
-        protected void beforeExecute( Thread t, Runnable r ) {
-            if ( this.threadCount != this.getPoolSize() ) {
-                this.threadCount = this.getPoolSize();
-                if ( log.isDebugEnabled() ) {
-                    log.debug( "Thread count for monitoring queue: {}", this.threadCount );
-                }
-            }
-
-            super.beforeExecute( t, r );
+    private void awaitEvents() {
+        Thread current = Thread.currentThread();
+        idleConsumers.add( current );
+        // Checked after registering, since an event queued in between would not wake up this consumer
+        if ( running && eventQueue.size() == 0 ) {
+            LockSupport.park( this );
         }
+        idleConsumers.remove( current );
+    }
 
 
-        @Override
-        protected void afterExecute( Runnable r, Throwable t ) {
-            super.afterExecute( r, t );
-
-            if ( this.threadCount != this.getPoolSize() ) {
-                this.threadCount = this.getPoolSize();
-                if ( log.isDebugEnabled() ) {
-                    log.debug( "Thread count for monitoring queue: {}", this.threadCount );
-                }
+    /**
+     * Unparks one or all of the waiting threads.
+     */
+    private static void wakeUp( Queue<Thread> waiting, boolean all ) {
+        Thread thread;
+        while ( (thread = waiting.poll()) != null ) {
+            LockSupport.unpark( thread );
+            if ( !all ) {
+                return;
             }
         }
-
     }
 
 
-    class MonitoringWorker implements Runnable {
-
-        @Getter
-        private final MonitoringEvent event;
-
-
-        public MonitoringWorker( MonitoringEvent event ) {
-            this.event = event;
+    private void processBatch( List<MonitoringEvent> batch ) {
+        if ( batch.isEmpty() ) {
+            return;
         }
-
-
-        @Override
-        public void run() {
-            processQueue();
+        if ( log.isDebugEnabled() ) {
+            log.debug( "processing batch of {} monitoring events", batch.size() );
         }
 
-
-        private void processQueue() {
-            if ( event != null ) {
-                if ( log.isDebugEnabled() ) {
-                    log.debug( "get new monitoring job {}", event.getId().toString() );
+        // Collect the metrics produced by all events of the batch, an event which cannot be analyzed is skipped
+        List<MonitoringDataPoint> dataPoints = new ArrayList<>();
+        for ( MonitoringEvent event : batch ) {
+            try {
+                dataPoints.addAll( event.analyze() );
+            } catch ( Exception e ) {
+                failedEvents.incrementAndGet();
+                log.error( "Exception while analyzing monitoring event {}", event.getId(), e );
+            }
+        }
+        if ( !dataPoints.isEmpty() ) {
+            try {
+                persistentRepository.dataPoints( dataPoints );
+            } catch ( Exception e ) {
+                log.error( "Exception while persisting a batch of monitoring data points", e );
+            }
+            // Statistics are only collected if Active Tracking is switched on
+            if ( RuntimeConfig.ACTIVE_TRACKING.getBoolean() ) {
+                try {
+                    statisticRepository.dataPoints( dataPoints );
+                } catch ( Exception e ) {
+                    log.error( "Exception while updating the statistics from a batch of monitoring data points", e );
                 }
+            }
+        }
 
-                // Returns list of metrics which was produced by this particular event
-                final List<MonitoringDataPoint> dataPoints = event.analyze();
-                if ( !dataPoints.isEmpty() ) {
-                    // Sends all extracted metrics to subscribers
-                    for ( MonitoringDataPoint dataPoint : dataPoints ) {
-                        persistentRepository.dataPoint( dataPoint );
-                        // Statistics are only collected if Active Tracking is switched on
-                        if ( RuntimeConfig.ACTIVE_TRACKING.getBoolean() ) {
-                            statisticRepository.dataPoint( dataPoint );
-                        }
-                    }
-                }
+        long now = System.currentTimeMillis();
+        for ( MonitoringEvent event : batch ) {
+            if ( event.getRecordedTimestamp() != null ) {
+                long lag = now - event.getRecordedTimestamp().getTime();
+                lastLag.set( lag );
+                maxLag.accumulateAndGet( lag, Math::max );
+                totalLag.addAndGet( lag );
             }
         }
+        processedEvents.addAndGet( batch.size() );
+        processedBatches.incrementAndGet();
+    }
+
 
+    private void registerInformationPage() {
+        InformationManager im = InformationManager.getInstance();
+
+        InformationPage page = new InformationPage( "Monitoring Queue" );
+        page.fullWidth();
+        im.addPage( page );
+
+        InformationGroup queueGroup = new InformationGroup( page, "Queue" ).setOrder( 1 );
+        im.addGroup( queueGroup );
+
+        InformationKeyValue queueKv = new InformationKeyValue( queueGroup );
+        im.registerInformation( queueKv );
+        queueGroup.setRefreshFunction( () -> {
+            long processed = processedEvents.get();
+            long batches = processedBatches.get();
+            queueKv.putPair( "Queue Depth", eventQueue.size() + " / " + eventQueue.capacity() );
+            queueKv.putPair( "Consumers", consumers.size() + "" );
+            queueKv.putPair( "Overflow Policy", RuntimeConfig.MONITORING_OVERFLOW_POLICY.getEnum().name() );
+            queueKv.putPair( "Processed Events", processed + "" );
+            queueKv.putPair( "Average Batch Size", batches == 0 ? "-" : (processed / batches) + "" );
+            queueKv.putPair( "Dropped Events", droppedEvents.get() + "" );
+            queueKv.putPair( "Failed Events", failedEvents.get() + "" );
+            queueKv.putPair( "Discarded by Sampling", sampledEvents.get() + "" );
+        } );
+
+        InformationGroup lagGroup = new InformationGroup( page, "Event Lag" ).setOrder( 2 );
+        im.addGroup( lagGroup );
+
+        InformationKeyValue lagKv = new InformationKeyValue( lagGroup );
+        im.registerInformation( lagKv );
+        lagGroup.setRefreshFunction( () -> {
+            long processed = processedEvents.get();
+            lagKv.putPair( "Last", lastLag.get() + " ms" );
+            lagKv.putPair( "Average", processed == 0 ? "-" : (totalLag.get() / processed) + " ms" );
+            lagKv.putPair( "Maximum", maxLag.get() + " ms" );
+        } );
     }
 
 }
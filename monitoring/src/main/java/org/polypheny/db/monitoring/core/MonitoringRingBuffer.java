@@ -0,0 +1,152 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.monitoring.core;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+
+/**
+ * Bounded lock-free multi-producer multi-consumer queue backed by a ring buffer.
+ *
+ * Every slot carries a sequence number which tells producers and consumers whether the slot is free for the current
+ * lap. Producers and consumers claim a position with a single CAS on the tail or the head respectively.
+ *
+ * @param <E> Type of the elements
+ */
+class MonitoringRingBuffer<E> {
+
+    private final AtomicReferenceArray<E> slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+
+    /**
+     * @param capacity Minimal capacity, rounded up to the next power of two
+     */
+    MonitoringRingBuffer( int capacity ) {
+        int size = Integer.highestOneBit( Math.max( 2, capacity ) - 1 ) << 1;
+        this.slots = new AtomicReferenceArray<>( size );
+        this.sequences = new AtomicLongArray( size );
+        this.mask = size - 1;
+        for ( int i = 0; i < size; i++ ) {
+            sequences.set( i, i );
+        }
+    }
+
+
+    /**
+     * @return false if the buffer is full
+     */
+    boolean offer( E element ) {
+        long position = tail.get();
+        while ( true ) {
+            int index = (int) (position & mask);
+            long difference = sequences.get( index ) - position;
+            if ( difference == 0 ) {
+                if ( tail.compareAndSet( position, position + 1 ) ) {
+                    slots.lazySet( index, element );
+                    sequences.set( index, position + 1 );
+                    return true;
+                }
+            } else if ( difference < 0 ) {
+                return false;
+            }
+            position = tail.get();
+        }
+    }
+
+
+    /**
+     * @return the oldest element or null if the buffer is empty
+     */
+    E poll() {
+        long position = head.get();
+        while ( true ) {
+            int index = (int) (position & mask);
+            long difference = sequences.get( index ) - (position + 1);
+            if ( difference == 0 ) {
+                if ( head.compareAndSet( position, position + 1 ) ) {
+                    E element = slots.get( index );
+                    slots.lazySet( index, null );
+                    sequences.set( index, position + mask + 1 );
+                    return element;
+                }
+            } else if ( difference < 0 ) {
+                return null;
+            }
+            position = head.get();
+        }
+    }
+
+
+    /**
+     * Moves up to the given number of elements into the target list.
+     *
+     * @return the number of moved elements
+     */
+    int drainTo( List<E> target, int maxElements ) {
+        int count = 0;
+        while ( count < maxElements ) {
+            E element = poll();
+            if ( element == null ) {
+                break;
+            }
+            target.add( element );
+            count++;
+        }
+        return count;
+    }
+
+
+    /**
+     * Returns up to the given number of the oldest elements without removing them. Elements concurrently consumed
+     * might be missing.
+     */
+    List<E> peek( int maxElements ) {
+        List<E> elements = new ArrayList<>();
+        long end = Math.min( tail.get(), head.get() + maxElements );
+        for ( long position = head.get(); position < end; position++ ) {
+            E element = slots.get( (int) (position & mask) );
+            if ( element != null ) {
+                elements.add( element );
+            }
+        }
+        return elements;
+    }
+
+
+    int size() {
+        // Read head first, so that the difference is never negative
+        long currentHead = head.get();
+        return (int) Math.max( 0, Math.min( capacity(), tail.get() - currentHead ) );
+    }
+
+
+    int capacity() {
+        return mask + 1;
+    }
+
+}
@@ -24,6 +24,8 @@
 import org.polypheny.db.monitoring.events.MonitoringDataPoint;
 import org.polypheny.db.monitoring.events.MonitoringEvent;
 import org.polypheny.db.monitoring.events.QueryPostCost;
+import org.polypheny.db.monitoring.repository.MonitoringRollup;
+import org.polypheny.db.monitoring.repository.MonitoringRollup.Resolution;
 import org.polypheny.db.monitoring.repository.PersistentMonitoringRepository;
 
 
@@ -75,6 +77,12 @@ public <T extends MonitoringDataPoint> List<T> getDataPointsAfter( @NonNull Clas
     }
 
 
+    @Override
+    public List<MonitoringRollup> getRollups( @NonNull Resolution resolution, @NonNull Timestamp from, @NonNull Timestamp to ) {
+        return this.repository.getRollups( resolution, from, to );
+    }
+
+
     @Override
     public long getNumberOfElementsInQueue() {
         return monitoringQueue.getNumberOfElementsInQueue();
@@ -35,4 +35,12 @@ public static MonitoringService getInstance() {
         return INSTANCE;
     }
 
+
+    /**
+     * @return true if the monitoring service has already been created, i.e. calling {@link #getInstance()} has no side effects
+     */
+    public static boolean isInitialized() {
+        return INSTANCE != null;
+    }
+
 }
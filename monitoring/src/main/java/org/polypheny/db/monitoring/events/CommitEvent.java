@@ -0,0 +1,62 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.monitoring.events;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.Getter;
+import lombok.Setter;
+import org.polypheny.db.monitoring.events.analyzer.CommitEventAnalyzer;
+import org.polypheny.db.monitoring.events.metrics.CommitDataPoint;
+
+
+/**
+ * Event describing one phase of the (two-phase) commit of a transaction. Contains the latency of every involved adapter.
+ */
+@Setter
+@Getter
+public class CommitEvent extends BaseEvent {
+
+    private String phase;
+    private String transactionId;
+    private boolean successful;
+    // Latency in nanoseconds per adapter unique name
+    private final Map<String, Long> latencies = new HashMap<>();
+
+
+    @Override
+    public <T extends MonitoringDataPoint> List<Class<T>> getMetrics() {
+        return Arrays.asList( (Class<T>) CommitDataPoint.class );
+    }
+
+
+    @Override
+    public <T extends MonitoringDataPoint> List<Class<T>> getOptionalMetrics() {
+        return Collections.emptyList();
+    }
+
+
+    @Override
+    public List<MonitoringDataPoint> analyze() {
+        return CommitEventAnalyzer.analyze( this );
+    }
+
+}
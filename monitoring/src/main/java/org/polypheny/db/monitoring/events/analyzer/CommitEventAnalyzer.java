@@ -0,0 +1,46 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.monitoring.events.analyzer;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import org.polypheny.db.monitoring.events.CommitEvent;
+import org.polypheny.db.monitoring.events.MonitoringDataPoint;
+import org.polypheny.db.monitoring.events.metrics.CommitDataPoint;
+
+public class CommitEventAnalyzer {
+
+    public static List<MonitoringDataPoint> analyze( CommitEvent commitEvent ) {
+        return commitEvent.getLatencies()
+                .entrySet()
+                .stream()
+                .map( e -> CommitDataPoint
+                        .builder()
+                        .Id( UUID.randomUUID() )
+                        .recordedTimestamp( commitEvent.getRecordedTimestamp() )
+                        .isCommitted( commitEvent.isSuccessful() )
+                        .transactionId( commitEvent.getTransactionId() )
+                        .phase( commitEvent.getPhase() )
+                        .adapterName( e.getKey() )
+                        .latency( e.getValue() )
+                        .build() )
+                .collect( Collectors.toList() );
+    }
+
+}
@@ -44,9 +44,7 @@ public AlphabeticStatisticColumn( QueryResult column ) {
     @Override
     public void insert( T val ) {
         if ( uniqueValues.size() < RuntimeConfig.STATISTIC_BUFFER.getInteger() ) {
-            if ( !uniqueValues.contains( val ) ) {
-                uniqueValues.add( val );
-            }
+            addUniqueValue( val );
         } else {
             full = true;
             if ( uniqueValuesCache.size() < (RuntimeConfig.STATISTIC_BUFFER.getInteger() * 2) ) {
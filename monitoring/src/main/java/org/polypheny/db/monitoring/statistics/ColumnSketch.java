@@ -0,0 +1,217 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.monitoring.statistics;
+
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import lombok.Getter;
+import org.polypheny.db.util.DateString;
+import org.polypheny.db.util.TimeString;
+import org.polypheny.db.util.TimestampString;
+
+
+/**
+ * Mergeable summary of the values of a column: a {@link HyperLogLog} sketch for the number of distinct values, a
+ * {@link KllSketch} for the distribution of numeric and temporal values and {@link HeavyHitters} for the most frequent
+ * values. The sketches are updated with every inserted value and therefore do not require scanning the column.
+ *
+ * Deleted values cannot be removed from the sketches; the estimates are therefore upper bounds after deletes.
+ */
+public class ColumnSketch implements Serializable {
+
+    private static final long serialVersionUID = 6079626003620185129L;
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    private static final int HLL_PRECISION = 12;
+    private static final int KLL_K = 200;
+    private static final int COUNT_MIN_WIDTH = 512;
+    private static final int HEAVY_HITTERS = 10;
+
+    @Getter
+    private long count;
+    @Getter
+    private long nullCount;
+    // Whether the distinct values of all values present when the sketch was created have been added
+    @Getter
+    private boolean seeded;
+    private final HyperLogLog distinct = new HyperLogLog( HLL_PRECISION );
+    private final HeavyHitters frequent = new HeavyHitters( COUNT_MIN_WIDTH, HEAVY_HITTERS );
+    // Only created once a numeric or temporal value has been added
+    private KllSketch quantiles;
+
+
+    public synchronized void update( Collection<?> values ) {
+        for ( Object value : values ) {
+            update( value );
+        }
+    }
+
+
+    public synchronized void update( Object value ) {
+        count++;
+        if ( value == null ) {
+            nullCount++;
+            return;
+        }
+        long hash = hash( value );
+        distinct.add( hash );
+        frequent.add( value instanceof Serializable ? value : value.toString(), hash );
+        double numeric = toDouble( value );
+        if ( !Double.isNaN( numeric ) ) {
+            if ( quantiles == null ) {
+                quantiles = new KllSketch( KLL_K );
+            }
+            quantiles.update( numeric );
+        }
+    }
+
+
+    /**
+     * Adds values to the distinct value estimation only, used to seed the sketch with the exact unique values
+     * of a column.
+     */
+    public synchronized void seedDistinct( Collection<?> values ) {
+        for ( Object value : values ) {
+            if ( value != null ) {
+                distinct.add( hash( value ) );
+            }
+        }
+        seeded = true;
+    }
+
+
+    public synchronized void merge( ColumnSketch other ) {
+        synchronized ( other ) {
+            count += other.count;
+            nullCount += other.nullCount;
+            seeded &= other.seeded;
+            distinct.merge( other.distinct );
+            frequent.merge( other.frequent );
+            if ( other.quantiles != null ) {
+                if ( quantiles == null ) {
+                    quantiles = new KllSketch( KLL_K );
+                }
+                quantiles.merge( other.quantiles );
+            }
+        }
+    }
+
+
+    public synchronized long getDistinctCount() {
+        return distinct.estimate();
+    }
+
+
+    /**
+     * @return the estimated number of occurrences of the given value
+     */
+    public synchronized long getFrequency( Object value ) {
+        if ( value == null ) {
+            return nullCount;
+        }
+        return frequent.estimate( hash( value ) );
+    }
+
+
+    /**
+     * @return the most frequent values and their estimated number of occurrences
+     */
+    public synchronized Map<Object, Long> getFrequentValues() {
+        return frequent.getTop();
+    }
+
+
+    /**
+     * @return the approximated value at the given rank or NaN if the column is neither numeric nor temporal
+     */
+    public synchronized double getQuantile( double fraction ) {
+        return quantiles == null ? Double.NaN : quantiles.getQuantile( fraction );
+    }
+
+
+    /**
+     * @return the approximated fraction of non-null values smaller than or equal to the given value or NaN if unknown
+     */
+    public synchronized double getRank( Object value ) {
+        double numeric = toDouble( value );
+        return quantiles == null || Double.isNaN( numeric ) ? Double.NaN : quantiles.getRank( numeric );
+    }
+
+
+    public synchronized double[] getHistogram( int buckets ) {
+        return quantiles == null ? new double[0] : quantiles.getHistogram( buckets );
+    }
+
+
+    private synchronized void writeObject( ObjectOutputStream out ) throws IOException {
+        // Prevents concurrent updates while the sketch is written
+        out.defaultWriteObject();
+    }
+
+
+    /**
+     * Hashes a value such that equal values of different numeric types result in the same hash.
+     */
+    static long hash( Object value ) {
+        if ( value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte ) {
+            return HASH_FUNCTION.hashLong( ((Number) value).longValue() ).asLong();
+        } else if ( value instanceof BigDecimal ) {
+            BigDecimal decimal = ((BigDecimal) value).stripTrailingZeros();
+            if ( decimal.scale() <= 0 && decimal.precision() - decimal.scale() <= 18 ) {
+                return HASH_FUNCTION.hashLong( decimal.longValue() ).asLong();
+            }
+            return HASH_FUNCTION.hashLong( Double.doubleToLongBits( decimal.doubleValue() ) ).asLong();
+        } else if ( value instanceof Number ) {
+            double d = ((Number) value).doubleValue();
+            if ( d == Math.rint( d ) && Math.abs( d ) < Long.MAX_VALUE ) {
+                return HASH_FUNCTION.hashLong( (long) d ).asLong();
+            }
+            return HASH_FUNCTION.hashLong( Double.doubleToLongBits( d ) ).asLong();
+        }
+        return HASH_FUNCTION.hashString( value.toString(), StandardCharsets.UTF_8 ).asLong();
+    }
+
+
+    /**
+     * @return the value as double or NaN if the value is neither numeric nor temporal
+     */
+    static double toDouble( Object value ) {
+        if ( value instanceof Number ) {
+            return ((Number) value).doubleValue();
+        } else if ( value instanceof java.util.Date ) {
+            return ((java.util.Date) value).getTime();
+        } else if ( value instanceof TimestampString ) {
+            return ((TimestampString) value).getMillisSinceEpoch();
+        } else if ( value instanceof DateString ) {
+            return ((DateString) value).getMillisSinceEpoch();
+        } else if ( value instanceof TimeString ) {
+            return ((TimeString) value).getMillisOfDay();
+        }
+        return Double.NaN;
+    }
+
+}
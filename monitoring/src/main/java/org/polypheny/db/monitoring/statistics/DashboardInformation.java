@@ -76,8 +76,8 @@ public void updatePolyphenyStatistic() {
         Catalog catalog = Catalog.getInstance();
         this.catalogPersistent = catalog.isPersistent;
 
-        this.numberOfQueries = MonitoringServiceProvider.getInstance().getAllDataPoints( QueryDataPointImpl.class ).size();
-        this.numberOfWorkloads = MonitoringServiceProvider.getInstance().getAllDataPoints( DmlDataPoint.class ).size();
+        this.numberOfQueries = (int) MonitoringServiceProvider.getInstance().getNumberOfDataPoints( QueryDataPointImpl.class );
+        this.numberOfWorkloads = (int) MonitoringServiceProvider.getInstance().getNumberOfDataPoints( DmlDataPoint.class );
         this.numberOfPendingEvents = MonitoringServiceProvider.getInstance().getNumberOfElementsInQueue();
 
         catalog.getAdapters().forEach( v -> {
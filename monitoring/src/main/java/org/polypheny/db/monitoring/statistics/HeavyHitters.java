@@ -0,0 +1,133 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.monitoring.statistics;
+
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+
+/**
+ * Count-Min sketch combined with a bounded list of heavy hitters. The Count-Min sketch estimates the frequency of any
+ * value (never underestimating it), the heavy hitters are the values with the highest estimated frequency seen so far.
+ */
+public class HeavyHitters implements Serializable {
+
+    private static final long serialVersionUID = -2816417750390566052L;
+
+    private static final int DEPTH = 4;
+
+    private final int width;
+    private final int capacity;
+    private final long[][] counters;
+    private final Map<Object, Long> candidates = new HashMap<>();
+
+
+    /**
+     * @param width number of counters per row, has to be a power of two
+     * @param capacity number of heavy hitters which are tracked
+     */
+    public HeavyHitters( int width, int capacity ) {
+        if ( Integer.bitCount( width ) != 1 ) {
+            throw new IllegalArgumentException( "The width of a Count-Min sketch has to be a power of two." );
+        }
+        this.width = width;
+        this.capacity = capacity;
+        this.counters = new long[DEPTH][width];
+    }
+
+
+    public void add( Object value, long hash ) {
+        for ( int row = 0; row < DEPTH; row++ ) {
+            counters[row][index( hash, row )]++;
+        }
+        offer( value, estimate( hash ) );
+    }
+
+
+    public long estimate( long hash ) {
+        long estimate = Long.MAX_VALUE;
+        for ( int row = 0; row < DEPTH; row++ ) {
+            estimate = Math.min( estimate, counters[row][index( hash, row )] );
+        }
+        return estimate;
+    }
+
+
+    public void merge( HeavyHitters other ) {
+        if ( other.width != width ) {
+            throw new IllegalArgumentException( "Only Count-Min sketches of the same width can be merged." );
+        }
+        for ( int row = 0; row < DEPTH; row++ ) {
+            for ( int i = 0; i < width; i++ ) {
+                counters[row][i] += other.counters[row][i];
+            }
+        }
+        // The frequencies of all candidates have to be estimated again using the merged counters
+        List<Object> values = new ArrayList<>( candidates.keySet() );
+        values.addAll( other.candidates.keySet() );
+        candidates.clear();
+        for ( Object value : values ) {
+            offer( value, estimate( ColumnSketch.hash( value ) ) );
+        }
+    }
+
+
+    /**
+     * @return the heavy hitters and their estimated frequency, ordered by descending frequency
+     */
+    public Map<Object, Long> getTop() {
+        Map<Object, Long> result = new LinkedHashMap<>();
+        candidates.entrySet()
+                .stream()
+                .sorted( Entry.<Object, Long>comparingByValue().reversed() )
+                .forEach( e -> result.put( e.getKey(), e.getValue() ) );
+        return result;
+    }
+
+
+    private void offer( Object value, long estimate ) {
+        if ( candidates.containsKey( value ) || candidates.size() < capacity ) {
+            candidates.put( value, estimate );
+            return;
+        }
+        Entry<Object, Long> smallest = null;
+        for ( Entry<Object, Long> entry : candidates.entrySet() ) {
+            if ( smallest == null || entry.getValue() < smallest.getValue() ) {
+                smallest = entry;
+            }
+        }
+        if ( smallest != null && smallest.getValue() < estimate ) {
+            candidates.remove( smallest.getKey() );
+            candidates.put( value, estimate );
+        }
+    }
+
+
+    private int index( long hash, int row ) {
+        // Derive the row hashes from the two halves of the hash (Kirsch-Mitzenmacher)
+        int combined = (int) hash + row * (int) (hash >>> 32);
+        return (combined ^ (combined >>> 16)) & (width - 1);
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.monitoring.statistics;
+
+
+import java.io.Serializable;
+
+
+/**
+ * HyperLogLog sketch estimating the number of distinct values. The sketch only consumes 64-bit hashes of the values
+ * and can be merged with other sketches of the same precision.
+ */
+public class HyperLogLog implements Serializable {
+
+    private static final long serialVersionUID = -1748395034837245411L;
+
+    private final int precision;
+    private final byte[] registers;
+
+
+    /**
+     * @param precision number of bits used to select the register, the relative error is about 1.04 / sqrt(2^precision)
+     */
+    public HyperLogLog( int precision ) {
+        if ( precision < 4 || precision > 18 ) {
+            throw new IllegalArgumentException( "The precision of a HyperLogLog sketch has to be between 4 and 18." );
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+
+    public void add( long hash ) {
+        int index = (int) (hash >>> (64 - precision));
+        // Position of the leftmost one bit in the remaining bits, the sentinel bit bounds the result
+        long remaining = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros( remaining ) + 1);
+        if ( rank > registers[index] ) {
+            registers[index] = rank;
+        }
+    }
+
+
+    public void merge( HyperLogLog other ) {
+        if ( other.precision != precision ) {
+            throw new IllegalArgumentException( "Only HyperLogLog sketches of the same precision can be merged." );
+        }
+        for ( int i = 0; i < registers.length; i++ ) {
+            if ( other.registers[i] > registers[i] ) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for ( byte register : registers ) {
+            sum += 1.0 / (1L << register);
+            if ( register == 0 ) {
+                zeros++;
+            }
+        }
+        double alpha = 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        if ( estimate <= 2.5 * m && zeros > 0 ) {
+            // Linear counting is more accurate for small cardinalities
+            estimate = m * Math.log( (double) m / zeros );
+        }
+        return Math.round( estimate );
+    }
+
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.monitoring.statistics;
+
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+
+/**
+ * KLL sketch approximating the distribution of numeric values. Values are kept in a hierarchy of compactors; an item
+ * on level h represents 2^h values of the stream. If a level exceeds its capacity, it is sorted and every other item
+ * is promoted to the next level. The capacity shrinks geometrically towards the lower levels, which bounds the size of
+ * the sketch to about 3k items independently of the number of values.
+ */
+public class KllSketch implements Serializable {
+
+    private static final long serialVersionUID = 5514372811730953604L;
+
+    private final int k;
+    private final List<double[]> levels = new ArrayList<>();
+    private final List<Integer> sizes = new ArrayList<>();
+    private final Random random = new Random();
+    private long count;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+
+
+    public KllSketch( int k ) {
+        this.k = k;
+        addLevel();
+    }
+
+
+    public void update( double value ) {
+        if ( Double.isNaN( value ) ) {
+            return;
+        }
+        count++;
+        min = Double.isNaN( min ) ? value : Math.min( min, value );
+        max = Double.isNaN( max ) ? value : Math.max( max, value );
+        append( 0, value );
+        compress();
+    }
+
+
+    public void merge( KllSketch other ) {
+        if ( other.count == 0 ) {
+            return;
+        }
+        for ( int h = 0; h < other.levels.size(); h++ ) {
+            double[] items = other.levels.get( h );
+            for ( int i = 0; i < other.sizes.get( h ); i++ ) {
+                append( h, items[i] );
+            }
+        }
+        count += other.count;
+        min = Double.isNaN( min ) ? other.min : Math.min( min, other.min );
+        max = Double.isNaN( max ) ? other.max : Math.max( max, other.max );
+        compress();
+    }
+
+
+    public long getCount() {
+        return count;
+    }
+
+
+    /**
+     * @param fraction the rank of the requested value between 0 and 1
+     * @return the approximated value at the given rank or NaN if the sketch is empty
+     */
+    public double getQuantile( double fraction ) {
+        if ( count == 0 ) {
+            return Double.NaN;
+        }
+        if ( fraction <= 0 ) {
+            return min;
+        }
+        if ( fraction >= 1 ) {
+            return max;
+        }
+        double[][] weighted = getWeightedItems();
+        long total = 0;
+        for ( double[] item : weighted ) {
+            total += (long) item[1];
+        }
+        double target = fraction * total;
+        long cumulative = 0;
+        for ( double[] item : weighted ) {
+            cumulative += (long) item[1];
+            if ( cumulative >= target ) {
+                return item[0];
+            }
+        }
+        return max;
+    }
+
+
+    /**
+     * @return the approximated fraction of values which are smaller than or equal to the given value
+     */
+    public double getRank( double value ) {
+        if ( count == 0 ) {
+            return Double.NaN;
+        }
+        long total = 0;
+        long below = 0;
+        for ( int h = 0; h < levels.size(); h++ ) {
+            double[] items = levels.get( h );
+            for ( int i = 0; i < sizes.get( h ); i++ ) {
+                total += 1L << h;
+                if ( items[i] <= value ) {
+                    below += 1L << h;
+                }
+            }
+        }
+        return (double) below / total;
+    }
+
+
+    /**
+     * @return the boundaries of an equi-depth histogram with the given number of buckets
+     */
+    public double[] getHistogram( int buckets ) {
+        double[] boundaries = new double[buckets + 1];
+        for ( int i = 0; i <= buckets; i++ ) {
+            boundaries[i] = getQuantile( (double) i / buckets );
+        }
+        return boundaries;
+    }
+
+
+    private double[][] getWeightedItems() {
+        List<double[]> items = new ArrayList<>();
+        for ( int h = 0; h < levels.size(); h++ ) {
+            double[] level = levels.get( h );
+            for ( int i = 0; i < sizes.get( h ); i++ ) {
+                items.add( new double[]{ level[i], 1L << h } );
+            }
+        }
+        double[][] result = items.toArray( new double[0][] );
+        Arrays.sort( result, ( a, b ) -> Double.compare( a[0], b[0] ) );
+        return result;
+    }
+
+
+    private int capacity( int level ) {
+        int depth = levels.size() - level - 1;
+        return Math.max( 2, (int) Math.ceil( k * Math.pow( 2.0 / 3.0, depth ) ) );
+    }
+
+
+    private void append( int level, double value ) {
+        while ( levels.size() <= level ) {
+            addLevel();
+        }
+        double[] items = levels.get( level );
+        int size = sizes.get( level );
+        if ( size == items.length ) {
+            items = Arrays.copyOf( items, items.length * 2 );
+            levels.set( level, items );
+        }
+        items[size] = value;
+        sizes.set( level, size + 1 );
+    }
+
+
+    private void compress() {
+        while ( true ) {
+            int total = 0;
+            int capacity = 0;
+            for ( int h = 0; h < levels.size(); h++ ) {
+                total += sizes.get( h );
+                capacity += capacity( h );
+            }
+            if ( total <= capacity ) {
+                return;
+            }
+            for ( int h = 0; h < levels.size(); h++ ) {
+                if ( sizes.get( h ) >= capacity( h ) ) {
+                    compact( h );
+                    break;
+                }
+            }
+        }
+    }
+
+
+    private void compact( int level ) {
+        double[] items = levels.get( level );
+        int size = sizes.get( level );
+        Arrays.sort( items, 0, size );
+        // With an odd number of items, the smallest one stays on this level
+        int odd = size % 2;
+        for ( int i = odd + random.nextInt( 2 ); i < size; i += 2 ) {
+            append( level + 1, items[i] );
+        }
+        sizes.set( level, odd );
+    }
+
+
+    private void addLevel() {
+        levels.add( new double[Math.max( 2, k )] );
+        sizes.add( 0 );
+    }
+
+}
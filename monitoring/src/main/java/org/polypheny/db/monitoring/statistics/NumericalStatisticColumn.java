@@ -18,9 +18,7 @@
 
 
 import com.google.gson.annotations.Expose;
-import java.util.Comparator;
 import java.util.List;
-import java.util.TreeSet;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
@@ -44,12 +42,6 @@ public class NumericalStatisticColumn extends StatisticColumn<Number> {
     @Setter
     private Number max;
 
-    @Getter
-    private final TreeSet<Number> minCache = new TreeSet<>( Comparator.comparingDouble( Number::doubleValue ) );
-    @Getter
-    private final TreeSet<Number> maxCache = new TreeSet<>( Comparator.comparingDouble( Number::doubleValue ) );
-
-
     public NumericalStatisticColumn( QueryResult column ) {
         super( column.getSchemaId(), column.getTableId(), column.getColumnId(), column.getType(), StatisticType.NUMERICAL );
     }
@@ -70,13 +62,7 @@ public void insert( List<Number> values ) {
     @Override
     public void insert( Number val ) {
         if ( uniqueValues.size() < RuntimeConfig.STATISTIC_BUFFER.getInteger() ) {
-            if ( !uniqueValues.contains( val ) ) {
-                if ( !uniqueValues.isEmpty() ) {
-                    uniqueValues.add( val );
-                }
-                minCache.add( val );
-                maxCache.add( val );
-            }
+            addUniqueValue( val );
         } else {
             full = true;
         }
@@ -89,23 +75,9 @@ public void insert( Number val ) {
             max = val;
         } else if ( val.doubleValue() < min.doubleValue() ) {
             this.min = val;
-        } else if ( val.doubleValue() > min.doubleValue() ) {
+        } else if ( val.doubleValue() > max.doubleValue() ) {
             this.max = val;
         }
-
-        if ( minCache.last().doubleValue() > val.doubleValue() ) {
-            if ( minCache.size() > RuntimeConfig.STATISTIC_BUFFER.getInteger() ) {
-                minCache.remove( minCache.last() );
-            }
-            minCache.add( val );
-        }
-
-        if ( maxCache.first().doubleValue() < val.doubleValue() ) {
-            if ( maxCache.size() > RuntimeConfig.STATISTIC_BUFFER.getInteger() ) {
-                maxCache.remove( maxCache.first() );
-            }
-            maxCache.add( val );
-        }
     }
 
 
@@ -20,7 +20,9 @@
 import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.SerializedName;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import lombok.Getter;
 import lombok.Setter;
 import org.polypheny.db.catalog.Catalog;
@@ -69,9 +71,11 @@
 
     @Expose
     @Getter
-    @Setter
     protected List<T> uniqueValues = new ArrayList<>();
 
+    // Allows to check whether a value is already contained in uniqueValues without scanning the list
+    private transient Set<T> uniqueValueSet = new HashSet<>();
+
     @Expose
     @Getter
     @Setter
@@ -95,6 +99,29 @@ public StatisticColumn( long schemaId, long tableId, long columnId, PolyType typ
     }
 
 
+    public void setUniqueValues( List<T> uniqueValues ) {
+        this.uniqueValues = uniqueValues;
+        this.uniqueValueSet = new HashSet<>( uniqueValues );
+    }
+
+
+    /**
+     * Adds the value to the unique values if it is not contained yet.
+     *
+     * @return true if the value has been added
+     */
+    protected boolean addUniqueValue( T value ) {
+        if ( uniqueValueSet == null ) {
+            uniqueValueSet = new HashSet<>( uniqueValues );
+        }
+        if ( uniqueValueSet.add( value ) ) {
+            uniqueValues.add( value );
+            return true;
+        }
+        return false;
+    }
+
+
     public String getQualifiedColumnName() {
         return this.schema + "." + this.table + "." + this.column;
     }
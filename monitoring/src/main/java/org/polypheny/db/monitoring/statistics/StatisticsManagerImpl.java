@@ -20,7 +20,17 @@
 import com.google.common.collect.Lists;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeSupport;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.sql.Date;
 import java.sql.Timestamp;
 import java.util.ArrayList;
@@ -35,6 +45,7 @@
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import lombok.Getter;
@@ -80,11 +91,13 @@
 import org.polypheny.db.tools.AlgBuilder;
 import org.polypheny.db.transaction.Statement;
 import org.polypheny.db.transaction.Transaction;
+import org.polypheny.db.transaction.TransactionException;
 import org.polypheny.db.type.PolyType;
 import org.polypheny.db.type.PolyTypeFamily;
 import org.polypheny.db.util.DateTimeStringUtils;
 import org.polypheny.db.util.ImmutableBitSet;
 import org.polypheny.db.util.Pair;
+import org.polypheny.db.util.PolyphenyHomeDirManager;
 import org.polypheny.db.util.background.BackgroundTask.TaskPriority;
 import org.polypheny.db.util.background.BackgroundTask.TaskSchedulingType;
 import org.polypheny.db.util.background.BackgroundTaskManager;
@@ -97,6 +110,13 @@
 @Slf4j
 public class StatisticsManagerImpl extends StatisticsManager {
 
+    private static final String SKETCH_FOLDER = "statistics";
+    private static final String SKETCH_FILE = "sketches";
+    // Minimal number of tracked values before a sketch is used to estimate selectivities
+    private static final int MIN_SKETCH_VALUES = 100;
+    // Row count changes of smaller tables are compared against this number of rows
+    private static final int MIN_DRIFT_ROWS = 100;
+
     private static StatisticQueryProcessor statisticQueryInterface;
 
     private final ExecutorService threadPool = Executors.newSingleThreadExecutor();
@@ -119,6 +139,13 @@ public class StatisticsManagerImpl extends StatisticsManager {
 
     private final Queue<Long> tablesToUpdate = new ConcurrentLinkedQueue<>();
 
+    // Sketches per table and column, kept apart from the statistic columns so that they survive reevaluations
+    private final Map<Long, Map<Long, ColumnSketch>> columnSketches = new ConcurrentHashMap<>();
+    private volatile boolean sketchesChanged = false;
+    // Row count of the tables when the plans involving them have been invalidated last
+    private final Map<Long, Integer> plannedRowCounts = new ConcurrentHashMap<>();
+    private File sketchFile;
+
     private Transaction transaction;
     private Statement statement;
 
@@ -135,6 +162,7 @@ public StatisticsManagerImpl( StatisticQueryProcessor statisticQueryProcessor )
     @Override
     public void initializeStatisticSettings() {
         this.dashboardInformation = new DashboardInformation();
+        loadSketches();
         displayInformation();
         registerTaskTracking();
         registerIsFullTracking();
@@ -207,6 +235,208 @@ public void setQueryInterface( StatisticQueryProcessor statisticQueryProcessor )
     }
 
 
+    /**
+     * Loads the persisted column sketches and registers the task which persists them regularly. This allows to keep
+     * the sketches across restarts without scanning the data again.
+     */
+    private void loadSketches() {
+        File folder = PolyphenyHomeDirManager.getInstance().registerNewFolder( SKETCH_FOLDER );
+        sketchFile = new File( folder, SKETCH_FILE );
+
+        if ( Catalog.resetCatalog && sketchFile.exists() ) {
+            sketchFile.delete();
+        }
+        if ( sketchFile.exists() ) {
+            try ( ObjectInputStream in = new ObjectInputStream( new BufferedInputStream( new FileInputStream( sketchFile ) ) ) ) {
+                Map<Long, Map<Long, ColumnSketch>> persisted = (Map<Long, Map<Long, ColumnSketch>>) in.readObject();
+                persisted.forEach( ( tableId, sketches ) -> {
+                    if ( Catalog.getInstance().checkIfExistsEntity( tableId ) ) {
+                        columnSketches.put( tableId, new ConcurrentHashMap<>( sketches ) );
+                    }
+                } );
+            } catch ( IOException | ClassNotFoundException | ClassCastException e ) {
+                log.warn( "Unable to load the persisted column sketches, they are rebuilt from the changes.", e );
+            }
+        }
+
+        BackgroundTaskManager.INSTANCE.registerTask(
+                this::persistSketches,
+                "Persist column sketches",
+                TaskPriority.LOW,
+                TaskSchedulingType.EVERY_MINUTE );
+        Runtime.getRuntime().addShutdownHook( new Thread( this::persistSketches ) );
+    }
+
+
+    /**
+     * Writes the column sketches to disk if they have changed since they have been written last.
+     */
+    private synchronized void persistSketches() {
+        if ( !sketchesChanged || sketchFile == null ) {
+            return;
+        }
+        sketchesChanged = false;
+        Map<Long, Map<Long, ColumnSketch>> snapshot = new HashMap<>();
+        columnSketches.forEach( ( tableId, sketches ) -> snapshot.put( tableId, new HashMap<>( sketches ) ) );
+
+        File tmp = new File( sketchFile.getParentFile(), SKETCH_FILE + ".tmp" );
+        try ( ObjectOutputStream out = new ObjectOutputStream( new BufferedOutputStream( new FileOutputStream( tmp ) ) ) ) {
+            out.writeObject( snapshot );
+        } catch ( IOException e ) {
+            log.warn( "Unable to persist the column sketches.", e );
+            sketchesChanged = true;
+            return;
+        }
+        try {
+            Files.move( tmp.toPath(), sketchFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        } catch ( IOException e ) {
+            log.warn( "Unable to persist the column sketches.", e );
+            sketchesChanged = true;
+        }
+    }
+
+
+    /**
+     * Returns the sketch of the given column.
+     *
+     * @return the sketch or null if no values of this column have been tracked
+     */
+    public ColumnSketch getColumnSketch( long tableId, long columnId ) {
+        Map<Long, ColumnSketch> sketches = columnSketches.get( tableId );
+        return sketches == null ? null : sketches.get( columnId );
+    }
+
+
+    @Override
+    public Double getDistinctCount( long tableId, long columnId ) {
+        ColumnSketch sketch = getColumnSketch( tableId, columnId );
+        if ( sketch == null ) {
+            return null;
+        }
+        // Values inserted before the tracking started are missing in the sketch, unless it has been seeded
+        if ( !sketch.isSeeded() && !coversTable( tableId, sketch ) ) {
+            return null;
+        }
+        long distinct = sketch.getDistinctCount();
+        return distinct > 0 ? (double) distinct : null;
+    }
+
+
+    @Override
+    public Double getEqualitySelectivity( long tableId, long columnId, Object value ) {
+        ColumnSketch sketch = getSampledSketch( tableId, columnId );
+        if ( sketch == null ) {
+            return null;
+        }
+        return (double) Math.max( 1, sketch.getFrequency( value ) ) / sketch.getCount();
+    }
+
+
+    @Override
+    public Double getRangeSelectivity( long tableId, long columnId, Object value ) {
+        ColumnSketch sketch = getSampledSketch( tableId, columnId );
+        if ( sketch == null ) {
+            return null;
+        }
+        double rank = sketch.getRank( value );
+        if ( Double.isNaN( rank ) ) {
+            return null;
+        }
+        return rank * (sketch.getCount() - sketch.getNullCount()) / sketch.getCount();
+    }
+
+
+    @Override
+    public Double getNullFraction( long tableId, long columnId ) {
+        ColumnSketch sketch = getSampledSketch( tableId, columnId );
+        return sketch == null ? null : (double) sketch.getNullCount() / sketch.getCount();
+    }
+
+
+    /**
+     * Returns the sketch of the column if it has tracked enough values to serve as a sample of the column. Seeding
+     * only covers the distinct values, the frequencies and quantiles are always taken from the tracked values.
+     */
+    private ColumnSketch getSampledSketch( long tableId, long columnId ) {
+        ColumnSketch sketch = getColumnSketch( tableId, columnId );
+        if ( sketch == null || sketch.getCount() < MIN_SKETCH_VALUES || !coversTable( tableId, sketch ) ) {
+            return null;
+        }
+        return sketch;
+    }
+
+
+    /**
+     * Whether the sketch has tracked at least half as many values as the table has rows. Otherwise, it has only
+     * seen the most recent inserts into a table that already contained rows before the tracking started.
+     */
+    private boolean coversTable( long tableId, ColumnSketch sketch ) {
+        Integer rowCount = rowCountPerTable( tableId );
+        return rowCount != null && sketch.getCount() >= rowCount / 2;
+    }
+
+
+    /**
+     * Invalidates the cached plans involving the table if its row count has changed by more than
+     * {@link RuntimeConfig#STATISTIC_DRIFT_THRESHOLD} percent since they have been invalidated last.
+     */
+    private void checkDrift( long tableId, int rowCount ) {
+        Integer planned = plannedRowCounts.putIfAbsent( tableId, rowCount );
+        if ( planned == null || statisticQueryInterface == null ) {
+            return;
+        }
+        double threshold = RuntimeConfig.STATISTIC_DRIFT_THRESHOLD.getInteger() / 100.0;
+        if ( Math.abs( rowCount - planned ) > threshold * Math.max( planned, MIN_DRIFT_ROWS ) ) {
+            plannedRowCounts.put( tableId, rowCount );
+            threadPool.execute( () -> invalidatePlans( tableId ) );
+        }
+    }
+
+
+    private void invalidatePlans( long tableId ) {
+        Transaction transaction = getTransaction();
+        try {
+            transaction.createStatement().getQueryProcessor().invalidateCaches( Collections.singletonList( tableId ) );
+        } finally {
+            try {
+                transaction.rollback();
+            } catch ( TransactionException e ) {
+                log.warn( "Unable to rollback the transaction used to invalidate the plans of table {}.", tableId, e );
+            }
+        }
+    }
+
+
+    private void updateSketch( QueryResult queryResult, List<?> values ) {
+        if ( values == null || values.isEmpty() || values.get( 0 ) instanceof List ) {
+            return;
+        }
+        columnSketches
+                .computeIfAbsent( queryResult.getTableId(), k -> new ConcurrentHashMap<>() )
+                .computeIfAbsent( queryResult.getColumnId(), k -> new ColumnSketch() )
+                .update( values );
+        sketchesChanged = true;
+    }
+
+
+    /**
+     * If there is no sketch for the column yet and the column has few enough values that all of them are known,
+     * the distinct value estimation is seeded with these values.
+     */
+    private void seedSketch( QueryResult queryResult, StatisticColumn<?> column ) {
+        if ( column.isFull() || column instanceof TemporalStatisticColumn || column.getUniqueValues().isEmpty() ) {
+            return;
+        }
+        Map<Long, ColumnSketch> sketches = columnSketches.computeIfAbsent( queryResult.getTableId(), k -> new ConcurrentHashMap<>() );
+        if ( !sketches.containsKey( queryResult.getColumnId() ) ) {
+            ColumnSketch sketch = new ColumnSketch();
+            sketch.seedDistinct( column.getUniqueValues() );
+            sketches.put( queryResult.getColumnId(), sketch );
+            sketchesChanged = true;
+        }
+    }
+
+
     /**
      * Registers if on configChange statistics are tracked and displayed or not.
      */
@@ -263,6 +493,7 @@ private void reevaluateAllStatistics() {
             StatisticColumn<?> col = reevaluateColumn( column );
             if ( col != null ) {
                 put( statisticSchemaMapCopy, column, col );
+                seedSketch( column, col );
             }
         }
         reevaluateRowCount();
@@ -311,6 +542,7 @@ public void reevaluateTable( long tableId ) {
                 StatisticColumn<?> col = reevaluateColumn( column );
                 if ( col != null ) {
                     put( column, col );
+                    seedSketch( column, col );
                 }
             }
         }
@@ -736,6 +968,14 @@ public void displayInformation() {
         im.registerInformation( numericalInformation );
         im.registerInformation( alphabeticalInformation );
 
+        InformationGroup sketchGroup = new InformationGroup( page, "Column Sketches" );
+        im.addGroup( sketchGroup );
+
+        InformationTable sketchInformation = new InformationTable(
+                sketchGroup,
+                Arrays.asList( "Column Name", "Values", "Nulls", "Distinct Values", "Median", "95th Percentile", "Frequent Values" ) );
+        im.registerInformation( sketchInformation );
+
         InformationGroup tableSelectGroup = new InformationGroup( page, "Calls per Table" );
         im.addGroup( tableSelectGroup );
 
@@ -774,6 +1014,7 @@ public void displayInformation() {
             tableSelectInformation.reset();
             tableInformation.reset();
             statisticsInformation.reset();
+            sketchInformation.reset();
             statisticSchemaMap.values().forEach( schema -> schema.values().forEach( table -> table.forEach( ( k, v ) -> {
                 if ( v instanceof NumericalStatisticColumn ) {
                     if ( ((NumericalStatisticColumn) v).getMin() != null && ((NumericalStatisticColumn) v).getMax() != null ) {
@@ -804,6 +1045,18 @@ public void displayInformation() {
                 }
                 statisticsInformation.addRow( v.getQualifiedColumnName(), v.getType().name() );
 
+                ColumnSketch sketch = getColumnSketch( v.getTableId(), v.getColumnId() );
+                if ( sketch != null ) {
+                    sketchInformation.addRow(
+                            v.getQualifiedColumnName(),
+                            sketch.getCount(),
+                            sketch.getNullCount(),
+                            sketch.getDistinctCount(),
+                            formatQuantile( sketch.getQuantile( 0.5 ) ),
+                            formatQuantile( sketch.getQuantile( 0.95 ) ),
+                            sketch.getFrequentValues().entrySet().stream().limit( 5 ).map( e -> e.getKey() + " (" + e.getValue() + ")" ).collect( Collectors.joining( ", " ) ) );
+                }
+
             } ) ) );
 
             tableStatistic.forEach( ( k, v ) -> {
@@ -822,6 +1075,11 @@ public void displayInformation() {
     }
 
 
+    private static String formatQuantile( double value ) {
+        return Double.isNaN( value ) ? "-" : String.valueOf( value );
+    }
+
+
     /**
      * Reevaluates all statistics that can be updated using nodes.
      */
@@ -904,10 +1162,17 @@ private void handleDrop( long tableId, Map<Long, List<Object>> changedValues, lo
                 table.remove( changedValues.keySet().stream().findFirst().get() );
             }
         }
+        Map<Long, ColumnSketch> sketches = columnSketches.get( tableId );
+        if ( sketches != null ) {
+            sketches.remove( changedValues.keySet().stream().findFirst().get() );
+            sketchesChanged = true;
+        }
     }
 
 
     private void handleTruncate( long tableId, long schemaId, Catalog catalog ) {
+        columnSketches.remove( tableId );
+        sketchesChanged = true;
         CatalogTable catalogTable = catalog.getTable( tableId );
         for ( int i = 0; i < catalogTable.fieldIds.size(); i++ ) {
             PolyType polyType = catalog.getColumn( catalogTable.fieldIds.get( i ) ).type;
@@ -971,6 +1236,7 @@ private void addInserts( Map<Long, List<Object>> changedValues, Catalog catalog,
 
 
     private void addNewColumnStatistics( Map<Long, List<Object>> changedValues, long i, PolyType polyType, QueryResult queryResult ) {
+        updateSketch( queryResult, changedValues.get( i ) );
         StatisticColumn<?> statisticColumn = createNewStatisticColumns( polyType, queryResult );
         if ( statisticColumn != null ) {
             statisticColumn.insert( (List) changedValues.get( i ) );
@@ -980,6 +1246,7 @@ private void addNewColumnStatistics( Map<Long, List<Object>> changedValues, long
 
 
     private void handleInsertColumn( long tableId, Map<Long, List<Object>> changedValues, long schemaId, List<Long> columns, int i, QueryResult queryResult ) {
+        updateSketch( queryResult, changedValues.get( (long) i ) );
         StatisticColumn<?> statisticColumn = this.statisticSchemaMap.get( schemaId ).get( tableId ).get( columns.get( i ) );
         statisticColumn.insert( (List) changedValues.get( (long) i ) );
         put( queryResult, statisticColumn );
@@ -995,6 +1262,10 @@ public void deleteTableToUpdate( long tableId, long schemaId ) {
             statisticSchemaMap.get( schemaId ).remove( tableId );
         }
         tableStatistic.remove( tableId );
+        plannedRowCounts.remove( tableId );
+        if ( columnSketches.remove( tableId ) != null ) {
+            sketchesChanged = true;
+        }
         if ( tablesToUpdate.contains( tableId ) ) {
             this.tablesToUpdate.remove( tableId );
         }
@@ -1050,6 +1321,7 @@ public void updateRowCountPerTable( long tableId, int number, String source ) {
         }
 
         tableStatistic.put( tableId, statisticTable );
+        checkDrift( tableId, statisticTable.getNumberOfRows() );
     }
 
 
@@ -22,7 +22,6 @@
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.TreeSet;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
@@ -67,12 +66,6 @@ public void setMax( T max ) {
     @Setter
     private String temporalType;
 
-    @Getter
-    public TreeSet<T> minCache = new TreeSet<>();
-    @Getter
-    public TreeSet<T> maxCache = new TreeSet<>();
-
-
     public TemporalStatisticColumn( QueryResult column ) {
         super( column.getSchemaId(), column.getTableId(), column.getColumnId(), column.getType(), StatisticType.TEMPORAL );
         temporalType = column.getType().getFamily().name();
@@ -83,13 +76,7 @@ public TemporalStatisticColumn( QueryResult column ) {
     public void insert( T original ) {
 
         if ( uniqueValues.size() < RuntimeConfig.STATISTIC_BUFFER.getInteger() ) {
-            if ( !uniqueValues.contains( original ) ) {
-                uniqueValues.add( original );
-                if ( original != null ) {
-                    minCache.add( original );
-                    maxCache.add( original );
-                }
-            }
+            addUniqueValue( original );
         } else {
             full = true;
         }
@@ -108,20 +95,6 @@ public void insert( T original ) {
         } else if ( val > maxSinceEpoch ) {
             setMax( original );
         }
-
-        if ( getSinceEpoch( minCache.last() ) > val ) {
-            if ( minCache.size() > RuntimeConfig.STATISTIC_BUFFER.getInteger() ) {
-                minCache.remove( minCache.last() );
-            }
-            minCache.add( original );
-        }
-
-        if ( getSinceEpoch( maxCache.first() ) < val ) {
-            if ( maxCache.size() > RuntimeConfig.STATISTIC_BUFFER.getInteger() ) {
-                maxCache.remove( maxCache.first() );
-            }
-            maxCache.add( original );
-        }
     }
 
 
@@ -122,7 +122,10 @@ public class DbmsMeta implements ProtobufMeta {
      */
     public static final int UNLIMITED_COUNT = -2;
 
-    public static final boolean SEND_FIRST_FRAME_WITH_RESPONSE = false;
+    /**
+     * Upper bound for pre-sizing the list of rows of a frame.
+     */
+    private static final int MAX_FRAME_CAPACITY = 10_000;
 
     private final ConcurrentMap<String, PolyphenyDbConnectionHandle> openConnections = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, PolyphenyDbStatementHandle> openStatements = new ConcurrentHashMap<>();
@@ -1029,14 +1032,19 @@ public ExecuteResult prepareAndExecute( final StatementHandle h, final String sq
     public ExecuteResult prepareAndExecute( final StatementHandle h, final String sql, final long maxRowCount, final int maxRowsInFirstFrame, final PrepareCallback callback ) throws NoSuchStatementException {
         final PolyphenyDbConnectionHandle connection = openConnections.get( h.connectionId );
         synchronized ( connection ) {
-            if ( log.isTraceEnabled() ) {
-                log.trace( "prepareAndExecute( StatementHandle {}, String {}, long {}, int {}, PrepareCallback {} )", h, sql, maxRowCount, maxRowsInFirstFrame, callback );
-            }
+            connection.getTransactionLock().writeLock().lock();
+            try {
+                if ( log.isTraceEnabled() ) {
+                    log.trace( "prepareAndExecute( StatementHandle {}, String {}, long {}, int {}, PrepareCallback {} )", h, sql, maxRowCount, maxRowsInFirstFrame, callback );
+                }
 
-            PolyphenyDbStatementHandle statementHandle = getPolyphenyDbStatementHandle( h );
-            statementHandle.setPreparedQuery( sql );
-            statementHandle.setStatement( connection.getCurrentOrCreateNewTransaction().createStatement() );
-            return execute( h, new LinkedList<>(), maxRowsInFirstFrame, connection );
+                PolyphenyDbStatementHandle statementHandle = getPolyphenyDbStatementHandle( h );
+                statementHandle.setPreparedQuery( sql );
+                statementHandle.setStatement( connection.getCurrentOrCreateNewTransaction().createStatement() );
+                return execute( h, new LinkedList<>(), maxRowsInFirstFrame, connection );
+            } finally {
+                connection.getTransactionLock().writeLock().unlock();
+            }
         }
     }
 
@@ -1095,42 +1103,52 @@ public ExecuteBatchResult executeBatch( final StatementHandle h, final List<List
      */
     @Override
     public Frame fetch( final StatementHandle h, final long offset, final int fetchMaxRowCount ) throws NoSuchStatementException {
-        final PolyphenyDbConnectionHandle connection = openConnections.get( h.connectionId );
-        synchronized ( connection ) {
-            if ( log.isTraceEnabled() ) {
-                log.trace( "fetch( StatementHandle {}, long {}, int {} )", h, offset, fetchMaxRowCount );
-            }
-
-            final PolyphenyDbStatementHandle statementHandle = getPolyphenyDbStatementHandle( h );
+        final PolyphenyDbStatementHandle statementHandle = getPolyphenyDbStatementHandle( h );
+        final PolyphenyDbConnectionHandle connection = getPolyphenyDbConnectionHandle( h.connectionId );
+        // Fetches of different statements of a connection do not block each other, but they must not overlap with
+        // the execution of a statement or the end of the transaction of the connection
+        connection.getTransactionLock().readLock().lock();
+        try {
+            synchronized ( statementHandle ) {
+                if ( log.isTraceEnabled() ) {
+                    log.trace( "fetch( StatementHandle {}, long {}, int {} )", h, offset, fetchMaxRowCount );
+                }
 
-            final PolyphenyDbSignature signature = statementHandle.getSignature();
-            final Iterator<Object> iterator;
-            if ( statementHandle.getOpenResultSet() == null ) {
-                final Iterable<Object> iterable = createIterable( statementHandle.getStatement().getDataContext(), signature );
-                iterator = iterable.iterator();
-                statementHandle.setOpenResultSet( iterator );
-                statementHandle.getExecutionStopWatch().start();
-            } else {
-                iterator = statementHandle.getOpenResultSet();
-                statementHandle.getExecutionStopWatch().resume();
-            }
-            final List rows = MetaImpl.collect( signature.cursorFactory, LimitIterator.of( iterator, fetchMaxRowCount ), new ArrayList<>() );
-            statementHandle.getExecutionStopWatch().suspend();
-            boolean done = fetchMaxRowCount == 0 || rows.size() < fetchMaxRowCount;
-            @SuppressWarnings("unchecked")
-            List<Object> rows1 = (List<Object>) rows;
-            if ( done ) {
-                statementHandle.getExecutionStopWatch().stop();
-                signature.getExecutionTimeMonitor().setExecutionTime( statementHandle.getExecutionStopWatch().getNanoTime() );
-                try {
-                    if ( iterator instanceof AutoCloseable ) {
-                        ((AutoCloseable) iterator).close();
+                final PolyphenyDbSignature signature = statementHandle.getSignature();
+                final Iterator<Object> iterator;
+                if ( statementHandle.getOpenResultSet() == null ) {
+                    final Iterable<Object> iterable = createIterable( statementHandle.getStatement().getDataContext(), signature );
+                    iterator = iterable.iterator();
+                    statementHandle.setOpenResultSet( iterator );
+                    statementHandle.getExecutionStopWatch().start();
+                } else {
+                    iterator = statementHandle.getOpenResultSet();
+                    statementHandle.getExecutionStopWatch().resume();
+                }
+                final List rows = MetaImpl.collect(
+                        signature.cursorFactory,
+                        LimitIterator.of( iterator, fetchMaxRowCount ),
+                        new ArrayList<>( fetchMaxRowCount > 0 ? Math.min( fetchMaxRowCount, MAX_FRAME_CAPACITY ) : 10 ) );
+                // Checking for further rows saves the client a fetch request which would only return an empty frame
+                boolean done = fetchMaxRowCount == 0 || !iterator.hasNext();
+                statementHandle.getExecutionStopWatch().suspend();
+                @SuppressWarnings("unchecked")
+                List<Object> rows1 = (List<Object>) rows;
+                if ( done ) {
+                    statementHandle.getExecutionStopWatch().stop();
+                    signature.getExecutionTimeMonitor().setExecutionTime( statementHandle.getExecutionStopWatch().getNanoTime() );
+                    try {
+                        if ( iterator instanceof AutoCloseable ) {
+                            ((AutoCloseable) iterator).close();
+                        }
+                    } catch ( Exception e ) {
+                        log.error( "Exception while closing result iterator", e );
                     }
-                } catch ( Exception e ) {
-                    log.error( "Exception while closing result iterator", e );
                 }
+                return new Meta.Frame( offset, done, rows1 );
             }
-            return new Meta.Frame( offset, done, rows1 );
+        } finally {
+            connection.getTransactionLock().readLock().unlock();
         }
     }
 
@@ -1174,12 +1192,17 @@ public ExecuteResult execute( final StatementHandle h, final List<TypedValue> pa
     public ExecuteResult execute( final StatementHandle h, final List<TypedValue> parameterValues, final int maxRowsInFirstFrame ) throws NoSuchStatementException {
         final PolyphenyDbConnectionHandle connection = openConnections.get( h.connectionId );
         synchronized ( connection ) {
-            if ( log.isTraceEnabled() ) {
-                log.trace( "execute( StatementHandle {}, List<TypedValue> {}, int {} )", h, parameterValues, maxRowsInFirstFrame );
+            connection.getTransactionLock().writeLock().lock();
+            try {
+                if ( log.isTraceEnabled() ) {
+                    log.trace( "execute( StatementHandle {}, List<TypedValue> {}, int {} )", h, parameterValues, maxRowsInFirstFrame );
+                }
+                final PolyphenyDbStatementHandle statementHandle = getPolyphenyDbStatementHandle( h );
+                statementHandle.setStatement( connection.getCurrentOrCreateNewTransaction().createStatement() );
+                return execute( h, parameterValues, maxRowsInFirstFrame, connection );
+            } finally {
+                connection.getTransactionLock().writeLock().unlock();
             }
-            final PolyphenyDbStatementHandle statementHandle = getPolyphenyDbStatementHandle( h );
-            statementHandle.setStatement( connection.getCurrentOrCreateNewTransaction().createStatement() );
-            return execute( h, parameterValues, maxRowsInFirstFrame, connection );
         }
     }
 
@@ -1282,18 +1305,24 @@ private List<MetaResultSet> execute( StatementHandle h, PolyphenyDbConnectionHan
             resultSets = ImmutableList.of( metaResultSet );
         } else {
             try {
-                resultSets = Collections.singletonList( MetaResultSet.create(
-                        h.connectionId,
-                        h.id,
-                        false,
-                        statementHandle.getSignature(),
-                        // Due to a bug in Avatica (it wrongly replaces the courser type) I have per default disabled sending data with the first frame.
-                        // TODO MV:  Due to the performance benefits of sending data together with the first frame, this issue should be addressed
-                        //  Remember that fetch is synchronized
-                        maxRowsInFirstFrame != 0 && SEND_FIRST_FRAME_WITH_RESPONSE
-                                ? fetch( h, 0, (int) Math.min( Math.max( statementHandle.getMaxRowCount(), maxRowsInFirstFrame ), Integer.MAX_VALUE ) )
-                                : null //Frame.MORE // Send first frame to together with the response to save a fetch call
-                ) );
+                final int firstFrameRows = getFirstFrameRows( statementHandle, maxRowsInFirstFrame );
+                if ( firstFrameRows > 0 ) {
+                    // Send the first frame together with the response to save a fetch call. Avatica replaces cursor factories
+                    // other than ARRAY and LIST of responses with a first frame by a MAP factory. Since the rows of a frame are
+                    // always collected into lists, the response announces a LIST cursor.
+                    final Frame firstFrame = fetch( h, 0, firstFrameRows );
+                    final PolyphenyDbSignature<?> signature = statementHandle.getSignature();
+                    final Signature responseSignature = new Signature(
+                            signature.columns,
+                            signature.sql,
+                            signature.parameters,
+                            signature.internalParameters,
+                            CursorFactory.LIST,
+                            signature.statementType );
+                    resultSets = Collections.singletonList( MetaResultSet.create( h.connectionId, h.id, false, responseSignature, firstFrame ) );
+                } else {
+                    resultSets = Collections.singletonList( MetaResultSet.create( h.connectionId, h.id, false, statementHandle.getSignature(), null ) );
+                }
             } catch ( NoSuchStatementException e ) {
                 String message = e.getLocalizedMessage();
                 throw new AvaticaRuntimeException( message == null ? "null" : message, -1, "", AvaticaSeverity.ERROR );
@@ -1303,6 +1332,23 @@ private List<MetaResultSet> execute( StatementHandle h, PolyphenyDbConnectionHan
     }
 
 
+    /**
+     * Returns the number of rows to send with the response to an execute request. The number is bounded by the
+     * configuration and, if they are positive, by the requested maximum number of rows of the first frame and of the
+     * statement.
+     */
+    private static int getFirstFrameRows( PolyphenyDbStatementHandle statementHandle, int maxRowsInFirstFrame ) {
+        int rows = RuntimeConfig.JDBC_FIRST_FRAME_ROWS.getInteger();
+        if ( maxRowsInFirstFrame > 0 ) {
+            rows = Math.min( rows, maxRowsInFirstFrame );
+        }
+        if ( statementHandle.getMaxRowCount() > 0 ) {
+            rows = Math.min( rows, statementHandle.getMaxRowCount() );
+        }
+        return rows;
+    }
+
+
     /**
      * Called during the creation of a statement to allocate a new handle.
      *
@@ -1346,14 +1392,17 @@ public void closeStatement( final StatementHandle statementHandle ) {
 
             final PolyphenyDbStatementHandle toClose = openStatements.remove( statementHandle.connectionId + "::" + Integer.toString( statementHandle.id ) );
             if ( toClose != null ) {
-                if ( toClose.getOpenResultSet() != null && toClose.getOpenResultSet() instanceof AutoCloseable ) {
-                    try {
-                        ((AutoCloseable) toClose.getOpenResultSet()).close();
-                    } catch ( Exception e ) {
-                        log.error( "Exception while closing result iterator", e );
+                // Wait for a running fetch of this statement
+                synchronized ( toClose ) {
+                    if ( toClose.getOpenResultSet() != null && toClose.getOpenResultSet() instanceof AutoCloseable ) {
+                        try {
+                            ((AutoCloseable) toClose.getOpenResultSet()).close();
+                        } catch ( Exception e ) {
+                            log.error( "Exception while closing result iterator", e );
+                        }
                     }
+                    toClose.unset();
                 }
-                toClose.unset();
             }
         }
     }
@@ -1446,38 +1495,43 @@ public void openConnection( final ConnectionHandle ch, final Map<String, String>
     public void closeConnection( ConnectionHandle ch ) {
         final PolyphenyDbConnectionHandle connection = getPolyphenyDbConnectionHandle( ch.id );
         synchronized ( connection ) {
-            if ( log.isTraceEnabled() ) {
-                log.trace( "closeConnection( ConnectionHandle {} )", ch );
-            }
+            connection.getTransactionLock().writeLock().lock();
+            try {
+                if ( log.isTraceEnabled() ) {
+                    log.trace( "closeConnection( ConnectionHandle {} )", ch );
+                }
 
-            final PolyphenyDbConnectionHandle connectionToClose = openConnections.remove( ch.id );
-            if ( connectionToClose == null ) {
-                if ( log.isDebugEnabled() ) {
-                    log.debug( "Connection {} already closed.", ch.id );
+                final PolyphenyDbConnectionHandle connectionToClose = openConnections.remove( ch.id );
+                if ( connectionToClose == null ) {
+                    if ( log.isDebugEnabled() ) {
+                        log.debug( "Connection {} already closed.", ch.id );
+                    }
+                    return;
                 }
-                return;
-            }
 
-            // Check if there is a running transaction
-            Transaction transaction = connectionToClose.getCurrentTransaction();
-            if ( transaction != null && transaction.isActive() ) {
-                log.warn( "There is a running transaction associated with this connection {}", connectionToClose );
-                log.warn( "Rollback transaction {}", transaction );
-                try {
-                    transaction.rollback();
-                } catch ( TransactionException e ) {
-                    throw new RuntimeException( e );
+                // Check if there is a running transaction
+                Transaction transaction = connectionToClose.getCurrentTransaction();
+                if ( transaction != null && transaction.isActive() ) {
+                    log.warn( "There is a running transaction associated with this connection {}", connectionToClose );
+                    log.warn( "Rollback transaction {}", transaction );
+                    try {
+                        transaction.rollback();
+                    } catch ( TransactionException e ) {
+                        throw new RuntimeException( e );
+                    }
                 }
-            }
 
-            for ( final String key : openStatements.keySet() ) {
-                if ( key.startsWith( ch.id ) ) {
-                    PolyphenyDbStatementHandle statementHandle = openStatements.remove( key );
-                    statementHandle.unset();
+                for ( final String key : openStatements.keySet() ) {
+                    if ( key.startsWith( ch.id ) ) {
+                        PolyphenyDbStatementHandle statementHandle = openStatements.remove( key );
+                        statementHandle.unset();
+                    }
                 }
-            }
 
-            // TODO: release all resources associated with this connection
+                // TODO: release all resources associated with this connection
+            } finally {
+                connection.getTransactionLock().writeLock().unlock();
+            }
         }
     }
 
@@ -1525,24 +1579,29 @@ public boolean syncResults( final StatementHandle sh, final QueryState state, fi
     public void commit( final ConnectionHandle ch ) {
         final PolyphenyDbConnectionHandle connection = getPolyphenyDbConnectionHandle( ch.id );
         synchronized ( connection ) {
-            if ( log.isTraceEnabled() ) {
-                log.trace( "commit( ConnectionHandle {} )", ch );
-            }
-            Transaction transaction = connection.getCurrentTransaction();
-
-            if ( transaction == null || !transaction.isActive() ) {
+            connection.getTransactionLock().writeLock().lock();
+            try {
                 if ( log.isTraceEnabled() ) {
-                    log.trace( "No open transaction for ConnectionHandle {}", connection );
+                    log.trace( "commit( ConnectionHandle {} )", ch );
                 }
-                return;
-            }
+                Transaction transaction = connection.getCurrentTransaction();
 
-            try {
-                transaction.commit();
-            } catch ( TransactionException e ) {
-                throw new AvaticaRuntimeException( e.getLocalizedMessage(), -1, "", AvaticaSeverity.ERROR );
+                if ( transaction == null || !transaction.isActive() ) {
+                    if ( log.isTraceEnabled() ) {
+                        log.trace( "No open transaction for ConnectionHandle {}", connection );
+                    }
+                    return;
+                }
+
+                try {
+                    transaction.commit();
+                } catch ( TransactionException e ) {
+                    throw new AvaticaRuntimeException( e.getLocalizedMessage(), -1, "", AvaticaSeverity.ERROR );
+                } finally {
+                    connection.endCurrentTransaction();
+                }
             } finally {
-                connection.endCurrentTransaction();
+                connection.getTransactionLock().writeLock().unlock();
             }
         }
     }
@@ -1555,24 +1614,29 @@ public void commit( final ConnectionHandle ch ) {
     public void rollback( final ConnectionHandle ch ) {
         final PolyphenyDbConnectionHandle connection = getPolyphenyDbConnectionHandle( ch.id );
         synchronized ( connection ) {
-            if ( log.isTraceEnabled() ) {
-                log.trace( "rollback( ConnectionHandle {} )", ch );
-            }
-            Transaction transaction = connection.getCurrentTransaction();
-
-            if ( transaction == null || !transaction.isActive() ) {
+            connection.getTransactionLock().writeLock().lock();
+            try {
                 if ( log.isTraceEnabled() ) {
-                    log.trace( "No open transaction for ConnectionHandle {}", connection );
+                    log.trace( "rollback( ConnectionHandle {} )", ch );
                 }
-                return;
-            }
+                Transaction transaction = connection.getCurrentTransaction();
 
-            try {
-                transaction.rollback();
-            } catch ( TransactionException e ) {
-                throw new AvaticaRuntimeException( e.getLocalizedMessage(), -1, "", AvaticaSeverity.ERROR );
+                if ( transaction == null || !transaction.isActive() ) {
+                    if ( log.isTraceEnabled() ) {
+                        log.trace( "No open transaction for ConnectionHandle {}", connection );
+                    }
+                    return;
+                }
+
+                try {
+                    transaction.rollback();
+                } catch ( TransactionException e ) {
+                    throw new AvaticaRuntimeException( e.getLocalizedMessage(), -1, "", AvaticaSeverity.ERROR );
+                } finally {
+                    connection.endCurrentTransaction();
+                }
             } finally {
-                connection.endCurrentTransaction();
+                connection.getTransactionLock().writeLock().unlock();
             }
         }
     }
@@ -18,6 +18,8 @@
 
 
 import java.util.Objects;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import lombok.Getter;
 import org.apache.calcite.avatica.ConnectionPropertiesImpl;
 import org.apache.calcite.avatica.Meta;
@@ -52,6 +54,13 @@ public class PolyphenyDbConnectionHandle {
 
     private final TransactionManager transactionManager;
 
+    /**
+     * Fetches hold the read lock. Executing a statement and ending the transaction of the connection holds the write
+     * lock, since the result iterators of fetches depend on the transaction.
+     */
+    @Getter
+    private final ReadWriteLock transactionLock = new ReentrantReadWriteLock();
+
     private final ConnectionProperties connectionProperties = new ConnectionPropertiesImpl( true, false, java.sql.Connection.TRANSACTION_SERIALIZABLE, "APP", "public" );
 
 
@@ -0,0 +1,315 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.adapter.csv;
+
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+
+/**
+ * Tokenizes the records of a chunk of a CSV file directly on its bytes.
+ * <p>
+ * Fields are only located up to the highest field that is needed; the remainder of a record is skipped. The tokenizer
+ * follows the defaults of the CSV reader used by {@link CsvEnumerator}: comma as separator, double quotes for quoting
+ * (doubled quotes inside a quoted field stand for a quote) and backslash as escape character.
+ */
+class CsvChunkParser {
+
+    private static final byte SEPARATOR = ',';
+    private static final byte QUOTE = '"';
+    private static final byte ESCAPE = '\\';
+    private static final byte NEWLINE = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+
+    private final ByteBuffer buffer;
+    private final int limit;
+    // Whether this chunk ends at the end of the file, so that an unterminated quote also terminates the record
+    private final boolean last;
+    private final int fieldLimit;
+
+    private final int[] starts;
+    private final int[] ends;
+    // Whether a field contains quotes or escapes and has to be unescaped before it can be used
+    private final boolean[] special;
+    private int fieldCount;
+
+    private int position = 0;
+    private int recordStart = -1;
+    private boolean unterminated = false;
+
+
+    /**
+     * @param buffer The bytes of the chunk, from position zero to the limit of the buffer
+     * @param last Whether the chunk ends at the end of the file
+     * @param maxField The highest (zero-based) field that is accessed; -1 if no field is accessed
+     */
+    CsvChunkParser( ByteBuffer buffer, boolean last, int maxField ) {
+        this.buffer = buffer;
+        this.limit = buffer.limit();
+        this.last = last;
+        this.fieldLimit = maxField + 1;
+        this.starts = new int[fieldLimit];
+        this.ends = new int[fieldLimit];
+        this.special = new boolean[fieldLimit];
+    }
+
+
+    /**
+     * Advances to the next record. Empty lines are skipped.
+     *
+     * @return false if there are no more records in this chunk or if the chunk ended inside a quoted field
+     */
+    boolean next() {
+        while ( position < limit ) {
+            recordStart = position;
+            fieldCount = 0;
+            if ( buffer.get( position ) == NEWLINE ) {
+                position++;
+                continue;
+            }
+            if ( buffer.get( position ) == CARRIAGE_RETURN && position + 1 < limit && buffer.get( position + 1 ) == NEWLINE ) {
+                position += 2;
+                continue;
+            }
+            boolean endOfRecord = false;
+            while ( fieldCount < fieldLimit && !endOfRecord ) {
+                if ( !scanField( fieldCount ) ) {
+                    return false;
+                }
+                fieldCount++;
+                endOfRecord = position >= limit || buffer.get( position ) == NEWLINE;
+                position++;
+            }
+            if ( !endOfRecord ) {
+                // Skip the fields which are not needed
+                if ( !skipRecord() ) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+
+    /**
+     * Locates the end of a field starting at the current position. Afterwards, the position points to the separator
+     * or newline terminating the field (or to the limit).
+     */
+    private boolean scanField( int field ) {
+        final int start = position;
+        boolean inQuotes = false;
+        boolean hasSpecial = false;
+        int i = position;
+        while ( i < limit ) {
+            byte b = buffer.get( i );
+            if ( b == ESCAPE && i + 1 < limit && isEscapable( buffer.get( i + 1 ) ) ) {
+                hasSpecial = true;
+                i += 2;
+            } else if ( b == QUOTE ) {
+                hasSpecial = true;
+                if ( inQuotes && i + 1 < limit && buffer.get( i + 1 ) == QUOTE ) {
+                    i += 2;
+                } else {
+                    inQuotes = !inQuotes;
+                    i++;
+                }
+            } else if ( !inQuotes && (b == SEPARATOR || b == NEWLINE) ) {
+                break;
+            } else {
+                i++;
+            }
+        }
+        if ( inQuotes && !last ) {
+            unterminated = true;
+            return false;
+        }
+        int end = i;
+        if ( end > start && buffer.get( end - 1 ) == CARRIAGE_RETURN && (end >= limit || buffer.get( end ) == NEWLINE) ) {
+            end--;
+        }
+        starts[field] = start;
+        ends[field] = end;
+        special[field] = hasSpecial;
+        position = i;
+        return true;
+    }
+
+
+    /**
+     * Moves the position behind the newline terminating the current record.
+     */
+    private boolean skipRecord() {
+        boolean inQuotes = false;
+        int i = position;
+        while ( i < limit ) {
+            byte b = buffer.get( i );
+            if ( b == ESCAPE && i + 1 < limit && isEscapable( buffer.get( i + 1 ) ) ) {
+                i += 2;
+            } else if ( b == QUOTE ) {
+                inQuotes = !inQuotes;
+                i++;
+            } else if ( !inQuotes && b == NEWLINE ) {
+                break;
+            } else {
+                i++;
+            }
+        }
+        if ( inQuotes && !last ) {
+            unterminated = true;
+            return false;
+        }
+        position = i + 1;
+        return true;
+    }
+
+
+    private static boolean isEscapable( byte b ) {
+        return b == QUOTE || b == ESCAPE;
+    }
+
+
+    /**
+     * Whether the chunk ended inside a quoted field. In this case, the record starting at {@link #getRecordStart()}
+     * continues in the next chunk and the boundary of the chunk was not a record boundary.
+     */
+    boolean isUnterminated() {
+        return unterminated;
+    }
+
+
+    /**
+     * Returns the offset of the current record within the chunk.
+     */
+    int getRecordStart() {
+        return recordStart;
+    }
+
+
+    boolean isFieldEmpty( int field ) {
+        return field >= fieldCount || starts[field] == ends[field];
+    }
+
+
+    boolean fieldEquals( int field, byte[] value ) {
+        if ( field >= fieldCount ) {
+            return value.length == 0;
+        }
+        if ( special[field] ) {
+            return Arrays.equals( unescape( field ), value );
+        }
+        int length = ends[field] - starts[field];
+        if ( length != value.length ) {
+            return false;
+        }
+        for ( int i = 0; i < length; i++ ) {
+            if ( buffer.get( starts[field] + i ) != value[i] ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Parses an integral field without creating a string.
+     *
+     * @throws NumberFormatException if the field is not a valid long
+     */
+    long fieldAsLong( int field ) {
+        if ( isFieldEmpty( field ) ) {
+            throw new NumberFormatException( "Empty field" );
+        }
+        int start = starts[field];
+        int end = ends[field];
+        // Up to 18 digits cannot overflow
+        if ( special[field] || end - start > 18 ) {
+            return Long.parseLong( fieldAsString( field ) );
+        }
+        boolean negative = false;
+        byte first = buffer.get( start );
+        if ( first == '-' || first == '+' ) {
+            negative = first == '-';
+            start++;
+            if ( start == end ) {
+                throw new NumberFormatException( fieldAsString( field ) );
+            }
+        }
+        long value = 0;
+        for ( int i = start; i < end; i++ ) {
+            int digit = buffer.get( i ) - '0';
+            if ( digit < 0 || digit > 9 ) {
+                throw new NumberFormatException( "For input string: \"" + fieldAsString( field ) + "\"" );
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+
+    double fieldAsDouble( int field ) {
+        return Double.parseDouble( fieldAsString( field ) );
+    }
+
+
+    String fieldAsString( int field ) {
+        if ( field >= fieldCount ) {
+            return "";
+        }
+        if ( special[field] ) {
+            return new String( unescape( field ), StandardCharsets.UTF_8 );
+        }
+        byte[] bytes = new byte[ends[field] - starts[field]];
+        buffer.duplicate().position( starts[field] ).get( bytes );
+        return new String( bytes, StandardCharsets.UTF_8 );
+    }
+
+
+    /**
+     * Removes quotes and escape characters from a field. Quotes and backslashes are ASCII, so this can be done on
+     * UTF-8 encoded bytes.
+     */
+    private byte[] unescape( int field ) {
+        byte[] result = new byte[ends[field] - starts[field]];
+        int length = 0;
+        boolean inQuotes = false;
+        int i = starts[field];
+        while ( i < ends[field] ) {
+            byte b = buffer.get( i );
+            if ( b == ESCAPE && i + 1 < ends[field] && isEscapable( buffer.get( i + 1 ) ) ) {
+                result[length++] = buffer.get( i + 1 );
+                i += 2;
+            } else if ( b == QUOTE ) {
+                if ( inQuotes && i + 1 < ends[field] && buffer.get( i + 1 ) == QUOTE ) {
+                    result[length++] = QUOTE;
+                    i += 2;
+                } else {
+                    inQuotes = !inQuotes;
+                    i++;
+                }
+            } else {
+                result[length++] = b;
+                i++;
+            }
+        }
+        return Arrays.copyOf( result, length );
+    }
+
+}
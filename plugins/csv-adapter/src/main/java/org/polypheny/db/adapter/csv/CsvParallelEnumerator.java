@@ -0,0 +1,398 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.adapter.csv;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.calcite.linq4j.Enumerator;
+import org.polypheny.db.adapter.SourceStatistics;
+import org.polypheny.db.adapter.SourceStatistics.ColumnStatistics;
+
+
+/**
+ * Enumerator that memory-maps a CSV file, splits it into newline-aligned chunks and parses these chunks in parallel.
+ * Only the projected fields are converted and filters are evaluated on the raw bytes before a row is materialized.
+ * Rows are returned in the order of the file.
+ * <p>
+ * Chunk boundaries are chosen at the first newline after the nominal chunk size. This is speculative, since a newline
+ * can also be part of a quoted field. Chunks are verified in file order: if a chunk ends inside a quoted field, all
+ * chunks after it are discarded and the remainder of the file is split at record boundaries which are determined by
+ * scanning the file while keeping track of quotes.
+ * <p>
+ * If indexed {@link SourceStatistics} are available for the file, the chunks are instead formed from the blocks of the
+ * index, which start at record boundaries. Blocks which cannot contain rows satisfying the filters are skipped.
+ */
+class CsvParallelEnumerator implements Enumerator<Object[]> {
+
+    private static final int CHUNK_SIZE = 8 * 1024 * 1024;
+    private static final int PARALLELISM = Math.max( 1, Runtime.getRuntime().availableProcessors() );
+    // Number of chunks which are parsed ahead of the consumer
+    private static final int WINDOW = PARALLELISM + 1;
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool( PARALLELISM, runnable -> {
+        Thread thread = new Thread( runnable, "csv-scan-" + THREAD_COUNTER.incrementAndGet() );
+        thread.setDaemon( true );
+        return thread;
+    } );
+
+    private final FileChannel channel;
+    private final long size;
+    private final AtomicBoolean cancelFlag;
+    private final CsvEnumerator.ArrayRowConverter converter;
+    private final CsvFieldType[] fieldTypes;
+    private final int[] rawFields;
+    private final CsvScanFilter[] filters;
+    private final int maxField;
+
+    private final ArrayDeque<Future<ChunkResult>> pending = new ArrayDeque<>();
+    private long nextChunkStart;
+    // Chunks formed from the blocks of the index, null if there is no index
+    private final ArrayDeque<long[]> indexedChunks;
+    // Set once a chunk boundary turned out to be inside a quoted field
+    private boolean quoteAware = false;
+
+    private List<Object[]> rows;
+    private int index;
+    private Object[] current;
+
+
+    /**
+     * @param fieldTypes Types of the returned fields
+     * @param rawFields Zero-based positions of the returned fields in the file
+     * @param filters Filters which have to be satisfied by a record to be returned
+     * @param statistics Statistics about the file, may be null
+     */
+    CsvParallelEnumerator( File file, AtomicBoolean cancelFlag, List<CsvFieldType> fieldTypes, int[] rawFields, List<CsvScanFilter> filters, SourceStatistics statistics ) {
+        this.cancelFlag = cancelFlag;
+        this.fieldTypes = fieldTypes.toArray( new CsvFieldType[0] );
+        this.rawFields = rawFields;
+        this.filters = filters.toArray( new CsvScanFilter[0] );
+        // The converter is only used for the conversion of single values
+        this.converter = new CsvEnumerator.ArrayRowConverter( fieldTypes, rawFields );
+        int max = -1;
+        for ( int rawField : rawFields ) {
+            max = Math.max( max, rawField );
+        }
+        for ( CsvScanFilter filter : filters ) {
+            max = Math.max( max, filter.field );
+        }
+        this.maxField = max;
+        try {
+            this.channel = FileChannel.open( file.toPath(), StandardOpenOption.READ );
+            this.size = channel.size();
+            // Skip the header
+            this.nextChunkStart = findRecordBoundary( channel, size, 0, 1 );
+        } catch ( IOException e ) {
+            throw new RuntimeException( "Unable to read CSV file " + file.getPath(), e );
+        }
+        if ( statistics != null && statistics.isIndexed() && statistics.getSourceLength() == size ) {
+            this.indexedChunks = chunksFromIndex( statistics );
+        } else {
+            this.indexedChunks = null;
+        }
+    }
+
+
+    /**
+     * Groups the blocks of the index which may contain matching rows into chunks.
+     */
+    private ArrayDeque<long[]> chunksFromIndex( SourceStatistics statistics ) {
+        ArrayDeque<long[]> chunks = new ArrayDeque<>();
+        long[] chunk = null;
+        for ( int block = 0; block < statistics.getOffsets().length; block++ ) {
+            if ( !mayMatch( statistics.getBlocks()[block] ) ) {
+                chunk = null;
+                continue;
+            }
+            long start = statistics.getOffsets()[block];
+            long end = statistics.getBlockEnd( block );
+            if ( chunk == null || chunk[1] != start || chunk[1] - chunk[0] >= CHUNK_SIZE ) {
+                chunk = new long[]{ start, end };
+                chunks.add( chunk );
+            } else {
+                chunk[1] = end;
+            }
+        }
+        return chunks;
+    }
+
+
+    private boolean mayMatch( ColumnStatistics[] block ) {
+        for ( CsvScanFilter filter : filters ) {
+            if ( filter.field < block.length && !filter.mayMatch( block[filter.field] ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    @Override
+    public Object[] current() {
+        return current;
+    }
+
+
+    @Override
+    public boolean moveNext() {
+        while ( true ) {
+            if ( cancelFlag.get() ) {
+                return false;
+            }
+            if ( rows != null && index < rows.size() ) {
+                current = rows.get( index++ );
+                return true;
+            }
+            fillWindow();
+            if ( pending.isEmpty() ) {
+                current = null;
+                return false;
+            }
+            ChunkResult result = await( pending.poll() );
+            if ( result.unterminated ) {
+                // The chunks after this one do not start at record boundaries
+                cancelPending();
+                quoteAware = true;
+                nextChunkStart = result.openRecordStart;
+            }
+            rows = result.rows;
+            index = 0;
+        }
+    }
+
+
+    private void fillWindow() {
+        try {
+            while ( pending.size() < WINDOW && nextChunkStart < size ) {
+                final long start = nextChunkStart;
+                final long end = quoteAware ? findRecordBoundary( start, CHUNK_SIZE ) : findLineBoundary( start );
+                pending.add( EXECUTOR.submit( () -> parseChunk( start, end ) ) );
+                nextChunkStart = end;
+            }
+        } catch ( IOException e ) {
+            throw new RuntimeException( e );
+        }
+    }
+
+
+    /**
+     * Returns the offset after the first newline following the nominal end of a chunk starting at the given offset.
+     */
+    private long findLineBoundary( long start ) throws IOException {
+        long position = start + CHUNK_SIZE;
+        ByteBuffer buffer = ByteBuffer.allocate( 64 * 1024 );
+        while ( position < size ) {
+            buffer.clear();
+            int read = channel.read( buffer, position );
+            for ( int i = 0; i < read; i++ ) {
+                if ( buffer.get( i ) == '\n' ) {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+
+    /**
+     * Returns the offset of the first record boundary which is at least the given length after the given offset.
+     * The given offset has to be a record boundary.
+     */
+    private static long findRecordBoundary( FileChannel channel, long size, long start, long minLength ) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate( 64 * 1024 );
+        long position = start;
+        boolean inQuotes = false;
+        boolean escape = false;
+        while ( position < size ) {
+            buffer.clear();
+            int read = channel.read( buffer, position );
+            for ( int i = 0; i < read; i++ ) {
+                byte b = buffer.get( i );
+                if ( escape ) {
+                    escape = false;
+                    if ( b == '"' || b == '\\' ) {
+                        continue;
+                    }
+                }
+                if ( b == '\\' ) {
+                    escape = true;
+                } else if ( b == '"' ) {
+                    inQuotes = !inQuotes;
+                } else if ( b == '\n' && !inQuotes && position + i + 1 - start >= minLength ) {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+
+    /**
+     * Reads all records of a file into a statistics builder, together with their offsets.
+     *
+     * @param fieldTypes The types of all fields of the file
+     */
+    static SourceStatistics.Builder collectStatistics( File file, List<CsvFieldType> fieldTypes ) throws IOException {
+        SourceStatistics.Builder builder = new SourceStatistics.Builder( fieldTypes.size(), true );
+        CsvEnumerator.ArrayRowConverter converter = new CsvEnumerator.ArrayRowConverter( fieldTypes, new int[0] );
+        try ( FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ ) ) {
+            long size = channel.size();
+            long start = findRecordBoundary( channel, size, 0, 1 );
+            while ( start < size ) {
+                long end = findRecordBoundary( channel, size, start, CHUNK_SIZE );
+                CsvChunkParser parser = new CsvChunkParser( channel.map( MapMode.READ_ONLY, start, end - start ), end == size, fieldTypes.size() - 1 );
+                while ( parser.next() ) {
+                    Object[] row = new Object[fieldTypes.size()];
+                    for ( int i = 0; i < row.length; i++ ) {
+                        CsvFieldType fieldType = fieldTypes.get( i );
+                        // Filters compare FLOAT fields by their text parsed as double, the bounds must not be rounded to float
+                        row[i] = converter.convert( fieldType == CsvFieldType.FLOAT ? CsvFieldType.DOUBLE : fieldType, parser.fieldAsString( i ) );
+                    }
+                    builder.add( row, start + parser.getRecordStart() );
+                }
+                start = end;
+            }
+        }
+        return builder;
+    }
+
+
+    private ChunkResult parseChunk( long start, long end ) throws IOException {
+        MappedByteBuffer buffer = channel.map( MapMode.READ_ONLY, start, end - start );
+        CsvChunkParser parser = new CsvChunkParser( buffer, end == size, maxField );
+        List<Object[]> rows = new ArrayList<>();
+        outer:
+        while ( parser.next() ) {
+            if ( cancelFlag.get() ) {
+                break;
+            }
+            for ( CsvScanFilter filter : filters ) {
+                if ( !filter.matches( parser ) ) {
+                    continue outer;
+                }
+            }
+            Object[] row = new Object[rawFields.length];
+            for ( int i = 0; i < rawFields.length; i++ ) {
+                row[i] = convert( parser, fieldTypes[i], rawFields[i] );
+            }
+            rows.add( row );
+        }
+        if ( parser.isUnterminated() ) {
+            return new ChunkResult( rows, true, start + parser.getRecordStart() );
+        }
+        return new ChunkResult( rows, false, -1 );
+    }
+
+
+    private Object convert( CsvChunkParser parser, CsvFieldType fieldType, int field ) {
+        if ( fieldType == CsvFieldType.INT || fieldType == CsvFieldType.LONG ) {
+            if ( parser.isFieldEmpty( field ) ) {
+                return null;
+            }
+            long value = parser.fieldAsLong( field );
+            if ( fieldType == CsvFieldType.LONG ) {
+                return value;
+            }
+            if ( value == (int) value ) {
+                return (int) value;
+            }
+        }
+        return converter.convert( fieldType, parser.fieldAsString( field ) );
+    }
+
+
+    private ChunkResult await( Future<ChunkResult> future ) {
+        try {
+            return future.get();
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( e );
+        } catch ( ExecutionException e ) {
+            if ( e.getCause() instanceof RuntimeException ) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException( "Error while parsing CSV file", e.getCause() );
+        }
+    }
+
+
+    private void cancelPending() {
+        for ( Future<ChunkResult> future : pending ) {
+            future.cancel( false );
+        }
+        pending.clear();
+    }
+
+
+    @Override
+    public void reset() {
+        throw new UnsupportedOperationException();
+    }
+
+
+    @Override
+    public void close() {
+        cancelPending();
+        try {
+            channel.close();
+        } catch ( IOException e ) {
+            throw new RuntimeException( "Error closing CSV file", e );
+        }
+    }
+
+
+    /**
+     * The rows of a chunk which satisfied the filters.
+     */
+    private static class ChunkResult {
+
+        final List<Object[]> rows;
+        // Whether the chunk ended inside a quoted field
+        final boolean unterminated;
+        // Offset in the file of the record which was not terminated
+        final long openRecordStart;
+
+
+        ChunkResult( List<Object[]> rows, boolean unterminated, long openRecordStart ) {
+            this.rows = rows;
+            this.unterminated = unterminated;
+            this.openRecordStart = openRecordStart;
+        }
+
+    }
+
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.adapter.csv;
+
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.polypheny.db.adapter.SourceStatistics.ColumnStatistics;
+import org.polypheny.db.algebra.constant.Kind;
+import org.polypheny.db.rex.RexCall;
+import org.polypheny.db.rex.RexInputRef;
+import org.polypheny.db.rex.RexLiteral;
+import org.polypheny.db.rex.RexNode;
+import org.polypheny.db.type.PolyTypeFamily;
+
+
+/**
+ * A simple comparison of a column with a literal that is evaluated on the raw bytes of a CSV field, before the row is converted.
+ * Supported are equality on string columns and comparisons on numeric columns.
+ */
+class CsvScanFilter {
+
+    final int field;
+    private final Kind kind;
+    private final byte[] stringValue;
+    private final double numericValue;
+    // Set if both the column and the literal are integral, to compare without loss of precision
+    private final boolean integral;
+    private final long integralValue;
+
+
+    private CsvScanFilter( int field, Kind kind, byte[] stringValue, double numericValue, boolean integral, long integralValue ) {
+        this.field = field;
+        this.kind = kind;
+        this.stringValue = stringValue;
+        this.numericValue = numericValue;
+        this.integral = integral;
+        this.integralValue = integralValue;
+    }
+
+
+    /**
+     * Creates a filter for a condition, or returns {@code null} if the condition cannot be evaluated on the raw fields.
+     *
+     * @param fields One-based positions of the table columns in the CSV file
+     */
+    static CsvScanFilter of( RexNode filter, int[] fields, List<CsvFieldType> fieldTypes ) {
+        if ( !(filter instanceof RexCall) ) {
+            return null;
+        }
+        final RexCall call = (RexCall) filter;
+        Kind kind = call.getKind();
+        if ( call.getOperands().size() != 2 ) {
+            return null;
+        }
+        RexNode left = call.getOperands().get( 0 );
+        RexNode right = call.getOperands().get( 1 );
+        if ( left instanceof RexLiteral && right instanceof RexInputRef ) {
+            RexNode tmp = left;
+            left = right;
+            right = tmp;
+            kind = kind.reverse();
+        }
+        if ( !(left instanceof RexInputRef) || !(right instanceof RexLiteral) || ((RexLiteral) right).isNull() ) {
+            return null;
+        }
+        final int index = ((RexInputRef) left).getIndex();
+        final CsvFieldType fieldType = fieldTypes.get( index );
+        final RexLiteral literal = (RexLiteral) right;
+        switch ( kind ) {
+            case EQUALS:
+                if ( fieldType == CsvFieldType.STRING && literal.getType().getPolyType().getFamily() == PolyTypeFamily.CHARACTER ) {
+                    byte[] value = literal.getValueAs( String.class ).getBytes( StandardCharsets.UTF_8 );
+                    return new CsvScanFilter( fields[index] - 1, kind, value, 0, false, 0 );
+                }
+                // fall through
+            case NOT_EQUALS:
+            case GREATER_THAN:
+            case GREATER_THAN_OR_EQUAL:
+            case LESS_THAN:
+            case LESS_THAN_OR_EQUAL:
+                if ( isNumeric( fieldType ) && literal.getType().getPolyType().getFamily() == PolyTypeFamily.NUMERIC ) {
+                    BigDecimal value = literal.getValueAs( BigDecimal.class );
+                    boolean integral = isIntegral( fieldType ) && value.stripTrailingZeros().scale() <= 0 && value.abs().compareTo( BigDecimal.valueOf( Long.MAX_VALUE ) ) < 0;
+                    return new CsvScanFilter( fields[index] - 1, kind, null, value.doubleValue(), integral, integral ? value.longValueExact() : 0 );
+                }
+                return null;
+            default:
+                return null;
+        }
+    }
+
+
+    static boolean isNumeric( CsvFieldType fieldType ) {
+        switch ( fieldType ) {
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+            case FLOAT:
+            case DOUBLE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+
+    static boolean isIntegral( CsvFieldType fieldType ) {
+        switch ( fieldType ) {
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+
+    /**
+     * Whether a block of rows with the given statistics for the field of this filter may contain a matching row.
+     */
+    boolean mayMatch( ColumnStatistics statistics ) {
+        if ( stringValue != null ) {
+            return statistics.mayContain( new String( stringValue, StandardCharsets.UTF_8 ) );
+        }
+        Number value = integral ? (Number) integralValue : (Number) numericValue;
+        switch ( kind ) {
+            case EQUALS:
+                return statistics.mayContain( 0, true, value );
+            case GREATER_THAN:
+                return statistics.mayContain( 1, false, value );
+            case GREATER_THAN_OR_EQUAL:
+                return statistics.mayContain( 1, true, value );
+            case LESS_THAN:
+                return statistics.mayContain( -1, false, value );
+            case LESS_THAN_OR_EQUAL:
+                return statistics.mayContain( -1, true, value );
+            default:
+                return true;
+        }
+    }
+
+
+    /**
+     * Evaluates the filter on a field of a record.
+     */
+    boolean matches( CsvChunkParser parser ) {
+        if ( stringValue != null ) {
+            return parser.fieldEquals( field, stringValue );
+        }
+        if ( parser.isFieldEmpty( field ) ) {
+            // Empty numeric fields are null, comparisons with null are never true
+            return false;
+        }
+        final int comparison;
+        try {
+            if ( integral ) {
+                comparison = Long.compare( parser.fieldAsLong( field ), integralValue );
+            } else {
+                double value = parser.fieldAsDouble( field );
+                comparison = value < numericValue ? -1 : (value > numericValue ? 1 : 0);
+            }
+        } catch ( NumberFormatException e ) {
+            return false;
+        }
+        switch ( kind ) {
+            case EQUALS:
+                return comparison == 0;
+            case NOT_EQUALS:
+                return comparison != 0;
+            case GREATER_THAN:
+                return comparison > 0;
+            case GREATER_THAN_OR_EQUAL:
+                return comparison >= 0;
+            case LESS_THAN:
+                return comparison < 0;
+            case LESS_THAN_OR_EQUAL:
+                return comparison <= 0;
+            default:
+                throw new IllegalStateException( "Unexpected filter " + kind );
+        }
+    }
+
+}
@@ -37,10 +37,16 @@
 import org.apache.calcite.linq4j.Enumerable;
 import org.apache.calcite.linq4j.Enumerator;
 import org.polypheny.db.adapter.DataContext;
+import org.polypheny.db.adapter.SourceStatistics;
 import org.polypheny.db.algebra.type.AlgProtoDataType;
+import org.polypheny.db.rex.RexNode;
+import org.polypheny.db.schema.ProjectableFilterableTable;
 import org.polypheny.db.schema.ScannableTable;
 import org.polypheny.db.util.Source;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -49,9 +55,11 @@
  * Table based on a CSV file.
  * <p>
  * It implements the {@link ScannableTable} interface, so Polypheny-DB gets data by calling
- * the {@link #scan(DataContext)} method.
+ * the {@link #scan(DataContext)} method. It also implements the {@link ProjectableFilterableTable} interface,
+ * which allows pushing projections and simple filters into the scan. Local, uncompressed files are then scanned
+ * in parallel using a {@link CsvParallelEnumerator}.
  */
-public class CsvScannableTable extends CsvTable implements ScannableTable {
+public class CsvScannableTable extends CsvTable implements ScannableTable, ProjectableFilterableTable {
 
     /**
      * Creates a CsvScannableTable.
@@ -78,5 +86,52 @@ public Enumerator<Object[]> enumerator() {
         };
     }
 
+
+    @Override
+    public Enumerable<Object[]> scan( DataContext dataContext, List<RexNode> filters, int[] projects ) {
+        dataContext.getStatement().getTransaction().registerInvolvedAdapter( csvSource );
+        final AtomicBoolean cancelFlag = DataContext.Variable.CANCEL_FLAG.get( dataContext );
+        if ( projects == null ) {
+            projects = CsvEnumerator.identityList( fieldTypes.size() );
+        }
+        final List<CsvFieldType> projectedTypes = new ArrayList<>();
+        final int[] projectedFields = new int[projects.length];
+        for ( int i = 0; i < projects.length; i++ ) {
+            projectedTypes.add( fieldTypes.get( projects[i] ) );
+            projectedFields[i] = fields[projects[i]];
+        }
+
+        if ( !isMappable() ) {
+            // Filters are applied by the consuming operator
+            return new AbstractEnumerable<Object[]>() {
+                @Override
+                public Enumerator<Object[]> enumerator() {
+                    return new CsvEnumerator<>( source, cancelFlag, false, null, new CsvEnumerator.ArrayRowConverter( projectedTypes, projectedFields ) );
+                }
+            };
+        }
+
+        final List<CsvScanFilter> scanFilters = new ArrayList<>();
+        for ( Iterator<RexNode> iterator = filters.iterator(); iterator.hasNext(); ) {
+            CsvScanFilter scanFilter = CsvScanFilter.of( iterator.next(), fields, fieldTypes );
+            if ( scanFilter != null ) {
+                scanFilters.add( scanFilter );
+                iterator.remove();
+            }
+        }
+        final int[] rawFields = new int[projectedFields.length];
+        for ( int i = 0; i < projectedFields.length; i++ ) {
+            rawFields[i] = projectedFields[i] - 1;
+        }
+        final File file = source.file();
+        final SourceStatistics statistics = getSourceStatistics();
+        return new AbstractEnumerable<Object[]>() {
+            @Override
+            public Enumerator<Object[]> enumerator() {
+                return new CsvParallelEnumerator( file, cancelFlag, projectedTypes, rawFields, scanFilters, statistics );
+            }
+        };
+    }
+
 }
 
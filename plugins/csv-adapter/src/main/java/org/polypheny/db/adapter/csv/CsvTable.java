@@ -33,15 +33,21 @@
 
 package org.polypheny.db.adapter.csv;
 
+import org.polypheny.db.adapter.SourceStatistics;
+import org.polypheny.db.adapter.SourceStatisticsManager;
 import org.polypheny.db.adapter.java.JavaTypeFactory;
 import org.polypheny.db.algebra.type.AlgDataType;
 import org.polypheny.db.algebra.type.AlgDataTypeFactory;
 import org.polypheny.db.algebra.type.AlgProtoDataType;
+import org.polypheny.db.prepare.JavaTypeFactoryImpl;
+import org.polypheny.db.schema.Statistic;
 import org.polypheny.db.schema.impl.AbstractTable;
 import org.polypheny.db.util.Source;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
 /**
@@ -83,6 +89,69 @@ public AlgDataType getRowType( AlgDataTypeFactory typeFactory ) {
     }
 
 
+    /**
+     * Returns the statistics of the whole table if the statistics of the file are available.
+     */
+    @Override
+    public Statistic getStatistic() {
+        SourceStatistics statistics = getSourceStatistics();
+        if ( statistics == null ) {
+            return super.getStatistic();
+        }
+        int[] columns = new int[fields.length];
+        for ( int i = 0; i < fields.length; i++ ) {
+            columns[i] = fields[i] - 1;
+        }
+        return statistics.toStatistic( columns );
+    }
+
+
+    /**
+     * Returns the statistics about all columns of the file, or null if they are not (yet) available.
+     * Uncompressed files are indexed.
+     */
+    protected SourceStatistics getSourceStatistics() {
+        if ( !"file".equals( source.protocol() ) ) {
+            return null;
+        }
+        final File file = source.file();
+        if ( !file.isFile() ) {
+            return null;
+        }
+        return SourceStatisticsManager.getInstance().getStatistics( file, "csv", () -> {
+            List<CsvFieldType> types = new ArrayList<>();
+            CsvEnumerator.deduceRowType( new JavaTypeFactoryImpl(), source, types );
+            if ( isMappable() ) {
+                return CsvParallelEnumerator.collectStatistics( file, types );
+            }
+            SourceStatistics.Builder builder = new SourceStatistics.Builder( types.size(), false );
+            try ( CsvEnumerator<Object[]> enumerator = new CsvEnumerator<>( source, new AtomicBoolean(), false, null, new CsvEnumerator.ArrayRowConverter( types, identityFields( types.size() ) ) ) ) {
+                while ( enumerator.moveNext() ) {
+                    builder.add( enumerator.current(), -1 );
+                }
+            }
+            return builder;
+        } );
+    }
+
+
+    /**
+     * Whether the file of this table can be memory-mapped, i.e., if it is a local, uncompressed file.
+     */
+    protected boolean isMappable() {
+        return "file".equals( source.protocol() ) && !source.path().endsWith( ".gz" ) && source.file().isFile();
+    }
+
+
+    private static int[] identityFields( int count ) {
+        int[] fields = new int[count];
+        for ( int i = 0; i < count; i++ ) {
+            fields[i] = i + 1;
+        }
+        return fields;
+    }
+
+
     /**
      * Various degrees of table "intelligence".
      */
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.adapter.csv;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+
+public class CsvChunkParserTest {
+
+    @Test
+    public void testSimpleRecords() {
+        assertEquals( List.of( List.of( "1", "a" ), List.of( "2", "b" ) ), parse( "1,a\n2,b\n", 1 ) );
+        // The last record does not need a newline
+        assertEquals( List.of( List.of( "1", "a" ), List.of( "2", "b" ) ), parse( "1,a\n2,b", 1 ) );
+    }
+
+
+    @Test
+    public void testCrlfAndEmptyLines() {
+        assertEquals( List.of( List.of( "1", "a" ), List.of( "2", "b" ) ), parse( "1,a\r\n\r\n\n2,b\r\n", 1 ) );
+        assertEquals( List.of( List.of( "1", "a" ), List.of( "2", "b" ) ), parse( "\n1,a\r\n2,b", 1 ) );
+    }
+
+
+    @Test
+    public void testQuotes() {
+        // Doubled quotes inside a quoted field stand for a quote
+        assertEquals( List.of( List.of( "x, \"y\"", "z" ) ), parse( "\"x, \"\"y\"\"\",z\n", 1 ) );
+        // Backslash escapes quotes and backslashes
+        assertEquals( List.of( List.of( "a\"b", "c\\d" ) ), parse( "a\\\"b,c\\\\d\n", 1 ) );
+        assertEquals( List.of( List.of( "", "" ) ), parse( "\"\",\n", 1 ) );
+    }
+
+
+    @Test
+    public void testQuotedNewline() {
+        assertEquals( List.of( List.of( "line1\nline2", "x" ), List.of( "2", "y" ) ), parse( "\"line1\nline2\",x\n2,y\n", 1 ) );
+        // Also if the quoted field is not accessed and only skipped
+        assertEquals( List.of( List.of( "1" ), List.of( "2" ) ), parse( "1,\"a\nb\"\n2,c\n", 0 ) );
+    }
+
+
+    @Test
+    public void testUnterminatedQuote() {
+        CsvChunkParser parser = parser( "1,a\n2,\"open\nfield", false, 1 );
+        assertTrue( parser.next() );
+        assertFalse( parser.next() );
+        assertTrue( parser.isUnterminated() );
+        // The record continues in the next chunk
+        assertEquals( 4, parser.getRecordStart() );
+
+        // At the end of the file, the open quote terminates the record
+        parser = parser( "1,a\n2,\"open\nfield", true, 1 );
+        assertTrue( parser.next() );
+        assertTrue( parser.next() );
+        assertEquals( "open\nfield", parser.fieldAsString( 1 ) );
+        assertFalse( parser.isUnterminated() );
+    }
+
+
+    @Test
+    public void testEmptyAndMissingFields() {
+        CsvChunkParser parser = parser( "1,,3\n4\n", true, 2 );
+        assertTrue( parser.next() );
+        assertFalse( parser.isFieldEmpty( 0 ) );
+        assertTrue( parser.isFieldEmpty( 1 ) );
+        assertEquals( 3, parser.fieldAsLong( 2 ) );
+        assertTrue( parser.next() );
+        assertEquals( 4, parser.fieldAsLong( 0 ) );
+        assertTrue( parser.isFieldEmpty( 1 ) );
+        assertTrue( parser.isFieldEmpty( 2 ) );
+        assertEquals( "", parser.fieldAsString( 2 ) );
+        assertTrue( parser.fieldEquals( 2, new byte[0] ) );
+        assertFalse( parser.next() );
+    }
+
+
+    @Test
+    public void testNumbers() {
+        CsvChunkParser parser = parser( "-12,+7,\"42\",12345678901234567890,1.5e3\n", true, 4 );
+        assertTrue( parser.next() );
+        assertEquals( -12, parser.fieldAsLong( 0 ) );
+        assertEquals( 7, parser.fieldAsLong( 1 ) );
+        assertEquals( 42, parser.fieldAsLong( 2 ) );
+        assertEquals( 1500.0, parser.fieldAsDouble( 4 ), 0 );
+        assertThrows( () -> parser.fieldAsLong( 3 ) );
+        assertThrows( () -> parser.fieldAsLong( 4 ) );
+    }
+
+
+    @Test
+    public void testFieldEquals() {
+        CsvChunkParser parser = parser( "abc,\"a\"\"b\",\u00e4\n", true, 2 );
+        assertTrue( parser.next() );
+        assertTrue( parser.fieldEquals( 0, bytes( "abc" ) ) );
+        assertFalse( parser.fieldEquals( 0, bytes( "ab" ) ) );
+        assertTrue( parser.fieldEquals( 1, bytes( "a\"b" ) ) );
+        assertTrue( parser.fieldEquals( 2, bytes( "\u00e4" ) ) );
+    }
+
+
+    @Test
+    public void testNoFieldAccessed() {
+        // With a maximum field of -1, records are only counted
+        CsvChunkParser parser = parser( "1,a\n\n\"2\n\",b\r\n3", true, -1 );
+        int records = 0;
+        while ( parser.next() ) {
+            records++;
+        }
+        assertEquals( 3, records );
+    }
+
+
+    private static void assertThrows( Runnable runnable ) {
+        try {
+            runnable.run();
+        } catch ( NumberFormatException e ) {
+            return;
+        }
+        throw new AssertionError( "Expected a NumberFormatException" );
+    }
+
+
+    private static byte[] bytes( String value ) {
+        return value.getBytes( StandardCharsets.UTF_8 );
+    }
+
+
+    private static CsvChunkParser parser( String content, boolean last, int maxField ) {
+        return new CsvChunkParser( ByteBuffer.wrap( bytes( content ) ), last, maxField );
+    }
+
+
+    /**
+     * Parses a complete file and returns the fields up to the given maximum field of all records.
+     */
+    private static List<List<String>> parse( String content, int maxField ) {
+        CsvChunkParser parser = parser( content, true, maxField );
+        List<List<String>> records = new ArrayList<>();
+        while ( parser.next() ) {
+            List<String> record = new ArrayList<>();
+            for ( int i = 0; i <= maxField; i++ ) {
+                record.add( parser.fieldAsString( i ) );
+            }
+            records.add( record );
+        }
+        return records;
+    }
+
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.adapter.csv;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.polypheny.db.adapter.SourceStatistics;
+import org.polypheny.db.algebra.operators.OperatorName;
+import org.polypheny.db.algebra.type.AlgDataTypeFactory;
+import org.polypheny.db.algebra.type.AlgDataTypeSystem;
+import org.polypheny.db.languages.OperatorRegistry;
+import org.polypheny.db.rex.RexBuilder;
+import org.polypheny.db.rex.RexNode;
+import org.polypheny.db.sql.SqlLanguagePlugin;
+import org.polypheny.db.type.PolyType;
+import org.polypheny.db.type.PolyTypeFactoryImpl;
+
+
+public class CsvParallelEnumeratorTest {
+
+    // Nominal chunk size of the enumerator
+    private static final int CHUNK_SIZE = 8 * 1024 * 1024;
+    static final AlgDataTypeFactory TYPE_FACTORY = new PolyTypeFactoryImpl( AlgDataTypeSystem.DEFAULT );
+    static final RexBuilder REX_BUILDER = new RexBuilder( TYPE_FACTORY );
+
+
+    static {
+        SqlLanguagePlugin.startup();
+    }
+
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+
+    @Test
+    public void testQuotedNewlineAcrossChunkBoundary() throws IOException {
+        StringBuilder content = new StringBuilder( "id:int,text:string\n" );
+        List<Object> expectedIds = new ArrayList<>();
+        int id = 0;
+        // The first newline after the nominal chunk size is inside the quoted field
+        while ( content.length() < CHUNK_SIZE - 500 ) {
+            expectedIds.add( id );
+            content.append( id++ ).append( ",short\n" );
+        }
+        String multiLine = "line\n".repeat( 200 );
+        int multiLineId = id;
+        expectedIds.add( id );
+        content.append( id++ ).append( ",\"" ).append( multiLine ).append( "\"\n" );
+        for ( int i = 0; i < 10; i++ ) {
+            expectedIds.add( id );
+            content.append( id++ ).append( ",\"a \"\"quoted\"\" value\"\n" );
+        }
+        File file = write( content.toString() );
+        List<CsvFieldType> fieldTypes = List.of( CsvFieldType.INT, CsvFieldType.STRING );
+
+        // Without statistics, the chunks are split speculatively and re-split once the quoted newline is detected
+        List<List<Object>> rows = read( file, fieldTypes, new int[]{ 0, 1 }, List.of(), null );
+        assertEquals( expectedIds, rows.stream().map( r -> r.get( 0 ) ).collect( Collectors.toList() ) );
+        assertEquals( multiLine, rows.get( multiLineId ).get( 1 ) );
+        assertEquals( "a \"quoted\" value", rows.get( rows.size() - 1 ).get( 1 ) );
+
+        // With statistics, the chunks are formed from blocks which start at record boundaries
+        SourceStatistics statistics = CsvParallelEnumerator.collectStatistics( file, fieldTypes ).build( file.length(), file.lastModified() );
+        assertEquals( expectedIds.size(), statistics.getRowCount() );
+        assertEquals( rows, read( file, fieldTypes, new int[]{ 0, 1 }, List.of(), statistics ) );
+    }
+
+
+    @Test
+    public void testEmptyNumericFieldsAreNull() throws IOException {
+        File file = write( "id:int,l:long,d:double,s:string\r\n1,,,\r\n\r\n2,5,1.5,x\r\n" );
+        List<CsvFieldType> fieldTypes = List.of( CsvFieldType.INT, CsvFieldType.LONG, CsvFieldType.DOUBLE, CsvFieldType.STRING );
+        assertEquals(
+                List.of( Arrays.asList( 1, null, null, "" ), List.of( 2, 5L, 1.5, "x" ) ),
+                read( file, fieldTypes, new int[]{ 0, 1, 2, 3 }, List.of(), null ) );
+    }
+
+
+    @Test
+    public void testProjection() throws IOException {
+        File file = write( "id:int,l:long,d:double\n1,,\n2,5,1.5\n" );
+        assertEquals(
+                List.of( Arrays.asList( null, 1 ), List.of( 1.5, 2 ) ),
+                read( file, List.of( CsvFieldType.DOUBLE, CsvFieldType.INT ), new int[]{ 2, 0 }, List.of(), null ) );
+
+        // If no field is needed (e.g. for counting), the records are still found correctly
+        file = write( "id:int,s:string\n1,\"a\nb\"\n\n2,c\n3,\"\"\"\"" );
+        List<List<Object>> rows = read( file, List.of(), new int[0], List.of(), null );
+        assertEquals( 3, rows.size() );
+        assertTrue( rows.stream().allMatch( List::isEmpty ) );
+    }
+
+
+    @Test
+    public void testFilters() throws IOException {
+        File file = write( "id:int,l:long,s:string\n1,,a\n2,5,\"b\"\n3,7,b\n" );
+        List<CsvFieldType> fieldTypes = List.of( CsvFieldType.INT, CsvFieldType.LONG, CsvFieldType.STRING );
+        int[] fields = { 1, 2, 3 };
+
+        // Empty numeric fields are null and never match
+        CsvScanFilter filter = CsvScanFilter.of( compare( OperatorName.NOT_EQUALS, 1, PolyType.BIGINT, "5" ), fields, fieldTypes );
+        assertEquals( List.of( List.of( 3 ) ), read( file, List.of( CsvFieldType.INT ), new int[]{ 0 }, List.of( filter ), null ) );
+
+        CsvScanFilter stringFilter = CsvScanFilter.of( equalsString( 2, "b" ), fields, fieldTypes );
+        CsvScanFilter numericFilter = CsvScanFilter.of( compare( OperatorName.LESS_THAN, 1, PolyType.BIGINT, "7" ), fields, fieldTypes );
+        assertEquals( List.of( List.of( 2 ) ), read( file, List.of( CsvFieldType.INT ), new int[]{ 0 }, List.of( stringFilter, numericFilter ), null ) );
+    }
+
+
+    @Test
+    public void testFloatBlockBoundsAreTakenFromText() throws IOException {
+        File file = write( "id:int,value:float\n1,0.1\n2,0.3\n" );
+        List<CsvFieldType> fieldTypes = List.of( CsvFieldType.INT, CsvFieldType.FLOAT );
+        SourceStatistics statistics = CsvParallelEnumerator.collectStatistics( file, fieldTypes ).build( file.length(), file.lastModified() );
+        assertEquals( Double.valueOf( 0.1 ), statistics.getBlocks()[0][1].getMin() );
+
+        // Rounded to float, the minimum would be larger than 0.1 and the block would be skipped
+        CsvScanFilter filter = CsvScanFilter.of( compare( OperatorName.LESS_THAN_OR_EQUAL, 1, PolyType.FLOAT, "0.1" ), new int[]{ 1, 2 }, fieldTypes );
+        assertEquals( List.of( List.of( 1 ) ), read( file, List.of( CsvFieldType.INT ), new int[]{ 0 }, List.of( filter ), statistics ) );
+    }
+
+
+    private File write( String content ) throws IOException {
+        File file = temporaryFolder.newFile();
+        FileUtils.writeStringToFile( file, content, StandardCharsets.UTF_8 );
+        return file;
+    }
+
+
+    static RexNode compare( OperatorName operator, int index, PolyType type, String literal ) {
+        return REX_BUILDER.makeCall(
+                OperatorRegistry.get( operator ),
+                REX_BUILDER.makeInputRef( TYPE_FACTORY.createPolyType( type ), index ),
+                REX_BUILDER.makeExactLiteral( new BigDecimal( literal ) ) );
+    }
+
+
+    static RexNode equalsString( int index, String literal ) {
+        return REX_BUILDER.makeCall(
+                OperatorRegistry.get( OperatorName.EQUALS ),
+                REX_BUILDER.makeInputRef( TYPE_FACTORY.createPolyType( PolyType.VARCHAR, 20 ), index ),
+                REX_BUILDER.makeLiteral( literal ) );
+    }
+
+
+    /**
+     * Returns all rows of the file which satisfy the filters.
+     */
+    private static List<List<Object>> read( File file, List<CsvFieldType> fieldTypes, int[] rawFields, List<CsvScanFilter> filters, SourceStatistics statistics ) {
+        List<List<Object>> rows = new ArrayList<>();
+        CsvParallelEnumerator enumerator = new CsvParallelEnumerator( file, new AtomicBoolean(), fieldTypes, rawFields, filters, statistics );
+        try {
+            while ( enumerator.moveNext() ) {
+                rows.add( Arrays.asList( enumerator.current() ) );
+            }
+        } finally {
+            enumerator.close();
+        }
+        return rows;
+    }
+
+}
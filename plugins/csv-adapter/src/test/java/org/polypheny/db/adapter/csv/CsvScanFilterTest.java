@@ -0,0 +1,189 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.adapter.csv;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.polypheny.db.adapter.csv.CsvParallelEnumeratorTest.REX_BUILDER;
+import static org.polypheny.db.adapter.csv.CsvParallelEnumeratorTest.TYPE_FACTORY;
+import static org.polypheny.db.adapter.csv.CsvParallelEnumeratorTest.compare;
+import static org.polypheny.db.adapter.csv.CsvParallelEnumeratorTest.equalsString;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.polypheny.db.adapter.SourceStatistics;
+import org.polypheny.db.adapter.SourceStatistics.ColumnStatistics;
+import org.polypheny.db.algebra.operators.OperatorName;
+import org.polypheny.db.languages.OperatorRegistry;
+import org.polypheny.db.rex.RexNode;
+import org.polypheny.db.type.PolyType;
+
+
+public class CsvScanFilterTest {
+
+    private static final List<CsvFieldType> FIELD_TYPES = List.of( CsvFieldType.LONG, CsvFieldType.DOUBLE, CsvFieldType.STRING );
+    // The columns of the table are the fields 2, 3 and 1 of the file
+    private static final int[] FIELDS = { 2, 3, 1 };
+
+
+    @Test
+    public void testUnsupportedConditions() {
+        RexNode bothColumns = REX_BUILDER.makeCall(
+                OperatorRegistry.get( OperatorName.EQUALS ),
+                REX_BUILDER.makeInputRef( TYPE_FACTORY.createPolyType( PolyType.BIGINT ), 0 ),
+                REX_BUILDER.makeInputRef( TYPE_FACTORY.createPolyType( PolyType.DOUBLE ), 1 ) );
+        assertNull( CsvScanFilter.of( bothColumns, FIELDS, FIELD_TYPES ) );
+        // Only equality is supported on strings
+        RexNode stringComparison = REX_BUILDER.makeCall(
+                OperatorRegistry.get( OperatorName.LESS_THAN ),
+                REX_BUILDER.makeInputRef( TYPE_FACTORY.createPolyType( PolyType.VARCHAR, 20 ), 2 ),
+                REX_BUILDER.makeLiteral( "b" ) );
+        assertNull( CsvScanFilter.of( stringComparison, FIELDS, FIELD_TYPES ) );
+        // A string literal compared with a numeric column
+        assertNull( CsvScanFilter.of( equalsString( 0, "5" ), FIELDS, FIELD_TYPES ) );
+        RexNode isNull = REX_BUILDER.makeCall(
+                OperatorRegistry.get( OperatorName.EQUALS ),
+                REX_BUILDER.makeInputRef( TYPE_FACTORY.createPolyType( PolyType.BIGINT ), 0 ),
+                REX_BUILDER.makeNullLiteral( TYPE_FACTORY.createPolyType( PolyType.BIGINT ) ) );
+        assertNull( CsvScanFilter.of( isNull, FIELDS, FIELD_TYPES ) );
+    }
+
+
+    @Test
+    public void testFieldMapping() {
+        assertEquals( 1, CsvScanFilter.of( compare( OperatorName.EQUALS, 0, PolyType.BIGINT, "1" ), FIELDS, FIELD_TYPES ).field );
+        assertEquals( 0, CsvScanFilter.of( equalsString( 2, "a" ), FIELDS, FIELD_TYPES ).field );
+    }
+
+
+    @Test
+    public void testIntegralComparison() {
+        List<String> records = List.of( "a,1,0.5", "b,2,1.5", "c,3,2.5" );
+        assertEquals( List.of( "c" ), matching( compare( OperatorName.GREATER_THAN, 0, PolyType.BIGINT, "2" ), records ) );
+        assertEquals( List.of( "b", "c" ), matching( compare( OperatorName.GREATER_THAN_OR_EQUAL, 0, PolyType.BIGINT, "2" ), records ) );
+        assertEquals( List.of( "a" ), matching( compare( OperatorName.LESS_THAN, 0, PolyType.BIGINT, "2" ), records ) );
+        assertEquals( List.of( "a", "b" ), matching( compare( OperatorName.LESS_THAN_OR_EQUAL, 0, PolyType.BIGINT, "2" ), records ) );
+        assertEquals( List.of( "b" ), matching( compare( OperatorName.EQUALS, 0, PolyType.BIGINT, "2" ), records ) );
+        assertEquals( List.of( "a", "c" ), matching( compare( OperatorName.NOT_EQUALS, 0, PolyType.BIGINT, "2" ), records ) );
+        // A decimal literal on an integral column
+        assertEquals( List.of( "a", "b" ), matching( compare( OperatorName.LESS_THAN, 0, PolyType.BIGINT, "2.5" ), records ) );
+
+        // Large values are compared without a detour over double, which could not tell them apart
+        List<String> large = List.of( "a,9007199254740992,0", "b,9007199254740993,0" );
+        assertEquals( List.of( "b" ), matching( compare( OperatorName.EQUALS, 0, PolyType.BIGINT, "9007199254740993" ), large ) );
+    }
+
+
+    @Test
+    public void testReversedComparison() {
+        // 2 < column is the same as column > 2
+        RexNode reversed = REX_BUILDER.makeCall(
+                OperatorRegistry.get( OperatorName.LESS_THAN ),
+                REX_BUILDER.makeExactLiteral( new BigDecimal( "2" ) ),
+                REX_BUILDER.makeInputRef( TYPE_FACTORY.createPolyType( PolyType.BIGINT ), 0 ) );
+        assertEquals( List.of( "c" ), matching( reversed, List.of( "a,1,0", "b,2,0", "c,3,0" ) ) );
+    }
+
+
+    @Test
+    public void testDecimalComparison() {
+        List<String> records = List.of( "a,1,0.5", "b,2,1.5", "c,3,1e1" );
+        assertEquals( List.of( "b", "c" ), matching( compare( OperatorName.GREATER_THAN, 1, PolyType.DOUBLE, "1" ), records ) );
+        assertEquals( List.of( "b" ), matching( compare( OperatorName.EQUALS, 1, PolyType.DOUBLE, "1.5" ), records ) );
+    }
+
+
+    @Test
+    public void testEmptyAndInvalidFields() {
+        List<String> records = List.of( "a,,", "b,x,y", "c,3,\"1.5\"" );
+        // Comparisons with null or with values which are not numbers are never true
+        assertEquals( List.of( "c" ), matching( compare( OperatorName.NOT_EQUALS, 0, PolyType.BIGINT, "2" ), records ) );
+        assertEquals( List.of( "c" ), matching( compare( OperatorName.NOT_EQUALS, 1, PolyType.DOUBLE, "2" ), records ) );
+    }
+
+
+    @Test
+    public void testStringEquality() {
+        // The same value escaped with a backslash and with a doubled quote
+        List<String> records = List.of( "a\\\"b,1,0", "\"a\"\"b\",2,0", "ab,3,0", ",4,0" );
+        assertEquals( List.of( "a\"b", "a\"b" ), matching( equalsString( 2, "a\"b" ), records ) );
+    }
+
+
+    @Test
+    public void testMayMatch() {
+        // The statistics are collected per field of the file
+        SourceStatistics.Builder builder = new SourceStatistics.Builder( 3, false );
+        for ( int i = 10; i <= 20; i++ ) {
+            builder.add( new Object[]{ Character.toString( (char) ('b' + i % 3) ), (long) i, i / 2.0 }, 0 );
+        }
+        ColumnStatistics[] statistics = builder.build( 0, 0 ).getColumns();
+
+        assertFalse( mayMatch( compare( OperatorName.GREATER_THAN, 0, PolyType.BIGINT, "20" ), statistics ) );
+        assertTrue( mayMatch( compare( OperatorName.GREATER_THAN_OR_EQUAL, 0, PolyType.BIGINT, "20" ), statistics ) );
+        assertFalse( mayMatch( compare( OperatorName.LESS_THAN, 0, PolyType.BIGINT, "10" ), statistics ) );
+        assertTrue( mayMatch( compare( OperatorName.LESS_THAN_OR_EQUAL, 0, PolyType.BIGINT, "10" ), statistics ) );
+        assertFalse( mayMatch( compare( OperatorName.EQUALS, 0, PolyType.BIGINT, "5" ), statistics ) );
+        assertTrue( mayMatch( compare( OperatorName.EQUALS, 0, PolyType.BIGINT, "15" ), statistics ) );
+        // Inequality cannot be decided from a range
+        assertTrue( mayMatch( compare( OperatorName.NOT_EQUALS, 0, PolyType.BIGINT, "15" ), statistics ) );
+
+        assertFalse( mayMatch( compare( OperatorName.GREATER_THAN, 1, PolyType.DOUBLE, "10" ), statistics ) );
+        assertTrue( mayMatch( compare( OperatorName.GREATER_THAN, 1, PolyType.DOUBLE, "9.5" ), statistics ) );
+
+        assertFalse( mayMatch( equalsString( 2, "a" ), statistics ) );
+        assertTrue( mayMatch( equalsString( 2, "c" ), statistics ) );
+        assertFalse( mayMatch( equalsString( 2, "e" ), statistics ) );
+    }
+
+
+    /**
+     * Returns the first field of all records which satisfy the condition.
+     */
+    private static List<String> matching( RexNode condition, List<String> records ) {
+        CsvScanFilter filter = CsvScanFilter.of( condition, FIELDS, FIELD_TYPES );
+        assertNotNull( filter );
+        CsvChunkParser parser = new CsvChunkParser( ByteBuffer.wrap( String.join( "\n", records ).getBytes( StandardCharsets.UTF_8 ) ), true, 2 );
+        List<String> matching = new ArrayList<>();
+        while ( parser.next() ) {
+            if ( filter.matches( parser ) ) {
+                matching.add( parser.fieldAsString( 0 ) );
+            }
+        }
+        return matching;
+    }
+
+
+    /**
+     * Evaluates the condition against the statistics of the field it refers to.
+     */
+    private static boolean mayMatch( RexNode condition, ColumnStatistics[] statistics ) {
+        CsvScanFilter filter = CsvScanFilter.of( condition, FIELDS, FIELD_TYPES );
+        assertNotNull( filter );
+        return filter.mayMatch( statistics[filter.field] );
+    }
+
+}
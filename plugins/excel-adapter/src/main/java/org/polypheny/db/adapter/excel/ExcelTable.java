@@ -16,12 +16,18 @@
 
 package org.polypheny.db.adapter.excel;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.polypheny.db.adapter.SourceStatistics;
+import org.polypheny.db.adapter.SourceStatisticsManager;
 import org.polypheny.db.adapter.java.JavaTypeFactory;
 import org.polypheny.db.algebra.type.AlgDataType;
 import org.polypheny.db.algebra.type.AlgDataTypeFactory;
 import org.polypheny.db.algebra.type.AlgProtoDataType;
+import org.polypheny.db.schema.Statistic;
 import org.polypheny.db.schema.impl.AbstractTable;
 import org.polypheny.db.util.Source;
 
@@ -84,6 +90,37 @@ public AlgDataType getRowType( AlgDataTypeFactory typeFactory ) {
     }
 
 
+    /**
+     * Returns the statistics of the table if the statistics of the sheet are available. Since workbooks are
+     * compressed, the statistics have no index.
+     */
+    @Override
+    public Statistic getStatistic() {
+        if ( fieldTypes == null || !"file".equals( source.protocol() ) || !source.file().isFile() ) {
+            return super.getStatistic();
+        }
+        final File file = source.file();
+        final List<ExcelFieldType> types = fieldTypes;
+        SourceStatistics statistics = SourceStatisticsManager.getInstance().getStatistics( file, "excel|" + sheet + "|" + Arrays.toString( fields ), () -> {
+            SourceStatistics.Builder builder = new SourceStatistics.Builder( fields.length, false );
+            ExcelEnumerator<Object[]> enumerator = new ExcelEnumerator<>( source, new AtomicBoolean(), false, null, new ExcelEnumerator.ArrayRowConverter( types, fields ), sheet );
+            while ( enumerator.moveNext() ) {
+                builder.add( enumerator.current(), -1 );
+            }
+            enumerator.close();
+            return builder;
+        } );
+        if ( statistics == null ) {
+            return super.getStatistic();
+        }
+        int[] columns = new int[fields.length];
+        for ( int i = 0; i < fields.length; i++ ) {
+            columns[i] = i;
+        }
+        return statistics.toStatistic( columns );
+    }
+
+
     /**
      * Various degrees of table "intelligence".
      */
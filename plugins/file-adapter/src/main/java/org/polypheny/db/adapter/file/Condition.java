@@ -33,6 +33,7 @@
 import org.apache.calcite.linq4j.tree.Expression;
 import org.apache.calcite.linq4j.tree.Expressions;
 import org.polypheny.db.adapter.DataContext;
+import org.polypheny.db.adapter.file.columnar.ZoneMap;
 import org.polypheny.db.algebra.constant.Kind;
 import org.polypheny.db.rex.RexCall;
 import org.polypheny.db.rex.RexDynamicParam;
@@ -215,6 +216,70 @@ private static boolean like( final String str, String expr ) {
     }
 
 
+    /**
+     * Checks whether any row of a block could satisfy the condition, based on the min/max values of its columns.
+     * The check is conservative, it only returns {@code false} if the zone maps prove that no row of the block matches.
+     *
+     * @param zoneMaps Zone maps of the block, indexed like the columns coming from the tableScan. Entries may be {@code null} if unknown
+     */
+    public boolean mayMatch( final ZoneMap[] zoneMaps, final PolyType[] columnTypes, final DataContext dataContext ) {
+        if ( columnReference == null ) {
+            switch ( operator ) {
+                case AND:
+                    for ( Condition c : operands ) {
+                        if ( !c.mayMatch( zoneMaps, columnTypes, dataContext ) ) {
+                            return false;
+                        }
+                    }
+                    return true;
+                case OR:
+                    for ( Condition c : operands ) {
+                        if ( c.mayMatch( zoneMaps, columnTypes, dataContext ) ) {
+                            return true;
+                        }
+                    }
+                    return false;
+                default:
+                    return true;
+            }
+        }
+        ZoneMap zoneMap = zoneMaps[columnReference];
+        if ( zoneMap == null ) {
+            return true;
+        }
+        switch ( operator ) {
+            case IS_NULL:
+                return zoneMap.hasNulls();
+            case IS_NOT_NULL:
+                return zoneMap.hasValues();
+            case EQUALS:
+            case NOT_EQUALS:
+            case GREATER_THAN:
+            case GREATER_THAN_OR_EQUAL:
+            case LESS_THAN:
+            case LESS_THAN_OR_EQUAL:
+                break;
+            default:
+                return true;
+        }
+        if ( !zoneMap.hasValues() ) {
+            // A comparison with null is never true
+            return false;
+        }
+        Object parameterValue = getParamValue( dataContext, columnTypes[columnReference] );
+        if ( parameterValue == null ) {
+            return false;
+        }
+        if ( FileHelper.isSqlDateOrTimeOrTS( parameterValue ) ) {
+            parameterValue = FileHelper.sqlToLong( parameterValue );
+        }
+        if ( !(parameterValue instanceof Comparable) ) {
+            return true;
+        }
+        return zoneMap.mayMatch( operator, (Comparable<?>) parameterValue );
+    }
+
+
     public boolean matches( final Object[] columnValues, final PolyType[] columnTypes, final DataContext dataContext ) {
         if ( columnReference == null ) { // || literalIndex == null ) {
             switch ( operator ) {
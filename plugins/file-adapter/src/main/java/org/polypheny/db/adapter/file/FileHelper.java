@@ -25,6 +25,9 @@
 import java.sql.Time;
 import java.sql.Timestamp;
 import java.util.Comparator;
+import org.polypheny.db.util.DateString;
+import org.polypheny.db.util.TimeString;
+import org.polypheny.db.util.TimestampString;
 
 
 public class FileHelper {
@@ -73,4 +76,24 @@ static Long sqlToLong( final Timestamp timestamp ) {
         return timestamp.toInstant().toEpochMilli();
     }
 
+
+    /**
+     * Converts a value into the string representation the file store persists, see {@link FileModifier#write}.
+     * Dates, times and timestamps are stored as numbers so they can be parsed with {@link org.polypheny.db.type.PolyTypeUtil#stringToObject}.
+     */
+    public static String toStorageString( final Object value ) {
+        if ( value == null ) {
+            return null;
+        } else if ( isSqlDateOrTimeOrTS( value ) ) {
+            return sqlToLong( value ).toString();
+        } else if ( value instanceof TimestampString ) {
+            return String.valueOf( ((TimestampString) value).getMillisSinceEpoch() );
+        } else if ( value instanceof DateString ) {
+            return String.valueOf( ((DateString) value).getDaysSinceEpoch() );
+        } else if ( value instanceof TimeString ) {
+            return String.valueOf( ((TimeString) value).getMillisOfDay() );
+        }
+        return value.toString();
+    }
+
 }
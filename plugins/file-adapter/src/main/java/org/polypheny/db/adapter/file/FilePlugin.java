@@ -32,8 +32,11 @@
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.codec.DecoderException;
@@ -44,8 +47,13 @@
 import org.pf4j.Plugin;
 import org.pf4j.PluginWrapper;
 import org.polypheny.db.adapter.Adapter.AdapterProperties;
+import org.polypheny.db.adapter.Adapter.AdapterSettingInteger;
+import org.polypheny.db.adapter.Adapter.AdapterSettingList;
+import org.polypheny.db.adapter.DataContext;
 import org.polypheny.db.adapter.DataStore;
 import org.polypheny.db.adapter.DeployMode;
+import org.polypheny.db.adapter.file.columnar.ColumnarPartition;
+import org.polypheny.db.adapter.file.columnar.ColumnarStorage;
 import org.polypheny.db.catalog.Adapter;
 import org.polypheny.db.catalog.Catalog;
 import org.polypheny.db.catalog.entity.CatalogColumn;
@@ -59,12 +67,14 @@
 import org.polypheny.db.information.InformationGraph.GraphType;
 import org.polypheny.db.information.InformationGroup;
 import org.polypheny.db.information.InformationManager;
+import org.polypheny.db.information.InformationTable;
 import org.polypheny.db.prepare.Context;
 import org.polypheny.db.schema.Schema;
 import org.polypheny.db.schema.SchemaPlus;
 import org.polypheny.db.schema.Table;
 import org.polypheny.db.transaction.PolyXid;
 import org.polypheny.db.type.PolyType;
+import org.polypheny.db.type.PolyTypeFamily;
 import org.polypheny.db.util.PolyphenyHomeDirManager;
 
 ;
@@ -87,7 +97,9 @@ public FilePlugin( PluginWrapper wrapper ) {
     @Override
     public void start() {
         Map<String, String> settings = ImmutableMap.of(
-                "mode", "embedded"
+                "mode", "embedded",
+                "layout", "legacy",
+                "blockSize", "16384"
         );
 
         Adapter.addAdapter( FileStore.class, ADAPTER_NAME, settings );
@@ -106,6 +118,10 @@ public void stop() {
             name = "File",
             description = "An adapter that stores all data as files. It is especially suitable for multimedia collections.",
             usedModes = DeployMode.EMBEDDED)
+    @AdapterSettingList(name = "layout", options = { "legacy", "columnar" }, defaultValue = "legacy", required = false, position = 1,
+            description = "How the data is stored. The legacy layout stores every value in its own file and supports multimedia data. The columnar layout stores blocks of rows in compressed column chunks, which is much faster to scan.")
+    @AdapterSettingInteger(name = "blockSize", defaultValue = 16384, required = false, position = 2, subOf = "layout_columnar",
+            description = "Maximum number of rows per block of the columnar layout. Changes are merged into the blocks once this many changes have been committed.")
     public static class FileStore extends DataStore {
 
         // Standards
@@ -124,8 +140,17 @@ public static class FileStore extends DataStore {
 
         private final File WAL; // A folder containing the write ahead log
 
+        // Transactions prepared before the last shutdown, which have not been resolved yet
+        private final Set<PolyXid> preparedTransactions = ConcurrentHashMap.newKeySet();
+
         @Getter
-        private final List<PolyType> unsupportedTypes = ImmutableList.of( PolyType.ARRAY, PolyType.MAP );
+        private final List<PolyType> unsupportedTypes;
+
+        /**
+         * Storage of the columnar layout, {@code null} if the store uses the legacy layout with one file per value
+         */
+        @Getter
+        private final ColumnarStorage columnarStorage;
 
 
         public FileStore( final int storeId, final String uniqueName, final Map<String, String> settings ) {
@@ -137,11 +162,28 @@ public FileStore( final int storeId, final String uniqueName, final Map<String,
 
             WAL = fileManager.registerNewFolder( rootDir, "WAL" );
 
-            trxRecovery();
+            // Stores deployed before the columnar layout was introduced have no layout setting
+            if ( "columnar".equals( settings.getOrDefault( "layout", "legacy" ) ) ) {
+                columnarStorage = new ColumnarStorage( rootDir, getAdapterId(), Integer.parseInt( settings.getOrDefault( "blockSize", "16384" ) ) );
+                unsupportedTypes = ImmutableList.of( PolyType.ARRAY, PolyType.MAP, PolyType.FILE, PolyType.IMAGE, PolyType.VIDEO, PolyType.AUDIO );
+            } else {
+                columnarStorage = null;
+                unsupportedTypes = ImmutableList.of( PolyType.ARRAY, PolyType.MAP );
+            }
+
+            Set<String> preparedXidHashes = trxRecovery();
+            if ( isColumnar() ) {
+                columnarStorage.discardPendingChanges( preparedXidHashes );
+            }
             setInformationPage();
         }
 
 
+        public boolean isColumnar() {
+            return columnarStorage != null;
+        }
+
+
         private void setInformationPage() {
             InformationGroup infoGroup = new InformationGroup( informationPage, "Disk usage in GB" );
             informationGroups.add( infoGroup );
@@ -170,6 +212,24 @@ private void setInformationPage() {
             im.addPage( informationPage );
             im.addGroup( infoGroup );
             im.registerInformation( infoElement );
+
+            if ( isColumnar() ) {
+                InformationGroup storageGroup = new InformationGroup( informationPage, "Columnar storage" );
+                informationGroups.add( storageGroup );
+                InformationTable storageTable = new InformationTable(
+                        storageGroup,
+                        ImmutableList.of( "Partition", "Blocks", "Rows in blocks", "Uncompacted changes" ) );
+                storageGroup.setRefreshFunction( () -> {
+                    storageTable.reset();
+                    for ( long partitionId : columnarStorage.getPartitionIds() ) {
+                        ColumnarPartition partition = columnarStorage.getPartition( partitionId );
+                        List<ColumnarPartition.Segment> segments = partition.getSegments();
+                        storageTable.addRow( partitionId, segments.size(), segments.stream().mapToLong( ColumnarPartition.Segment::getRowCount ).sum(), partition.getDeltaSize() );
+                    }
+                } );
+                im.addGroup( storageGroup );
+                im.registerInformation( storageTable );
+            }
         }
 
 
@@ -198,6 +258,12 @@ public Schema getCurrentSchema() {
         public void createTable( Context context, CatalogTable catalogTable, List<Long> partitionIds ) {
             context.getStatement().getTransaction().registerInvolvedAdapter( this );
 
+            if ( isColumnar() ) {
+                for ( Long colId : catalogTable.fieldIds ) {
+                    checkColumnarSupport( catalog.getColumn( colId ) );
+                }
+            }
+
             for ( long partitionId : partitionIds ) {
                 catalog.updatePartitionPlacementPhysicalNames(
                         getAdapterId(),
@@ -205,6 +271,10 @@ public void createTable( Context context, CatalogTable catalogTable, List<Long>
                         "unused",
                         "unused" );
 
+                if ( isColumnar() ) {
+                    columnarStorage.createPartition( partitionId );
+                    continue;
+                }
                 for ( Long colId : catalogTable.fieldIds ) {
                     File newColumnFolder = getColumnFolder( colId, partitionId );
                     if ( !newColumnFolder.mkdir() ) {
@@ -231,6 +301,10 @@ public void dropTable( Context context, CatalogTable catalogTable, List<Long> pa
 
             for ( long partitionId : partitionIds ) {
                 catalog.deletePartitionPlacement( getAdapterId(), partitionId );
+                if ( isColumnar() ) {
+                    columnarStorage.dropPartition( partitionId );
+                    continue;
+                }
                 for ( Long colId : catalogTable.fieldIds ) {
                     File f = getColumnFolder( colId, partitionId );
                     try {
@@ -255,7 +329,23 @@ public void addColumn( Context context, CatalogTable catalogTable, CatalogColumn
                     break;
                 }
             }
+            if ( isColumnar() ) {
+                checkColumnarSupport( catalogColumn );
+            }
             for ( CatalogPartitionPlacement partitionPlacement : catalog.getPartitionPlacementsByTableOnAdapter( ccp.adapterId, catalogTable.id ) ) {
+                if ( isColumnar() ) {
+                    try {
+                        columnarStorage.getPartition( partitionPlacement.partitionId ).addColumn(
+                                catalogColumn.id,
+                                catalogColumn.type,
+                                catalogColumn.defaultValue != null ? catalogColumn.defaultValue.value : null,
+                                columnarStorage.getLayout( partitionPlacement.partitionId ),
+                                columnarStorage.getBlockSize() );
+                    } catch ( IOException e ) {
+                        throw new RuntimeException( "Could not add column " + catalogColumn.name, e );
+                    }
+                    continue;
+                }
                 File newColumnFolder = getColumnFolder( catalogColumn.id, partitionPlacement.partitionId );
                 if ( !newColumnFolder.mkdir() ) {
                     throw new RuntimeException( "Could not create column folder " + newColumnFolder.getName() );
@@ -289,6 +379,14 @@ public void dropColumn( Context context, CatalogColumnPlacement columnPlacement
             context.getStatement().getTransaction().registerInvolvedAdapter( this );
 
             for ( CatalogPartitionPlacement partitionPlacement : catalog.getPartitionPlacementsByTableOnAdapter( columnPlacement.adapterId, columnPlacement.tableId ) ) {
+                if ( isColumnar() ) {
+                    try {
+                        columnarStorage.getPartition( partitionPlacement.partitionId ).dropColumn( columnPlacement.columnId );
+                    } catch ( IOException e ) {
+                        throw new RuntimeException( "Could not delete column chunks", e );
+                    }
+                    continue;
+                }
                 File columnFile = getColumnFolder( columnPlacement.columnId, partitionPlacement.partitionId );
                 try {
                     FileUtils.deleteDirectory( columnFile );
@@ -313,6 +411,8 @@ public void dropIndex( Context context, CatalogIndex catalogIndex, List<Long> pa
 
         @Override
         public boolean prepare( PolyXid xid ) {
+            // The changes of prepared transactions have to survive a restart until the coordinator decides on them
+            addWAL( xid, "prepare" );
             return true;
         }
 
@@ -322,6 +422,7 @@ public void commit( PolyXid xid ) {
             addWAL( xid, "commit" );
             commitOrRollback( xid, true );
             removeWAL( xid );
+            preparedTransactions.remove( xid );
         }
 
 
@@ -330,6 +431,13 @@ public void rollback( PolyXid xid ) {
             addWAL( xid, "rollback" );
             commitOrRollback( xid, false );
             removeWAL( xid );
+            preparedTransactions.remove( xid );
+        }
+
+
+        @Override
+        public List<PolyXid> getPreparedTransactions() {
+            return new ArrayList<>( preparedTransactions );
         }
 
 
@@ -355,12 +463,16 @@ void removeWAL( final PolyXid key ) {
 
         /**
          * To recover from a crash, the file adapter checks if there is entries in the WAL folder
-         * It will continue to execute the WAL entries
+         * It will continue to execute the WAL entries. Prepared transactions are in doubt, their entries are kept until
+         * the transaction recovery commits or rolls them back (see {@link #getPreparedTransactions()}).
+         *
+         * @return the hashes of the transactions which have been prepared but neither committed nor rolled back
          */
-        void trxRecovery() {
+        Set<String> trxRecovery() {
+            Set<String> prepared = new HashSet<>();
             File[] walFiles = WAL.listFiles( file -> !file.isHidden() );
             if ( walFiles == null ) {
-                return;
+                return prepared;
             }
             try {
                 for ( File f : walFiles ) {
@@ -380,6 +492,11 @@ void trxRecovery() {
                         case "rollback":
                             commitOrRollback( xid, false );
                             break;
+                        case "prepare":
+                            log.warn( "Transaction {} has been prepared on file store {} and is in doubt", xid, getUniqueName() );
+                            prepared.add( SHA.hashString( xid.toString(), CHARSET ).toString() );
+                            preparedTransactions.add( xid );
+                            continue;
                         default:
                             throw new RuntimeException( "Unexpected WAL entry: " + action );
                     }
@@ -388,11 +505,17 @@ void trxRecovery() {
             } catch ( IOException | DecoderException e ) {
                 log.error( "Could not recover", e );
             }
+            return prepared;
         }
 
 
         public void commitOrRollback( final PolyXid xid, final boolean commit ) {
             String xidHash = SHA.hashString( xid.toString(), CHARSET ).toString();
+            if ( isColumnar() ) {
+                columnarStorage.commitOrRollback( xidHash, commit );
+                cleanupHardlinks( xid );
+                return;
+            }
             final String deletePrefix;
             final String movePrefix;
             if ( commit ) {
@@ -454,6 +577,14 @@ private void cleanupHardlinks( final PolyXid xid ) {
         public void truncate( Context context, CatalogTable table ) {
             //context.getStatement().getTransaction().registerInvolvedStore( this );
             for ( CatalogPartitionPlacement partitionPlacement : catalog.getPartitionPlacementsByTableOnAdapter( getAdapterId(), table.id ) ) {
+                if ( isColumnar() ) {
+                    try {
+                        columnarStorage.getPartition( partitionPlacement.partitionId ).truncate();
+                    } catch ( IOException e ) {
+                        throw new RuntimeException( "Could not truncate file table", e );
+                    }
+                    continue;
+                }
                 FileTranslatableTable fileTable = (FileTranslatableTable) currentSchema.getTable( table.name + "_" + partitionPlacement.partitionId );
                 try {
                     for ( String colName : fileTable.getColumnNames() ) {
@@ -498,6 +629,9 @@ public List<FunctionalIndexInfo> getFunctionalIndexes( CatalogTable catalogTable
         public void shutdown() {
             log.info( "Shutting down file store '{}'", getUniqueName() );
             removeInformationPage();
+            if ( isColumnar() ) {
+                columnarStorage.shutdown();
+            }
             try {
                 FileHelper.deleteDirRecursively( rootDir );
             } catch ( IOException e ) {
@@ -512,6 +646,21 @@ protected void reloadSettings( List<String> updatedSettings ) {
         }
 
 
+        private void checkColumnarSupport( final CatalogColumn catalogColumn ) {
+            if ( catalogColumn.type.getFamily() == PolyTypeFamily.MULTIMEDIA ) {
+                throw new RuntimeException( "The columnar layout of the file adapter does not support multimedia columns" );
+            }
+        }
+
+
+        /**
+         * Hash of the transaction which is used to name its uncommitted changes
+         */
+        public static String getXidHash( final DataContext dataContext ) {
+            return SHA.hashString( dataContext.getStatement().getTransaction().getXid().toString(), CHARSET ).toString();
+        }
+
+
         protected static String getPhysicalColumnName( long columnId, long partitionId ) {
             return "col" + columnId + "_" + partitionId;
         }
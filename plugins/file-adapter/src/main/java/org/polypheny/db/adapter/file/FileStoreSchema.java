@@ -32,6 +32,8 @@
 import org.polypheny.db.adapter.DataContext;
 import org.polypheny.db.adapter.file.FileAlg.FileImplementor.Operation;
 import org.polypheny.db.adapter.file.FilePlugin.FileStore;
+import org.polypheny.db.adapter.file.columnar.ColumnarEnumerator;
+import org.polypheny.db.adapter.file.columnar.ColumnarModifier;
 import org.polypheny.db.algebra.type.AlgDataTypeFactory;
 import org.polypheny.db.algebra.type.AlgDataTypeImpl;
 import org.polypheny.db.algebra.type.AlgDataTypeSystem;
@@ -160,10 +162,24 @@ public static Enumerable<Object> execute(
             final Integer[] projectionMapping,
             final Condition condition,
             final Value[] updates ) {
-        dataContext.getStatement().getTransaction().registerInvolvedAdapter( AdapterManager.getInstance().getAdapter( adapterId ) );
+        final FileStore fileStore = (FileStore) AdapterManager.getInstance().getAdapter( adapterId );
+        dataContext.getStatement().getTransaction().registerInvolvedAdapter( fileStore );
         return new AbstractEnumerable<Object>() {
             @Override
             public Enumerator<Object> enumerator() {
+                if ( fileStore.isColumnar() ) {
+                    return new ColumnarEnumerator(
+                            operation,
+                            fileStore.getColumnarStorage().getPartition( partitionId ),
+                            FileStore.getXidHash( dataContext ),
+                            columnIds,
+                            columnTypes,
+                            pkIds,
+                            projectionMapping,
+                            dataContext,
+                            condition,
+                            updates );
+                }
                 return new FileEnumerator( operation, path, partitionId, columnIds, columnTypes, pkIds, projectionMapping, dataContext, condition, updates );
             }
         };
@@ -187,7 +203,8 @@ public static Enumerable<Object> executeModify(
             final Boolean isBatch,
             final Object[] insertValues,
             final Condition condition ) {
-        dataContext.getStatement().getTransaction().registerInvolvedAdapter( AdapterManager.getInstance().getAdapter( adapterId ) );
+        final FileStore fileStore = (FileStore) AdapterManager.getInstance().getAdapter( adapterId );
+        dataContext.getStatement().getTransaction().registerInvolvedAdapter( fileStore );
         final Object[] insert;
 
         ArrayList<Object[]> rows = new ArrayList<>();
@@ -219,6 +236,9 @@ public static Enumerable<Object> executeModify(
         return new AbstractEnumerable<Object>() {
             @Override
             public Enumerator<Object> enumerator() {
+                if ( fileStore.isColumnar() ) {
+                    return new ColumnarModifier( fileStore.getColumnarStorage().getPartition( partitionId ), FileStore.getXidHash( dataContext ), columnIds, columnTypes, pkIds, dataContext, insert );
+                }
                 return new FileModifier( operation, path, partitionId, columnIds, columnTypes, pkIds, dataContext, insert, condition );
             }
         };
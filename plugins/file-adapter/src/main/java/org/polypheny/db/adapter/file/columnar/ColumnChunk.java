@@ -0,0 +1,455 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.adapter.file.columnar;
+
+
+import com.google.common.collect.ImmutableSet;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import lombok.Getter;
+import org.polypheny.db.adapter.file.columnar.ZoneMap.StatsKind;
+import org.polypheny.db.type.PolyType;
+import org.polypheny.db.type.PolyTypeFamily;
+
+
+/**
+ * The values of one column within a block. A chunk file consists of a header with the {@link ZoneMap}, a bitmap marking
+ * the null values and the encoded non-null values. Values are handled in their storage representation,
+ * see {@link org.polypheny.db.adapter.file.FileHelper#toStorageString}.
+ *
+ * Integral columns (including dates, times and timestamps) are encoded with run-length or delta encoding, whichever is
+ * smaller. All other columns use a dictionary if they contain few distinct values and are stored plain otherwise.
+ * Chunk files are read through a memory mapping.
+ */
+public class ColumnChunk {
+
+    private static final int MAGIC = 0x50464343; // PFCC
+    private static final int MAX_STRING_STATS_LENGTH = 256;
+
+    static final Set<PolyType> INTEGRAL_TYPES = ImmutableSet.of(
+            PolyType.TINYINT,
+            PolyType.SMALLINT,
+            PolyType.INTEGER,
+            PolyType.BIGINT,
+            PolyType.DATE,
+            PolyType.TIME,
+            PolyType.TIMESTAMP );
+
+    private static final Set<PolyType> FLOATING_TYPES = ImmutableSet.of(
+            PolyType.DOUBLE,
+            PolyType.REAL,
+            PolyType.FLOAT,
+            PolyType.DECIMAL );
+
+
+    enum Encoding {
+        PLAIN, DICTIONARY, RLE, DELTA
+    }
+
+
+    @Getter
+    private final ZoneMap zoneMap;
+    @Getter
+    private final Encoding encoding;
+    private final ByteBuffer buffer;
+
+
+    private ColumnChunk( final ZoneMap zoneMap, final Encoding encoding, final ByteBuffer buffer ) {
+        this.zoneMap = zoneMap;
+        this.encoding = encoding;
+        this.buffer = buffer;
+    }
+
+
+    /**
+     * Maps a chunk file into memory and reads its header. The values are only decoded on {@link #decode()}.
+     * If the file does not exist (the column has been added after the block was written), a chunk containing only null values is returned.
+     */
+    public static ColumnChunk open( final File file, final int rowCount ) throws IOException {
+        if ( !file.exists() ) {
+            return new ColumnChunk( ZoneMap.allNull( rowCount ), Encoding.PLAIN, null );
+        }
+        MappedByteBuffer buffer;
+        try ( FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ ) ) {
+            buffer = channel.map( MapMode.READ_ONLY, 0, channel.size() );
+        }
+        if ( buffer.getInt() != MAGIC ) {
+            throw new IOException( "Not a column chunk: " + file.getAbsolutePath() );
+        }
+        Encoding encoding = Encoding.values()[buffer.get()];
+        ZoneMap zoneMap = ZoneMap.read( buffer );
+        return new ColumnChunk( zoneMap, encoding, buffer.slice() );
+    }
+
+
+    /**
+     * Decodes all values of the chunk. Null values are represented as {@code null}.
+     */
+    public String[] decode() {
+        final int rowCount = zoneMap.getRowCount();
+        final String[] values = new String[rowCount];
+        if ( !zoneMap.hasValues() ) {
+            return values;
+        }
+        final ByteBuffer in = buffer.duplicate();
+        final BitSet nulls = zoneMap.hasNulls() ? readBitSet( in ) : new BitSet();
+        final int valueCount = rowCount - zoneMap.getNullCount();
+        final String[] dense = new String[valueCount];
+        switch ( encoding ) {
+            case PLAIN:
+                for ( int i = 0; i < valueCount; i++ ) {
+                    dense[i] = readString( in );
+                }
+                break;
+            case DICTIONARY:
+                String[] dictionary = new String[in.getInt()];
+                for ( int i = 0; i < dictionary.length; i++ ) {
+                    dictionary[i] = readString( in );
+                }
+                int width = in.get();
+                for ( int i = 0; i < valueCount; i++ ) {
+                    dense[i] = dictionary[readCode( in, width )];
+                }
+                break;
+            case RLE:
+                int runs = in.getInt();
+                int position = 0;
+                for ( int r = 0; r < runs; r++ ) {
+                    String value = Long.toString( in.getLong() );
+                    int length = in.getInt();
+                    for ( int i = 0; i < length; i++ ) {
+                        dense[position++] = value;
+                    }
+                }
+                break;
+            case DELTA:
+                long current = in.getLong();
+                dense[0] = Long.toString( current );
+                for ( int i = 1; i < valueCount; i++ ) {
+                    current += zigZagDecode( readVarLong( in ) );
+                    dense[i] = Long.toString( current );
+                }
+                break;
+            default:
+                throw new RuntimeException( "Unknown encoding " + encoding );
+        }
+        int next = 0;
+        for ( int i = 0; i < rowCount; i++ ) {
+            if ( !nulls.get( i ) ) {
+                values[i] = dense[next++];
+            }
+        }
+        return values;
+    }
+
+
+    /**
+     * Encodes the values and writes them as a chunk file.
+     *
+     * @param values Values in their storage representation, {@code null} for null values
+     */
+    public static void write( final File file, final PolyType type, final String[] values ) throws IOException {
+        final BitSet nulls = new BitSet( values.length );
+        final List<String> dense = new ArrayList<>( values.length );
+        for ( int i = 0; i < values.length; i++ ) {
+            if ( values[i] == null ) {
+                nulls.set( i );
+            } else {
+                dense.add( values[i] );
+            }
+        }
+        final int nullCount = values.length - dense.size();
+
+        long[] longs = INTEGRAL_TYPES.contains( type ) ? toLongs( dense ) : null;
+        final Encoding encoding;
+        final ZoneMap zoneMap;
+        if ( longs != null && longs.length > 0 ) {
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for ( long l : longs ) {
+                min = Math.min( min, l );
+                max = Math.max( max, l );
+            }
+            zoneMap = new ZoneMap( values.length, nullCount, StatsKind.LONG, min, max );
+            encoding = rleSize( longs ) <= deltaSize( longs ) ? Encoding.RLE : Encoding.DELTA;
+        } else {
+            zoneMap = computeZoneMap( type, dense, values.length, nullCount );
+            encoding = useDictionary( dense ) ? Encoding.DICTIONARY : Encoding.PLAIN;
+        }
+
+        FileOutputStream fileOut = new FileOutputStream( file );
+        try ( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( fileOut ) ) ) {
+            out.writeInt( MAGIC );
+            out.writeByte( encoding.ordinal() );
+            zoneMap.write( out );
+            if ( !dense.isEmpty() ) {
+                if ( nullCount > 0 ) {
+                    writeBitSet( out, nulls, values.length );
+                }
+                switch ( encoding ) {
+                    case PLAIN:
+                        for ( String value : dense ) {
+                            writeString( out, value );
+                        }
+                        break;
+                    case DICTIONARY:
+                        Map<String, Integer> codes = new HashMap<>();
+                        List<String> dictionary = new ArrayList<>();
+                        for ( String value : dense ) {
+                            if ( !codes.containsKey( value ) ) {
+                                codes.put( value, dictionary.size() );
+                                dictionary.add( value );
+                            }
+                        }
+                        out.writeInt( dictionary.size() );
+                        for ( String value : dictionary ) {
+                            writeString( out, value );
+                        }
+                        int width = dictionary.size() <= 0xFF ? 1 : dictionary.size() <= 0xFFFF ? 2 : 4;
+                        out.writeByte( width );
+                        for ( String value : dense ) {
+                            writeCode( out, codes.get( value ), width );
+                        }
+                        break;
+                    case RLE:
+                        List<long[]> runs = new ArrayList<>();
+                        for ( long l : longs ) {
+                            if ( !runs.isEmpty() && runs.get( runs.size() - 1 )[0] == l ) {
+                                runs.get( runs.size() - 1 )[1]++;
+                            } else {
+                                runs.add( new long[]{ l, 1 } );
+                            }
+                        }
+                        out.writeInt( runs.size() );
+                        for ( long[] run : runs ) {
+                            out.writeLong( run[0] );
+                            out.writeInt( (int) run[1] );
+                        }
+                        break;
+                    case DELTA:
+                        out.writeLong( longs[0] );
+                        for ( int i = 1; i < longs.length; i++ ) {
+                            writeVarLong( out, zigZagEncode( longs[i] - longs[i - 1] ) );
+                        }
+                        break;
+                    default:
+                        throw new RuntimeException( "Unknown encoding " + encoding );
+                }
+            }
+            // The chunk is referenced by the manifest, it has to be on disk before the manifest is replaced
+            out.flush();
+            fileOut.getFD().sync();
+        }
+    }
+
+
+    /**
+     * Parses the values as longs. Returns {@code null} if one of the values is not a canonical integer, as it could not be restored exactly.
+     */
+    private static long[] toLongs( final List<String> values ) {
+        long[] longs = new long[values.size()];
+        for ( int i = 0; i < longs.length; i++ ) {
+            try {
+                longs[i] = Long.parseLong( values.get( i ) );
+            } catch ( NumberFormatException e ) {
+                return null;
+            }
+            if ( !Long.toString( longs[i] ).equals( values.get( i ) ) ) {
+                return null;
+            }
+        }
+        return longs;
+    }
+
+
+    private static ZoneMap computeZoneMap( final PolyType type, final List<String> values, final int rowCount, final int nullCount ) {
+        if ( values.isEmpty() ) {
+            return ZoneMap.allNull( rowCount );
+        }
+        if ( FLOATING_TYPES.contains( type ) ) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for ( String value : values ) {
+                double d;
+                try {
+                    d = Double.parseDouble( value );
+                } catch ( NumberFormatException e ) {
+                    return new ZoneMap( rowCount, nullCount, StatsKind.NONE, null, null );
+                }
+                if ( Double.isNaN( d ) ) {
+                    return new ZoneMap( rowCount, nullCount, StatsKind.NONE, null, null );
+                }
+                min = Math.min( min, d );
+                max = Math.max( max, d );
+            }
+            return new ZoneMap( rowCount, nullCount, StatsKind.DOUBLE, min, max );
+        } else if ( type.getFamily() == PolyTypeFamily.CHARACTER ) {
+            String min = values.get( 0 );
+            String max = values.get( 0 );
+            for ( String value : values ) {
+                if ( value.compareTo( min ) < 0 ) {
+                    min = value;
+                }
+                if ( value.compareTo( max ) > 0 ) {
+                    max = value;
+                }
+            }
+            if ( min.length() <= MAX_STRING_STATS_LENGTH && max.length() <= MAX_STRING_STATS_LENGTH ) {
+                return new ZoneMap( rowCount, nullCount, StatsKind.STRING, min, max );
+            }
+        }
+        return new ZoneMap( rowCount, nullCount, StatsKind.NONE, null, null );
+    }
+
+
+    private static boolean useDictionary( final List<String> values ) {
+        // A dictionary pays off if values repeat on average
+        Set<String> distinct = new HashSet<>();
+        for ( String value : values ) {
+            distinct.add( value );
+            if ( distinct.size() > values.size() / 2 ) {
+                return false;
+            }
+        }
+        return !values.isEmpty();
+    }
+
+
+    private static long rleSize( final long[] longs ) {
+        long runs = 1;
+        for ( int i = 1; i < longs.length; i++ ) {
+            if ( longs[i] != longs[i - 1] ) {
+                runs++;
+            }
+        }
+        return 4 + runs * 12;
+    }
+
+
+    private static long deltaSize( final long[] longs ) {
+        long size = 8;
+        for ( int i = 1; i < longs.length; i++ ) {
+            long zigZag = zigZagEncode( longs[i] - longs[i - 1] );
+            size += (64 - Long.numberOfLeadingZeros( zigZag | 1 ) + 6) / 7;
+        }
+        return size;
+    }
+
+
+    private static long zigZagEncode( final long value ) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+
+    private static long zigZagDecode( final long value ) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+
+    private static void writeVarLong( final DataOutputStream out, long value ) throws IOException {
+        while ( (value & ~0x7FL) != 0 ) {
+            out.writeByte( (int) ((value & 0x7F) | 0x80) );
+            value >>>= 7;
+        }
+        out.writeByte( (int) value );
+    }
+
+
+    private static long readVarLong( final ByteBuffer in ) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ( (b & 0x80) != 0 );
+        return value;
+    }
+
+
+    private static void writeCode( final DataOutputStream out, final int code, final int width ) throws IOException {
+        if ( width == 1 ) {
+            out.writeByte( code );
+        } else if ( width == 2 ) {
+            out.writeShort( code );
+        } else {
+            out.writeInt( code );
+        }
+    }
+
+
+    private static int readCode( final ByteBuffer in, final int width ) {
+        if ( width == 1 ) {
+            return in.get() & 0xFF;
+        } else if ( width == 2 ) {
+            return in.getShort() & 0xFFFF;
+        }
+        return in.getInt();
+    }
+
+
+    private static void writeBitSet( final DataOutputStream out, final BitSet bitSet, final int length ) throws IOException {
+        long[] words = bitSet.toLongArray();
+        int wordCount = (length + 63) / 64;
+        out.writeInt( wordCount );
+        for ( int i = 0; i < wordCount; i++ ) {
+            out.writeLong( i < words.length ? words[i] : 0L );
+        }
+    }
+
+
+    private static BitSet readBitSet( final ByteBuffer in ) {
+        long[] words = new long[in.getInt()];
+        for ( int i = 0; i < words.length; i++ ) {
+            words[i] = in.getLong();
+        }
+        return BitSet.valueOf( words );
+    }
+
+
+    static void writeString( final DataOutputStream out, final String value ) throws IOException {
+        byte[] bytes = value.getBytes( StandardCharsets.UTF_8 );
+        out.writeInt( bytes.length );
+        out.write( bytes );
+    }
+
+
+    static String readString( final ByteBuffer in ) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get( bytes );
+        return new String( bytes, StandardCharsets.UTF_8 );
+    }
+
+}
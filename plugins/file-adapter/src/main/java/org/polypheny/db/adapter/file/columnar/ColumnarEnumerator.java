@@ -0,0 +1,307 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.adapter.file.columnar;
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.calcite.linq4j.Enumerator;
+import org.polypheny.db.adapter.DataContext;
+import org.polypheny.db.adapter.file.Condition;
+import org.polypheny.db.adapter.file.FileAlg.FileImplementor.Operation;
+import org.polypheny.db.adapter.file.FileHelper;
+import org.polypheny.db.adapter.file.Value;
+import org.polypheny.db.adapter.file.columnar.ColumnarPartition.Segment;
+import org.polypheny.db.adapter.file.columnar.ColumnarPartition.Snapshot;
+import org.polypheny.db.adapter.file.columnar.DeltaLog.Record;
+import org.polypheny.db.type.PolyType;
+import org.polypheny.db.type.PolyTypeUtil;
+
+
+/**
+ * Executes SELECT, UPDATE and DELETE operations on a partition stored in the columnar layout, the counterpart of
+ * {@link org.polypheny.db.adapter.file.FileEnumerator}.
+ * The segments are read block by block; blocks whose zone maps rule out the condition are skipped without decoding them.
+ * Afterwards, the rows of the delta log are returned. UPDATE and DELETE operations append their changes to the pending log
+ * of the transaction.
+ */
+public class ColumnarEnumerator implements Enumerator<Object> {
+
+    private Object current;
+    private final Operation operation;
+    private final ColumnarPartition partition;
+    private final String xidHash;
+    private final Long[] columnIds;
+    private final PolyType[] columnTypes;
+    private final int[] pkMapping;
+    private final Integer[] projectionMapping;
+    private final DataContext dataContext;
+    private final Condition condition;
+    private final Map<Integer, Value> updates = new HashMap<>();
+    private final boolean[] neededColumns;
+
+    private Snapshot snapshot;
+    private int segmentPosition = 0;
+    private String[][] block;
+    private int blockRowCount = 0;
+    private int blockPosition = 0;
+    private Iterator<Map<Long, String>> deltaRows;
+    private boolean finished = false;
+
+
+    /**
+     * @param columnIds Ids of the columns that come from a tableScan
+     * @param projectionMapping Mapping on how to project a table, see {@link org.polypheny.db.adapter.file.FileEnumerator}
+     * @param condition Condition that can be {@code null}. The columnReferences in the filter point to the columns coming from the tableScan
+     */
+    public ColumnarEnumerator(
+            final Operation operation,
+            final ColumnarPartition partition,
+            final String xidHash,
+            final Long[] columnIds,
+            final PolyType[] columnTypes,
+            final List<Long> pkIds,
+            final Integer[] projectionMapping,
+            final DataContext dataContext,
+            final Condition condition,
+            final Value[] updates ) {
+        if ( dataContext.getParameterValues().size() > 1 && (operation == Operation.UPDATE || operation == Operation.DELETE) ) {
+            throw new RuntimeException( "The file store does not support batch update or delete statements!" );
+        }
+        this.operation = operation;
+        this.partition = partition;
+        this.xidHash = xidHash;
+        this.columnIds = columnIds;
+        this.columnTypes = columnTypes;
+        this.projectionMapping = projectionMapping;
+        this.dataContext = dataContext;
+        this.condition = condition;
+        if ( updates != null ) {
+            for ( Value update : updates ) {
+                this.updates.put( update.getColumnReference(), update );
+            }
+        }
+
+        List<Long> columnIdList = Arrays.asList( columnIds );
+        this.pkMapping = pkIds.stream().mapToInt( columnIdList::indexOf ).toArray();
+
+        // Without a condition, a SELECT only has to decode the projected columns
+        this.neededColumns = new boolean[columnIds.length];
+        if ( condition == null && projectionMapping != null && operation == Operation.SELECT ) {
+            for ( int index : projectionMapping ) {
+                neededColumns[index] = true;
+            }
+        } else {
+            Arrays.fill( neededColumns, true );
+        }
+    }
+
+
+    @Override
+    public Object current() {
+        return current;
+    }
+
+
+    @Override
+    public boolean moveNext() {
+        if ( finished ) {
+            return false;
+        }
+        if ( snapshot == null ) {
+            snapshot = partition.openSnapshot( xidHash );
+            deltaRows = snapshot.getDelta().getInserts().values().iterator();
+            // Rows which have been deleted or replaced by the delta are hidden, this requires the primary key columns
+            if ( !snapshot.getDelta().isEmpty() ) {
+                for ( int index : pkMapping ) {
+                    neededColumns[index] = true;
+                }
+            }
+        }
+        try {
+            if ( operation == Operation.SELECT ) {
+                String[] row = nextRow();
+                if ( row == null ) {
+                    close();
+                    finished = true;
+                    return false;
+                }
+                current = toResult( row );
+                return true;
+            }
+            List<Record> records = new ArrayList<>();
+            long count = 0;
+            String[] row;
+            while ( (row = nextRow()) != null ) {
+                List<String> key = ColumnarPartition.keyOf( row, pkMapping );
+                records.add( Record.delete( key ) );
+                if ( operation == Operation.UPDATE ) {
+                    String[] updated = row.clone();
+                    for ( Map.Entry<Integer, Value> update : updates.entrySet() ) {
+                        updated[update.getKey()] = FileHelper.toStorageString( update.getValue().getValue( dataContext, 0 ) );
+                    }
+                    records.add( Record.insert( ColumnarPartition.keyOf( updated, pkMapping ), toRowMap( updated ) ) );
+                } else if ( operation != Operation.DELETE ) {
+                    throw new RuntimeException( operation + " operation is not supported in ColumnarEnumerator" );
+                }
+                count++;
+            }
+            close();
+            partition.appendPending( xidHash, records );
+            finished = true;
+            current = Long.valueOf( count );
+            return true;
+        } catch ( IOException | RuntimeException e ) {
+            close();
+            throw new RuntimeException( e );
+        }
+    }
+
+
+    /**
+     * Returns the next row which is visible and matches the condition, or {@code null} if there are no more rows.
+     */
+    private String[] nextRow() throws IOException {
+        final DeltaState delta = snapshot.getDelta();
+        for ( ; ; ) {
+            if ( dataContext.getStatement().getTransaction().getCancelFlag().get() ) {
+                return null;
+            }
+            String[] row;
+            if ( block != null && blockPosition < blockRowCount ) {
+                row = new String[columnIds.length];
+                for ( int c = 0; c < columnIds.length; c++ ) {
+                    if ( block[c] != null ) {
+                        row[c] = block[c][blockPosition];
+                    }
+                }
+                blockPosition++;
+                if ( !delta.isEmpty() ) {
+                    List<String> key = ColumnarPartition.keyOf( row, pkMapping );
+                    if ( delta.isDeleted( key ) || delta.getInserts().containsKey( key ) ) {
+                        continue;
+                    }
+                }
+            } else if ( segmentPosition < snapshot.getSegments().size() ) {
+                loadBlock( snapshot.getSegments().get( segmentPosition++ ) );
+                continue;
+            } else if ( deltaRows.hasNext() ) {
+                row = toRowArray( deltaRows.next() );
+            } else {
+                return null;
+            }
+            if ( condition == null || condition.matches( toObjects( row ), columnTypes, dataContext ) ) {
+                return row;
+            }
+        }
+    }
+
+
+    /**
+     * Decodes the needed columns of a segment, unless the zone maps show that no row of it can match the condition.
+     */
+    private void loadBlock( final Segment segment ) throws IOException {
+        block = null;
+        blockPosition = 0;
+        ColumnChunk[] chunks = new ColumnChunk[columnIds.length];
+        ZoneMap[] zoneMaps = new ZoneMap[columnIds.length];
+        for ( int c = 0; c < columnIds.length; c++ ) {
+            if ( neededColumns[c] ) {
+                chunks[c] = snapshot.openChunk( segment, columnIds[c] );
+                zoneMaps[c] = chunks[c].getZoneMap();
+            }
+        }
+        if ( condition != null && !condition.mayMatch( zoneMaps, columnTypes, dataContext ) ) {
+            return;
+        }
+        String[][] decoded = new String[columnIds.length][];
+        for ( int c = 0; c < columnIds.length; c++ ) {
+            if ( chunks[c] != null ) {
+                decoded[c] = chunks[c].decode();
+            }
+        }
+        block = decoded;
+        blockRowCount = segment.getRowCount();
+    }
+
+
+    private Object toResult( final String[] row ) {
+        Object[] values = toObjects( row );
+        if ( projectionMapping != null ) {
+            Object[] projected = new Object[projectionMapping.length];
+            for ( int i = 0; i < projectionMapping.length; i++ ) {
+                projected[i] = values[projectionMapping[i]];
+            }
+            values = projected;
+        }
+        return values.length == 1 ? values[0] : values;
+    }
+
+
+    private Object[] toObjects( final String[] row ) {
+        Object[] values = new Object[row.length];
+        for ( int i = 0; i < row.length; i++ ) {
+            values[i] = PolyTypeUtil.stringToObject( row[i], columnTypes[i] );
+        }
+        return values;
+    }
+
+
+    private String[] toRowArray( final Map<Long, String> rowMap ) {
+        String[] row = new String[columnIds.length];
+        for ( int c = 0; c < columnIds.length; c++ ) {
+            row[c] = rowMap.get( columnIds[c] );
+        }
+        return row;
+    }
+
+
+    private Map<Long, String> toRowMap( final String[] row ) {
+        Map<Long, String> rowMap = new LinkedHashMap<>();
+        for ( int c = 0; c < columnIds.length; c++ ) {
+            rowMap.put( columnIds[c], row[c] );
+        }
+        return rowMap;
+    }
+
+
+    @Override
+    public void reset() {
+        close();
+        finished = false;
+        segmentPosition = 0;
+        block = null;
+        blockPosition = 0;
+    }
+
+
+    @Override
+    public void close() {
+        if ( snapshot != null ) {
+            snapshot.release();
+            snapshot = null;
+        }
+    }
+
+}
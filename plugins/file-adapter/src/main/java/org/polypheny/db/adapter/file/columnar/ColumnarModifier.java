@@ -0,0 +1,130 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.adapter.file.columnar;
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.calcite.linq4j.Enumerator;
+import org.polypheny.db.adapter.DataContext;
+import org.polypheny.db.adapter.file.FileHelper;
+import org.polypheny.db.adapter.file.columnar.DeltaLog.Record;
+import org.polypheny.db.type.PolyType;
+
+
+/**
+ * Executes INSERT operations on a partition stored in the columnar layout, the counterpart of {@link org.polypheny.db.adapter.file.FileModifier}.
+ * The rows are appended to the pending log of the transaction.
+ */
+public class ColumnarModifier implements Enumerator<Object> {
+
+    private Object current;
+    private final ColumnarPartition partition;
+    private final String xidHash;
+    private final Long[] columnIds;
+    private final PolyType[] columnTypes;
+    private final int[] pkMapping;
+    private final DataContext dataContext;
+    private final Object[] insertValues;
+    private boolean inserted = false;
+
+
+    public ColumnarModifier(
+            final ColumnarPartition partition,
+            final String xidHash,
+            final Long[] columnIds,
+            final PolyType[] columnTypes,
+            final List<Long> pkIds,
+            final DataContext dataContext,
+            final Object[] insertValues ) {
+        this.partition = partition;
+        this.xidHash = xidHash;
+        this.columnIds = columnIds;
+        this.columnTypes = columnTypes;
+        List<Long> columnIdList = Arrays.asList( columnIds );
+        this.pkMapping = pkIds.stream().mapToInt( columnIdList::indexOf ).toArray();
+        this.dataContext = dataContext;
+        this.insertValues = insertValues;
+    }
+
+
+    @Override
+    public Object current() {
+        return current;
+    }
+
+
+    /**
+     * First call: insert all rows, set current to the insert count and return true. Second call: return false.
+     */
+    @Override
+    public boolean moveNext() {
+        if ( dataContext.getStatement().getTransaction().getCancelFlag().get() || inserted ) {
+            return false;
+        }
+        List<Record> records = new ArrayList<>( insertValues.length );
+        Set<List<String>> keys = new HashSet<>();
+        for ( Object insertRow : insertValues ) {
+            Object[] values = (Object[]) insertRow;
+            String[] row = new String[values.length];
+            Map<Long, String> rowMap = new LinkedHashMap<>();
+            for ( int i = 0; i < values.length; i++ ) {
+                row[i] = FileHelper.toStorageString( values[i] );
+                rowMap.put( columnIds[i], row[i] );
+            }
+            List<String> key = ColumnarPartition.keyOf( row, pkMapping );
+            if ( !keys.add( key ) ) {
+                throw primaryKeyConflict();
+            }
+            records.add( Record.insert( key, rowMap ) );
+        }
+        try {
+            if ( !keys.isEmpty() && partition.containsAnyKey( xidHash, keys, pkMapping, columnIds, columnTypes ) ) {
+                throw primaryKeyConflict();
+            }
+        } catch ( IOException e ) {
+            throw new RuntimeException( e );
+        }
+        partition.appendPending( xidHash, records );
+        current = Long.valueOf( records.size() );
+        inserted = true;
+        return true;
+    }
+
+
+    private static RuntimeException primaryKeyConflict() {
+        return new RuntimeException( "Primary key conflict! You are trying to insert a row with a primary key that already exists." );
+    }
+
+
+    @Override
+    public void reset() {
+    }
+
+
+    @Override
+    public void close() {
+    }
+
+}
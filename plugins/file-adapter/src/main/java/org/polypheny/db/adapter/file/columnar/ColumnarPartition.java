@@ -0,0 +1,736 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.adapter.file.columnar;
+
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.polypheny.db.adapter.file.columnar.DeltaLog.Record;
+import org.polypheny.db.algebra.constant.Kind;
+import org.polypheny.db.type.PolyType;
+import org.polypheny.db.type.PolyTypeFamily;
+
+
+/**
+ * The columnar data of one partition placement. The rows are stored in immutable segments of up to {@code blockSize} rows,
+ * every segment holds one {@link ColumnChunk} per column. Changes are appended to the {@link DeltaLog} and are merged into
+ * new segments by {@link #compact}. The live segments and the current log are listed in a manifest which is replaced atomically.
+ *
+ * Scans and commits hold a read lock for their duration and schema changes an exclusive lock. Compactions write their
+ * segments without holding the lock and only take the exclusive lock to swap in the new manifest.
+ */
+@Slf4j
+public class ColumnarPartition {
+
+    private static final String MANIFEST = "manifest";
+    private static final String SEGMENT_PREFIX = "segment";
+    private static final String LOG_PREFIX = "delta";
+    private static final String PENDING_PREFIX = "pending_";
+    private static final long SWAP_TIMEOUT_MS = 1000;
+
+    @Getter
+    private final File folder;
+    private final StampedLock lock = new StampedLock();
+    private final Object appendLock = new Object();
+    // Serializes compactions and schema changes
+    private final ReentrantLock compactionLock = new ReentrantLock();
+    // Changes committed during a running compaction, guarded by the append lock
+    private List<Record> tail;
+    private volatile Manifest manifest;
+    private volatile DeltaState committed;
+    private final Map<String, DeltaState> pending = new ConcurrentHashMap<>();
+
+
+    /**
+     * A segment of the partition
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Segment {
+
+        private final long id;
+        private final int rowCount;
+
+    }
+
+
+    @AllArgsConstructor
+    private static class Manifest {
+
+        private final long logGeneration;
+        private final long nextSegmentId;
+        private final List<Segment> segments;
+
+    }
+
+
+    /**
+     * Columns and primary key of the table the partition belongs to, in the order in which they are written to new segments
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Layout {
+
+        private final List<Long> columnIds;
+        private final List<PolyType> columnTypes;
+        private final List<Long> primaryKeyIds;
+
+    }
+
+
+    private ColumnarPartition( final File folder, final Manifest manifest, final DeltaState committed ) {
+        this.folder = folder;
+        this.manifest = manifest;
+        this.committed = committed;
+    }
+
+
+    static ColumnarPartition create( final File folder ) throws IOException {
+        if ( !folder.mkdirs() ) {
+            throw new IOException( "Could not create partition folder " + folder.getAbsolutePath() );
+        }
+        syncDirectory( folder.getParentFile() );
+        ColumnarPartition partition = new ColumnarPartition( folder, new Manifest( 0, 0, Collections.emptyList() ), DeltaState.EMPTY );
+        partition.writeManifest( partition.manifest );
+        return partition;
+    }
+
+
+    /**
+     * Loads an existing partition. Files which are not referenced by the manifest are left overs of an interrupted
+     * compaction and are deleted. Pending logs are kept, they are committed or discarded by the transaction recovery.
+     */
+    static ColumnarPartition load( final File folder ) throws IOException {
+        Manifest manifest = readManifest( folder );
+        Set<String> live = new HashSet<>();
+        live.add( MANIFEST );
+        live.add( LOG_PREFIX + manifest.logGeneration + ".log" );
+        for ( Segment segment : manifest.segments ) {
+            live.add( SEGMENT_PREFIX + segment.id );
+        }
+        File[] files = folder.listFiles();
+        if ( files != null ) {
+            for ( File file : files ) {
+                if ( !live.contains( file.getName() ) && !file.getName().startsWith( PENDING_PREFIX ) ) {
+                    FileUtils.forceDelete( file );
+                }
+            }
+        }
+        ColumnarPartition partition = new ColumnarPartition( folder, manifest, DeltaState.EMPTY.apply( DeltaLog.read( logFile( folder, manifest ) ) ) );
+        if ( files != null ) {
+            for ( File file : files ) {
+                if ( file.getName().startsWith( PENDING_PREFIX ) ) {
+                    String xidHash = file.getName().substring( PENDING_PREFIX.length(), file.getName().length() - 4 );
+                    partition.pending.put( xidHash, DeltaState.EMPTY.apply( DeltaLog.read( file ) ) );
+                }
+            }
+        }
+        return partition;
+    }
+
+
+    /**
+     * Acquires a read lock and returns the segments and changes which are visible to the given transaction.
+     * The snapshot has to be released after use.
+     */
+    public Snapshot openSnapshot( final String xidHash ) {
+        long stamp = lock.readLock();
+        DeltaState own = pending.get( xidHash );
+        DeltaState delta = own == null ? committed : committed.merge( own );
+        return new Snapshot( manifest.segments, delta, stamp );
+    }
+
+
+    /**
+     * Appends changes of a not yet committed transaction.
+     */
+    public void appendPending( final String xidHash, final List<Record> records ) {
+        pending.compute( xidHash, ( k, state ) -> {
+            try {
+                DeltaLog.append( pendingLog( xidHash ), records );
+            } catch ( IOException e ) {
+                throw new RuntimeException( "Could not write delta log", e );
+            }
+            return (state == null ? DeltaState.EMPTY : state).apply( records );
+        } );
+    }
+
+
+    public boolean hasPending( final String xidHash ) {
+        return pending.containsKey( xidHash ) || pendingLog( xidHash ).exists();
+    }
+
+
+    /**
+     * Appends the pending changes of the transaction to the committed log. Appending the same pending log twice
+     * (when recovering from a crash during the commit) results in the same state, as every record only depends on the primary key.
+     */
+    public void commit( final String xidHash ) throws IOException {
+        File pendingLog = pendingLog( xidHash );
+        List<Record> records = DeltaLog.read( pendingLog );
+        long stamp = lock.readLock();
+        try {
+            synchronized ( appendLock ) {
+                DeltaLog.append( logFile( folder, manifest ), records );
+                committed = committed.apply( records );
+                if ( tail != null ) {
+                    // A compaction is running, its new log has to contain these changes
+                    tail.addAll( records );
+                }
+            }
+        } finally {
+            lock.unlockRead( stamp );
+        }
+        Files.deleteIfExists( pendingLog.toPath() );
+        pending.remove( xidHash );
+    }
+
+
+    public void rollback( final String xidHash ) throws IOException {
+        Files.deleteIfExists( pendingLog( xidHash ).toPath() );
+        pending.remove( xidHash );
+    }
+
+
+    public int getDeltaSize() {
+        return committed.size();
+    }
+
+
+    public List<Segment> getSegments() {
+        return manifest.segments;
+    }
+
+
+    /**
+     * Checks if one of the keys belongs to a row that is visible to the transaction.
+     */
+    public boolean containsAnyKey( final String xidHash, final Set<List<String>> keys, final int[] primaryKeyIndexes, final Long[] columnIds, final PolyType[] columnTypes ) throws IOException {
+        Snapshot snapshot = openSnapshot( xidHash );
+        try {
+            for ( List<String> key : keys ) {
+                if ( snapshot.delta.getInserts().containsKey( key ) ) {
+                    return true;
+                }
+            }
+            Comparable<?>[] range = keyRange( keys, columnTypes[primaryKeyIndexes[0]] );
+            for ( Segment segment : snapshot.segments ) {
+                String[][] pkColumns = new String[primaryKeyIndexes.length][];
+                for ( int i = 0; i < primaryKeyIndexes.length; i++ ) {
+                    ColumnChunk chunk = snapshot.openChunk( segment, columnIds[primaryKeyIndexes[i]] );
+                    if ( i == 0 && range != null && !(chunk.getZoneMap().mayMatch( Kind.GREATER_THAN_OR_EQUAL, range[0] ) && chunk.getZoneMap().mayMatch( Kind.LESS_THAN_OR_EQUAL, range[1] )) ) {
+                        pkColumns = null;
+                        break;
+                    }
+                    pkColumns[i] = chunk.decode();
+                }
+                if ( pkColumns == null ) {
+                    continue;
+                }
+                for ( int row = 0; row < segment.rowCount; row++ ) {
+                    String[] key = new String[pkColumns.length];
+                    for ( int i = 0; i < pkColumns.length; i++ ) {
+                        key[i] = pkColumns[i][row];
+                    }
+                    List<String> keyList = Arrays.asList( key );
+                    if ( keys.contains( keyList ) && !snapshot.delta.isDeleted( keyList ) ) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        } finally {
+            snapshot.release();
+        }
+    }
+
+
+    /**
+     * Minimum and maximum of the first key column, used to skip segments when checking for primary key conflicts
+     */
+    private static Comparable<?>[] keyRange( final Set<List<String>> keys, final PolyType type ) {
+        Comparable min = null;
+        Comparable max = null;
+        for ( List<String> key : keys ) {
+            Comparable value;
+            if ( ColumnChunk.INTEGRAL_TYPES.contains( type ) ) {
+                try {
+                    value = Long.parseLong( key.get( 0 ) );
+                } catch ( NumberFormatException e ) {
+                    return null;
+                }
+            } else if ( type.getFamily() == PolyTypeFamily.CHARACTER ) {
+                value = key.get( 0 );
+            } else {
+                return null;
+            }
+            if ( min == null || value.compareTo( min ) < 0 ) {
+                min = value;
+            }
+            if ( max == null || value.compareTo( max ) > 0 ) {
+                max = value;
+            }
+        }
+        return min == null ? null : new Comparable<?>[]{ min, max };
+    }
+
+
+    /**
+     * Merges the committed changes into new segments. The new segments are written without holding the partition lock,
+     * scans and commits continue on the current segments in the meantime. Changes committed while the segments are
+     * written are carried over into the log of the new manifest. Only the swap to the new manifest takes the write lock.
+     *
+     * @return {@code false} if the partition has been in use for too long to swap in the new segments, the compaction has to be retried later
+     */
+    public boolean compact( final Layout layout, final int blockSize ) throws IOException {
+        compactionLock.lock();
+        try {
+            final Rewrite rewrite;
+            synchronized ( appendLock ) {
+                if ( committed.isEmpty() ) {
+                    return true;
+                }
+                rewrite = new Rewrite( manifest, committed );
+                tail = new ArrayList<>();
+            }
+            boolean swapped = false;
+            try {
+                rewrite.write( layout, blockSize );
+                long stamp = lock.tryWriteLock( SWAP_TIMEOUT_MS, TimeUnit.MILLISECONDS );
+                if ( stamp == 0 ) {
+                    log.debug( "Compaction of {} postponed, the partition is in use", folder.getName() );
+                    return false;
+                }
+                try {
+                    // Commits hold the read lock, no changes are therefore missing in the tail
+                    rewrite.swap( tail );
+                    swapped = true;
+                } finally {
+                    lock.unlockWrite( stamp );
+                }
+                return true;
+            } finally {
+                synchronized ( appendLock ) {
+                    tail = null;
+                }
+                if ( !swapped ) {
+                    rewrite.discard();
+                }
+            }
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+
+    /**
+     * Merges the committed changes into new segments while the write lock is held.
+     */
+    private void compactExclusively( final Layout layout, final int blockSize ) throws IOException {
+        if ( committed.isEmpty() ) {
+            return;
+        }
+        Rewrite rewrite = new Rewrite( manifest, committed );
+        try {
+            rewrite.write( layout, blockSize );
+            rewrite.swap( Collections.emptyList() );
+        } catch ( IOException | RuntimeException e ) {
+            rewrite.discard();
+            throw e;
+        }
+    }
+
+
+    /**
+     * Adds a column to all segments, filled with its default value. Committed changes are compacted first,
+     * so that all committed rows get the default value.
+     */
+    public void addColumn( final long columnId, final PolyType type, final String defaultValue, final Layout layout, final int blockSize ) throws IOException {
+        compactionLock.lock();
+        long stamp = lock.writeLock();
+        try {
+            compactExclusively( layout, blockSize );
+            for ( Segment segment : manifest.segments ) {
+                String[] values = new String[segment.rowCount];
+                Arrays.fill( values, defaultValue );
+                ColumnChunk.write( chunkFile( segment, columnId ), type, values );
+                syncDirectory( segmentFolder( segment ) );
+            }
+        } finally {
+            lock.unlockWrite( stamp );
+            compactionLock.unlock();
+        }
+    }
+
+
+    public void dropColumn( final long columnId ) throws IOException {
+        compactionLock.lock();
+        long stamp = lock.writeLock();
+        try {
+            for ( Segment segment : manifest.segments ) {
+                Files.deleteIfExists( chunkFile( segment, columnId ).toPath() );
+            }
+        } finally {
+            lock.unlockWrite( stamp );
+            compactionLock.unlock();
+        }
+    }
+
+
+    public void truncate() throws IOException {
+        compactionLock.lock();
+        long stamp = lock.writeLock();
+        try {
+            Manifest old = manifest;
+            replaceManifest( old, new Manifest( old.logGeneration + 1, old.nextSegmentId, Collections.emptyList() ), Collections.emptyList() );
+        } finally {
+            lock.unlockWrite( stamp );
+            compactionLock.unlock();
+        }
+    }
+
+
+    /**
+     * Switches to a new manifest with a new log containing the given records and removes the files of the old manifest
+     * which are no longer used. Has to be called with the write lock held.
+     */
+    private void replaceManifest( final Manifest old, final Manifest replacement, final List<Record> carriedOver ) throws IOException {
+        if ( manifest != old ) {
+            throw new IOException( "The manifest of " + folder.getName() + " has been replaced concurrently" );
+        }
+        File newLog = logFile( folder, replacement );
+        Files.createFile( newLog.toPath() );
+        DeltaLog.append( newLog, carriedOver );
+        // The new segments and the new log have to be durable before the manifest refers to them
+        syncDirectory( folder );
+        writeManifest( replacement );
+        manifest = replacement;
+        committed = DeltaState.EMPTY.apply( carriedOver );
+
+        // From here on, the new manifest is in use. Files which cannot be removed are removed when the partition is loaded.
+        Set<Long> live = new HashSet<>();
+        for ( Segment segment : replacement.segments ) {
+            live.add( segment.id );
+        }
+        try {
+            for ( Segment segment : old.segments ) {
+                if ( !live.contains( segment.id ) ) {
+                    FileUtils.deleteDirectory( segmentFolder( segment ) );
+                }
+            }
+            Files.deleteIfExists( logFile( folder, old ).toPath() );
+        } catch ( IOException e ) {
+            log.warn( "Could not remove the obsolete files of {}", folder.getAbsolutePath(), e );
+        }
+    }
+
+
+    private void writeManifest( final Manifest manifest ) throws IOException {
+        File tmp = new File( folder, MANIFEST + ".tmp" );
+        FileOutputStream out = new FileOutputStream( tmp );
+        try ( PrintWriter pw = new PrintWriter( out ) ) {
+            pw.println( "generation " + manifest.logGeneration );
+            pw.println( "next " + manifest.nextSegmentId );
+            for ( Segment segment : manifest.segments ) {
+                pw.println( "segment " + segment.id + " " + segment.rowCount );
+            }
+            pw.flush();
+            out.getFD().sync();
+        }
+        Files.move( tmp.toPath(), new File( folder, MANIFEST ).toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING );
+        try {
+            syncDirectory( folder );
+        } catch ( IOException e ) {
+            // The manifest has already been replaced, failing now would leave the partition in an undefined state
+            log.warn( "Could not force the manifest of {} to disk", folder.getAbsolutePath(), e );
+        }
+    }
+
+
+    /**
+     * Forces the entries of a directory to disk, so that files which have been created, renamed or deleted in it
+     * survive a crash.
+     */
+    static void syncDirectory( final File directory ) throws IOException {
+        try ( FileChannel channel = FileChannel.open( directory.toPath(), StandardOpenOption.READ ) ) {
+            channel.force( true );
+        } catch ( AccessDeniedException e ) {
+            // Directories cannot be opened on Windows, the file system takes care of their entries
+        }
+    }
+
+
+    private static Manifest readManifest( final File folder ) throws IOException {
+        long generation = 0;
+        long next = 0;
+        List<Segment> segments = new ArrayList<>();
+        try ( BufferedReader br = new BufferedReader( new FileReader( new File( folder, MANIFEST ) ) ) ) {
+            String line;
+            while ( (line = br.readLine()) != null ) {
+                String[] parts = line.split( " " );
+                switch ( parts[0] ) {
+                    case "generation":
+                        generation = Long.parseLong( parts[1] );
+                        break;
+                    case "next":
+                        next = Long.parseLong( parts[1] );
+                        break;
+                    case "segment":
+                        segments.add( new Segment( Long.parseLong( parts[1] ), Integer.parseInt( parts[2] ) ) );
+                        break;
+                    default:
+                        throw new IOException( "Unexpected manifest entry: " + line );
+                }
+            }
+        }
+        return new Manifest( generation, next, Collections.unmodifiableList( segments ) );
+    }
+
+
+    private static File logFile( final File folder, final Manifest manifest ) {
+        return new File( folder, LOG_PREFIX + manifest.logGeneration + ".log" );
+    }
+
+
+    private File pendingLog( final String xidHash ) {
+        return new File( folder, PENDING_PREFIX + xidHash + ".log" );
+    }
+
+
+    private File segmentFolder( final Segment segment ) {
+        return new File( folder, SEGMENT_PREFIX + segment.id );
+    }
+
+
+    private File chunkFile( final Segment segment, final long columnId ) {
+        return new File( segmentFolder( segment ), "col" + columnId + ".chunk" );
+    }
+
+
+    static List<String> keyOf( final String[] row, final int[] primaryKeyIndexes ) {
+        String[] key = new String[primaryKeyIndexes.length];
+        for ( int i = 0; i < primaryKeyIndexes.length; i++ ) {
+            key[i] = row[primaryKeyIndexes[i]];
+        }
+        return Arrays.asList( key );
+    }
+
+
+    private static Comparator<String[]> keyComparator( final int[] primaryKeyIndexes, final List<PolyType> columnTypes ) {
+        return ( a, b ) -> {
+            for ( int index : primaryKeyIndexes ) {
+                int comparison = compareValues( a[index], b[index], columnTypes.get( index ) );
+                if ( comparison != 0 ) {
+                    return comparison;
+                }
+            }
+            return 0;
+        };
+    }
+
+
+    private static int compareValues( final String a, final String b, final PolyType type ) {
+        if ( a == null || b == null ) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        if ( ColumnChunk.INTEGRAL_TYPES.contains( type ) ) {
+            try {
+                return Long.compare( Long.parseLong( a ), Long.parseLong( b ) );
+            } catch ( NumberFormatException e ) {
+                // Fall back to comparing the strings
+            }
+        }
+        return a.compareTo( b );
+    }
+
+
+    /**
+     * New segments of a compaction, merging the committed changes into the segments of a manifest.
+     */
+    private class Rewrite {
+
+        private final Manifest old;
+        private final DeltaState delta;
+        private final List<Segment> segments = new ArrayList<>();
+        private final List<Segment> written = new ArrayList<>();
+        private long nextSegmentId;
+
+
+        private Rewrite( final Manifest old, final DeltaState delta ) {
+            this.old = old;
+            this.delta = delta;
+            this.nextSegmentId = old.nextSegmentId;
+        }
+
+
+        void write( final Layout layout, final int blockSize ) throws IOException {
+            final List<Long> columnIds = layout.columnIds;
+            final int[] pkIndexes = layout.primaryKeyIds.stream().mapToInt( columnIds::indexOf ).toArray();
+            final Snapshot snapshot = new Snapshot( old.segments, delta, 0 );
+
+            List<String[]> rows = new ArrayList<>();
+            for ( Segment segment : old.segments ) {
+                // Small segments are merged with the new rows, the others are only rewritten if rows have been deleted
+                boolean rewrite = segment.rowCount < blockSize / 4;
+                if ( !rewrite && delta.hasTombstones() ) {
+                    String[][] pkColumns = new String[pkIndexes.length][];
+                    for ( int i = 0; i < pkIndexes.length; i++ ) {
+                        pkColumns[i] = snapshot.openChunk( segment, columnIds.get( pkIndexes[i] ) ).decode();
+                    }
+                    for ( int row = 0; row < segment.rowCount && !rewrite; row++ ) {
+                        String[] key = new String[pkIndexes.length];
+                        for ( int i = 0; i < pkIndexes.length; i++ ) {
+                            key[i] = pkColumns[i][row];
+                        }
+                        rewrite = delta.isDeleted( Arrays.asList( key ) );
+                    }
+                }
+                if ( !rewrite ) {
+                    segments.add( segment );
+                    continue;
+                }
+                String[][] columns = new String[columnIds.size()][];
+                for ( int c = 0; c < columnIds.size(); c++ ) {
+                    columns[c] = snapshot.openChunk( segment, columnIds.get( c ) ).decode();
+                }
+                for ( int row = 0; row < segment.rowCount; row++ ) {
+                    String[] values = new String[columnIds.size()];
+                    for ( int c = 0; c < columnIds.size(); c++ ) {
+                        values[c] = columns[c][row];
+                    }
+                    List<String> key = keyOf( values, pkIndexes );
+                    if ( !delta.isDeleted( key ) && !delta.getInserts().containsKey( key ) ) {
+                        rows.add( values );
+                    }
+                }
+            }
+            for ( Map<Long, String> inserted : delta.getInserts().values() ) {
+                String[] values = new String[columnIds.size()];
+                for ( int c = 0; c < columnIds.size(); c++ ) {
+                    values[c] = inserted.get( columnIds.get( c ) );
+                }
+                rows.add( values );
+            }
+
+            // Sorting by the primary key keeps the zone maps of the key columns narrow
+            rows.sort( keyComparator( pkIndexes, layout.columnTypes ) );
+            for ( int start = 0; start < rows.size(); start += blockSize ) {
+                List<String[]> block = rows.subList( start, Math.min( rows.size(), start + blockSize ) );
+                Segment segment = new Segment( nextSegmentId++, block.size() );
+                File segmentFolder = segmentFolder( segment );
+                if ( !segmentFolder.mkdir() ) {
+                    throw new IOException( "Could not create segment folder " + segmentFolder.getAbsolutePath() );
+                }
+                written.add( segment );
+                for ( int c = 0; c < columnIds.size(); c++ ) {
+                    String[] values = new String[block.size()];
+                    for ( int r = 0; r < block.size(); r++ ) {
+                        values[r] = block.get( r )[c];
+                    }
+                    ColumnChunk.write( chunkFile( segment, columnIds.get( c ) ), layout.columnTypes.get( c ), values );
+                }
+                syncDirectory( segmentFolder );
+                segments.add( segment );
+            }
+        }
+
+
+        void swap( final List<Record> carriedOver ) throws IOException {
+            replaceManifest( old, new Manifest( old.logGeneration + 1, nextSegmentId, Collections.unmodifiableList( segments ) ), carriedOver );
+            log.debug( "Compacted {}: {} changes merged, {} of {} segments rewritten", folder.getName(), delta.size(), old.segments.size() - (segments.size() - written.size()), old.segments.size() );
+        }
+
+
+        /**
+         * Removes the written segments if the compaction has not been completed.
+         */
+        void discard() {
+            for ( Segment segment : written ) {
+                try {
+                    FileUtils.deleteDirectory( segmentFolder( segment ) );
+                } catch ( IOException e ) {
+                    log.warn( "Could not remove segment {} of an incomplete compaction", segmentFolder( segment ).getAbsolutePath(), e );
+                }
+            }
+        }
+
+    }
+
+
+    /**
+     * The segments and changes visible to a reader. Holds the read lock of the partition until it is released.
+     */
+    public class Snapshot {
+
+        @Getter
+        private final List<Segment> segments;
+        @Getter
+        private final DeltaState delta;
+        private long stamp;
+
+
+        private Snapshot( final List<Segment> segments, final DeltaState delta, final long stamp ) {
+            this.segments = segments;
+            this.delta = delta;
+            this.stamp = stamp;
+        }
+
+
+        public ColumnChunk openChunk( final Segment segment, final long columnId ) throws IOException {
+            return ColumnChunk.open( chunkFile( segment, columnId ), segment.rowCount );
+        }
+
+
+        public synchronized void release() {
+            if ( stamp != 0 ) {
+                lock.unlockRead( stamp );
+                stamp = 0;
+            }
+        }
+
+    }
+
+}
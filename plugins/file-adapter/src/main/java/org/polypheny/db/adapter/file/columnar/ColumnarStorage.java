@@ -0,0 +1,224 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.adapter.file.columnar;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.polypheny.db.adapter.file.columnar.ColumnarPartition.Layout;
+import org.polypheny.db.catalog.Catalog;
+import org.polypheny.db.catalog.entity.CatalogColumn;
+import org.polypheny.db.catalog.entity.CatalogTable;
+import org.polypheny.db.type.PolyType;
+
+
+/**
+ * Block-based storage of a file store using the columnar layout. Manages the {@link ColumnarPartition}s of the store,
+ * commits and rolls back their pending changes and compacts the delta logs in the background.
+ */
+@Slf4j
+public class ColumnarStorage {
+
+    private static final String PARTITION_PREFIX = "partition";
+    private static final long COMPACTION_RETRY_DELAY = 5;
+
+    private final File rootDir;
+    private final int adapterId;
+    @Getter
+    private final int blockSize;
+    private final Map<Long, ColumnarPartition> partitions = new ConcurrentHashMap<>();
+    private final Set<Long> scheduledCompactions = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService compactionExecutor;
+
+
+    public ColumnarStorage( final File rootDir, final int adapterId, final int blockSize ) {
+        this.rootDir = rootDir;
+        this.adapterId = adapterId;
+        this.blockSize = blockSize;
+        this.compactionExecutor = Executors.newSingleThreadScheduledExecutor( r -> {
+            Thread thread = new Thread( r, "FileStoreCompaction-" + adapterId );
+            thread.setDaemon( true );
+            return thread;
+        } );
+    }
+
+
+    public ColumnarPartition getPartition( final long partitionId ) {
+        return partitions.computeIfAbsent( partitionId, id -> {
+            File folder = getPartitionFolder( id );
+            if ( !folder.exists() ) {
+                throw new RuntimeException( "There is no data for partition " + id + " on file store " + adapterId );
+            }
+            try {
+                return ColumnarPartition.load( folder );
+            } catch ( IOException e ) {
+                throw new RuntimeException( "Could not load partition " + id, e );
+            }
+        } );
+    }
+
+
+    public void createPartition( final long partitionId ) {
+        try {
+            partitions.put( partitionId, ColumnarPartition.create( getPartitionFolder( partitionId ) ) );
+        } catch ( IOException e ) {
+            throw new RuntimeException( "Could not create partition " + partitionId, e );
+        }
+    }
+
+
+    public void dropPartition( final long partitionId ) {
+        partitions.remove( partitionId );
+        try {
+            FileUtils.deleteDirectory( getPartitionFolder( partitionId ) );
+        } catch ( IOException e ) {
+            throw new RuntimeException( "Could not drop partition " + partitionId, e );
+        }
+    }
+
+
+    /**
+     * Commits or rolls back the pending changes of a transaction in all partitions. After a commit, the partitions
+     * with a large delta log are compacted in the background.
+     */
+    public void commitOrRollback( final String xidHash, final boolean commit ) {
+        for ( long partitionId : getPartitionIds() ) {
+            ColumnarPartition partition = getPartition( partitionId );
+            if ( !partition.hasPending( xidHash ) ) {
+                continue;
+            }
+            try {
+                if ( commit ) {
+                    partition.commit( xidHash );
+                    if ( partition.getDeltaSize() >= blockSize ) {
+                        scheduleCompaction( partitionId );
+                    }
+                } else {
+                    partition.rollback( xidHash );
+                }
+            } catch ( IOException e ) {
+                throw new RuntimeException( "Could not " + (commit ? "commit" : "rollback") + " changes of partition " + partitionId, e );
+            }
+        }
+    }
+
+
+    /**
+     * Discards the pending changes which are left after the transaction recovery. They belong to transactions which
+     * have neither been prepared, committed nor rolled back before a shutdown. The changes of prepared transactions are
+     * kept, they are in doubt and are committed or rolled back by the coordinator.
+     *
+     * @param preparedXidHashes Hashes of the transactions reported as prepared by the transaction recovery
+     */
+    public void discardPendingChanges( final Set<String> preparedXidHashes ) {
+        for ( long partitionId : getPartitionIds() ) {
+            File[] pendingLogs = getPartitionFolder( partitionId ).listFiles( f -> f.getName().startsWith( "pending_" ) );
+            if ( pendingLogs == null ) {
+                continue;
+            }
+            for ( File pendingLog : pendingLogs ) {
+                String xidHash = pendingLog.getName().substring( "pending_".length(), pendingLog.getName().length() - 4 );
+                if ( preparedXidHashes.contains( xidHash ) ) {
+                    log.warn( "Keeping the changes of the prepared transaction {} in {}", xidHash, pendingLog.getAbsolutePath() );
+                    continue;
+                }
+                try {
+                    getPartition( partitionId ).rollback( xidHash );
+                } catch ( IOException e ) {
+                    log.warn( "Could not discard pending changes {}", pendingLog.getAbsolutePath(), e );
+                }
+            }
+        }
+    }
+
+
+    private void scheduleCompaction( final long partitionId ) {
+        if ( scheduledCompactions.add( partitionId ) ) {
+            compactionExecutor.execute( () -> compact( partitionId ) );
+        }
+    }
+
+
+    private void compact( final long partitionId ) {
+        try {
+            ColumnarPartition partition = partitions.get( partitionId );
+            if ( partition != null && !partition.compact( getLayout( partitionId ), blockSize ) ) {
+                // The partition has been in use for too long to swap in the compacted segments
+                compactionExecutor.schedule( () -> compact( partitionId ), COMPACTION_RETRY_DELAY, TimeUnit.SECONDS );
+                return;
+            }
+        } catch ( Exception e ) {
+            log.warn( "Compaction of partition {} on file store {} failed", partitionId, adapterId, e );
+        }
+        scheduledCompactions.remove( partitionId );
+    }
+
+
+    /**
+     * Returns the columns of the partition's table which are placed on this store, sorted by their id.
+     */
+    public Layout getLayout( final long partitionId ) {
+        Catalog catalog = Catalog.getInstance();
+        CatalogTable table = catalog.getTable( catalog.getPartition( partitionId ).tableId );
+        List<Long> columnIds = new ArrayList<>();
+        List<PolyType> columnTypes = new ArrayList<>();
+        catalog.getColumnPlacementsOnAdapterPerTable( adapterId, table.id ).stream()
+                .map( p -> p.columnId )
+                .sorted()
+                .forEach( columnId -> {
+                    CatalogColumn column = catalog.getColumn( columnId );
+                    columnIds.add( columnId );
+                    columnTypes.add( column.collectionsType != null ? PolyType.ARRAY : column.type );
+                } );
+        return new Layout( columnIds, columnTypes, catalog.getPrimaryKey( table.primaryKey ).columnIds );
+    }
+
+
+    public List<Long> getPartitionIds() {
+        List<Long> partitionIds = new ArrayList<>();
+        File[] folders = rootDir.listFiles( f -> f.isDirectory() && f.getName().startsWith( PARTITION_PREFIX ) );
+        if ( folders != null ) {
+            for ( File folder : folders ) {
+                partitionIds.add( Long.parseLong( folder.getName().substring( PARTITION_PREFIX.length() ) ) );
+            }
+        }
+        return partitionIds;
+    }
+
+
+    public void shutdown() {
+        compactionExecutor.shutdownNow();
+    }
+
+
+    private File getPartitionFolder( final long partitionId ) {
+        return new File( rootDir, PARTITION_PREFIX + partitionId );
+    }
+
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.adapter.file.columnar;
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.zip.CRC32;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * Append-only log of row changes. Inserts and deletes of a transaction are first appended to a pending log of the
+ * transaction and are appended to the committed log of the partition on commit. The committed log is merged into the
+ * column chunks by the compaction.
+ *
+ * Every record is framed with its length and a checksum. A record which has only partially been written
+ * (e.g. because of a crash) is discarded when reading the log.
+ */
+@Slf4j
+public class DeltaLog {
+
+    private DeltaLog() {
+        // Utility class
+    }
+
+
+    enum RecordType {
+        INSERT, DELETE
+    }
+
+
+    /**
+     * A single change: the insert of a row or the deletion of the row with the given primary key.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Record {
+
+        private final RecordType type;
+        private final List<String> key;
+        /**
+         * Values of the inserted row per column id, {@code null} for deletions
+         */
+        private final Map<Long, String> row;
+
+
+        public static Record insert( final List<String> key, final Map<Long, String> row ) {
+            return new Record( RecordType.INSERT, key, row );
+        }
+
+
+        public static Record delete( final List<String> key ) {
+            return new Record( RecordType.DELETE, key, null );
+        }
+
+    }
+
+
+    /**
+     * Appends the records to the log and forces them to disk. If the log is created, its directory entry is forced as well.
+     */
+    public static void append( final File file, final List<Record> records ) throws IOException {
+        if ( records.isEmpty() ) {
+            return;
+        }
+        boolean created = !file.exists();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream( bytes );
+        for ( Record record : records ) {
+            byte[] payload = serialize( record );
+            CRC32 crc = new CRC32();
+            crc.update( payload );
+            out.writeInt( payload.length );
+            out.writeInt( (int) crc.getValue() );
+            out.write( payload );
+        }
+        try ( FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND ) ) {
+            ByteBuffer buffer = ByteBuffer.wrap( bytes.toByteArray() );
+            while ( buffer.hasRemaining() ) {
+                channel.write( buffer );
+            }
+            channel.force( false );
+        }
+        if ( created ) {
+            ColumnarPartition.syncDirectory( file.getParentFile() );
+        }
+    }
+
+
+    /**
+     * Reads all complete records of a log. An incomplete or corrupt tail is cut off.
+     */
+    public static List<Record> read( final File file ) throws IOException {
+        if ( !file.exists() ) {
+            return Collections.emptyList();
+        }
+        ByteBuffer in = ByteBuffer.wrap( Files.readAllBytes( file.toPath() ) );
+        List<Record> records = new ArrayList<>();
+        int validLength = 0;
+        while ( in.remaining() >= 8 ) {
+            int length = in.getInt();
+            int checksum = in.getInt();
+            if ( length < 0 || in.remaining() < length ) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            in.get( payload );
+            CRC32 crc = new CRC32();
+            crc.update( payload );
+            if ( (int) crc.getValue() != checksum ) {
+                break;
+            }
+            records.add( deserialize( ByteBuffer.wrap( payload ) ) );
+            validLength = in.position();
+        }
+        if ( validLength < in.limit() ) {
+            log.warn( "Discarding incomplete tail of delta log {}", file.getAbsolutePath() );
+            try ( FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.WRITE ) ) {
+                channel.truncate( validLength );
+            }
+        }
+        return records;
+    }
+
+
+    private static byte[] serialize( final Record record ) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream( bytes );
+        out.writeByte( record.type.ordinal() );
+        out.writeInt( record.key.size() );
+        for ( String value : record.key ) {
+            ColumnChunk.writeString( out, value );
+        }
+        if ( record.type == RecordType.INSERT ) {
+            out.writeInt( record.row.size() );
+            for ( Entry<Long, String> entry : record.row.entrySet() ) {
+                out.writeLong( entry.getKey() );
+                out.writeBoolean( entry.getValue() == null );
+                if ( entry.getValue() != null ) {
+                    ColumnChunk.writeString( out, entry.getValue() );
+                }
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+
+    private static Record deserialize( final ByteBuffer in ) {
+        RecordType type = RecordType.values()[in.get()];
+        List<String> key = new ArrayList<>();
+        int keySize = in.getInt();
+        for ( int i = 0; i < keySize; i++ ) {
+            key.add( ColumnChunk.readString( in ) );
+        }
+        if ( type == RecordType.DELETE ) {
+            return Record.delete( Collections.unmodifiableList( key ) );
+        }
+        Map<Long, String> row = new LinkedHashMap<>();
+        int columnCount = in.getInt();
+        for ( int i = 0; i < columnCount; i++ ) {
+            long columnId = in.getLong();
+            boolean isNull = in.get() != 0;
+            row.put( columnId, isNull ? null : ColumnChunk.readString( in ) );
+        }
+        return Record.insert( Collections.unmodifiableList( key ), row );
+    }
+
+}
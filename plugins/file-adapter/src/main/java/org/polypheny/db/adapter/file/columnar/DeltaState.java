@@ -0,0 +1,117 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.adapter.file.columnar;
+
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.polypheny.db.adapter.file.columnar.DeltaLog.Record;
+
+
+/**
+ * Immutable view on a sequence of {@link DeltaLog} records. Rows inserted by the records are kept per primary key,
+ * deletions are kept as tombstones which hide the rows with the same primary key in the column chunks.
+ * An update is logged as the deletion of the old row followed by the insert of the new row.
+ */
+public class DeltaState {
+
+    public static final DeltaState EMPTY = new DeltaState( Collections.emptyMap(), Collections.emptySet() );
+
+    private final Map<List<String>, Map<Long, String>> inserts;
+    private final Set<List<String>> tombstones;
+
+
+    private DeltaState( final Map<List<String>, Map<Long, String>> inserts, final Set<List<String>> tombstones ) {
+        this.inserts = inserts;
+        this.tombstones = tombstones;
+    }
+
+
+    /**
+     * Returns a new state with the records applied in the given order.
+     */
+    public DeltaState apply( final List<Record> records ) {
+        if ( records.isEmpty() ) {
+            return this;
+        }
+        Map<List<String>, Map<Long, String>> newInserts = new LinkedHashMap<>( inserts );
+        Set<List<String>> newTombstones = new HashSet<>( tombstones );
+        for ( Record record : records ) {
+            switch ( record.getType() ) {
+                case INSERT:
+                    newInserts.put( record.getKey(), record.getRow() );
+                    break;
+                case DELETE:
+                    newInserts.remove( record.getKey() );
+                    newTombstones.add( record.getKey() );
+                    break;
+                default:
+                    throw new RuntimeException( "Unknown delta record " + record.getType() );
+            }
+        }
+        return new DeltaState( Collections.unmodifiableMap( newInserts ), Collections.unmodifiableSet( newTombstones ) );
+    }
+
+
+    /**
+     * Returns a new state with the changes of a newer state (e.g. the pending changes of a transaction) applied on top of this state.
+     */
+    public DeltaState merge( final DeltaState newer ) {
+        if ( newer.isEmpty() ) {
+            return this;
+        }
+        Map<List<String>, Map<Long, String>> newInserts = new LinkedHashMap<>( inserts );
+        Set<List<String>> newTombstones = new HashSet<>( tombstones );
+        for ( List<String> key : newer.tombstones ) {
+            newInserts.remove( key );
+            newTombstones.add( key );
+        }
+        newInserts.putAll( newer.inserts );
+        return new DeltaState( Collections.unmodifiableMap( newInserts ), Collections.unmodifiableSet( newTombstones ) );
+    }
+
+
+    public Map<List<String>, Map<Long, String>> getInserts() {
+        return inserts;
+    }
+
+
+    public boolean isDeleted( final List<String> key ) {
+        return tombstones.contains( key );
+    }
+
+
+    public boolean hasTombstones() {
+        return !tombstones.isEmpty();
+    }
+
+
+    public boolean isEmpty() {
+        return inserts.isEmpty() && tombstones.isEmpty();
+    }
+
+
+    public int size() {
+        return inserts.size() + tombstones.size();
+    }
+
+}
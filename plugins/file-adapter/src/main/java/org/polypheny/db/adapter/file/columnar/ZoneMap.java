@@ -0,0 +1,156 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.adapter.file.columnar;
+
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import lombok.Getter;
+import org.polypheny.db.algebra.constant.Kind;
+
+
+/**
+ * Min/max statistics of one column chunk. They are stored in the header of the chunk file and allow skipping
+ * a whole block without decoding it, if a filter cannot match any of its values.
+ */
+public class ZoneMap {
+
+    enum StatsKind {
+        NONE, LONG, DOUBLE, STRING
+    }
+
+
+    @Getter
+    private final int rowCount;
+    @Getter
+    private final int nullCount;
+    private final StatsKind kind;
+    private final Comparable<?> min;
+    private final Comparable<?> max;
+
+
+    ZoneMap( final int rowCount, final int nullCount, final StatsKind kind, final Comparable<?> min, final Comparable<?> max ) {
+        this.rowCount = rowCount;
+        this.nullCount = nullCount;
+        this.kind = rowCount == nullCount ? StatsKind.NONE : kind;
+        this.min = min;
+        this.max = max;
+    }
+
+
+    /**
+     * Zone map of a chunk that only contains null values, e.g. a column that has been added after the block was written.
+     */
+    static ZoneMap allNull( final int rowCount ) {
+        return new ZoneMap( rowCount, rowCount, StatsKind.NONE, null, null );
+    }
+
+
+    public boolean hasNulls() {
+        return nullCount > 0;
+    }
+
+
+    public boolean hasValues() {
+        return nullCount < rowCount;
+    }
+
+
+    /**
+     * Checks if a comparison {@code value <operator> parameter} can be true for any value of the chunk.
+     * Returns {@code true} if this cannot be decided based on the statistics.
+     */
+    public boolean mayMatch( final Kind operator, final Comparable<?> parameter ) {
+        final int compareMin;
+        final int compareMax;
+        if ( kind == StatsKind.NONE ) {
+            return true;
+        } else if ( kind == StatsKind.STRING ) {
+            if ( !(parameter instanceof String) ) {
+                return true;
+            }
+            compareMin = ((String) min).compareTo( (String) parameter );
+            compareMax = ((String) max).compareTo( (String) parameter );
+        } else {
+            if ( !(parameter instanceof Number) ) {
+                return true;
+            }
+            // Same semantics as Condition#matches, which compares numbers as doubles
+            double value = ((Number) parameter).doubleValue();
+            compareMin = Double.compare( ((Number) min).doubleValue(), value );
+            compareMax = Double.compare( ((Number) max).doubleValue(), value );
+        }
+        switch ( operator ) {
+            case EQUALS:
+                return compareMin <= 0 && compareMax >= 0;
+            case NOT_EQUALS:
+                return !(compareMin == 0 && compareMax == 0);
+            case GREATER_THAN:
+                return compareMax > 0;
+            case GREATER_THAN_OR_EQUAL:
+                return compareMax >= 0;
+            case LESS_THAN:
+                return compareMin < 0;
+            case LESS_THAN_OR_EQUAL:
+                return compareMin <= 0;
+            default:
+                return true;
+        }
+    }
+
+
+    void write( final DataOutputStream out ) throws IOException {
+        out.writeInt( rowCount );
+        out.writeInt( nullCount );
+        out.writeByte( kind.ordinal() );
+        switch ( kind ) {
+            case LONG:
+                out.writeLong( (Long) min );
+                out.writeLong( (Long) max );
+                break;
+            case DOUBLE:
+                out.writeDouble( (Double) min );
+                out.writeDouble( (Double) max );
+                break;
+            case STRING:
+                ColumnChunk.writeString( out, (String) min );
+                ColumnChunk.writeString( out, (String) max );
+                break;
+            default:
+        }
+    }
+
+
+    static ZoneMap read( final ByteBuffer buffer ) {
+        int rowCount = buffer.getInt();
+        int nullCount = buffer.getInt();
+        StatsKind kind = StatsKind.values()[buffer.get()];
+        switch ( kind ) {
+            case LONG:
+                return new ZoneMap( rowCount, nullCount, kind, buffer.getLong(), buffer.getLong() );
+            case DOUBLE:
+                return new ZoneMap( rowCount, nullCount, kind, buffer.getDouble(), buffer.getDouble() );
+            case STRING:
+                return new ZoneMap( rowCount, nullCount, kind, ColumnChunk.readString( buffer ), ColumnChunk.readString( buffer ) );
+            default:
+                return new ZoneMap( rowCount, nullCount, kind, null, null );
+        }
+    }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.adapter.file.columnar;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.polypheny.db.adapter.file.columnar.ColumnChunk.Encoding;
+import org.polypheny.db.algebra.constant.Kind;
+import org.polypheny.db.type.PolyType;
+
+
+public class ColumnChunkTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    @Test
+    public void testRunLengthEncoding() throws IOException {
+        String[] values = new String[100];
+        for ( int i = 0; i < values.length; i++ ) {
+            values[i] = i % 10 == 5 ? null : i < 50 ? "7" : "-3";
+        }
+        ColumnChunk chunk = writeAndOpen( PolyType.INTEGER, values );
+        assertEquals( Encoding.RLE, chunk.getEncoding() );
+        assertArrayEquals( values, chunk.decode() );
+    }
+
+
+    @Test
+    public void testDeltaEncoding() throws IOException {
+        String[] values = new String[100];
+        for ( int i = 0; i < values.length; i++ ) {
+            values[i] = i == 42 ? null : Long.toString( 1_600_000_000_000L + (i % 2 == 0 ? i * 1000L : -i) );
+        }
+        ColumnChunk chunk = writeAndOpen( PolyType.TIMESTAMP, values );
+        assertEquals( Encoding.DELTA, chunk.getEncoding() );
+        assertArrayEquals( values, chunk.decode() );
+    }
+
+
+    @Test
+    public void testDictionaryEncoding() throws IOException {
+        String[] values = new String[300];
+        for ( int i = 0; i < values.length; i++ ) {
+            values[i] = i % 7 == 0 ? null : "value" + (i % 3);
+        }
+        ColumnChunk chunk = writeAndOpen( PolyType.VARCHAR, values );
+        assertEquals( Encoding.DICTIONARY, chunk.getEncoding() );
+        assertArrayEquals( values, chunk.decode() );
+    }
+
+
+    @Test
+    public void testPlainEncoding() throws IOException {
+        String[] values = { "alpha", "", null, "\u00e4\u00f6\u00fc", "omega" };
+        ColumnChunk chunk = writeAndOpen( PolyType.VARCHAR, values );
+        assertEquals( Encoding.PLAIN, chunk.getEncoding() );
+        assertArrayEquals( values, chunk.decode() );
+    }
+
+
+    @Test
+    public void testNonCanonicalIntegersAreKept() throws IOException {
+        // "007" cannot be restored from a long, the values have to be stored as strings
+        String[] values = { "007", "8", "9" };
+        ColumnChunk chunk = writeAndOpen( PolyType.INTEGER, values );
+        assertFalse( chunk.getEncoding() == Encoding.RLE || chunk.getEncoding() == Encoding.DELTA );
+        assertArrayEquals( values, chunk.decode() );
+    }
+
+
+    @Test
+    public void testOnlyNulls() throws IOException {
+        String[] values = { null, null, null };
+        ColumnChunk chunk = writeAndOpen( PolyType.INTEGER, values );
+        assertFalse( chunk.getZoneMap().hasValues() );
+        assertArrayEquals( values, chunk.decode() );
+    }
+
+
+    @Test
+    public void testMissingChunkContainsNulls() throws IOException {
+        ColumnChunk chunk = ColumnChunk.open( new File( folder.getRoot(), "missing.chunk" ), 3 );
+        String[] values = chunk.decode();
+        assertEquals( 3, values.length );
+        for ( String value : values ) {
+            assertNull( value );
+        }
+        assertTrue( chunk.getZoneMap().mayMatch( Kind.EQUALS, 1 ) );
+    }
+
+
+    @Test
+    public void testIntegralZoneMap() throws IOException {
+        ZoneMap zoneMap = writeAndOpen( PolyType.INTEGER, new String[]{ "10", null, "15", "20" } ).getZoneMap();
+        assertTrue( zoneMap.hasNulls() );
+        assertTrue( zoneMap.mayMatch( Kind.EQUALS, 15 ) );
+        assertFalse( zoneMap.mayMatch( Kind.EQUALS, 25 ) );
+        assertFalse( zoneMap.mayMatch( Kind.GREATER_THAN, 20 ) );
+        assertTrue( zoneMap.mayMatch( Kind.GREATER_THAN_OR_EQUAL, 20 ) );
+        assertFalse( zoneMap.mayMatch( Kind.LESS_THAN, 10 ) );
+        assertTrue( zoneMap.mayMatch( Kind.LESS_THAN_OR_EQUAL, 10L ) );
+        assertTrue( zoneMap.mayMatch( Kind.NOT_EQUALS, 10 ) );
+        // Parameters of another type cannot be used for pruning
+        assertTrue( zoneMap.mayMatch( Kind.EQUALS, "25" ) );
+    }
+
+
+    @Test
+    public void testFloatingPointZoneMap() throws IOException {
+        ZoneMap zoneMap = writeAndOpen( PolyType.DOUBLE, new String[]{ "1.5", "2.5", "2.0" } ).getZoneMap();
+        assertFalse( zoneMap.mayMatch( Kind.LESS_THAN, 1.5 ) );
+        assertTrue( zoneMap.mayMatch( Kind.LESS_THAN_OR_EQUAL, 1.5 ) );
+        assertFalse( zoneMap.mayMatch( Kind.GREATER_THAN, 2.5 ) );
+        assertTrue( zoneMap.mayMatch( Kind.EQUALS, 2 ) );
+    }
+
+
+    @Test
+    public void testStringZoneMap() throws IOException {
+        ZoneMap zoneMap = writeAndOpen( PolyType.VARCHAR, new String[]{ "bravo", "delta", "charlie" } ).getZoneMap();
+        assertFalse( zoneMap.mayMatch( Kind.EQUALS, "alpha" ) );
+        assertTrue( zoneMap.mayMatch( Kind.EQUALS, "charlie" ) );
+        assertFalse( zoneMap.mayMatch( Kind.GREATER_THAN, "delta" ) );
+        assertFalse( zoneMap.mayMatch( Kind.LESS_THAN, "bravo" ) );
+        assertTrue( zoneMap.mayMatch( Kind.NOT_EQUALS, "bravo" ) );
+    }
+
+
+    @Test
+    public void testConstantZoneMap() throws IOException {
+        ZoneMap zoneMap = writeAndOpen( PolyType.INTEGER, new String[]{ "4", "4", "4" } ).getZoneMap();
+        assertFalse( zoneMap.mayMatch( Kind.NOT_EQUALS, 4 ) );
+        assertTrue( zoneMap.mayMatch( Kind.NOT_EQUALS, 5 ) );
+    }
+
+
+    private ColumnChunk writeAndOpen( PolyType type, String[] values ) throws IOException {
+        File file = folder.newFile();
+        ColumnChunk.write( file, type, values );
+        return ColumnChunk.open( file, values.length );
+    }
+
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.adapter.file.columnar;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.polypheny.db.adapter.file.columnar.DeltaLogTest.insert;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.polypheny.db.adapter.file.columnar.ColumnarPartition.Layout;
+import org.polypheny.db.adapter.file.columnar.ColumnarPartition.Segment;
+import org.polypheny.db.adapter.file.columnar.ColumnarPartition.Snapshot;
+import org.polypheny.db.adapter.file.columnar.DeltaLog.Record;
+import org.polypheny.db.type.PolyType;
+
+
+public class ColumnarPartitionTest {
+
+    private static final int BLOCK_SIZE = 4;
+    private static final Layout LAYOUT = new Layout( List.of( 1L, 2L ), List.of( PolyType.INTEGER, PolyType.VARCHAR ), List.of( 1L ) );
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File folder;
+
+
+    @Before
+    public void setUp() {
+        folder = new File( temporaryFolder.getRoot(), "partition1" );
+    }
+
+
+    @Test
+    public void testCommitAndRollback() throws IOException {
+        ColumnarPartition partition = ColumnarPartition.create( folder );
+        partition.appendPending( "t1", List.of( insert( "1", "a" ), insert( "2", "b" ) ) );
+        partition.appendPending( "t2", List.of( insert( "3", "c" ) ) );
+
+        // Pending changes are only visible to their own transaction
+        assertEquals( Map.of( "1", "a", "2", "b" ), readAll( partition, "t1" ) );
+        assertTrue( readAll( partition, "reader" ).isEmpty() );
+
+        partition.commit( "t1" );
+        partition.rollback( "t2" );
+        assertFalse( partition.hasPending( "t1" ) );
+        assertFalse( partition.hasPending( "t2" ) );
+        assertEquals( Map.of( "1", "a", "2", "b" ), readAll( partition, "reader" ) );
+    }
+
+
+    @Test
+    public void testDeltaLogReplay() throws IOException {
+        ColumnarPartition partition = ColumnarPartition.create( folder );
+        partition.appendPending( "t1", List.of( insert( "1", "a" ), insert( "2", "b" ) ) );
+        partition.commit( "t1" );
+        partition.appendPending( "t2", List.of( Record.delete( List.of( "1" ) ), insert( "1", "z" ) ) );
+        partition.commit( "t2" );
+        // Prepared, but neither committed nor rolled back
+        partition.appendPending( "t3", List.of( insert( "3", "c" ) ) );
+
+        ColumnarPartition loaded = ColumnarPartition.load( folder );
+        assertEquals( partition.getDeltaSize(), loaded.getDeltaSize() );
+        assertEquals( Map.of( "1", "z", "2", "b" ), readAll( loaded, "reader" ) );
+        assertTrue( loaded.hasPending( "t3" ) );
+        assertEquals( Map.of( "1", "z", "2", "b", "3", "c" ), readAll( loaded, "t3" ) );
+
+        loaded.commit( "t3" );
+        assertEquals( Map.of( "1", "z", "2", "b", "3", "c" ), readAll( ColumnarPartition.load( folder ), "reader" ) );
+    }
+
+
+    @Test
+    public void testCompaction() throws IOException {
+        ColumnarPartition partition = ColumnarPartition.create( folder );
+        Map<String, String> expected = new TreeMap<>();
+        List<Record> records = new ArrayList<>();
+        for ( int i = 10; i > 0; i-- ) {
+            records.add( insert( Integer.toString( i ), "v" + i ) );
+            expected.put( Integer.toString( i ), "v" + i );
+        }
+        partition.appendPending( "t1", records );
+        partition.commit( "t1" );
+
+        assertTrue( partition.compact( LAYOUT, BLOCK_SIZE ) );
+        assertEquals( 0, partition.getDeltaSize() );
+        assertEquals( 3, partition.getSegments().size() );
+        assertEquals( expected, readAll( partition, "reader" ) );
+
+        // The segments are sorted by the primary key, their zone maps do not overlap
+        Snapshot snapshot = partition.openSnapshot( "reader" );
+        try {
+            Segment first = snapshot.getSegments().get( 0 );
+            assertEquals( 4, first.getRowCount() );
+            String[] keys = snapshot.openChunk( first, 1L ).decode();
+            assertEquals( List.of( "1", "2", "3", "4" ), List.of( keys ) );
+        } finally {
+            snapshot.release();
+        }
+
+        // Deleted rows are removed from the segments
+        partition.appendPending( "t2", List.of( Record.delete( List.of( "2" ) ), Record.delete( List.of( "7" ) ) ) );
+        partition.commit( "t2" );
+        expected.remove( "2" );
+        expected.remove( "7" );
+        assertTrue( partition.compact( LAYOUT, BLOCK_SIZE ) );
+        assertEquals( 0, partition.getDeltaSize() );
+        assertEquals( 8, partition.getSegments().stream().mapToInt( Segment::getRowCount ).sum() );
+        assertEquals( expected, readAll( partition, "reader" ) );
+
+        // The compacted state survives a restart, files of the old manifest are gone
+        ColumnarPartition loaded = ColumnarPartition.load( folder );
+        assertEquals( expected, readAll( loaded, "reader" ) );
+        String[] files = folder.list();
+        assertEquals( loaded.getSegments().size() + 2, files == null ? 0 : files.length );
+    }
+
+
+    @Test
+    public void testCompactionIsPostponedWhilePartitionIsInUse() throws Exception {
+        ColumnarPartition partition = ColumnarPartition.create( folder );
+        partition.appendPending( "t1", List.of( insert( "1", "a" ), insert( "2", "b" ) ) );
+        partition.commit( "t1" );
+
+        Snapshot snapshot = partition.openSnapshot( "reader" );
+        try {
+            assertFalse( CompletableFuture.supplyAsync( () -> compact( partition ) ).get( 10, TimeUnit.SECONDS ) );
+        } finally {
+            snapshot.release();
+        }
+        // Nothing has been changed by the postponed compaction
+        assertEquals( 2, partition.getDeltaSize() );
+        assertTrue( partition.getSegments().isEmpty() );
+        assertEquals( Map.of( "1", "a", "2", "b" ), readAll( partition, "reader" ) );
+
+        assertTrue( partition.compact( LAYOUT, BLOCK_SIZE ) );
+        assertEquals( Map.of( "1", "a", "2", "b" ), readAll( ColumnarPartition.load( folder ), "reader" ) );
+    }
+
+
+    @Test
+    public void testCommitsDuringCompactionAreKept() throws Exception {
+        ColumnarPartition partition = ColumnarPartition.create( folder );
+        Map<String, String> expected = new TreeMap<>();
+        for ( int i = 0; i < 200; i++ ) {
+            partition.appendPending( "init", List.of( insert( Integer.toString( i ), "v" + i ) ) );
+            expected.put( Integer.toString( i ), "v" + i );
+        }
+        partition.commit( "init" );
+
+        CompletableFuture<Boolean> compaction = CompletableFuture.supplyAsync( () -> compact( partition ) );
+        for ( int i = 200; i < 300; i++ ) {
+            String xidHash = "t" + i;
+            partition.appendPending( xidHash, List.of( insert( Integer.toString( i ), "v" + i ), Record.delete( List.of( Integer.toString( i - 200 ) ) ) ) );
+            partition.commit( xidHash );
+            expected.put( Integer.toString( i ), "v" + i );
+            expected.remove( Integer.toString( i - 200 ) );
+        }
+        assertTrue( compaction.get( 30, TimeUnit.SECONDS ) );
+
+        assertEquals( expected, readAll( partition, "reader" ) );
+        assertEquals( expected, readAll( ColumnarPartition.load( folder ), "reader" ) );
+        assertTrue( partition.compact( LAYOUT, BLOCK_SIZE ) );
+        assertEquals( expected, readAll( ColumnarPartition.load( folder ), "reader" ) );
+    }
+
+
+    private static boolean compact( ColumnarPartition partition ) {
+        try {
+            return partition.compact( LAYOUT, BLOCK_SIZE );
+        } catch ( IOException e ) {
+            throw new RuntimeException( e );
+        }
+    }
+
+
+    /**
+     * Returns the rows visible to the transaction, mapped from their key to the value of the second column.
+     */
+    private static Map<String, String> readAll( ColumnarPartition partition, String xidHash ) throws IOException {
+        Map<String, String> rows = new TreeMap<>();
+        Snapshot snapshot = partition.openSnapshot( xidHash );
+        try {
+            for ( Segment segment : snapshot.getSegments() ) {
+                String[] keys = snapshot.openChunk( segment, 1L ).decode();
+                String[] values = snapshot.openChunk( segment, 2L ).decode();
+                for ( int i = 0; i < keys.length; i++ ) {
+                    List<String> key = List.of( keys[i] );
+                    if ( !snapshot.getDelta().isDeleted( key ) && !snapshot.getDelta().getInserts().containsKey( key ) ) {
+                        rows.put( keys[i], values[i] );
+                    }
+                }
+            }
+            snapshot.getDelta().getInserts().forEach( ( key, row ) -> rows.put( key.get( 0 ), row.get( 2L ) ) );
+        } finally {
+            snapshot.release();
+        }
+        return rows;
+    }
+
+}
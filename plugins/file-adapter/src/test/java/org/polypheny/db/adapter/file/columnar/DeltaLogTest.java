@@ -0,0 +1,118 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.adapter.file.columnar;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.polypheny.db.adapter.file.columnar.DeltaLog.Record;
+import org.polypheny.db.adapter.file.columnar.DeltaLog.RecordType;
+
+
+public class DeltaLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    @Test
+    public void testReplay() throws IOException {
+        File file = new File( folder.getRoot(), "delta0.log" );
+        DeltaLog.append( file, List.of( insert( "1", "a" ), insert( "2", null ) ) );
+        DeltaLog.append( file, List.of( Record.delete( List.of( "1" ) ), insert( "3", "c" ) ) );
+
+        List<Record> records = DeltaLog.read( file );
+        assertEquals( 4, records.size() );
+        assertEquals( RecordType.INSERT, records.get( 0 ).getType() );
+        assertEquals( "a", records.get( 0 ).getRow().get( 2L ) );
+        assertTrue( records.get( 1 ).getRow().containsKey( 2L ) );
+        assertNull( records.get( 1 ).getRow().get( 2L ) );
+        assertEquals( RecordType.DELETE, records.get( 2 ).getType() );
+        assertEquals( List.of( "1" ), records.get( 2 ).getKey() );
+
+        DeltaState state = DeltaState.EMPTY.apply( records );
+        assertEquals( 2, state.getInserts().size() );
+        assertTrue( state.isDeleted( List.of( "1" ) ) );
+        assertFalse( state.getInserts().containsKey( List.of( "1" ) ) );
+        assertEquals( "c", state.getInserts().get( List.of( "3" ) ).get( 2L ) );
+    }
+
+
+    @Test
+    public void testIncompleteTailIsDiscarded() throws IOException {
+        File file = new File( folder.getRoot(), "delta0.log" );
+        DeltaLog.append( file, List.of( insert( "1", "a" ), insert( "2", "b" ) ) );
+        long validLength = file.length();
+
+        // A record which has only partially been written before a crash
+        Files.write( file.toPath(), new byte[]{ 0, 0, 0, 42, 1, 2, 3 }, StandardOpenOption.APPEND );
+        assertEquals( 2, DeltaLog.read( file ).size() );
+        assertEquals( validLength, file.length() );
+
+        // Records appended after the recovery are readable
+        DeltaLog.append( file, List.of( insert( "3", "c" ) ) );
+        assertEquals( 3, DeltaLog.read( file ).size() );
+    }
+
+
+    @Test
+    public void testCorruptRecordIsDiscarded() throws IOException {
+        File file = new File( folder.getRoot(), "delta0.log" );
+        DeltaLog.append( file, List.of( insert( "1", "a" ) ) );
+        long validLength = file.length();
+        DeltaLog.append( file, List.of( insert( "2", "b" ) ) );
+
+        // Flip a byte of the payload of the second record, its checksum does not match anymore
+        byte[] bytes = Files.readAllBytes( file.toPath() );
+        bytes[bytes.length - 1] ^= 0x01;
+        Files.write( file.toPath(), bytes );
+
+        List<Record> records = DeltaLog.read( file );
+        assertEquals( 1, records.size() );
+        assertEquals( List.of( "1" ), records.get( 0 ).getKey() );
+        assertEquals( validLength, file.length() );
+    }
+
+
+    @Test
+    public void testMissingLogIsEmpty() throws IOException {
+        assertTrue( DeltaLog.read( new File( folder.getRoot(), "missing.log" ) ).isEmpty() );
+    }
+
+
+    static Record insert( String id, String name ) {
+        Map<Long, String> row = new LinkedHashMap<>();
+        row.put( 1L, id );
+        row.put( 2L, name );
+        return Record.insert( List.of( id ), row );
+    }
+
+}
@@ -183,6 +183,25 @@ public AvailableIndexMethod getDefaultIndexMethod() {
     }
 
 
+    /**
+     * HSQLDB serves transactions running with REPEATABLE READ from a snapshot only in MVCC mode.
+     */
+    @Override
+    public boolean supportsSnapshotReads() {
+        return settings.get( "trxControlMode" ).equals( "mvcc" );
+    }
+
+
+    /**
+     * Branch statements get their own connection. HSQLDB commits DDL statements implicitly, so tables created by the
+     * transaction are visible on these connections.
+     */
+    @Override
+    public boolean supportsConcurrentStatements() {
+        return true;
+    }
+
+
     @Override
     public List<FunctionalIndexInfo> getFunctionalIndexes( CatalogTable catalogTable ) {
         return ImmutableList.of();
@@ -55,6 +55,7 @@
 import org.polypheny.db.schema.*;
 import org.polypheny.db.sql.language.SqlDialect;
 import org.polypheny.db.sql.language.SqlDialectFactory;
+import org.polypheny.db.transaction.Transaction;
 import org.polypheny.db.type.PolyType;
 import org.polypheny.db.type.PolyTypeFactoryImpl;
 
@@ -82,6 +83,13 @@ public class JdbcSchema implements Schema {
 
     private final Adapter adapter;
 
+    /**
+     * Number of bytes an adaptive fetch size aims to buffer per round trip
+     */
+    private static final int FETCH_BUFFER_SIZE = 4 * 1024 * 1024;
+    private static final int MIN_FETCH_SIZE = 100;
+    private static final int MAX_FETCH_SIZE = 10_000;
+
 
     private JdbcSchema(
             @NonNull ConnectionFactory connectionFactory,
@@ -206,14 +214,47 @@ public Schema snapshot( SchemaVersion version ) {
     // Used by generated code (see class JdbcToEnumerableConverter).
     public ConnectionHandler getConnectionHandler( DataContext dataContext ) {
         try {
-            dataContext.getStatement().getTransaction().registerInvolvedAdapter( adapter );
-            return connectionFactory.getOrCreateConnectionHandler( dataContext.getStatement().getTransaction().getXid() );
+            Transaction transaction = dataContext.getStatement().getTransaction();
+            transaction.registerInvolvedAdapter( adapter );
+            // Branch statements are executed on their own connection
+            return connectionFactory.getOrCreateConnectionHandler( dataContext.getStatement().getXid(), transaction.readsFromSnapshot() && adapter.supportsSnapshotReads() );
         } catch ( ConnectionHandlerException e ) {
             throw new RuntimeException( e );
         }
     }
 
 
+    /**
+     * Returns the number of rows, which are fetched from the underlying database per round trip. The policy is
+     * configured with the <code>fetchSize</code> setting of the adapter: A negative value adapts the fetch size to the
+     * width of the rows, zero keeps the default of the JDBC driver and a positive value is used as is.
+     * The fetch size never exceeds the number of rows the query is limited to.
+     *
+     * Used by generated code (see class JdbcToEnumerableConverter).
+     *
+     * @param rowWidth the estimated width of a row in bytes
+     * @param limit the maximal number of rows returned by the query, or -1 if unknown
+     */
+    public int getFetchSize( int rowWidth, long limit ) {
+        int fetchSize = adapter == null ? -1 : Integer.parseInt( adapter.getCurrentSettings().getOrDefault( "fetchSize", "-1" ) );
+        return getFetchSize( fetchSize, rowWidth, limit );
+    }
+
+
+    /**
+     * Applies the fetch size policy described in {@link #getFetchSize(int, long)} to the configured fetch size.
+     */
+    static int getFetchSize( int fetchSize, int rowWidth, long limit ) {
+        if ( fetchSize < 0 ) {
+            fetchSize = Math.max( MIN_FETCH_SIZE, Math.min( MAX_FETCH_SIZE, FETCH_BUFFER_SIZE / Math.max( 1, rowWidth ) ) );
+        }
+        if ( fetchSize > 0 && limit >= 0 ) {
+            fetchSize = (int) Math.max( 1, Math.min( fetchSize, limit ) );
+        }
+        return fetchSize;
+    }
+
+
     @Override
     public Expression getExpression( SchemaPlus parentSchema, String name ) {
         return Schemas.subSchemaExpression( parentSchema, name, JdbcSchema.class );
@@ -47,6 +47,7 @@
 import org.polypheny.db.algebra.type.AlgDataType;
 import org.polypheny.db.config.RuntimeConfig;
 import org.polypheny.db.plan.*;
+import org.polypheny.db.rex.RexLiteral;
 import org.polypheny.db.runtime.Hook;
 import org.polypheny.db.runtime.functions.Functions;
 import org.polypheny.db.schema.Schemas;
@@ -99,6 +100,15 @@ public class JdbcToEnumerableConverter extends ConverterImpl implements Enumerab
             String.class,
             Function1.class,
             ResultSetEnumerable.PreparedStatementEnricher.class );
+    public static final Method RESULT_SET_ENUMERABLE_SET_FETCH_SIZE_METHOD = Types.lookupMethod(
+            ResultSetEnumerable.class,
+            "setFetchSize",
+            int.class );
+    public static final Method JDBC_SCHEMA_GET_FETCH_SIZE_METHOD = Types.lookupMethod(
+            JdbcSchema.class,
+            "getFetchSize",
+            int.class,
+            long.class );
     public static final Method CREATE_ENRICHER_METHOD = Types.lookupMethod(
             ResultSetEnumerable.class,
             "createEnricher",
@@ -236,11 +246,49 @@ public Result implement( EnumerableAlgImplementor implementor, Prefer pref ) {
                                 enumerable,
                                 RESULT_SET_ENUMERABLE_SET_TIMEOUT_METHOD,
                                 DataContext.ROOT ) ) );
+        builder0.add(
+                Expressions.statement(
+                        Expressions.call(
+                                enumerable,
+                                RESULT_SET_ENUMERABLE_SET_FETCH_SIZE_METHOD,
+                                Expressions.call(
+                                        Schemas.unwrap( jdbcConvention.expression, JdbcSchema.class ),
+                                        JDBC_SCHEMA_GET_FETCH_SIZE_METHOD,
+                                        Expressions.constant( estimateRowWidth( child ) ),
+                                        Expressions.constant( getLimit( child ) ) ) ) ) );
         builder0.add( Expressions.return_( null, enumerable ) );
         return implementor.result( physType, builder0.toBlock() );
     }
 
 
+    /**
+     * Estimates the width of a row returned by the given node in bytes, which is used to adapt the fetch size.
+     */
+    private int estimateRowWidth( AlgNode node ) {
+        Double rowSize = getCluster().getMetadataQuery().getAverageRowSize( node );
+        if ( rowSize == null || rowSize.isNaN() || rowSize.isInfinite() ) {
+            return 8 * node.getRowType().getFieldCount();
+        }
+        return (int) Math.min( Integer.MAX_VALUE, Math.max( 1, Math.ceil( rowSize ) ) );
+    }
+
+
+    /**
+     * Returns the maximal number of rows returned by the given node if it is a sort with a literal limit,
+     * or -1 if it is unknown.
+     */
+    static long getLimit( AlgNode node ) {
+        if ( node instanceof JdbcRules.JdbcSort ) {
+            JdbcRules.JdbcSort sort = (JdbcRules.JdbcSort) node;
+            if ( sort.fetch instanceof RexLiteral && (sort.offset == null || sort.offset instanceof RexLiteral) ) {
+                long offset = sort.offset == null ? 0 : RexLiteral.intValue( sort.offset );
+                return RexLiteral.intValue( sort.fetch ) + offset;
+            }
+        }
+        return -1;
+    }
+
+
     private List<ConstantExpression> toIndexesTableExpression( SqlString sqlString ) {
         return sqlString.getDynamicParameters().stream()
                 .map( Expressions::constant )
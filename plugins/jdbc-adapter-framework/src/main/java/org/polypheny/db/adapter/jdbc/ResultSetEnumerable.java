@@ -36,6 +36,7 @@
 
 import com.google.common.io.ByteStreams;
 import com.google.gson.Gson;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.calcite.avatica.SqlType;
 import org.apache.calcite.avatica.util.ByteString;
@@ -88,6 +89,8 @@
     private Long queryStart;
     private long timeout;
     private boolean timeoutSetFailed;
+    @Setter
+    private int fetchSize;
 
     private static final Function1<ResultSet, Function0<Object>> AUTO_ROW_BUILDER_FACTORY =
             resultSet -> {
@@ -247,7 +250,10 @@ public static PreparedStatementEnricher createEnricher( Integer[] indexes, DataC
      * Assigns a value to a dynamic parameter in a prepared statement, calling the appropriate {@code setXxx}
      * method based on the type of the parameter.
      */
-    private static void setDynamicParam( PreparedStatement preparedStatement, int i, Object value, AlgDataType type, int sqlType, ConnectionHandler connectionHandler ) throws SQLException {
+    /**
+     * Binds a value in its internal representation to the i-th parameter of the prepared statement.
+     */
+    public static void setDynamicParam( PreparedStatement preparedStatement, int i, Object value, AlgDataType type, int sqlType, ConnectionHandler connectionHandler ) throws SQLException {
         if ( value == null ) {
             preparedStatement.setNull( i, SqlType.NULL.id );
         } else if ( type instanceof IntervalPolyType && connectionHandler.getDialect().getIntervalParameterStrategy() != IntervalParameterStrategy.NONE ) {
@@ -439,6 +445,7 @@ private Enumerator<T> enumeratorBasedOnStatement() {
         try {
             statement = connectionHandler.getStatement();
             setTimeoutIfPossible( statement );
+            setFetchSizeIfPossible( statement );
             if ( statement.execute( sql ) ) {
                 final ResultSet resultSet = statement.getResultSet();
                 statement = null;
@@ -466,6 +473,7 @@ private Enumerator<T> enumeratorBasedOnPreparedStatement() {
                 Integer updateCount = preparedStatement.getUpdateCount();
                 return Linq4j.singletonEnumerator( (T) updateCount );
             } else {
+                setFetchSizeIfPossible( preparedStatement );
                 if ( preparedStatement.execute() ) {
                     final ResultSet resultSet = preparedStatement.getResultSet();
                     preparedStatement = null;
@@ -508,6 +516,24 @@ private void setTimeoutIfPossible( Statement statement ) throws SQLException {
     }
 
 
+    /**
+     * Sets the number of rows fetched per round trip. Together with a connection which is not in auto-commit mode,
+     * this lets the drivers read the result through a server-side cursor instead of buffering it entirely.
+     */
+    private void setFetchSizeIfPossible( Statement statement ) {
+        if ( fetchSize <= 0 ) {
+            return;
+        }
+        try {
+            statement.setFetchSize( fetchSize );
+        } catch ( SQLException e ) {
+            if ( log.isDebugEnabled() ) {
+                log.debug( "Failed to set fetch size {}", fetchSize, e );
+            }
+        }
+    }
+
+
     private void closeIfPossible( Statement statement ) {
         if ( statement != null ) {
             try {
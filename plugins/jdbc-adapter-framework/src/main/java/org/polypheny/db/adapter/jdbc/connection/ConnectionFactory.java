@@ -16,19 +16,34 @@
 
 package org.polypheny.db.adapter.jdbc.connection;
 
-import javax.transaction.xa.Xid;
 import java.sql.SQLException;
+import java.util.List;
+import javax.transaction.xa.Xid;
+import org.polypheny.db.transaction.PolyXid;
 
 
 public interface ConnectionFactory {
 
 
-    ConnectionHandler getOrCreateConnectionHandler( Xid xid ) throws ConnectionHandlerException;
+    /**
+     * Returns the connection handler of the transaction or creates one. If the handler is created and
+     * <code>snapshot</code> is set, the transaction on the underlying database reads from a snapshot.
+     */
+    ConnectionHandler getOrCreateConnectionHandler( Xid xid, boolean snapshot ) throws ConnectionHandlerException;
+
+    default ConnectionHandler getOrCreateConnectionHandler( Xid xid ) throws ConnectionHandlerException {
+        return getOrCreateConnectionHandler( xid, false );
+    }
 
     boolean hasConnectionHandler( Xid xid );
 
     ConnectionHandler getConnectionHandler( Xid xid );
 
+    /**
+     * Returns the connection handlers of the transaction and of all its branches.
+     */
+    List<ConnectionHandler> getConnectionHandlers( PolyXid xid );
+
     void close() throws SQLException;
 
     int getMaxTotal();
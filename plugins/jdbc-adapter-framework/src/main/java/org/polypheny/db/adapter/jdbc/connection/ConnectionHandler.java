@@ -43,6 +43,11 @@ public abstract class ConnectionHandler {
      */
     protected ConcurrentLinkedQueue<Statement> openStatements;
 
+    /**
+     * Isolation level of the connection for transactions which do not read from a snapshot
+     */
+    private int defaultIsolation = -1;
+
 
     public int executeUpdate( final String sql ) throws SQLException {
         log.trace( "Executing query on database: {}", sql );
@@ -82,6 +87,34 @@ public PreparedStatement prepareStatement( String sql ) throws SQLException {
     }
 
 
+    /**
+     * Gives access to vendor specific interfaces of the underlying connection, e.g. for bulk loading.
+     */
+    public <T> T unwrap( Class<T> iface ) throws SQLException {
+        return connection.unwrap( iface );
+    }
+
+
+    /**
+     * Sets the isolation level of the transaction, which is started next on the underlying connection. Transactions
+     * reading from a snapshot run with REPEATABLE READ, which multi-version stores serve from a snapshot taken at the
+     * first statement of the transaction.
+     */
+    void setSnapshotIsolation( boolean snapshot ) throws ConnectionHandlerException {
+        try {
+            if ( defaultIsolation < 0 ) {
+                defaultIsolation = connection.getTransactionIsolation();
+            }
+            int isolation = snapshot ? Connection.TRANSACTION_REPEATABLE_READ : defaultIsolation;
+            if ( connection.getTransactionIsolation() != isolation ) {
+                connection.setTransactionIsolation( isolation );
+            }
+        } catch ( SQLException e ) {
+            throw new ConnectionHandlerException( "Error while setting the isolation level of the transaction", e );
+        }
+    }
+
+
     public abstract boolean prepare() throws ConnectionHandlerException;
 
     public abstract void commit() throws ConnectionHandlerException;
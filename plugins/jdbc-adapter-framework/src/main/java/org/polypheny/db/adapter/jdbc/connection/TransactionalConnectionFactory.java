@@ -20,7 +20,10 @@
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -29,6 +32,7 @@
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.dbcp2.BasicDataSource;
 import org.polypheny.db.sql.language.SqlDialect;
+import org.polypheny.db.transaction.PolyXid;
 
 
 /**
@@ -57,9 +61,10 @@ public TransactionalConnectionFactory( BasicDataSource dataSource, int maxConnec
 
 
     @Override
-    public TransactionalConnectionHandler getOrCreateConnectionHandler( Xid xid ) throws ConnectionHandlerException {
+    public synchronized TransactionalConnectionHandler getOrCreateConnectionHandler( Xid xid, boolean snapshot ) throws ConnectionHandlerException {
         if ( !activeInstances.containsKey( xid ) ) {
             TransactionalConnectionHandler transactionHandler = getFreeTransactionHandler();
+            transactionHandler.setSnapshotIsolation( snapshot );
             transactionHandler.xid = xid;
             activeInstances.put( xid, transactionHandler );
             return transactionHandler;
@@ -80,6 +85,18 @@ public TransactionalConnectionHandler getConnectionHandler( Xid xid ) {
     }
 
 
+    @Override
+    public List<ConnectionHandler> getConnectionHandlers( PolyXid xid ) {
+        List<ConnectionHandler> handlers = new ArrayList<>();
+        for ( Entry<Xid, TransactionalConnectionHandler> entry : activeInstances.entrySet() ) {
+            if ( entry.getKey() instanceof PolyXid && ((PolyXid) entry.getKey()).belongsTo( xid ) ) {
+                handlers.add( entry.getValue() );
+            }
+        }
+        return handlers;
+    }
+
+
     @Override
     public void close() throws SQLException {
         dataSource.close();
@@ -19,7 +19,10 @@
 
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -31,6 +34,7 @@
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.polypheny.db.sql.language.SqlDialect;
+import org.polypheny.db.transaction.PolyXid;
 
 
 /**
@@ -60,9 +64,10 @@ public XaConnectionFactory( XADataSource dataSource, int maxConnections, SqlDial
 
 
     @Override
-    public XaConnectionHandler getOrCreateConnectionHandler( Xid xid ) throws ConnectionHandlerException {
+    public synchronized XaConnectionHandler getOrCreateConnectionHandler( Xid xid, boolean snapshot ) throws ConnectionHandlerException {
         if ( !activeInstances.containsKey( xid ) ) {
             XaConnectionHandler xaConnectionHandler = getFreeTransactionHandler();
+            xaConnectionHandler.setSnapshotIsolation( snapshot );
             xaConnectionHandler.init( xid );
             activeInstances.put( xid, xaConnectionHandler );
             return xaConnectionHandler;
@@ -83,6 +88,18 @@ public XaConnectionHandler getConnectionHandler( Xid xid ) {
     }
 
 
+    @Override
+    public List<ConnectionHandler> getConnectionHandlers( PolyXid xid ) {
+        List<ConnectionHandler> handlers = new ArrayList<>();
+        for ( Entry<Xid, XaConnectionHandler> entry : activeInstances.entrySet() ) {
+            if ( entry.getKey() instanceof PolyXid && ((PolyXid) entry.getKey()).belongsTo( xid ) ) {
+                handlers.add( entry.getValue() );
+            }
+        }
+        return handlers;
+    }
+
+
     @Override
     public void close() throws SQLException {
         log.warn( "Not implemented!" );
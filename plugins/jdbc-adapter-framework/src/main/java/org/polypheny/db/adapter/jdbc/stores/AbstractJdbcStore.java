@@ -17,11 +17,15 @@
 package org.polypheny.db.adapter.jdbc.stores;
 
 
+import com.google.common.collect.ImmutableSet;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.pf4j.ExtensionPoint;
@@ -29,8 +33,13 @@
 import org.polypheny.db.adapter.DeployMode;
 import org.polypheny.db.adapter.jdbc.JdbcSchema;
 import org.polypheny.db.adapter.jdbc.JdbcUtils;
+import org.polypheny.db.adapter.jdbc.ResultSetEnumerable;
 import org.polypheny.db.adapter.jdbc.connection.ConnectionFactory;
+import org.polypheny.db.adapter.jdbc.connection.ConnectionHandler;
 import org.polypheny.db.adapter.jdbc.connection.ConnectionHandlerException;
+import org.polypheny.db.algebra.type.AlgDataType;
+import org.polypheny.db.algebra.type.AlgDataTypeFactory;
+import org.polypheny.db.algebra.type.AlgDataTypeSystem;
 import org.polypheny.db.catalog.entity.CatalogColumn;
 import org.polypheny.db.catalog.entity.CatalogColumnPlacement;
 import org.polypheny.db.catalog.entity.CatalogPartitionPlacement;
@@ -44,7 +53,10 @@
 import org.polypheny.db.sql.language.SqlDialect;
 import org.polypheny.db.sql.language.SqlLiteral;
 import org.polypheny.db.transaction.PolyXid;
+import org.polypheny.db.transaction.Statement;
+import org.polypheny.db.transaction.Transaction;
 import org.polypheny.db.type.PolyType;
+import org.polypheny.db.type.PolyTypeFactoryImpl;
 
 
 @Slf4j
@@ -57,6 +69,25 @@ public abstract class AbstractJdbcStore extends DataStore implements ExtensionPo
 
     protected int dockerInstanceId;
 
+    // Types whose internal representation can be written directly by the bulk load
+    protected static final Set<PolyType> BULK_LOAD_TYPES = ImmutableSet.of(
+            PolyType.BOOLEAN,
+            PolyType.TINYINT,
+            PolyType.SMALLINT,
+            PolyType.INTEGER,
+            PolyType.BIGINT,
+            PolyType.REAL,
+            PolyType.FLOAT,
+            PolyType.DOUBLE,
+            PolyType.DECIMAL,
+            PolyType.CHAR,
+            PolyType.VARCHAR,
+            PolyType.DATE,
+            PolyType.TIME,
+            PolyType.TIMESTAMP );
+
+    private final transient AlgDataTypeFactory typeFactory = new PolyTypeFactoryImpl( AlgDataTypeSystem.DEFAULT );
+
 
     public AbstractJdbcStore(
             int storeId,
@@ -370,47 +401,113 @@ public void truncate( Context context, CatalogTable catalogTable ) {
     }
 
 
+    @Override
+    public boolean supportsBulkLoad( List<CatalogColumn> columns ) {
+        return columns.stream().allMatch( c -> c.collectionsType == null && BULK_LOAD_TYPES.contains( c.type ) );
+    }
+
+
+    /**
+     * Loads the rows with a single batched insert statement. Stores with a dedicated load interface can override this.
+     */
+    @Override
+    public void bulkLoad( Context context, CatalogTable catalogTable, long partitionId, List<CatalogColumnPlacement> columnPlacements, List<List<Object>> rows ) {
+        CatalogPartitionPlacement partitionPlacement = catalog.getPartitionPlacement( getAdapterId(), partitionId );
+        StringBuilder builder = new StringBuilder();
+        builder.append( "INSERT INTO " )
+                .append( dialect.quoteIdentifier( partitionPlacement.physicalSchemaName ) )
+                .append( "." )
+                .append( dialect.quoteIdentifier( partitionPlacement.physicalTableName ) )
+                .append( " (" );
+        List<CatalogColumn> columns = new ArrayList<>();
+        List<AlgDataType> types = new ArrayList<>();
+        for ( CatalogColumnPlacement placement : columnPlacements ) {
+            CatalogColumn catalogColumn = catalog.getColumn( placement.columnId );
+            columns.add( catalogColumn );
+            types.add( catalogColumn.getAlgDataType( typeFactory ) );
+            builder.append( columns.size() > 1 ? ", " : "" ).append( dialect.quoteIdentifier( placement.physicalColumnName ) );
+        }
+        builder.append( ") VALUES (" ).append( String.join( ", ", Collections.nCopies( columns.size(), "?" ) ) ).append( ")" );
+
+        try {
+            context.getStatement().getTransaction().registerInvolvedAdapter( this );
+            ConnectionHandler connectionHandler = getOrCreateConnectionHandler( context.getStatement() );
+            try ( PreparedStatement statement = connectionHandler.prepareStatement( builder.toString() ) ) {
+                for ( List<Object> row : rows ) {
+                    for ( int i = 0; i < columns.size(); i++ ) {
+                        ResultSetEnumerable.setDynamicParam( statement, i + 1, row.get( i ), types.get( i ), columns.get( i ).type.getJdbcOrdinal(), connectionHandler );
+                    }
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        } catch ( SQLException | ConnectionHandlerException e ) {
+            throw new RuntimeException( e );
+        }
+    }
+
+
     protected void executeUpdate( StringBuilder builder, Context context ) {
         try {
             context.getStatement().getTransaction().registerInvolvedAdapter( this );
-            connectionFactory.getOrCreateConnectionHandler( context.getStatement().getTransaction().getXid() ).executeUpdate( builder.toString() );
+            getOrCreateConnectionHandler( context.getStatement() ).executeUpdate( builder.toString() );
         } catch ( SQLException | ConnectionHandlerException e ) {
             throw new RuntimeException( e );
         }
     }
 
 
+    /**
+     * Returns the connection handler of the statement. Branch statements get their own connection. The reads of
+     * transactions reading from a snapshot are served from a snapshot of the underlying database, if this store
+     * supports it.
+     */
+    protected ConnectionHandler getOrCreateConnectionHandler( Statement statement ) throws ConnectionHandlerException {
+        Transaction transaction = statement.getTransaction();
+        return connectionFactory.getOrCreateConnectionHandler( statement.getXid(), transaction.readsFromSnapshot() && supportsSnapshotReads() );
+    }
+
+
     @SneakyThrows
     @Override
     public boolean prepare( PolyXid xid ) {
-        if ( connectionFactory.hasConnectionHandler( xid ) ) {
-            return connectionFactory.getConnectionHandler( xid ).prepare();
-        } else {
+        List<ConnectionHandler> handlers = connectionFactory.getConnectionHandlers( xid );
+        if ( handlers.isEmpty() ) {
             log.warn( "There is no connection to prepare (Uniquename: {}, XID: {})! Returning true.", getUniqueName(), xid );
             return true;
         }
+        for ( ConnectionHandler handler : handlers ) {
+            if ( !handler.prepare() ) {
+                return false;
+            }
+        }
+        return true;
     }
 
 
     @SneakyThrows
     @Override
     public void commit( PolyXid xid ) {
-        if ( connectionFactory.hasConnectionHandler( xid ) ) {
-            connectionFactory.getConnectionHandler( xid ).commit();
-        } else {
+        List<ConnectionHandler> handlers = connectionFactory.getConnectionHandlers( xid );
+        if ( handlers.isEmpty() ) {
             log.warn( "There is no connection to commit (Uniquename: {}, XID: {})!", getUniqueName(), xid );
         }
+        for ( ConnectionHandler handler : handlers ) {
+            handler.commit();
+        }
     }
 
 
     @SneakyThrows
     @Override
     public void rollback( PolyXid xid ) {
-        if ( connectionFactory.hasConnectionHandler( xid ) ) {
-            connectionFactory.getConnectionHandler( xid ).rollback();
-        } else {
+        List<ConnectionHandler> handlers = connectionFactory.getConnectionHandlers( xid );
+        if ( handlers.isEmpty() ) {
             log.warn( "There is no connection to rollback (Uniquename: {}, XID: {})!", getUniqueName(), xid );
         }
+        for ( ConnectionHandler handler : handlers ) {
+            handler.rollback();
+        }
     }
 
 
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.adapter.jdbc;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+
+public class JdbcSchemaTest {
+
+    @Test
+    public void fetchSizeDerivedFromRowWidth() {
+        // 4 MB are buffered per round trip
+        assertEquals( 4096, JdbcSchema.getFetchSize( -1, 1024, -1 ) );
+        assertEquals( 1024, JdbcSchema.getFetchSize( -1, 4096, -1 ) );
+    }
+
+
+    @Test
+    public void fetchSizeIsClamped() {
+        assertEquals( 10_000, JdbcSchema.getFetchSize( -1, 8, -1 ) );
+        assertEquals( 10_000, JdbcSchema.getFetchSize( -1, 0, -1 ) );
+        assertEquals( 100, JdbcSchema.getFetchSize( -1, 1024 * 1024, -1 ) );
+        assertEquals( 100, JdbcSchema.getFetchSize( -1, Integer.MAX_VALUE, -1 ) );
+    }
+
+
+    @Test
+    public void configuredFetchSize() {
+        // Zero keeps the default of the driver, positive values are used as is
+        assertEquals( 0, JdbcSchema.getFetchSize( 0, 1024, -1 ) );
+        assertEquals( 0, JdbcSchema.getFetchSize( 0, 1024, 10 ) );
+        assertEquals( 50_000, JdbcSchema.getFetchSize( 50_000, 1024, -1 ) );
+        assertEquals( 7, JdbcSchema.getFetchSize( 7, 8, -1 ) );
+    }
+
+
+    @Test
+    public void fetchSizeIsBoundedByLimit() {
+        assertEquals( 10, JdbcSchema.getFetchSize( -1, 1024, 10 ) );
+        assertEquals( 10, JdbcSchema.getFetchSize( 500, 1024, 10 ) );
+        assertEquals( 4096, JdbcSchema.getFetchSize( -1, 1024, 1_000_000 ) );
+        assertEquals( 4096, JdbcSchema.getFetchSize( -1, 1024, Long.MAX_VALUE ) );
+
+        // A fetch size of zero would let the driver decide, hence at least one row is fetched
+        assertEquals( 1, JdbcSchema.getFetchSize( -1, 1024, 0 ) );
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.adapter.jdbc;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableList;
+import java.math.BigDecimal;
+import org.junit.Test;
+import org.polypheny.db.adapter.jdbc.JdbcRules.JdbcSort;
+import org.polypheny.db.adapter.jdbc.JdbcRules.JdbcValues;
+import org.polypheny.db.algebra.AlgCollations;
+import org.polypheny.db.algebra.AlgNode;
+import org.polypheny.db.algebra.type.AlgDataType;
+import org.polypheny.db.algebra.type.AlgDataTypeSystem;
+import org.polypheny.db.plan.AlgOptCluster;
+import org.polypheny.db.plan.AlgTraitSet;
+import org.polypheny.db.plan.ConventionTraitDef;
+import org.polypheny.db.plan.volcano.VolcanoPlanner;
+import org.polypheny.db.rex.RexBuilder;
+import org.polypheny.db.rex.RexNode;
+import org.polypheny.db.type.PolyType;
+import org.polypheny.db.type.PolyTypeFactoryImpl;
+
+
+public class JdbcToEnumerableConverterTest {
+
+    private final AlgOptCluster cluster;
+    private final RexBuilder rexBuilder;
+    private final AlgTraitSet traitSet;
+    private final AlgNode values;
+
+
+    public JdbcToEnumerableConverterTest() {
+        VolcanoPlanner planner = new VolcanoPlanner();
+        planner.addAlgTraitDef( ConventionTraitDef.INSTANCE );
+        rexBuilder = new RexBuilder( new PolyTypeFactoryImpl( AlgDataTypeSystem.DEFAULT ) );
+        cluster = AlgOptCluster.create( planner, rexBuilder );
+        traitSet = cluster.traitSetOf( new JdbcConvention( null, null, "test" ) );
+
+        AlgDataType rowType = cluster.getTypeFactory().builder().add( "a", null, PolyType.INTEGER ).build();
+        values = new JdbcValues( cluster, rowType, ImmutableList.of(), traitSet );
+    }
+
+
+    @Test
+    public void limitOfSort() {
+        assertEquals( 10, JdbcToEnumerableConverter.getLimit( sort( null, literal( 10 ) ) ) );
+        assertEquals( 0, JdbcToEnumerableConverter.getLimit( sort( null, literal( 0 ) ) ) );
+
+        // The skipped rows are fetched as well
+        assertEquals( 15, JdbcToEnumerableConverter.getLimit( sort( literal( 5 ), literal( 10 ) ) ) );
+    }
+
+
+    @Test
+    public void unknownLimit() {
+        assertEquals( -1, JdbcToEnumerableConverter.getLimit( values ) );
+        assertEquals( -1, JdbcToEnumerableConverter.getLimit( sort( null, null ) ) );
+        assertEquals( -1, JdbcToEnumerableConverter.getLimit( sort( literal( 5 ), null ) ) );
+
+        // Dynamic parameters are only known at execution time
+        assertEquals( -1, JdbcToEnumerableConverter.getLimit( sort( null, parameter() ) ) );
+        assertEquals( -1, JdbcToEnumerableConverter.getLimit( sort( parameter(), literal( 10 ) ) ) );
+    }
+
+
+    private AlgNode sort( RexNode offset, RexNode fetch ) {
+        return new JdbcSort( cluster, traitSet, values, AlgCollations.EMPTY, offset, fetch );
+    }
+
+
+    private RexNode literal( int value ) {
+        return rexBuilder.makeExactLiteral( BigDecimal.valueOf( value ) );
+    }
+
+
+    private RexNode parameter() {
+        return rexBuilder.makeDynamicParam( cluster.getTypeFactory().createPolyType( PolyType.INTEGER ), 0 );
+    }
+
+}
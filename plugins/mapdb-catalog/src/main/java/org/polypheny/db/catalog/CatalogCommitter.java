@@ -0,0 +1,230 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.catalog;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.Getter;
+import org.mapdb.DB;
+import org.mapdb.MapModificationListener;
+import org.polypheny.db.config.RuntimeConfig;
+
+
+/**
+ * Commits the changes of the catalog to the underlying MapDB file.
+ *
+ * All maps of the catalog report their modifications, a commit is therefore skipped if nothing has changed since the
+ * last commit. If group commit is enabled, the first transaction which commits becomes the leader of a group. It waits
+ * for the configured window and then commits the changes of all transactions which have joined the group in the
+ * meantime with a single MapDB commit. All other members of the group wait for the leader and fail if the leader fails.
+ * A rollback discards all uncommitted changes of the shared MapDB instance. It therefore waits until the pending group
+ * has been committed.
+ */
+public class CatalogCommitter {
+
+    private final DB db;
+    private final boolean isPersistent;
+    private final AtomicBoolean dirty = new AtomicBoolean( false );
+    // Incremented on every modification of the catalog
+    private final AtomicLong version = new AtomicLong();
+    // Number of MapDB commits in progress
+    private final AtomicInteger committing = new AtomicInteger();
+
+    // Group commit state, guarded by this. Tickets up to completed are resolved, those up to failed have failed.
+    private long requested = 0;
+    private long completed = 0;
+    private long failed = 0;
+    private boolean leaderActive = false;
+
+    @Getter
+    private final AtomicLong commits = new AtomicLong();
+    @Getter
+    private final AtomicLong skippedCommits = new AtomicLong();
+    @Getter
+    private final AtomicLong committedTransactions = new AtomicLong();
+    @Getter
+    private final AtomicLong maxBatchSize = new AtomicLong();
+    private final AtomicLong totalLatency = new AtomicLong();
+
+
+    CatalogCommitter( DB db, boolean isPersistent ) {
+        this.db = db;
+        this.isPersistent = isPersistent;
+    }
+
+
+    /**
+     * @return a listener marking the catalog as modified, to be registered on all maps of the catalog
+     */
+    <K, V> MapModificationListener<K, V> getListener() {
+        return ( key, oldValue, newValue, triggered ) -> markDirty();
+    }
+
+
+    void markDirty() {
+        dirty.set( true );
+        version.incrementAndGet();
+    }
+
+
+    long getVersion() {
+        return version.get();
+    }
+
+
+    void commit() {
+        // Changes which are already part of a commit in progress are only durable once that commit has finished
+        if ( !dirty.get() && committing.get() == 0 ) {
+            skippedCommits.incrementAndGet();
+            return;
+        }
+        long start = System.nanoTime();
+        if ( isPersistent && RuntimeConfig.CATALOG_GROUP_COMMIT.getBoolean() ) {
+            groupCommit();
+        } else {
+            commit( 1 );
+        }
+        totalLatency.addAndGet( System.nanoTime() - start );
+    }
+
+
+    void rollback() {
+        synchronized ( this ) {
+            // Otherwise, the changes of the members waiting for their leader would be discarded while they report success
+            while ( leaderActive || completed < requested ) {
+                try {
+                    wait();
+                } catch ( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException( e );
+                }
+            }
+            if ( dirty.getAndSet( false ) ) {
+                db.rollback();
+                // The maps have been reverted without notifying the listeners
+                version.incrementAndGet();
+            }
+        }
+    }
+
+
+    /**
+     * @return the number of transactions waiting for the commit of their group
+     */
+    public synchronized long getPendingCommits() {
+        return requested - completed;
+    }
+
+
+    /**
+     * @return the average number of transactions committed with one MapDB commit
+     */
+    double getAverageBatchSize() {
+        long count = commits.get();
+        return count == 0 ? 0 : (double) committedTransactions.get() / count;
+    }
+
+
+    /**
+     * @return the average time in nanoseconds a transaction waited for the catalog to be committed
+     */
+    double getAverageLatency() {
+        long count = committedTransactions.get();
+        return count == 0 ? 0 : (double) totalLatency.get() / count;
+    }
+
+
+    private void groupCommit() {
+        long ticket;
+        synchronized ( this ) {
+            ticket = ++requested;
+            while ( true ) {
+                if ( completed >= ticket ) {
+                    if ( ticket <= failed ) {
+                        throw new RuntimeException( "The catalog commit of the group has failed" );
+                    }
+                    // Committed by the leader of the group
+                    return;
+                }
+                if ( !leaderActive ) {
+                    leaderActive = true;
+                    break;
+                }
+                try {
+                    wait();
+                } catch ( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException( e );
+                }
+            }
+        }
+
+        // This transaction leads the group
+        long lastTicket = ticket;
+        boolean success = false;
+        try {
+            int window = RuntimeConfig.CATALOG_GROUP_COMMIT_WINDOW.getInteger();
+            if ( window > 0 ) {
+                TimeUnit.MILLISECONDS.sleep( window );
+            }
+            long first;
+            synchronized ( this ) {
+                // All members of the group have modified the catalog before they requested the commit
+                lastTicket = requested;
+                first = completed;
+            }
+            commit( lastTicket - first );
+            success = true;
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( e );
+        } finally {
+            synchronized ( this ) {
+                if ( !success ) {
+                    // The members which have joined the group fail together with the leader. Their transactions are
+                    // rolled back afterwards.
+                    failed = Math.max( failed, lastTicket );
+                }
+                completed = Math.max( completed, lastTicket );
+                leaderActive = false;
+                notifyAll();
+            }
+        }
+    }
+
+
+    private void commit( long batchSize ) {
+        committing.incrementAndGet();
+        // Changes made after this point are committed with the next commit
+        dirty.set( false );
+        try {
+            db.commit();
+        } catch ( RuntimeException e ) {
+            dirty.set( true );
+            throw e;
+        } finally {
+            committing.decrementAndGet();
+        }
+        commits.incrementAndGet();
+        committedTransactions.addAndGet( batchSize );
+        maxBatchSize.accumulateAndGet( batchSize, Math::max );
+    }
+
+}
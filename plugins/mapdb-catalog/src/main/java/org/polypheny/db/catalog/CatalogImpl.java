@@ -142,6 +142,9 @@ public class CatalogImpl extends Catalog {
 
     private static final String FILE_PATH = "mapDB";
     private static DB db;
+    @Getter
+    private static CatalogCommitter committer;
+    private static volatile CatalogSnapshot snapshot;
 
     private static HTreeMap<Integer, CatalogUser> users;
     private static HTreeMap<String, CatalogUser> userNames;
@@ -303,6 +306,8 @@ public CatalogImpl( String fileName, boolean doInitSchema, boolean doInitInforma
                         .make();
             }
 
+            committer = new CatalogCommitter( db, isPersistent );
+            snapshot = null;
             initDBLayout( db );
 
             // mirrors default data from old sql file
@@ -322,6 +327,7 @@ public CatalogImpl( String fileName, boolean doInitSchema, boolean doInitInforma
             }
 
             new CatalogValidator().startCheck();
+            refreshSnapshot();
         }
     }
 
@@ -331,13 +337,53 @@ public void commit() throws NoTablePrimaryKeyException {
         if ( openTable != null ) {
             throw new NoTablePrimaryKeyException();
         }
-        db.commit();
+        committer.commit();
+        refreshSnapshot();
     }
 
 
     @Override
     public void rollback() {
-        db.rollback();
+        committer.rollback();
+        refreshSnapshot();
+    }
+
+
+    /**
+     * @return the snapshot of the catalog or null if the catalog has been modified since the snapshot has been built
+     */
+    private static CatalogSnapshot getSnapshot() {
+        CatalogSnapshot current = snapshot;
+        return current != null && current.getVersion() == committer.getVersion() ? current : null;
+    }
+
+
+    /**
+     * Rebuilds the snapshot if the catalog has been modified. Until the snapshot has been rebuilt, all lookups are
+     * answered from the maps.
+     */
+    private void refreshSnapshot() {
+        long version = committer.getVersion();
+        CatalogSnapshot current = snapshot;
+        if ( current != null && current.getVersion() == version ) {
+            return;
+        }
+        CatalogSnapshot rebuilt = new CatalogSnapshot(
+                version,
+                schemas,
+                tables,
+                tableNames,
+                columns,
+                columnPlacements,
+                partitionGroups,
+                partitions,
+                partitionPlacements,
+                dataPlacements,
+                adapters );
+        // Discard the snapshot if the catalog has been modified while it was built
+        if ( committer.getVersion() == version ) {
+            snapshot = rebuilt;
+        }
     }
 
 
@@ -591,8 +637,8 @@ private void restoreAllIdBuilders() {
      * adapterName: adapterName {@code ->}  CatalogAdapter
      */
     private void initAdapterInfo( DB db ) {
-        adapters = db.hashMap( "adapters", Serializer.INTEGER, new GenericSerializer<CatalogAdapter>() ).createOrOpen();
-        adapterNames = db.hashMap( "adapterNames", Serializer.STRING, new GenericSerializer<CatalogAdapter>() ).createOrOpen();
+        adapters = db.hashMap( "adapters", Serializer.INTEGER, new GenericSerializer<CatalogAdapter>() ).modificationListener( committer.getListener() ).createOrOpen();
+        adapterNames = db.hashMap( "adapterNames", Serializer.STRING, new GenericSerializer<CatalogAdapter>() ).modificationListener( committer.getListener() ).createOrOpen();
     }
 
 
@@ -603,8 +649,8 @@ private void initAdapterInfo( DB db ) {
      * queryInterfaceNames: ifaceName  CatalogQueryInterface
      */
     private void initQueryInterfaceInfo( DB db ) {
-        queryInterfaces = db.hashMap( "queryInterfaces", Serializer.INTEGER, new GenericSerializer<CatalogQueryInterface>() ).createOrOpen();
-        queryInterfaceNames = db.hashMap( "queryInterfaceNames", Serializer.STRING, new GenericSerializer<CatalogQueryInterface>() ).createOrOpen();
+        queryInterfaces = db.hashMap( "queryInterfaces", Serializer.INTEGER, new GenericSerializer<CatalogQueryInterface>() ).modificationListener( committer.getListener() ).createOrOpen();
+        queryInterfaceNames = db.hashMap( "queryInterfaceNames", Serializer.STRING, new GenericSerializer<CatalogQueryInterface>() ).modificationListener( committer.getListener() ).createOrOpen();
     }
 
 
@@ -619,12 +665,12 @@ private void initQueryInterfaceInfo( DB db ) {
      * indexes: indexId {@code ->} CatalogIndex
      */
     private void initKeysAndConstraintsInfo( DB db ) {
-        keyColumns = db.hashMap( "keyColumns", Serializer.LONG_ARRAY, Serializer.LONG ).createOrOpen();
-        keys = db.hashMap( "keys", Serializer.LONG, new GenericSerializer<CatalogKey>() ).createOrOpen();
-        primaryKeys = db.hashMap( "primaryKeys", Serializer.LONG, new GenericSerializer<CatalogPrimaryKey>() ).createOrOpen();
-        foreignKeys = db.hashMap( "foreignKeys", Serializer.LONG, new GenericSerializer<CatalogForeignKey>() ).createOrOpen();
-        constraints = db.hashMap( "constraints", Serializer.LONG, new GenericSerializer<CatalogConstraint>() ).createOrOpen();
-        indexes = db.hashMap( "indexes", Serializer.LONG, new GenericSerializer<CatalogIndex>() ).createOrOpen();
+        keyColumns = db.hashMap( "keyColumns", Serializer.LONG_ARRAY, Serializer.LONG ).modificationListener( committer.getListener() ).createOrOpen();
+        keys = db.hashMap( "keys", Serializer.LONG, new GenericSerializer<CatalogKey>() ).modificationListener( committer.getListener() ).createOrOpen();
+        primaryKeys = db.hashMap( "primaryKeys", Serializer.LONG, new GenericSerializer<CatalogPrimaryKey>() ).modificationListener( committer.getListener() ).createOrOpen();
+        foreignKeys = db.hashMap( "foreignKeys", Serializer.LONG, new GenericSerializer<CatalogForeignKey>() ).modificationListener( committer.getListener() ).createOrOpen();
+        constraints = db.hashMap( "constraints", Serializer.LONG, new GenericSerializer<CatalogConstraint>() ).modificationListener( committer.getListener() ).createOrOpen();
+        indexes = db.hashMap( "indexes", Serializer.LONG, new GenericSerializer<CatalogIndex>() ).modificationListener( committer.getListener() ).createOrOpen();
     }
 
 
@@ -635,8 +681,8 @@ private void initKeysAndConstraintsInfo( DB db ) {
      * userNames: name {@code ->} CatalogUser
      */
     private void initUserInfo( DB db ) {
-        users = db.hashMap( "users", Serializer.INTEGER, new GenericSerializer<CatalogUser>() ).createOrOpen();
-        userNames = db.hashMap( "usersNames", Serializer.STRING, new GenericSerializer<CatalogUser>() ).createOrOpen();
+        users = db.hashMap( "users", Serializer.INTEGER, new GenericSerializer<CatalogUser>() ).modificationListener( committer.getListener() ).createOrOpen();
+        userNames = db.hashMap( "usersNames", Serializer.STRING, new GenericSerializer<CatalogUser>() ).modificationListener( committer.getListener() ).createOrOpen();
     }
 
 
@@ -649,11 +695,11 @@ private void initUserInfo( DB db ) {
      */
     private void initColumnInfo( DB db ) {
         //noinspection unchecked
-        columns = db.treeMap( "columns", Serializer.LONG, Serializer.JAVA ).createOrOpen();
+        columns = db.treeMap( "columns", Serializer.LONG, Serializer.JAVA ).modificationListener( committer.getListener() ).createOrOpen();
         //noinspection unchecked
-        columnNames = db.treeMap( "columnNames", new SerializerArrayTuple( Serializer.LONG, Serializer.LONG, Serializer.LONG, Serializer.STRING ), Serializer.JAVA ).createOrOpen();
+        columnNames = db.treeMap( "columnNames", new SerializerArrayTuple( Serializer.LONG, Serializer.LONG, Serializer.LONG, Serializer.STRING ), Serializer.JAVA ).modificationListener( committer.getListener() ).createOrOpen();
         //noinspection unchecked
-        columnPlacements = db.treeMap( "columnPlacement", new SerializerArrayTuple( Serializer.INTEGER, Serializer.LONG ), Serializer.JAVA ).createOrOpen();
+        columnPlacements = db.treeMap( "columnPlacement", new SerializerArrayTuple( Serializer.INTEGER, Serializer.LONG ), Serializer.JAVA ).modificationListener( committer.getListener() ).createOrOpen();
     }
 
 
@@ -666,18 +712,19 @@ private void initColumnInfo( DB db ) {
      */
     private void initTableInfo( DB db ) {
         //noinspection unchecked
-        tables = db.treeMap( "tables", Serializer.LONG, Serializer.JAVA ).createOrOpen();
-        tableChildren = db.hashMap( "tableChildren", Serializer.LONG, new GenericSerializer<ImmutableList<Long>>() ).createOrOpen();
+        tables = db.treeMap( "tables", Serializer.LONG, Serializer.JAVA ).modificationListener( committer.getListener() ).createOrOpen();
+        tableChildren = db.hashMap( "tableChildren", Serializer.LONG, new GenericSerializer<ImmutableList<Long>>() ).modificationListener( committer.getListener() ).createOrOpen();
         //noinspection unchecked
         tableNames = db.treeMap( "tableNames" )
                 .keySerializer( new SerializerArrayTuple( Serializer.LONG, Serializer.LONG, Serializer.STRING ) )
                 .valueSerializer( Serializer.JAVA )
+                .modificationListener( committer.getListener() )
                 .createOrOpen();
-        dataPlacements = db.treeMap( "dataPlacement", new SerializerArrayTuple( Serializer.INTEGER, Serializer.LONG ), Serializer.JAVA ).createOrOpen();
-        partitionGroups = db.treeMap( "partitionGroups", Serializer.LONG, Serializer.JAVA ).createOrOpen();
-        partitions = db.treeMap( "partitions", Serializer.LONG, Serializer.JAVA ).createOrOpen();
+        dataPlacements = db.treeMap( "dataPlacement", new SerializerArrayTuple( Serializer.INTEGER, Serializer.LONG ), Serializer.JAVA ).modificationListener( committer.getListener() ).createOrOpen();
+        partitionGroups = db.treeMap( "partitionGroups", Serializer.LONG, Serializer.JAVA ).modificationListener( committer.getListener() ).createOrOpen();
+        partitions = db.treeMap( "partitions", Serializer.LONG, Serializer.JAVA ).modificationListener( committer.getListener() ).createOrOpen();
 
-        partitionPlacements = db.treeMap( "partitionPlacements", new SerializerArrayTuple( Serializer.INTEGER, Serializer.LONG ), Serializer.JAVA ).createOrOpen();
+        partitionPlacements = db.treeMap( "partitionPlacements", new SerializerArrayTuple( Serializer.INTEGER, Serializer.LONG ), Serializer.JAVA ).modificationListener( committer.getListener() ).createOrOpen();
 
         // Restores all Tables dependent on periodic checks like TEMPERATURE Partitioning
         frequencyDependentTables = tables.values().stream().filter( t -> t.partitionProperty.reliesOnPeriodicChecks ).map( t -> t.id ).collect( Collectors.toSet() );
@@ -686,23 +733,23 @@ private void initTableInfo( DB db ) {
 
     @SuppressWarnings("unchecked")
     private void initGraphInfo( DB db ) {
-        graphs = db.treeMap( "graphs", Serializer.LONG, Serializer.JAVA ).createOrOpen();
-        graphNames = db.treeMap( "graphNames", new SerializerArrayTuple( Serializer.LONG, Serializer.STRING ), Serializer.JAVA ).createOrOpen();
-        graphPlacements = db.treeMap( "graphPlacements", new SerializerArrayTuple( Serializer.LONG, Serializer.INTEGER ), Serializer.JAVA ).createOrOpen();
+        graphs = db.treeMap( "graphs", Serializer.LONG, Serializer.JAVA ).modificationListener( committer.getListener() ).createOrOpen();
+        graphNames = db.treeMap( "graphNames", new SerializerArrayTuple( Serializer.LONG, Serializer.STRING ), Serializer.JAVA ).modificationListener( committer.getListener() ).createOrOpen();
+        graphPlacements = db.treeMap( "graphPlacements", new SerializerArrayTuple( Serializer.LONG, Serializer.INTEGER ), Serializer.JAVA ).modificationListener( committer.getListener() ).createOrOpen();
 
-        graphMappings = db.treeMap( "graphMappings", Serializer.LONG, Serializer.JAVA ).createOrOpen();
-        graphAliases = db.treeMap( "graphAliases", Serializer.STRING, Serializer.JAVA ).createOrOpen();
+        graphMappings = db.treeMap( "graphMappings", Serializer.LONG, Serializer.JAVA ).modificationListener( committer.getListener() ).createOrOpen();
+        graphAliases = db.treeMap( "graphAliases", Serializer.STRING, Serializer.JAVA ).modificationListener( committer.getListener() ).createOrOpen();
     }
 
 
     @SuppressWarnings("unchecked")
     private void initDocumentInfo( DB db ) {
-        collections = db.treeMap( "collections", Serializer.LONG, Serializer.JAVA ).createOrOpen();
-        collectionNames = db.treeMap( "collectionNames", new SerializerArrayTuple( Serializer.LONG, Serializer.LONG, Serializer.STRING ), Serializer.JAVA ).createOrOpen();
+        collections = db.treeMap( "collections", Serializer.LONG, Serializer.JAVA ).modificationListener( committer.getListener() ).createOrOpen();
+        collectionNames = db.treeMap( "collectionNames", new SerializerArrayTuple( Serializer.LONG, Serializer.LONG, Serializer.STRING ), Serializer.JAVA ).modificationListener( committer.getListener() ).createOrOpen();
 
-        documentMappings = db.treeMap( "documentMappings", Serializer.LONG, Serializer.JAVA ).createOrOpen();
+        documentMappings = db.treeMap( "documentMappings", Serializer.LONG, Serializer.JAVA ).modificationListener( committer.getListener() ).createOrOpen();
 
-        collectionPlacements = db.treeMap( "collectionPlacements", new SerializerArrayTuple( Serializer.LONG, Serializer.INTEGER ), Serializer.JAVA ).createOrOpen();
+        collectionPlacements = db.treeMap( "collectionPlacements", new SerializerArrayTuple( Serializer.LONG, Serializer.INTEGER ), Serializer.JAVA ).modificationListener( committer.getListener() ).createOrOpen();
     }
 
 
@@ -715,10 +762,10 @@ private void initDocumentInfo( DB db ) {
      */
     private void initSchemaInfo( DB db ) {
         //noinspection unchecked
-        schemas = db.treeMap( "schemas", Serializer.LONG, Serializer.JAVA ).createOrOpen();
-        schemaChildren = db.hashMap( "schemaChildren", Serializer.LONG, new GenericSerializer<ImmutableList<Long>>() ).createOrOpen();
+        schemas = db.treeMap( "schemas", Serializer.LONG, Serializer.JAVA ).modificationListener( committer.getListener() ).createOrOpen();
+        schemaChildren = db.hashMap( "schemaChildren", Serializer.LONG, new GenericSerializer<ImmutableList<Long>>() ).modificationListener( committer.getListener() ).createOrOpen();
         //noinspection unchecked
-        schemaNames = db.treeMap( "schemaNames", new SerializerArrayTuple( Serializer.LONG, Serializer.STRING ), Serializer.JAVA ).createOrOpen();
+        schemaNames = db.treeMap( "schemaNames", new SerializerArrayTuple( Serializer.LONG, Serializer.STRING ), Serializer.JAVA ).modificationListener( committer.getListener() ).createOrOpen();
     }
 
 
@@ -731,10 +778,10 @@ private void initSchemaInfo( DB db ) {
      */
     private void initDatabaseInfo( DB db ) {
         //noinspection unchecked
-        databases = db.treeMap( "databases", Serializer.LONG, Serializer.JAVA ).createOrOpen();
+        databases = db.treeMap( "databases", Serializer.LONG, Serializer.JAVA ).modificationListener( committer.getListener() ).createOrOpen();
         //noinspection unchecked
-        databaseNames = db.treeMap( "databaseNames", Serializer.STRING, Serializer.JAVA ).createOrOpen();
-        databaseChildren = db.hashMap( "databaseChildren", Serializer.LONG, new GenericSerializer<ImmutableList<Long>>() ).createOrOpen();
+        databaseNames = db.treeMap( "databaseNames", Serializer.STRING, Serializer.JAVA ).modificationListener( committer.getListener() ).createOrOpen();
+        databaseChildren = db.hashMap( "databaseChildren", Serializer.LONG, new GenericSerializer<ImmutableList<Long>>() ).modificationListener( committer.getListener() ).createOrOpen();
     }
 
 
@@ -928,7 +975,7 @@ private void addDefaultColumn( CatalogAdapter adapter, CatalogTable table, Strin
     @Override
     public void validateColumns() {
         CatalogValidator validator = new CatalogValidator();
-        db.rollback();
+        committer.rollback();
         try {
             validator.validate();
         } catch ( GenericCatalogException e ) {
@@ -952,6 +999,7 @@ public void close() {
     @Override
     public void clear() {
         db.getAll().clear();
+        committer.markDirty();
         initDBLayout( db );
         restoreAllIdBuilders();
     }
@@ -1095,8 +1143,9 @@ public List<CatalogSchema> getSchemas( long databaseId, Pattern schemaNamePatter
      */
     @Override
     public CatalogSchema getSchema( long schemaId ) {
+        CatalogSnapshot current = getSnapshot();
         try {
-            return Objects.requireNonNull( schemas.get( schemaId ) );
+            return Objects.requireNonNull( current != null ? current.schemas.get( schemaId ) : schemas.get( schemaId ) );
         } catch ( NullPointerException e ) {
             throw new UnknownSchemaIdRuntimeException( schemaId );
         }
@@ -1775,8 +1824,9 @@ public List<CatalogTable> getTables( Pattern databaseNamePattern, Pattern schema
      */
     @Override
     public CatalogTable getTable( long tableId ) {
+        CatalogSnapshot current = getSnapshot();
         try {
-            return Objects.requireNonNull( tables.get( tableId ) );
+            return Objects.requireNonNull( current != null ? current.tables.get( tableId ) : tables.get( tableId ) );
         } catch ( NullPointerException e ) {
             throw new UnknownTableIdRuntimeException( tableId );
         }
@@ -1793,6 +1843,10 @@ public CatalogTable getTable( long schemaId, String tableName ) throws UnknownTa
             if ( !schema.caseSensitive ) {
                 tableName = tableName.toLowerCase();
             }
+            CatalogSnapshot current = getSnapshot();
+            if ( current != null ) {
+                return Objects.requireNonNull( current.tablesByName.get( schemaId, tableName ) );
+            }
             return Objects.requireNonNull( tableNames.get( new Object[]{ schema.databaseId, schemaId, tableName } ) );
         } catch ( NullPointerException e ) {
             throw new UnknownTableException( schemaId, tableName );
@@ -2330,6 +2384,37 @@ public void updatePartitionPlacementPhysicalNames( int adapterId, long partition
     }
 
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updatePartitionPlacementRole( int adapterId, long partitionId, DataPlacementRole role ) {
+        try {
+            CatalogPartitionPlacement old = Objects.requireNonNull( partitionPlacements.get( new Object[]{ adapterId, partitionId } ) );
+            CatalogPartitionPlacement placement = new CatalogPartitionPlacement(
+                    old.tableId,
+                    old.adapterId,
+                    old.adapterUniqueName,
+                    old.placementType,
+                    old.physicalSchemaName,
+                    old.physicalTableName,
+                    old.partitionId,
+                    role );
+
+            synchronized ( this ) {
+                partitionPlacements.replace( new Object[]{ adapterId, partitionId }, placement );
+                // Rebuild the data placement so that its partitions per role reflect the change
+                addPartitionsToDataPlacement( adapterId, old.tableId, List.of( partitionId ) );
+                listeners.firePropertyChange( "partitionPlacement", old, placement );
+            }
+        } catch ( NullPointerException e ) {
+            getAdapter( adapterId );
+            getPartition( partitionId );
+            throw new UnknownPartitionPlacementException( adapterId, partitionId );
+        }
+    }
+
+
     /**
      * {@inheritDoc}
      */
@@ -2650,8 +2735,9 @@ public void deleteColumnPlacement( int adapterId, long columnId, boolean columnO
      */
     @Override
     public CatalogColumnPlacement getColumnPlacement( int adapterId, long columnId ) {
+        CatalogSnapshot current = getSnapshot();
         try {
-            return Objects.requireNonNull( columnPlacements.get( new Object[]{ adapterId, columnId } ) );
+            return Objects.requireNonNull( current != null ? current.columnPlacements.get( adapterId, columnId ) : columnPlacements.get( new Object[]{ adapterId, columnId } ) );
         } catch ( NullPointerException e ) {
             getAdapter( adapterId );
             getColumn( columnId );
@@ -2665,6 +2751,10 @@ public CatalogColumnPlacement getColumnPlacement( int adapterId, long columnId )
      */
     @Override
     public boolean checkIfExistsColumnPlacement( int adapterId, long columnId ) {
+        CatalogSnapshot current = getSnapshot();
+        if ( current != null ) {
+            return current.columnPlacements.contains( adapterId, columnId );
+        }
         CatalogColumnPlacement placement = columnPlacements.get( new Object[]{ adapterId, columnId } );
         return placement != null;
     }
@@ -2780,6 +2870,10 @@ public long getPartitionGroupByPartition( long partitionId ) {
      */
     @Override
     public List<CatalogColumnPlacement> getColumnPlacement( long columnId ) {
+        CatalogSnapshot current = getSnapshot();
+        if ( current != null ) {
+            return CatalogSnapshot.copy( current.columnPlacementsByColumn.get( columnId ) );
+        }
         return columnPlacements.values()
                 .stream()
                 .filter( p -> p.columnId == columnId )
@@ -2919,6 +3013,10 @@ public void updateColumnPlacementPhysicalNames( int adapterId, long columnId, St
      */
     @Override
     public List<CatalogColumn> getColumns( long tableId ) {
+        CatalogSnapshot current = getSnapshot();
+        if ( current != null ) {
+            return CatalogSnapshot.copy( current.columnsByTable.get( tableId ) );
+        }
         try {
             CatalogTable table = Objects.requireNonNull( tables.get( tableId ) );
             return columnNames.prefixSubMap( new Object[]{ table.databaseId, table.namespaceId, table.id } ).values().stream().sorted( columnComparator ).collect( Collectors.toList() );
@@ -2953,8 +3051,9 @@ public List<CatalogColumn> getColumns( Pattern databaseNamePattern, Pattern sche
      */
     @Override
     public CatalogColumn getColumn( long columnId ) {
+        CatalogSnapshot current = getSnapshot();
         try {
-            return Objects.requireNonNull( columns.get( columnId ) );
+            return Objects.requireNonNull( current != null ? current.columns.get( columnId ) : columns.get( columnId ) );
         } catch ( NullPointerException e ) {
             throw new UnknownColumnIdRuntimeException( columnId );
         }
@@ -3846,8 +3945,9 @@ public CatalogAdapter getAdapter( String uniqueName ) throws UnknownAdapterExcep
      */
     @Override
     public CatalogAdapter getAdapter( int adapterId ) {
+        CatalogSnapshot current = getSnapshot();
         try {
-            return Objects.requireNonNull( adapters.get( adapterId ) );
+            return Objects.requireNonNull( current != null ? current.adapters.get( adapterId ) : adapters.get( adapterId ) );
         } catch ( NullPointerException e ) {
             throw new UnknownAdapterIdRuntimeException( adapterId );
         }
@@ -4190,8 +4290,9 @@ public void updatePartition( long partitionId, Long partitionGroupId ) {
      */
     @Override
     public CatalogPartitionGroup getPartitionGroup( long partitionGroupId ) throws UnknownPartitionGroupIdRuntimeException {
+        CatalogSnapshot current = getSnapshot();
         try {
-            return Objects.requireNonNull( partitionGroups.get( partitionGroupId ) );
+            return Objects.requireNonNull( current != null ? current.partitionGroups.get( partitionGroupId ) : partitionGroups.get( partitionGroupId ) );
         } catch ( NullPointerException e ) {
             throw new UnknownPartitionGroupIdRuntimeException( partitionGroupId );
         }
@@ -4254,8 +4355,9 @@ public void deletePartition( long tableId, long schemaId, long partitionId ) {
      */
     @Override
     public CatalogPartition getPartition( long partitionId ) {
+        CatalogSnapshot current = getSnapshot();
         try {
-            return Objects.requireNonNull( partitions.get( partitionId ) );
+            return Objects.requireNonNull( current != null ? current.partitions.get( partitionId ) : partitions.get( partitionId ) );
         } catch ( NullPointerException e ) {
             throw new UnknownPartitionGroupIdRuntimeException( partitionId );
         }
@@ -4267,6 +4369,10 @@ public CatalogPartition getPartition( long partitionId ) {
      */
     @Override
     public List<CatalogPartition> getPartitionsByTable( long tableId ) {
+        CatalogSnapshot current = getSnapshot();
+        if ( current != null ) {
+            return CatalogSnapshot.copy( current.partitionsByTable.get( tableId ) );
+        }
         return partitions.values()
                 .stream()
                 .filter( p -> p.tableId == tableId )
@@ -4560,6 +4666,10 @@ public List<Long> getPartitionGroupsIndexOnDataPlacement( int adapterId, long ta
      */
     @Override
     public CatalogDataPlacement getDataPlacement( int adapterId, long tableId ) {
+        CatalogSnapshot current = getSnapshot();
+        if ( current != null ) {
+            return current.dataPlacements.get( adapterId, tableId );
+        }
         return dataPlacements.get( new Object[]{ adapterId, tableId } );
     }
 
@@ -5227,8 +5337,9 @@ public void deletePartitionPlacement( int adapterId, long partitionId ) {
      */
     @Override
     public CatalogPartitionPlacement getPartitionPlacement( int adapterId, long partitionId ) {
+        CatalogSnapshot current = getSnapshot();
         try {
-            return Objects.requireNonNull( partitionPlacements.get( new Object[]{ adapterId, partitionId } ) );
+            return Objects.requireNonNull( current != null ? current.partitionPlacements.get( adapterId, partitionId ) : partitionPlacements.get( new Object[]{ adapterId, partitionId } ) );
         } catch ( NullPointerException e ) {
             getAdapter( adapterId );
             getPartition( partitionId );
@@ -5263,6 +5374,10 @@ public List<CatalogPartitionPlacement> getPartitionPlacementsByTableOnAdapter( i
      */
     @Override
     public List<CatalogPartitionPlacement> getAllPartitionPlacementsByTable( long tableId ) {
+        CatalogSnapshot current = getSnapshot();
+        if ( current != null ) {
+            return CatalogSnapshot.copy( current.partitionPlacementsByTable.get( tableId ) );
+        }
         return partitionPlacements.values()
                 .stream()
                 .filter( p -> p.tableId == tableId )
@@ -5275,6 +5390,10 @@ public List<CatalogPartitionPlacement> getAllPartitionPlacementsByTable( long ta
      */
     @Override
     public List<CatalogPartitionPlacement> getPartitionPlacements( long partitionId ) {
+        CatalogSnapshot current = getSnapshot();
+        if ( current != null ) {
+            return CatalogSnapshot.copy( current.partitionPlacementsByPartition.get( partitionId ) );
+        }
         return partitionPlacements.values()
                 .stream()
                 .filter( p -> p.partitionId == partitionId )
@@ -30,6 +30,7 @@
 import org.polypheny.db.config.Config.ConfigListener;
 import org.polypheny.db.config.RuntimeConfig;
 import org.polypheny.db.information.InformationGroup;
+import org.polypheny.db.information.InformationKeyValue;
 import org.polypheny.db.information.InformationManager;
 import org.polypheny.db.information.InformationPage;
 import org.polypheny.db.information.InformationTable;
@@ -76,6 +77,7 @@ public CatalogInfoPage( Catalog catalog ) {
             debugInformation = addCatalogInformationTable( page, "Debug", 10, Arrays.asList( "Time", "Message" ), 100 );
         }
         addPersistentInfo( page );
+        addCommitInfo( page );
 
         page.setRefreshFunction( this::resetCatalogInformation );
         catalog.addObserver( this );
@@ -122,6 +124,27 @@ private void addPersistentInfo( InformationPage page ) {
     }
 
 
+    private void addCommitInfo( InformationPage page ) {
+        InformationGroup commitGroup = new InformationGroup( page, "Commits" );
+        commitGroup.setOrder( 11 );
+        infoManager.addGroup( commitGroup );
+        InformationKeyValue commitKv = new InformationKeyValue( commitGroup );
+        infoManager.registerInformation( commitKv );
+        commitGroup.setRefreshFunction( () -> {
+            CatalogCommitter committer = CatalogImpl.getCommitter();
+            if ( committer == null ) {
+                return;
+            }
+            commitKv.putPair( "Group Commit", RuntimeConfig.CATALOG_GROUP_COMMIT.getBoolean() ? "Active" : "Disabled" );
+            commitKv.putPair( "Catalog Commits", committer.getCommits().get() + "" );
+            commitKv.putPair( "Skipped Commits", committer.getSkippedCommits().get() + "" );
+            commitKv.putPair( "Average Batch Size", String.format( "%.2f", committer.getAverageBatchSize() ) );
+            commitKv.putPair( "Maximum Batch Size", committer.getMaxBatchSize().get() + "" );
+            commitKv.putPair( "Average Commit Latency", String.format( "%.3f ms", committer.getAverageLatency() / 1_000_000 ) );
+        } );
+    }
+
+
     @Override
     public void propertyChange( PropertyChangeEvent propertyChangeEvent ) {
         if ( addDebugMessages ) {
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.catalog;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableTable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import lombok.Getter;
+import org.polypheny.db.catalog.entity.CatalogAdapter;
+import org.polypheny.db.catalog.entity.CatalogColumn;
+import org.polypheny.db.catalog.entity.CatalogColumnPlacement;
+import org.polypheny.db.catalog.entity.CatalogDataPlacement;
+import org.polypheny.db.catalog.entity.CatalogPartition;
+import org.polypheny.db.catalog.entity.CatalogPartitionGroup;
+import org.polypheny.db.catalog.entity.CatalogPartitionPlacement;
+import org.polypheny.db.catalog.entity.CatalogSchema;
+import org.polypheny.db.catalog.entity.CatalogTable;
+
+
+/**
+ * Immutable, fully materialized copy of the parts of the catalog which are read on every query.
+ *
+ * The MapDB maps deserialize the stored objects on every lookup and most lookups by a foreign key require a scan over
+ * all values. A snapshot contains the deserialized objects together with indexes for these lookups. It is built after
+ * the catalog has been committed and is valid as long as the catalog is not modified, see {@link CatalogImpl}.
+ */
+public class CatalogSnapshot {
+
+    /**
+     * Modification version of the catalog this snapshot has been built from
+     */
+    @Getter
+    private final long version;
+
+    final ImmutableMap<Long, CatalogSchema> schemas;
+    final ImmutableMap<Long, CatalogTable> tables;
+    final ImmutableTable<Long, String, CatalogTable> tablesByName; // (SchemaId, TableName)
+    final ImmutableMap<Long, CatalogColumn> columns;
+    final ImmutableListMultimap<Long, CatalogColumn> columnsByTable; // Sorted by position
+    final ImmutableTable<Integer, Long, CatalogColumnPlacement> columnPlacements; // (AdapterId, ColumnId)
+    final ImmutableListMultimap<Long, CatalogColumnPlacement> columnPlacementsByColumn;
+    final ImmutableMap<Long, CatalogPartitionGroup> partitionGroups;
+    final ImmutableMap<Long, CatalogPartition> partitions;
+    final ImmutableListMultimap<Long, CatalogPartition> partitionsByTable;
+    final ImmutableTable<Integer, Long, CatalogPartitionPlacement> partitionPlacements; // (AdapterId, PartitionId)
+    final ImmutableListMultimap<Long, CatalogPartitionPlacement> partitionPlacementsByTable;
+    final ImmutableListMultimap<Long, CatalogPartitionPlacement> partitionPlacementsByPartition;
+    final ImmutableTable<Integer, Long, CatalogDataPlacement> dataPlacements; // (AdapterId, TableId)
+    final ImmutableMap<Integer, CatalogAdapter> adapters;
+
+
+    /**
+     * Copies the given maps of the catalog. The iteration order of the maps is retained by all indexes.
+     */
+    CatalogSnapshot(
+            long version,
+            Map<Long, CatalogSchema> schemas,
+            Map<Long, CatalogTable> tables,
+            Map<Object[], CatalogTable> tableNames,
+            Map<Long, CatalogColumn> columns,
+            Map<Object[], CatalogColumnPlacement> columnPlacements,
+            Map<Long, CatalogPartitionGroup> partitionGroups,
+            Map<Long, CatalogPartition> partitions,
+            Map<Object[], CatalogPartitionPlacement> partitionPlacements,
+            Map<Object[], CatalogDataPlacement> dataPlacements,
+            Map<Integer, CatalogAdapter> adapters ) {
+        this.version = version;
+        this.schemas = ImmutableMap.copyOf( schemas );
+        this.tables = ImmutableMap.copyOf( tables );
+        this.columns = ImmutableMap.copyOf( columns );
+        this.partitionGroups = ImmutableMap.copyOf( partitionGroups );
+        this.partitions = ImmutableMap.copyOf( partitions );
+        this.adapters = ImmutableMap.copyOf( adapters );
+
+        ImmutableTable.Builder<Long, String, CatalogTable> tablesByName = ImmutableTable.builder();
+        for ( Entry<Object[], CatalogTable> entry : tableNames.entrySet() ) {
+            tablesByName.put( (Long) entry.getKey()[1], (String) entry.getKey()[2], entry.getValue() );
+        }
+        this.tablesByName = tablesByName.build();
+
+        ImmutableListMultimap.Builder<Long, CatalogColumn> columnsByTable = ImmutableListMultimap.builder();
+        this.columns.values().forEach( c -> columnsByTable.put( c.tableId, c ) );
+        this.columnsByTable = columnsByTable.orderValuesBy( Comparator.comparingInt( c -> c.position ) ).build();
+
+        ImmutableTable.Builder<Integer, Long, CatalogColumnPlacement> columnPlacementTable = ImmutableTable.builder();
+        ImmutableListMultimap.Builder<Long, CatalogColumnPlacement> columnPlacementsByColumn = ImmutableListMultimap.builder();
+        for ( Entry<Object[], CatalogColumnPlacement> entry : columnPlacements.entrySet() ) {
+            columnPlacementTable.put( (Integer) entry.getKey()[0], (Long) entry.getKey()[1], entry.getValue() );
+            columnPlacementsByColumn.put( entry.getValue().columnId, entry.getValue() );
+        }
+        this.columnPlacements = columnPlacementTable.build();
+        this.columnPlacementsByColumn = columnPlacementsByColumn.build();
+
+        ImmutableListMultimap.Builder<Long, CatalogPartition> partitionsByTable = ImmutableListMultimap.builder();
+        this.partitions.values().forEach( p -> partitionsByTable.put( p.tableId, p ) );
+        this.partitionsByTable = partitionsByTable.build();
+
+        ImmutableTable.Builder<Integer, Long, CatalogPartitionPlacement> partitionPlacementTable = ImmutableTable.builder();
+        ImmutableListMultimap.Builder<Long, CatalogPartitionPlacement> partitionPlacementsByTable = ImmutableListMultimap.builder();
+        ImmutableListMultimap.Builder<Long, CatalogPartitionPlacement> partitionPlacementsByPartition = ImmutableListMultimap.builder();
+        for ( Entry<Object[], CatalogPartitionPlacement> entry : partitionPlacements.entrySet() ) {
+            partitionPlacementTable.put( (Integer) entry.getKey()[0], (Long) entry.getKey()[1], entry.getValue() );
+            partitionPlacementsByTable.put( entry.getValue().tableId, entry.getValue() );
+            partitionPlacementsByPartition.put( entry.getValue().partitionId, entry.getValue() );
+        }
+        this.partitionPlacements = partitionPlacementTable.build();
+        this.partitionPlacementsByTable = partitionPlacementsByTable.build();
+        this.partitionPlacementsByPartition = partitionPlacementsByPartition.build();
+
+        ImmutableTable.Builder<Integer, Long, CatalogDataPlacement> dataPlacementTable = ImmutableTable.builder();
+        for ( Entry<Object[], CatalogDataPlacement> entry : dataPlacements.entrySet() ) {
+            dataPlacementTable.put( (Integer) entry.getKey()[0], (Long) entry.getKey()[1], entry.getValue() );
+        }
+        this.dataPlacements = dataPlacementTable.build();
+    }
+
+
+    static <T> List<T> copy( ImmutableList<T> list ) {
+        // Callers of the catalog are free to modify the returned lists
+        return new ArrayList<>( list );
+    }
+
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.test;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.polypheny.db.util.TestUtil.runConcurrently;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.polypheny.db.catalog.Catalog.EntityType;
+import org.polypheny.db.catalog.Catalog.NamespaceType;
+import org.polypheny.db.catalog.CatalogCommitter;
+import org.polypheny.db.catalog.CatalogImpl;
+import org.polypheny.db.catalog.exceptions.GenericCatalogException;
+import org.polypheny.db.catalog.exceptions.NoTablePrimaryKeyException;
+import org.polypheny.db.catalog.exceptions.UnknownTableException;
+import org.polypheny.db.catalog.exceptions.UnknownUserException;
+import org.polypheny.db.config.RuntimeConfig;
+import org.polypheny.db.type.PolyType;
+import org.polypheny.db.util.Benchmark;
+
+
+@Slf4j
+public class CatalogCommitTest {
+
+    private static final AtomicInteger USER_ID = new AtomicInteger();
+
+    CatalogImpl catalog;
+
+
+    @Before
+    public void setup() {
+        catalog = new CatalogImpl( "testCommitDB", false, false, true );
+        catalog.clear();
+        commit();
+    }
+
+
+    @After
+    public void cleanup() {
+        RuntimeConfig.CATALOG_GROUP_COMMIT.setBoolean( false );
+        RuntimeConfig.CATALOG_GROUP_COMMIT_WINDOW.setInteger( 2 );
+        catalog.close();
+    }
+
+
+    @Test
+    public void testCommitWithoutChangesIsSkipped() {
+        CatalogCommitter committer = CatalogImpl.getCommitter();
+        long commits = committer.getCommits().get();
+        long skipped = committer.getSkippedCommits().get();
+
+        commit();
+        assertEquals( commits, committer.getCommits().get() );
+        assertEquals( skipped + 1, committer.getSkippedCommits().get() );
+
+        catalog.addUser( nextUserName(), "" );
+        commit();
+        assertEquals( commits + 1, committer.getCommits().get() );
+    }
+
+
+    @Test
+    public void testGroupCommitCombinesConcurrentCommits() throws UnknownUserException {
+        Assume.assumeTrue( catalog.isPersistent );
+        RuntimeConfig.CATALOG_GROUP_COMMIT.setBoolean( true );
+        RuntimeConfig.CATALOG_GROUP_COMMIT_WINDOW.setInteger( 20 );
+        CatalogCommitter committer = CatalogImpl.getCommitter();
+        long commits = committer.getCommits().get();
+
+        final int threads = 8;
+        List<String> names = new ArrayList<>();
+        for ( int i = 0; i < threads; i++ ) {
+            names.add( nextUserName() );
+        }
+        AtomicInteger index = new AtomicInteger();
+        runConcurrently( threads, () -> {
+            catalog.addUser( names.get( index.getAndIncrement() ), "" );
+            commit();
+        } );
+
+        assertTrue( committer.getCommits().get() - commits < threads );
+        for ( String name : names ) {
+            assertNotNull( catalog.getUser( name ) );
+        }
+    }
+
+
+    @Test
+    public void testRollbackWaitsForPendingGroup() throws Exception {
+        Assume.assumeTrue( catalog.isPersistent );
+        RuntimeConfig.CATALOG_GROUP_COMMIT.setBoolean( true );
+        RuntimeConfig.CATALOG_GROUP_COMMIT_WINDOW.setInteger( 200 );
+        CatalogCommitter committer = CatalogImpl.getCommitter();
+
+        String name = nextUserName();
+        CompletableFuture<Void> member = CompletableFuture.runAsync( () -> {
+            catalog.addUser( name, "" );
+            commit();
+        } );
+        // Wait until the leader sleeps through the group window
+        long deadline = System.currentTimeMillis() + 10_000;
+        while ( committer.getPendingCommits() == 0 && !member.isDone() && System.currentTimeMillis() < deadline ) {
+            Thread.sleep( 1 );
+        }
+        assertEquals( 1, committer.getPendingCommits() );
+
+        // The rollback must not discard the changes of the pending group
+        catalog.rollback();
+        member.join();
+        assertEquals( 0, committer.getPendingCommits() );
+        assertNotNull( catalog.getUser( name ) );
+    }
+
+
+    @Test
+    public void testSnapshotIsInvalidatedByModifications() throws UnknownTableException, GenericCatalogException {
+        int userId = catalog.addUser( nextUserName(), "" );
+        long databaseId = catalog.addDatabase( "snapshot_db", userId, "", 0, "" );
+        long schemaId = catalog.addNamespace( "snapshot_schema", databaseId, userId, NamespaceType.RELATIONAL );
+        long tableId = catalog.addTable( "snapshot_table", schemaId, userId, EntityType.ENTITY, true );
+        long columnId = catalog.addColumn( "id", tableId, 0, PolyType.BIGINT, null, null, null, null, null, false, null );
+        catalog.addPrimaryKey( tableId, Collections.singletonList( columnId ) );
+        commit();
+        assertEquals( "snapshot_table", catalog.getTable( tableId ).name );
+
+        // Uncommitted changes are visible immediately
+        catalog.renameTable( tableId, "renamed_table" );
+        assertEquals( "renamed_table", catalog.getTable( tableId ).name );
+        assertEquals( tableId, catalog.getTable( schemaId, "renamed_table" ).id );
+
+        catalog.rollback();
+        assertEquals( "snapshot_table", catalog.getTable( tableId ).name );
+        assertEquals( tableId, catalog.getTable( schemaId, "snapshot_table" ).id );
+    }
+
+
+    /**
+     * Compares the number of catalog transactions per second with and without group commit.
+     */
+    @Test
+    public void testCommitThroughputBenchmark() {
+        Assume.assumeTrue( catalog.isPersistent );
+        // Run a much quicker form of the test during regular testing.
+        final int iterations = Benchmark.enabled() ? 1_000 : 10;
+        final int threads = Math.max( 2, Runtime.getRuntime().availableProcessors() );
+
+        for ( boolean groupCommit : new boolean[]{ false, true } ) {
+            RuntimeConfig.CATALOG_GROUP_COMMIT.setBoolean( groupCommit );
+            RuntimeConfig.CATALOG_GROUP_COMMIT_WINDOW.setInteger( 1 );
+            String description = "Catalog commits (" + threads + " threads, group commit " + (groupCommit ? "enabled" : "disabled") + ")";
+            new Benchmark( description, statistician -> {
+                long nanos = System.nanoTime();
+                runConcurrently( threads, () -> {
+                    for ( int i = 0; i < iterations; i++ ) {
+                        catalog.addUser( nextUserName(), "" );
+                        commit();
+                    }
+                } );
+                statistician.record( nanos );
+                log.info( "{}: {} transactions per second", description, (long) (threads * iterations / ((System.nanoTime() - nanos) / 1e9)) );
+                return null;
+            }, 5 ).run();
+        }
+    }
+
+
+    private void commit() {
+        try {
+            catalog.commit();
+        } catch ( NoTablePrimaryKeyException e ) {
+            throw new RuntimeException( e );
+        }
+    }
+
+
+    private static String nextUserName() {
+        return "commit_tester_" + USER_ID.getAndIncrement();
+    }
+
+}
@@ -14,18 +14,25 @@
  * limitations under the License.
  */
 
+
 package org.polypheny.db.monitoring;
 
 import java.io.File;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.mapdb.BTreeMap;
@@ -35,20 +42,47 @@
 import org.mapdb.Serializer;
 import org.polypheny.db.StatusService;
 import org.polypheny.db.catalog.Catalog;
+import org.polypheny.db.config.RuntimeConfig;
 import org.polypheny.db.monitoring.events.MonitoringDataPoint;
 import org.polypheny.db.monitoring.events.QueryPostCost;
+import org.polypheny.db.monitoring.events.metrics.DmlDataPoint;
+import org.polypheny.db.monitoring.events.metrics.QueryDataPointImpl;
 import org.polypheny.db.monitoring.events.metrics.QueryPostCostImpl;
+import org.polypheny.db.monitoring.repository.MonitoringRollup;
+import org.polypheny.db.monitoring.repository.MonitoringRollup.Resolution;
 import org.polypheny.db.monitoring.repository.PersistentMonitoringRepository;
 import org.polypheny.db.util.PolyphenyHomeDirManager;
+import org.polypheny.db.util.background.BackgroundTask.TaskPriority;
+import org.polypheny.db.util.background.BackgroundTask.TaskSchedulingType;
+import org.polypheny.db.util.background.BackgroundTaskManager;
+
 
+/**
+ * Stores the monitoring data points in hourly segments (see {@link MonitoringSegment}). Once an hour has passed, its
+ * segment is sealed: the execution times of the queries and DMLs recorded within this hour are aggregated into rollups
+ * per minute and per hour. Data points arriving late for a sealed hour cause its rollups to be computed again.
+ * Segments older than {@link RuntimeConfig#MONITORING_RETENTION} are deleted as a whole, the rollups are kept for
+ * {@link RuntimeConfig#MONITORING_ROLLUP_RETENTION}.
+ */
 @Slf4j
 public class MapDbRepository implements PersistentMonitoringRepository {
 
     private static final String FILE_PATH = "simpleBackendDb";
     private static final String FOLDER_NAME = "monitoring";
-    protected final HashMap<Class<?>, BTreeMap<UUID, MonitoringDataPoint>> data = new HashMap<>();
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final long DAY = 86_400_000L;
+
+    protected final NavigableMap<Long, MonitoringSegment> segments = new ConcurrentSkipListMap<>();
+    // Segments are only closed and deleted while holding the write lock
+    private final ReadWriteLock segmentLock = new ReentrantReadWriteLock();
+    protected File segmentFolder;
     protected DB simpleBackendDb;
     protected BTreeMap<String, QueryPostCostImpl> queryPostCosts;
+    protected BTreeMap<Long, ArrayList<MonitoringRollup>> minuteRollups;
+    protected BTreeMap<Long, ArrayList<MonitoringRollup>> hourRollups;
+    // Start of all segments which have already been rolled up
+    protected NavigableSet<Long> sealedSegments;
+    private String backgroundTaskId;
 
 
     @Override
@@ -59,73 +93,104 @@ public void initialize( boolean resetRepository ) {
 
     @Override
     public void dataPoint( @NonNull MonitoringDataPoint dataPoint ) {
-        BTreeMap table = this.data.get( dataPoint.getClass() );
-        if ( table == null ) {
-            this.createPersistentTable( dataPoint.getClass() );
-            table = this.data.get( dataPoint.getClass() );
-        }
+        dataPoints( Collections.singletonList( dataPoint ) );
+    }
 
-        if ( table != null && dataPoint != null ) {
-            table.put( dataPoint.id(), dataPoint );
-            this.simpleBackendDb.commit();
+
+    /**
+     * Writes all data points of the batch and commits them at once. Data points older than the retention period are
+     * discarded.
+     */
+    @Override
+    public void dataPoints( @NonNull List<MonitoringDataPoint> dataPoints ) {
+        long currentSegment = MonitoringSegment.startOf( System.currentTimeMillis() );
+        long firstRetainedSegment = currentSegment - retention();
+        Set<MonitoringSegment> modified = new HashSet<>();
+        segmentLock.readLock().lock();
+        try {
+            for ( MonitoringDataPoint dataPoint : dataPoints ) {
+                long timestamp = timestampOf( dataPoint );
+                long start = MonitoringSegment.startOf( timestamp );
+                if ( start < firstRetainedSegment ) {
+                    continue;
+                }
+                MonitoringSegment segment = getOrCreateSegment( start );
+                segment.put( dataPoint, timestamp );
+                modified.add( segment );
+            }
+            modified.forEach( MonitoringSegment::commit );
+        } finally {
+            segmentLock.readLock().unlock();
+        }
+        for ( MonitoringSegment segment : modified ) {
+            // Only segments of past hours can have been sealed already
+            if ( segment.getStart() < currentSegment ) {
+                rollUpLate( segment );
+            }
         }
     }
 
 
     @Override
     public <TPersistent extends MonitoringDataPoint> List<TPersistent> getAllDataPoints( @NonNull Class<TPersistent> dataPointClass ) {
-        final Map<UUID, MonitoringDataPoint> table = this.data.get( dataPointClass );
-        if ( table != null ) {
-            return table.values()
-                    .stream()
-                    .map( monitoringPersistentData -> (TPersistent) monitoringPersistentData )
-                    .sorted( Comparator.comparing( MonitoringDataPoint::timestamp ).reversed() )
-                    .collect( Collectors.toList() );
-        }
-
-        return Collections.emptyList();
+        return scan( dataPointClass, Long.MIN_VALUE, Long.MAX_VALUE );
     }
 
 
     @Override
     public <TPersistent extends MonitoringDataPoint> long getNumberOfDataPoints( @NonNull Class<TPersistent> dataPointClass ) {
-        final Map<UUID, MonitoringDataPoint> table = this.data.get( dataPointClass );
-        if ( table != null ) {
-            return table.values().size();
+        segmentLock.readLock().lock();
+        try {
+            long count = 0;
+            for ( MonitoringSegment segment : segments.values() ) {
+                count += segment.count( dataPointClass );
+            }
+            return count;
+        } finally {
+            segmentLock.readLock().unlock();
         }
-        return 0;
     }
 
 
     @Override
     public <T extends MonitoringDataPoint> List<T> getDataPointsBefore( @NonNull Class<T> dataPointClass, @NonNull Timestamp timestamp ) {
-        final Map<UUID, MonitoringDataPoint> table = this.data.get( dataPointClass );
-        if ( table != null ) {
-            return table.values()
-                    .stream()
-                    .map( monitoringPersistentData -> (T) monitoringPersistentData )
-                    .sorted( Comparator.comparing( MonitoringDataPoint::timestamp ).reversed() )
-                    .filter( elem -> elem.timestamp().before( timestamp ) )
-                    .collect( Collectors.toList() );
-        }
-
-        return Collections.emptyList();
+        return scan( dataPointClass, Long.MIN_VALUE, timestamp.getTime() );
     }
 
 
     @Override
     public <T extends MonitoringDataPoint> List<T> getDataPointsAfter( @NonNull Class<T> dataPointClass, @NonNull Timestamp timestamp ) {
-        final Map<UUID, MonitoringDataPoint> table = this.data.get( dataPointClass );
-        if ( table != null ) {
-            return table.values()
-                    .stream()
-                    .map( monitoringPersistentData -> (T) monitoringPersistentData )
-                    .sorted( Comparator.comparing( MonitoringDataPoint::timestamp ).reversed() )
-                    .filter( elem -> elem.timestamp().after( timestamp ) )
-                    .collect( Collectors.toList() );
-        }
+        return scan( dataPointClass, timestamp.getTime() + 1, Long.MAX_VALUE );
+    }
+
 
-        return Collections.emptyList();
+    /**
+     * Returns the data points recorded in the given time range in descending order of their timestamp. Only the
+     * segments overlapping with the time range are read.
+     *
+     * @param from inclusive lower bound in milliseconds
+     * @param to exclusive upper bound in milliseconds
+     */
+    private <T extends MonitoringDataPoint> List<T> scan( Class<T> dataPointClass, long from, long to ) {
+        List<T> result = new ArrayList<>();
+        if ( from >= to ) {
+            return result;
+        }
+        long fromKey = from == Long.MIN_VALUE ? Long.MIN_VALUE : MonitoringSegment.key( from );
+        long toKey = to == Long.MAX_VALUE ? Long.MAX_VALUE : MonitoringSegment.key( to );
+        segmentLock.readLock().lock();
+        try {
+            NavigableMap<Long, MonitoringSegment> relevant = segments.headMap( to, false );
+            if ( from != Long.MIN_VALUE ) {
+                relevant = relevant.tailMap( MonitoringSegment.startOf( from ), true );
+            }
+            for ( MonitoringSegment segment : relevant.descendingMap().values() ) {
+                result.addAll( segment.scan( dataPointClass, fromKey, toKey ) );
+            }
+        } finally {
+            segmentLock.readLock().unlock();
+        }
+        return result;
     }
 
 
@@ -136,8 +201,13 @@ public <T extends MonitoringDataPoint> List<T> getDataPointsAfter( @NonNull Clas
      */
     @Override
     public <T extends MonitoringDataPoint> void removeAllDataPointsOfSpecificClass( Class<T> dataPointClass ) {
-        if ( data.containsKey( dataPointClass ) ) {
-            data.remove( dataPointClass );
+        segmentLock.readLock().lock();
+        try {
+            for ( MonitoringSegment segment : segments.values() ) {
+                segment.clear( dataPointClass );
+            }
+        } finally {
+            segmentLock.readLock().unlock();
         }
     }
 
@@ -147,16 +217,22 @@ public <T extends MonitoringDataPoint> void removeAllDataPointsOfSpecificClass(
      */
     @Override
     public void resetAllDataPoints() {
-        if ( data.isEmpty() ) {
-            return;
-        }
-        data.clear();
+        deleteSegments( new ArrayList<>( segments.values() ) );
+        minuteRollups.clear();
+        hourRollups.clear();
+        sealedSegments.clear();
         this.simpleBackendDb.commit();
     }
 
 
-    private List<Class> getAllDataPointClasses() {
-        return data.keySet().stream().collect( Collectors.toList() );
+    @Override
+    public List<MonitoringRollup> getRollups( @NonNull Resolution resolution, @NonNull Timestamp from, @NonNull Timestamp to ) {
+        BTreeMap<Long, ArrayList<MonitoringRollup>> rollups = resolution == Resolution.MINUTE ? minuteRollups : hourRollups;
+        List<MonitoringRollup> result = new ArrayList<>();
+        for ( ArrayList<MonitoringRollup> bucket : rollups.subMap( from.getTime(), true, to.getTime(), false ).values() ) {
+            result.addAll( bucket );
+        }
+        return result;
     }
 
 
@@ -217,9 +293,11 @@ protected void initialize( String filePath, String folderName, boolean resetRepo
         if ( simpleBackendDb != null ) {
             simpleBackendDb.close();
         }
+        closeSegments();
 
         synchronized ( this ) {
             File folder = PolyphenyHomeDirManager.getInstance().registerNewFolder( folderName );
+            segmentFolder = new File( folder, filePath + "-segments" );
 
             if ( Catalog.resetCatalog ) {
                 StatusService.printInfo( "Resetting monitoring repository on startup." );
@@ -260,20 +338,236 @@ protected void initialize( String filePath, String folderName, boolean resetRepo
             }
 
             simpleBackendDb.getStore().fileLoad();
+
+            minuteRollups = simpleBackendDb.treeMap( "minuteRollups", Serializer.LONG, Serializer.JAVA ).createOrOpen();
+            hourRollups = simpleBackendDb.treeMap( "hourRollups", Serializer.LONG, Serializer.JAVA ).createOrOpen();
+            sealedSegments = simpleBackendDb.treeSet( "sealedSegments", Serializer.LONG ).createOrOpen();
+
+            if ( resetRepository || Catalog.resetCatalog ) {
+                deleteSegmentFiles();
+                minuteRollups.clear();
+                hourRollups.clear();
+                sealedSegments.clear();
+                simpleBackendDb.commit();
+            }
+            openSegments();
+        }
+
+        if ( backgroundTaskId == null ) {
+            backgroundTaskId = BackgroundTaskManager.INSTANCE.registerTask(
+                    this::maintain,
+                    "Roll up and expire monitoring data points",
+                    TaskPriority.LOW,
+                    TaskSchedulingType.EVERY_MINUTE );
         }
     }
 
 
-    private void initializePostCosts() {
-        queryPostCosts = simpleBackendDb.treeMap( QueryPostCost.class.getName(), Serializer.STRING, Serializer.JAVA ).createOrOpen();
+    /**
+     * Seals all segments of past hours which have not been rolled up yet, deletes the segments exceeding the retention
+     * period and removes expired rollups.
+     */
+    protected synchronized void maintain() {
+        long now = System.currentTimeMillis();
+        long currentSegment = MonitoringSegment.startOf( now );
+
+        for ( MonitoringSegment segment : segments.headMap( currentSegment, false ).values() ) {
+            if ( !sealedSegments.contains( segment.getStart() ) ) {
+                rollUp( segment );
+                sealedSegments.add( segment.getStart() );
+                simpleBackendDb.commit();
+            }
+        }
+
+        List<MonitoringSegment> expired = new ArrayList<>( segments.headMap( currentSegment - retention(), false ).values() );
+        if ( !expired.isEmpty() ) {
+            deleteSegments( expired );
+            expired.forEach( s -> sealedSegments.remove( s.getStart() ) );
+        }
+
+        long rollupThreshold = now - RuntimeConfig.MONITORING_ROLLUP_RETENTION.getInteger() * DAY;
+        minuteRollups.headMap( rollupThreshold, false ).clear();
+        hourRollups.headMap( rollupThreshold, false ).clear();
+        simpleBackendDb.commit();
+    }
+
+
+    /**
+     * Computes the rollups of a segment which has received data points after it might have been sealed. Since the
+     * rollups of a segment are computed from all of its data points, they replace the previous ones.
+     */
+    private synchronized void rollUpLate( MonitoringSegment segment ) {
+        // The segment might have expired in the meantime
+        if ( sealedSegments.contains( segment.getStart() ) && segments.get( segment.getStart() ) == segment ) {
+            rollUp( segment );
+            simpleBackendDb.commit();
+        }
+    }
+
+
+    private void rollUp( MonitoringSegment segment ) {
+        Map<Long, ArrayList<MonitoringRollup>> minutes = new HashMap<>();
+        ArrayList<MonitoringRollup> hour = new ArrayList<>();
+
+        for ( Class<? extends MonitoringDataPoint> dataPointClass : Arrays.asList( QueryDataPointImpl.class, DmlDataPoint.class ) ) {
+            // Execution times per query class and minute
+            Map<String, Map<Long, List<Long>>> executionTimes = new HashMap<>();
+            segment.forEach( dataPointClass, ( timestamp, dataPoint ) -> {
+                long minute = timestamp - Math.floorMod( timestamp, Resolution.MINUTE.getMillis() );
+                executionTimes
+                        .computeIfAbsent( queryClassOf( dataPoint ), k -> new HashMap<>() )
+                        .computeIfAbsent( minute, k -> new ArrayList<>() )
+                        .add( executionTimeOf( dataPoint ) );
+            } );
+
+            String type = dataPointClass.getSimpleName();
+            for ( Map.Entry<String, Map<Long, List<Long>>> entry : executionTimes.entrySet() ) {
+                List<Long> all = new ArrayList<>();
+                for ( Map.Entry<Long, List<Long>> minute : entry.getValue().entrySet() ) {
+                    minutes.computeIfAbsent( minute.getKey(), k -> new ArrayList<>() )
+                            .add( aggregate( Resolution.MINUTE, minute.getKey(), type, entry.getKey(), minute.getValue() ) );
+                    all.addAll( minute.getValue() );
+                }
+                hour.add( aggregate( Resolution.HOUR, segment.getStart(), type, entry.getKey(), all ) );
+            }
+        }
+
+        minuteRollups.putAll( minutes );
+        if ( !hour.isEmpty() ) {
+            hourRollups.put( segment.getStart(), hour );
+        }
+    }
+
+
+    private static MonitoringRollup aggregate( Resolution resolution, long bucketStart, String type, String queryClass, List<Long> executionTimes ) {
+        long[] sorted = executionTimes.stream().mapToLong( Long::longValue ).sorted().toArray();
+        return new MonitoringRollup(
+                resolution,
+                bucketStart,
+                type,
+                queryClass,
+                sorted.length,
+                percentile( sorted, 0.5 ),
+                percentile( sorted, 0.95 ),
+                percentile( sorted, 0.99 ),
+                sorted[sorted.length - 1] );
+    }
+
+
+    /**
+     * Nearest-rank percentile of a sorted, non-empty array.
+     */
+    private static long percentile( long[] sorted, double percentile ) {
+        int rank = (int) Math.ceil( percentile * sorted.length );
+        return sorted[Math.max( rank, 1 ) - 1];
+    }
+
+
+    private static long executionTimeOf( MonitoringDataPoint dataPoint ) {
+        if ( dataPoint instanceof QueryDataPointImpl ) {
+            return ((QueryDataPointImpl) dataPoint).getExecutionTime();
+        }
+        return ((DmlDataPoint) dataPoint).getExecutionTime();
+    }
+
+
+    private static String queryClassOf( MonitoringDataPoint dataPoint ) {
+        String queryClass = dataPoint instanceof QueryDataPointImpl
+                ? ((QueryDataPointImpl) dataPoint).getQueryClass()
+                : ((DmlDataPoint) dataPoint).getQueryClass();
+        return queryClass == null ? "" : queryClass;
+    }
+
+
+    private static long timestampOf( MonitoringDataPoint dataPoint ) {
+        return dataPoint.timestamp() != null ? dataPoint.timestamp().getTime() : System.currentTimeMillis();
+    }
+
+
+    private static long retention() {
+        return RuntimeConfig.MONITORING_RETENTION.getInteger() * MonitoringSegment.DURATION;
+    }
+
+
+    private MonitoringSegment getOrCreateSegment( long start ) {
+        MonitoringSegment segment = segments.get( start );
+        if ( segment != null ) {
+            return segment;
+        }
+        synchronized ( segments ) {
+            return segments.computeIfAbsent( start, s -> new MonitoringSegment( new File( segmentFolder, SEGMENT_PREFIX + s + ".db" ), s ) );
+        }
     }
 
 
-    private void createPersistentTable( Class<? extends MonitoringDataPoint> classPersistentData ) {
-        if ( classPersistentData != null ) {
-            final BTreeMap<UUID, MonitoringDataPoint> treeMap = simpleBackendDb.treeMap( classPersistentData.getName(), Serializer.UUID, Serializer.JAVA ).createOrOpen();
-            data.put( classPersistentData, treeMap );
+    private void openSegments() {
+        if ( !segmentFolder.exists() && !segmentFolder.mkdirs() ) {
+            throw new RuntimeException( "Unable to create the monitoring segment folder " + segmentFolder.getAbsolutePath() );
+        }
+        File[] files = segmentFolder.listFiles( ( dir, name ) -> name.startsWith( SEGMENT_PREFIX ) && name.endsWith( ".db" ) );
+        if ( files == null ) {
+            return;
+        }
+        for ( File file : files ) {
+            String name = file.getName();
+            try {
+                long start = Long.parseLong( name.substring( SEGMENT_PREFIX.length(), name.length() - 3 ) );
+                segments.put( start, new MonitoringSegment( file, start ) );
+            } catch ( NumberFormatException e ) {
+                log.warn( "Ignoring unexpected file {} in the monitoring segment folder.", name );
+            }
         }
     }
 
+
+    private void closeSegments() {
+        segmentLock.writeLock().lock();
+        try {
+            segments.values().forEach( MonitoringSegment::close );
+            segments.clear();
+        } finally {
+            segmentLock.writeLock().unlock();
+        }
+    }
+
+
+    private void deleteSegments( Collection<MonitoringSegment> toDelete ) {
+        segmentLock.writeLock().lock();
+        try {
+            for ( MonitoringSegment segment : toDelete ) {
+                segments.remove( segment.getStart() );
+                segment.close();
+                deleteSegmentFile( segment.getFile() );
+            }
+        } finally {
+            segmentLock.writeLock().unlock();
+        }
+    }
+
+
+    private void deleteSegmentFiles() {
+        File[] files = segmentFolder.listFiles();
+        if ( files != null ) {
+            Arrays.stream( files ).forEach( this::deleteSegmentFile );
+        }
+    }
+
+
+    private void deleteSegmentFile( File file ) {
+        // MapDB might keep a write-ahead log next to the file
+        File[] related = file.getParentFile().listFiles( ( dir, name ) -> name.startsWith( file.getName() ) );
+        if ( related != null ) {
+            for ( File f : related ) {
+                if ( !f.delete() ) {
+                    log.warn( "Unable to delete monitoring segment file {}", f.getAbsolutePath() );
+                }
+            }
+        }
+    }
+
+
+    private void initializePostCosts() {
+        queryPostCosts = simpleBackendDb.treeMap( QueryPostCost.class.getName(), Serializer.STRING, Serializer.JAVA ).createOrOpen();
+    }
+
 }
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.monitoring;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import lombok.Getter;
+import org.mapdb.BTreeMap;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.mapdb.Serializer;
+import org.polypheny.db.monitoring.events.MonitoringDataPoint;
+
+
+/**
+ * The data points recorded within one hour, stored in a file of their own. This allows to drop expired data points by
+ * deleting the file instead of removing them one by one.
+ *
+ * Per data point class, the data points are stored in a map ordered by their timestamp. The key consists of the
+ * timestamp in milliseconds shifted by {@link #SEQUENCE_BITS} bits and a sequence number which makes it unique.
+ */
+class MonitoringSegment {
+
+    static final long DURATION = 3_600_000L;
+    private static final int SEQUENCE_BITS = 20;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    @Getter
+    private final long start;
+    @Getter
+    private final File file;
+    private final DB db;
+    private final Map<String, BTreeMap<Long, MonitoringDataPoint>> tables = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+
+    MonitoringSegment( File file, long start ) {
+        this.file = file;
+        this.start = start;
+        this.db = DBMaker
+                .fileDB( file )
+                .closeOnJvmShutdown()
+                .transactionEnable()
+                .fileMmapEnableIfSupported()
+                .fileMmapPreclearDisable()
+                .make();
+        for ( String name : db.getAllNames() ) {
+            tables.put( name, open( name ) );
+        }
+    }
+
+
+    static long startOf( long timestamp ) {
+        return timestamp - Math.floorMod( timestamp, DURATION );
+    }
+
+
+    /**
+     * @return the smallest key of a data point recorded at the given timestamp
+     */
+    static long key( long timestamp ) {
+        return timestamp << SEQUENCE_BITS;
+    }
+
+
+    /**
+     * @param timestamp The timestamp the data point is stored with, which has to be within this segment
+     */
+    void put( MonitoringDataPoint dataPoint, long timestamp ) {
+        long key = key( timestamp ) | (sequence.incrementAndGet() & SEQUENCE_MASK);
+        tables.computeIfAbsent( dataPoint.getClass().getName(), this::open ).put( key, dataPoint );
+    }
+
+
+    void commit() {
+        db.commit();
+    }
+
+
+    /**
+     * Returns the data points of the given class with a key in the given range in descending order of their timestamp.
+     */
+    <T extends MonitoringDataPoint> List<T> scan( Class<T> dataPointClass, long fromKey, long toKey ) {
+        BTreeMap<Long, MonitoringDataPoint> table = tables.get( dataPointClass.getName() );
+        List<T> result = new ArrayList<>();
+        if ( table == null || fromKey >= toKey ) {
+            return result;
+        }
+        NavigableMap<Long, MonitoringDataPoint> range = table.subMap( fromKey, true, toKey, false ).descendingMap();
+        for ( MonitoringDataPoint dataPoint : range.values() ) {
+            result.add( dataPointClass.cast( dataPoint ) );
+        }
+        return result;
+    }
+
+
+    /**
+     * Passes all data points of the given class together with the timestamp they have been stored with to the action.
+     */
+    void forEach( Class<? extends MonitoringDataPoint> dataPointClass, BiConsumer<Long, MonitoringDataPoint> action ) {
+        BTreeMap<Long, MonitoringDataPoint> table = tables.get( dataPointClass.getName() );
+        if ( table != null ) {
+            table.forEach( ( key, dataPoint ) -> action.accept( key >> SEQUENCE_BITS, dataPoint ) );
+        }
+    }
+
+
+    long count( Class<? extends MonitoringDataPoint> dataPointClass ) {
+        BTreeMap<Long, MonitoringDataPoint> table = tables.get( dataPointClass.getName() );
+        return table == null ? 0 : table.sizeLong();
+    }
+
+
+    List<BTreeMap<Long, MonitoringDataPoint>> getTables() {
+        return new ArrayList<>( tables.values() );
+    }
+
+
+    void clear( Class<? extends MonitoringDataPoint> dataPointClass ) {
+        BTreeMap<Long, MonitoringDataPoint> table = tables.get( dataPointClass.getName() );
+        if ( table != null ) {
+            table.clear();
+            db.commit();
+        }
+    }
+
+
+    void close() {
+        if ( !db.isClosed() ) {
+            db.close();
+        }
+    }
+
+
+    private BTreeMap<Long, MonitoringDataPoint> open( String name ) {
+        return db.treeMap( name, Serializer.LONG, Serializer.JAVA ).createOrOpen();
+    }
+
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.monitoring;
+
+import java.io.File;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.polypheny.db.config.RuntimeConfig;
+import org.polypheny.db.monitoring.core.TestMapDbRepository;
+import org.polypheny.db.monitoring.events.MonitoringDataPoint;
+import org.polypheny.db.monitoring.events.metrics.QueryDataPointImpl;
+import org.polypheny.db.monitoring.repository.MonitoringRollup;
+import org.polypheny.db.monitoring.repository.MonitoringRollup.Resolution;
+
+
+class MapDbRepositoryTest {
+
+    private static final long MINUTE = Resolution.MINUTE.getMillis();
+
+    private static TestMapDbRepository sut;
+
+    private int retention;
+    private int rollupRetention;
+
+
+    @BeforeAll
+    public static void start() {
+        sut = new TestMapDbRepository();
+    }
+
+
+    @BeforeEach
+    public void initialize() {
+        retention = RuntimeConfig.MONITORING_RETENTION.getInteger();
+        rollupRetention = RuntimeConfig.MONITORING_ROLLUP_RETENTION.getInteger();
+        sut.initialize( true );
+    }
+
+
+    @AfterEach
+    public void restoreConfig() {
+        RuntimeConfig.MONITORING_RETENTION.setInteger( retention );
+        RuntimeConfig.MONITORING_ROLLUP_RETENTION.setInteger( rollupRetention );
+    }
+
+
+    @Test
+    public void dataPoint_withoutTimestamp_storedInCurrentSegment() {
+        // act
+        sut.dataPoint( createDataPoint( null, 10 ) );
+
+        // assert
+        Assertions.assertEquals( 1, sut.getNumberOfDataPoints( QueryDataPointImpl.class ) );
+        Assertions.assertEquals( 1, sut.segments.size() );
+        long start = sut.segments.firstKey();
+        long now = System.currentTimeMillis();
+        Assertions.assertTrue( start <= now && now < start + MonitoringSegment.DURATION + MINUTE );
+    }
+
+
+    @Test
+    public void dataPoints_differentHours_storedInSeparateSegments() {
+        // arrange
+        long currentHour = currentHour();
+
+        // act
+        sut.dataPoints( List.<MonitoringDataPoint>of(
+                createDataPoint( currentHour + MINUTE, 1 ),
+                createDataPoint( currentHour - MonitoringSegment.DURATION + MINUTE, 2 ),
+                createDataPoint( currentHour - 2 * MonitoringSegment.DURATION + MINUTE, 3 ),
+                createDataPoint( currentHour - 2 * MonitoringSegment.DURATION + 2 * MINUTE, 4 ) ) );
+
+        // assert
+        Assertions.assertEquals( 3, sut.segments.size() );
+        Assertions.assertEquals( 4, sut.getNumberOfDataPoints( QueryDataPointImpl.class ) );
+        List<QueryDataPointImpl> before = sut.getDataPointsBefore( QueryDataPointImpl.class, new Timestamp( currentHour ) );
+        Assertions.assertEquals( 3, before.size() );
+        // Descending order of the timestamps
+        Assertions.assertEquals( 2, before.get( 0 ).getExecutionTime() );
+        Assertions.assertEquals( 4, before.get( 1 ).getExecutionTime() );
+        Assertions.assertEquals( 3, before.get( 2 ).getExecutionTime() );
+        Assertions.assertEquals( 1, sut.getDataPointsAfter( QueryDataPointImpl.class, new Timestamp( currentHour ) ).size() );
+    }
+
+
+    @Test
+    public void maintain_pastSegment_rolledUp() {
+        // arrange
+        long hour = currentHour() - 2 * MonitoringSegment.DURATION;
+        sut.dataPoints( createDataPoints( hour + 5 * MINUTE, 100 ) );
+        sut.dataPoint( createDataPoint( currentHour(), 1 ) );
+
+        // act
+        sut.maintain();
+
+        // assert
+        Assertions.assertTrue( sut.sealedSegments.contains( hour ) );
+        Assertions.assertFalse( sut.sealedSegments.contains( currentHour() ) );
+        MonitoringRollup rollup = getHourRollup( hour );
+        Assertions.assertEquals( "QueryDataPointImpl", rollup.getDataPointType() );
+        Assertions.assertEquals( "class", rollup.getQueryClass() );
+        Assertions.assertEquals( 100, rollup.getCount() );
+        Assertions.assertEquals( 50, rollup.getP50() );
+        Assertions.assertEquals( 95, rollup.getP95() );
+        Assertions.assertEquals( 99, rollup.getP99() );
+        Assertions.assertEquals( 100, rollup.getMax() );
+
+        List<MonitoringRollup> minutes = sut.getRollups( Resolution.MINUTE, new Timestamp( hour ), new Timestamp( hour + MonitoringSegment.DURATION ) );
+        Assertions.assertEquals( 1, minutes.size() );
+        Assertions.assertEquals( hour + 5 * MINUTE, minutes.get( 0 ).getBucketStart() );
+        Assertions.assertEquals( 100, minutes.get( 0 ).getCount() );
+    }
+
+
+    @Test
+    public void dataPoints_lateIntoSealedSegment_rolledUpAgain() {
+        // arrange
+        long hour = currentHour() - 2 * MonitoringSegment.DURATION;
+        sut.dataPoints( createDataPoints( hour + 5 * MINUTE, 100 ) );
+        sut.maintain();
+
+        // act
+        sut.dataPoint( createDataPoint( hour + 6 * MINUTE, 1000 ) );
+
+        // assert
+        MonitoringRollup rollup = getHourRollup( hour );
+        Assertions.assertEquals( 101, rollup.getCount() );
+        Assertions.assertEquals( 1000, rollup.getMax() );
+        List<MonitoringRollup> minutes = sut.getRollups( Resolution.MINUTE, new Timestamp( hour ), new Timestamp( hour + MonitoringSegment.DURATION ) );
+        Assertions.assertEquals( 2, minutes.size() );
+    }
+
+
+    @Test
+    public void maintain_expiredSegment_deleted() {
+        // arrange
+        long hour = currentHour() - 3 * MonitoringSegment.DURATION;
+        sut.dataPoints( createDataPoints( hour + MINUTE, 10 ) );
+        sut.maintain();
+        File file = sut.segments.get( hour ).getFile();
+        Assertions.assertTrue( file.exists() );
+        RuntimeConfig.MONITORING_RETENTION.setInteger( 2 );
+
+        // act
+        sut.maintain();
+
+        // assert
+        Assertions.assertTrue( sut.segments.isEmpty() );
+        Assertions.assertFalse( file.exists() );
+        Assertions.assertFalse( sut.sealedSegments.contains( hour ) );
+        Assertions.assertEquals( 0, sut.getNumberOfDataPoints( QueryDataPointImpl.class ) );
+        // The rollups are kept longer than the data points
+        Assertions.assertNotNull( getHourRollup( hour ) );
+
+        // Data points arriving for an expired hour are discarded
+        sut.dataPoints( createDataPoints( hour + 2 * MINUTE, 10 ) );
+        Assertions.assertTrue( sut.segments.isEmpty() );
+    }
+
+
+    @Test
+    public void maintain_expiredRollups_deleted() {
+        // arrange
+        long hour = currentHour() - 2 * MonitoringSegment.DURATION;
+        sut.dataPoints( createDataPoints( hour + MINUTE, 10 ) );
+        sut.maintain();
+        Assertions.assertNotNull( getHourRollup( hour ) );
+        RuntimeConfig.MONITORING_ROLLUP_RETENTION.setInteger( 0 );
+
+        // act
+        sut.maintain();
+
+        // assert
+        Assertions.assertTrue( sut.getRollups( Resolution.HOUR, new Timestamp( 0 ), new Timestamp( Long.MAX_VALUE ) ).isEmpty() );
+        Assertions.assertTrue( sut.getRollups( Resolution.MINUTE, new Timestamp( 0 ), new Timestamp( Long.MAX_VALUE ) ).isEmpty() );
+        // The data points are kept
+        Assertions.assertEquals( 10, sut.getNumberOfDataPoints( QueryDataPointImpl.class ) );
+    }
+
+
+    private static long currentHour() {
+        return MonitoringSegment.startOf( System.currentTimeMillis() );
+    }
+
+
+    private static MonitoringRollup getHourRollup( long hour ) {
+        List<MonitoringRollup> rollups = sut.getRollups( Resolution.HOUR, new Timestamp( hour ), new Timestamp( hour + 1 ) );
+        Assertions.assertEquals( 1, rollups.size() );
+        return rollups.get( 0 );
+    }
+
+
+    /**
+     * Creates data points with the execution times 1 to n, all recorded at the given time.
+     */
+    private static List<MonitoringDataPoint> createDataPoints( long timestamp, int n ) {
+        List<MonitoringDataPoint> dataPoints = new ArrayList<>();
+        for ( int i = 1; i <= n; i++ ) {
+            dataPoints.add( createDataPoint( timestamp, i ) );
+        }
+        return dataPoints;
+    }
+
+
+    private static QueryDataPointImpl createDataPoint( Long timestamp, long executionTime ) {
+        return QueryDataPointImpl.builder()
+                .recordedTimestamp( timestamp == null ? null : new Timestamp( timestamp ) )
+                .queryClass( "class" )
+                .executionTime( executionTime )
+                .build();
+    }
+
+}
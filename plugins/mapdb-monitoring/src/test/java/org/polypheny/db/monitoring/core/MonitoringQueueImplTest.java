@@ -20,7 +20,9 @@
 import java.util.List;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import org.polypheny.db.monitoring.events.MonitoringDataPoint;
 import org.polypheny.db.monitoring.events.MonitoringEvent;
 import org.polypheny.db.monitoring.events.QueryEvent;
 import org.polypheny.db.monitoring.repository.MonitoringRepository;
@@ -104,4 +106,68 @@ public void queueEvent_validEvents_QueueConsistsElements() {
         Assertions.assertEquals( QueryEvent.class.toString(), infoString.get( "type" ) );
     }
 
+
+    @Test
+    public void shutdown_queuedEvents_allEventsProcessed() {
+        // arrange
+        PersistentMonitoringRepository persistentRepo = Mockito.mock( PersistentMonitoringRepository.class );
+        MonitoringRepository statisticRepo = Mockito.mock( MonitoringRepository.class );
+        MonitoringQueue sut = new MonitoringQueueImpl( true, persistentRepo, statisticRepo );
+        int numberOfEvents = 50;
+
+        // act
+        for ( int i = 0; i < numberOfEvents; i++ ) {
+            sut.queueEvent( createEvent( false ) );
+        }
+        sut.shutdown();
+
+        // assert
+        Assertions.assertEquals( numberOfEvents, sut.getNumberOfProcessedEvents() );
+        Assertions.assertEquals( 0L, sut.getNumberOfElementsInQueue() );
+        Assertions.assertEquals( numberOfEvents, countPersistedDataPoints( persistentRepo ) );
+
+        // Events queued after the shutdown are no longer processed
+        sut.queueEvent( createEvent( false ) );
+        Assertions.assertEquals( numberOfEvents, sut.getNumberOfProcessedEvents() );
+    }
+
+
+    @Test
+    public void processBatch_failingEvent_otherEventsPersisted() {
+        // arrange
+        PersistentMonitoringRepository persistentRepo = Mockito.mock( PersistentMonitoringRepository.class );
+        MonitoringRepository statisticRepo = Mockito.mock( MonitoringRepository.class );
+        MonitoringQueue sut = new MonitoringQueueImpl( true, persistentRepo, statisticRepo );
+        int numberOfEvents = 20;
+
+        // act
+        for ( int i = 0; i < numberOfEvents; i++ ) {
+            sut.queueEvent( createEvent( i % 5 == 0 ) );
+        }
+        sut.shutdown();
+
+        // assert
+        Assertions.assertEquals( numberOfEvents, sut.getNumberOfProcessedEvents() );
+        Assertions.assertEquals( numberOfEvents - numberOfEvents / 5, countPersistedDataPoints( persistentRepo ) );
+    }
+
+
+    private static MonitoringEvent createEvent( boolean failing ) {
+        MonitoringEvent event = Mockito.mock( MonitoringEvent.class );
+        if ( failing ) {
+            Mockito.when( event.analyze() ).thenThrow( new IllegalStateException( "analysis failed" ) );
+        } else {
+            Mockito.when( event.analyze() ).thenAnswer( invocation -> List.of( Mockito.mock( MonitoringDataPoint.class ) ) );
+        }
+        return event;
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private static int countPersistedDataPoints( PersistentMonitoringRepository persistentRepo ) {
+        ArgumentCaptor<List<MonitoringDataPoint>> captor = ArgumentCaptor.forClass( List.class );
+        Mockito.verify( persistentRepo, Mockito.atLeast( 0 ) ).dataPoints( captor.capture() );
+        return captor.getAllValues().stream().mapToInt( List::size ).sum();
+    }
+
 }
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.monitoring.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+
+class MonitoringRingBufferTest {
+
+    @Test
+    public void offer_fullBuffer_rejectsElement() {
+        // arrange
+        MonitoringRingBuffer<Integer> sut = new MonitoringRingBuffer<>( 3 );
+
+        // act
+        for ( int i = 0; i < sut.capacity(); i++ ) {
+            Assertions.assertTrue( sut.offer( i ) );
+        }
+
+        // assert
+        Assertions.assertEquals( 4, sut.capacity() );
+        Assertions.assertFalse( sut.offer( 100 ) );
+        Assertions.assertEquals( 4, sut.size() );
+        Assertions.assertEquals( 0, sut.poll() );
+        Assertions.assertTrue( sut.offer( 100 ) );
+    }
+
+
+    @Test
+    public void drainTo_validElements_keepsOrder() {
+        // arrange
+        MonitoringRingBuffer<Integer> sut = new MonitoringRingBuffer<>( 16 );
+        for ( int i = 0; i < 10; i++ ) {
+            sut.offer( i );
+        }
+
+        // act
+        List<Integer> batch = new ArrayList<>();
+        int drained = sut.drainTo( batch, 4 );
+
+        // assert
+        Assertions.assertEquals( 4, drained );
+        Assertions.assertEquals( List.of( 0, 1, 2, 3 ), batch );
+        Assertions.assertEquals( List.of( 4, 5 ), sut.peek( 2 ) );
+        Assertions.assertEquals( 6, sut.size() );
+    }
+
+
+    @Test
+    public void offerAndPoll_concurrentProducersAndConsumers_noElementLost() throws InterruptedException {
+        // arrange
+        MonitoringRingBuffer<Long> sut = new MonitoringRingBuffer<>( 64 );
+        int producers = 4;
+        int consumers = 2;
+        long elementsPerProducer = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool( producers + consumers );
+        CountDownLatch producersDone = new CountDownLatch( producers );
+        AtomicLong sum = new AtomicLong();
+        AtomicLong count = new AtomicLong();
+
+        // act
+        for ( int p = 0; p < producers; p++ ) {
+            executor.submit( () -> {
+                for ( long i = 1; i <= elementsPerProducer; i++ ) {
+                    while ( !sut.offer( i ) ) {
+                        Thread.onSpinWait();
+                    }
+                }
+                producersDone.countDown();
+            } );
+        }
+        for ( int c = 0; c < consumers; c++ ) {
+            executor.submit( () -> {
+                while ( producersDone.getCount() > 0 || sut.size() > 0 ) {
+                    Long element = sut.poll();
+                    if ( element != null ) {
+                        sum.addAndGet( element );
+                        count.incrementAndGet();
+                    }
+                }
+            } );
+        }
+        executor.shutdown();
+
+        // assert
+        Assertions.assertTrue( executor.awaitTermination( 60, TimeUnit.SECONDS ) );
+        Assertions.assertEquals( producers * elementsPerProducer, count.get() );
+        Assertions.assertEquals( producers * elementsPerProducer * (elementsPerProducer + 1) / 2, sum.get() );
+    }
+
+}
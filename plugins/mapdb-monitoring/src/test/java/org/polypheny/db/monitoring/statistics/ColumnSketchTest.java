@@ -0,0 +1,160 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.monitoring.statistics;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.util.Map;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+
+class ColumnSketchTest {
+
+    @Test
+    public void distinctCount_manyValues_isWithinErrorBound() {
+        // arrange
+        ColumnSketch sut = new ColumnSketch();
+
+        // act
+        for ( int i = 0; i < 100_000; i++ ) {
+            sut.update( i % 20_000 );
+        }
+
+        // assert
+        Assertions.assertEquals( 20_000, sut.getDistinctCount(), 20_000 * 0.05 );
+        Assertions.assertEquals( 100_000, sut.getCount() );
+    }
+
+
+    @Test
+    public void distinctCount_numericTypes_areEqual() {
+        // arrange
+        ColumnSketch sut = new ColumnSketch();
+
+        // act
+        sut.update( 42 );
+        sut.update( 42L );
+        sut.update( new BigDecimal( "42.00" ) );
+
+        // assert
+        Assertions.assertEquals( 1, sut.getDistinctCount() );
+    }
+
+
+    @Test
+    public void quantile_uniformValues_isApproximated() {
+        // arrange
+        ColumnSketch sut = new ColumnSketch();
+
+        // act
+        for ( int i = 1; i <= 100_000; i++ ) {
+            sut.update( i );
+        }
+
+        // assert
+        Assertions.assertEquals( 50_000, sut.getQuantile( 0.5 ), 100_000 * 0.02 );
+        Assertions.assertEquals( 95_000, sut.getQuantile( 0.95 ), 100_000 * 0.02 );
+        Assertions.assertEquals( 1, sut.getQuantile( 0 ) );
+        Assertions.assertEquals( 100_000, sut.getQuantile( 1 ) );
+        Assertions.assertEquals( 0.25, sut.getRank( 25_000 ), 0.02 );
+    }
+
+
+    @Test
+    public void quantile_textValues_isUnknown() {
+        // arrange
+        ColumnSketch sut = new ColumnSketch();
+
+        // act
+        sut.update( "a" );
+
+        // assert
+        Assertions.assertTrue( Double.isNaN( sut.getQuantile( 0.5 ) ) );
+    }
+
+
+    @Test
+    public void frequentValues_skewedValues_containsHeavyHitter() {
+        // arrange
+        ColumnSketch sut = new ColumnSketch();
+
+        // act
+        for ( int i = 0; i < 10_000; i++ ) {
+            sut.update( i % 2 == 0 ? "hot" : "value" + i );
+        }
+        sut.update( (Object) null );
+
+        // assert
+        Map<Object, Long> frequent = sut.getFrequentValues();
+        Assertions.assertEquals( "hot", frequent.keySet().iterator().next() );
+        Assertions.assertTrue( sut.getFrequency( "hot" ) >= 5_000 );
+        Assertions.assertEquals( 1, sut.getNullCount() );
+    }
+
+
+    @Test
+    public void merge_twoPartitions_equalsCombinedStream() {
+        // arrange
+        ColumnSketch first = new ColumnSketch();
+        ColumnSketch second = new ColumnSketch();
+        ColumnSketch combined = new ColumnSketch();
+
+        // act
+        for ( int i = 0; i < 50_000; i++ ) {
+            first.update( i );
+            second.update( i + 25_000 );
+            combined.update( i );
+            combined.update( i + 25_000 );
+        }
+        first.merge( second );
+
+        // assert
+        Assertions.assertEquals( combined.getCount(), first.getCount() );
+        Assertions.assertEquals( combined.getDistinctCount(), first.getDistinctCount() );
+        Assertions.assertEquals( 37_500, first.getQuantile( 0.5 ), 75_000 * 0.02 );
+    }
+
+
+    @Test
+    public void serialization_roundTrip_keepsEstimates() throws Exception {
+        // arrange
+        ColumnSketch sut = new ColumnSketch();
+        for ( int i = 0; i < 1_000; i++ ) {
+            sut.update( i );
+        }
+
+        // act
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try ( ObjectOutputStream out = new ObjectOutputStream( bytes ) ) {
+            out.writeObject( sut );
+        }
+        ColumnSketch restored;
+        try ( ObjectInputStream in = new ObjectInputStream( new ByteArrayInputStream( bytes.toByteArray() ) ) ) {
+            restored = (ColumnSketch) in.readObject();
+        }
+
+        // assert
+        Assertions.assertEquals( sut.getDistinctCount(), restored.getDistinctCount() );
+        Assertions.assertEquals( sut.getQuantile( 0.5 ), restored.getQuantile( 0.5 ) );
+    }
+
+}
@@ -52,6 +52,7 @@
 @AdapterSettingString(name = "password", defaultValue = "polypheny", description = "Username to be used for authenticating at the remote instance.", position = 5)
 @AdapterSettingInteger(name = "maxConnections", defaultValue = 25, description = "Password to be used for authenticating at the remote instance.")
 @AdapterSettingString(name = "table", defaultValue = "public.foo,public.bar", description = "Maximum number of concurrent JDBC connections.")
+@AdapterSettingInteger(name = "fetchSize", defaultValue = -1, required = false, modifiable = true, description = "Number of rows fetched per round trip. -1 adapts the fetch size to the width of the rows, 0 lets the JDBC driver read the whole result at once.")
 public class MonetdbSource extends AbstractJdbcSource {
 
     public MonetdbSource( int storeId, String uniqueName, final Map<String, String> settings ) {
@@ -69,6 +69,7 @@
 @AdapterSettingString(name = "username", defaultValue = "polypheny", description = "Username to be used for authenticating at the remote instance.", position = 4, appliesTo = DeploySetting.REMOTE)
 @AdapterSettingString(name = "password", defaultValue = "polypheny", description = "Password to be used for authenticating at the remote instance.", appliesTo = DeploySetting.REMOTE)
 @AdapterSettingInteger(name = "maxConnections", defaultValue = 25, description = "Maximum number of concurrent connections opened by Polypheny-DB to this data store.")
+@AdapterSettingInteger(name = "fetchSize", defaultValue = -1, required = false, modifiable = true, description = "Number of rows fetched per round trip. -1 adapts the fetch size to the width of the rows, 0 lets the JDBC driver read the whole result at once.")
 public class MonetdbStore extends AbstractJdbcStore {
 
     private String host;
@@ -296,6 +297,15 @@ public AvailableIndexMethod getDefaultIndexMethod() {
     }
 
 
+    /**
+     * MonetDB runs all transactions with optimistic snapshot isolation.
+     */
+    @Override
+    public boolean supportsSnapshotReads() {
+        return true;
+    }
+
+
     @Override
     public List<FunctionalIndexInfo> getFunctionalIndexes( CatalogTable catalogTable ) {
         return ImmutableList.of(); // TODO
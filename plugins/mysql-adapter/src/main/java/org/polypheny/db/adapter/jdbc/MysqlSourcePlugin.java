@@ -88,6 +88,8 @@ public void stop() {
             description = "Which level of transaction isolation should be used.")
     @AdapterSettingString(name = "tables", defaultValue = "foo,bar",
             description = "List of tables which should be imported. The names must to be separated by a comma.")
+    @AdapterSettingInteger(name = "fetchSize", defaultValue = -1, required = false, modifiable = true,
+            description = "Number of rows fetched per round trip. -1 adapts the fetch size to the width of the rows, 0 lets the JDBC driver read the whole result at once.")
     public static class MysqlSource extends AbstractJdbcSource {
 
         public MysqlSource( int storeId, String uniqueName, final Map<String, String> settings ) {
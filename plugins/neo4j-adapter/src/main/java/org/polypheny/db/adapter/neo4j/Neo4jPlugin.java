@@ -48,6 +48,7 @@
 import org.pf4j.Plugin;
 import org.pf4j.PluginWrapper;
 import org.polypheny.db.adapter.Adapter.AdapterProperties;
+import org.polypheny.db.adapter.Adapter.AdapterSettingInteger;
 import org.polypheny.db.adapter.DataStore;
 import org.polypheny.db.adapter.DataStore.AvailableIndexMethod;
 import org.polypheny.db.adapter.DeployMode;
@@ -143,6 +144,8 @@ private static String getMappingLabel( long id ) {
             description = "Neo4j is a graph-model based database system. It stores data in a graph structure which consists of nodes and edges.",
             usedModes = { DeployMode.DOCKER },
             supportedNamespaceTypes = { NamespaceType.GRAPH, NamespaceType.RELATIONAL })
+    @AdapterSettingInteger(name = "batchSize", defaultValue = 1000, required = false, modifiable = true,
+            description = "Maximal number of parameter sets of a batched DML statement, which are sent to Neo4j in a single UNWIND statement.")
     @Extension
     public static class Neo4jStore extends DataStore {
 
@@ -224,6 +227,14 @@ public Neo4jStore( int adapterId, String uniqueName, Map<String, String> adapter
         }
 
 
+        /**
+         * Returns the maximal number of rows, which are sent to Neo4j in a single batched statement.
+         */
+        public int getBatchSize() {
+            return Math.max( 1, Integer.parseInt( settings.getOrDefault( "batchSize", "1000" ) ) );
+        }
+
+
         /**
          * Test if a connection to the provided Neo4j database is possible.
          */
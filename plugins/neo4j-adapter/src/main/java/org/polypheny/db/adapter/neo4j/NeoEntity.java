@@ -160,6 +160,7 @@ public NeoQueryable( DataContext dataContext, SchemaPlus schema, QueryableTable
         public Enumerator<T> enumerator() {
             return execute(
                     String.format( "MATCH (n:%s) RETURN %s", entity.physicalEntityName, buildAllQuery() ),
+                    null,
                     getTypes(),
                     getComponentType(),
                     Map.of() ).enumerator();
@@ -188,12 +189,15 @@ private String buildAllQuery() {
 
         /**
          * Executes the given query and returns a {@link Enumerable}, which returns the results when iterated.
+         * If multiple parameter sets are provided and a batch query is available, the parameter sets are sent
+         * in chunks of the configured batch size, instead of executing the query once per parameter set.
          *
          * @param query the query to execute
+         * @param batchQuery the query to execute for a list of parameter sets, <code>null</code> if not supported
          * @param prepared mapping of parameters and their components if they are collections
          */
         @SuppressWarnings("UnusedDeclaration")
-        public Enumerable<T> execute( String query, List<PolyType> types, List<PolyType> componentTypes, Map<Long, Pair<PolyType, PolyType>> prepared ) {
+        public Enumerable<T> execute( String query, String batchQuery, List<PolyType> types, List<PolyType> componentTypes, Map<Long, Pair<PolyType, PolyType>> prepared ) {
             Transaction trx = getTrx();
 
             dataContext.getStatement().getTransaction().registerInvolvedAdapter( namespace.store );
@@ -201,6 +205,16 @@ public Enumerable<T> execute( String query, List<PolyType> types, List<PolyType>
             List<Result> results = new ArrayList<>();
             if ( dataContext.getParameterValues().size() == 1 ) {
                 results.add( trx.run( query, toParameters( dataContext.getParameterValues().get( 0 ), prepared ) ) );
+            } else if ( dataContext.getParameterValues().size() > 0 && batchQuery != null ) {
+                int batchSize = namespace.store.getBatchSize();
+                List<Map<Long, Object>> values = dataContext.getParameterValues();
+                for ( int i = 0; i < values.size(); i += batchSize ) {
+                    List<Map<String, Object>> rows = values.subList( i, Math.min( i + batchSize, values.size() ) )
+                            .stream()
+                            .map( value -> toParameters( value, prepared ) )
+                            .collect( Collectors.toList() );
+                    results.add( trx.run( batchQuery, Map.of( "rows", rows ) ) );
+                }
             } else if ( dataContext.getParameterValues().size() > 0 ) {
                 for ( Map<Long, Object> value : dataContext.getParameterValues() ) {
                     results.add( trx.run( query, toParameters( value, prepared ) ) );
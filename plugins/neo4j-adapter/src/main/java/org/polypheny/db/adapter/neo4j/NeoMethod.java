@@ -24,7 +24,7 @@
 
 
 public enum NeoMethod {
-    EXECUTE( NeoEntity.NeoQueryable.class, "execute", String.class, List.class, List.class, Map.class ),
+    EXECUTE( NeoEntity.NeoQueryable.class, "execute", String.class, String.class, List.class, List.class, Map.class ),
     GRAPH_EXECUTE( NeoGraph.NeoQueryable.class, "execute", String.class, List.class, List.class, Map.class ),
     GRAPH_ALL( NeoGraph.NeoQueryable.class, "executeAll", String.class, String.class );
 
@@ -261,6 +261,24 @@ public String build() {
     }
 
 
+    /**
+     * Returns the query, which executes the DML statement for a whole batch of parameter sets at once,
+     * or <code>null</code> if the statement cannot be batched. Has to be called after {@link #build()}.
+     */
+    public String buildBatch() {
+        if ( !isDml || preparedTypes.isEmpty() ) {
+            return null;
+        }
+        for ( OperatorStatement statement : statements ) {
+            if ( statement.type == StatementType.WITH || statement.type == StatementType.UNWIND ) {
+                // the rows of the batch would not be visible after these statements
+                return null;
+            }
+        }
+        return NeoUtil.asBatchQuery( statements.stream().map( NeoStatement::build ).collect( Collectors.joining( "\n" ) ) );
+    }
+
+
     public void addReturnIfNecessary() {
         OperatorStatement statement = statements.get( statements.size() - 1 );
         if ( statements.get( statements.size() - 1 ).type != StatementType.RETURN ) {
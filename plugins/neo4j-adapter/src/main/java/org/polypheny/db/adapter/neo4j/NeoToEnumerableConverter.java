@@ -172,11 +172,13 @@ private Result getRelationalImplement( EnumerableAlgImplementor implementor, Pre
 
         final String query = neoImplementor.build();
 
+        final String batchQuery = neoImplementor.buildBatch();
+
         final Expression enumerable = blockBuilder.append(
                 blockBuilder.newName( "enumerable" ),
                 Expressions.call(
                         table,
-                        NeoMethod.EXECUTE.method, Expressions.constant( query ), fields, arrayFields, parameterClasses ) );
+                        NeoMethod.EXECUTE.method, Expressions.constant( query ), Expressions.constant( batchQuery, String.class ), fields, arrayFields, parameterClasses ) );
 
         blockBuilder.add( Expressions.return_( null, enumerable ) );
 
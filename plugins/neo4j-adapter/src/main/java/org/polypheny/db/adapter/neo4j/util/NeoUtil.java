@@ -239,6 +239,42 @@ static String asParameter( long key, boolean withDollar ) {
         }
     }
 
+    /**
+     * Rewrites a query, so that it is executed once for every element of the <code>$rows</code> list parameter.
+     * Each parameter <code>$pX</code> of the query is replaced by the field <code>row.pX</code> of the current element,
+     * parameters inside of string literals or escaped names are left untouched.
+     *
+     * @param query the query, which is executed once per parameter set
+     * @return the query, which is executed once for a whole batch of parameter sets
+     */
+    static String asBatchQuery( String query ) {
+        StringBuilder batch = new StringBuilder( "UNWIND $rows AS row\n" );
+        char quote = 0;
+        int i = 0;
+        while ( i < query.length() ) {
+            char c = query.charAt( i );
+            if ( quote != 0 ) {
+                if ( c == '\\' && i + 1 < query.length() ) {
+                    batch.append( c ).append( query.charAt( i + 1 ) );
+                    i += 2;
+                    continue;
+                }
+                if ( c == quote ) {
+                    quote = 0;
+                }
+            } else if ( c == '\'' || c == '"' || c == '`' ) {
+                quote = c;
+            } else if ( c == '$' && i + 2 < query.length() && query.charAt( i + 1 ) == 'p' && Character.isDigit( query.charAt( i + 2 ) ) ) {
+                batch.append( "row." );
+                i++;
+                continue;
+            }
+            batch.append( c );
+            i++;
+        }
+        return batch.toString();
+    }
+
     static String fixParameter( String name ) {
         if ( name.charAt( 0 ) == '$' ) {
             return "_" + name;
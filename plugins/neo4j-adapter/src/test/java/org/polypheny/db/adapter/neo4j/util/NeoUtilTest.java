@@ -0,0 +1,143 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.adapter.neo4j.util;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.polypheny.db.adapter.neo4j.util.NeoStatements.create_;
+import static org.polypheny.db.adapter.neo4j.util.NeoStatements.labels_;
+import static org.polypheny.db.adapter.neo4j.util.NeoStatements.literal_;
+import static org.polypheny.db.adapter.neo4j.util.NeoStatements.node_;
+import static org.polypheny.db.adapter.neo4j.util.NeoStatements.prepared_;
+import static org.polypheny.db.adapter.neo4j.util.NeoStatements.property_;
+import static org.polypheny.db.adapter.neo4j.util.NeoStatements.unwind_;
+import static org.polypheny.db.adapter.neo4j.util.NeoStatements.with_;
+
+import org.junit.Test;
+import org.polypheny.db.adapter.neo4j.NeoRelationalImplementor;
+import org.polypheny.db.type.PolyType;
+import org.polypheny.db.util.Pair;
+
+
+public class NeoUtilTest {
+
+    private static final String PREFIX = "UNWIND $rows AS row\n";
+
+
+    @Test
+    public void parametersAreReadFromRow() {
+        assertEquals(
+                PREFIX + "CREATE (n:t {id:row.p0, name:row.p1})",
+                NeoUtil.asBatchQuery( "CREATE (n:t {id:$p0, name:$p1})" ) );
+    }
+
+
+    @Test
+    public void parametersWithCommonPrefix() {
+        // $p1 must not be replaced inside of $p10 and the other way around
+        assertEquals(
+                PREFIX + "MATCH (n) WHERE n.a = row.p1 AND n.b = row.p10 SET n.c = row.p101",
+                NeoUtil.asBatchQuery( "MATCH (n) WHERE n.a = $p1 AND n.b = $p10 SET n.c = $p101" ) );
+    }
+
+
+    @Test
+    public void quotedParametersAreUntouched() {
+        assertEquals(
+                PREFIX + "CREATE (n:t {a:'$p1', b:\"$p2\", `$p3`:row.p4})",
+                NeoUtil.asBatchQuery( "CREATE (n:t {a:'$p1', b:\"$p2\", `$p3`:$p4})" ) );
+    }
+
+
+    @Test
+    public void escapedQuotesDoNotEndLiteral() {
+        assertEquals(
+                PREFIX + "CREATE (n:t {a:'it\\'s $p1', b:row.p2})",
+                NeoUtil.asBatchQuery( "CREATE (n:t {a:'it\\'s $p1', b:$p2})" ) );
+        assertEquals(
+                PREFIX + "CREATE (n:t {a:\"\\\"$p1\\\"\", b:row.p2})",
+                NeoUtil.asBatchQuery( "CREATE (n:t {a:\"\\\"$p1\\\"\", b:$p2})" ) );
+    }
+
+
+    @Test
+    public void otherDollarsAreUntouched() {
+        assertEquals(
+                PREFIX + "MATCH (n) WHERE n.a = $param AND n.b = $p RETURN n",
+                NeoUtil.asBatchQuery( "MATCH (n) WHERE n.a = $param AND n.b = $p RETURN n" ) );
+    }
+
+
+    @Test
+    public void batchIsBuiltForSimpleDml() {
+        NeoRelationalImplementor implementor = prepareInsert();
+
+        String batch = implementor.buildBatch();
+        assertNotNull( batch );
+        assertTrue( batch.startsWith( PREFIX ) );
+        assertTrue( batch.contains( "row.p0" ) );
+        assertTrue( batch.contains( "row.p10" ) );
+        assertFalse( batch.substring( PREFIX.length() ).contains( "$p" ) );
+    }
+
+
+    @Test
+    public void noBatchWithoutDmlOrParameters() {
+        NeoRelationalImplementor implementor = prepareInsert();
+        implementor.setDml( false );
+        assertNull( implementor.buildBatch() );
+
+        implementor.setDml( true );
+        implementor.getPreparedTypes().clear();
+        assertNull( implementor.buildBatch() );
+    }
+
+
+    @Test
+    public void noBatchWithWith() {
+        NeoRelationalImplementor implementor = prepareInsert();
+        implementor.add( with_( literal_( "n" ) ) );
+        assertNull( implementor.buildBatch() );
+    }
+
+
+    @Test
+    public void noBatchWithUnwind() {
+        NeoRelationalImplementor implementor = new NeoRelationalImplementor();
+        implementor.setDml( true );
+        implementor.getPreparedTypes().put( 0L, Pair.of( PolyType.ARRAY, PolyType.INTEGER ) );
+        implementor.add( unwind_( literal_( "$p0 AS x" ) ) );
+        implementor.add( create_( node_( "n", labels_( "t" ), property_( "id", literal_( "x" ) ) ) ) );
+        assertNull( implementor.buildBatch() );
+    }
+
+
+    private NeoRelationalImplementor prepareInsert() {
+        NeoRelationalImplementor implementor = new NeoRelationalImplementor();
+        implementor.setDml( true );
+        implementor.getPreparedTypes().put( 0L, Pair.of( PolyType.INTEGER, null ) );
+        implementor.getPreparedTypes().put( 10L, Pair.of( PolyType.VARCHAR, null ) );
+        implementor.add( create_( node_( "n", labels_( "t" ), property_( "id", prepared_( 0 ) ), property_( "name", prepared_( 10 ) ) ) ) );
+        return implementor;
+    }
+
+}
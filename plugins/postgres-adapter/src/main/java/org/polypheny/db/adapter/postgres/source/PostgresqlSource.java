@@ -58,6 +58,8 @@
         description = "Which level of transaction isolation should be used.")
 @AdapterSettingString(name = "tables", defaultValue = "foo,bar",
         description = "List of tables which should be imported. The names must to be separated by a comma.")
+@AdapterSettingInteger(name = "fetchSize", defaultValue = -1, required = false, modifiable = true,
+        description = "Number of rows fetched per round trip. -1 adapts the fetch size to the width of the rows, 0 lets the JDBC driver read the whole result at once.")
 public class PostgresqlSource extends AbstractJdbcSource {
 
     public PostgresqlSource( int storeId, String uniqueName, final Map<String, String> settings ) {
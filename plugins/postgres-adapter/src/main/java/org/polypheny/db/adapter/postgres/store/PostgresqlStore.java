@@ -19,6 +19,8 @@
 
 import com.google.common.collect.ImmutableList;
 import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -58,7 +60,12 @@
 import org.polypheny.db.transaction.PolyXid;
 import org.polypheny.db.type.PolyType;
 import org.polypheny.db.type.PolyTypeFamily;
+import org.polypheny.db.util.DateString;
 import org.polypheny.db.util.PasswordGenerator;
+import org.polypheny.db.util.TimeString;
+import org.polypheny.db.util.TimestampString;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
 
 
 @Slf4j
@@ -78,6 +85,8 @@
         description = "Password to be used for authenticating at the remote instance.", appliesTo = DeploySetting.REMOTE)
 @AdapterSettingInteger(name = "maxConnections", defaultValue = 25, position = 6,
         description = "Maximum number of concurrent JDBC connections.")
+@AdapterSettingInteger(name = "fetchSize", defaultValue = -1, required = false, modifiable = true,
+        description = "Number of rows fetched per round trip. -1 adapts the fetch size to the width of the rows, 0 lets the JDBC driver read the whole result at once.")
 public class PostgresqlStore extends AbstractJdbcStore {
 
 
@@ -325,6 +334,12 @@ public AvailableIndexMethod getDefaultIndexMethod() {
     }
 
 
+    @Override
+    public boolean supportsSnapshotReads() {
+        return true;
+    }
+
+
     @Override
     public List<FunctionalIndexInfo> getFunctionalIndexes( CatalogTable catalogTable ) {
         return ImmutableList.of();
@@ -396,6 +411,72 @@ protected String getTypeString( PolyType type ) {
     }
 
 
+    /**
+     * Streams the rows into the partition table using {@code COPY ... FROM STDIN}, which avoids the per row overhead of inserts.
+     */
+    @Override
+    public void bulkLoad( Context context, CatalogTable catalogTable, long partitionId, List<CatalogColumnPlacement> columnPlacements, List<List<Object>> rows ) {
+        CatalogPartitionPlacement partitionPlacement = catalog.getPartitionPlacement( getAdapterId(), partitionId );
+        List<PolyType> types = new ArrayList<>();
+        StringBuilder builder = new StringBuilder();
+        builder.append( "COPY " )
+                .append( dialect.quoteIdentifier( partitionPlacement.physicalSchemaName ) )
+                .append( "." )
+                .append( dialect.quoteIdentifier( partitionPlacement.physicalTableName ) )
+                .append( " (" );
+        for ( CatalogColumnPlacement placement : columnPlacements ) {
+            types.add( catalog.getColumn( placement.columnId ).type );
+            builder.append( types.size() > 1 ? ", " : "" ).append( dialect.quoteIdentifier( placement.physicalColumnName ) );
+        }
+        builder.append( ") FROM STDIN WITH (FORMAT csv)" );
+
+        StringBuilder data = new StringBuilder();
+        for ( List<Object> row : rows ) {
+            for ( int i = 0; i < types.size(); i++ ) {
+                if ( i > 0 ) {
+                    data.append( ',' );
+                }
+                appendCsvValue( data, row.get( i ), types.get( i ) );
+            }
+            data.append( '\n' );
+        }
+
+        try {
+            context.getStatement().getTransaction().registerInvolvedAdapter( this );
+            ConnectionHandler connectionHandler = getOrCreateConnectionHandler( context.getStatement() );
+            CopyManager copyManager = connectionHandler.unwrap( PGConnection.class ).getCopyAPI();
+            copyManager.copyIn( builder.toString(), new StringReader( data.toString() ) );
+        } catch ( SQLException | IOException | ConnectionHandlerException e ) {
+            throw new RuntimeException( e );
+        }
+    }
+
+
+    private static void appendCsvValue( StringBuilder data, Object value, PolyType type ) {
+        if ( value == null ) {
+            // Unquoted empty values are NULL in the CSV format of COPY
+            return;
+        }
+        String string;
+        if ( type == PolyType.DATE && value instanceof Integer ) {
+            string = DateString.fromDaysSinceEpoch( (Integer) value ).toString();
+        } else if ( type == PolyType.TIME && value instanceof Integer ) {
+            string = TimeString.fromMillisOfDay( (Integer) value ).toString();
+        } else if ( type == PolyType.TIMESTAMP && value instanceof Long ) {
+            string = TimestampString.fromMillisSinceEpoch( (Long) value ).toString();
+        } else if ( value instanceof BigDecimal ) {
+            string = ((BigDecimal) value).toPlainString();
+        } else {
+            string = value.toString();
+        }
+        if ( PolyType.CHAR_TYPES.contains( type ) ) {
+            data.append( '"' ).append( string.replace( "\"", "\"\"" ) ).append( '"' );
+        } else {
+            data.append( string );
+        }
+    }
+
+
     @Override
     protected String getDefaultPhysicalSchemaName() {
         return "public";
@@ -20,6 +20,7 @@
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import io.javalin.http.Context;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -28,6 +29,7 @@
 import java.util.List;
 import java.util.Map;
 import javax.servlet.http.HttpServletRequest;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.polypheny.db.PolyImplementation;
 import org.polypheny.db.adapter.java.JavaTypeFactory;
@@ -57,6 +59,7 @@
 import org.polypheny.db.prepare.PolyphenyDbCatalogReader;
 import org.polypheny.db.prepare.Prepare.PreparingTable;
 import org.polypheny.db.restapi.RequestParser.Filters;
+import org.polypheny.db.restapi.RestResult.StreamFormat;
 import org.polypheny.db.restapi.exception.RestException;
 import org.polypheny.db.restapi.models.requests.ResourceDeleteRequest;
 import org.polypheny.db.restapi.models.requests.ResourceGetRequest;
@@ -89,12 +92,15 @@ public class Rest {
     private final TransactionManager transactionManager;
     private final long databaseId;
     private final long userId;
+    @Setter
+    private volatile boolean streamResults;
 
 
-    Rest( final TransactionManager transactionManager, final long userId, final long databaseId ) {
+    Rest( final TransactionManager transactionManager, final long userId, final long databaseId, final boolean streamResults ) {
         this.transactionManager = transactionManager;
         this.databaseId = databaseId;
         this.userId = userId;
+        this.streamResults = streamResults;
     }
 
 
@@ -566,6 +572,10 @@ String executeAndTransformPolyAlg( AlgRoot algRoot, final Statement statement, f
             final Iterable<Object> iterable = result.enumerable( statement.getDataContext() );
             Iterator<Object> iterator = iterable.iterator();
             restResult = new RestResult( algRoot.kind, iterator, result.rowType, result.getColumns() );
+            StreamFormat streamFormat = getStreamFormat( algRoot, restResult, ctx );
+            if ( streamFormat != null ) {
+                return stream( restResult, streamFormat, result, statement, ctx );
+            }
             restResult.transform();
             long executionTime = restResult.getExecutionTime();
             if ( !algRoot.kind.belongsTo( Kind.DML ) ) {
@@ -587,4 +597,40 @@ String executeAndTransformPolyAlg( AlgRoot algRoot, final Statement statement, f
         return result.left;
     }
 
+
+    /**
+     * Returns the format in which the result is streamed or {@code null} if the result has to be materialized. Results
+     * containing multimedia objects are only streamed if the client explicitly asks for NDJSON.
+     */
+    private StreamFormat getStreamFormat( AlgRoot algRoot, RestResult restResult, Context ctx ) {
+        if ( ctx == null || algRoot.kind.belongsTo( Kind.DML ) ) {
+            return null;
+        }
+        StreamFormat requested = StreamFormat.fromAcceptHeader( ctx.header( "Accept" ) );
+        if ( requested != null ) {
+            return requested;
+        }
+        return streamResults && !restResult.containsMultimedia() ? StreamFormat.JSON : null;
+    }
+
+
+    private String stream( RestResult restResult, StreamFormat streamFormat, PolyImplementation result, Statement statement, Context ctx ) throws TransactionException {
+        try {
+            restResult.stream( ctx, streamFormat );
+        } catch ( Throwable e ) {
+            // The response is already partially written, hence there is no way to report the error to the client
+            if ( e instanceof IOException ) {
+                log.debug( "Client disconnected while the result of a REST query was streamed. Aborting the query." );
+            } else {
+                log.error( "Error while streaming the result of a REST query", e );
+            }
+            restResult.close();
+            statement.getTransaction().rollback();
+            return "";
+        }
+        result.getExecutionTimeMonitor().setExecutionTime( restResult.getExecutionTime() );
+        statement.getTransaction().commit();
+        return "";
+    }
+
 }
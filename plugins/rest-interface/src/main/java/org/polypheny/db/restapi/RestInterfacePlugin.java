@@ -89,6 +89,7 @@ public void start() {
         Map<String, String> restSettings = new HashMap<>();
         restSettings.put( "port", "8089" );
         restSettings.put( "maxUploadSizeMb", "10000" );
+        restSettings.put( "streamResults", "true" );
         QueryInterfaceManager.addInterfaceType( "rest", HttpRestServer.class, restSettings );
     }
 
@@ -110,7 +111,8 @@ public static class HttpRestServer extends QueryInterface {
         @SuppressWarnings("WeakerAccess")
         public static final List<QueryInterfaceSetting> AVAILABLE_SETTINGS = ImmutableList.of(
                 new QueryInterfaceSettingInteger( "port", false, true, false, 8089 ),
-                new QueryInterfaceSettingInteger( "maxUploadSizeMb", false, true, true, 10000 )
+                new QueryInterfaceSettingInteger( "maxUploadSizeMb", false, true, true, 10000 ),
+                new QueryInterfaceSettingBoolean( "streamResults", false, true, true, true )
         );
 
         private final Gson gson = new Gson();
@@ -128,6 +130,7 @@ public static class HttpRestServer extends QueryInterface {
         private final MonitoringPage monitoringPage;
 
         private Javalin restServer;
+        private Rest rest;
 
 
         public HttpRestServer( TransactionManager transactionManager, Authenticator authenticator, int ifaceId, String uniqueName, Map<String, String> settings ) {
@@ -167,7 +170,7 @@ public String toJsonString( @NotNull Object obj ) {
                 config.enableCorsForAllOrigins();
             } ).start( port );
 
-            Rest rest = new Rest( transactionManager, Catalog.defaultUserId, Catalog.defaultDatabaseId );
+            rest = new Rest( transactionManager, Catalog.defaultUserId, Catalog.defaultDatabaseId, isStreamResults() );
             restRoutes( restServer, rest );
 
             log.info( "{} started and is listening on port {}.", INTERFACE_NAME, port );
@@ -374,7 +377,15 @@ public void shutdown() {
 
         @Override
         protected void reloadSettings( List<String> updatedSettings ) {
-            // There is no modifiable setting for this query interface
+            if ( updatedSettings.contains( "streamResults" ) && rest != null ) {
+                rest.setStreamResults( isStreamResults() );
+            }
+        }
+
+
+        private boolean isStreamResults() {
+            // Interfaces created before this setting existed stream their results as well
+            return Boolean.parseBoolean( settings.getOrDefault( "streamResults", "true" ) );
         }
 
 
@@ -18,6 +18,7 @@
 
 
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
 import com.j256.simplemagic.ContentInfo;
 import com.j256.simplemagic.ContentInfoUtil;
 import io.javalin.http.Context;
@@ -27,12 +28,17 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PushbackInputStream;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.sql.Blob;
+import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -56,6 +62,8 @@
 @Slf4j
 public class RestResult {
 
+    private static final Gson GSON = new Gson();
+
     private final Kind kind;
     private final Iterator<Object> iterator;
     private final AlgDataType dataType;
@@ -142,15 +150,7 @@ private void transformNonDML() {
                     }
                     temp.put( columns.get( i ).columnName, o );
                 } else {
-                    if ( type.getType().getPolyType().equals( PolyType.TIMESTAMP ) ) {
-                        Long nanoSeconds = (Long) o;
-                        LocalDateTime localDateTime = LocalDateTime.ofEpochSecond( nanoSeconds / 1000L, (int) ((nanoSeconds % 1000) * 1000), ZoneOffset.UTC );
-                        temp.put( columns.get( i ).columnName, localDateTime.toString() );
-                    } else if ( type.getType().getPolyType().equals( PolyType.TIME ) ) {
-                        temp.put( columns.get( i ).columnName, o.toString() );
-                    } else {
-                        temp.put( columns.get( i ).columnName, o );
-                    }
+                    temp.put( columns.get( i ).columnName, convert( type, o ) );
                 }
                 i++;
             }
@@ -162,6 +162,134 @@ private void transformNonDML() {
     }
 
 
+    private static Object convert( AlgDataTypeField type, Object o ) {
+        if ( type.getType().getPolyType().equals( PolyType.TIMESTAMP ) ) {
+            Long nanoSeconds = (Long) o;
+            LocalDateTime localDateTime = LocalDateTime.ofEpochSecond( nanoSeconds / 1000L, (int) ((nanoSeconds % 1000) * 1000), ZoneOffset.UTC );
+            return localDateTime.toString();
+        } else if ( type.getType().getPolyType().equals( PolyType.TIME ) ) {
+            return o.toString();
+        }
+        return o;
+    }
+
+
+    /**
+     * Whether the result contains multimedia columns. Such results can only be streamed as NDJSON, where the
+     * multimedia objects are inlined as Base64. Otherwise, they are returned as a zip file.
+     */
+    public boolean containsMultimedia() {
+        return dataType.getFieldList().stream().anyMatch( field -> field.getType().getPolyType().getFamily() == PolyTypeFamily.MULTIMEDIA );
+    }
+
+
+    /**
+     * Writes the rows straight from the result iterator to the response, without materializing the result. With
+     * {@link StreamFormat#JSON}, the response has the same shape as the one returned by {@link #getResult(Context)}.
+     * With {@link StreamFormat#NDJSON}, every row is written as a JSON object on a line of its own.
+     *
+     * @throws IOException if the response could not be written, e.g., because the client has disconnected
+     */
+    public void stream( final Context ctx, final StreamFormat format ) throws IOException {
+        StopWatch stopWatch = new StopWatch();
+        stopWatch.start();
+        ctx.contentType( format.contentType );
+        Writer writer = new OutputStreamWriter( ctx.res.getOutputStream(), StandardCharsets.UTF_8 );
+        List<AlgDataTypeField> fields = dataType.getFieldList();
+
+        JsonWriter out = null;
+        if ( format == StreamFormat.JSON ) {
+            out = GSON.newJsonWriter( writer );
+            out.beginObject();
+            out.name( "result" );
+            out.beginArray();
+        }
+        long size = 0;
+        while ( iterator.hasNext() ) {
+            Object next = iterator.next();
+            Object[] row = next != null && next.getClass().isArray() ? (Object[]) next : new Object[]{ next };
+            if ( format == StreamFormat.NDJSON ) {
+                out = GSON.newJsonWriter( writer );
+            }
+            out.beginObject();
+            for ( int i = 0; i < fields.size(); i++ ) {
+                AlgDataTypeField type = fields.get( i );
+                out.name( columns.get( i ).columnName );
+                if ( row[i] == null ) {
+                    out.nullValue();
+                } else if ( type.getType().getPolyType().getFamily() == PolyTypeFamily.MULTIMEDIA ) {
+                    out.value( Base64.getEncoder().encodeToString( toBytes( row[i] ) ) );
+                } else {
+                    writeValue( out, convert( type, row[i] ) );
+                }
+            }
+            out.endObject();
+            if ( format == StreamFormat.NDJSON ) {
+                out.flush();
+                writer.write( '\n' );
+            }
+            if ( size++ == 0 ) {
+                // Send the first row immediately, later rows are sent whenever the buffers are full
+                writer.flush();
+            }
+        }
+        if ( format == StreamFormat.JSON ) {
+            out.endArray();
+            out.name( "size" );
+            out.value( size );
+            out.endObject();
+        }
+        writer.flush();
+        stopWatch.stop();
+        this.executionTime = stopWatch.getNanoTime();
+    }
+
+
+    private static void writeValue( JsonWriter out, Object value ) throws IOException {
+        if ( value instanceof String ) {
+            out.value( (String) value );
+        } else if ( value instanceof Boolean ) {
+            out.value( (Boolean) value );
+        } else if ( value instanceof Number ) {
+            out.value( (Number) value );
+        } else {
+            GSON.toJson( value, value.getClass(), out );
+        }
+    }
+
+
+    private static byte[] toBytes( Object data ) {
+        try {
+            if ( data instanceof byte[] ) {
+                return (byte[]) data;
+            } else if ( data instanceof File ) {
+                return Files.readAllBytes( ((File) data).toPath() );
+            } else if ( data instanceof InputStream ) {
+                return IOUtils.toByteArray( (InputStream) data );
+            } else if ( data instanceof Blob ) {
+                return IOUtils.toByteArray( ((Blob) data).getBinaryStream() );
+            }
+        } catch ( IOException | SQLException e ) {
+            throw new RuntimeException( "Could not read multimedia object", e );
+        }
+        throw new RuntimeException( "Unexpected multimedia object: " + data.getClass().getSimpleName() );
+    }
+
+
+    /**
+     * Closes the underlying result iterator, which aborts the execution of the query.
+     */
+    public void close() {
+        if ( iterator instanceof AutoCloseable ) {
+            try {
+                ((AutoCloseable) iterator).close();
+            } catch ( Exception e ) {
+                log.warn( "Could not close the result iterator", e );
+            }
+        }
+    }
+
+
     private String addZipEntry( final Object data ) {
         //see https://www.baeldung.com/java-compress-and-uncompress
         containsFiles = true;
@@ -267,4 +395,30 @@ public Pair<String, Integer> getResult( final Context ctx ) {
         }
     }
 
+
+
+    public enum StreamFormat {
+        JSON( "application/json" ),
+        NDJSON( "application/x-ndjson" );
+
+        private final String contentType;
+
+
+        StreamFormat( String contentType ) {
+            this.contentType = contentType;
+        }
+
+
+        /**
+         * Returns the format requested with the Accept header or {@code null} if the client does not explicitly ask for a
+         * streamed format.
+         */
+        public static StreamFormat fromAcceptHeader( String accept ) {
+            if ( accept != null && accept.contains( NDJSON.contentType ) ) {
+                return NDJSON;
+            }
+            return null;
+        }
+    }
+
 }
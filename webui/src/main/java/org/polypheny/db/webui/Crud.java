@@ -81,6 +81,7 @@
 import org.apache.commons.lang3.ArrayUtils;
 import org.eclipse.jetty.websocket.api.Session;
 import org.polypheny.db.PolyImplementation;
+import org.polypheny.db.StatisticsManager;
 import org.polypheny.db.adapter.Adapter;
 import org.polypheny.db.adapter.Adapter.AbstractAdapterSetting;
 import org.polypheny.db.adapter.Adapter.AbstractAdapterSettingDirectory;
@@ -231,6 +232,11 @@ public class Crud implements InformationObserver {
     public final StatisticCrud statisticCrud;
     private final Catalog catalog = Catalog.getInstance();
 
+    /**
+     * Pagination state of the tables opened in the data view, by session id and table
+     */
+    private final Map<String, TableCursor> tableCursors = new ConcurrentHashMap<>();
+
 
     /**
      * Constructor
@@ -261,10 +267,76 @@ public static void cleanupOldSession( ConcurrentHashMap<String, Set<String>> ses
     }
 
 
+    /**
+     * Removes the pagination state of all tables opened in the data view of a session.
+     */
+    void closeTableCursors( final String sessionId ) {
+        tableCursors.keySet().removeIf( key -> key.startsWith( sessionId + "/" ) );
+    }
+
+
+    /**
+     * Removes the pagination state of a table in the data view of all sessions. Has to be called whenever the table is
+     * modified through the UI, since inserted, deleted or updated rows shift the remembered page boundaries against
+     * the pages that would be computed using an offset.
+     *
+     * @param tableId The table in the form <code>schema.table</code>
+     */
+    void invalidateTableCursors( final String tableId ) {
+        tableCursors.keySet().removeIf( key -> key.endsWith( "/" + tableId ) );
+    }
+
+
+    /**
+     * Returns the cursor used to page through a table in the data view of a session, or null if keyset pagination
+     * is not possible for this request. Cursors that have not been used for a while are discarded.
+     */
+    private TableCursor getTableCursor( final String sessionId, final UIRequest request, final String where, final String orderBy ) {
+        long timeoutMillis = TimeUnit.SECONDS.toMillis( RuntimeConfig.UI_CURSOR_IDLE_TIMEOUT.getInteger() );
+        tableCursors.values().removeIf( c -> c.isIdle( timeoutMillis ) );
+        if ( sessionId == null || request.noLimit || !orderBy.isEmpty() ) {
+            return null;
+        }
+        String key = sessionId + "/" + request.tableId;
+        TableCursor cursor = tableCursors.get( key );
+        if ( cursor != null && cursor.matches( where, getPageSize() ) ) {
+            return cursor;
+        }
+        tableCursors.remove( key );
+        String[] t = request.tableId.split( "\\." );
+        try {
+            CatalogTable catalogTable = catalog.getTable( this.databaseId, t[0], t[1] );
+            if ( catalogTable.primaryKey == null ) {
+                return null;
+            }
+            cursor = TableCursor.create(
+                    catalog.getColumns( catalogTable.id ),
+                    catalog.getPrimaryKey( catalogTable.primaryKey ).getColumnNames(),
+                    where,
+                    getPageSize() );
+        } catch ( UnknownTableException e ) {
+            return null;
+        }
+        if ( cursor != null ) {
+            tableCursors.put( key, cursor );
+        }
+        return cursor;
+    }
+
+
     /**
      * Returns the content of a table with a maximum of PAGESIZE elements.
      */
     Result getTable( final UIRequest request ) {
+        return getTable( request, null );
+    }
+
+
+    /**
+     * Returns the content of a table with a maximum of PAGESIZE elements. If a session id is provided and the table has
+     * a primary key, the page is fetched using keyset pagination on the primary key.
+     */
+    Result getTable( final UIRequest request, final String sessionId ) {
         Transaction transaction = getTransaction();
         Result result;
 
@@ -279,11 +351,16 @@ Result getTable( final UIRequest request ) {
         }
         String[] t = request.tableId.split( "\\." );
         String tableId = String.format( "\"%s\".\"%s\"", t[0], t[1] );
+        TableCursor cursor = getTableCursor( sessionId, request, where, orderBy );
         query.append( "SELECT * FROM " )
-                .append( tableId )
-                .append( where )
-                .append( orderBy );
-        if ( !request.noLimit ) {
+                .append( tableId );
+        if ( cursor != null ) {
+            query.append( cursor.buildPageQuery( request.currentPage ) );
+        } else {
+            query.append( where )
+                    .append( orderBy );
+        }
+        if ( cursor == null && !request.noLimit ) {
             query.append( " LIMIT " )
                     .append( getPageSize() )
                     .append( " OFFSET " )
@@ -293,6 +370,9 @@ Result getTable( final UIRequest request ) {
         try {
             result = executeSqlSelect( transaction.createStatement(), request, query.toString(), request.noLimit, this );
             result.setXid( transaction.getXid().toString() );
+            if ( cursor != null ) {
+                cursor.pageFetched( request.currentPage, result.getData() );
+            }
         } catch ( Exception e ) {
             if ( request.filter != null ) {
                 result = new Result( "Error while filtering table " + request.tableId );
@@ -354,12 +434,33 @@ Result getTable( final UIRequest request ) {
 
         result.setCurrentPage( request.currentPage ).setTable( request.tableId );
         int tableSize = 0;
+        boolean estimated = false;
         try {
-            tableSize = getTableSize( transaction, request );
+            // Without a filter, the number of rows is estimated using the statistics instead of counting them
+            Integer rowCount = where.isEmpty() ? StatisticsManager.getInstance().rowCountPerTable( catalogTable.id ) : null;
+            if ( rowCount != null ) {
+                tableSize = rowCount;
+                estimated = true;
+            } else {
+                tableSize = getTableSize( transaction, request );
+            }
         } catch ( Exception e ) {
             log.error( "Caught exception while determining page size", e );
         }
-        result.setHighestPage( (int) Math.ceil( (double) tableSize / getPageSize() ) );
+        int highestPage = (int) Math.ceil( (double) tableSize / getPageSize() );
+        if ( estimated && !request.noLimit && result.getData() != null ) {
+            // Correct the estimate using the rows actually returned for this page
+            int currentPage = Math.max( 1, request.currentPage );
+            int rows = result.getData().length;
+            if ( rows == 0 ) {
+                highestPage = Math.min( highestPage, currentPage - 1 );
+            } else if ( rows < getPageSize() ) {
+                highestPage = currentPage;
+            } else if ( highestPage <= currentPage ) {
+                highestPage = currentPage + 1;
+            }
+        }
+        result.setHighestPage( highestPage );
         try {
             transaction.commit();
         } catch ( TransactionException e ) {
@@ -531,6 +632,7 @@ void dropTruncateTable( final Context ctx ) {
             int a = executeSqlUpdate( transaction, query.toString() );
             result = new Result( a ).setGeneratedQuery( query.toString() );
             transaction.commit();
+            invalidateTableCursors( request.schema + "." + request.table );
         } catch ( QueryExecutionException | TransactionException e ) {
             log.error( "Caught exception while dropping or truncating a table", e );
             result = new Result( e ).setGeneratedQuery( query.toString() );
@@ -705,6 +807,7 @@ void insertRow( final Context ctx ) {
         try {
             int numRows = executeSqlUpdate( statement, transaction, query );
             transaction.commit();
+            invalidateTableCursors( split[0] + "." + split[1] );
             ctx.json( new Result( numRows ).setGeneratedQuery( query ) );
         } catch ( Exception | TransactionException e ) {
             log.info( "Generated query: {}", query );
@@ -996,6 +1099,7 @@ void deleteRow( final Context ctx ) {
             }
 
             transaction.commit();
+            invalidateTableCursors( request.tableId );
             result = new Result( numOfRows );
         } catch ( TransactionException | Exception e ) {
             log.error( "Caught exception while deleting a row", e );
@@ -1068,6 +1172,7 @@ void updateRow( final Context ctx ) throws ServletException, IOException {
                     transaction.addChangedTable( tableId );
                 }
                 transaction.commit();
+                invalidateTableCursors( split[0] + "." + split[1] );
                 result = new Result( numOfRows );
             } else {
                 transaction.rollback();
@@ -1105,6 +1210,7 @@ void batchUpdate( final Context ctx ) throws ServletException, IOException {
                 totalRows += executeSqlUpdate( statement, transaction, query );
             }
             transaction.commit();
+            invalidateTableCursors( request.tableId );
             ctx.json( new Result( totalRows ) );
         } catch ( ServletException | IOException | QueryExecutionException | TransactionException e ) {
             try {
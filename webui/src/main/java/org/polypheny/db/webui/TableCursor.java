@@ -0,0 +1,200 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.polypheny.db.webui;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import org.polypheny.db.catalog.entity.CatalogColumn;
+
+
+/**
+ * Server-side pagination state of a table that is opened in the data view of the UI. Pages are fetched using keyset
+ * pagination on the primary key: For every page that has been delivered, the key of its last row is remembered. The
+ * following page is then fetched with a predicate on the primary key instead of skipping all preceding rows using an
+ * OFFSET. Pages further away are fetched starting from the closest known key.
+ *
+ * A cursor does not hold a transaction and therefore no locks. It only remains valid as long as the filter and the page
+ * size of the view do not change.
+ */
+class TableCursor {
+
+    private static final Pattern INTEGER_LITERAL = Pattern.compile( "-?\\d+" );
+
+    private final List<String> keyColumns;
+    private final List<Integer> keyIndexes;
+    private final List<Boolean> numericKeys;
+    private final String where;
+    private final int pageSize;
+
+    /**
+     * Key of the last row of every page that has been fetched, by page number
+     */
+    private final TreeMap<Integer, String[]> lastKeys = new TreeMap<>();
+
+    private volatile long lastAccess;
+
+
+    private TableCursor( List<String> keyColumns, List<Integer> keyIndexes, List<Boolean> numericKeys, String where, int pageSize ) {
+        this.keyColumns = keyColumns;
+        this.keyIndexes = keyIndexes;
+        this.numericKeys = numericKeys;
+        this.where = where;
+        this.pageSize = pageSize;
+        this.lastAccess = System.currentTimeMillis();
+    }
+
+
+    /**
+     * Creates a cursor for a table. Returns null if the table has no primary key or if the primary key contains columns
+     * of a type that is not supported for keyset pagination.
+     *
+     * @param columns All columns of the table in the order they are returned by a <code>SELECT *</code>
+     * @param primaryColumns Names of the primary key columns
+     * @param where The filter of the view, including the <code>WHERE</code> keyword, or an empty string
+     * @param pageSize The number of rows per page
+     */
+    static TableCursor create( List<CatalogColumn> columns, List<String> primaryColumns, String where, int pageSize ) {
+        if ( primaryColumns.isEmpty() ) {
+            return null;
+        }
+        List<String> keyColumns = new ArrayList<>();
+        List<Integer> keyIndexes = new ArrayList<>();
+        List<Boolean> numericKeys = new ArrayList<>();
+        for ( String primaryColumn : primaryColumns ) {
+            int index = -1;
+            for ( int i = 0; i < columns.size(); i++ ) {
+                if ( columns.get( i ).name.equals( primaryColumn ) ) {
+                    index = i;
+                    break;
+                }
+            }
+            if ( index < 0 || columns.get( index ).collectionsType != null ) {
+                return null;
+            }
+            switch ( columns.get( index ).type ) {
+                case TINYINT:
+                case SMALLINT:
+                case INTEGER:
+                case BIGINT:
+                    numericKeys.add( true );
+                    break;
+                case CHAR:
+                case VARCHAR:
+                    numericKeys.add( false );
+                    break;
+                default:
+                    return null;
+            }
+            keyColumns.add( primaryColumn );
+            keyIndexes.add( index );
+        }
+        return new TableCursor( keyColumns, keyIndexes, numericKeys, where, pageSize );
+    }
+
+
+    /**
+     * Whether this cursor can be used for a view with the given filter and page size.
+     */
+    boolean matches( String where, int pageSize ) {
+        return this.where.equals( where ) && this.pageSize == pageSize;
+    }
+
+
+    boolean isIdle( long timeoutMillis ) {
+        return System.currentTimeMillis() - lastAccess > timeoutMillis;
+    }
+
+
+    /**
+     * Builds the part of the query following the table name that fetches the given page.
+     */
+    synchronized String buildPageQuery( int page ) {
+        lastAccess = System.currentTimeMillis();
+        int previousPage = Math.max( 0, page - 1 );
+        Entry<Integer, String[]> start = lastKeys.floorEntry( previousPage );
+
+        StringBuilder query = new StringBuilder( where );
+        if ( start != null ) {
+            query.append( where.isEmpty() ? " WHERE " : " AND " )
+                    .append( "(" )
+                    .append( keyPredicate( start.getValue() ) )
+                    .append( ")" );
+        }
+        StringJoiner orderBy = new StringJoiner( ", ", " ORDER BY ", "" );
+        keyColumns.forEach( c -> orderBy.add( "\"" + c + "\"" ) );
+        query.append( orderBy )
+                .append( " LIMIT " )
+                .append( pageSize );
+        int skippedPages = start == null ? previousPage : previousPage - start.getKey();
+        if ( skippedPages > 0 ) {
+            query.append( " OFFSET " ).append( skippedPages * pageSize );
+        }
+        return query.toString();
+    }
+
+
+    /**
+     * Remembers the key of the last row of a page that has been fetched.
+     */
+    synchronized void pageFetched( int page, String[][] rows ) {
+        if ( rows == null || rows.length == 0 ) {
+            return;
+        }
+        String[] lastRow = rows[rows.length - 1];
+        String[] key = new String[keyIndexes.size()];
+        for ( int i = 0; i < key.length; i++ ) {
+            String value = lastRow[keyIndexes.get( i )];
+            if ( value == null || (numericKeys.get( i ) && !INTEGER_LITERAL.matcher( value ).matches()) ) {
+                return;
+            }
+            key[i] = value;
+        }
+        lastKeys.put( Math.max( 1, page ), key );
+    }
+
+
+    /**
+     * Builds the lexicographic comparison <code>(k1 > v1) OR (k1 = v1 AND k2 > v2) OR ...</code>
+     */
+    String keyPredicate( String[] key ) {
+        StringJoiner disjunction = new StringJoiner( " OR " );
+        for ( int i = 0; i < key.length; i++ ) {
+            StringJoiner conjunction = new StringJoiner( " AND ", "(", ")" );
+            for ( int j = 0; j < i; j++ ) {
+                conjunction.add( "\"" + keyColumns.get( j ) + "\" = " + literal( j, key[j] ) );
+            }
+            conjunction.add( "\"" + keyColumns.get( i ) + "\" > " + literal( i, key[i] ) );
+            disjunction.add( conjunction.toString() );
+        }
+        return disjunction.toString();
+    }
+
+
+    private String literal( int keyIndex, String value ) {
+        if ( numericKeys.get( keyIndex ) ) {
+            return value;
+        }
+        return "'" + value.replace( "'", "''" ) + "'";
+    }
+
+}
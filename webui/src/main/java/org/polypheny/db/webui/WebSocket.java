@@ -71,6 +71,7 @@ public void closed( WsCloseContext ctx ) {
         log.debug( "UI disconnected from WebSocket" );
         sessions.remove( ctx.session );
         Crud.cleanupOldSession( queryAnalyzers, ctx.getSessionId() );
+        crud.closeTableCursors( ctx.getSessionId() );
     }
 
 
@@ -100,6 +101,7 @@ public void onMessage( final WsMessageContext ctx ) {
         }
         //close analyzers of a previous query that was sent over the same socket.
         Crud.cleanupOldSession( queryAnalyzers, ctx.getSessionId() );
+        crud.closeTableCursors( ctx.getSessionId() );
 
         UIRequest request = ctx.messageAsClass( UIRequest.class );
         Set<String> xIds = new HashSet<>();
@@ -149,7 +151,7 @@ public void onMessage( final WsMessageContext ctx ) {
                         CatalogSchema namespace = Catalog.getInstance().getSchema( Catalog.defaultDatabaseId, uiRequest.getSchemaName() );
                         switch ( namespace.namespaceType ) {
                             case RELATIONAL:
-                                result = crud.getTable( uiRequest );
+                                result = crud.getTable( uiRequest, ctx.getSessionId() );
                                 break;
                             case DOCUMENT:
                                 result = LanguageCrud.anyQuery( QueryLanguage.from( "mongo" ), ctx.session, new QueryRequest( String.format( "db.%s.find({})", uiRequest.getTableName() ), false, false, "mql", uiRequest.getSchemaName() ), crud.getTransactionManager(), Catalog.defaultUserId, Catalog.defaultDatabaseId, this.crud ).get( 0 );
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.polypheny.db.webui;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import org.junit.Test;
+import org.polypheny.db.catalog.Catalog.Collation;
+import org.polypheny.db.catalog.entity.CatalogColumn;
+import org.polypheny.db.type.PolyType;
+
+
+public class TableCursorTest {
+
+    private static final List<CatalogColumn> COLUMNS = List.of(
+            column( 0, "id", PolyType.INTEGER, null ),
+            column( 1, "name", PolyType.VARCHAR, null ),
+            column( 2, "price", PolyType.DOUBLE, null ),
+            column( 3, "tags", PolyType.VARCHAR, PolyType.ARRAY ) );
+
+
+    private static CatalogColumn column( int position, String name, PolyType type, PolyType collectionsType ) {
+        return new CatalogColumn( position, name, 1, 1, 1, position + 1, type, collectionsType, null, null, null, null, false, Collation.CASE_INSENSITIVE, null );
+    }
+
+
+    @Test
+    public void testCreate() {
+        assertNotNull( TableCursor.create( COLUMNS, List.of( "id" ), "", 10 ) );
+        assertNotNull( TableCursor.create( COLUMNS, List.of( "id", "name" ), "", 10 ) );
+        // No primary key
+        assertNull( TableCursor.create( COLUMNS, List.of(), "", 10 ) );
+        // Unsupported key types
+        assertNull( TableCursor.create( COLUMNS, List.of( "price" ), "", 10 ) );
+        assertNull( TableCursor.create( COLUMNS, List.of( "tags" ), "", 10 ) );
+        // Unknown column
+        assertNull( TableCursor.create( COLUMNS, List.of( "id", "unknown" ), "", 10 ) );
+    }
+
+
+    @Test
+    public void testMatches() {
+        TableCursor cursor = TableCursor.create( COLUMNS, List.of( "id" ), " WHERE \"name\" = 'a'", 10 );
+        assertTrue( cursor.matches( " WHERE \"name\" = 'a'", 10 ) );
+        assertFalse( cursor.matches( "", 10 ) );
+        assertFalse( cursor.matches( " WHERE \"name\" = 'a'", 20 ) );
+    }
+
+
+    @Test
+    public void testPageQueryWithoutKnownKeys() {
+        TableCursor cursor = TableCursor.create( COLUMNS, List.of( "id" ), "", 10 );
+        assertEquals( " ORDER BY \"id\" LIMIT 10", cursor.buildPageQuery( 1 ) );
+        assertEquals( " ORDER BY \"id\" LIMIT 10", cursor.buildPageQuery( 0 ) );
+        assertEquals( " ORDER BY \"id\" LIMIT 10 OFFSET 20", cursor.buildPageQuery( 3 ) );
+    }
+
+
+    @Test
+    public void testPageQueryFromKnownKey() {
+        TableCursor cursor = TableCursor.create( COLUMNS, List.of( "id" ), "", 10 );
+        cursor.pageFetched( 1, new String[][]{ { "1", "a", "1.0", null }, { "10", "j", "2.0", null } } );
+        assertEquals( " WHERE ((\"id\" > 10)) ORDER BY \"id\" LIMIT 10", cursor.buildPageQuery( 2 ) );
+        // Further pages skip the pages between the closest known key and the requested page
+        assertEquals( " WHERE ((\"id\" > 10)) ORDER BY \"id\" LIMIT 10 OFFSET 20", cursor.buildPageQuery( 4 ) );
+        // Pages before the first known key are still fetched using an offset
+        assertEquals( " ORDER BY \"id\" LIMIT 10", cursor.buildPageQuery( 1 ) );
+
+        cursor.pageFetched( 3, new String[][]{ { "35", "x", "3.0", null } } );
+        assertEquals( " WHERE ((\"id\" > 35)) ORDER BY \"id\" LIMIT 10", cursor.buildPageQuery( 4 ) );
+        assertEquals( " WHERE ((\"id\" > 10)) ORDER BY \"id\" LIMIT 10", cursor.buildPageQuery( 2 ) );
+    }
+
+
+    @Test
+    public void testPageQueryWithFilter() {
+        TableCursor cursor = TableCursor.create( COLUMNS, List.of( "id" ), " WHERE \"name\" = 'a'", 5 );
+        assertEquals( " WHERE \"name\" = 'a' ORDER BY \"id\" LIMIT 5", cursor.buildPageQuery( 1 ) );
+        cursor.pageFetched( 1, new String[][]{ { "7", "a", "1.0", null } } );
+        assertEquals( " WHERE \"name\" = 'a' AND ((\"id\" > 7)) ORDER BY \"id\" LIMIT 5", cursor.buildPageQuery( 2 ) );
+    }
+
+
+    @Test
+    public void testInvalidKeysAreIgnored() {
+        TableCursor cursor = TableCursor.create( COLUMNS, List.of( "id" ), "", 10 );
+        cursor.pageFetched( 1, new String[][]{ { null, "a", "1.0", null } } );
+        cursor.pageFetched( 1, new String[][]{ { "1; DROP TABLE t", "a", "1.0", null } } );
+        cursor.pageFetched( 1, new String[][]{} );
+        cursor.pageFetched( 1, null );
+        assertEquals( " ORDER BY \"id\" LIMIT 10 OFFSET 10", cursor.buildPageQuery( 2 ) );
+    }
+
+
+    @Test
+    public void testCompositeKey() {
+        TableCursor cursor = TableCursor.create( COLUMNS, List.of( "id", "name" ), "", 10 );
+        assertEquals( "(\"id\" > 1) OR (\"id\" = 1 AND \"name\" > 'x''y')", cursor.keyPredicate( new String[]{ "1", "x'y" } ) );
+
+        cursor.pageFetched( 1, new String[][]{ { "1", "b", "1.0", null } } );
+        assertEquals(
+                " WHERE ((\"id\" > 1) OR (\"id\" = 1 AND \"name\" > 'b')) ORDER BY \"id\", \"name\" LIMIT 10",
+                cursor.buildPageQuery( 2 ) );
+    }
+
+
+    @Test
+    public void testStringKeyPredicate() {
+        TableCursor cursor = TableCursor.create( COLUMNS, List.of( "name" ), "", 10 );
+        assertEquals( "(\"name\" > 'it''s')", cursor.keyPredicate( new String[]{ "it's" } ) );
+    }
+
+}